@@ -103,6 +103,36 @@ public interface MessageBus extends Closeable {
 
     Sequence getVectorAggregateSubSeq();
 
+    Sequence getParallelFilterPubSeq();
+
+    RingQueue<ParallelFilterTask> getParallelFilterQueue();
+
+    Sequence getParallelFilterSubSeq();
+
+    Sequence getParallelGroupByPubSeq();
+
+    RingQueue<ParallelGroupByTask> getParallelGroupByQueue();
+
+    Sequence getParallelGroupBySubSeq();
+
+    Sequence getParallelHashJoinPubSeq();
+
+    RingQueue<ParallelHashJoinTask> getParallelHashJoinQueue();
+
+    Sequence getParallelHashJoinSubSeq();
+
+    Sequence getPartitionCompressionPubSeq();
+
+    RingQueue<PartitionCompressionTask> getPartitionCompressionQueue();
+
+    Sequence getPartitionCompressionSubSeq();
+
+    Sequence getTextImportPubSeq();
+
+    RingQueue<TextImportTask> getTextImportQueue();
+
+    Sequence getTextImportSubSeq();
+
     Sequence getLatestByPubSeq();
 
     RingQueue<LatestByTask> getLatestByQueue();
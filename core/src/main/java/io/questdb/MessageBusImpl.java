@@ -42,6 +42,25 @@ public class MessageBusImpl implements MessageBus {
     private final MPSequence vectorAggregatePubSeq;
     private final MCSequence vectorAggregateSubSeq;
 
+    private final RingQueue<ParallelFilterTask> parallelFilterQueue;
+    private final MPSequence parallelFilterPubSeq;
+    private final MCSequence parallelFilterSubSeq;
+
+    private final RingQueue<ParallelGroupByTask> parallelGroupByQueue;
+    private final MPSequence parallelGroupByPubSeq;
+    private final MCSequence parallelGroupBySubSeq;
+    private final RingQueue<ParallelHashJoinTask> parallelHashJoinQueue;
+    private final MPSequence parallelHashJoinPubSeq;
+    private final MCSequence parallelHashJoinSubSeq;
+
+    private final RingQueue<PartitionCompressionTask> partitionCompressionQueue;
+    private final MPSequence partitionCompressionPubSeq;
+    private final MCSequence partitionCompressionSubSeq;
+
+    private final RingQueue<TextImportTask> textImportQueue;
+    private final MPSequence textImportPubSeq;
+    private final MCSequence textImportSubSeq;
+
     private final RingQueue<TableBlockWriterTaskHolder> tableBlockWriterQueue;
     private final MPSequence tableBlockWriterPubSeq;
     private final MCSequence tableBlockWriterSubSeq;
@@ -88,6 +107,31 @@ public class MessageBusImpl implements MessageBus {
         this.vectorAggregateSubSeq = new MCSequence(vectorAggregateQueue.getCapacity());
         vectorAggregatePubSeq.then(vectorAggregateSubSeq).then(vectorAggregatePubSeq);
 
+        this.parallelFilterQueue = new RingQueue<>(ParallelFilterTask::new, configuration.getParallelFilterQueueCapacity());
+        this.parallelFilterPubSeq = new MPSequence(parallelFilterQueue.getCapacity());
+        this.parallelFilterSubSeq = new MCSequence(parallelFilterQueue.getCapacity());
+        parallelFilterPubSeq.then(parallelFilterSubSeq).then(parallelFilterPubSeq);
+
+        this.parallelGroupByQueue = new RingQueue<>(ParallelGroupByTask::new, configuration.getParallelGroupByQueueCapacity());
+        this.parallelGroupByPubSeq = new MPSequence(parallelGroupByQueue.getCapacity());
+        this.parallelGroupBySubSeq = new MCSequence(parallelGroupByQueue.getCapacity());
+        parallelGroupByPubSeq.then(parallelGroupBySubSeq).then(parallelGroupByPubSeq);
+
+        this.parallelHashJoinQueue = new RingQueue<>(ParallelHashJoinTask::new, configuration.getParallelHashJoinQueueCapacity());
+        this.parallelHashJoinPubSeq = new MPSequence(parallelHashJoinQueue.getCapacity());
+        this.parallelHashJoinSubSeq = new MCSequence(parallelHashJoinQueue.getCapacity());
+        parallelHashJoinPubSeq.then(parallelHashJoinSubSeq).then(parallelHashJoinPubSeq);
+
+        this.partitionCompressionQueue = new RingQueue<>(PartitionCompressionTask::new, configuration.getPartitionCompressionQueueCapacity());
+        this.partitionCompressionPubSeq = new MPSequence(partitionCompressionQueue.getCapacity());
+        this.partitionCompressionSubSeq = new MCSequence(partitionCompressionQueue.getCapacity());
+        partitionCompressionPubSeq.then(partitionCompressionSubSeq).then(partitionCompressionPubSeq);
+
+        this.textImportQueue = new RingQueue<>(TextImportTask::new, configuration.getTextImportQueueCapacity());
+        this.textImportPubSeq = new MPSequence(textImportQueue.getCapacity());
+        this.textImportSubSeq = new MCSequence(textImportQueue.getCapacity());
+        textImportPubSeq.then(textImportSubSeq).then(textImportPubSeq);
+
         this.tableBlockWriterQueue = new RingQueue<>(TableBlockWriterTaskHolder::new, configuration.getTableBlockWriterQueueCapacity());
         this.tableBlockWriterPubSeq = new MPSequence(tableBlockWriterQueue.getCapacity());
         this.tableBlockWriterSubSeq = new MCSequence(tableBlockWriterQueue.getCapacity());
@@ -179,6 +223,81 @@ public class MessageBusImpl implements MessageBus {
         return vectorAggregateSubSeq;
     }
 
+    @Override
+    public RingQueue<ParallelFilterTask> getParallelFilterQueue() {
+        return parallelFilterQueue;
+    }
+
+    @Override
+    public Sequence getParallelFilterPubSeq() {
+        return parallelFilterPubSeq;
+    }
+
+    @Override
+    public Sequence getParallelFilterSubSeq() {
+        return parallelFilterSubSeq;
+    }
+
+    @Override
+    public RingQueue<ParallelGroupByTask> getParallelGroupByQueue() {
+        return parallelGroupByQueue;
+    }
+
+    @Override
+    public Sequence getParallelGroupByPubSeq() {
+        return parallelGroupByPubSeq;
+    }
+
+    @Override
+    public Sequence getParallelGroupBySubSeq() {
+        return parallelGroupBySubSeq;
+    }
+
+    @Override
+    public RingQueue<ParallelHashJoinTask> getParallelHashJoinQueue() {
+        return parallelHashJoinQueue;
+    }
+
+    @Override
+    public Sequence getParallelHashJoinPubSeq() {
+        return parallelHashJoinPubSeq;
+    }
+
+    @Override
+    public Sequence getParallelHashJoinSubSeq() {
+        return parallelHashJoinSubSeq;
+    }
+
+    @Override
+    public RingQueue<PartitionCompressionTask> getPartitionCompressionQueue() {
+        return partitionCompressionQueue;
+    }
+
+    @Override
+    public Sequence getPartitionCompressionPubSeq() {
+        return partitionCompressionPubSeq;
+    }
+
+    @Override
+    public Sequence getPartitionCompressionSubSeq() {
+        return partitionCompressionSubSeq;
+    }
+
+    @Override
+    public RingQueue<TextImportTask> getTextImportQueue() {
+        return textImportQueue;
+    }
+
+    @Override
+    public Sequence getTextImportPubSeq() {
+        return textImportPubSeq;
+    }
+
+    @Override
+    public Sequence getTextImportSubSeq() {
+        return textImportSubSeq;
+    }
+
     @Override
     public RingQueue<TableBlockWriterTaskHolder> getTableBlockWriterQueue() {
         return tableBlockWriterQueue;
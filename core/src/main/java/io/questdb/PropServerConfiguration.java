@@ -108,8 +108,31 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final int sqlSortKeyMaxPages;
     private final long sqlSortLightValuePageSize;
     private final int sqlSortLightValueMaxPages;
+    private final int sqlLimitedSortMaxRows;
     private final int sqlHashJoinValuePageSize;
     private final int sqlHashJoinValueMaxPages;
+    private final long sqlSpillMemoryLimit;
+    private final int sqlSpillPartitionCount;
+    private final String sqlSpillRoot;
+    private final long sqlSpillMaxSize;
+    private final boolean sqlResultCacheEnabled;
+    private final long sqlResultCacheSize;
+    private final long sqlResultCacheMaxEntrySize;
+    private final int sqlResultCachePageSize;
+    private final boolean partitionStatsEnabled;
+    private final long partitionStatsBlockSize;
+    private final boolean partitionBloomFilterEnabled;
+    private final int partitionBloomFilterBitsPerRow;
+    private final long partitionCompressionAge;
+    private final int partitionCompressionBlockSize;
+    private final long partitionCompressionCacheSize;
+    private final int partitionCompressionQueueCapacity;
+    private final boolean indexCompressionEnabled;
+    private final boolean walEnabled;
+    private final int walSegmentRolloverRowCount;
+    private final int walApplyRetryCount;
+    private final boolean readerPoolRefreshEnabled;
+    private final long readerPoolRefreshInterval;
     private final long sqlLatestByRowCount;
     private final int sqlHashJoinLightValuePageSize;
     private final int sqlHashJoinLightValueMaxPages;
@@ -188,6 +211,17 @@ public class PropServerConfiguration implements ServerConfiguration {
     private final BuildInformation buildInformation;
     private final int columnIndexerQueueCapacity;
     private final int vectorAggregateQueueCapacity;
+    private final int parallelFilterQueueCapacity;
+    private final long sqlParallelFilterFrameRows;
+    private final boolean sqlParallelFilterEnabled;
+    private final int parallelGroupByQueueCapacity;
+    private final long sqlParallelGroupByFrameRows;
+    private final boolean sqlParallelGroupByEnabled;
+    private final boolean sqlParallelSampleByEnabled;
+    private final int parallelHashJoinQueueCapacity;
+    private final int textImportQueueCapacity;
+    private final long sqlParallelHashJoinMinRows;
+    private final boolean sqlFilterCompilerEnabled;
     private final int o3CallbackQueueCapacity;
     private final int o3PartitionQueueCapacity;
     private final int o3OpenColumnQueueCapacity;
@@ -243,6 +277,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private int textLexerStringPoolCapacity;
     private int timestampAdapterPoolCapacity;
     private int utf8SinkSize;
+    private long parallelImportChunkSize;
     private MimeTypesCache mimeTypesCache;
     private String keepAliveHeader;
     private int httpBindIPv4Address;
@@ -272,6 +307,8 @@ public class PropServerConfiguration implements ServerConfiguration {
     private int pgCharacterStoreCapacity;
     private int pgCharacterStorePoolCapacity;
     private int pgConnectionPoolInitialCapacity;
+    private int pgCopyBufferSize;
+    private int pgCopyCommitBatchSize;
     private String pgPassword;
     private String pgUsername;
     private int pgFactoryCacheColumnCount;
@@ -476,6 +513,7 @@ public class PropServerConfiguration implements ServerConfiguration {
                 this.textLexerStringPoolCapacity = getInt(properties, env, "http.text.lexer.string.pool.capacity", 64);
                 this.timestampAdapterPoolCapacity = getInt(properties, env, "http.text.timestamp.adapter.pool.capacity", 64);
                 this.utf8SinkSize = getIntSize(properties, env, "http.text.utf8.sink.size", 4096);
+                this.parallelImportChunkSize = getLongSize(properties, env, "http.text.parallel.import.chunk.size", 64 * 1024 * 1024);
 
                 this.jsonQueryConnectionCheckFrequency = getInt(properties, env, "http.json.query.connection.check.frequency", 1_000_000);
                 this.jsonQueryFloatScale = getInt(properties, env, "http.json.query.float.scale", 4);
@@ -520,6 +558,8 @@ public class PropServerConfiguration implements ServerConfiguration {
                 this.pgCharacterStoreCapacity = getInt(properties, env, "pg.character.store.capacity", 4096);
                 this.pgCharacterStorePoolCapacity = getInt(properties, env, "pg.character.store.pool.capacity", 64);
                 this.pgConnectionPoolInitialCapacity = getInt(properties, env, "pg.connection.pool.capacity", 64);
+                this.pgCopyBufferSize = getIntSize(properties, env, "pg.copy.buffer.size", 1024 * 1024);
+                this.pgCopyCommitBatchSize = getInt(properties, env, "pg.copy.commit.batch.size", 1_000_000);
                 this.pgPassword = getString(properties, env, "pg.password", "quest");
                 this.pgUsername = getString(properties, env, "pg.user", "admin");
                 this.pgFactoryCacheColumnCount = getInt(properties, env, "pg.factory.cache.column.count", 16);
@@ -582,8 +622,36 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.sqlSortKeyMaxPages = getIntSize(properties, env, "cairo.sql.sort.key.max.pages", Integer.MAX_VALUE);
             this.sqlSortLightValuePageSize = getLongSize(properties, env, "cairo.sql.sort.light.value.page.size", 8 * 1048576);
             this.sqlSortLightValueMaxPages = getIntSize(properties, env, "cairo.sql.sort.light.value.max.pages", Integer.MAX_VALUE);
+            this.sqlLimitedSortMaxRows = getInt(properties, env, "cairo.sql.limited.sort.max.rows", 10_000);
             this.sqlHashJoinValuePageSize = getIntSize(properties, env, "cairo.sql.hash.join.value.page.size", 16777216);
             this.sqlHashJoinValueMaxPages = getIntSize(properties, env, "cairo.sql.hash.join.value.max.pages", Integer.MAX_VALUE);
+            this.sqlSpillMemoryLimit = getLongSize(properties, env, "cairo.sql.spill.memory.limit", 1024 * 1024 * 1024L);
+            this.sqlSpillPartitionCount = getInt(properties, env, "cairo.sql.spill.partition.count", 32);
+            this.sqlSpillMaxSize = getLongSize(properties, env, "cairo.sql.spill.max.size", 16L * 1024 * 1024 * 1024);
+            final String sqlSpillRoot = getString(properties, env, "cairo.sql.spill.root", "tmp");
+            if (new File(sqlSpillRoot).isAbsolute()) {
+                this.sqlSpillRoot = sqlSpillRoot;
+            } else {
+                this.sqlSpillRoot = new File(root, sqlSpillRoot).getAbsolutePath();
+            }
+            this.sqlResultCacheEnabled = getBoolean(properties, env, "cairo.sql.result.cache.enabled", false);
+            this.sqlResultCacheSize = getLongSize(properties, env, "cairo.sql.result.cache.size", 64 * 1024 * 1024L);
+            this.sqlResultCacheMaxEntrySize = getLongSize(properties, env, "cairo.sql.result.cache.max.entry.size", 4 * 1024 * 1024L);
+            this.sqlResultCachePageSize = getIntSize(properties, env, "cairo.sql.result.cache.page.size", 64 * 1024);
+            this.partitionStatsEnabled = getBoolean(properties, env, "cairo.partition.stats.enabled", false);
+            this.partitionStatsBlockSize = Numbers.ceilPow2(getLongSize(properties, env, "cairo.partition.stats.block.size", 64 * 1024));
+            this.partitionBloomFilterEnabled = getBoolean(properties, env, "cairo.partition.bloom.filter.enabled", false);
+            this.partitionBloomFilterBitsPerRow = Math.max(1, getInt(properties, env, "cairo.partition.bloom.filter.bits.per.row", 10));
+            this.partitionCompressionAge = getLong(properties, env, "cairo.partition.compression.age", 0) * 1_000;
+            this.partitionCompressionBlockSize = Math.max(4096, Numbers.ceilPow2(getIntSize(properties, env, "cairo.partition.compression.block.size", 1024 * 1024)));
+            this.partitionCompressionCacheSize = getLongSize(properties, env, "cairo.partition.compression.cache.size", 256 * 1024 * 1024L);
+            this.partitionCompressionQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.partition.compression.queue.capacity", 64));
+            this.indexCompressionEnabled = getBoolean(properties, env, "cairo.index.compression.enabled", false);
+            this.walEnabled = getBoolean(properties, env, "cairo.wal.enabled", false);
+            this.walSegmentRolloverRowCount = Math.max(1, getInt(properties, env, "cairo.wal.segment.rollover.row.count", 200_000));
+            this.walApplyRetryCount = Math.max(1, getInt(properties, env, "cairo.wal.apply.retry.count", 3));
+            this.readerPoolRefreshEnabled = getBoolean(properties, env, "cairo.reader.pool.refresh.enabled", false);
+            this.readerPoolRefreshInterval = getLong(properties, env, "cairo.reader.pool.refresh.interval", 10);
             this.sqlLatestByRowCount = getInt(properties, env, "cairo.sql.latest.by.row.count", 1000);
             this.sqlHashJoinLightValuePageSize = getIntSize(properties, env, "cairo.sql.hash.join.light.value.page.size", 1048576);
             this.sqlHashJoinLightValueMaxPages = getIntSize(properties, env, "cairo.sql.hash.join.light.value.max.pages", Integer.MAX_VALUE);
@@ -644,6 +712,17 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.tableBlockWriterQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.table.block.writer.queue.capacity", 256));
             this.columnIndexerQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.column.indexer.queue.capacity", 64));
             this.vectorAggregateQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.vector.aggregate.queue.capacity", 128));
+            this.parallelFilterQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.parallel.filter.queue.capacity", 128));
+            this.sqlParallelFilterFrameRows = getLong(properties, env, "cairo.sql.parallel.filter.frame.rows", 1_000_000);
+            this.sqlParallelFilterEnabled = getBoolean(properties, env, "cairo.sql.parallel.filter.enabled", true);
+            this.parallelGroupByQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.parallel.group.by.queue.capacity", 128));
+            this.sqlParallelGroupByFrameRows = getLong(properties, env, "cairo.sql.parallel.group.by.frame.rows", 1_000_000);
+            this.sqlParallelGroupByEnabled = getBoolean(properties, env, "cairo.sql.parallel.group.by.enabled", true);
+            this.sqlParallelSampleByEnabled = getBoolean(properties, env, "cairo.sql.parallel.sample.by.enabled", true);
+            this.parallelHashJoinQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.parallel.hash.join.queue.capacity", 256));
+            this.textImportQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.text.import.queue.capacity", 64));
+            this.sqlParallelHashJoinMinRows = getLong(properties, env, "cairo.sql.parallel.hash.join.min.rows", 1_000_000);
+            this.sqlFilterCompilerEnabled = getBoolean(properties, env, "cairo.sql.filter.compiler.enabled", true);
             this.o3CallbackQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.o3.callback.queue.capacity", 128));
             this.o3PartitionQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.o3.partition.queue.capacity", 128));
             this.o3OpenColumnQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.o3.open.column.queue.capacity", 128));
@@ -1251,6 +1330,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return utf8SinkSize;
         }
 
+        @Override
+        public long getParallelImportChunkSize() {
+            return parallelImportChunkSize;
+        }
+
         @Override
         public InputFormatConfiguration getInputFormatConfiguration() {
             return inputFormatConfiguration;
@@ -1677,6 +1761,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlSortLightValueMaxPages;
         }
 
+        @Override
+        public int getSqlLimitedSortMaxRows() {
+            return sqlLimitedSortMaxRows;
+        }
+
         @Override
         public int getSqlHashJoinValuePageSize() {
             return sqlHashJoinValuePageSize;
@@ -1687,6 +1776,116 @@ public class PropServerConfiguration implements ServerConfiguration {
             return sqlHashJoinValueMaxPages;
         }
 
+        @Override
+        public long getSqlSpillMemoryLimit() {
+            return sqlSpillMemoryLimit;
+        }
+
+        @Override
+        public int getSqlSpillPartitionCount() {
+            return sqlSpillPartitionCount;
+        }
+
+        @Override
+        public long getSqlSpillMaxSize() {
+            return sqlSpillMaxSize;
+        }
+
+        @Override
+        public CharSequence getSqlSpillRoot() {
+            return sqlSpillRoot;
+        }
+
+        @Override
+        public boolean isSqlResultCacheEnabled() {
+            return sqlResultCacheEnabled;
+        }
+
+        @Override
+        public long getSqlResultCacheSize() {
+            return sqlResultCacheSize;
+        }
+
+        @Override
+        public long getSqlResultCacheMaxEntrySize() {
+            return sqlResultCacheMaxEntrySize;
+        }
+
+        @Override
+        public int getSqlResultCachePageSize() {
+            return sqlResultCachePageSize;
+        }
+
+        @Override
+        public boolean isPartitionStatsEnabled() {
+            return partitionStatsEnabled;
+        }
+
+        @Override
+        public long getPartitionStatsBlockSize() {
+            return partitionStatsBlockSize;
+        }
+
+        @Override
+        public boolean isPartitionBloomFilterEnabled() {
+            return partitionBloomFilterEnabled;
+        }
+
+        @Override
+        public int getPartitionBloomFilterBitsPerRow() {
+            return partitionBloomFilterBitsPerRow;
+        }
+
+        @Override
+        public long getPartitionCompressionAge() {
+            return partitionCompressionAge;
+        }
+
+        @Override
+        public int getPartitionCompressionBlockSize() {
+            return partitionCompressionBlockSize;
+        }
+
+        @Override
+        public long getPartitionCompressionCacheSize() {
+            return partitionCompressionCacheSize;
+        }
+
+        @Override
+        public int getPartitionCompressionQueueCapacity() {
+            return partitionCompressionQueueCapacity;
+        }
+
+        @Override
+        public boolean isIndexCompressionEnabled() {
+            return indexCompressionEnabled;
+        }
+
+        @Override
+        public boolean isWalEnabled() {
+            return walEnabled;
+        }
+
+        @Override
+        public int getWalSegmentRolloverRowCount() {
+            return walSegmentRolloverRowCount;
+        }
+
+        @Override
+        public int getWalApplyRetryCount() {
+            return walApplyRetryCount;
+        }
+
+        @Override
+        public boolean isReaderPoolRefreshEnabled() {
+            return readerPoolRefreshEnabled;
+        }
+
+        @Override
+        public long getReaderPoolRefreshInterval() {
+            return readerPoolRefreshInterval;
+        }
+
         @Override
         public int getSqlAnalyticStorePageSize() {
             return sqlAnalyticStorePageSize;
@@ -1852,6 +2051,61 @@ public class PropServerConfiguration implements ServerConfiguration {
             return vectorAggregateQueueCapacity;
         }
 
+        @Override
+        public int getParallelFilterQueueCapacity() {
+            return parallelFilterQueueCapacity;
+        }
+
+        @Override
+        public long getSqlParallelFilterFrameRows() {
+            return sqlParallelFilterFrameRows;
+        }
+
+        @Override
+        public boolean isSqlParallelFilterEnabled() {
+            return sqlParallelFilterEnabled;
+        }
+
+        @Override
+        public int getParallelGroupByQueueCapacity() {
+            return parallelGroupByQueueCapacity;
+        }
+
+        @Override
+        public long getSqlParallelGroupByFrameRows() {
+            return sqlParallelGroupByFrameRows;
+        }
+
+        @Override
+        public boolean isSqlParallelGroupByEnabled() {
+            return sqlParallelGroupByEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelSampleByEnabled() {
+            return sqlParallelSampleByEnabled;
+        }
+
+        @Override
+        public int getParallelHashJoinQueueCapacity() {
+            return parallelHashJoinQueueCapacity;
+        }
+
+        @Override
+        public int getTextImportQueueCapacity() {
+            return textImportQueueCapacity;
+        }
+
+        @Override
+        public long getSqlParallelHashJoinMinRows() {
+            return sqlParallelHashJoinMinRows;
+        }
+
+        @Override
+        public boolean isSqlFilterCompilerEnabled() {
+            return sqlFilterCompilerEnabled;
+        }
+
         @Override
         public int getO3CallbackQueueCapacity() {
             return o3CallbackQueueCapacity;
@@ -2461,6 +2715,16 @@ public class PropServerConfiguration implements ServerConfiguration {
             return pgConnectionPoolInitialCapacity;
         }
 
+        @Override
+        public int getCopyBufferSize() {
+            return pgCopyBufferSize;
+        }
+
+        @Override
+        public int getCopyCommitBatchSize() {
+            return pgCopyCommitBatchSize;
+        }
+
         @Override
         public String getDefaultPassword() {
             return pgPassword;
@@ -137,6 +137,8 @@ public class ServerMain {
         LogFactory.configureFromSystemProperties(workerPool);
         final CairoEngine cairoEngine = new CairoEngine(configuration.getCairoConfiguration());
         workerPool.assign(cairoEngine.getWriterMaintenanceJob());
+        workerPool.assign(cairoEngine.getWalApplyJob());
+        workerPool.assign(cairoEngine.getReaderRefreshJob());
         instancesToClean.add(cairoEngine);
 
         // The TelemetryJob is always needed (even when telemetry is off) because it is responsible for
@@ -155,6 +157,7 @@ public class ServerMain {
         workerPool.assign(new O3CopyJob(cairoEngine.getMessageBus()));
         workerPool.assign(new O3PurgeDiscoveryJob(cairoEngine.getMessageBus(), workerPool.getWorkerCount()));
         workerPool.assign(new O3PurgeJob(cairoEngine.getMessageBus()));
+        workerPool.assign(new PartitionCompressionJob(cairoEngine.getMessageBus()));
         O3Utils.initBuf(workerPool.getWorkerCount() + 1);
 
         Metrics metrics;
@@ -82,6 +82,10 @@ public abstract class AbstractIndexReader implements BitmapIndexReader {
         return valueMem.size();
     }
 
+    public long getMaxValue() {
+        return keyMem.getLong(BitmapIndexUtils.KEY_RESERVED_OFFSET_MAX_VALUE);
+    }
+
     public long getUnIndexedNullCount() {
         return unIndexedNullCount;
     }
@@ -44,6 +44,7 @@ public final class BitmapIndexUtils {
     static final int KEY_RESERVED_OFFSET_BLOCK_VALUE_COUNT = 17;
     static final int KEY_RESERVED_OFFSET_KEY_COUNT = 21;
     static final int KEY_RESERVED_OFFSET_SEQUENCE_CHECK = 29;
+    static final int KEY_RESERVED_OFFSET_MAX_VALUE = 38;
 
     static final byte SIGNATURE = (byte) 0xfa;
     static final int VALUE_BLOCK_FILE_RESERVED = 16;
@@ -52,6 +53,10 @@ public final class BitmapIndexUtils {
         return path.concat(name).put(".k").$();
     }
 
+    public static Path postingFileName(Path path, CharSequence name) {
+        return path.concat(name).put(".pi").$();
+    }
+
     public static Path valueFileName(Path path, CharSequence name) {
         return path.concat(name).put(".v").$();
     }
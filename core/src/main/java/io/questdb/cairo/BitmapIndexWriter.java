@@ -156,11 +156,11 @@ public class BitmapIndexWriter implements Closeable, Mutable {
     }
 
     public long getMaxValue() {
-        return keyMem.getLong(38L);
+        return keyMem.getLong(BitmapIndexUtils.KEY_RESERVED_OFFSET_MAX_VALUE);
     }
 
     public void setMaxValue(long maxValue) {
-        keyMem.putLong(38L, maxValue);
+        keyMem.putLong(BitmapIndexUtils.KEY_RESERVED_OFFSET_MAX_VALUE, maxValue);
     }
 
     final public void of(CairoConfiguration configuration, long keyFd, long valueFd, boolean init) {
@@ -143,10 +143,71 @@ public interface CairoConfiguration {
 
     int getSqlSortLightValueMaxPages();
 
+    // max LIMIT for which ORDER BY keeps only the required rows instead of sorting the whole cursor
+    int getSqlLimitedSortMaxRows();
+
     int getSqlHashJoinValuePageSize();
 
     int getSqlHashJoinValueMaxPages();
 
+    // memory that hash join or group by map may take before its input is partitioned to disk
+    long getSqlSpillMemoryLimit();
+
+    int getSqlSpillPartitionCount();
+
+    // total size of files single spilling operator may write
+    long getSqlSpillMaxSize();
+
+    // directory for temporary files of operators that spill to disk, stale files are removed on startup
+    CharSequence getSqlSpillRoot();
+
+    // shared cache of materialized query results, keyed by SQL text and bind variable values
+    boolean isSqlResultCacheEnabled();
+
+    long getSqlResultCacheSize();
+
+    long getSqlResultCacheMaxEntrySize();
+
+    int getSqlResultCachePageSize();
+
+    // per-partition column min/max statistics, written when partition is sealed and used to skip data frames
+    boolean isPartitionStatsEnabled();
+
+    long getPartitionStatsBlockSize();
+
+    // per-partition bloom filters of INT, LONG and STRING column values, built alongside statistics and used by equality filters
+    boolean isPartitionBloomFilterEnabled();
+
+    int getPartitionBloomFilterBitsPerRow();
+
+    // sealed partitions older than this, relative to max timestamp of the table, are compressed in background, 0 disables
+    long getPartitionCompressionAge();
+
+    int getPartitionCompressionBlockSize();
+
+    // size of decoded compressed columns, which are kept for reuse when no reader uses them
+    long getPartitionCompressionCacheSize();
+
+    int getPartitionCompressionQueueCapacity();
+
+    // bitmap indexes of sealed partitions are rewritten as compressed posting lists on commit,
+    // independently of column compression
+    boolean isIndexCompressionEnabled();
+
+    // partitioned tables are written through write-ahead log by SQL and PostgreSQL wire inserts,
+    // line protocol keeps using table writer and releases it at every maintenance commit
+    boolean isWalEnabled();
+
+    int getWalSegmentRolloverRowCount();
+
+    // consecutive failed attempts to apply WAL of a table, after which applying is suspended until restart
+    int getWalApplyRetryCount();
+
+    // idle pooled readers are reloaded in background after commits, so that queries do not pay for reload
+    boolean isReaderPoolRefreshEnabled();
+
+    long getReaderPoolRefreshInterval();
+
     int getSqlAnalyticStorePageSize();
 
     int getSqlAnalyticStoreMaxPages();
@@ -218,6 +279,47 @@ public interface CairoConfiguration {
 
     int getVectorAggregateQueueCapacity();
 
+    int getParallelFilterQueueCapacity();
+
+    /**
+     * Maximum number of rows in a slice of data frame that is filtered by one worker
+     * when filter is executed in parallel.
+     *
+     * @return number of rows
+     */
+    long getSqlParallelFilterFrameRows();
+
+    boolean isSqlParallelFilterEnabled();
+
+    int getParallelGroupByQueueCapacity();
+
+    /**
+     * Maximum number of rows in a slice of data frame that is aggregated by one worker
+     * when keyed group-by is executed in parallel.
+     *
+     * @return number of rows
+     */
+    long getSqlParallelGroupByFrameRows();
+
+    boolean isSqlParallelGroupByEnabled();
+
+    boolean isSqlParallelSampleByEnabled();
+
+    int getParallelHashJoinQueueCapacity();
+
+    int getTextImportQueueCapacity();
+
+    /**
+     * Inner hash join with at least this many rows on the build (slave) side is partitioned
+     * by join key and partitions are joined on the worker pool. Smaller joins build a single
+     * map on the thread that owns the cursor.
+     *
+     * @return number of rows
+     */
+    long getSqlParallelHashJoinMinRows();
+
+    boolean isSqlFilterCompilerEnabled();
+
     int getO3CallbackQueueCapacity();
 
     int getO3PartitionQueueCapacity();
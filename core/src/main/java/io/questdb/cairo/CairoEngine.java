@@ -58,6 +58,10 @@ public class CairoEngine implements Closeable, WriterSource {
     private final MPSequence telemetryPubSeq;
     private final SCSequence telemetrySubSeq;
     private final long tableIdMemSize;
+    private final ResultCache resultCache;
+    private final ConcurrentHashMap<WalSequencer> walSequencers = new ConcurrentHashMap<>();
+    private final WalApplyJob walApplyJob;
+    private final ReaderRefreshJob readerRefreshJob;
     private long tableIdFd = -1;
     private long tableIdMem = 0;
 
@@ -67,6 +71,8 @@ public class CairoEngine implements Closeable, WriterSource {
         this.writerPool = new WriterPool(configuration, messageBus);
         this.readerPool = new ReaderPool(configuration);
         this.writerMaintenanceJob = new WriterMaintenanceJob(configuration);
+        this.walApplyJob = new WalApplyJob(this);
+        this.readerRefreshJob = new ReaderRefreshJob(configuration);
         if (configuration.getTelemetryConfiguration().getEnabled()) {
             this.telemetryQueue = new RingQueue<>(TelemetryTask::new, configuration.getTelemetryConfiguration().getQueueCapacity());
             this.telemetryPubSeq = new MPSequence(telemetryQueue.getCapacity());
@@ -77,7 +83,9 @@ public class CairoEngine implements Closeable, WriterSource {
             this.telemetryPubSeq = null;
             this.telemetrySubSeq = null;
         }
+        this.resultCache = configuration.isSqlResultCacheEnabled() ? new ResultCache(configuration) : null;
         this.tableIdMemSize = Files.PAGE_SIZE;
+        RecordChainSpill.removeStaleFiles(configuration.getFilesFacade(), configuration.getSqlSpillRoot());
         openTableId();
         try {
             new EngineMigration(this, configuration).migrateEngineTo(ColumnType.VERSION);
@@ -108,10 +116,18 @@ public class CairoEngine implements Closeable, WriterSource {
 
     @Override
     public void close() {
+        Misc.free(walApplyJob);
+        // sequencers publish last transactions of idle WAL writers on close
+        for (WalSequencer sequencer : walSequencers.values()) {
+            sequencer.close();
+        }
+        walSequencers.clear();
         Misc.free(writerPool);
         Misc.free(readerPool);
         freeTableId();
         Misc.free(messageBus);
+        Misc.free(resultCache);
+        RecordChainSpill.removeStaleFiles(configuration.getFilesFacade(), configuration.getSqlSpillRoot());
     }
 
     public void createTable(
@@ -259,6 +275,18 @@ public class CairoEngine implements Closeable, WriterSource {
         return getStatus(securityContext, path, tableName, 0, tableName.length());
     }
 
+    /**
+     * @return shared cache of query results or null when cache is disabled
+     */
+    @Nullable
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public Job getReaderRefreshJob() {
+        return readerRefreshJob;
+    }
+
     public Sequence getTelemetryPubSequence() {
         return telemetryPubSeq;
     }
@@ -271,7 +299,65 @@ public class CairoEngine implements Closeable, WriterSource {
         return telemetrySubSeq;
     }
 
+    /**
+     * Returns writer of WAL, when WAL is enabled and table is partitioned, otherwise writer of the table.
+     * Unlike table writer, WAL writers are not exclusive and the call does not block on other
+     * producers of the table.
+     */
     @Override
+    public TableWriterAPI getTableWriterAPI(
+            CairoSecurityContext securityContext,
+            CharSequence tableName,
+            CharSequence lockReason
+    ) {
+        if (configuration.isWalEnabled()) {
+            securityContext.checkWritePermission();
+            try (TableReader reader = getReader(securityContext, tableName)) {
+                if (isWalSupported(reader)) {
+                    return getWalWriter0(tableName, reader);
+                }
+            }
+        }
+        return getWriter(securityContext, tableName, lockReason);
+    }
+
+    public Job getWalApplyJob() {
+        return walApplyJob;
+    }
+
+    public WalSequencer getWalSequencer(CharSequence tableName) {
+        WalSequencer sequencer = walSequencers.get(tableName);
+        if (sequencer == null) {
+            synchronized (walSequencers) {
+                sequencer = walSequencers.get(tableName);
+                if (sequencer == null) {
+                    sequencer = new WalSequencer(configuration, tableName);
+                    walSequencers.put(sequencer.getTableName(), sequencer);
+                }
+            }
+        }
+        return sequencer;
+    }
+
+    public void getWalSequencers(ObjList<WalSequencer> sink) {
+        for (WalSequencer sequencer : walSequencers.values()) {
+            sink.add(sequencer);
+        }
+    }
+
+    public WalWriter getWalWriter(
+            CairoSecurityContext securityContext,
+            CharSequence tableName
+    ) {
+        securityContext.checkWritePermission();
+        try (TableReader reader = getReader(securityContext, tableName)) {
+            if (!isWalSupported(reader)) {
+                throw CairoException.instance(0).put("WAL requires partitioned table with designated timestamp [table=").put(tableName).put(']');
+            }
+            return getWalWriter0(tableName, reader);
+        }
+    }
+
     public TableWriter getWriter(
             CairoSecurityContext securityContext,
             CharSequence tableName,
@@ -350,6 +436,13 @@ public class CairoEngine implements Closeable, WriterSource {
         return useful;
     }
 
+    /**
+     * Reloads idle pooled readers of tables that have been committed to since the readers were last used.
+     */
+    public boolean refreshIdleReaders() {
+        return readerPool.refreshIdle();
+    }
+
     public void remove(
             CairoSecurityContext securityContext,
             Path path,
@@ -359,6 +452,7 @@ public class CairoEngine implements Closeable, WriterSource {
         CharSequence lockedReason = lock(securityContext, tableName, "removeTable");
         if (null == lockedReason) {
             try {
+                freeWalSequencer(tableName);
                 path.of(configuration.getRoot()).concat(tableName).$();
                 int errno;
                 if ((errno = configuration.getFilesFacade().rmdir(path)) != 0) {
@@ -390,6 +484,7 @@ public class CairoEngine implements Closeable, WriterSource {
         CharSequence lockedReason = lock(securityContext, tableName, "renameTable");
         if (null == lockedReason) {
             try {
+                freeWalSequencer(tableName);
                 rename0(path, tableName, otherPath, newName);
             } finally {
                 unlock(securityContext, tableName, null, false);
@@ -425,6 +520,30 @@ public class CairoEngine implements Closeable, WriterSource {
         writerPool.unlock(tableName);
     }
 
+    private static boolean isWalSupported(TableReader reader) {
+        return reader.getPartitionedBy() != PartitionBy.NONE && reader.getMetadata().getTimestampIndex() > -1;
+    }
+
+    private void freeWalSequencer(CharSequence tableName) {
+        final WalSequencer sequencer = walSequencers.remove(tableName);
+        if (sequencer != null) {
+            sequencer.close();
+        }
+    }
+
+    private WalWriter getWalWriter0(CharSequence tableName, TableReader reader) {
+        final WalSequencer sequencer = getWalSequencer(tableName);
+        final long structureVersion = reader.getVersion();
+        WalWriter writer;
+        while ((writer = sequencer.popIdleWriter()) != null) {
+            if (writer.getStructureVersion() == structureVersion) {
+                return writer;
+            }
+            writer.doClose();
+        }
+        return new WalWriter(configuration, sequencer, reader.getMetadata(), structureVersion);
+    }
+
     private void rename0(Path path, CharSequence tableName, Path otherPath, CharSequence to) {
         final FilesFacade ff = configuration.getFilesFacade();
         final CharSequence root = configuration.getRoot();
@@ -449,6 +568,32 @@ public class CairoEngine implements Closeable, WriterSource {
         }
     }
 
+    private class ReaderRefreshJob extends SynchronizedJob {
+
+        private final MicrosecondClock clock;
+        private final long checkInterval;
+        private final boolean enabled;
+        private long last = 0;
+
+        public ReaderRefreshJob(CairoConfiguration configuration) {
+            this.clock = configuration.getMicrosecondClock();
+            this.checkInterval = configuration.getReaderPoolRefreshInterval() * 1000;
+            this.enabled = configuration.isReaderPoolRefreshEnabled();
+        }
+
+        @Override
+        protected boolean runSerially() {
+            if (enabled) {
+                long t = clock.getTicks();
+                if (last + checkInterval < t) {
+                    last = t;
+                    return refreshIdleReaders();
+                }
+            }
+            return false;
+        }
+    }
+
     private class WriterMaintenanceJob extends SynchronizedJob {
 
         private final MicrosecondClock clock;
@@ -0,0 +1,364 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.Unsafe;
+import io.questdb.std.Vect;
+import io.questdb.std.Zip;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+
+/**
+ * Compressed form of column file of sealed partition. Compressed copy of "column.d"
+ * is kept in "column.d.z" and has the following layout:
+ * <pre>
+ *     0  raw file size, bytes
+ *     8  block size, bytes
+ *     12 codec
+ *     16 block count
+ *     24 block offset table, block count + 1 longs, last entry is end of the file
+ * </pre>
+ * Each block is independent raw deflate stream of block size bytes of the original
+ * file, the last block can be shorter. Delta codec stores differences between adjacent
+ * longs of the block instead of the values, this shrinks timestamps, sequences and
+ * offsets of variable length columns considerably before deflate sees them.
+ */
+public final class ColumnCompression {
+    public static final int CODEC_DEFLATE = 0;
+    public static final int CODEC_DELTA_DEFLATE = 1;
+    public static final long HEADER_SIZE = 24;
+    private static final Log LOG = LogFactory.getLog(ColumnCompression.class);
+    private static final long OFFSET_RAW_SIZE = 0;
+    private static final long OFFSET_BLOCK_SIZE = 8;
+    private static final long OFFSET_CODEC = 12;
+    private static final long OFFSET_BLOCK_COUNT = 16;
+
+    private ColumnCompression() {
+    }
+
+    /**
+     * Compresses file into another file. Destination file is truncated and written
+     * from scratch, it is caller's responsibility to publish it atomically.
+     *
+     * @return size of compressed file
+     */
+    public static long compress(FilesFacade ff, LPSZ srcName, LPSZ dstName, int codec, int blockSize) {
+        assert blockSize > 0 && (blockSize & 7) == 0;
+        final long srcFd = TableUtils.openRO(ff, srcName, LOG);
+        long srcSize = 0;
+        long srcAddr = 0;
+        long dstFd = -1;
+        long z = 0;
+        long buf = 0;
+        long bufSize = 0;
+        try {
+            srcSize = ff.length(srcFd);
+            if (srcSize > 0) {
+                srcAddr = TableUtils.mapRO(ff, srcFd, srcSize);
+            }
+
+            final long blockCount = (srcSize + blockSize - 1) / blockSize;
+            final long headerSize = HEADER_SIZE + (blockCount + 1) * Long.BYTES;
+            final int outSize = deflateBound(blockSize);
+            bufSize = headerSize + outSize + (codec == CODEC_DELTA_DEFLATE ? blockSize : 0);
+            buf = Unsafe.malloc(bufSize);
+            final long out = buf + headerSize;
+            final long delta = out + outSize;
+
+            z = Zip.deflateInit();
+            if (z < 0) {
+                throw CairoException.instance(0).put("could not initialize deflate [ret=").put(z).put(']');
+            }
+
+            dstFd = TableUtils.openRW(ff, dstName, LOG);
+            if (!ff.truncate(dstFd, 0)) {
+                throw CairoException.instance(ff.errno()).put("could not truncate [file=").put(dstName).put(']');
+            }
+
+            long offset = headerSize;
+            for (long i = 0; i < blockCount; i++) {
+                final long lo = i * blockSize;
+                final int len = (int) Math.min(blockSize, srcSize - lo);
+                long in = srcAddr + lo;
+                if (codec == CODEC_DELTA_DEFLATE) {
+                    encodeDelta(in, delta, len);
+                    in = delta;
+                }
+
+                Zip.deflateReset(z);
+                Zip.setInput(z, in, len);
+                final int ret = Zip.deflate(z, out, outSize, true);
+                if (ret != Zip.Z_STREAM_END) {
+                    throw CairoException.instance(0).put("could not compress [file=").put(srcName).put(", ret=").put(ret).put(']');
+                }
+                final int n = outSize - Zip.availOut(z);
+                write(ff, dstFd, out, n, offset, dstName);
+                Unsafe.getUnsafe().putLong(buf + HEADER_SIZE + i * Long.BYTES, offset);
+                offset += n;
+            }
+            Unsafe.getUnsafe().putLong(buf + HEADER_SIZE + blockCount * Long.BYTES, offset);
+            Unsafe.getUnsafe().putLong(buf + OFFSET_RAW_SIZE, srcSize);
+            Unsafe.getUnsafe().putInt(buf + OFFSET_BLOCK_SIZE, blockSize);
+            Unsafe.getUnsafe().putInt(buf + OFFSET_CODEC, codec);
+            Unsafe.getUnsafe().putLong(buf + OFFSET_BLOCK_COUNT, blockCount);
+            write(ff, dstFd, buf, headerSize, 0, dstName);
+            if (ff.fsync(dstFd) != 0) {
+                throw CairoException.instance(ff.errno()).put("could not fsync [file=").put(dstName).put(']');
+            }
+            return offset;
+        } finally {
+            if (z > 0) {
+                Zip.deflateEnd(z);
+            }
+            if (buf != 0) {
+                Unsafe.free(buf, bufSize);
+            }
+            if (srcAddr != 0) {
+                ff.munmap(srcAddr, srcSize);
+            }
+            ff.close(srcFd);
+            if (dstFd != -1) {
+                ff.close(dstFd);
+            }
+        }
+    }
+
+    /**
+     * Decodes compressed file into memory.
+     *
+     * @param address start of compressed file in memory
+     * @param size    size of compressed file
+     * @param dst     memory of at least {@link #getRawSize(long)} bytes
+     */
+    public static void decompress(long address, long size, long dst) {
+        if (size < HEADER_SIZE) {
+            throw CairoException.instance(0).put("compressed file is too short [size=").put(size).put(']');
+        }
+        final long rawSize = getRawSize(address);
+        final int blockSize = Unsafe.getUnsafe().getInt(address + OFFSET_BLOCK_SIZE);
+        final int codec = Unsafe.getUnsafe().getInt(address + OFFSET_CODEC);
+        final long blockCount = Unsafe.getUnsafe().getLong(address + OFFSET_BLOCK_COUNT);
+        if (blockSize <= 0 || blockCount < 0 || blockCount != (rawSize + blockSize - 1) / blockSize
+                || HEADER_SIZE + (blockCount + 1) * Long.BYTES > size) {
+            throw CairoException.instance(0).put("corrupt compressed file header [rawSize=").put(rawSize)
+                    .put(", blockSize=").put(blockSize)
+                    .put(", blockCount=").put(blockCount)
+                    .put(']');
+        }
+
+        final long z = Zip.inflateInit(true);
+        if (z < 0) {
+            throw CairoException.instance(0).put("could not initialize inflate [ret=").put(z).put(']');
+        }
+        try {
+            final long offsets = address + HEADER_SIZE;
+            for (long i = 0; i < blockCount; i++) {
+                final long lo = i * blockSize;
+                final int len = (int) Math.min(blockSize, rawSize - lo);
+                final long blockLo = Unsafe.getUnsafe().getLong(offsets + i * Long.BYTES);
+                final long blockHi = Unsafe.getUnsafe().getLong(offsets + (i + 1) * Long.BYTES);
+                if (blockLo < HEADER_SIZE || blockHi < blockLo || blockHi > size) {
+                    throw CairoException.instance(0).put("corrupt compressed block [index=").put(i)
+                            .put(", lo=").put(blockLo)
+                            .put(", hi=").put(blockHi)
+                            .put(']');
+                }
+                Zip.inflateReset(z);
+                Zip.setInput(z, address + blockLo, (int) (blockHi - blockLo));
+                final int n = Zip.inflate(z, dst + lo, len, true);
+                if (n != len) {
+                    throw CairoException.instance(0).put("could not decompress block [index=").put(i)
+                            .put(", expected=").put(len)
+                            .put(", actual=").put(n)
+                            .put(']');
+                }
+                if (codec == CODEC_DELTA_DEFLATE) {
+                    decodeDelta(dst + lo, len);
+                }
+            }
+        } finally {
+            Zip.inflateEnd(z);
+        }
+    }
+
+    /**
+     * @param address start of compressed file in memory
+     * @return size of header and block offset table, bytes
+     */
+    public static long getHeaderSize(long address) {
+        return HEADER_SIZE + (Unsafe.getUnsafe().getLong(address + OFFSET_BLOCK_COUNT) + 1) * Long.BYTES;
+    }
+
+    public static long getRawSize(long address) {
+        return Unsafe.getUnsafe().getLong(address + OFFSET_RAW_SIZE);
+    }
+
+    static int codecOf(int columnType, boolean varLengthIndex) {
+        if (varLengthIndex) {
+            return CODEC_DELTA_DEFLATE;
+        }
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                return CODEC_DELTA_DEFLATE;
+            default:
+                return CODEC_DEFLATE;
+        }
+    }
+
+    /**
+     * Restores data files of the column from their compressed copies.
+     *
+     * @return true when column was decompressed by this call
+     */
+    static boolean decompressColumn(FilesFacade ff, Path path, Path other, int plen, CharSequence columnName, int columnType) {
+        boolean decompressed = decompressFile(ff, path, other, plen, columnName, TableUtils.FILE_SUFFIX_D);
+        if (ColumnType.isVariableLength(columnType)) {
+            decompressed |= decompressFile(ff, path, other, plen, columnName, TableUtils.FILE_SUFFIX_I);
+        }
+        return decompressed;
+    }
+
+    static boolean isCompressed(FilesFacade ff, Path path, int plen, CharSequence columnName) {
+        try {
+            return !ff.exists(TableUtils.dFile(path.trimTo(plen), columnName))
+                    && ff.exists(TableUtils.dzFile(path.trimTo(plen), columnName));
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    private static void decodeDelta(long address, int len) {
+        long prev = 0;
+        for (long p = address, hi = address + (len & ~7); p < hi; p += Long.BYTES) {
+            prev += Unsafe.getUnsafe().getLong(p);
+            Unsafe.getUnsafe().putLong(p, prev);
+        }
+    }
+
+    private static boolean decompressFile(FilesFacade ff, Path path, Path other, int plen, CharSequence columnName, CharSequence suffix) {
+        try {
+            path.trimTo(plen).concat(columnName).put(suffix).$();
+            final int len = path.length();
+            other.of(path).put(TableUtils.FILE_SUFFIX_Z).$();
+            if (!ff.exists(other)) {
+                return false;
+            }
+            if (ff.exists(path)) {
+                // uncompressed file outlived compression, it is the one to keep
+                ff.remove(other);
+                return false;
+            }
+
+            decompress(ff, other, path.chop$().put(".tmp").$());
+            other.trimTo(len).$();
+            try {
+                TableUtils.renameOrFail(ff, path, other);
+            } catch (CairoException e) {
+                ff.remove(path);
+                throw e;
+            }
+            // readers look for uncompressed file first, it is in place before compressed one goes
+            ff.remove(other.chop$().put(TableUtils.FILE_SUFFIX_Z).$());
+            LOG.info().$("decompressed [path=").$(path.trimTo(len).$()).I$();
+            return true;
+        } finally {
+            path.trimTo(plen);
+            other.trimTo(plen);
+        }
+    }
+
+    private static void decompress(FilesFacade ff, LPSZ srcName, LPSZ dstName) {
+        final long srcFd = TableUtils.openRO(ff, srcName, LOG);
+        long srcSize = 0;
+        long srcAddr = 0;
+        long dstFd = -1;
+        long dstSize = 0;
+        long dstAddr = 0;
+        try {
+            srcSize = ff.length(srcFd);
+            srcAddr = TableUtils.mapRO(ff, srcFd, srcSize);
+            dstSize = getRawSize(srcAddr);
+            dstFd = TableUtils.openRW(ff, dstName, LOG);
+            if (!ff.truncate(dstFd, dstSize)) {
+                throw CairoException.instance(ff.errno()).put("could not truncate [file=").put(dstName).put(", size=").put(dstSize).put(']');
+            }
+            if (dstSize > 0) {
+                dstAddr = TableUtils.mapRW(ff, dstFd, dstSize);
+                decompress(srcAddr, srcSize, dstAddr);
+            }
+            if (ff.fsync(dstFd) != 0) {
+                throw CairoException.instance(ff.errno()).put("could not fsync [file=").put(dstName).put(']');
+            }
+        } catch (Throwable e) {
+            if (dstFd != -1) {
+                ff.close(dstFd);
+                dstFd = -1;
+                ff.remove(dstName);
+            }
+            throw e;
+        } finally {
+            if (dstAddr != 0) {
+                ff.munmap(dstAddr, dstSize);
+            }
+            if (dstFd != -1) {
+                ff.close(dstFd);
+            }
+            if (srcAddr != 0) {
+                ff.munmap(srcAddr, srcSize);
+            }
+            ff.close(srcFd);
+        }
+    }
+
+    // zlib deflateBound() for raw streams with a little headroom
+    private static int deflateBound(int len) {
+        return len + (len >>> 12) + (len >>> 14) + (len >>> 25) + 64;
+    }
+
+    private static void encodeDelta(long src, long dst, int len) {
+        long prev = 0;
+        final long hi = len & ~7;
+        for (long i = 0; i < hi; i += Long.BYTES) {
+            final long value = Unsafe.getUnsafe().getLong(src + i);
+            Unsafe.getUnsafe().putLong(dst + i, value - prev);
+            prev = value;
+        }
+        if (hi < len) {
+            Vect.memcpy(src + hi, dst + hi, len - hi);
+        }
+    }
+
+    private static void write(FilesFacade ff, long fd, long address, long len, long offset, LPSZ name) {
+        if (ff.write(fd, address, len, offset) != len) {
+            throw CairoException.instance(ff.errno()).put("could not write [file=").put(name).put(", offset=").put(offset).put(']');
+        }
+    }
+}
@@ -39,10 +39,14 @@ import io.questdb.std.datetime.millitime.DateFormatUtils;
 import io.questdb.std.datetime.millitime.MillisecondClock;
 import io.questdb.std.datetime.millitime.MillisecondClockImpl;
 
+import java.io.File;
+
 public class DefaultCairoConfiguration implements CairoConfiguration {
 
     private final CharSequence root;
 
+    private final CharSequence spillRoot;
+
     private final TextConfiguration textConfiguration = new DefaultTextConfiguration();
 
     private final DefaultTelemetryConfiguration telemetryConfiguration = new DefaultTelemetryConfiguration();
@@ -54,6 +58,13 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
 
     public DefaultCairoConfiguration(CharSequence root) {
         this.root = Chars.toString(root);
+        // spill files are kept next to the database root rather than amongst table directories
+        if (root != null) {
+            final File parent = new File(this.root.toString()).getAbsoluteFile().getParentFile();
+            this.spillRoot = new File(parent != null ? parent : new File(this.root.toString()), "tmp").getAbsolutePath();
+        } else {
+            this.spillRoot = null;
+        }
         Rnd rnd = new Rnd(NanosecondClockImpl.INSTANCE.getTicks(), MicrosecondClockImpl.INSTANCE.getTicks());
         this.databaseIdLo = rnd.nextLong();
         this.databaseIdHi = rnd.nextLong();
@@ -311,6 +322,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public int getSqlLimitedSortMaxRows() {
+        return 10_000;
+    }
+
     @Override
     public int getSqlHashJoinValuePageSize() {
         return Numbers.SIZE_1MB * 16;
@@ -321,6 +337,116 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public long getSqlSpillMemoryLimit() {
+        return Numbers.SIZE_1MB * 1024L;
+    }
+
+    @Override
+    public int getSqlSpillPartitionCount() {
+        return 32;
+    }
+
+    @Override
+    public long getSqlSpillMaxSize() {
+        return Numbers.SIZE_1MB * 1024L * 16L;
+    }
+
+    @Override
+    public CharSequence getSqlSpillRoot() {
+        return spillRoot;
+    }
+
+    @Override
+    public boolean isSqlResultCacheEnabled() {
+        return false;
+    }
+
+    @Override
+    public long getSqlResultCacheSize() {
+        return 64 * Numbers.SIZE_1MB;
+    }
+
+    @Override
+    public long getSqlResultCacheMaxEntrySize() {
+        return 4 * Numbers.SIZE_1MB;
+    }
+
+    @Override
+    public int getSqlResultCachePageSize() {
+        return 64 * 1024;
+    }
+
+    @Override
+    public boolean isPartitionStatsEnabled() {
+        return false;
+    }
+
+    @Override
+    public long getPartitionStatsBlockSize() {
+        return 64 * 1024;
+    }
+
+    @Override
+    public boolean isPartitionBloomFilterEnabled() {
+        return false;
+    }
+
+    @Override
+    public int getPartitionBloomFilterBitsPerRow() {
+        return 10;
+    }
+
+    @Override
+    public long getPartitionCompressionAge() {
+        return 0;
+    }
+
+    @Override
+    public int getPartitionCompressionBlockSize() {
+        return 1024 * 1024;
+    }
+
+    @Override
+    public long getPartitionCompressionCacheSize() {
+        return 256 * 1024 * 1024L;
+    }
+
+    @Override
+    public int getPartitionCompressionQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public boolean isIndexCompressionEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isWalEnabled() {
+        return false;
+    }
+
+    @Override
+    public int getWalSegmentRolloverRowCount() {
+        return 200_000;
+    }
+
+    @Override
+    public int getWalApplyRetryCount() {
+        return 3;
+    }
+
+    @Override
+    public boolean isReaderPoolRefreshEnabled() {
+        return false;
+    }
+
+    @Override
+    public long getReaderPoolRefreshInterval() {
+        return 10;
+    }
+
     @Override
     public int getSqlAnalyticStorePageSize() {
         return 4 * 1024;
@@ -486,6 +612,61 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public int getParallelFilterQueueCapacity() {
+        return 1024;
+    }
+
+    @Override
+    public long getSqlParallelFilterFrameRows() {
+        return 1_000_000;
+    }
+
+    @Override
+    public boolean isSqlParallelFilterEnabled() {
+        return true;
+    }
+
+    @Override
+    public int getParallelGroupByQueueCapacity() {
+        return 1024;
+    }
+
+    @Override
+    public long getSqlParallelGroupByFrameRows() {
+        return 1_000_000;
+    }
+
+    @Override
+    public boolean isSqlParallelGroupByEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlParallelSampleByEnabled() {
+        return true;
+    }
+
+    @Override
+    public int getParallelHashJoinQueueCapacity() {
+        return 256;
+    }
+
+    @Override
+    public int getTextImportQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public long getSqlParallelHashJoinMinRows() {
+        return 1_000_000;
+    }
+
+    @Override
+    public boolean isSqlFilterCompilerEnabled() {
+        return true;
+    }
+
     @Override
     public int getO3CallbackQueueCapacity() {
         return 1024;
@@ -25,12 +25,39 @@
 package io.questdb.cairo;
 
 import io.questdb.cairo.sql.DataFrame;
+import io.questdb.cairo.sql.DataFrameCursor;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
 import org.jetbrains.annotations.Nullable;
 
 public class FullFwdDataFrameCursor extends AbstractFullDataFrameCursor {
+    private final PartitionStatsFilter statsFilter;
+    // remainder of partition that is yet to be split into frames by statistics
+    private int framePartitionIndex;
+    private long frameRowLo;
+    private long frameRowHi;
+
+    public FullFwdDataFrameCursor() {
+        this(null);
+    }
+
+    public FullFwdDataFrameCursor(@Nullable PartitionStatsFilter statsFilter) {
+        this.statsFilter = statsFilter;
+    }
+
+    @Override
+    public void close() {
+        if (statsFilter != null) {
+            statsFilter.clear();
+        }
+        super.close();
+    }
 
     @Override
     public @Nullable DataFrame next() {
+        if (statsFilter != null) {
+            return nextPruned();
+        }
         while (this.partitionIndex < partitionHi) {
             final long hi = getTableReader().openPartition(partitionIndex);
             if (hi < 1) {
@@ -47,9 +74,49 @@ public class FullFwdDataFrameCursor extends AbstractFullDataFrameCursor {
         return null;
     }
 
+    public DataFrameCursor of(TableReader reader, SqlExecutionContext executionContext) throws SqlException {
+        if (statsFilter != null) {
+            statsFilter.of(reader, executionContext);
+        }
+        return of(reader);
+    }
 
     @Override
     public void toTop() {
         this.partitionIndex = 0;
+        this.frameRowLo = 0;
+        this.frameRowHi = 0;
+        if (statsFilter != null) {
+            statsFilter.clear();
+        }
+    }
+
+    private DataFrame nextPruned() {
+        while (true) {
+            if (frameRowLo < frameRowHi) {
+                final long lo = statsFilter.findFrameLo(frameRowLo, frameRowHi);
+                if (lo < frameRowHi) {
+                    frameRowLo = statsFilter.findFrameHi(lo, frameRowHi);
+                    frame.partitionIndex = framePartitionIndex;
+                    frame.rowLo = lo;
+                    frame.rowHi = frameRowLo;
+                    return frame;
+                }
+                frameRowLo = frameRowHi;
+            }
+
+            if (partitionIndex >= partitionHi) {
+                return null;
+            }
+
+            // partition is not opened when its statistics rule out the filter
+            if (!statsFilter.skipPartition(partitionIndex)) {
+                framePartitionIndex = partitionIndex;
+                frameRowLo = 0;
+                // missing partition yields negative row count and no frames
+                frameRowHi = getTableReader().openPartition(partitionIndex);
+            }
+            partitionIndex++;
+        }
     }
 }
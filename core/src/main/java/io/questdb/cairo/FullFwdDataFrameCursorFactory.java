@@ -25,17 +25,38 @@
 package io.questdb.cairo;
 
 import io.questdb.cairo.sql.DataFrameCursor;
+import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.Misc;
+import org.jetbrains.annotations.Nullable;
 
 public class FullFwdDataFrameCursorFactory extends AbstractDataFrameCursorFactory {
-    private final FullFwdDataFrameCursor cursor = new FullFwdDataFrameCursor();
+    private final FullFwdDataFrameCursor cursor;
+    private final PartitionStatsFilter statsFilter;
 
     public FullFwdDataFrameCursorFactory(CairoEngine engine, String tableName, int tableId, long tableVersion) {
+        this(engine, tableName, tableId, tableVersion, null);
+    }
+
+    public FullFwdDataFrameCursorFactory(
+            CairoEngine engine,
+            String tableName,
+            int tableId,
+            long tableVersion,
+            @Nullable PartitionStatsFilter statsFilter
+    ) {
         super(engine, tableName, tableId, tableVersion);
+        this.cursor = new FullFwdDataFrameCursor(statsFilter);
+        this.statsFilter = statsFilter;
+    }
+
+    @Override
+    public void close() {
+        Misc.free(statsFilter);
     }
 
     @Override
-    public DataFrameCursor getCursor(SqlExecutionContext executionContext) {
-        return cursor.of(getReader(executionContext.getCairoSecurityContext()));
+    public DataFrameCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        return cursor.of(getReader(executionContext.getCairoSecurityContext()), executionContext);
     }
-}
\ No newline at end of file
+}
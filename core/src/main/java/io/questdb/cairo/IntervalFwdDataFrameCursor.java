@@ -26,9 +26,18 @@ package io.questdb.cairo;
 
 import io.questdb.cairo.sql.DataFrame;
 import io.questdb.cairo.vm.api.MemoryR;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.model.RuntimeIntrinsicIntervalModel;
+import org.jetbrains.annotations.Nullable;
 
 public class IntervalFwdDataFrameCursor extends AbstractIntervalDataFrameCursor {
+    private final PartitionStatsFilter statsFilter;
+    // interval intersection that is yet to be split into frames by statistics
+    private int framePartitionIndex;
+    private long frameRowLo;
+    private long frameRowHi;
+
     /**
      * Cursor for data frames that chronologically intersect collection of intervals.
      * Data frame low and high row will be within intervals inclusive of edges. Intervals
@@ -39,14 +48,43 @@ public class IntervalFwdDataFrameCursor extends AbstractIntervalDataFrameCursor
      * @param timestampIndex index of timestamp column in the readr that is used by this cursor
      */
     public IntervalFwdDataFrameCursor(RuntimeIntrinsicIntervalModel intervals, int timestampIndex) {
+        this(intervals, timestampIndex, null);
+    }
+
+    /**
+     * @param statsFilter optional value ranges, partitions and blocks of rows outside of them are skipped
+     */
+    public IntervalFwdDataFrameCursor(RuntimeIntrinsicIntervalModel intervals, int timestampIndex, @Nullable PartitionStatsFilter statsFilter) {
         super(intervals, timestampIndex);
+        this.statsFilter = statsFilter;
+    }
+
+    @Override
+    public void close() {
+        if (statsFilter != null) {
+            statsFilter.clear();
+        }
+        super.close();
     }
 
     @Override
     public DataFrame next() {
+        if (frameRowLo < frameRowHi) {
+            final DataFrame frame = nextPrunedFrame();
+            if (frame != null) {
+                return frame;
+            }
+        }
+
         // order of logical operations is important
         // we are not calculating partition rages when intervals are empty
         while (intervalsLo < intervalsHi && partitionLo < partitionHi) {
+            if (statsFilter != null && statsFilter.skipPartition(partitionLo)) {
+                partitionLimit = 0;
+                partitionLo++;
+                continue;
+            }
+
             // We don't need to worry about column tops and null column because we
             // are working with timestamp. Timestamp column cannot be added to existing table.
             long rowCount = reader.openPartition(partitionLo);
@@ -109,6 +147,17 @@ public class IntervalFwdDataFrameCursor extends AbstractIntervalDataFrameCursor
                         intervalsLo++;
                     }
 
+                    if (statsFilter != null) {
+                        framePartitionIndex = dataFrame.partitionIndex;
+                        frameRowLo = lo;
+                        frameRowHi = hi;
+                        final DataFrame frame = nextPrunedFrame();
+                        if (frame != null) {
+                            return frame;
+                        }
+                        continue;
+                    }
+
                     return dataFrame;
                 }
                 // interval yielded empty data frame
@@ -122,9 +171,35 @@ public class IntervalFwdDataFrameCursor extends AbstractIntervalDataFrameCursor
         return null;
     }
 
+    @Override
+    public void of(TableReader reader, SqlExecutionContext sqlContext) throws SqlException {
+        if (statsFilter != null) {
+            statsFilter.of(reader, sqlContext);
+        }
+        super.of(reader, sqlContext);
+    }
+
     @Override
     public void toTop() {
         super.toTop();
         partitionLimit = 0;
+        frameRowLo = 0;
+        frameRowHi = 0;
+        if (statsFilter != null) {
+            statsFilter.clear();
+        }
+    }
+
+    private DataFrame nextPrunedFrame() {
+        final long lo = statsFilter.findFrameLo(frameRowLo, frameRowHi);
+        if (lo < frameRowHi) {
+            frameRowLo = statsFilter.findFrameHi(lo, frameRowHi);
+            dataFrame.partitionIndex = framePartitionIndex;
+            dataFrame.rowLo = lo;
+            dataFrame.rowHi = frameRowLo;
+            return dataFrame;
+        }
+        frameRowLo = frameRowHi;
+        return null;
     }
 }
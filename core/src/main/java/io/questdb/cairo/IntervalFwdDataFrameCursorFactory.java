@@ -29,10 +29,12 @@ import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.model.RuntimeIntrinsicIntervalModel;
 import io.questdb.std.Misc;
+import org.jetbrains.annotations.Nullable;
 
 public class IntervalFwdDataFrameCursorFactory extends AbstractDataFrameCursorFactory {
     private final IntervalFwdDataFrameCursor cursor;
     private final RuntimeIntrinsicIntervalModel intervals;
+    private final PartitionStatsFilter statsFilter;
 
     public IntervalFwdDataFrameCursorFactory(
             CairoEngine engine,
@@ -41,10 +43,23 @@ public class IntervalFwdDataFrameCursorFactory extends AbstractDataFrameCursorFa
             long tableVersion,
             RuntimeIntrinsicIntervalModel intervals,
             int timestampIndex
+    ) {
+        this(engine, tableName, tableId, tableVersion, intervals, timestampIndex, null);
+    }
+
+    public IntervalFwdDataFrameCursorFactory(
+            CairoEngine engine,
+            String tableName,
+            int tableId,
+            long tableVersion,
+            RuntimeIntrinsicIntervalModel intervals,
+            int timestampIndex,
+            @Nullable PartitionStatsFilter statsFilter
     ) {
         super(engine, tableName, tableId, tableVersion);
-        this.cursor = new IntervalFwdDataFrameCursor(intervals, timestampIndex);
+        this.cursor = new IntervalFwdDataFrameCursor(intervals, timestampIndex, statsFilter);
         this.intervals = intervals;
+        this.statsFilter = statsFilter;
     }
 
     @Override
@@ -56,5 +71,6 @@ public class IntervalFwdDataFrameCursorFactory extends AbstractDataFrameCursorFa
     @Override
     public void close() {
         Misc.free(intervals);
+        Misc.free(statsFilter);
     }
 }
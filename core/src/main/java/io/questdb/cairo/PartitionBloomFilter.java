@@ -0,0 +1,319 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.cairo.vm.api.MemoryR;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.Numbers;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.Path;
+
+/**
+ * Bloom filters of values of high cardinality column within sealed partition, one filter
+ * per block of rows. Filters are kept in "column.bf" file of partition directory and have
+ * the following layout:
+ * <pre>
+ *     0  block size, rows
+ *     8  partition row count filters were built for
+ *     16 block count
+ *     24 filter size, bytes
+ *     32 hash function count
+ *     40 filters, one per block of rows
+ * </pre>
+ * Null values are not added to filters, lookup of null value cannot use them. Integer
+ * values are hashed as long, so that lookup value type does not have to match column type.
+ */
+public final class PartitionBloomFilter {
+    public static final long HEADER_SIZE = 40;
+    private static final Log LOG = LogFactory.getLog(PartitionBloomFilter.class);
+    private static final long OFFSET_BLOCK_SIZE = 0;
+    private static final long OFFSET_ROW_COUNT = 8;
+    private static final long OFFSET_BLOCK_COUNT = 16;
+    private static final long OFFSET_FILTER_SIZE = 24;
+    private static final long OFFSET_HASH_COUNT = 32;
+    private static final long MIN_FILTER_SIZE = 8;
+    private static final int MAX_HASH_COUNT = 16;
+    private static final long STR_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private PartitionBloomFilter() {
+    }
+
+    public static long getBlockCount(MemoryR mem) {
+        return mem.getLong(OFFSET_BLOCK_COUNT);
+    }
+
+    public static long getBlockSize(MemoryR mem) {
+        return mem.getLong(OFFSET_BLOCK_SIZE);
+    }
+
+    public static long hashLong(long value) {
+        // murmur3 finalizer
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    public static long hashStr(CharSequence value) {
+        final int len = value.length();
+        long h = len;
+        for (int i = 0; i < len; i++) {
+            h = h * STR_HASH_MULTIPLIER + value.charAt(i);
+        }
+        return hashLong(h);
+    }
+
+    public static long hashStr(char value) {
+        return hashLong(STR_HASH_MULTIPLIER + value);
+    }
+
+    public static boolean isSupported(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks that mapped filters describe partition of given size.
+     */
+    public static boolean isValid(MemoryR mem, long partitionRowCount) {
+        if (mem.size() < HEADER_SIZE) {
+            return false;
+        }
+        final long blockSize = getBlockSize(mem);
+        final long blockCount = getBlockCount(mem);
+        final long filterSize = mem.getLong(OFFSET_FILTER_SIZE);
+        final long hashCount = mem.getLong(OFFSET_HASH_COUNT);
+        return mem.getLong(OFFSET_ROW_COUNT) == partitionRowCount
+                && blockSize > 0
+                && blockCount == (partitionRowCount + blockSize - 1) / blockSize
+                && filterSize >= MIN_FILTER_SIZE
+                && (filterSize & (filterSize - 1)) == 0
+                && hashCount > 0
+                && hashCount <= MAX_HASH_COUNT
+                && mem.size() >= HEADER_SIZE + blockCount * filterSize;
+    }
+
+    /**
+     * @param hash value hash as returned by one of hash methods
+     * @return false when no row of the block has the value, true when block may have it
+     */
+    public static boolean mightContain(MemoryR mem, long block, long hash) {
+        final long filterSize = mem.getLong(OFFSET_FILTER_SIZE);
+        final long hashCount = mem.getLong(OFFSET_HASH_COUNT);
+        final long filterOffset = HEADER_SIZE + block * filterSize;
+        final long mask = (filterSize << 3) - 1;
+        final long h1 = hash & 0xffffffffL;
+        final long h2 = (hash >>> 32) | 1;
+        for (long i = 0; i < hashCount; i++) {
+            final long bit = (h1 + i * h2) & mask;
+            if ((mem.getByte(filterOffset + (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hashStr(long address, int len) {
+        long h = len;
+        for (int i = 0; i < len; i++) {
+            h = h * STR_HASH_MULTIPLIER + Unsafe.getUnsafe().getChar(address + ((long) i << 1));
+        }
+        return hashLong(h);
+    }
+
+    private static void putHash(long filterAddress, long mask, int hashCount, long hash) {
+        final long h1 = hash & 0xffffffffL;
+        final long h2 = (hash >>> 32) | 1;
+        for (long i = 0; i < hashCount; i++) {
+            final long bit = (h1 + i * h2) & mask;
+            final long address = filterAddress + (bit >>> 3);
+            Unsafe.getUnsafe().putByte(address, (byte) (Unsafe.getUnsafe().getByte(address) | (1 << (bit & 7))));
+        }
+    }
+
+    private static void putFilters(
+            MemoryMARW filterMem,
+            long dataAddress,
+            long indexAddress,
+            int columnType,
+            long columnTop,
+            long rowCount,
+            long blockSize,
+            long filterSize,
+            int hashCount
+    ) {
+        final int tag = ColumnType.tagOf(columnType);
+        final long mask = (filterSize << 3) - 1;
+        final long filterAddress = Unsafe.malloc(filterSize);
+        try {
+            for (long lo = 0; lo < rowCount; lo += blockSize) {
+                final long hi = Math.min(lo + blockSize, rowCount);
+                Unsafe.getUnsafe().setMemory(filterAddress, filterSize, (byte) 0);
+                for (long row = Math.max(lo, columnTop); row < hi; row++) {
+                    final long columnRow = row - columnTop;
+                    switch (tag) {
+                        case ColumnType.INT:
+                            final int i = Unsafe.getUnsafe().getInt(dataAddress + (columnRow << 2));
+                            if (i != Numbers.INT_NaN) {
+                                putHash(filterAddress, mask, hashCount, hashLong(i));
+                            }
+                            break;
+                        case ColumnType.LONG:
+                            final long l = Unsafe.getUnsafe().getLong(dataAddress + (columnRow << 3));
+                            if (l != Numbers.LONG_NaN) {
+                                putHash(filterAddress, mask, hashCount, hashLong(l));
+                            }
+                            break;
+                        default:
+                            final long offset = Unsafe.getUnsafe().getLong(indexAddress + (columnRow << 3));
+                            final int len = Unsafe.getUnsafe().getInt(dataAddress + offset);
+                            if (len != TableUtils.NULL_LEN) {
+                                putHash(filterAddress, mask, hashCount, hashStr(dataAddress + offset + Integer.BYTES, len));
+                            }
+                            break;
+                    }
+                }
+                filterMem.putBlockOfBytes(filterAddress, filterSize);
+            }
+        } finally {
+            Unsafe.free(filterAddress, filterSize);
+        }
+    }
+
+    /**
+     * Builds filters of column in partition directory and atomically replaces existing
+     * filter file, readers that have old file mapped are not affected.
+     *
+     * @param path  partition directory, trimmed to plen on exit
+     * @param other scratch path
+     */
+    static void write(
+            FilesFacade ff,
+            MemoryMR dataMem,
+            MemoryMR indexMem,
+            MemoryMARW filterMem,
+            Path path,
+            Path other,
+            int plen,
+            CharSequence columnName,
+            int columnType,
+            long columnTop,
+            long rowCount,
+            long blockSize,
+            int bitsPerRow
+    ) {
+        final boolean varLength = ColumnType.isVariableLength(columnType);
+        try {
+            if (ColumnCompression.isCompressed(ff, path, plen, columnName)) {
+                // filters of compressed partition were written before it was compressed
+                return;
+            }
+            long columnRowCount = Math.max(0, rowCount - columnTop);
+            if (columnRowCount > 0 && !ff.exists(TableUtils.dFile(path.trimTo(plen), columnName))) {
+                // column was added after partition had been written, all its values are null
+                columnTop = rowCount;
+                columnRowCount = 0;
+            }
+            long dataAddress = 0;
+            long indexAddress = 0;
+            if (columnRowCount > 0) {
+                if (varLength) {
+                    final long indexSize = columnRowCount << 3;
+                    indexMem.of(ff, TableUtils.iFile(path.trimTo(plen), columnName), ff.getMapPageSize(), indexSize);
+                    dataMem.of(ff, TableUtils.dFile(path.trimTo(plen), columnName), ff.getMapPageSize(), Long.MAX_VALUE);
+                    if (indexMem.size() < indexSize || !isStrColumnComplete(dataMem, indexMem.getLong(indexSize - 8))) {
+                        logShortColumn(path.trimTo(plen), columnName, columnTop, rowCount);
+                        return;
+                    }
+                    indexAddress = indexMem.addressOf(0);
+                } else {
+                    final long dataSize = columnRowCount << ColumnType.pow2SizeOf(columnType);
+                    dataMem.of(ff, TableUtils.dFile(path.trimTo(plen), columnName), ff.getMapPageSize(), dataSize);
+                    if (dataMem.size() < dataSize) {
+                        logShortColumn(path.trimTo(plen), columnName, columnTop, rowCount);
+                        return;
+                    }
+                }
+                dataAddress = dataMem.addressOf(0);
+            }
+
+            final long filterSize = Math.max(MIN_FILTER_SIZE, Numbers.ceilPow2((Math.min(blockSize, rowCount) * bitsPerRow + 7) >>> 3));
+            // optimal number of hash functions is ln(2) times bits per value
+            final int hashCount = Math.max(1, Math.min(MAX_HASH_COUNT, (int) Math.round(bitsPerRow * Math.log(2))));
+            other.of(path.trimTo(plen)).concat(columnName).put(TableUtils.FILE_SUFFIX_BF).put(".tmp").$();
+            if (ff.exists(other)) {
+                ff.remove(other);
+            }
+            filterMem.of(ff, other, ff.getPageSize());
+            try {
+                filterMem.putLong(blockSize);
+                filterMem.putLong(rowCount);
+                filterMem.putLong((rowCount + blockSize - 1) / blockSize);
+                filterMem.putLong(filterSize);
+                filterMem.putLong(hashCount);
+                putFilters(filterMem, dataAddress, indexAddress, columnType, columnTop, rowCount, blockSize, filterSize, hashCount);
+            } finally {
+                filterMem.close();
+            }
+
+            if (!ff.rename(other, TableUtils.bloomFilterFile(path.trimTo(plen), columnName))) {
+                LOG.error().$("could not publish bloom filter [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+                ff.remove(other);
+            }
+        } finally {
+            dataMem.close();
+            indexMem.close();
+            path.trimTo(plen);
+        }
+    }
+
+    private static boolean isStrColumnComplete(MemoryMR dataMem, long lastOffset) {
+        if (dataMem.size() < lastOffset + Integer.BYTES) {
+            return false;
+        }
+        final int len = dataMem.getInt(lastOffset);
+        return len == TableUtils.NULL_LEN || dataMem.size() >= lastOffset + Integer.BYTES + ((long) len << 1);
+    }
+
+    private static void logShortColumn(Path path, CharSequence columnName, long columnTop, long rowCount) {
+        LOG.error().$("column is shorter than partition, bloom filter is not written [path=").$(path)
+                .$(", column=").utf8(columnName)
+                .$(", rowCount=").$(rowCount)
+                .$(", columnTop=").$(columnTop)
+                .$(']').$();
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.MemoryCMRImpl;
+import io.questdb.cairo.vm.MemoryCMRZImpl;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.Misc;
+import io.questdb.std.datetime.microtime.MicrosecondClock;
+import io.questdb.std.str.Path;
+
+/**
+ * Builds index of symbol column for one sealed partition. Unlike {@link SymbolColumnIndexer}, which follows
+ * column being appended to, this indexer maps column file on its own, so that partitions of the same column
+ * can be indexed on the shared worker pool via {@link ColumnIndexerJob}.
+ */
+class PartitionColumnIndexer extends SymbolColumnIndexer {
+    private static final Log LOG = LogFactory.getLog(PartitionColumnIndexer.class);
+    private final Path path = new Path();
+    private CairoConfiguration configuration;
+    private CharSequence columnName;
+    private long columnTop;
+    private long partitionSize;
+    private boolean compressed;
+
+    @Override
+    public void close() {
+        super.close();
+        Misc.free(path);
+    }
+
+    @Override
+    public void refreshSourceAndIndex(long loRow, long hiRow) {
+        final MicrosecondClock clock = configuration.getMicrosecondClock();
+        final long start = clock.getTicks();
+        final int plen = path.length();
+        try {
+            configureWriter(configuration, path, columnName, columnTop);
+            try (MemoryMR mem = openColumn(plen)) {
+                index(mem, loRow, hiRow);
+            }
+            // flush index while still on worker thread
+            getWriter().close();
+        } finally {
+            path.trimTo(plen);
+        }
+        LOG.info().$("indexed [path=").$(path)
+                .$(", column=").utf8(columnName)
+                .$(", rows=").$(hiRow - loRow)
+                .$(", time=").$(clock.getTicks() - start).$("us")
+                .I$();
+    }
+
+    long getColumnTop() {
+        return columnTop;
+    }
+
+    long getPartitionSize() {
+        return partitionSize;
+    }
+
+    PartitionColumnIndexer of(
+            CairoConfiguration configuration,
+            Path partitionPath,
+            CharSequence columnName,
+            long columnTop,
+            long partitionSize,
+            boolean compressed
+    ) {
+        this.configuration = configuration;
+        this.path.of(partitionPath);
+        this.columnName = columnName;
+        this.columnTop = columnTop;
+        this.partitionSize = partitionSize;
+        this.compressed = compressed;
+        return this;
+    }
+
+    private MemoryMR openColumn(int plen) {
+        if (compressed) {
+            return new MemoryCMRZImpl(configuration.getFilesFacade(), TableUtils.dzFile(path.trimTo(plen), columnName), configuration.getPartitionCompressionCacheSize());
+        }
+        return new MemoryCMRImpl(
+                configuration.getFilesFacade(),
+                TableUtils.dFile(path.trimTo(plen), columnName),
+                (partitionSize - columnTop) << ColumnType.pow2SizeOf(ColumnType.INT)
+        );
+    }
+}
@@ -0,0 +1,343 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.NativeLPSZ;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compression of sealed partitions of one table. Compressed copy of partition is built next to the
+ * partition, in "compress-[partition]" directory of the table: data files of columns are compressed,
+ * other files are linked or copied. Readers of the partition are not disturbed, {@link TableWriter}
+ * publishes the copy as new version of the partition on commit and purges the original directory
+ * the way O3 purges directories of rewritten partitions.
+ * <p>
+ * Request is prepared by the writer and either queued for {@link PartitionCompressionJob} or
+ * compressed by the writer itself. Writer owns the request, it reads outcome of the compression once
+ * the request is done and it can cancel queued or running compression at any time.
+ */
+public class PartitionCompressionRequest implements Closeable {
+    static final String DIR_PREFIX = "compress-";
+    private static final Log LOG = LogFactory.getLog(PartitionCompressionRequest.class);
+    private static final int STATUS_IDLE = 0;
+    private static final int STATUS_QUEUED = 1;
+    private static final int STATUS_RUNNING = 2;
+    private static final int STATUS_DONE = 3;
+    private static final int LONGS_PER_PARTITION = 4;
+    private static final int OFFSET_TIMESTAMP = 0;
+    private static final int OFFSET_NAME_TXN = 1;
+    private static final int OFFSET_SIZE = 2;
+    private static final int OFFSET_FILE_COUNT = 3;
+    private final AtomicInteger status = new AtomicInteger(STATUS_IDLE);
+    private final ObjList<String> columnNames = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    // timestamp, name txn, size and count of compressed files of every partition
+    private final LongList partitions = new LongList();
+    private final NativeLPSZ fileName = new NativeLPSZ();
+    private final FilesFacade ff;
+    private final String tablePath;
+    private final int partitionBy;
+    private final int blockSize;
+    private final int mkDirMode;
+    private Path path = new Path();
+    private Path other = new Path();
+    private long structureVersion;
+    private volatile boolean cancelled;
+
+    public PartitionCompressionRequest(CairoConfiguration configuration, CharSequence tablePath, int partitionBy) {
+        this.ff = configuration.getFilesFacade();
+        this.tablePath = Chars.toString(tablePath);
+        this.partitionBy = partitionBy;
+        this.blockSize = configuration.getPartitionCompressionBlockSize();
+        this.mkDirMode = configuration.getMkDirMode();
+    }
+
+    @Override
+    public void close() {
+        path = Misc.free(path);
+        other = Misc.free(other);
+    }
+
+    /**
+     * Compresses partitions of queued request. Compression of partition that fails is logged,
+     * partition stays as it is.
+     *
+     * @return false when request has been cancelled before it started
+     */
+    public boolean run() {
+        if (!status.compareAndSet(STATUS_QUEUED, STATUS_RUNNING)) {
+            return false;
+        }
+        try {
+            for (int i = 0, n = getPartitionCount(); i < n && !cancelled; i++) {
+                try {
+                    partitions.setQuick(i * LONGS_PER_PARTITION + OFFSET_FILE_COUNT, compressPartition(i));
+                } catch (CairoException e) {
+                    LOG.error().$("could not compress partition [table=").$(tablePath)
+                            .$(", partition=").$ts(getPartitionTimestamp(i))
+                            .$(", errno=").$(e.getErrno())
+                            .$(", message=").$(e.getFlyweightMessage())
+                            .I$();
+                }
+            }
+        } finally {
+            status.set(STATUS_DONE);
+        }
+        return true;
+    }
+
+    void addPartition(long timestamp, long nameTxn, long size) {
+        for (int i = 0, n = getPartitionCount(); i < n; i++) {
+            if (getPartitionTimestamp(i) == timestamp) {
+                return;
+            }
+        }
+        partitions.add(timestamp);
+        partitions.add(nameTxn);
+        partitions.add(size);
+        partitions.add(-1);
+    }
+
+    /**
+     * Stops compression and waits for the job to let go of the request. Partitions that have not
+     * been compressed by then are left as they are.
+     */
+    void cancel() {
+        cancelled = true;
+        if (!status.compareAndSet(STATUS_QUEUED, STATUS_DONE)) {
+            while (status.get() == STATUS_RUNNING) {
+                LockSupport.parkNanos(1);
+            }
+        }
+    }
+
+    /**
+     * Removes compressed copies, which have not been published, and makes request available for reuse.
+     */
+    void clear() {
+        assert status.get() != STATUS_QUEUED && status.get() != STATUS_RUNNING;
+        for (int i = 0, n = getPartitionCount(); i < n; i++) {
+            // copy that has been published is no longer there
+            if (getFileCount(i) > 0 && ff.exists(setCompressedPath(other, i).slash$())) {
+                final int errno = ff.rmdir(other);
+                if (errno != 0) {
+                    LOG.error().$("could not remove [path=").$(other).$(", errno=").$(errno).I$();
+                }
+            }
+        }
+        partitions.clear();
+        columnNames.clear();
+        columnTypes.clear();
+        cancelled = false;
+        status.set(STATUS_IDLE);
+    }
+
+    /**
+     * Compresses partitions of the request on current thread.
+     *
+     * @throws CairoException when partition cannot be compressed
+     */
+    void compress() {
+        assert status.get() == STATUS_IDLE;
+        status.set(STATUS_RUNNING);
+        try {
+            for (int i = 0, n = getPartitionCount(); i < n; i++) {
+                partitions.setQuick(i * LONGS_PER_PARTITION + OFFSET_FILE_COUNT, compressPartition(i));
+            }
+        } finally {
+            status.set(STATUS_DONE);
+        }
+    }
+
+    boolean containsPartition(long timestamp) {
+        if (status.get() != STATUS_IDLE) {
+            for (int i = 0, n = getPartitionCount(); i < n; i++) {
+                if (getPartitionTimestamp(i) == timestamp) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return count of compressed files in the copy of the partition, 0 when partition
+     * has nothing to compress, -1 when copy has not been made
+     */
+    long getFileCount(int index) {
+        return partitions.getQuick(index * LONGS_PER_PARTITION + OFFSET_FILE_COUNT);
+    }
+
+    int getPartitionCount() {
+        return partitions.size() / LONGS_PER_PARTITION;
+    }
+
+    long getPartitionNameTxn(int index) {
+        return partitions.getQuick(index * LONGS_PER_PARTITION + OFFSET_NAME_TXN);
+    }
+
+    long getPartitionSize(int index) {
+        return partitions.getQuick(index * LONGS_PER_PARTITION + OFFSET_SIZE);
+    }
+
+    long getPartitionTimestamp(int index) {
+        return partitions.getQuick(index * LONGS_PER_PARTITION + OFFSET_TIMESTAMP);
+    }
+
+    long getStructureVersion() {
+        return structureVersion;
+    }
+
+    boolean isDone() {
+        return status.get() == STATUS_DONE;
+    }
+
+    boolean isIdle() {
+        return status.get() == STATUS_IDLE;
+    }
+
+    void of(RecordMetadata metadata, long structureVersion) {
+        assert status.get() == STATUS_IDLE;
+        this.structureVersion = structureVersion;
+        partitions.clear();
+        columnNames.clear();
+        columnTypes.clear();
+        for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+            columnNames.add(Chars.toString(metadata.getColumnName(i)));
+            columnTypes.add(metadata.getColumnType(i));
+        }
+    }
+
+    void queued() {
+        status.set(STATUS_QUEUED);
+    }
+
+    Path setCompressedPath(Path path, int index) {
+        path.of(tablePath).slash().put(DIR_PREFIX);
+        TableUtils.setSinkForPartition(path, partitionBy, getPartitionTimestamp(index), false);
+        return path;
+    }
+
+    private int compressFile(int plen, int olen, CharSequence columnName, CharSequence suffix, int codec) {
+        if (!ff.exists(path.trimTo(plen).concat(columnName).put(suffix).$())) {
+            return 0;
+        }
+        other.trimTo(olen).concat(columnName).put(suffix).put(TableUtils.FILE_SUFFIX_Z).$();
+        final long rawSize = ff.length(path);
+        final long size = ColumnCompression.compress(ff, path, other, codec, blockSize);
+        LOG.debug().$("compressed [path=").$(other)
+                .$(", rawSize=").$(rawSize)
+                .$(", size=").$(size)
+                .I$();
+        return 1;
+    }
+
+    private long compressPartition(int index) {
+        final long timestamp = getPartitionTimestamp(index);
+        path.of(tablePath);
+        TableUtils.setPathForPartition(path, partitionBy, timestamp, false);
+        TableUtils.txnPartitionConditionally(path, getPartitionNameTxn(index));
+        final int plen = path.length();
+        final int olen = setCompressedPath(other, index).length();
+
+        boolean compressible = false;
+        for (int i = 0, n = columnNames.size(); i < n && !compressible; i++) {
+            compressible = ff.exists(TableUtils.dFile(path.trimTo(plen), columnNames.getQuick(i)));
+        }
+        if (!compressible) {
+            return 0;
+        }
+
+        if (ff.exists(other.slash$())) {
+            // left behind by the writer that crashed, or by the failed attempt
+            ff.rmdir(other);
+        }
+        if (ff.mkdir(other, mkDirMode) != 0) {
+            throw CairoException.instance(ff.errno()).put("could not create directory [path=").put(other).put(']');
+        }
+
+        try {
+            int count = 0;
+            for (int i = 0, n = columnNames.size(); i < n; i++) {
+                if (cancelled) {
+                    throw CairoException.instance(0).put("compression cancelled");
+                }
+                final String columnName = columnNames.getQuick(i);
+                final int columnType = columnTypes.getQuick(i);
+                count += compressFile(plen, olen, columnName, TableUtils.FILE_SUFFIX_D, ColumnCompression.codecOf(columnType, false));
+                if (ColumnType.isVariableLength(columnType)) {
+                    count += compressFile(plen, olen, columnName, TableUtils.FILE_SUFFIX_I, ColumnCompression.codecOf(columnType, true));
+                }
+            }
+            linkFiles(plen, olen);
+            LOG.info().$("compressed partition [path=").$(path.trimTo(plen).$())
+                    .$(", copy=").$(other.trimTo(olen).$())
+                    .$(", files=").$(count)
+                    .I$();
+            return count;
+        } catch (Throwable e) {
+            ff.rmdir(other.trimTo(olen).slash$());
+            throw e;
+        } finally {
+            path.trimTo(plen);
+            other.trimTo(olen);
+        }
+    }
+
+    // files of the partition that are not compressed are shared with the copy,
+    // files of sealed partitions are not modified in place
+    private void linkFiles(int plen, int olen) {
+        final long p = ff.findFirst(path.trimTo(plen).$());
+        if (p > 0) {
+            try {
+                do {
+                    if (ff.findType(p) != Files.DT_DIR) {
+                        fileName.of(ff.findName(p));
+                        // skip files that have been compressed and compressed files superseded by them
+                        if (ff.exists(other.trimTo(olen).concat(fileName).$())
+                                || ff.exists(other.trimTo(olen).concat(fileName).put(TableUtils.FILE_SUFFIX_Z).$())) {
+                            continue;
+                        }
+                        path.trimTo(plen).concat(fileName).$();
+                        other.trimTo(olen).concat(fileName).$();
+                        if (ff.hardLink(path, other) != 0 && ff.copy(path, other) < 0) {
+                            throw CairoException.instance(ff.errno()).put("could not copy [from=").put(path).put(", to=").put(other).put(']');
+                        }
+                    }
+                } while (ff.findNext(p) > 0);
+            } finally {
+                ff.findClose(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.cairo.vm.api.MemoryR;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.Numbers;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.Path;
+
+/**
+ * Min/max statistics of numeric column within sealed partition. Statistics are
+ * kept in "column.st" file of partition directory and have the following layout:
+ * <pre>
+ *     0  block size, rows
+ *     8  partition row count statistics were computed for
+ *     16 block count
+ *     24 partition entry, followed by one entry per block of rows
+ * </pre>
+ * Each entry is min (8 bytes), max (8 bytes) and null count (8 bytes). Integer
+ * columns store raw long values, null sentinels included. Float and double columns
+ * store double values of non-NaN rows and entry without such rows has min above max.
+ */
+public final class PartitionStats {
+    public static final long HEADER_SIZE = 24;
+    public static final long ENTRY_SIZE = 24;
+    private static final Log LOG = LogFactory.getLog(PartitionStats.class);
+    private static final long OFFSET_BLOCK_SIZE = 0;
+    private static final long OFFSET_ROW_COUNT = 8;
+    private static final long OFFSET_BLOCK_COUNT = 16;
+    private static final long ENTRY_OFFSET_MAX = 8;
+    private static final long ENTRY_OFFSET_NULL_COUNT = 16;
+
+    private PartitionStats() {
+    }
+
+    public static long getBlockCount(MemoryR mem) {
+        return mem.getLong(OFFSET_BLOCK_COUNT);
+    }
+
+    public static long getBlockSize(MemoryR mem) {
+        return mem.getLong(OFFSET_BLOCK_SIZE);
+    }
+
+    /**
+     * @param entryIndex 0 for the whole partition, block index + 1 for block of rows
+     */
+    public static double getMax(MemoryR mem, int columnType, long entryIndex) {
+        final long offset = HEADER_SIZE + entryIndex * ENTRY_SIZE + ENTRY_OFFSET_MAX;
+        return isFloatingPoint(columnType) ? mem.getDouble(offset) : (double) mem.getLong(offset);
+    }
+
+    public static double getMin(MemoryR mem, int columnType, long entryIndex) {
+        final long offset = HEADER_SIZE + entryIndex * ENTRY_SIZE;
+        return isFloatingPoint(columnType) ? mem.getDouble(offset) : (double) mem.getLong(offset);
+    }
+
+    public static long getNullCount(MemoryR mem, long entryIndex) {
+        return mem.getLong(HEADER_SIZE + entryIndex * ENTRY_SIZE + ENTRY_OFFSET_NULL_COUNT);
+    }
+
+    public static long getRowCount(MemoryR mem) {
+        return mem.getLong(OFFSET_ROW_COUNT);
+    }
+
+    public static boolean isSupported(int columnType) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks that mapped statistics describe partition of given size.
+     */
+    public static boolean isValid(MemoryR mem, long partitionRowCount) {
+        if (mem.size() < HEADER_SIZE) {
+            return false;
+        }
+        final long blockSize = getBlockSize(mem);
+        final long blockCount = getBlockCount(mem);
+        return getRowCount(mem) == partitionRowCount
+                && blockSize > 0
+                && blockCount == (partitionRowCount + blockSize - 1) / blockSize
+                && mem.size() >= HEADER_SIZE + (blockCount + 1) * ENTRY_SIZE;
+    }
+
+    private static boolean isFloatingPoint(int columnType) {
+        final int tag = ColumnType.tagOf(columnType);
+        return tag == ColumnType.FLOAT || tag == ColumnType.DOUBLE;
+    }
+
+    private static long getIntegerNull(int tag) {
+        switch (tag) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+                return 0;
+            case ColumnType.INT:
+                return Numbers.INT_NaN;
+            default:
+                return Numbers.LONG_NaN;
+        }
+    }
+
+    private static long getIntegerValue(long address, long row, int tag) {
+        switch (tag) {
+            case ColumnType.BYTE:
+                return Unsafe.getUnsafe().getByte(address + row);
+            case ColumnType.SHORT:
+                return Unsafe.getUnsafe().getShort(address + (row << 1));
+            case ColumnType.INT:
+                return Unsafe.getUnsafe().getInt(address + (row << 2));
+            default:
+                return Unsafe.getUnsafe().getLong(address + (row << 3));
+        }
+    }
+
+    private static double getFloatingPointValue(long address, long row, int tag) {
+        if (tag == ColumnType.FLOAT) {
+            return Unsafe.getUnsafe().getFloat(address + (row << 2));
+        }
+        return Unsafe.getUnsafe().getDouble(address + (row << 3));
+    }
+
+    private static void putEntries(MemoryMARW statsMem, long dataAddress, int columnType, long columnTop, long rowCount, long blockSize) {
+        final int tag = ColumnType.tagOf(columnType);
+        final long partitionEntryOffset = statsMem.getAppendOffset();
+        statsMem.jumpTo(partitionEntryOffset + ENTRY_SIZE);
+
+        if (isFloatingPoint(columnType)) {
+            double partitionMin = Double.POSITIVE_INFINITY;
+            double partitionMax = Double.NEGATIVE_INFINITY;
+            long partitionNullCount = 0;
+            for (long lo = 0; lo < rowCount; lo += blockSize) {
+                final long hi = Math.min(lo + blockSize, rowCount);
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                long nullCount = 0;
+                for (long row = lo; row < hi; row++) {
+                    final double value = row < columnTop ? Double.NaN : getFloatingPointValue(dataAddress, row - columnTop, tag);
+                    if (value != value) {
+                        nullCount++;
+                    } else {
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                }
+                statsMem.putDouble(min);
+                statsMem.putDouble(max);
+                statsMem.putLong(nullCount);
+                partitionMin = Math.min(partitionMin, min);
+                partitionMax = Math.max(partitionMax, max);
+                partitionNullCount += nullCount;
+            }
+            statsMem.putDouble(partitionEntryOffset, partitionMin);
+            statsMem.putDouble(partitionEntryOffset + ENTRY_OFFSET_MAX, partitionMax);
+            statsMem.putLong(partitionEntryOffset + ENTRY_OFFSET_NULL_COUNT, partitionNullCount);
+        } else {
+            final long nullValue = getIntegerNull(tag);
+            long partitionMin = Long.MAX_VALUE;
+            long partitionMax = Long.MIN_VALUE;
+            long partitionNullCount = 0;
+            for (long lo = 0; lo < rowCount; lo += blockSize) {
+                final long hi = Math.min(lo + blockSize, rowCount);
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                long nullCount = 0;
+                for (long row = lo; row < hi; row++) {
+                    final long value = row < columnTop ? nullValue : getIntegerValue(dataAddress, row - columnTop, tag);
+                    if (row < columnTop || (value == nullValue && nullValue != 0)) {
+                        nullCount++;
+                    }
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                statsMem.putLong(min);
+                statsMem.putLong(max);
+                statsMem.putLong(nullCount);
+                partitionMin = Math.min(partitionMin, min);
+                partitionMax = Math.max(partitionMax, max);
+                partitionNullCount += nullCount;
+            }
+            statsMem.putLong(partitionEntryOffset, partitionMin);
+            statsMem.putLong(partitionEntryOffset + ENTRY_OFFSET_MAX, partitionMax);
+            statsMem.putLong(partitionEntryOffset + ENTRY_OFFSET_NULL_COUNT, partitionNullCount);
+        }
+    }
+
+    /**
+     * Computes statistics of column in partition directory and atomically replaces existing
+     * statistics file, readers that have old file mapped are not affected.
+     *
+     * @param path partition directory, trimmed to plen on exit
+     * @param other scratch path
+     */
+    static void write(
+            FilesFacade ff,
+            MemoryMR dataMem,
+            MemoryMARW statsMem,
+            Path path,
+            Path other,
+            int plen,
+            CharSequence columnName,
+            int columnType,
+            long columnTop,
+            long rowCount,
+            long blockSize
+    ) {
+        long dataSize = Math.max(0, rowCount - columnTop) << ColumnType.pow2SizeOf(columnType);
+        try {
+            long dataAddress = 0;
+            if (ColumnCompression.isCompressed(ff, path, plen, columnName)) {
+                // statistics of compressed partition were written before it was compressed
+                return;
+            }
+            if (dataSize > 0 && !ff.exists(TableUtils.dFile(path.trimTo(plen), columnName))) {
+                // column was added after partition had been written, all its values are null
+                columnTop = rowCount;
+                dataSize = 0;
+            }
+            if (dataSize > 0) {
+                dataMem.of(ff, TableUtils.dFile(path.trimTo(plen), columnName), ff.getMapPageSize(), dataSize);
+                if (dataMem.size() < dataSize) {
+                    LOG.error().$("column is shorter than partition, statistics are not written [path=").$(path)
+                            .$(", rowCount=").$(rowCount)
+                            .$(", columnTop=").$(columnTop)
+                            .$(']').$();
+                    return;
+                }
+                dataAddress = dataMem.addressOf(0);
+            }
+
+            other.of(path.trimTo(plen)).concat(columnName).put(TableUtils.FILE_SUFFIX_ST).put(".tmp").$();
+            if (ff.exists(other)) {
+                ff.remove(other);
+            }
+            statsMem.of(ff, other, ff.getPageSize());
+            try {
+                statsMem.putLong(blockSize);
+                statsMem.putLong(rowCount);
+                statsMem.putLong((rowCount + blockSize - 1) / blockSize);
+                putEntries(statsMem, dataAddress, columnType, columnTop, rowCount, blockSize);
+            } finally {
+                statsMem.close();
+            }
+
+            if (!ff.rename(other, TableUtils.statsFile(path.trimTo(plen), columnName))) {
+                LOG.error().$("could not publish column statistics [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+                ff.remove(other);
+            }
+        } finally {
+            dataMem.close();
+            path.trimTo(plen);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.LongList;
+import io.questdb.std.Misc;
+import io.questdb.std.Mutable;
+import io.questdb.std.Numbers;
+import io.questdb.std.ObjList;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Conjunction of inclusive value ranges on numeric columns and of value lists on high
+ * cardinality columns. Data frame cursors use it to skip partitions and blocks of rows whose
+ * min/max statistics cannot satisfy the ranges or whose bloom filters have none of the values.
+ * Statistics are compared as doubles, conversion of long to double is monotonic, which keeps
+ * the test conservative for both exact and double comparison of long values.
+ */
+public class PartitionStatsFilter implements Mutable, Closeable {
+    private final ObjList<ColumnRange> ranges = new ObjList<>();
+    private final ObjList<ColumnValues> valueLists = new ObjList<>();
+    private final ObjList<Function> functions = new ObjList<>();
+    private TableReader reader;
+    private int partitionIndex = -1;
+    private boolean partitionSkipped;
+    private long blockSize;
+
+    /**
+     * @param lo lower bound, inclusive, null when there is no lower bound
+     * @param hi upper bound, inclusive, null when there is no upper bound
+     */
+    public void add(int columnIndex, int columnType, @Nullable Function lo, @Nullable Function hi) {
+        ranges.add(new ColumnRange(columnIndex, columnType, lo, hi));
+        if (lo != null) {
+            functions.add(lo);
+        }
+        if (hi != null && hi != lo) {
+            functions.add(hi);
+        }
+    }
+
+    /**
+     * Adds list of values, one of which column must be equal to. Filter takes ownership of the functions.
+     */
+    public void add(int columnIndex, int columnType, ObjList<Function> values) {
+        valueLists.add(new ColumnValues(columnIndex, columnType, values));
+        functions.addAll(values);
+    }
+
+    public int size() {
+        return ranges.size() + valueLists.size();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            ranges.getQuick(i).mem.close();
+        }
+        for (int i = 0, n = valueLists.size(); i < n; i++) {
+            valueLists.getQuick(i).mem.close();
+        }
+        partitionIndex = -1;
+        partitionSkipped = false;
+        blockSize = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.freeObjList(functions);
+        reader = null;
+    }
+
+    /**
+     * Finds end of the run of blocks that starts with row rowLo and may contain matching rows.
+     * Block of rowLo must not be excluded, which is the case for value returned by {@link #findFrameLo(long, long)}.
+     */
+    public long findFrameHi(long rowLo, long rowHi) {
+        if (blockSize == 0) {
+            return rowHi;
+        }
+        long block = rowLo / blockSize + 1;
+        long hi = block * blockSize;
+        while (hi < rowHi && !isBlockExcluded(block)) {
+            block++;
+            hi += blockSize;
+        }
+        return Math.min(hi, rowHi);
+    }
+
+    /**
+     * Finds first row at or above rowLo that belongs to a block, which may contain matching rows.
+     *
+     * @return row index or rowHi when all blocks in the range are excluded
+     */
+    public long findFrameLo(long rowLo, long rowHi) {
+        if (blockSize == 0) {
+            return rowLo;
+        }
+        long block = rowLo / blockSize;
+        while (rowLo < rowHi && isBlockExcluded(block)) {
+            block++;
+            rowLo = block * blockSize;
+        }
+        return Math.min(rowLo, rowHi);
+    }
+
+    public void of(TableReader reader, SqlExecutionContext executionContext) throws SqlException {
+        clear();
+        this.reader = reader;
+        Function.init(functions, reader, executionContext);
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            final ColumnRange range = ranges.getQuick(i);
+            final double lo = range.loFunction != null ? getValue(range.loFunction) : Double.NEGATIVE_INFINITY;
+            final double hi = range.hiFunction != null ? getValue(range.hiFunction) : Double.POSITIVE_INFINITY;
+            // null bound does not compare with anything, leave such range out
+            range.active = lo == lo && hi == hi;
+            // bounds of two-sided range are unordered, as they are in "between"
+            range.lo = Math.min(lo, hi);
+            range.hi = Math.max(lo, hi);
+        }
+        for (int i = 0, n = valueLists.size(); i < n; i++) {
+            valueLists.getQuick(i).hashValues();
+        }
+    }
+
+    /**
+     * Maps statistics of partition for use by subsequent frame lookups.
+     *
+     * @return true when no row in partition can satisfy the ranges
+     */
+    public boolean skipPartition(int partitionIndex) {
+        if (partitionIndex == this.partitionIndex) {
+            return partitionSkipped;
+        }
+        clear();
+        this.partitionIndex = partitionIndex;
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            final ColumnRange range = ranges.getQuick(i);
+            range.blockLevel = false;
+            if (range.active && reader.openPartitionStats(partitionIndex, range.columnIndex, range.mem)) {
+                if (range.excludes(0)) {
+                    clear();
+                    this.partitionIndex = partitionIndex;
+                    this.partitionSkipped = true;
+                    return true;
+                }
+                final long rangeBlockSize = PartitionStats.getBlockSize(range.mem);
+                if (blockSize == 0) {
+                    blockSize = rangeBlockSize;
+                }
+                range.blockLevel = rangeBlockSize == blockSize;
+            }
+        }
+        for (int i = 0, n = valueLists.size(); i < n; i++) {
+            final ColumnValues values = valueLists.getQuick(i);
+            values.blockLevel = false;
+            if (values.active && reader.openPartitionBloomFilter(partitionIndex, values.columnIndex, values.mem)) {
+                if (values.excludesAllBlocks()) {
+                    clear();
+                    this.partitionIndex = partitionIndex;
+                    this.partitionSkipped = true;
+                    return true;
+                }
+                final long valuesBlockSize = PartitionBloomFilter.getBlockSize(values.mem);
+                if (blockSize == 0) {
+                    blockSize = valuesBlockSize;
+                }
+                values.blockLevel = valuesBlockSize == blockSize;
+            }
+        }
+        return false;
+    }
+
+    private static double getValue(Function function) {
+        switch (ColumnType.tagOf(function.getType())) {
+            case ColumnType.BYTE:
+                return function.getByte(null);
+            case ColumnType.SHORT:
+                return function.getShort(null);
+            case ColumnType.INT:
+                final int i = function.getInt(null);
+                return i != Numbers.INT_NaN ? i : Double.NaN;
+            case ColumnType.LONG:
+                final long l = function.getLong(null);
+                return l != Numbers.LONG_NaN ? l : Double.NaN;
+            case ColumnType.DATE:
+                final long d = function.getDate(null);
+                return d != Numbers.LONG_NaN ? d : Double.NaN;
+            case ColumnType.TIMESTAMP:
+                final long t = function.getTimestamp(null);
+                return t != Numbers.LONG_NaN ? t : Double.NaN;
+            case ColumnType.FLOAT:
+                return function.getFloat(null);
+            case ColumnType.DOUBLE:
+                return function.getDouble(null);
+            default:
+                return Double.NaN;
+        }
+    }
+
+    private boolean isBlockExcluded(long block) {
+        for (int i = 0, n = ranges.size(); i < n; i++) {
+            final ColumnRange range = ranges.getQuick(i);
+            if (range.blockLevel && range.excludes(block + 1)) {
+                return true;
+            }
+        }
+        for (int i = 0, n = valueLists.size(); i < n; i++) {
+            final ColumnValues values = valueLists.getQuick(i);
+            if (values.blockLevel && values.excludes(block)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class ColumnRange {
+        private final int columnIndex;
+        private final int columnType;
+        private final Function loFunction;
+        private final Function hiFunction;
+        private final MemoryMR mem = Vm.getMRInstance();
+        private double lo;
+        private double hi;
+        private boolean active;
+        private boolean blockLevel;
+
+        private ColumnRange(int columnIndex, int columnType, Function loFunction, Function hiFunction) {
+            this.columnIndex = columnIndex;
+            this.columnType = columnType;
+            this.loFunction = loFunction;
+            this.hiFunction = hiFunction;
+        }
+
+        private boolean excludes(long entryIndex) {
+            return PartitionStats.getMax(mem, columnType, entryIndex) < lo || PartitionStats.getMin(mem, columnType, entryIndex) > hi;
+        }
+    }
+
+    private static class ColumnValues {
+        private final int columnIndex;
+        private final int columnType;
+        private final ObjList<Function> functions;
+        private final LongList hashes = new LongList();
+        private final MemoryMR mem = Vm.getMRInstance();
+        private boolean active;
+        private boolean blockLevel;
+
+        private ColumnValues(int columnIndex, int columnType, ObjList<Function> functions) {
+            this.columnIndex = columnIndex;
+            this.columnType = columnType;
+            this.functions = functions;
+        }
+
+        private boolean excludes(long block) {
+            for (int i = 0, n = hashes.size(); i < n; i++) {
+                if (PartitionBloomFilter.mightContain(mem, block, hashes.getQuick(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean excludesAllBlocks() {
+            for (long block = 0, n = PartitionBloomFilter.getBlockCount(mem); block < n; block++) {
+                if (!excludes(block)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void hashValues() {
+            hashes.clear();
+            // null is not in bloom filters, list with null cannot rule out anything
+            active = true;
+            for (int i = 0, n = functions.size(); i < n && active; i++) {
+                final Function function = functions.getQuick(i);
+                if (ColumnType.isString(columnType)) {
+                    if (ColumnType.tagOf(function.getType()) == ColumnType.CHAR) {
+                        final char c = function.getChar(null);
+                        active = c != 0;
+                        hashes.add(PartitionBloomFilter.hashStr(c));
+                    } else {
+                        final CharSequence value = function.getStr(null);
+                        active = value != null;
+                        hashes.add(active ? PartitionBloomFilter.hashStr(value) : 0);
+                    }
+                } else {
+                    final long value = getLongValue(function);
+                    active = value != Numbers.LONG_NaN;
+                    hashes.add(PartitionBloomFilter.hashLong(value));
+                }
+            }
+        }
+
+        private static long getLongValue(Function function) {
+            switch (ColumnType.tagOf(function.getType())) {
+                case ColumnType.BYTE:
+                    return function.getByte(null);
+                case ColumnType.SHORT:
+                    return function.getShort(null);
+                case ColumnType.INT:
+                    final int i = function.getInt(null);
+                    return i != Numbers.INT_NaN ? i : Numbers.LONG_NaN;
+                default:
+                    return function.getLong(null);
+            }
+        }
+    }
+}
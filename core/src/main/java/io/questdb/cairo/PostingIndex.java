@@ -0,0 +1,328 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.RowCursor;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMA;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.DirectLongList;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+
+/**
+ * Compressed form of bitmap index of sealed partition. Posting lists of all keys are kept
+ * in single "column.pi" file, which replaces "column.k" and "column.v" files:
+ * <pre>
+ *     0  signature
+ *     4  key count
+ *     8  value block capacity of original index
+ *     16 max value of original index
+ *     32 key table, 16 bytes per key: value count and offset of block directory
+ * </pre>
+ * Values of each key are split in blocks of {@link #BLOCK_VALUE_COUNT} values. Block directory
+ * holds first value and data offset of each block, which lets readers binary search
+ * the block where value range starts. Block data is bit width of the widest difference
+ * between adjacent values followed by differences packed at that width. Row ids of
+ * low-cardinality keys are dense, so differences take a few bits instead of 64.
+ */
+public final class PostingIndex {
+    public static final int BLOCK_VALUE_COUNT = 128;
+    static final byte SIGNATURE = (byte) 0xfb;
+    static final long OFFSET_KEY_COUNT = 4;
+    static final long OFFSET_BLOCK_VALUE_COUNT = 8;
+    static final long OFFSET_MAX_VALUE = 16;
+    static final long HEADER_SIZE = 32;
+    static final long KEY_ENTRY_SIZE = 16;
+    static final long BLOCK_ENTRY_SIZE = 16;
+    // decoder reads whole longs past the last packed byte
+    private static final long TAIL_PADDING = 16;
+    private static final int BLOCK_VALUE_COUNT_BITS = 7;
+    private static final Log LOG = LogFactory.getLog(PostingIndex.class);
+
+    private PostingIndex() {
+    }
+
+    /**
+     * Decodes block of values.
+     *
+     * @param dataAddress address of block data
+     * @param firstValue  first value of the block from block directory
+     * @param count       number of values in the block
+     * @param dst         array to decode values to
+     */
+    public static void decodeBlock(long dataAddress, long firstValue, int count, long[] dst) {
+        final int width = Unsafe.getUnsafe().getByte(dataAddress);
+        final long packed = dataAddress + 1;
+        final long mask = width == 64 ? -1L : (1L << width) - 1;
+        long value = firstValue;
+        dst[0] = value;
+        long bitPos = 0;
+        for (int i = 1; i < count; i++, bitPos += width) {
+            final long address = packed + (bitPos >>> 3);
+            final int shift = (int) (bitPos & 7);
+            long bits = Unsafe.getUnsafe().getLong(address) >>> shift;
+            if (shift + width > 64) {
+                bits |= (Unsafe.getUnsafe().getByte(address + 8) & 0xffL) << (64 - shift);
+            }
+            value += bits & mask;
+            dst[i] = value;
+        }
+    }
+
+    static int blockCount(long valueCount) {
+        return (int) ((valueCount + BLOCK_VALUE_COUNT - 1) >>> BLOCK_VALUE_COUNT_BITS);
+    }
+
+    static int blockValueCount(long valueCount, int block) {
+        return (int) Math.min(BLOCK_VALUE_COUNT, valueCount - ((long) block << BLOCK_VALUE_COUNT_BITS));
+    }
+
+    /**
+     * Replaces bitmap index files of the column with posting index. Column that is
+     * not indexed in partition or has posting index already is left alone.
+     *
+     * @return true when index was compressed by this call
+     */
+    static boolean compressIndex(CairoConfiguration configuration, Path path, Path other, int plen, CharSequence columnName) {
+        final FilesFacade ff = configuration.getFilesFacade();
+        try {
+            if (!ff.exists(BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName))) {
+                return false;
+            }
+            final long rawSize = ff.length(path) + ff.length(BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName));
+
+            other.of(path.trimTo(plen));
+            BitmapIndexUtils.postingFileName(other, columnName);
+            other.chop$().put(".tmp").$();
+            if (ff.exists(other)) {
+                ff.remove(other);
+            }
+            final long size;
+            try {
+                size = write(configuration, path.trimTo(plen), columnName, other);
+                TableUtils.renameOrFail(ff, other, BitmapIndexUtils.postingFileName(path.trimTo(plen), columnName));
+            } catch (Throwable e) {
+                ff.remove(other);
+                throw e;
+            }
+
+            // readers that have the index open keep reading unlinked files
+            if (!ff.remove(BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName))
+                    || !ff.remove(BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName))) {
+                LOG.error().$("could not remove compressed index file [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+            }
+            LOG.info().$("compressed index [path=").$(BitmapIndexUtils.postingFileName(path.trimTo(plen), columnName))
+                    .$(", rawSize=").$(rawSize)
+                    .$(", size=").$(size)
+                    .I$();
+            return true;
+        } finally {
+            path.trimTo(plen);
+            other.trimTo(plen);
+        }
+    }
+
+    /**
+     * Restores bitmap index files of the column from posting index.
+     *
+     * @return true when index was decompressed by this call
+     */
+    static boolean decompressIndex(CairoConfiguration configuration, Path path, Path other, int plen, CharSequence columnName) {
+        final FilesFacade ff = configuration.getFilesFacade();
+        try {
+            if (!ff.exists(BitmapIndexUtils.postingFileName(path.trimTo(plen), columnName))) {
+                return false;
+            }
+            other.of(path.trimTo(plen));
+            if (ff.exists(BitmapIndexUtils.keyFileName(other, columnName))) {
+                // bitmap index outlived compression, it is the one to keep
+                ff.remove(BitmapIndexUtils.postingFileName(path.trimTo(plen), columnName));
+                return false;
+            }
+
+            final String tmpName = columnName + ".tmp";
+            try (
+                    PostingIndexReader reader = new PostingIndexReader(configuration, path.trimTo(plen), columnName, 0, -1, BitmapIndexReader.DIR_FORWARD);
+                    MemoryMA mem = Vm.getMAInstance()
+            ) {
+                mem.smallFile(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), tmpName));
+                BitmapIndexWriter.initKeyMemory(mem, reader.getValueBlockCapacity() + 1);
+                mem.close();
+                if (!ff.touch(BitmapIndexUtils.valueFileName(path.trimTo(plen), tmpName))) {
+                    throw CairoException.instance(ff.errno()).put("could not create index [name=").put(path).put(']');
+                }
+                try (BitmapIndexWriter writer = new BitmapIndexWriter(configuration, path.trimTo(plen), tmpName)) {
+                    for (int key = 0, n = reader.getKeyCount(); key < n; key++) {
+                        final RowCursor cursor = reader.getCursor(true, key, 0, Long.MAX_VALUE);
+                        while (cursor.hasNext()) {
+                            writer.add(key, cursor.next());
+                        }
+                    }
+                    writer.setMaxValue(reader.getMaxValue());
+                }
+            } catch (Throwable e) {
+                ff.remove(BitmapIndexUtils.keyFileName(path.trimTo(plen), tmpName));
+                ff.remove(BitmapIndexUtils.valueFileName(path.trimTo(plen), tmpName));
+                throw e;
+            }
+
+            TableUtils.renameOrFail(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), tmpName), BitmapIndexUtils.keyFileName(other.trimTo(plen), columnName));
+            TableUtils.renameOrFail(ff, BitmapIndexUtils.valueFileName(path.trimTo(plen), tmpName), BitmapIndexUtils.valueFileName(other.trimTo(plen), columnName));
+            ff.remove(BitmapIndexUtils.postingFileName(path.trimTo(plen), columnName));
+            LOG.info().$("decompressed index [path=").$(path).I$();
+            return true;
+        } finally {
+            path.trimTo(plen);
+            other.trimTo(plen);
+        }
+    }
+
+    static boolean isCompressed(FilesFacade ff, Path path, int plen, CharSequence columnName) {
+        try {
+            return ff.exists(BitmapIndexUtils.postingFileName(path.trimTo(plen), columnName));
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    private static long packBlock(long values, int count, long dst) {
+        long maxDelta = 0;
+        for (int i = 1; i < count; i++) {
+            maxDelta |= Unsafe.getUnsafe().getLong(values + i * 8L) - Unsafe.getUnsafe().getLong(values + (i - 1) * 8L);
+        }
+        final int width = 64 - Long.numberOfLeadingZeros(maxDelta);
+        Unsafe.getUnsafe().putByte(dst++, (byte) width);
+
+        long acc = 0;
+        int bits = 0;
+        for (int i = 1; i < count; i++) {
+            final long delta = Unsafe.getUnsafe().getLong(values + i * 8L) - Unsafe.getUnsafe().getLong(values + (i - 1) * 8L);
+            acc |= delta << bits;
+            bits += width;
+            if (bits >= 64) {
+                Unsafe.getUnsafe().putLong(dst, acc);
+                dst += 8;
+                bits -= 64;
+                acc = bits > 0 ? delta >>> (width - bits) : 0;
+            }
+        }
+        for (; bits > 0; bits -= 8) {
+            Unsafe.getUnsafe().putByte(dst++, (byte) acc);
+            acc >>>= 8;
+        }
+        return dst;
+    }
+
+    private static long write(CairoConfiguration configuration, Path path, CharSequence columnName, LPSZ dstName) {
+        final FilesFacade ff = configuration.getFilesFacade();
+        long fd = -1;
+        long header = 0;
+        long headerSize = 0;
+        long buf = 0;
+        long bufSize = 0;
+        try (
+                BitmapIndexFwdReader reader = new BitmapIndexFwdReader(configuration, path, columnName, 0, -1);
+                DirectLongList values = new DirectLongList(BLOCK_VALUE_COUNT)
+        ) {
+            final int keyCount = reader.getKeyCount();
+            headerSize = HEADER_SIZE + keyCount * KEY_ENTRY_SIZE;
+            header = Unsafe.calloc(headerSize);
+            Unsafe.getUnsafe().putByte(header, SIGNATURE);
+            Unsafe.getUnsafe().putInt(header + OFFSET_KEY_COUNT, keyCount);
+            Unsafe.getUnsafe().putInt(header + OFFSET_BLOCK_VALUE_COUNT, reader.getValueBlockCapacity() + 1);
+            Unsafe.getUnsafe().putLong(header + OFFSET_MAX_VALUE, reader.getMaxValue());
+
+            fd = TableUtils.openRW(ff, dstName, LOG);
+            if (!ff.truncate(fd, 0)) {
+                throw CairoException.instance(ff.errno()).put("could not truncate [file=").put(dstName).put(']');
+            }
+
+            long offset = headerSize;
+            for (int key = 0; key < keyCount; key++) {
+                values.clear();
+                final RowCursor cursor = reader.getCursor(true, key, 0, Long.MAX_VALUE);
+                while (cursor.hasNext()) {
+                    values.add(cursor.next());
+                }
+                final long valueCount = values.size();
+                if (valueCount == 0) {
+                    continue;
+                }
+
+                final int blockCount = blockCount(valueCount);
+                final long directorySize = blockCount * BLOCK_ENTRY_SIZE;
+                final long required = directorySize + blockCount * (1 + BLOCK_VALUE_COUNT * 8L);
+                if (required > bufSize) {
+                    buf = buf == 0 ? Unsafe.malloc(required) : Unsafe.realloc(buf, bufSize, required);
+                    bufSize = required;
+                }
+
+                long p = buf + directorySize;
+                for (int block = 0; block < blockCount; block++) {
+                    final long blockValues = values.getAddress() + ((long) block << BLOCK_VALUE_COUNT_BITS) * 8;
+                    final long entry = buf + block * BLOCK_ENTRY_SIZE;
+                    Unsafe.getUnsafe().putLong(entry, Unsafe.getUnsafe().getLong(blockValues));
+                    Unsafe.getUnsafe().putLong(entry + 8, offset + p - buf);
+                    p = packBlock(blockValues, blockValueCount(valueCount, block), p);
+                }
+                write(ff, fd, buf, p - buf, offset, dstName);
+
+                final long keyEntry = header + HEADER_SIZE + key * KEY_ENTRY_SIZE;
+                Unsafe.getUnsafe().putLong(keyEntry, valueCount);
+                Unsafe.getUnsafe().putLong(keyEntry + 8, offset);
+                offset += p - buf;
+            }
+
+            write(ff, fd, header, headerSize, 0, dstName);
+            if (!ff.truncate(fd, offset + TAIL_PADDING)) {
+                throw CairoException.instance(ff.errno()).put("could not truncate [file=").put(dstName).put(']');
+            }
+            if (ff.fsync(fd) != 0) {
+                throw CairoException.instance(ff.errno()).put("could not fsync [file=").put(dstName).put(']');
+            }
+            return offset + TAIL_PADDING;
+        } finally {
+            if (fd != -1) {
+                ff.close(fd);
+            }
+            if (header != 0) {
+                Unsafe.free(header, headerSize);
+            }
+            if (buf != 0) {
+                Unsafe.free(buf, bufSize);
+            }
+        }
+    }
+
+    private static void write(FilesFacade ff, long fd, long address, long len, long offset, LPSZ name) {
+        if (ff.write(fd, address, len, offset) != len) {
+            throw CairoException.instance(ff.errno()).put("could not write [file=").put(name).put(", offset=").put(offset).put(']');
+        }
+    }
+}
@@ -0,0 +1,615 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.NullIndexFrameCursor;
+import io.questdb.cairo.sql.RowCursor;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.std.IntList;
+import io.questdb.std.LongList;
+import io.questdb.std.Misc;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.Path;
+
+/**
+ * Reads posting index of sealed partition, see {@link PostingIndex} for the file layout.
+ * Values are decoded one block at a time; cursor seeks the block its value range starts
+ * at by binary search of block directory.
+ * <p>
+ * Some query paths hand raw bitmap index memory over to native code. For these the
+ * reader inflates posting lists into private memory laid out as original bitmap index,
+ * once per reader and only when raw memory is asked for.
+ */
+public class PostingIndexReader implements BitmapIndexReader {
+    // rows of union cursor window, power of 2
+    private static final int UNION_WINDOW_SIZE = 64 * 1024;
+    private final MemoryMR mem = Vm.getMRInstance();
+    private final int direction;
+    private final Cursor cursor;
+    private UnionCursor unionCursor;
+    private int keyCount;
+    private int keyCountIncludingNulls;
+    private long unIndexedNullCount;
+    private long frameAddress;
+    private long keyAddress;
+    private long keySize;
+    private long valueAddress;
+    private long valueSize;
+
+    public PostingIndexReader(
+            CairoConfiguration configuration,
+            Path path,
+            CharSequence name,
+            long unIndexedNullCount,
+            long partitionTxn,
+            int direction
+    ) {
+        this.direction = direction;
+        this.cursor = newCursor();
+        of(configuration, path, name, unIndexedNullCount, partitionTxn);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(mem);
+        freeInflated();
+        if (frameAddress != 0) {
+            Unsafe.free(frameAddress, PostingIndex.BLOCK_VALUE_COUNT * Long.BYTES);
+            frameAddress = 0;
+        }
+    }
+
+    @Override
+    public RowCursor getCursor(boolean cachedInstance, int key, long minValue, long maxValue) {
+        if (key < keyCount || (key == 0 && unIndexedNullCount > 0)) {
+            final Cursor cursor = cachedInstance ? this.cursor : newCursor();
+            cursor.of(key, minValue, maxValue);
+            return cursor;
+        }
+        return EmptyRowCursor.INSTANCE;
+    }
+
+    @Override
+    public IndexFrameCursor getFrameCursor(int key, long minValue, long maxValue) {
+        if (key < keyCount) {
+            if (frameAddress == 0) {
+                frameAddress = Unsafe.malloc(PostingIndex.BLOCK_VALUE_COUNT * Long.BYTES);
+            }
+            final FwdCursor cursor = new FwdCursor();
+            cursor.of(key, minValue, maxValue);
+            return cursor;
+        }
+        return NullIndexFrameCursor.INSTANCE;
+    }
+
+    @Override
+    public int getKeyCount() {
+        return keyCountIncludingNulls;
+    }
+
+    /**
+     * Cursor over rows of any of the keys in ascending order, as used by "sym IN (...)".
+     * Posting lists are merged window by window of rows rather than by heap of per-key cursors.
+     *
+     * @param keys     index keys, which may include keys not in the index
+     * @param minValue lowest row, inclusive
+     * @param maxValue highest row, inclusive
+     * @return cached cursor instance
+     */
+    public RowCursor getUnionCursor(IntList keys, long minValue, long maxValue) {
+        if (unionCursor == null) {
+            unionCursor = new UnionCursor();
+        }
+        unionCursor.of(keys, minValue, maxValue);
+        return unionCursor;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mem.getFd() != -1;
+    }
+
+    @Override
+    public long getKeyBaseAddress() {
+        inflate();
+        return keyAddress;
+    }
+
+    @Override
+    public long getKeyMemorySize() {
+        inflate();
+        return keySize;
+    }
+
+    @Override
+    public long getValueBaseAddress() {
+        inflate();
+        return valueAddress;
+    }
+
+    @Override
+    public long getValueMemorySize() {
+        inflate();
+        return valueSize;
+    }
+
+    @Override
+    public long getUnIndexedNullCount() {
+        return unIndexedNullCount;
+    }
+
+    @Override
+    public int getValueBlockCapacity() {
+        return mem.getInt(PostingIndex.OFFSET_BLOCK_VALUE_COUNT) - 1;
+    }
+
+    public long getMaxValue() {
+        return mem.getLong(PostingIndex.OFFSET_MAX_VALUE);
+    }
+
+    public void of(CairoConfiguration configuration, Path path, CharSequence name, long unIndexedNullCount, long partitionTxn) {
+        close();
+        this.unIndexedNullCount = unIndexedNullCount;
+        TableUtils.txnPartitionConditionally(path, partitionTxn);
+        final int plen = path.length();
+        try {
+            mem.wholeFile(configuration.getFilesFacade(), BitmapIndexUtils.postingFileName(path, name));
+            if (mem.size() < PostingIndex.HEADER_SIZE || mem.getByte(0) != PostingIndex.SIGNATURE) {
+                throw CairoException.instance(0).put("Unknown format: ").put(path);
+            }
+            keyCount = keyCountIncludingNulls = mem.getInt(PostingIndex.OFFSET_KEY_COUNT);
+            if (unIndexedNullCount > 0) {
+                keyCountIncludingNulls++;
+            }
+        } catch (Throwable e) {
+            close();
+            throw e;
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    private void freeInflated() {
+        if (keyAddress != 0) {
+            Unsafe.free(keyAddress, keySize);
+            keyAddress = 0;
+        }
+        if (valueAddress != 0) {
+            Unsafe.free(valueAddress, valueSize);
+            valueAddress = 0;
+        }
+    }
+
+    private void inflate() {
+        if (keyAddress != 0) {
+            return;
+        }
+
+        final int blockValueCount = getValueBlockCapacity() + 1;
+        final long blockCapacity = blockValueCount * 8L + BitmapIndexUtils.VALUE_BLOCK_FILE_RESERVED;
+        long blockCount = 0;
+        for (int key = 0; key < keyCount; key++) {
+            blockCount += (valueCountOf(key) + blockValueCount - 1) / blockValueCount;
+        }
+
+        keySize = BitmapIndexUtils.KEY_FILE_RESERVED + keyCount * BitmapIndexUtils.KEY_ENTRY_SIZE;
+        keyAddress = Unsafe.calloc(keySize);
+        valueSize = Math.max(blockCount * blockCapacity, Long.BYTES);
+        valueAddress = Unsafe.calloc(valueSize);
+
+        Unsafe.getUnsafe().putByte(keyAddress + BitmapIndexUtils.KEY_RESERVED_OFFSET_SIGNATURE, BitmapIndexUtils.SIGNATURE);
+        Unsafe.getUnsafe().putLong(keyAddress + BitmapIndexUtils.KEY_RESERVED_OFFSET_SEQUENCE, 1);
+        Unsafe.getUnsafe().putLong(keyAddress + BitmapIndexUtils.KEY_RESERVED_OFFSET_VALUE_MEM_SIZE, blockCount * blockCapacity);
+        Unsafe.getUnsafe().putInt(keyAddress + BitmapIndexUtils.KEY_RESERVED_OFFSET_BLOCK_VALUE_COUNT, blockValueCount);
+        Unsafe.getUnsafe().putInt(keyAddress + BitmapIndexUtils.KEY_RESERVED_OFFSET_KEY_COUNT, keyCount);
+        Unsafe.getUnsafe().putLong(keyAddress + BitmapIndexUtils.KEY_RESERVED_OFFSET_SEQUENCE_CHECK, 1);
+        Unsafe.getUnsafe().putLong(keyAddress + BitmapIndexUtils.KEY_RESERVED_OFFSET_MAX_VALUE, getMaxValue());
+
+        final long[] values = new long[PostingIndex.BLOCK_VALUE_COUNT];
+        long blockOffset = 0;
+        for (int key = 0; key < keyCount; key++) {
+            final long valueCount = valueCountOf(key);
+            if (valueCount == 0) {
+                continue;
+            }
+            final long directory = directoryOf(key);
+            long first = blockOffset;
+            long prev = -1;
+            long index = 0;
+            for (int block = 0, n = PostingIndex.blockCount(valueCount); block < n; block++) {
+                final int count = decodeBlock(directory, valueCount, block, values);
+                for (int i = 0; i < count; i++, index++) {
+                    final long cell = index % blockValueCount;
+                    if (cell == 0) {
+                        if (prev != -1) {
+                            // link previous and next blocks
+                            Unsafe.getUnsafe().putLong(valueAddress + blockOffset + blockValueCount * 8L, prev);
+                            Unsafe.getUnsafe().putLong(valueAddress + prev + blockValueCount * 8L + 8, blockOffset);
+                        }
+                        prev = blockOffset;
+                        blockOffset += blockCapacity;
+                    }
+                    Unsafe.getUnsafe().putLong(valueAddress + prev + cell * 8, values[i]);
+                }
+            }
+            final long entry = keyAddress + BitmapIndexUtils.getKeyEntryOffset(key);
+            Unsafe.getUnsafe().putLong(entry + BitmapIndexUtils.KEY_ENTRY_OFFSET_VALUE_COUNT, valueCount);
+            Unsafe.getUnsafe().putLong(entry + BitmapIndexUtils.KEY_ENTRY_OFFSET_FIRST_VALUE_BLOCK_OFFSET, first);
+            Unsafe.getUnsafe().putLong(entry + BitmapIndexUtils.KEY_ENTRY_OFFSET_LAST_VALUE_BLOCK_OFFSET, prev);
+            Unsafe.getUnsafe().putLong(entry + BitmapIndexUtils.KEY_ENTRY_OFFSET_COUNT_CHECK, valueCount);
+        }
+    }
+
+    private int decodeBlock(long directory, long valueCount, int block, long[] values) {
+        final long entry = directory + block * PostingIndex.BLOCK_ENTRY_SIZE;
+        final int count = PostingIndex.blockValueCount(valueCount, block);
+        PostingIndex.decodeBlock(mem.addressOf(mem.getLong(entry + 8)), mem.getLong(entry), count, values);
+        return count;
+    }
+
+    private long directoryOf(int key) {
+        return mem.getLong(PostingIndex.HEADER_SIZE + key * PostingIndex.KEY_ENTRY_SIZE + 8);
+    }
+
+    /**
+     * @return index of the last block, which starts at or before the value, -1 when there is no such block
+     */
+    private int findBlock(long directory, int blockCount, long value) {
+        int lo = 0;
+        int hi = blockCount - 1;
+        int result = -1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (mem.getLong(directory + mid * PostingIndex.BLOCK_ENTRY_SIZE) <= value) {
+                result = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private Cursor newCursor() {
+        return direction == DIR_BACKWARD ? new BwdCursor() : new FwdCursor();
+    }
+
+    private long valueCountOf(int key) {
+        return mem.getLong(PostingIndex.HEADER_SIZE + key * PostingIndex.KEY_ENTRY_SIZE);
+    }
+
+    private abstract class Cursor implements RowCursor {
+        protected final long[] values = new long[PostingIndex.BLOCK_VALUE_COUNT];
+        protected long directory;
+        protected long valueCount;
+        protected int blockCount;
+        protected int block;
+        protected int blockValueCount;
+        protected int position;
+        protected long minValue;
+        protected long maxValue;
+        protected long nullLo;
+        protected long nullHi;
+        protected long next;
+
+        @Override
+        public long next() {
+            return next;
+        }
+
+        protected void decode(int block) {
+            this.block = block;
+            this.blockValueCount = decodeBlock(directory, valueCount, block, values);
+        }
+
+        void of(int key, long minValue, long maxValue) {
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            if (key == 0 && unIndexedNullCount > 0) {
+                // nulls of column top are not in the index
+                nullLo = Math.max(0, minValue);
+                nullHi = Math.min(unIndexedNullCount - 1, maxValue);
+            } else {
+                nullLo = 0;
+                nullHi = -1;
+            }
+            if (key < keyCount) {
+                valueCount = valueCountOf(key);
+                directory = directoryOf(key);
+                blockCount = PostingIndex.blockCount(valueCount);
+            } else {
+                valueCount = 0;
+                blockCount = 0;
+            }
+            blockValueCount = 0;
+            seek();
+        }
+
+        protected abstract void seek();
+    }
+
+    private class FwdCursor extends Cursor implements IndexFrameCursor {
+        private final IndexFrame indexFrame = new IndexFrame();
+
+        @Override
+        public IndexFrame getNext() {
+            if (position < blockValueCount || nextBlock()) {
+                int hi = blockValueCount;
+                if (values[hi - 1] > maxValue) {
+                    hi = position;
+                    while (hi < blockValueCount && values[hi] <= maxValue) {
+                        hi++;
+                    }
+                    blockCount = 0;
+                }
+                final int count = hi - position;
+                if (count > 0) {
+                    Unsafe.getUnsafe().copyMemory(values, Unsafe.LONG_OFFSET + position * Unsafe.LONG_SCALE, null, frameAddress, count * 8L);
+                    position = blockValueCount;
+                    return indexFrame.of(frameAddress, count);
+                }
+            }
+            return IndexFrame.NULL_INSTANCE;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nullLo <= nullHi) {
+                next = nullLo++;
+                return true;
+            }
+
+            if (position < blockValueCount || nextBlock()) {
+                final long value = values[position++];
+                if (value <= maxValue) {
+                    next = value;
+                    return true;
+                }
+                position = blockValueCount;
+                blockCount = 0;
+            }
+            return false;
+        }
+
+        private boolean nextBlock() {
+            if (block + 1 < blockCount) {
+                decode(block + 1);
+                position = 0;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected void seek() {
+            if (blockCount > 0) {
+                decode(Math.max(0, findBlock(directory, blockCount, minValue)));
+                position = 0;
+                while (position < blockValueCount && values[position] < minValue) {
+                    position++;
+                }
+            } else {
+                block = 0;
+                position = 0;
+            }
+        }
+    }
+
+    private class BwdCursor extends Cursor {
+        @Override
+        public boolean hasNext() {
+            if (position >= 0 || prevBlock()) {
+                final long value = values[position--];
+                if (value >= minValue) {
+                    next = value;
+                    return true;
+                }
+                position = -1;
+                block = 0;
+            }
+
+            if (nullHi >= nullLo) {
+                next = nullHi--;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean prevBlock() {
+            if (block > 0) {
+                decode(block - 1);
+                position = blockValueCount - 1;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected void seek() {
+            final int block = findBlock(directory, blockCount, maxValue);
+            if (block > -1) {
+                decode(block);
+                position = blockValueCount - 1;
+                while (position >= 0 && values[position] > maxValue) {
+                    position--;
+                }
+            } else {
+                this.block = 0;
+                position = -1;
+            }
+        }
+    }
+
+    /**
+     * Rows of different keys never coincide, so union of their posting lists is built in windows
+     * of {@link #UNION_WINDOW_SIZE} rows: values of every key that fall into the window set bits
+     * of window bitmap, which is then scanned in row order. Window starts at the lowest value
+     * not yet returned, so row ranges none of the keys has values in are skipped.
+     */
+    private class UnionCursor implements RowCursor {
+        private final long[] values = new long[PostingIndex.BLOCK_VALUE_COUNT];
+        private final long[] bitmap = new long[UNION_WINDOW_SIZE / Long.SIZE];
+        private final IntList keys = new IntList();
+        // per key: index of value and the value itself, which are to be merged next
+        private final LongList nextIndexes = new LongList();
+        private final LongList nextValues = new LongList();
+        private long maxValue;
+        private long nullLo;
+        private long nullHi;
+        private long windowLo;
+        private int wordCount;
+        private int word;
+        private long bits;
+        private long next;
+
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                if (bits != 0) {
+                    next = windowLo + ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    return true;
+                }
+                if (word + 1 < wordCount) {
+                    bits = bitmap[++word];
+                } else if (!nextWindow()) {
+                    return false;
+                }
+            }
+        }
+
+        @Override
+        public long next() {
+            return next;
+        }
+
+        private void addKey(int key, long minValue) {
+            final long valueCount = valueCountOf(key);
+            final int blockCount = PostingIndex.blockCount(valueCount);
+            if (blockCount == 0) {
+                return;
+            }
+            final long directory = directoryOf(key);
+            final int block = Math.max(0, findBlock(directory, blockCount, minValue));
+            final int count = decodeBlock(directory, valueCount, block, values);
+            int position = 0;
+            while (position < count && values[position] < minValue) {
+                position++;
+            }
+            final long index = ((long) block * PostingIndex.BLOCK_VALUE_COUNT) + position;
+            if (index < valueCount) {
+                keys.add(key);
+                nextIndexes.add(index);
+                // value at the start of next block is in block directory
+                nextValues.add(position < count ? values[position] : mem.getLong(directory + (block + 1) * PostingIndex.BLOCK_ENTRY_SIZE));
+            }
+        }
+
+        private void mergeKey(int i, long windowHi) {
+            final int key = keys.getQuick(i);
+            final long valueCount = valueCountOf(key);
+            final long directory = directoryOf(key);
+            final int blockCount = PostingIndex.blockCount(valueCount);
+            final long index = nextIndexes.getQuick(i);
+            int block = (int) (index / PostingIndex.BLOCK_VALUE_COUNT);
+            int position = (int) (index % PostingIndex.BLOCK_VALUE_COUNT);
+            int count = decodeBlock(directory, valueCount, block, values);
+            while (true) {
+                while (position < count && values[position] < windowHi) {
+                    final long bit = values[position++] - windowLo;
+                    bitmap[(int) (bit >>> 6)] |= 1L << bit;
+                }
+                if (position < count) {
+                    nextIndexes.setQuick(i, (long) block * PostingIndex.BLOCK_VALUE_COUNT + position);
+                    nextValues.setQuick(i, values[position]);
+                    return;
+                }
+                if (++block == blockCount) {
+                    nextValues.setQuick(i, Long.MAX_VALUE);
+                    return;
+                }
+                count = decodeBlock(directory, valueCount, block, values);
+                position = 0;
+            }
+        }
+
+        private boolean nextWindow() {
+            long lo = nullLo <= nullHi ? nullLo : Long.MAX_VALUE;
+            for (int i = 0, n = keys.size(); i < n; i++) {
+                lo = Math.min(lo, nextValues.getQuick(i));
+            }
+            // Long.MAX_VALUE marks exhausted keys, it is never a row
+            if (lo == Long.MAX_VALUE || lo > maxValue) {
+                return false;
+            }
+
+            windowLo = lo;
+            final long windowSize = maxValue - lo < UNION_WINDOW_SIZE ? maxValue - lo + 1 : UNION_WINDOW_SIZE;
+            final long windowHi = lo + windowSize;
+            wordCount = (int) ((windowSize + Long.SIZE - 1) >>> 6);
+            for (int i = 0; i < wordCount; i++) {
+                bitmap[i] = 0;
+            }
+
+            for (; nullLo <= nullHi && nullLo < windowHi; nullLo++) {
+                final long bit = nullLo - windowLo;
+                bitmap[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            for (int i = 0, n = keys.size(); i < n; i++) {
+                if (nextValues.getQuick(i) < windowHi) {
+                    mergeKey(i, windowHi);
+                }
+            }
+
+            word = 0;
+            bits = bitmap[0];
+            return true;
+        }
+
+        void of(IntList keys, long minValue, long maxValue) {
+            this.maxValue = maxValue;
+            this.keys.clear();
+            this.nextIndexes.clear();
+            this.nextValues.clear();
+            nullLo = 0;
+            nullHi = -1;
+            for (int i = 0, n = keys.size(); i < n; i++) {
+                final int key = keys.getQuick(i);
+                if (key == 0 && unIndexedNullCount > 0) {
+                    // nulls of column top are not in the index
+                    nullLo = Math.max(0, minValue);
+                    nullHi = Math.min(unIndexedNullCount - 1, maxValue);
+                }
+                if (key < keyCount) {
+                    addKey(key, minValue);
+                }
+            }
+            wordCount = 0;
+            word = 0;
+            bits = 0;
+        }
+    }
+}
@@ -52,7 +52,11 @@ public class RecordChain implements Closeable, RecordCursor, Mutable, RecordSink
     private RecordCursor symbolTableResolver;
 
     public RecordChain(@Transient ColumnTypes columnTypes, RecordSink recordSink, long pageSize, int maxPages) {
-        this.mem = Vm.getARWInstance(pageSize, maxPages);
+        this(columnTypes, recordSink, Vm.getARWInstance(pageSize, maxPages));
+    }
+
+    public RecordChain(@Transient ColumnTypes columnTypes, RecordSink recordSink, MemoryARW mem) {
+        this.mem = mem;
         this.recordSink = recordSink;
         int count = columnTypes.getColumnCount();
         long varOffset = 0L;
@@ -101,11 +105,28 @@ public class RecordChain implements Closeable, RecordCursor, Mutable, RecordSink
         varAppendOffset = 0L;
     }
 
+    /**
+     * Replaces content of this chain with a copy of the other chain. Both chains must have the same column types.
+     * Record offsets of the other chain remain valid in this chain.
+     *
+     * @param other chain to copy records from
+     */
+    public void copyOf(RecordChain other) {
+        mem.jumpTo(0);
+        mem.putBlockOfBytes(other.mem.addressOf(0), other.varAppendOffset);
+        varAppendOffset = other.varAppendOffset;
+        nextRecordOffset = -1L;
+    }
+
     @Override
     public long getAddress(long recordOffset, int columnIndex) {
         return addressOf(getOffsetOfColumn(recordOffset, columnIndex));
     }
 
+    public long getMemorySize() {
+        return varAppendOffset;
+    }
+
     public long getOffsetOfColumn(long recordOffset, int columnIndex) {
         return rowToDataOffset(recordOffset) + varOffset + columnOffsets[columnIndex];
     }
@@ -374,12 +395,19 @@ public class RecordChain implements Closeable, RecordCursor, Mutable, RecordSink
 
         @Override
         public CharSequence getSym(int col) {
-            return symbolTableResolver.getSymbolTable(col).valueOf(getInt(col));
+            if (symbolTableResolver != null) {
+                return symbolTableResolver.getSymbolTable(col).valueOf(getInt(col));
+            }
+            // chain without resolver is populated by sink that stores symbol values as strings
+            return getStr(col);
         }
 
         @Override
         public CharSequence getSymB(int col) {
-            return symbolTableResolver.getSymbolTable(col).valueBOf(getInt(col));
+            if (symbolTableResolver != null) {
+                return symbolTableResolver.getSymbolTable(col).valueBOf(getInt(col));
+            }
+            return getStrB(col);
         }
 
         @Override
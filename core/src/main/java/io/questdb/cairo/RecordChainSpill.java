@@ -0,0 +1,373 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryCMARW;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.NativeLPSZ;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Set of record chains, which are kept either in memory or in temporary files in the spill root,
+ * see {@link CairoConfiguration#getSqlSpillRoot()}. Records are distributed between chains by hash
+ * of their key, so that operator can process its input one partition at a time. Operator that ran
+ * out of its memory budget writes partitions to disk, total size of spill files is limited by
+ * {@link CairoConfiguration#getSqlSpillMaxSize()}. Records with equal keys always end up in the same partition.
+ */
+public class RecordChainSpill implements Closeable, Mutable {
+    private static final Log LOG = LogFactory.getLog(RecordChainSpill.class);
+    private static final AtomicLong SPILL_ID = new AtomicLong();
+    private static final String FILE_PREFIX = "_spill.";
+    private final FilesFacade ff;
+    private final CharSequence root;
+    private final int mkDirMode;
+    private final long extendSegmentSize;
+    private final ObjList<MemoryCMARW> memories = new ObjList<>();
+    private final ObjList<RecordChain> fileChains = new ObjList<>();
+    private final ObjList<RecordChain> memoryChains = new ObjList<>();
+    private final long[] lastOffsets;
+    private final KeyHasher hasher = new KeyHasher();
+    private final Path path = new Path();
+    private final long spillId = SPILL_ID.incrementAndGet();
+    private final int mask;
+    private final long maxFileSize;
+    private ObjList<RecordChain> chains = fileChains;
+    private long size;
+    private boolean open = false;
+
+    public RecordChainSpill(CairoConfiguration configuration, @Transient ColumnTypes columnTypes, RecordSink recordSink) {
+        this(configuration, columnTypes, recordSink, configuration.getSqlSpillPartitionCount());
+    }
+
+    public RecordChainSpill(CairoConfiguration configuration, @Transient ColumnTypes columnTypes, RecordSink recordSink, int partitionCount) {
+        this.ff = configuration.getFilesFacade();
+        this.root = configuration.getSqlSpillRoot();
+        this.mkDirMode = configuration.getMkDirMode();
+        this.extendSegmentSize = ff.getMapPageSize();
+        this.maxFileSize = configuration.getSqlSpillMaxSize();
+        partitionCount = Numbers.ceilPow2(Math.max(1, partitionCount));
+        this.mask = partitionCount - 1;
+        this.lastOffsets = new long[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            final MemoryCMARW mem = Vm.getCMARWInstance();
+            memories.add(mem);
+            fileChains.add(new RecordChain(columnTypes, recordSink, mem));
+            memoryChains.add(new RecordChain(
+                    columnTypes,
+                    recordSink,
+                    configuration.getSqlHashJoinLightValuePageSize(),
+                    Integer.MAX_VALUE
+            ));
+        }
+    }
+
+    /**
+     * Releases partition memory and removes partition files, spill can be opened again afterwards.
+     */
+    @Override
+    public void clear() {
+        if (open) {
+            for (int i = 0, n = chains.size(); i < n; i++) {
+                chains.getQuick(i).close();
+                if (chains == fileChains && !ff.remove(pathOf(i))) {
+                    LOG.error().$("could not remove spill file [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+                }
+            }
+            open = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+        path.close();
+    }
+
+    /**
+     * Removes spill files left behind by a process that did not shut down cleanly.
+     */
+    public static void removeStaleFiles(FilesFacade ff, CharSequence root) {
+        try (Path path = new Path()) {
+            path.of(root).slash$();
+            final int rootLen = path.length();
+            if (!ff.exists(path)) {
+                return;
+            }
+            final NativeLPSZ name = new NativeLPSZ();
+            ff.iterateDir(path, (pName, type) -> {
+                name.of(pName);
+                if (type != Files.DT_DIR && Chars.startsWith(name, FILE_PREFIX)) {
+                    if (ff.remove(path.trimTo(rootLen).concat(name).$())) {
+                        LOG.info().$("removed stale spill file [path=").$(path).$(']').$();
+                    } else {
+                        LOG.error().$("could not remove stale spill file [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @return bytes held by partitions
+     */
+    public long getMemorySize() {
+        return size;
+    }
+
+    public RecordChain getPartition(int index) {
+        final RecordChain chain = chains.getQuick(index);
+        chain.toTop();
+        return chain;
+    }
+
+    public int getPartitionCount() {
+        return mask + 1;
+    }
+
+    public int getPartitionIndex(Record record, RecordSink keySink) {
+        hasher.reset();
+        keySink.copy(record, hasher);
+        return (int) (hasher.hash & mask);
+    }
+
+    public boolean isInMemory() {
+        return open && chains == memoryChains;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Creates empty partition files.
+     */
+    public void open() {
+        if (!open) {
+            chains = fileChains;
+            size = 0;
+            if (ff.mkdirs(path.of(root).slash$(), mkDirMode) != 0) {
+                throw CairoException.instance(ff.errno()).put("could not create spill directory [path=").put(path).put(']');
+            }
+            try {
+                for (int i = 0, n = memories.size(); i < n; i++) {
+                    pathOf(i);
+                    if (ff.exists(path)) {
+                        ff.remove(path);
+                    }
+                    memories.getQuick(i).of(ff, path, extendSegmentSize);
+                    lastOffsets[i] = -1;
+                    // files of partitions, which failed to open, are cleaned up too
+                    open = true;
+                }
+            } catch (Throwable e) {
+                clear();
+                throw e;
+            }
+            LOG.info().$("spilling to disk [id=").$(spillId).$(", partitions=").$(memories.size()).$(']').$();
+        }
+    }
+
+    /**
+     * Opens partitions that are kept in memory, they are released by {@link #clear()}.
+     */
+    public void openInMemory() {
+        if (!open) {
+            chains = memoryChains;
+            size = 0;
+            for (int i = 0, n = chains.size(); i < n; i++) {
+                lastOffsets[i] = -1;
+            }
+            open = true;
+        }
+    }
+
+    /**
+     * Appends record to partition of its key.
+     *
+     * @param record  record to store
+     * @param keySink sink that copies key columns of the record, it must produce the same
+     *                sequence of values for records that are equal for the operator
+     */
+    public void put(Record record, RecordSink keySink) {
+        put(record, getPartitionIndex(record, keySink));
+    }
+
+    public void put(Record record, int partitionIndex) {
+        final RecordChain chain = chains.getQuick(partitionIndex);
+        final long sizeBefore = chain.getMemorySize();
+        lastOffsets[partitionIndex] = chain.put(record, lastOffsets[partitionIndex]);
+        size += chain.getMemorySize() - sizeBefore;
+        if (size > maxFileSize && chains == fileChains) {
+            throw CairoException.instance(0).put("spill size limit exceeded [id=").put(spillId).put(", limit=").put(maxFileSize).put(']');
+        }
+    }
+
+    public void setSymbolTableResolver(RecordCursor resolver) {
+        for (int i = 0, n = chains.size(); i < n; i++) {
+            fileChains.getQuick(i).setSymbolTableResolver(resolver);
+            memoryChains.getQuick(i).setSymbolTableResolver(resolver);
+        }
+    }
+
+    private Path pathOf(int index) {
+        return path.of(root).concat(FILE_PREFIX).put(spillId).put('.').put(index).$();
+    }
+
+    // hashes key values the way sink produces them, ints and longs that are numerically equal
+    // hash the same, so are strings and symbols written as strings
+    private static class KeyHasher implements RecordSinkSPI {
+        private long hash;
+
+        @Override
+        public void putBin(BinarySequence value) {
+            if (value == null) {
+                mix(-1);
+            } else {
+                for (long i = 0, n = value.length(); i < n; i++) {
+                    mix(value.byteAt(i));
+                }
+            }
+        }
+
+        @Override
+        public void putBool(boolean value) {
+            mix(value ? 1 : 0);
+        }
+
+        @Override
+        public void putByte(byte value) {
+            mix(value);
+        }
+
+        @Override
+        public void putDate(long value) {
+            mix(value);
+        }
+
+        @Override
+        public void putDouble(double value) {
+            mix(Double.doubleToLongBits(value));
+        }
+
+        @Override
+        public void putFloat(float value) {
+            mix(Float.floatToIntBits(value));
+        }
+
+        @Override
+        public void putInt(int value) {
+            mix(value);
+        }
+
+        @Override
+        public void putLong(long value) {
+            mix(value);
+        }
+
+        @Override
+        public void putLong256(Long256 value) {
+            mix(value.getLong0());
+            mix(value.getLong1());
+            mix(value.getLong2());
+            mix(value.getLong3());
+        }
+
+        @Override
+        public void putShort(short value) {
+            mix(value);
+        }
+
+        @Override
+        public void putChar(char value) {
+            mix(value);
+        }
+
+        @Override
+        public void putStr(CharSequence value) {
+            if (value == null) {
+                mix(-1);
+            } else {
+                putStr(value, 0, value.length());
+            }
+        }
+
+        @Override
+        public void putStr(CharSequence value, int lo, int hi) {
+            for (int i = lo; i < hi; i++) {
+                mix(value.charAt(i));
+            }
+            mix(hi - lo);
+        }
+
+        @Override
+        public void putStrLowerCase(CharSequence value) {
+            if (value == null) {
+                mix(-1);
+            } else {
+                putStrLowerCase(value, 0, value.length());
+            }
+        }
+
+        @Override
+        public void putStrLowerCase(CharSequence value, int lo, int hi) {
+            for (int i = lo; i < hi; i++) {
+                mix(Character.toLowerCase(value.charAt(i)));
+            }
+            mix(hi - lo);
+        }
+
+        @Override
+        public void putRecord(Record value) {
+            // noop
+        }
+
+        @Override
+        public void putTimestamp(long value) {
+            mix(value);
+        }
+
+        @Override
+        public void skip(int bytes) {
+            // noop
+        }
+
+        private void mix(long value) {
+            long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+            hash = h ^ (h >>> 29);
+        }
+
+        void reset() {
+            hash = 0;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.CharSequenceObjHashMap;
+import io.questdb.std.LongList;
+import io.questdb.std.Misc;
+
+import java.io.Closeable;
+
+/**
+ * Engine-wide cache of materialized query results. Entries are keyed by SQL text and bind variable values.
+ * Each entry carries id, structure version and transaction of every table the query has read. Entry is valid
+ * only while these match the current state of the tables, so that commit to any of the tables invalidates it.
+ * <p>
+ * Entries are shared. Each caller of {@link #acquire(CharSequence)} holds a reference to the entry until it calls
+ * {@link #release(Entry)}, entry stays cached meanwhile. Evicted entry is freed once the last reference is released.
+ * Callers must not iterate the entry chain directly, they copy it to their own chain instead. Total size of cached
+ * entries is bounded by configuration, least recently used entries are evicted first.
+ */
+public class ResultCache implements Closeable {
+    private static final Log LOG = LogFactory.getLog(ResultCache.class);
+    private final CharSequenceObjHashMap<Entry> entries = new CharSequenceObjHashMap<>();
+    private final long capacity;
+    private final long maxEntrySize;
+    private final int pageSize;
+    // most recently used entry
+    private Entry head;
+    // least recently used entry, it is evicted first
+    private Entry tail;
+    private long memorySize;
+
+    public ResultCache(CairoConfiguration configuration) {
+        this.capacity = configuration.getSqlResultCacheSize();
+        this.maxEntrySize = Math.min(configuration.getSqlResultCacheMaxEntrySize(), capacity);
+        this.pageSize = configuration.getSqlResultCachePageSize();
+    }
+
+    @Override
+    public synchronized void close() {
+        while (tail != null) {
+            evict(tail);
+        }
+        entries.clear();
+    }
+
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Finds entry and makes it most recently used. Entry remains in the cache, caller holds a reference
+     * to it and must return the reference via {@link #release(Entry)}.
+     *
+     * @param key SQL text and bind variable values
+     * @return cached entry or null
+     */
+    public synchronized Entry acquire(CharSequence key) {
+        final int index = entries.keyIndex(key);
+        if (index > -1) {
+            return null;
+        }
+        final Entry entry = entries.valueAtQuick(index);
+        unlink(entry);
+        link(entry);
+        entry.refCount++;
+        return entry;
+    }
+
+    /**
+     * Evicts entry, which is no longer valid. Entry, which replaced it under the same key meanwhile, is kept.
+     * Caller still has to release its reference.
+     *
+     * @param entry entry obtained from {@link #acquire(CharSequence)}
+     */
+    public synchronized void invalidate(Entry entry) {
+        if (entry.cached) {
+            evict(entry);
+        }
+    }
+
+    /**
+     * Adds entry to the cache as most recently used. Entry, which was cached with the same key meanwhile,
+     * is replaced. Least recently used entries are evicted when cache is over capacity.
+     *
+     * @param entry entry, ownership of which is passed to the cache
+     */
+    public synchronized void push(Entry entry) {
+        final long entrySize = entry.getMemorySize();
+        if (entrySize > maxEntrySize) {
+            Misc.free(entry);
+            return;
+        }
+
+        final int index = entries.keyIndex(entry.key);
+        if (index < 0) {
+            evict(entries.valueAtQuick(index));
+        }
+        entries.put(entry.key, entry);
+        link(entry);
+        entry.cached = true;
+        memorySize += entrySize;
+
+        while (memorySize > capacity && tail != entry) {
+            evict(tail);
+        }
+    }
+
+    /**
+     * Returns reference obtained from {@link #acquire(CharSequence)}. Entry, which has been evicted
+     * while referenced, is freed with the last reference.
+     *
+     * @param entry acquired entry
+     */
+    public synchronized void release(Entry entry) {
+        assert entry.refCount > 0;
+        if (--entry.refCount == 0 && !entry.cached) {
+            Misc.free(entry);
+        }
+    }
+
+    private void evict(Entry entry) {
+        entries.remove(entry.key);
+        unlink(entry);
+        entry.cached = false;
+        memorySize -= entry.getMemorySize();
+        LOG.debug().$("evicted [size=").$(entry.getMemorySize()).$(", sql=`").$(entry.key).$("`]").$();
+        if (entry.refCount == 0) {
+            Misc.free(entry);
+        }
+    }
+
+    private void link(Entry entry) {
+        entry.next = head;
+        entry.prev = null;
+        if (head != null) {
+            head.prev = entry;
+        }
+        head = entry;
+        if (tail == null) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            head = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        } else {
+            tail = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    public static class Entry implements Closeable {
+        private final String key;
+        private final RecordChain chain;
+        private final long rowCount;
+        // triplets of table id, structure version and transaction
+        private final LongList tableStates;
+        private Entry prev;
+        private Entry next;
+        // number of callers reading the entry, guarded by cache monitor
+        private int refCount;
+        private boolean cached;
+
+        public Entry(String key, RecordChain chain, long rowCount, LongList tableStates) {
+            this.key = key;
+            this.chain = chain;
+            this.rowCount = rowCount;
+            this.tableStates = tableStates;
+        }
+
+        @Override
+        public void close() {
+            chain.close();
+        }
+
+        public RecordChain getChain() {
+            return chain;
+        }
+
+        public long getMemorySize() {
+            return chain.getMemorySize();
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        public boolean isValid(LongList currentTableStates) {
+            final int n = tableStates.size();
+            if (n != currentTableStates.size()) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                if (tableStates.getQuick(i) != currentTableStates.getQuick(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -41,6 +41,9 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
     private final MemoryMR charMem = Vm.getMRInstance();
     private final MemoryMR offsetMem = Vm.getMRInstance();
     private final ObjList<String> cache = new ObjList<>();
+    private CairoConfiguration configuration;
+    private String directory;
+    private String columnName;
     private int maxHash;
     private boolean cached;
     private int symbolCount;
@@ -87,6 +90,7 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
             this.maxOffset = SymbolMapWriter.keyToOffset(symbolCount);
             this.offsetMem.extend(maxOffset);
             growCharMemToSymbolCount(symbolCount);
+            reopenIndexIfCapacityChanged();
         } else if (symbolCount < this.symbolCount) {
             cache.remove(symbolCount + 1, this.symbolCount);
             this.symbolCount = symbolCount;
@@ -95,9 +99,12 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
 
     public void of(CairoConfiguration configuration, Path path, CharSequence name, int symbolCount) {
         FilesFacade ff = configuration.getFilesFacade();
+        this.configuration = configuration;
         this.symbolCount = symbolCount;
         this.maxOffset = SymbolMapWriter.keyToOffset(symbolCount - 1);
         final int plen = path.length();
+        this.directory = Chars.toString(path);
+        this.columnName = Chars.toString(name);
         try {
             // this constructor does not create index. Index must exist
             // and we use "offset" file to store "header"
@@ -118,11 +125,13 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
             // we left off. Where we left off is stored externally to symbol map
             this.offsetMem.partialFile(ff, path, SymbolMapWriter.keyToOffset(symbolCount));
             symbolCapacity = offsetMem.getInt(SymbolMapWriter.HEADER_CAPACITY);
+            Unsafe.getUnsafe().loadFence();
+            final long indexVersion = offsetMem.getLong(SymbolMapWriter.HEADER_INDEX_VERSION);
             this.cached = offsetMem.getBool(SymbolMapWriter.HEADER_CACHE_ENABLED);
             this.nullValue = offsetMem.getBool(SymbolMapWriter.HEADER_NULL_FLAG);
 
             // index writer is used to identify attempts to store duplicate symbol value
-            this.indexReader.of(configuration, path.trimTo(plen), name, 0, -1);
+            this.indexReader.of(configuration, path.trimTo(plen), SymbolMapWriter.indexName(name, indexVersion), 0, -1);
 
             // this is the place where symbol values are stored
             this.charMem.wholeFile(ff, SymbolMapWriter.charFileName(path.trimTo(plen), name));
@@ -155,14 +164,20 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
     @Override
     public int keyOf(CharSequence value) {
         if (value != null) {
+            // index could have been rebuilt by writer with larger hash bound than
+            // the one we know of, in which case value is in one of the buckets
+            // our hash maps to
             int hash = Hash.boundedHash(value, maxHash);
-            RowCursor cursor = indexReader.getCursor(true, hash, 0, maxOffset);
-            while (cursor.hasNext()) {
-                long offsetOffset = cursor.next();
-                if (Chars.equals(value, charMem.getStr(offsetMem.getLong(offsetOffset)))) {
-                    return SymbolMapWriter.offsetToKey(offsetOffset);
+            do {
+                RowCursor cursor = indexReader.getCursor(true, hash, 0, maxOffset);
+                while (cursor.hasNext()) {
+                    long offsetOffset = cursor.next();
+                    if (Chars.equals(value, charMem.getStr(offsetMem.getLong(offsetOffset)))) {
+                        return SymbolMapWriter.offsetToKey(offsetOffset);
+                    }
                 }
-            }
+                hash += maxHash + 1;
+            } while (hash < indexReader.getKeyCount());
             return SymbolTable.VALUE_NOT_FOUND;
         }
         return SymbolTable.VALUE_IS_NULL;
@@ -220,6 +235,21 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
         this.charMem.extend(charMemLength);
     }
 
+    private void reopenIndexIfCapacityChanged() {
+        final int capacity = offsetMem.getInt(SymbolMapWriter.HEADER_CAPACITY);
+        if (capacity != symbolCapacity) {
+            // writer switches index version before capacity, index is at least as large as capacity requires
+            Unsafe.getUnsafe().loadFence();
+            final long version = offsetMem.getLong(SymbolMapWriter.HEADER_INDEX_VERSION);
+            final String indexName = SymbolMapWriter.indexName(columnName, version);
+            final Path path = Path.getThreadLocal(directory);
+            indexReader.of(configuration, path, indexName, 0, -1);
+            this.symbolCapacity = capacity;
+            this.maxHash = Numbers.ceilPow2(capacity / 2) - 1;
+            LOG.debug().$("index reopened [name=").$(path.concat(indexName).$()).$(", capacity=").$(capacity).$(']').$();
+        }
+    }
+
     private CharSequence uncachedValue(int key) {
         return charMem.getStr(offsetMem.getLong(SymbolMapWriter.keyToOffset(key)));
     }
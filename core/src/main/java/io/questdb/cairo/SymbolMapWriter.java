@@ -38,19 +38,46 @@ import io.questdb.std.str.SingleCharCharSequence;
 
 import java.io.Closeable;
 
+/**
+ * Writes symbol dictionary of a column. Symbol values are appended to ".c" file, their offsets to ".o" file
+ * and values are found by hash via bitmap index, which maps hash of value to offsets in ".o" file.
+ * <p>
+ * Number of hash buckets is derived from symbol capacity. When symbol count exceeds capacity,
+ * capacity is doubled and index is rebuilt into files of the next index version. Header then switches
+ * to the new version before it switches to the new capacity, files are never renamed. Readers that still
+ * use old hash bound probe all buckets their hash maps to, so that lookups remain correct until readers
+ * reload. Files of the version before the previous one are removed, readers that have just read the
+ * previous version are still able to open it.
+ * <p>
+ * Writer-side cache of symbol keys is an off-heap hash table, which holds hashes and keys only and
+ * compares values in place in ".c" file.
+ */
 public class SymbolMapWriter implements Closeable {
     public static final int HEADER_SIZE = 64;
     public static final int HEADER_CAPACITY = 0;
     public static final int HEADER_CACHE_ENABLED = 4;
     public static final int HEADER_NULL_FLAG = 8;
+    public static final int HEADER_INDEX_VERSION = 16;
     private static final Log LOG = LogFactory.getLog(SymbolMapWriter.class);
+    private static final int MIN_CACHE_SLOTS = 16;
+    private final CairoConfiguration configuration;
     private final BitmapIndexWriter indexWriter;
     private final MemoryMARW charMem;
     private final MemoryMARW offsetMem;
-    private final CharSequenceIntHashMap cache;
+    private final boolean useCache;
     private final DirectCharSequence tmpSymbol;
-    private final int maxHash;
     private final TransientSymbolCountChangeHandler transientSymbolCountChangeHandler;
+    private String columnName;
+    private final String directory;
+    private int symbolCapacity;
+    // after failed index rebuild next attempt waits until symbol count reaches this value
+    private int rebuildRetrySymbolCount;
+    private long indexVersion;
+    private int maxHash;
+    // off-heap open addressing table, slot holds symbol hash in the high and key in the low 32 bits
+    private long cacheAddress;
+    private int cacheMask;
+    private int cacheSize;
     private boolean nullValue = false;
 
     public SymbolMapWriter(
@@ -60,8 +87,11 @@ public class SymbolMapWriter implements Closeable {
             int symbolCount,
             TransientSymbolCountChangeHandler transientSymbolCountChangeHandler
     ) {
+        this.configuration = configuration;
         this.transientSymbolCountChangeHandler = transientSymbolCountChangeHandler;
+        this.columnName = Chars.toString(name);
         final int plen = path.length();
+        this.directory = Chars.toString(path);
         try {
             final FilesFacade ff = configuration.getFilesFacade();
             final long mapPageSize = ff.getMapPageSize();
@@ -84,12 +114,13 @@ public class SymbolMapWriter implements Closeable {
             // open "offset" memory and make sure we start appending from where
             // we left off. Where we left off is stored externally to symbol map
             this.offsetMem = Vm.getWholeMARWInstance(ff, path, mapPageSize);
-            final int symbolCapacity = offsetMem.getInt(HEADER_CAPACITY);
-            final boolean useCache = offsetMem.getBool(HEADER_CACHE_ENABLED);
+            this.symbolCapacity = offsetMem.getInt(HEADER_CAPACITY);
+            this.useCache = offsetMem.getBool(HEADER_CACHE_ENABLED);
+            this.indexVersion = offsetMem.getLong(HEADER_INDEX_VERSION);
             this.offsetMem.jumpTo(keyToOffset(symbolCount));
 
             // index writer is used to identify attempts to store duplicate symbol value
-            this.indexWriter = new BitmapIndexWriter(configuration, path.trimTo(plen), name);
+            this.indexWriter = new BitmapIndexWriter(configuration, path.trimTo(plen), indexName(name, indexVersion));
 
             // this is the place where symbol values are stored
             this.charMem = Vm.getWholeMARWInstance(ff, charFileName(path.trimTo(plen), name), mapPageSize);
@@ -103,16 +134,14 @@ public class SymbolMapWriter implements Closeable {
             this.maxHash = Numbers.ceilPow2(symbolCapacity / 2) - 1;
 
             if (useCache) {
-                this.cache = new CharSequenceIntHashMap(symbolCapacity);
-            } else {
-                this.cache = null;
+                allocateCache(symbolCapacity);
             }
 
             tmpSymbol = new DirectCharSequence();
             LOG.debug()
                     .$("open [name=").$(path.trimTo(plen).concat(name).$())
                     .$(", fd=").$(this.offsetMem.getFd())
-                    .$(", cache=").$(cache != null)
+                    .$(", cache=").$(useCache)
                     .$(", capacity=").$(symbolCapacity)
                     .I$();
         } catch (Throwable e) {
@@ -141,6 +170,8 @@ public class SymbolMapWriter implements Closeable {
             mem.jumpTo(0);
             mem.putInt(symbolCapacity);
             mem.putBool(symbolCacheFlag);
+            mem.jumpTo(HEADER_INDEX_VERSION);
+            mem.putLong(0);
             mem.jumpTo(HEADER_SIZE);
             mem.close();
 
@@ -157,6 +188,28 @@ public class SymbolMapWriter implements Closeable {
         }
     }
 
+    /**
+     * @param columnName   name of symbol column
+     * @param indexVersion version of hash index from the header of ".o" file
+     * @return name of hash index files of the symbol map
+     */
+    public static String indexName(CharSequence columnName, long indexVersion) {
+        if (indexVersion == 0) {
+            return Chars.toString(columnName);
+        }
+        return columnName + "." + indexVersion;
+    }
+
+    /**
+     * Tells writer that its files have been renamed together with the column, so that
+     * index rebuilt later on is created under the new name.
+     *
+     * @param newName new name of symbol column
+     */
+    void rename(CharSequence newName) {
+        this.columnName = Chars.toString(newName);
+    }
+
     public static Path offsetFileName(Path path, CharSequence columnName) {
         return path.concat(columnName).put(".o").$();
     }
@@ -173,6 +226,7 @@ public class SymbolMapWriter implements Closeable {
 
     @Override
     public void close() {
+        freeCache();
         Misc.free(indexWriter);
         Misc.free(charMem);
         if (this.offsetMem != null) {
@@ -196,20 +250,28 @@ public class SymbolMapWriter implements Closeable {
 
             long offsetOffset = offsetMem.getAppendOffset();
             offsetMem.putLong(symCharsOffset);
-            int hash = Hash.boundedHash(tmpSymbol, maxHash);
-            indexWriter.add(hash, offsetOffset);
+            int hash = hashOf(tmpSymbol);
+            indexWriter.add(hash & maxHash, offsetOffset);
 
-            if (cache != null) {
-                cache.putAt(symbolIndex, tmpSymbol.toString(), offsetToKey(offsetOffset));
+            if (useCache) {
+                final long slot = cacheSlotOf(tmpSymbol, hash);
+                if (slot > -1) {
+                    cachePutAt(slot, hash, offsetToKey(offsetOffset));
+                }
             }
 
             offset = symCharsOffsetHi;
             charMem.jumpTo(offset);
             symbolIndex++;
         }
+        growCapacityIfNeeded(symbolIndex);
         LOG.debug().$("appended a block of ").$(nSymbolsAdded).$("symbols [fd=").$(this.offsetMem.getFd()).$(']').$();
     }
 
+    public long getIndexVersion() {
+        return indexVersion;
+    }
+
     public int getSymbolCount() {
         return offsetToKey(offsetMem.getAppendOffset());
     }
@@ -228,11 +290,17 @@ public class SymbolMapWriter implements Closeable {
             return SymbolTable.VALUE_IS_NULL;
         }
 
-        if (cache != null) {
-            int index = cache.keyIndex(symbol);
-            return index < 0 ? cache.valueAt(index) : lookupPutAndCache(index, symbol);
+        final int hash = hashOf(symbol);
+        if (useCache) {
+            final long slot = cacheSlotOf(symbol, hash);
+            if (slot < 0) {
+                return cacheKeyAt(-slot - 1);
+            }
+            final int key = lookupAndPut(symbol, hash);
+            cachePutAt(slot, hash, key);
+            return key;
         }
-        return lookupAndPut(symbol);
+        return lookupAndPut(symbol, hash);
     }
 
     public void rollback(int symbolCount) {
@@ -240,9 +308,7 @@ public class SymbolMapWriter implements Closeable {
         offsetMem.jumpTo(keyToOffset(symbolCount));
         jumpCharMemToSymbolCount(symbolCount);
         transientSymbolCountChangeHandler.handleTransientSymbolCountChange(symbolCount);
-        if (cache != null) {
-            cache.clear();
-        }
+        clearCache();
     }
 
     public void updateCacheFlag(boolean flag) {
@@ -261,8 +327,108 @@ public class SymbolMapWriter implements Closeable {
         return HEADER_SIZE + key * 8L;
     }
 
+    private static int hashOf(CharSequence symbol) {
+        return Chars.hashCode(symbol) & 0xFFFFFFF;
+    }
+
+    int getSymbolCapacity() {
+        return symbolCapacity;
+    }
+
     boolean isCached() {
-        return cache != null;
+        return useCache;
+    }
+
+    private void allocateCache(int symbolCapacity) {
+        final int slots = Math.max(MIN_CACHE_SLOTS, Numbers.ceilPow2(symbolCapacity) * 2);
+        cacheAddress = Unsafe.malloc((long) slots << 3);
+        cacheMask = slots - 1;
+        cacheSize = 0;
+        Vect.memset(cacheAddress, (long) slots << 3, -1);
+    }
+
+    private int cacheKeyAt(long slot) {
+        return (int) Unsafe.getUnsafe().getLong(cacheAddress + (slot << 3));
+    }
+
+    private void cachePutAt(long slot, int hash, int key) {
+        Unsafe.getUnsafe().putLong(cacheAddress + (slot << 3), ((long) hash << 32) | (key & 0xFFFFFFFFL));
+        if (++cacheSize << 1 > cacheMask) {
+            growCache();
+        }
+    }
+
+    /**
+     * @return slot of the symbol as -slot - 1 when symbol is cached, otherwise free slot for the symbol
+     */
+    private long cacheSlotOf(CharSequence symbol, int hash) {
+        long slot = hash & cacheMask;
+        while (true) {
+            final long entry = Unsafe.getUnsafe().getLong(cacheAddress + (slot << 3));
+            if (entry == -1L) {
+                return slot;
+            }
+            if ((int) (entry >>> 32) == hash && Chars.equals(symbol, charMem.getStr(offsetMem.getLong(keyToOffset((int) entry))))) {
+                return -slot - 1;
+            }
+            slot = (slot + 1) & cacheMask;
+        }
+    }
+
+    private void clearCache() {
+        if (cacheAddress != 0) {
+            Vect.memset(cacheAddress, (long) (cacheMask + 1) << 3, -1);
+            cacheSize = 0;
+        }
+    }
+
+    private void freeCache() {
+        if (cacheAddress != 0) {
+            Unsafe.free(cacheAddress, (long) (cacheMask + 1) << 3);
+            cacheAddress = 0;
+        }
+    }
+
+    private void growCache() {
+        final long oldAddress = cacheAddress;
+        final int oldSlots = cacheMask + 1;
+        final int slots = oldSlots << 1;
+        cacheAddress = Unsafe.malloc((long) slots << 3);
+        cacheMask = slots - 1;
+        Vect.memset(cacheAddress, (long) slots << 3, -1);
+        for (int i = 0; i < oldSlots; i++) {
+            final long entry = Unsafe.getUnsafe().getLong(oldAddress + ((long) i << 3));
+            if (entry != -1L) {
+                long slot = (entry >>> 32) & cacheMask;
+                while (Unsafe.getUnsafe().getLong(cacheAddress + (slot << 3)) != -1L) {
+                    slot = (slot + 1) & cacheMask;
+                }
+                Unsafe.getUnsafe().putLong(cacheAddress + (slot << 3), entry);
+            }
+        }
+        Unsafe.free(oldAddress, (long) oldSlots << 3);
+    }
+
+    private void growCapacityIfNeeded(int symbolCount) {
+        if (symbolCount <= symbolCapacity || symbolCount < rebuildRetrySymbolCount) {
+            return;
+        }
+        int capacity = symbolCapacity;
+        while (capacity < symbolCount) {
+            capacity = capacity << 1;
+        }
+        if (rebuildIndex(Numbers.ceilPow2(capacity), symbolCount)) {
+            rebuildRetrySymbolCount = 0;
+        } else {
+            // current index is still valid, only its hash chains are longer than they should be;
+            // retry once symbol count doubles, so that rebuild attempts cost O(1) per symbol
+            rebuildRetrySymbolCount = symbolCount < Integer.MAX_VALUE / 2 ? symbolCount * 2 : Integer.MAX_VALUE;
+            LOG.error().$("symbol capacity is not increased [column=").$(columnName)
+                    .$(", capacity=").$(symbolCapacity)
+                    .$(", symbolCount=").$(symbolCount)
+                    .$(", retrySymbolCount=").$(rebuildRetrySymbolCount)
+                    .I$();
+        }
     }
 
     private void jumpCharMemToSymbolCount(int symbolCount) {
@@ -275,9 +441,8 @@ public class SymbolMapWriter implements Closeable {
         }
     }
 
-    private int lookupAndPut(CharSequence symbol) {
-        int hash = Hash.boundedHash(symbol, maxHash);
-        RowCursor cursor = indexWriter.getCursor(hash);
+    private int lookupAndPut(CharSequence symbol, int hash) {
+        RowCursor cursor = indexWriter.getCursor(hash & maxHash);
         while (cursor.hasNext()) {
             long offsetOffset = cursor.next();
             if (Chars.equals(symbol, charMem.getStr(offsetMem.getLong(offsetOffset)))) {
@@ -287,29 +452,88 @@ public class SymbolMapWriter implements Closeable {
         return put0(symbol, hash);
     }
 
-    private int lookupPutAndCache(int index, CharSequence symbol) {
-        int result;
-        result = lookupAndPut(symbol);
-        cache.putAt(index, symbol.toString(), result);
-        return result;
-    }
-
     private int put0(CharSequence symbol, int hash) {
         long offsetOffset = offsetMem.getAppendOffset();
         offsetMem.putLong(charMem.putStr(symbol));
-        indexWriter.add(hash, offsetOffset);
+        indexWriter.add(hash & maxHash, offsetOffset);
         int symIndex = offsetToKey(offsetOffset);
         transientSymbolCountChangeHandler.handleTransientSymbolCountChange(symIndex + 1);
+        // symbol is stored and found via current index even if index could not be rebuilt,
+        // failed rebuild does not fail the put
+        growCapacityIfNeeded(symIndex + 1);
         return symIndex;
     }
 
+    private boolean rebuildIndex(int capacity, int symbolCount) {
+        final FilesFacade ff = configuration.getFilesFacade();
+        final long newVersion = indexVersion + 1;
+        final String newName = indexName(columnName, newVersion);
+        final int newMaxHash = Numbers.ceilPow2(capacity / 2) - 1;
+        try (Path path = new Path(); MemoryMA mem = Vm.getMAInstance()) {
+            path.of(directory);
+            final int plen = path.length();
+            try {
+                // left over by interrupted rebuild, if any
+                ff.remove(BitmapIndexUtils.valueFileName(path, newName));
+                mem.smallFile(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), newName));
+                BitmapIndexWriter.initKeyMemory(mem, TableUtils.MIN_INDEX_VALUE_BLOCK_SIZE);
+                mem.close();
+                if (!ff.touch(BitmapIndexUtils.valueFileName(path.trimTo(plen), newName))) {
+                    throw CairoException.instance(ff.errno()).put("could not create ").put(path);
+                }
+                try (BitmapIndexWriter rebuildWriter = new BitmapIndexWriter(configuration, path.trimTo(plen), newName)) {
+                    for (int key = 0; key < symbolCount; key++) {
+                        final long offsetOffset = keyToOffset(key);
+                        rebuildWriter.add(hashOf(charMem.getStr(offsetMem.getLong(offsetOffset))) & newMaxHash, offsetOffset);
+                    }
+                }
+                indexWriter.of(configuration, path.trimTo(plen), newName);
+            } catch (Throwable e) {
+                LOG.error().$("could not rebuild symbol index [path=").$(path.trimTo(plen)).$(", column=").$(columnName)
+                        .$(", capacity=").$(capacity)
+                        .$(", error=").$(e)
+                        .I$();
+                removeIndexFiles(ff, path, plen, newName);
+                // current index is still valid
+                indexWriter.of(configuration, path.trimTo(plen), indexName(columnName, indexVersion));
+                return false;
+            }
+
+            // readers read capacity before version, so that they never see new capacity with old index
+            offsetMem.putLong(HEADER_INDEX_VERSION, newVersion);
+            Unsafe.getUnsafe().storeFence();
+            offsetMem.putInt(HEADER_CAPACITY, capacity);
+            if (indexVersion > 0) {
+                // readers could still be about to open the previous version, the one before it is not used
+                removeIndexFiles(ff, path, plen, indexName(columnName, indexVersion - 1));
+            }
+        }
+        LOG.info().$("symbol capacity increased [column=").$(columnName)
+                .$(", capacity=").$(capacity)
+                .$(", symbolCount=").$(symbolCount)
+                .$(", indexVersion=").$(newVersion)
+                .I$();
+        this.indexVersion = newVersion;
+        this.symbolCapacity = capacity;
+        this.maxHash = newMaxHash;
+        return true;
+    }
+
+    private static void removeIndexFiles(FilesFacade ff, Path path, int plen, CharSequence indexName) {
+        if (ff.exists(BitmapIndexUtils.keyFileName(path.trimTo(plen), indexName)) && !ff.remove(path)) {
+            LOG.error().$("could not remove [path=").$(path).$(", errno=").$(ff.errno()).I$();
+        }
+        if (ff.exists(BitmapIndexUtils.valueFileName(path.trimTo(plen), indexName)) && !ff.remove(path)) {
+            LOG.error().$("could not remove [path=").$(path).$(", errno=").$(ff.errno()).I$();
+        }
+        path.trimTo(plen);
+    }
+
     void truncate() {
         offsetMem.jumpTo(keyToOffset(0));
         charMem.jumpTo(0);
         indexWriter.truncate();
-        if (cache != null) {
-            cache.clear();
-        }
+        clearCache();
     }
 
     public interface TransientSymbolCountChangeHandler {
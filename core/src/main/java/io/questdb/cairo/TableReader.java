@@ -27,6 +27,7 @@ package io.questdb.cairo;
 import io.questdb.cairo.sql.SymbolTable;
 import io.questdb.cairo.sql.SymbolTableSource;
 import io.questdb.cairo.vm.MemoryCMRImpl;
+import io.questdb.cairo.vm.MemoryCMRZImpl;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryMR;
 import io.questdb.cairo.vm.api.MemoryR;
@@ -77,11 +78,15 @@ public class TableReader implements Closeable, SymbolTableSource {
     private boolean active;
 
     public TableReader(CairoConfiguration configuration, CharSequence tableName) {
+        this(configuration, tableName, configuration.getRoot());
+    }
+
+    public TableReader(CairoConfiguration configuration, CharSequence tableName, CharSequence root) {
         this.configuration = configuration;
         this.ff = configuration.getFilesFacade();
         this.tableName = Chars.toString(tableName);
         this.path = new Path();
-        this.path.of(configuration.getRoot()).concat(tableName);
+        this.path.of(root).concat(tableName);
         this.rootLen = path.length();
         try {
             failOnPendingTodo();
@@ -309,6 +314,7 @@ public class TableReader implements Closeable, SymbolTableSource {
         if (active) {
             active = false;
             txnScoreboard.releaseTxn(txn);
+            releaseCompressedColumns();
         }
     }
 
@@ -316,6 +322,13 @@ public class TableReader implements Closeable, SymbolTableSource {
         return tempMem8b != 0;
     }
 
+    /**
+     * @return true when table has been committed to since reader was last reloaded
+     */
+    public boolean isOutdated() {
+        return txn != txFile.readTxn();
+    }
+
     public double maxDouble(int columnIndex) {
         double max = Double.NEGATIVE_INFINITY;
         for (int i = 0; i < partitionCount; i++) {
@@ -358,6 +371,59 @@ public class TableReader implements Closeable, SymbolTableSource {
         return min;
     }
 
+    /**
+     * Maps min/max statistics of column in partition without opening the partition.
+     * Statistics are only used when they were written for exactly the row count
+     * this reader sees in the partition. Active partition never has them.
+     *
+     * @return true when statistics are mapped, false when there are none or they are stale
+     */
+    public boolean openPartitionStats(int partitionIndex, int columnIndex, MemoryMR mem) {
+        if (partitionIndex >= partitionCount - 1 || !PartitionStats.isSupported(metadata.getColumnType(columnIndex))) {
+            return false;
+        }
+        try {
+            final Path path = pathGenPartitioned(partitionIndex);
+            TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxn(partitionIndex));
+            if (ff.exists(TableUtils.statsFile(path, metadata.getColumnName(columnIndex)))) {
+                mem.smallFile(ff, path);
+                if (PartitionStats.isValid(mem, txFile.getPartitionSize(partitionIndex))) {
+                    return true;
+                }
+                mem.close();
+            }
+            return false;
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
+    /**
+     * Maps bloom filters of column in partition without opening the partition, filters are
+     * subject to the same staleness rules as statistics.
+     *
+     * @return true when filters are mapped, false when there are none or they are stale
+     */
+    public boolean openPartitionBloomFilter(int partitionIndex, int columnIndex, MemoryMR mem) {
+        if (partitionIndex >= partitionCount - 1 || !PartitionBloomFilter.isSupported(metadata.getColumnType(columnIndex))) {
+            return false;
+        }
+        try {
+            final Path path = pathGenPartitioned(partitionIndex);
+            TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxn(partitionIndex));
+            if (ff.exists(TableUtils.bloomFilterFile(path, metadata.getColumnName(columnIndex)))) {
+                mem.smallFile(ff, path);
+                if (PartitionBloomFilter.isValid(mem, txFile.getPartitionSize(partitionIndex))) {
+                    return true;
+                }
+                mem.close();
+            }
+            return false;
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
     public long openPartition(int partitionIndex) {
         final long size = getPartitionRowCount(partitionIndex);
         if (size != -1) {
@@ -545,7 +611,8 @@ public class TableReader implements Closeable, SymbolTableSource {
     }
 
     private static void growColumn(MemoryR mem1, MemoryR mem2, int type, long rowCount) {
-        if (rowCount > 0) {
+        // compressed file is sized by its header, reading offsets of var-length column would decode it
+        if (rowCount > 0 && !(mem1 instanceof MemoryCMRZImpl)) {
             // subtract column top
             switch (ColumnType.tagOf(type)) {
                 default:
@@ -648,7 +715,21 @@ public class TableReader implements Closeable, SymbolTableSource {
         } else {
             Path path = pathGenPartitioned(getPartitionIndex(columnBase));
             try {
-                if (direction == BitmapIndexReader.DIR_BACKWARD) {
+                final int plen = path.length();
+                TableUtils.txnPartitionConditionally(path, txn);
+                final boolean compressed = PostingIndex.isCompressed(ff, path, path.length(), metadata.getColumnName(columnIndex));
+                path.trimTo(plen);
+                if (compressed) {
+                    reader = new PostingIndexReader(
+                            configuration,
+                            path,
+                            metadata.getColumnName(columnIndex),
+                            getColumnTop(columnBase, columnIndex),
+                            txn,
+                            direction
+                    );
+                    bitmapIndexes.setQuick(direction == BitmapIndexReader.DIR_BACKWARD ? globalIndex : globalIndex + 1, reader);
+                } else if (direction == BitmapIndexReader.DIR_BACKWARD) {
                     reader = new BitmapIndexBwdReader(
                             configuration,
                             path,
@@ -690,7 +771,7 @@ public class TableReader implements Closeable, SymbolTableSource {
             final int base = partitionIndex << columnBits;
             final int oldBase = partitionIndex << columnCountBits;
             try {
-                final Path path = pathGenPartitioned(partitionIndex).$();
+                final Path path = pathGenOpenPartition(partitionIndex);
                 long partitionRowCount = openPartitionInfo.getQuick(partitionIndex * PARTITIONS_SLOT_SIZE + PARTITIONS_SLOT_OFFSET_SIZE);
                 final boolean lastPartition = partitionIndex == partitionCount - 1;
                 for (int i = 0; i < columnCount; i++) {
@@ -829,7 +910,7 @@ public class TableReader implements Closeable, SymbolTableSource {
         return txFile.getTransientRowCount();
     }
 
-    long getTxn() {
+    public long getTxn() {
         return txn;
     }
 
@@ -899,9 +980,32 @@ public class TableReader implements Closeable, SymbolTableSource {
             int primaryIndex,
             MemoryMR mem
     ) {
-        if (mem != null && mem != NullColumn.INSTANCE) {
+        if (!lastPartition && !ff.exists(path)) {
+            // column file of sealed partition has been replaced with its compressed copy
+            final int len = path.length();
+            path.chop$().put(TableUtils.FILE_SUFFIX_Z).$();
+            try {
+                if (mem instanceof MemoryCMRZImpl) {
+                    mem.wholeFile(ff, path);
+                } else {
+                    Misc.free(mem);
+                    mem = new MemoryCMRZImpl(ff, path, configuration.getPartitionCompressionCacheSize());
+                    columns.setQuick(primaryIndex, mem);
+                }
+                return mem;
+            } catch (CairoException e) {
+                // O3 commit restores uncompressed file before it removes the compressed one
+                if (!ff.exists(path.trimTo(len).$())) {
+                    throw e;
+                }
+                Misc.free(columns.getAndSetQuick(primaryIndex, null));
+                mem = null;
+            }
+        }
+        if (mem != null && mem != NullColumn.INSTANCE && !(mem instanceof MemoryCMRZImpl)) {
             mem.wholeFile(ff, path);
         } else {
+            Misc.free(mem);
             mem = Vm.getMRInstance(ff, path, lastPartition ? ff.getMapPageSize() : ff.length(path));
             columns.setQuick(primaryIndex, mem);
         }
@@ -992,6 +1096,13 @@ public class TableReader implements Closeable, SymbolTableSource {
         }
     }
 
+    // partition directory of the version reader has open, O3 and compression write new versions
+    private Path pathGenOpenPartition(int partitionIndex) {
+        final Path path = pathGenPartitioned(partitionIndex);
+        TableUtils.txnPartitionConditionally(path, openPartitionInfo.getQuick(partitionIndex * PARTITIONS_SLOT_SIZE + PARTITIONS_SLOT_OFFSET_NAME_TXN));
+        return path.$();
+    }
+
     private Path pathGenPartitioned(int partitionIndex) {
         formatPartitionDirName(partitionIndex, path.slash());
         return path;
@@ -1100,6 +1211,16 @@ public class TableReader implements Closeable, SymbolTableSource {
         reconcileOpenPartitionsFrom(0);
     }
 
+    // pooled reader keeps compressed columns open, but not their decoded copies
+    private void releaseCompressedColumns() {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            final MemoryMR mem = columns.getQuick(i);
+            if (mem instanceof MemoryCMRZImpl) {
+                ((MemoryCMRZImpl) mem).release();
+            }
+        }
+    }
+
     private boolean reload(boolean activation) {
         if (this.txn == txFile.readTxn()) {
             if (activation) {
@@ -1129,7 +1250,8 @@ public class TableReader implements Closeable, SymbolTableSource {
             MemoryMR mem1 = columns.getQuick(primaryIndex);
             MemoryMR mem2 = columns.getQuick(secondaryIndex);
 
-            if (ff.exists(TableUtils.dFile(path.trimTo(plen), name))) {
+            if (ff.exists(TableUtils.dFile(path.trimTo(plen), name)) || ff.exists(TableUtils.dzFile(path.trimTo(plen), name))) {
+                TableUtils.dFile(path.trimTo(plen), name);
 
                 mem1 = openOrCreateMemory(path, columns, lastPartition, primaryIndex, mem1);
 
@@ -1148,6 +1270,14 @@ public class TableReader implements Closeable, SymbolTableSource {
                 columnTops.setQuick(columnBase / 2 + columnIndex, columnTop);
 
                 if (metadata.isColumnIndexed(columnIndex)) {
+                    if (PostingIndex.isCompressed(ff, path, plen, name) || indexReaders.getQuick(primaryIndex) instanceof PostingIndexReader
+                            || indexReaders.getQuick(secondaryIndex) instanceof PostingIndexReader) {
+                        // index format changes when partition is compressed or decompressed,
+                        // readers of the right kind are created lazily
+                        Misc.free(indexReaders.getAndSetQuick(primaryIndex, null));
+                        Misc.free(indexReaders.getAndSetQuick(secondaryIndex, null));
+                        return;
+                    }
                     BitmapIndexReader indexReader = indexReaders.getQuick(primaryIndex);
                     if (indexReader instanceof BitmapIndexBwdReader) {
                         // name txn is -1 because the parent call sets up partition name for us
@@ -1307,7 +1437,7 @@ public class TableReader implements Closeable, SymbolTableSource {
         for (int partitionIndex = 0; partitionIndex < partitionCount; partitionIndex++) {
             int base = getColumnBase(partitionIndex);
             try {
-                final Path path = pathGenPartitioned(partitionIndex).$();
+                final Path path = pathGenOpenPartition(partitionIndex);
                 final long partitionRowCount = openPartitionInfo.getQuick(partitionIndex * PARTITIONS_SLOT_SIZE + PARTITIONS_SLOT_OFFSET_SIZE);
                 final boolean lastPartition = partitionIndex == partitionCount - 1;
 
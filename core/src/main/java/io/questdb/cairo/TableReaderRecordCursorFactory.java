@@ -70,12 +70,32 @@ public class TableReaderRecordCursorFactory extends AbstractRecordCursorFactory
         Misc.free(pageFrameCursor);
     }
 
+    public IntList getColumnIndexes() {
+        return columnIndexes;
+    }
+
+    public IntList getColumnSizes() {
+        return columnSizes;
+    }
+
     @Override
     public RecordCursor getCursor(SqlExecutionContext executionContext) {
         cursor.of(engine.getReader(executionContext.getCairoSecurityContext(), tableName, tableId, tableVersion));
         return cursor;
     }
 
+    public int getTableId() {
+        return tableId;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getTableVersion() {
+        return tableVersion;
+    }
+
     @Override
     public boolean recordCursorSupportsRandomAccess() {
         return true;
@@ -61,6 +61,10 @@ public class TableReaderSelectedColumnRecordCursor implements RecordCursor {
         return recordA;
     }
 
+    public TableReader getTableReader() {
+        return reader;
+    }
+
     @Override
     public SymbolTable getSymbolTable(int columnIndex) {
         return reader.getSymbolMapReader(columnIndexes.getQuick(columnIndex));
@@ -46,6 +46,8 @@ public final class TableUtils {
     public static final int TABLE_RESERVED = 2;
     public static final String META_FILE_NAME = "_meta";
     public static final String TXN_FILE_NAME = "_txn";
+    public static final String WAL_DIR_NAME = "wal";
+    public static final String WAL_TXN_LOG_FILE_NAME = "_txnlog";
     public static final String TXN_SCOREBOARD_FILE_NAME = "_txn_scoreboard";
     public static final String UPGRADE_FILE_NAME = "_upgrade.d";
     public static final String DETACHED_DIR_MARKER = ".detached";
@@ -66,6 +68,9 @@ public final class TableUtils {
     public static final long META_OFFSET_COMMIT_LAG = 24;
     public static final String FILE_SUFFIX_I = ".i";
     public static final String FILE_SUFFIX_D = ".d";
+    public static final String FILE_SUFFIX_ST = ".st";
+    public static final String FILE_SUFFIX_BF = ".bf";
+    public static final String FILE_SUFFIX_Z = ".z";
     public static final int LONGS_PER_TX_ATTACHED_PARTITION = 4;
     public static final int LONGS_PER_TX_ATTACHED_PARTITION_MSB = Numbers.msb(LONGS_PER_TX_ATTACHED_PARTITION);
     static final int MIN_INDEX_VALUE_BLOCK_SIZE = Numbers.ceilPow2(4);
@@ -94,6 +99,9 @@ public final class TableUtils {
      * long txn_check; // same as txn - sanity check for concurrent reads and writes
      * int  map_writer_count; // symbol writer count
      * int  map_writer_position[map_writer_count]; // position of each of map writers
+     * int  partition_table_size; // size of partition table in bytes
+     * long partition_table[partition_table_size / 8]; // timestamp, size, name txn and data txn of each partition
+     * long applied_wal_txn_count; // count of write-ahead log transactions applied to the table
      * }
      * <p>
      * TableUtils.resetTxn() writes to this file, it could be using different offsets, beware
@@ -206,7 +214,7 @@ public final class TableUtils {
                 }
             }
             mem.smallFile(ff, path.trimTo(rootLen).concat(TXN_FILE_NAME).$());
-            TableUtils.resetTxn(mem, symbolMapCount, 0L, INITIAL_TXN, 0L);
+            TableUtils.resetTxn(mem, symbolMapCount, 0L, INITIAL_TXN, 0L, 0L);
             resetTodoLog(ff, path, rootLen, mem);
             // allocate txn scoreboard
             path.trimTo(rootLen).concat(TXN_SCOREBOARD_FILE_NAME).$();
@@ -479,7 +487,7 @@ public final class TableUtils {
         mem.jumpTo(40);
     }
 
-    public static void resetTxn(MemoryMW txMem, int symbolMapCount, long txn, long dataVersion, long partitionTableVersion) {
+    public static void resetTxn(MemoryMW txMem, int symbolMapCount, long txn, long dataVersion, long partitionTableVersion, long appliedWalTxnCount) {
         // txn to let readers know table is being reset
         txMem.putLong(TX_OFFSET_TXN, txn);
         Unsafe.getUnsafe().storeFence();
@@ -513,10 +521,12 @@ public final class TableUtils {
 
         // partition update count
         txMem.putInt(getPartitionTableSizeOffset(symbolMapCount), 0);
+        // applied WAL transaction count follows empty partition table
+        txMem.putLong(getPartitionTableIndexOffset(symbolMapCount, 0), appliedWalTxnCount);
 
         // make sure we put append pointer behind our data so that
         // files does not get truncated when closing
-        txMem.setTruncateSize(getPartitionTableIndexOffset(symbolMapCount, 0));
+        txMem.setTruncateSize(getPartitionTableIndexOffset(symbolMapCount, 0) + Long.BYTES);
     }
 
     /**
@@ -744,6 +754,18 @@ public final class TableUtils {
         return path.concat(columnName).put(FILE_SUFFIX_D).$();
     }
 
+    static LPSZ bloomFilterFile(Path path, CharSequence columnName) {
+        return path.concat(columnName).put(FILE_SUFFIX_BF).$();
+    }
+
+    static LPSZ dzFile(Path path, CharSequence columnName) {
+        return path.concat(columnName).put(FILE_SUFFIX_D).put(FILE_SUFFIX_Z).$();
+    }
+
+    static LPSZ statsFile(Path path, CharSequence columnName) {
+        return path.concat(columnName).put(FILE_SUFFIX_ST).$();
+    }
+
     static LPSZ topFile(Path path, CharSequence columnName) {
         return path.concat(columnName).put(".top").$();
     }
@@ -752,6 +774,10 @@ public final class TableUtils {
         return path.concat(columnName).put(FILE_SUFFIX_I).$();
     }
 
+    static LPSZ izFile(Path path, CharSequence columnName) {
+        return path.concat(columnName).put(FILE_SUFFIX_I).put(FILE_SUFFIX_Z).$();
+    }
+
     static long getColumnFlags(MemoryR metaMem, int columnIndex) {
         return metaMem.getLong(META_OFFSET_COLUMN_TYPES + columnIndex * META_COLUMN_DATA_SIZE + 4);
     }
@@ -28,6 +28,7 @@ import io.questdb.MessageBus;
 import io.questdb.MessageBusImpl;
 import io.questdb.cairo.SymbolMapWriter.TransientSymbolCountChangeHandler;
 import io.questdb.cairo.sql.*;
+import io.questdb.cairo.vm.MemoryCMRZImpl;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.*;
 import io.questdb.griffin.SqlException;
@@ -45,7 +46,6 @@ import io.questdb.std.str.StringSink;
 import io.questdb.tasks.*;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.Closeable;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongConsumer;
@@ -54,13 +54,14 @@ import static io.questdb.cairo.StatusCode.*;
 import static io.questdb.cairo.TableUtils.*;
 import static io.questdb.std.Files.isDots;
 
-public class TableWriter implements Closeable {
+public class TableWriter implements TableWriterAPI {
     public static final int TIMESTAMP_MERGE_ENTRY_BYTES = Long.BYTES * 2;
     public static final int O3_BLOCK_NONE = -1;
     public static final int O3_BLOCK_O3 = 1;
     public static final int O3_BLOCK_DATA = 2;
     public static final int O3_BLOCK_MERGE = 3;
     private static final int MEM_PAGE_SIZE = 16 * Numbers.SIZE_1MB;
+    private static final long INDEX_PROGRESS_INTERVAL_NANOS = 1_000_000_000L;
     private static final Log LOG = LogFactory.getLog(TableWriter.class);
     private static final CharSequenceHashSet IGNORED_FILES = new CharSequenceHashSet();
     private static final Runnable NOOP = () -> {
@@ -76,7 +77,7 @@ public class TableWriter implements Closeable {
     private final Path path;
     private final Path other;
     private final LongList refs = new LongList();
-    private final Row row = new Row();
+    private final RowImpl row = new RowImpl();
     private final int rootLen;
     private final MemoryMR metaMem;
     private final int partitionBy;
@@ -112,6 +113,7 @@ public class TableWriter implements Closeable {
     private final ObjList<MemoryCARW> o3Columns2;
     private final TableBlockWriter blockWriter;
     private final TimestampValueRecord dropPartitionFunctionRec = new TimestampValueRecord();
+    private final LongList compressPartitionTimestamps = new LongList();
     private final ObjList<O3CallbackTask> o3PendingCallbackTasks = new ObjList<>();
     private final O3ColumnUpdateMethod oooSortVarColumnRef = this::o3SortVarColumn;
     private final O3ColumnUpdateMethod oooSortFixColumnRef = this::o3SortFixColumn;
@@ -122,9 +124,21 @@ public class TableWriter implements Closeable {
     private final TxWriter txFile;
     private final FindVisitor removePartitionDirsNotAttached = this::removePartitionDirsNotAttached;
     private final LongList o3PartitionRemoveCandidates = new LongList();
+    // older partitions that O3 has written to in this transaction, their statistics are rewritten on commit
+    private final LongHashSet statsPartitionTimestamps = new LongHashSet();
+    private final MemoryMR statsDataMem = Vm.getMRInstance();
+    private final MemoryMARW statsMem = Vm.getMARWInstance();
+    private final MemoryMR statsIndexMem = Vm.getMRInstance();
+    private final boolean partitionStatsEnabled;
+    private final long partitionStatsBlockSize;
+    private final boolean partitionBloomFilterEnabled;
+    private final int partitionBloomFilterBitsPerRow;
+    private final long partitionCompressionAge;
+    private final boolean indexCompressionEnabled;
     private final ObjectPool<O3MutableAtomicInteger> o3ColumnCounters = new ObjectPool<O3MutableAtomicInteger>(O3MutableAtomicInteger::new, 64);
     private final ObjectPool<O3Basket> o3BasketPool = new ObjectPool<O3Basket>(O3Basket::new, 64);
     private final TxnScoreboard txnScoreboard;
+    private final PartitionCompressionRequest compressionRequest;
     private final StringSink o3Sink = new StringSink();
     private final NativeLPSZ o3NativeLPSZ = new NativeLPSZ();
     private final RingQueue<O3PartitionUpdateTask> o3PartitionUpdateQueue;
@@ -132,7 +146,6 @@ public class TableWriter implements Closeable {
     private final SCSequence o3PartitionUpdateSubSeq;
     private final boolean o3QuickSortEnabled;
     private final LongConsumer appendTimestampSetter;
-    private final MemoryMR indexMem = Vm.getMRInstance();
     private long todoTxn;
     private MemoryARW o3TimestampMem;
     private final O3ColumnUpdateMethod o3MoveLagRef = this::o3MoveLag0;
@@ -161,6 +174,12 @@ public class TableWriter implements Closeable {
     private long o3RowCount;
     private final O3ColumnUpdateMethod o3MoveUncommittedRef = this::o3MoveUncommitted0;
     private long lastPartitionTimestamp;
+    // partitions from this timestamp and below the active one are sealed with statistics on commit
+    private long statsSealTimestampLo = Long.MAX_VALUE;
+    // partitions below this timestamp have been visited by compression policy
+    private long compressTimestampLo = Long.MIN_VALUE;
+    // sealed partitions from this timestamp have bitmap indexes yet to be compressed
+    private long indexCompressTimestampLo = Long.MIN_VALUE;
     private boolean o3InError = false;
 
     public TableWriter(CairoConfiguration configuration, CharSequence tableName) {
@@ -200,6 +219,12 @@ public class TableWriter implements Closeable {
         this.fileOperationRetryCount = configuration.getFileOperationRetryCount();
         this.tableName = Chars.toString(tableName);
         this.o3QuickSortEnabled = configuration.isO3QuickSortEnabled();
+        this.partitionStatsEnabled = configuration.isPartitionStatsEnabled();
+        this.partitionStatsBlockSize = configuration.getPartitionStatsBlockSize();
+        this.partitionBloomFilterEnabled = configuration.isPartitionBloomFilterEnabled();
+        this.partitionBloomFilterBitsPerRow = configuration.getPartitionBloomFilterBitsPerRow();
+        this.partitionCompressionAge = configuration.getPartitionCompressionAge();
+        this.indexCompressionEnabled = configuration.isIndexCompressionEnabled();
         this.o3PartitionUpdateQueue = new RingQueue<O3PartitionUpdateTask>(O3PartitionUpdateTask.CONSTRUCTOR, configuration.getO3PartitionUpdateQueueCapacity());
         this.o3PartitionUpdatePubSeq = new MPSequence(this.o3PartitionUpdateQueue.getCapacity());
         this.o3PartitionUpdateSubSeq = new SCSequence();
@@ -234,6 +259,7 @@ public class TableWriter implements Closeable {
             this.partitionBy = metaMem.getInt(META_OFFSET_PARTITION_BY);
             this.txFile = new TxWriter(ff, path, partitionBy);
             this.txnScoreboard = new TxnScoreboard(ff, path.trimTo(rootLen), configuration.getTxnScoreboardEntryCount());
+            this.compressionRequest = new PartitionCompressionRequest(configuration, path.trimTo(rootLen), partitionBy);
             path.trimTo(rootLen);
             // we have to do truncate repair at this stage of constructor
             // because this operation requires metadata
@@ -481,7 +507,7 @@ public class TableWriter implements Closeable {
                 //
                 if (partitionBy != PartitionBy.NONE) {
                     // run indexer for the whole table
-                    final long timestamp = indexHistoricPartitions(indexer, columnName, indexValueBlockSize);
+                    final long timestamp = indexHistoricPartitions(columnName, indexValueBlockSize);
                     if (timestamp == Numbers.LONG_NaN) {
                         return;
                     }
@@ -544,6 +570,10 @@ public class TableWriter implements Closeable {
         columnMetadata.setIndexed(true);
         columnMetadata.setIndexValueBlockCapacity(indexValueBlockSize);
 
+        // new index of sealed partitions is compressed right away rather than on next commit
+        indexCompressTimestampLo = Long.MIN_VALUE;
+        compressSealedPartitionIndexes();
+
         LOG.info().$("ADDED index to '").utf8(columnName).$('[').$(ColumnType.nameOf(existingType)).$("]' to ").$(path).$();
     }
 
@@ -583,6 +613,7 @@ public class TableWriter implements Closeable {
             }
 
             if (ff.exists(path.$())) {
+                decompressPartition(path, Path.getThreadLocal2(path), path.length(), timestamp);
                 // find out lo, hi ranges of partition attached as well as size
                 final long partitionSize = readPartitionSizeMinMax(ff, path, timestampCol, tempMem16b, timestamp);
                 if (partitionSize > 0) {
@@ -672,6 +703,7 @@ public class TableWriter implements Closeable {
         }
     }
 
+    @Override
     public void commit() {
         commit(defaultCommitMode);
     }
@@ -680,6 +712,23 @@ public class TableWriter implements Closeable {
         commit(commitMode, 0);
     }
 
+    /**
+     * Commits transaction together with count of write-ahead log transactions, which the transaction
+     * applies. Count is kept in the transaction file, so that it is committed or not along with the rows.
+     * Nothing is stored when there is nothing to commit.
+     *
+     * @param appliedWalTxnCount count of write-ahead log transactions applied once the commit is made
+     */
+    public void commitWal(long appliedWalTxnCount) {
+        txFile.setAppliedWalTxnCount(appliedWalTxnCount);
+        try {
+            commit();
+        } finally {
+            // count of failed commit must not be stored by commits that follow
+            txFile.readAppliedWalTxnCount();
+        }
+    }
+
     public void commitWithLag() {
         commit(defaultCommitMode, metadata.getCommitLag());
     }
@@ -688,6 +737,69 @@ public class TableWriter implements Closeable {
         commit(defaultCommitMode, lagMicros);
     }
 
+    public void compressPartition(Function function, int posForError) throws SqlException {
+        if (partitionBy == PartitionBy.NONE) {
+            throw SqlException.$(posForError, "table is not partitioned");
+        }
+
+        if (txFile.getPartitionCount() == 0) {
+            throw SqlException.$(posForError, "table is empty");
+        }
+
+        // the active partition is never compressed
+        compressPartitionTimestamps.clear();
+        for (int i = 0, n = txFile.getPartitionCount() - 1; i < n; i++) {
+            long partitionTimestamp = txFile.getPartitionTimestamp(i);
+            dropPartitionFunctionRec.setTimestamp(partitionTimestamp);
+            if (function.getBool(dropPartitionFunctionRec)) {
+                compressPartitionTimestamps.add(partitionTimestamp);
+            }
+        }
+        compressPartitions(compressPartitionTimestamps);
+    }
+
+    /**
+     * Replaces sealed partitions with their copies, which have compressed column files, and commits
+     * all of them at once. Readers decode compressed columns on first access, readers of the original
+     * partitions keep reading them until they are purged. O3 commit into compressed partition restores
+     * uncompressed files first. Nothing is replaced when any of the partitions cannot be compressed.
+     *
+     * @param timestamps timestamps of partitions, checked by {@link #isPartitionCompressible(long)}
+     */
+    public void compressPartitions(LongList timestamps) {
+        if (timestamps.size() == 0) {
+            return;
+        }
+        discardPartitionCompression();
+        compressionRequest.of(metadata, txFile.getStructureVersion());
+        for (int i = 0, n = timestamps.size(); i < n; i++) {
+            final long partitionTimestamp = getPartitionLo(timestamps.getQuick(i));
+            final int partitionIndex = txFile.findAttachedPartitionIndexByLoTimestamp(partitionTimestamp);
+            compressionRequest.addPartition(
+                    partitionTimestamp,
+                    txFile.getPartitionNameTxnByIndex(partitionIndex),
+                    txFile.getPartitionSizeByIndex(partitionIndex)
+            );
+        }
+        try {
+            compressionRequest.compress();
+        } catch (Throwable e) {
+            compressionRequest.clear();
+            throw e;
+        }
+        if (publishCompressedPartitions()) {
+            txFile.commit(defaultCommitMode, denseSymbolMapWriters);
+            o3ProcessPartitionRemoveCandidates();
+        }
+    }
+
+    /**
+     * @return count of write-ahead log transactions applied to the table by {@link #commitWal(long)}
+     */
+    public long getAppliedWalTxnCount() {
+        return txFile.getAppliedWalTxnCount();
+    }
+
     public int getColumnIndex(CharSequence name) {
         int index = metadata.getColumnIndexQuiet(name);
         if (index > -1) {
@@ -724,6 +836,15 @@ public class TableWriter implements Closeable {
         return txFile.getPartitionCount();
     }
 
+    public long getPartitionNameTxn(int partitionIndex) {
+        return txFile.getPartitionNameTxn(partitionIndex);
+    }
+
+    public long getPartitionTimestamp(int partitionIndex) {
+        return txFile.getPartitionTimestamp(partitionIndex);
+    }
+
+    @Override
     public long getStructureVersion() {
         return txFile.getStructureVersion();
     }
@@ -732,6 +853,7 @@ public class TableWriter implements Closeable {
         return symbolMapWriters.getQuick(columnIndex).put(symValue);
     }
 
+    @Override
     public CharSequence getTableName() {
         return tableName;
     }
@@ -752,6 +874,36 @@ public class TableWriter implements Closeable {
         return tempMem16b != 0;
     }
 
+    /**
+     * @param timestamp any timestamp within partition
+     * @return false when table is not partitioned, partition does not exist or is the active one
+     */
+    public boolean isPartitionCompressible(long timestamp) {
+        if (partitionBy == PartitionBy.NONE) {
+            return false;
+        }
+
+        final long maxTimestamp = txFile.getMaxTimestamp();
+        timestamp = getPartitionLo(timestamp);
+        if (timestamp < getPartitionLo(txFile.getMinTimestamp()) || timestamp > maxTimestamp) {
+            return false;
+        }
+
+        if (timestamp == getPartitionLo(maxTimestamp)) {
+            LOG.error()
+                    .$("cannot compress active partition [path=").$(path)
+                    .$(", maxTimestamp=").$ts(maxTimestamp)
+                    .$(']').$();
+            return false;
+        }
+
+        if (!txFile.attachedPartitionsContains(timestamp)) {
+            LOG.error().$("partition is detached [path=").$(path).$(", partition=").$ts(timestamp).I$();
+            return false;
+        }
+        return true;
+    }
+
     public TableBlockWriter newBlock() {
         bumpMasterRef();
         txFile.newBlock();
@@ -759,10 +911,12 @@ public class TableWriter implements Closeable {
         return blockWriter;
     }
 
+    @Override
     public Row newRow(long timestamp) {
         return rowFunction.newRow(timestamp);
     }
 
+    @Override
     public Row newRow() {
         return newRow(0L);
     }
@@ -997,6 +1151,10 @@ public class TableWriter implements Closeable {
             throwDistressException(err);
         }
 
+        if (ColumnType.isSymbol(type)) {
+            symbolMapWriters.getQuick(index).rename(newName);
+        }
+
         txFile.bumpStructureVersion(this.denseSymbolMapWriters);
 
         metadata.renameColumn(currentName, newName);
@@ -1008,6 +1166,7 @@ public class TableWriter implements Closeable {
         LOG.info().$("RENAMED column '").utf8(currentName).$("' to '").utf8(newName).$("' from ").$(path).$();
     }
 
+    @Override
     public void rollback() {
         checkDistressed();
         if (o3InError || inTransaction()) {
@@ -1131,6 +1290,7 @@ public class TableWriter implements Closeable {
         }
 
         if (partitionBy != PartitionBy.NONE) {
+            discardPartitionCompression();
             freeColumns(false);
             if (indexers != null) {
                 for (int i = 0, n = indexers.size(); i < n; i++) {
@@ -1720,6 +1880,13 @@ public class TableWriter implements Closeable {
             }
 
             updateIndexes();
+            sealPartitionStats();
+            publishCompressedPartitions();
+            txFile.commit(commitMode, this.denseSymbolMapWriters);
+            o3ProcessPartitionRemoveCandidates();
+            compressColdPartitions();
+            compressSealedPartitionIndexes();
+        } else if (publishCompressedPartitions()) {
             txFile.commit(commitMode, this.denseSymbolMapWriters);
             o3ProcessPartitionRemoveCandidates();
         }
@@ -1740,6 +1907,93 @@ public class TableWriter implements Closeable {
         setAppendPosition(txFile.getTransientRowCount(), true);
     }
 
+    // cold partitions are compressed in background and published by one of the next commits
+    private void compressColdPartitions() {
+        if (partitionCompressionAge <= 0 || partitionBy == PartitionBy.NONE || !compressionRequest.isIdle()) {
+            return;
+        }
+        final long coldTimestampHi = txFile.getMaxTimestamp() - partitionCompressionAge;
+        long visitedTimestampHi = compressTimestampLo;
+        for (int i = txFile.getPartitionCount() - 2; i > -1; i--) {
+            final long partitionTimestamp = txFile.getPartitionTimestamp(i);
+            if (partitionTimestamp < compressTimestampLo) {
+                break;
+            }
+            final long partitionTimestampHi = timestampAddMethod.calculate(partitionTimestamp, 1);
+            if (partitionTimestampHi <= coldTimestampHi) {
+                if (compressionRequest.getPartitionCount() == 0) {
+                    compressionRequest.of(metadata, txFile.getStructureVersion());
+                }
+                compressionRequest.addPartition(partitionTimestamp, txFile.getPartitionNameTxn(i), txFile.getPartitionSize(i));
+                visitedTimestampHi = Math.max(visitedTimestampHi, partitionTimestampHi);
+            }
+        }
+
+        if (compressionRequest.getPartitionCount() > 0) {
+            final Sequence pubSeq = messageBus.getPartitionCompressionPubSeq();
+            final long cursor = pubSeq.next();
+            if (cursor > -1) {
+                compressionRequest.queued();
+                messageBus.getPartitionCompressionQueue().get(cursor).request = compressionRequest;
+                pubSeq.done(cursor);
+                compressTimestampLo = visitedTimestampHi;
+            } else {
+                // queue is full, next commit tries again
+                compressionRequest.clear();
+            }
+        }
+    }
+
+    private void compressPartitionIndexes(long partitionTimestamp) {
+        try {
+            TableUtils.setPathForPartition(path, partitionBy, partitionTimestamp, false);
+            TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxnByPartitionTimestamp(partitionTimestamp));
+            final int plen = path.length();
+            for (int i = 0; i < columnCount; i++) {
+                if (metadata.isColumnIndexed(i)) {
+                    PostingIndex.compressIndex(configuration, path, other, plen, metadata.getColumnName(i));
+                }
+            }
+        } finally {
+            path.trimTo(rootLen);
+            other.trimTo(rootLen);
+        }
+    }
+
+    private void compressSealedPartitionIndexes() {
+        if (!indexCompressionEnabled || partitionBy == PartitionBy.NONE) {
+            return;
+        }
+        final int partitionCount = txFile.getPartitionCount();
+        if (partitionCount < 2) {
+            return;
+        }
+        // active partition keeps appendable bitmap index
+        long skippedTimestamp = Long.MAX_VALUE;
+        for (int i = partitionCount - 2; i > -1; i--) {
+            final long partitionTimestamp = txFile.getPartitionTimestamp(i);
+            if (partitionTimestamp < indexCompressTimestampLo) {
+                break;
+            }
+            if (compressionRequest.containsPartition(partitionTimestamp)) {
+                // partition is being copied, its index is compressed after the copy is published
+                skippedTimestamp = partitionTimestamp;
+                continue;
+            }
+            try {
+                compressPartitionIndexes(partitionTimestamp);
+            } catch (CairoException e) {
+                // bitmap index stays in place and readable, next writer retries it
+                LOG.error().$("could not compress partition index [table=").$(tableName)
+                        .$(", partition=").$ts(partitionTimestamp)
+                        .$(", errno=").$(e.getErrno())
+                        .$(", message=").$(e.getFlyweightMessage())
+                        .I$();
+            }
+        }
+        indexCompressTimestampLo = Math.min(txFile.getPartitionTimestamp(partitionCount - 1), skippedTimestamp);
+    }
+
     private void configureAppendPosition() {
         if (this.txFile.getMaxTimestamp() > Long.MIN_VALUE || partitionBy == PartitionBy.NONE) {
             openFirstPartition(this.txFile.getMaxTimestamp());
@@ -2016,8 +2270,52 @@ public class TableWriter implements Closeable {
         symbolMapWriters.extendAndSet(columnCount, w);
     }
 
+    private void decompressPartition(long partitionTimestamp, long partitionNameTxn) {
+        // this runs between o3 partition tasks, which read table path concurrently,
+        // so writer's own path must not be touched here
+        final Path path = Path.getThreadLocal(this.path);
+        TableUtils.setPathForPartition(path, partitionBy, partitionTimestamp, false);
+        TableUtils.txnPartitionConditionally(path, partitionNameTxn);
+        // partition is compressed again once it is cold, its index once it is sealed
+        decompressPartition(path, Path.getThreadLocal2(path), path.length(), partitionTimestamp);
+    }
+
+    private void decompressPartition(Path path, Path other, int plen, long partitionTimestamp) {
+        boolean columnsDecompressed = false;
+        boolean indexesDecompressed = false;
+        for (int i = 0; i < columnCount; i++) {
+            columnsDecompressed |= ColumnCompression.decompressColumn(ff, path, other, plen, metadata.getColumnName(i), metadata.getColumnType(i));
+            if (metadata.isColumnIndexed(i)) {
+                indexesDecompressed |= PostingIndex.decompressIndex(configuration, path, other, plen, metadata.getColumnName(i));
+            }
+        }
+        if (columnsDecompressed) {
+            compressTimestampLo = Math.min(compressTimestampLo, partitionTimestamp);
+        }
+        if (indexesDecompressed) {
+            indexCompressTimestampLo = Math.min(indexCompressTimestampLo, partitionTimestamp);
+        }
+        if (columnsDecompressed || indexesDecompressed) {
+            LOG.info().$("decompressed partition [path=").$(path.trimTo(plen).$()).I$();
+            path.trimTo(plen);
+        }
+    }
+
+    // partitions of cancelled request are compressed again
+    private void discardPartitionCompression() {
+        compressionRequest.cancel();
+        for (int i = 0, n = compressionRequest.getPartitionCount(); i < n; i++) {
+            compressTimestampLo = Math.min(compressTimestampLo, compressionRequest.getPartitionTimestamp(i));
+        }
+        compressionRequest.clear();
+    }
+
     private void doClose(boolean truncate) {
         consumeO3PartitionRemoveTasks();
+        if (compressionRequest != null) {
+            discardPartitionCompression();
+            compressionRequest.close();
+        }
         boolean tx = inTransaction();
         freeColumns(truncate & !distressed);
         freeSymbolMapWriters();
@@ -2026,7 +2324,9 @@ public class TableWriter implements Closeable {
         Misc.free(blockWriter);
         Misc.free(metaMem);
         Misc.free(ddlMem);
-        Misc.free(indexMem);
+        Misc.free(statsMem);
+        Misc.free(statsDataMem);
+        Misc.free(statsIndexMem);
         Misc.free(other);
         Misc.free(todoMem);
         try {
@@ -2198,6 +2498,13 @@ public class TableWriter implements Closeable {
         return columns.getQuick(getSecondaryColumnIndex(column));
     }
 
+    /**
+     * @return version of hash index files of the symbol map, see {@link SymbolMapWriter#indexName(CharSequence, long)}
+     */
+    public long getSymbolIndexVersion(int columnIndex) {
+        return symbolMapWriters.getQuick(columnIndex).getIndexVersion();
+    }
+
     SymbolMapWriter getSymbolMapWriter(int columnIndex) {
         return symbolMapWriters.getQuick(columnIndex);
     }
@@ -2206,12 +2513,13 @@ public class TableWriter implements Closeable {
         return o3MasterRef > -1 && getO3RowCount() > 0;
     }
 
-    private long indexHistoricPartitions(SymbolColumnIndexer indexer, CharSequence columnName, int indexValueBlockSize) {
+    private long indexHistoricPartitions(CharSequence columnName, int indexValueBlockSize) {
         final long ts = this.txFile.getMaxTimestamp();
         if (ts > Numbers.LONG_NaN) {
             final long maxTimestamp = timestampFloorMethod.floor(ts);
             long timestamp = txFile.getMinTimestamp();
-            try (final MemoryMR roMem = indexMem) {
+            final ObjList<PartitionColumnIndexer> partitionIndexers = new ObjList<>();
+            try {
 
                 while (timestamp < maxTimestamp) {
 
@@ -2223,9 +2531,9 @@ public class TableWriter implements Closeable {
 
                         final int plen = path.length();
 
-                        TableUtils.dFile(path.trimTo(plen), columnName);
+                        final boolean compressed = ColumnCompression.isCompressed(ff, path, plen, columnName);
 
-                        if (ff.exists(path)) {
+                        if (compressed || ff.exists(TableUtils.dFile(path.trimTo(plen), columnName))) {
 
                             path.trimTo(plen);
 
@@ -2237,17 +2545,23 @@ public class TableWriter implements Closeable {
                             final long columnTop = TableUtils.readColumnTop(ff, path.trimTo(plen), columnName, plen, tempMem16b);
 
                             if (partitionSize > columnTop) {
-                                TableUtils.dFile(path.trimTo(plen), columnName);
-                                roMem.partialFile(ff, path, (partitionSize - columnTop) << ColumnType.pow2SizeOf(ColumnType.INT));
-                                indexer.configureWriter(configuration, path.trimTo(plen), columnName, columnTop);
-                                indexer.index(roMem, columnTop, partitionSize);
+                                // partitions are indexed once all index files are created
+                                partitionIndexers.add(
+                                        new PartitionColumnIndexer().of(configuration, path.trimTo(plen), columnName, columnTop, partitionSize, compressed)
+                                );
                             }
                         }
                     }
                     timestamp = timestampAddMethod.calculate(timestamp, 1);
                 }
+
+                if (partitionIndexers.size() > 1 && parallelIndexerEnabled) {
+                    indexPartitionsParallel(partitionIndexers, columnName);
+                } else {
+                    indexPartitionsSerially(partitionIndexers);
+                }
             } finally {
-                indexer.close();
+                Misc.freeObjList(partitionIndexers);
             }
             return timestamp;
         }
@@ -2266,6 +2580,92 @@ public class TableWriter implements Closeable {
         indexer.refreshSourceAndIndex(0, txFile.getTransientRowCount());
     }
 
+    private void indexPartitionsParallel(ObjList<PartitionColumnIndexer> indexers, CharSequence columnName) {
+        final int count = indexers.size();
+        indexSequences.clear();
+        indexLatch.setCount(count);
+        final int nParallelIndexes = count - 1;
+        final Sequence indexPubSequence = this.messageBus.getIndexerPubSequence();
+        final RingQueue<ColumnIndexerTask> indexerQueue = this.messageBus.getIndexerQueue();
+
+        LOG.info().$("parallel partition indexing [column=").utf8(columnName).$(", partitionCount=").$(count).$(']').$();
+        int serialIndexCount = 0;
+
+        OUT:
+        for (int i = 0; i < nParallelIndexes; i++) {
+            final PartitionColumnIndexer indexer = indexers.getQuick(i);
+            long cursor = indexPubSequence.next();
+            if (cursor == -1) {
+                // queue is full, process partition in the current thread
+                indexAndCountDown(indexer, indexer.getColumnTop(), indexer.getPartitionSize(), indexLatch);
+                indexSequences.add(-1);
+                serialIndexCount++;
+                continue;
+            }
+
+            if (cursor == -2) {
+                // CAS issue, retry
+                do {
+                    cursor = indexPubSequence.next();
+                    if (cursor == -1) {
+                        indexAndCountDown(indexer, indexer.getColumnTop(), indexer.getPartitionSize(), indexLatch);
+                        indexSequences.add(-1);
+                        serialIndexCount++;
+                        continue OUT;
+                    }
+                } while (cursor < 0);
+            }
+
+            final ColumnIndexerTask queueItem = indexerQueue.get(cursor);
+            final long sequence = indexer.getSequence();
+            queueItem.indexer = indexer;
+            queueItem.lo = indexer.getColumnTop();
+            queueItem.hi = indexer.getPartitionSize();
+            queueItem.countDownLatch = indexLatch;
+            queueItem.sequence = sequence;
+            indexSequences.add(sequence);
+            indexPubSequence.done(cursor);
+        }
+
+        // index last partition while others are brewing on the queue
+        final PartitionColumnIndexer last = indexers.getQuick(nParallelIndexes);
+        indexAndCountDown(last, last.getColumnTop(), last.getPartitionSize(), indexLatch);
+        serialIndexCount++;
+
+        if (!indexLatch.await(configuration.getWorkStealTimeoutNanos())) {
+            // steal partitions workers have not picked up yet
+            for (int i = 0; i < nParallelIndexes; i++) {
+                final PartitionColumnIndexer indexer = indexers.getQuick(i);
+                final long sequence = indexSequences.getQuick(i);
+                if (sequence != -1 && indexer.tryLock(sequence)) {
+                    indexAndCountDown(indexer, indexer.getColumnTop(), indexer.getPartitionSize(), indexLatch);
+                    serialIndexCount++;
+                }
+            }
+            while (!indexLatch.await(INDEX_PROGRESS_INTERVAL_NANOS)) {
+                LOG.info().$("partition indexing progress [column=").utf8(columnName)
+                        .$(", done=").$(count - indexLatch.getCount())
+                        .$(", total=").$(count)
+                        .I$();
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (indexers.getQuick(i).isDistressed()) {
+                throw CairoException.instance(0).put("could not index partitions [column=").put(columnName).put(']');
+            }
+        }
+
+        LOG.info().$("parallel partition indexing done [column=").utf8(columnName).$(", serialCount=").$(serialIndexCount).$(']').$();
+    }
+
+    private void indexPartitionsSerially(ObjList<PartitionColumnIndexer> indexers) {
+        for (int i = 0, n = indexers.size(); i < n; i++) {
+            final PartitionColumnIndexer indexer = indexers.getQuick(i);
+            indexer.refreshSourceAndIndex(indexer.getColumnTop(), indexer.getPartitionSize());
+        }
+    }
+
     boolean isSymbolMapWriterCached(int columnIndex) {
         return symbolMapWriters.getQuick(columnIndex).isCached();
     }
@@ -2285,6 +2685,14 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void logPartitionStatsError(String message, CharSequence columnName, CairoException e) {
+        LOG.error().$(message).$(path)
+                .$(", column=").utf8(columnName)
+                .$(", errno=").$(e.getErrno())
+                .$(", message=").$(e.getFlyweightMessage())
+                .I$();
+    }
+
     private long o3CalculatedMoveUncommittedSize(long transientRowsAdded, long committedTransientRowCount) {
         // We want to move as much as possible of uncommitted rows to O3 dedicated memory from column files
         // but not all the column file data is mapped and mapping is relatively expensive.
@@ -2671,6 +3079,9 @@ public class TableWriter implements Closeable {
                                 Vect.flattenIndex(sortedTimestampsAddr, o3RowCount);
                                 flattenTimestamp = false;
                             }
+                            if (partitionIndex > -1 && !last) {
+                                decompressPartition(partitionTimestamp, srcNameTxn);
+                            }
                             o3CommitPartitionAsync(
                                     columnCounter,
                                     maxTimestamp,
@@ -3114,6 +3525,7 @@ public class TableWriter implements Closeable {
         final long rowDelta = srcOooPartitionHi - srcOooMax;
         if (partitionTimestamp < lastPartitionTimestamp) {
             this.txFile.fixedRowCount += partitionSize - srcDataMax;
+            statsPartitionTimestamps.add(partitionTimestamp);
             // when we exit here we need to rollback transientRowCount we've been incrementing
             // while adding out-of-order data
         } else if (rowDelta < -1) {
@@ -3629,6 +4041,11 @@ public class TableWriter implements Closeable {
         try {
             setStateForTimestamp(path, timestamp, true);
             int plen = path.length();
+            if (partitionBy != PartitionBy.NONE) {
+                statsSealTimestampLo = Math.min(statsSealTimestampLo, timestampFloorMethod.floor(timestamp));
+                // partition that becomes active again has to be appendable
+                decompressPartition(path, other, plen, timestampFloorMethod.floor(timestamp));
+            }
             if (ff.mkdirs(path.slash$(), mkDirMode) != 0) {
                 throw CairoException.instance(ff.errno()).put("Cannot create directory: ").put(path);
             }
@@ -3663,6 +4080,7 @@ public class TableWriter implements Closeable {
             throw e;
         } finally {
             path.trimTo(rootLen);
+            other.trimTo(rootLen);
         }
     }
 
@@ -3714,6 +4132,73 @@ public class TableWriter implements Closeable {
         indexCount = denseIndexers.size();
     }
 
+    /**
+     * Switches partitions over to their compressed copies. Copy becomes new version of the partition
+     * as of this commit, original partition directory is purged once readers no longer use it.
+     * Copy of partition that has changed since it was taken is dropped.
+     *
+     * @return true when partition table has changed
+     */
+    private boolean publishCompressedPartitions() {
+        if (!compressionRequest.isDone()) {
+            return false;
+        }
+        boolean published = false;
+        try {
+            final long activePartitionTimestamp = getPartitionLo(txFile.getMaxTimestamp());
+            final boolean structureChanged = compressionRequest.getStructureVersion() != txFile.getStructureVersion();
+            for (int i = 0, n = compressionRequest.getPartitionCount(); i < n; i++) {
+                final long partitionTimestamp = compressionRequest.getPartitionTimestamp(i);
+                final long partitionNameTxn = compressionRequest.getPartitionNameTxn(i);
+                final long partitionSize = compressionRequest.getPartitionSize(i);
+                final int partitionIndex = txFile.findAttachedPartitionIndexByLoTimestamp(partitionTimestamp);
+                if (structureChanged
+                        || partitionIndex < 0
+                        || partitionTimestamp >= activePartitionTimestamp
+                        || txFile.getPartitionNameTxnByIndex(partitionIndex) != partitionNameTxn
+                        || txFile.getPartitionSizeByIndex(partitionIndex) != partitionSize) {
+                    LOG.info().$("partition changed while it was compressed [table=").$(tableName)
+                            .$(", partition=").$ts(partitionTimestamp)
+                            .I$();
+                    compressTimestampLo = Math.min(compressTimestampLo, partitionTimestamp);
+                    continue;
+                }
+
+                if (compressionRequest.getFileCount(i) < 1) {
+                    // partition has nothing to compress or it could not be compressed
+                    continue;
+                }
+
+                try {
+                    compressionRequest.setCompressedPath(other, i);
+                    setPathForPartition(path, partitionBy, partitionTimestamp, false);
+                    TableUtils.txnPartition(path, txFile.txn);
+                    TableUtils.renameOrFail(ff, other.$(), path.$());
+                } catch (CairoException e) {
+                    LOG.error().$("could not publish compressed partition [table=").$(tableName)
+                            .$(", partition=").$ts(partitionTimestamp)
+                            .$(", errno=").$(e.getErrno())
+                            .$(", message=").$(e.getFlyweightMessage())
+                            .I$();
+                    continue;
+                } finally {
+                    path.trimTo(rootLen);
+                    other.trimTo(rootLen);
+                }
+                txFile.updatePartitionSizeByIndexAndTxn(partitionIndex, partitionSize);
+                o3PartitionRemoveCandidates.add(partitionTimestamp);
+                o3PartitionRemoveCandidates.add(partitionNameTxn);
+                published = true;
+            }
+        } finally {
+            compressionRequest.clear();
+        }
+        if (published) {
+            txFile.bumpPartitionTableVersion();
+        }
+        return published;
+    }
+
     void purgeUnusedPartitions() {
         if (partitionBy != PartitionBy.NONE) {
             removeNonAttachedPartitions();
@@ -3723,7 +4208,14 @@ public class TableWriter implements Closeable {
     private long readMinTimestamp(long partitionTimestamp) {
         setStateForTimestamp(other, partitionTimestamp, false);
         try {
-            dFile(other, metadata.getColumnName(metadata.getTimestampIndex()));
+            final int plen = other.length();
+            final CharSequence timestampColumnName = metadata.getColumnName(metadata.getTimestampIndex());
+            if (ColumnCompression.isCompressed(ff, other, plen, timestampColumnName)) {
+                try (MemoryMR zMem = new MemoryCMRZImpl(ff, TableUtils.dzFile(other, timestampColumnName), configuration.getPartitionCompressionCacheSize())) {
+                    return zMem.getLong(0);
+                }
+            }
+            dFile(other.trimTo(plen), timestampColumnName);
             if (ff.exists(other)) {
                 // read min timestamp value
                 final long fd = TableUtils.openRO(ff, other, LOG);
@@ -3815,16 +4307,21 @@ public class TableWriter implements Closeable {
                     removeLambda.remove(ff, dFile(path, columnName));
                     removeLambda.remove(ff, iFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, topFile(path.trimTo(plen), columnName));
+                    removeLambda.remove(ff, statsFile(path.trimTo(plen), columnName));
+                    removeLambda.remove(ff, bloomFilterFile(path.trimTo(plen), columnName));
+                    removeLambda.remove(ff, dzFile(path.trimTo(plen), columnName));
+                    removeLambda.remove(ff, izFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName));
+                    removeLambda.remove(ff, BitmapIndexUtils.postingFileName(path.trimTo(plen), columnName));
                 }
             });
 
             if (ColumnType.isSymbol(columnType)) {
+                final long indexVersion = readSymbolIndexVersion(columnName);
                 removeLambda.remove(ff, SymbolMapWriter.offsetFileName(path.trimTo(rootLen), columnName));
                 removeLambda.remove(ff, SymbolMapWriter.charFileName(path.trimTo(rootLen), columnName));
-                removeLambda.remove(ff, BitmapIndexUtils.keyFileName(path.trimTo(rootLen), columnName));
-                removeLambda.remove(ff, BitmapIndexUtils.valueFileName(path.trimTo(rootLen), columnName));
+                removeSymbolIndexFiles(columnName, indexVersion, removeLambda);
             }
         } finally {
             path.trimTo(rootLen);
@@ -3879,6 +4376,7 @@ public class TableWriter implements Closeable {
                     int plen = path.length();
                     removeFileAndOrLog(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName));
                     removeFileAndOrLog(ff, BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName));
+                    removeFileAndOrLog(ff, BitmapIndexUtils.postingFileName(path.trimTo(plen), columnName));
                 }
             });
         } finally {
@@ -3937,6 +4435,10 @@ public class TableWriter implements Closeable {
                 // They are probably about to be attached.
                 return;
             }
+            if (Chars.equals(nativeLPSZ, WAL_DIR_NAME)) {
+                // write-ahead log of the table, not a partition
+                return;
+            }
             try {
                 long txn = 0;
                 int txnSep = Chars.indexOf(nativeLPSZ, '.');
@@ -3966,12 +4468,33 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void removeSymbolIndexFiles(CharSequence columnName, long indexVersion, RemoveFileLambda removeLambda) {
+        // writer keeps files of the previous index version for readers that are about to open them
+        for (long version = Math.max(0, indexVersion - 1); version <= indexVersion; version++) {
+            final String indexName = SymbolMapWriter.indexName(columnName, version);
+            removeLambda.remove(ff, BitmapIndexUtils.keyFileName(path.trimTo(rootLen), indexName));
+            removeLambda.remove(ff, BitmapIndexUtils.valueFileName(path.trimTo(rootLen), indexName));
+        }
+    }
+
     private void removeSymbolMapFilesQuiet(CharSequence name) {
         try {
+            final long indexVersion = readSymbolIndexVersion(name);
             removeFileAndOrLog(ff, SymbolMapWriter.offsetFileName(path.trimTo(rootLen), name));
             removeFileAndOrLog(ff, SymbolMapWriter.charFileName(path.trimTo(rootLen), name));
-            removeFileAndOrLog(ff, BitmapIndexUtils.keyFileName(path.trimTo(rootLen), name));
-            removeFileAndOrLog(ff, BitmapIndexUtils.valueFileName(path.trimTo(rootLen), name));
+            removeSymbolIndexFiles(name, indexVersion, REMOVE_OR_LOG);
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
+    private long readSymbolIndexVersion(CharSequence columnName) {
+        try {
+            SymbolMapWriter.offsetFileName(path.trimTo(rootLen), columnName);
+            if (ff.exists(path) && ff.length(path) >= SymbolMapWriter.HEADER_SIZE) {
+                return TableUtils.readLongAtOffset(ff, path, tempMem16b, SymbolMapWriter.HEADER_INDEX_VERSION);
+            }
+            return 0;
         } finally {
             path.trimTo(rootLen);
         }
@@ -4044,16 +4567,28 @@ public class TableWriter implements Closeable {
                     renameFileOrLog(ff, dFile(path.trimTo(plen), columnName), dFile(other.trimTo(plen), newName));
                     renameFileOrLog(ff, iFile(path.trimTo(plen), columnName), iFile(other.trimTo(plen), newName));
                     renameFileOrLog(ff, topFile(path.trimTo(plen), columnName), topFile(other.trimTo(plen), newName));
+                    renameFileOrLog(ff, statsFile(path.trimTo(plen), columnName), statsFile(other.trimTo(plen), newName));
+                    renameFileOrLog(ff, bloomFilterFile(path.trimTo(plen), columnName), bloomFilterFile(other.trimTo(plen), newName));
+                    renameFileOrLog(ff, dzFile(path.trimTo(plen), columnName), dzFile(other.trimTo(plen), newName));
+                    renameFileOrLog(ff, izFile(path.trimTo(plen), columnName), izFile(other.trimTo(plen), newName));
                     renameFileOrLog(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName), BitmapIndexUtils.keyFileName(other.trimTo(plen), newName));
                     renameFileOrLog(ff, BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName), BitmapIndexUtils.valueFileName(other.trimTo(plen), newName));
+                    renameFileOrLog(ff, BitmapIndexUtils.postingFileName(path.trimTo(plen), columnName), BitmapIndexUtils.postingFileName(other.trimTo(plen), newName));
                 }
             });
 
             if (ColumnType.isSymbol(columnType)) {
+                final long indexVersion = readSymbolIndexVersion(columnName);
+                final String indexName = SymbolMapWriter.indexName(columnName, indexVersion);
+                final String newIndexName = SymbolMapWriter.indexName(newName, indexVersion);
                 renameFileOrLog(ff, SymbolMapWriter.offsetFileName(path.trimTo(rootLen), columnName), SymbolMapWriter.offsetFileName(other.trimTo(rootLen), newName));
                 renameFileOrLog(ff, SymbolMapWriter.charFileName(path.trimTo(rootLen), columnName), SymbolMapWriter.charFileName(other.trimTo(rootLen), newName));
-                renameFileOrLog(ff, BitmapIndexUtils.keyFileName(path.trimTo(rootLen), columnName), BitmapIndexUtils.keyFileName(other.trimTo(rootLen), newName));
-                renameFileOrLog(ff, BitmapIndexUtils.valueFileName(path.trimTo(rootLen), columnName), BitmapIndexUtils.valueFileName(other.trimTo(rootLen), newName));
+                renameFileOrLog(ff, BitmapIndexUtils.keyFileName(path.trimTo(rootLen), indexName), BitmapIndexUtils.keyFileName(other.trimTo(rootLen), newIndexName));
+                renameFileOrLog(ff, BitmapIndexUtils.valueFileName(path.trimTo(rootLen), indexName), BitmapIndexUtils.valueFileName(other.trimTo(rootLen), newIndexName));
+                if (indexVersion > 0) {
+                    // previous index version is not renamed, readers of the old name are gone
+                    removeSymbolIndexFiles(columnName, indexVersion - 1, REMOVE_OR_LOG);
+                }
             }
         } finally {
             path.trimTo(rootLen);
@@ -4165,6 +4700,7 @@ public class TableWriter implements Closeable {
                             transientRowCount = txFile.getPartitionSizeByPartitionTimestamp(lastTimestamp);
 
                             // 2. read max timestamp
+                            ColumnCompression.decompressColumn(ff, path, other, p, metadata.getColumnName(metadata.getTimestampIndex()), ColumnType.TIMESTAMP);
                             TableUtils.dFile(path.trimTo(p), metadata.getColumnName(metadata.getTimestampIndex()));
                             maxTimestamp = TableUtils.readLongAtOffset(ff, path, tempMem16b, (transientRowCount - 1) * Long.BYTES);
                             actualSize -= transientRowCount;
@@ -4276,6 +4812,26 @@ public class TableWriter implements Closeable {
         throw e;
     }
 
+    private void sealPartitionStats() {
+        try {
+            if ((!partitionStatsEnabled && !partitionBloomFilterEnabled) || partitionBy == PartitionBy.NONE) {
+                return;
+            }
+            final int activePartitionIndex = txFile.getPartitionCount() - 1;
+            for (int i = activePartitionIndex - 1; i > -1; i--) {
+                final long partitionTimestamp = txFile.getPartitionTimestamp(i);
+                if (partitionTimestamp >= statsSealTimestampLo || statsPartitionTimestamps.contains(partitionTimestamp)) {
+                    writePartitionStats(i, partitionTimestamp);
+                } else if (statsPartitionTimestamps.size() == 0) {
+                    break;
+                }
+            }
+            statsSealTimestampLo = activePartitionIndex > -1 ? txFile.getPartitionTimestamp(activePartitionIndex) : Long.MAX_VALUE;
+        } finally {
+            statsPartitionTimestamps.clear();
+        }
+    }
+
     private void setAppendPosition(final long position, boolean ensureFileSize) {
         for (int i = 0; i < columnCount; i++) {
             // stop calculating oversize as soon as we find first over-sized column
@@ -4556,6 +5112,75 @@ public class TableWriter implements Closeable {
         );
     }
 
+    private void writePartitionStats(int partitionIndex, long partitionTimestamp) {
+        final long partitionSize = txFile.getPartitionSize(partitionIndex);
+        try {
+            TableUtils.setPathForPartition(path, partitionBy, partitionTimestamp, false);
+            TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxn(partitionIndex));
+            final int plen = path.length();
+            for (int i = 0; i < columnCount; i++) {
+                final int columnType = metadata.getColumnType(i);
+                final boolean stats = partitionStatsEnabled && PartitionStats.isSupported(columnType);
+                final boolean bloomFilter = partitionBloomFilterEnabled && PartitionBloomFilter.isSupported(columnType);
+                if (stats || bloomFilter) {
+                    final CharSequence name = metadata.getColumnName(i);
+                    final long columnTop = readColumnTop(ff, path, name, plen, tempMem16b);
+                    if (stats) {
+                        try {
+                            PartitionStats.write(
+                                    ff,
+                                    statsDataMem,
+                                    statsMem,
+                                    path,
+                                    other,
+                                    plen,
+                                    name,
+                                    columnType,
+                                    columnTop,
+                                    partitionSize,
+                                    partitionStatsBlockSize
+                            );
+                        } catch (CairoException e) {
+                            // statistics are optional, queries scan partitions that have none
+                            logPartitionStatsError("could not write column statistics [path=", name, e);
+                            ff.remove(statsFile(path.trimTo(plen), name));
+                        } finally {
+                            path.trimTo(plen);
+                        }
+                    }
+                    if (bloomFilter) {
+                        try {
+                            PartitionBloomFilter.write(
+                                    ff,
+                                    statsDataMem,
+                                    statsIndexMem,
+                                    statsMem,
+                                    path,
+                                    other,
+                                    plen,
+                                    name,
+                                    columnType,
+                                    columnTop,
+                                    partitionSize,
+                                    partitionStatsBlockSize,
+                                    partitionBloomFilterBitsPerRow
+                            );
+                        } catch (CairoException e) {
+                            logPartitionStatsError("could not write bloom filter [path=", name, e);
+                            ff.remove(bloomFilterFile(path.trimTo(plen), name));
+                        } finally {
+                            path.trimTo(plen);
+                        }
+                    }
+                }
+            }
+            LOG.info().$("sealed partition [path=").$(path).$(", rowCount=").$(partitionSize).I$();
+        } finally {
+            path.trimTo(rootLen);
+            other.trimTo(rootLen);
+        }
+    }
+
     private void writeRestoreMetaTodo(CharSequence columnName) {
         try {
             writeRestoreMetaTodo();
@@ -4702,10 +5327,65 @@ public class TableWriter implements Closeable {
         }
     }
 
-    public class Row {
+    public interface Row {
+        void append();
+
+        void cancel();
+
+        void putBin(int index, long address, long len);
+
+        void putBin(int index, BinarySequence sequence);
+
+        void putBool(int index, boolean value);
+
+        void putByte(int index, byte value);
+
+        void putChar(int index, char value);
+
+        void putDate(int index, long value);
+
+        void putDouble(int index, double value);
+
+        void putFloat(int index, float value);
+
+        void putInt(int index, int value);
+
+        void putLong(int index, long value);
+
+        void putLong256(int index, long l0, long l1, long l2, long l3);
+
+        void putLong256(int index, Long256 value);
+
+        void putLong256(int index, CharSequence hexString);
+
+        void putLong256(int index, @NotNull CharSequence hexString, int start, int end);
+
+        void putShort(int index, short value);
+
+        void putStr(int index, CharSequence value);
+
+        void putStr(int index, char value);
+
+        void putStr(int index, CharSequence value, int pos, int len);
+
+        void putSym(int index, CharSequence value);
+
+        void putSym(int index, char value);
+
+        void putSymIndex(int index, int symIndex);
+
+        void putTimestamp(int index, long value);
+
+        void putTimestamp(int index, CharSequence value);
+
+        void putGeoHash(int index, long value);
+    }
+
+    private class RowImpl implements Row {
         private ObjList<? extends MemoryA> activeColumns;
         private ObjList<Runnable> activeNullSetters;
 
+        @Override
         public void append() {
             if ((masterRef & 1) != 0) {
                 for (int i = 0; i < columnCount; i++) {
@@ -4717,118 +5397,142 @@ public class TableWriter implements Closeable {
             }
         }
 
+        @Override
         public void cancel() {
             cancelRow();
         }
 
+        @Override
         public void putBin(int index, long address, long len) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putBin(address, len));
             notNull(index);
         }
 
+        @Override
         public void putBin(int index, BinarySequence sequence) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putBin(sequence));
             notNull(index);
         }
 
+        @Override
         public void putBool(int index, boolean value) {
             getPrimaryColumn(index).putBool(value);
             notNull(index);
         }
 
+        @Override
         public void putByte(int index, byte value) {
             getPrimaryColumn(index).putByte(value);
             notNull(index);
         }
 
+        @Override
         public void putChar(int index, char value) {
             getPrimaryColumn(index).putChar(value);
             notNull(index);
         }
 
+        @Override
         public void putDate(int index, long value) {
             putLong(index, value);
         }
 
+        @Override
         public void putDouble(int index, double value) {
             getPrimaryColumn(index).putDouble(value);
             notNull(index);
         }
 
+        @Override
         public void putFloat(int index, float value) {
             getPrimaryColumn(index).putFloat(value);
             notNull(index);
         }
 
+        @Override
         public void putInt(int index, int value) {
             getPrimaryColumn(index).putInt(value);
             notNull(index);
         }
 
+        @Override
         public void putLong(int index, long value) {
             getPrimaryColumn(index).putLong(value);
             notNull(index);
         }
 
+        @Override
         public void putLong256(int index, long l0, long l1, long l2, long l3) {
             getPrimaryColumn(index).putLong256(l0, l1, l2, l3);
             notNull(index);
         }
 
+        @Override
         public void putLong256(int index, Long256 value) {
             getPrimaryColumn(index).putLong256(value.getLong0(), value.getLong1(), value.getLong2(), value.getLong3());
             notNull(index);
         }
 
+        @Override
         public void putLong256(int index, CharSequence hexString) {
             getPrimaryColumn(index).putLong256(hexString);
             notNull(index);
         }
 
+        @Override
         public void putLong256(int index, @NotNull CharSequence hexString, int start, int end) {
             getPrimaryColumn(index).putLong256(hexString, start, end);
             notNull(index);
         }
 
+        @Override
         public void putShort(int index, short value) {
             getPrimaryColumn(index).putShort(value);
             notNull(index);
         }
 
+        @Override
         public void putStr(int index, CharSequence value) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value));
             notNull(index);
         }
 
+        @Override
         public void putStr(int index, char value) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value));
             notNull(index);
         }
 
+        @Override
         public void putStr(int index, CharSequence value, int pos, int len) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value, pos, len));
             notNull(index);
         }
 
+        @Override
         public void putSym(int index, CharSequence value) {
             getPrimaryColumn(index).putInt(symbolMapWriters.getQuick(index).put(value));
             notNull(index);
         }
 
+        @Override
         public void putSym(int index, char value) {
             getPrimaryColumn(index).putInt(symbolMapWriters.getQuick(index).put(value));
             notNull(index);
         }
 
+        @Override
         public void putSymIndex(int index, int symIndex) {
             getPrimaryColumn(index).putInt(symIndex);
             notNull(index);
         }
 
+        @Override
         public void putTimestamp(int index, long value) {
             putLong(index, value);
         }
 
+        @Override
         public void putTimestamp(int index, CharSequence value) {
             // try UTC timestamp first (micro)
             long l;
@@ -4840,6 +5544,7 @@ public class TableWriter implements Closeable {
             putTimestamp(index, l);
         }
 
+        @Override
         public void putGeoHash(int index, long value) {
             int type = metadata.getColumnType(index);
             final MemoryA primaryColumn = getPrimaryColumn(index);
@@ -4893,5 +5598,6 @@ public class TableWriter implements Closeable {
         IGNORED_FILES.add(META_FILE_NAME);
         IGNORED_FILES.add(TXN_FILE_NAME);
         IGNORED_FILES.add(TODO_FILE_NAME);
+        IGNORED_FILES.add(WAL_DIR_NAME);
     }
 }
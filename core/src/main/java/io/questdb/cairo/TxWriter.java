@@ -42,6 +42,7 @@ public final class TxWriter extends TxReader implements Closeable {
     private int txPartitionCount;
     private long prevMaxTimestamp;
     private long prevMinTimestamp;
+    private long appliedWalTxnCount;
     private MemoryCMARW txMem;
 
     public TxWriter(FilesFacade ff, Path path, int partitionBy) {
@@ -130,7 +131,7 @@ public final class TxWriter extends TxReader implements Closeable {
     public void close() {
         try {
             if (txMem != null) {
-                txMem.jumpTo(getTxEofOffset());
+                txMem.jumpTo(Math.max(getTxEofOffset(), getAppliedWalTxnCountOffset() + Long.BYTES));
             }
         } finally {
             super.close();
@@ -143,6 +144,7 @@ public final class TxWriter extends TxReader implements Closeable {
         this.prevTransientRowCount = this.transientRowCount;
         this.prevMaxTimestamp = maxTimestamp;
         this.prevMinTimestamp = minTimestamp;
+        readAppliedWalTxnCount();
     }
 
     @Override
@@ -205,6 +207,14 @@ public final class TxWriter extends TxReader implements Closeable {
         return txPartitionCount;
     }
 
+    /**
+     * @return count of write-ahead log transactions applied to the table, it is stored by the next commit
+     * when set by {@link #setAppliedWalTxnCount(long)}
+     */
+    public long getAppliedWalTxnCount() {
+        return appliedWalTxnCount;
+    }
+
     public long getLastTxSize() {
         return txPartitionCount == 1 ? transientRowCount - prevTransientRowCount : transientRowCount;
     }
@@ -267,7 +277,8 @@ public final class TxWriter extends TxReader implements Closeable {
                 symbolsCount,
                 txMem.getLong(TX_OFFSET_TXN) + 1,
                 txMem.getLong(TX_OFFSET_DATA_VERSION) + 1,
-                txMem.getLong(TX_OFFSET_PARTITION_TABLE_VERSION) + 1);
+                txMem.getLong(TX_OFFSET_PARTITION_TABLE_VERSION) + 1,
+                appliedWalTxnCount);
     }
 
     public void resetTimestamp() {
@@ -277,6 +288,16 @@ public final class TxWriter extends TxReader implements Closeable {
         minTimestamp = prevMinTimestamp;
     }
 
+    public void readAppliedWalTxnCount() {
+        // files written before the count was introduced end with partition table
+        final long offset = getAppliedWalTxnCountOffset();
+        appliedWalTxnCount = ff.length(txMem.getFd()) >= offset + Long.BYTES ? txMem.getLong(offset) : 0;
+    }
+
+    public void setAppliedWalTxnCount(long appliedWalTxnCount) {
+        this.appliedWalTxnCount = appliedWalTxnCount;
+    }
+
     public void setMinTimestamp(long timestamp) {
         minTimestamp = timestamp;
         if (prevMinTimestamp == Long.MAX_VALUE) {
@@ -311,7 +332,7 @@ public final class TxWriter extends TxReader implements Closeable {
         txPartitionCount = 1;
         attachedPositionDirtyIndex = 0;
         attachedPartitions.clear();
-        resetTxn(txMem, symbolsCount, txn, ++dataVersion, ++partitionTableVersion);
+        resetTxn(txMem, symbolsCount, txn, ++dataVersion, ++partitionTableVersion, appliedWalTxnCount);
     }
 
     public void updateMaxTimestamp(long timestamp) {
@@ -344,6 +365,12 @@ public final class TxWriter extends TxReader implements Closeable {
         return txMem.getLong(TX_OFFSET_TRANSIENT_ROW_COUNT);
     }
 
+    private long getAppliedWalTxnCountOffset() {
+        // count follows partition table, which size can differ from the in-memory list of unpartitioned table
+        final long partitionTableOffset = getPartitionTableSizeOffset(symbolsCount);
+        return getPartitionTableIndexOffset(partitionTableOffset, txMem.getInt(partitionTableOffset) / Long.BYTES);
+    }
+
     private int insertPartitionSizeByTimestamp(int index, long partitionTimestamp, long partitionSize) {
         int size = attachedPartitions.size();
         attachedPartitions.setPos(size + LONGS_PER_TX_ATTACHED_PARTITION);
@@ -377,6 +404,7 @@ public final class TxWriter extends TxReader implements Closeable {
             }
             attachedPositionDirtyIndex = size;
         }
+        txMem.putLong(getPartitionTableIndexOffset(partitionTableOffset, size), appliedWalTxnCount);
     }
 
     private void storeSymbolCounts(ObjList<SymbolMapWriter> denseSymbolMapWriters) {
@@ -0,0 +1,366 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.SynchronizedJob;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.NativeLPSZ;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+/**
+ * Copies sequenced write-ahead log transactions into tables. All transactions pending at the
+ * time of the run are applied under single table commit, rows of each segment are copied in
+ * one go and out-of-order rows are merged by the table writer. Segment and writer directories
+ * are removed once their last transaction is applied.
+ * <p>
+ * Table commit stores count of applied transactions in the table transaction file, so that
+ * transactions are not applied twice when the process stops before the sequencer records them
+ * as applied. Commits made by other table writers, such as line protocol or ALTER, leave the
+ * count as it is. Table, which fails to apply its log several times in a row, is suspended until restart.
+ */
+public class WalApplyJob extends SynchronizedJob implements Closeable {
+    private static final Log LOG = LogFactory.getLog(WalApplyJob.class);
+    private final CairoEngine engine;
+    private final FilesFacade ff;
+    private final ObjList<WalSequencer> sequencers = new ObjList<>();
+    private final LongList txns = new LongList();
+    // per distinct segment in the batch: wal id, segment id, row lo, row hi
+    private final LongList segments = new LongList();
+    private final IntList walColumnTypes = new IntList();
+    private final IntList writerColumnIndexes = new IntList();
+    private final ObjList<MemoryMR> columns = new ObjList<>();
+    private final MemoryMR metaMem = Vm.getMRInstance();
+    private final Path path = new Path();
+    private boolean discovered;
+
+    public WalApplyJob(CairoEngine engine) {
+        this.engine = engine;
+        this.ff = engine.getConfiguration().getFilesFacade();
+    }
+
+    @Override
+    public void close() {
+        closeColumns();
+        Misc.freeObjList(columns);
+        columns.clear();
+        Misc.free(metaMem);
+        Misc.free(path);
+    }
+
+    private static void copyValue(TableWriter.Row row, int index, int type, MemoryMR mem1, MemoryMR mem2, long r) {
+        switch (ColumnType.storageTag(type)) {
+            case ColumnType.BOOLEAN:
+                row.putBool(index, mem1.getBool(r));
+                break;
+            case ColumnType.BYTE:
+                row.putByte(index, mem1.getByte(r));
+                break;
+            case ColumnType.SHORT:
+                row.putShort(index, mem1.getShort(r << 1));
+                break;
+            case ColumnType.CHAR:
+                row.putChar(index, mem1.getChar(r << 1));
+                break;
+            case ColumnType.INT:
+                row.putInt(index, mem1.getInt(r << 2));
+                break;
+            case ColumnType.FLOAT:
+                row.putFloat(index, mem1.getFloat(r << 2));
+                break;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                row.putLong(index, mem1.getLong(r << 3));
+                break;
+            case ColumnType.DOUBLE:
+                row.putDouble(index, mem1.getDouble(r << 3));
+                break;
+            case ColumnType.LONG256:
+                row.putLong256(index, mem1.getLong256A(r << 5));
+                break;
+            case ColumnType.GEOBYTE:
+                row.putGeoHash(index, mem1.getByte(r));
+                break;
+            case ColumnType.GEOSHORT:
+                row.putGeoHash(index, mem1.getShort(r << 1));
+                break;
+            case ColumnType.GEOINT:
+                row.putGeoHash(index, mem1.getInt(r << 2));
+                break;
+            case ColumnType.GEOLONG:
+                row.putGeoHash(index, mem1.getLong(r << 3));
+                break;
+            case ColumnType.STRING:
+                row.putStr(index, mem1.getStr(mem2.getLong(r << 3)));
+                break;
+            case ColumnType.SYMBOL:
+                row.putSym(index, mem1.getStr(mem2.getLong(r << 3)));
+                break;
+            case ColumnType.BINARY:
+                row.putBin(index, mem1.getBin(mem2.getLong(r << 3)));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private boolean apply(WalSequencer sequencer) {
+        if (!sequencer.hasPendingTxns() || sequencer.isSuspended()) {
+            return false;
+        }
+        final String tableName = sequencer.getTableName();
+        final TableWriter writer;
+        try {
+            writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, tableName, "walApply");
+        } catch (EntryUnavailableException e) {
+            // table is busy, try again on next run
+            return false;
+        }
+        final long txnLo = sequencer.getPendingTxns(txns);
+        try {
+            final long txnHi = txnLo + txns.size() / WalSequencer.TXN_LONGS;
+            final long tableTxnCount = writer.getAppliedWalTxnCount();
+            if (tableTxnCount > txnLo) {
+                if (tableTxnCount > txnHi) {
+                    throw CairoException.instance(0).put("table has applied more WAL transactions than sequenced [table=").put(tableName)
+                            .put(", appliedTxnCount=").put(tableTxnCount)
+                            .put(", txnCount=").put(txnHi)
+                            .put(']');
+                }
+                // process stopped after table commit, before sequencer recorded it
+                txns.setPos((int) (tableTxnCount - txnLo) * WalSequencer.TXN_LONGS);
+                sequencer.setAppliedTxnCount(tableTxnCount);
+                LOG.info().$("recovered applied WAL [table=").$(tableName)
+                        .$(", txnLo=").$(txnLo)
+                        .$(", txnCount=").$(tableTxnCount - txnLo)
+                        .I$();
+            } else {
+                groupSegments();
+                long rowCount = 0;
+                for (int i = 0, n = segments.size(); i < n; i += 4) {
+                    rowCount += applySegment(writer, tableName, segments.getQuick(i), segments.getQuick(i + 1), segments.getQuick(i + 2), segments.getQuick(i + 3));
+                }
+                writer.commitWal(txnHi);
+                sequencer.setAppliedTxnCount(txnHi);
+                LOG.info().$("applied [table=").$(tableName)
+                        .$(", txnLo=").$(txnLo)
+                        .$(", txnCount=").$(txnHi - txnLo)
+                        .$(", rowCount=").$(rowCount)
+                        .I$();
+            }
+        } catch (CairoException e) {
+            LOG.error().$("could not apply WAL [table=").$(tableName)
+                    .$(", txnLo=").$(txnLo)
+                    .$(", error=").$((Sinkable) e)
+                    .I$();
+            writer.rollback();
+            if (sequencer.onApplyFailure()) {
+                LOG.error().$("WAL apply is suspended until restart [table=").$(tableName)
+                        .$(", attempts=").$(engine.getConfiguration().getWalApplyRetryCount())
+                        .I$();
+            }
+            return false;
+        } finally {
+            closeColumns();
+            writer.close();
+        }
+        removeDirs(tableName);
+        return true;
+    }
+
+    private long applySegment(TableWriter writer, CharSequence tableName, long walId, long segmentId, long rowLo, long rowHi) {
+        path.of(engine.getConfiguration().getRoot()).concat(tableName).concat(TableUtils.WAL_DIR_NAME).slash().put(walId).slash().put(segmentId);
+        final int segmentLen = path.length();
+        metaMem.smallFile(ff, path.concat(WalWriter.SEGMENT_META_FILE_NAME).$());
+        final int columnCount = metaMem.getInt(0);
+        final int timestampIndex = metaMem.getInt(4);
+        final long structureVersion = metaMem.getLong(8);
+        final TableWriterMetadata metadata = writer.getMetadata();
+        walColumnTypes.clear();
+        writerColumnIndexes.clear();
+        long offset = 16;
+        for (int i = 0; i < columnCount; i++) {
+            final int type = metaMem.getInt(offset);
+            final CharSequence name = metaMem.getStr(offset + 4);
+            offset += 4 + Vm.getStorageLength(name.length());
+            // columns are matched by name, column that is missing from the table must have been dropped since
+            int writerIndex = metadata.getColumnIndexQuiet(name);
+            if (writerIndex > -1) {
+                if (metadata.getColumnType(writerIndex) != type) {
+                    throw CairoException.instance(0).put("WAL column type does not match table [column=").put(name)
+                            .put(", walType=").put(ColumnType.nameOf(type))
+                            .put(", tableType=").put(ColumnType.nameOf(metadata.getColumnType(writerIndex)))
+                            .put(']');
+                }
+                if (writerIndex == metadata.getTimestampIndex()) {
+                    // designated timestamp is passed to newRow()
+                    writerIndex = -1;
+                }
+            } else if (i == timestampIndex || writer.getStructureVersion() == structureVersion) {
+                throw CairoException.instance(0).put("WAL column is not in table [column=").put(name)
+                        .put(", walStructureVersion=").put(structureVersion)
+                        .put(", tableStructureVersion=").put(writer.getStructureVersion())
+                        .put(']');
+            } else {
+                LOG.info().$("skipping dropped WAL column [table=").$(tableName).$(", column=").$(name).I$();
+            }
+            walColumnTypes.add(type);
+            writerColumnIndexes.add(writerIndex);
+            if (writerIndex > -1 || i == timestampIndex) {
+                openColumn(i * 2, TableUtils.dFile(path.trimTo(segmentLen), name));
+                if (ColumnType.isVariableLength(type) || ColumnType.isSymbol(type)) {
+                    openColumn(i * 2 + 1, TableUtils.iFile(path.trimTo(segmentLen), name));
+                }
+            }
+        }
+        metaMem.close();
+
+        final MemoryMR timestampMem = columns.getQuick(timestampIndex * 2);
+        for (long r = rowLo; r < rowHi; r++) {
+            final TableWriter.Row row = writer.newRow(timestampMem.getLong(r << 3));
+            for (int i = 0; i < columnCount; i++) {
+                final int writerIndex = writerColumnIndexes.getQuick(i);
+                if (writerIndex > -1) {
+                    copyValue(row, writerIndex, walColumnTypes.getQuick(i), columns.getQuick(i * 2), columns.getQuiet(i * 2 + 1), r);
+                }
+            }
+            row.append();
+        }
+        closeColumns();
+        return rowHi - rowLo;
+    }
+
+    private void closeColumns() {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            final MemoryMR mem = columns.getQuick(i);
+            if (mem != null) {
+                mem.close();
+            }
+        }
+        metaMem.close();
+    }
+
+    private void discoverSequencers() {
+        // tables that have unapplied transactions left from before restart
+        final NativeLPSZ name = new NativeLPSZ();
+        path.of(engine.getConfiguration().getRoot()).$();
+        final ObjList<String> tableNames = new ObjList<>();
+        ff.iterateDir(path, (pName, type) -> {
+            if (type == Files.DT_DIR) {
+                name.of(pName);
+                if (!Chars.equals(name, '.') && !Chars.equals(name, "..")) {
+                    tableNames.add(Chars.toString(name));
+                }
+            }
+        });
+        for (int i = 0, n = tableNames.size(); i < n; i++) {
+            final String tableName = tableNames.getQuick(i);
+            path.of(engine.getConfiguration().getRoot()).concat(tableName).concat(TableUtils.WAL_DIR_NAME).concat(TableUtils.WAL_TXN_LOG_FILE_NAME).$();
+            if (ff.exists(path)) {
+                try {
+                    engine.getWalSequencer(tableName);
+                } catch (CairoException e) {
+                    LOG.error().$("could not open WAL [table=").$(tableName).$(", error=").$((Sinkable) e).I$();
+                }
+            }
+        }
+    }
+
+    private void groupSegments() {
+        segments.clear();
+        for (int i = 0, n = txns.size(); i < n; i += WalSequencer.TXN_LONGS) {
+            final long walId = txns.getQuick(i);
+            final long segmentId = txns.getQuick(i + 1);
+            final long rowLo = txns.getQuick(i + 2);
+            final long rowHi = txns.getQuick(i + 3);
+            if (rowHi == rowLo) {
+                continue;
+            }
+            // transactions of one segment are contiguous, the whole batch is committed at once,
+            // so they are copied as one range
+            int k = 0;
+            final int m = segments.size();
+            while (k < m && (segments.getQuick(k) != walId || segments.getQuick(k + 1) != segmentId)) {
+                k += 4;
+            }
+            if (k < m) {
+                segments.setQuick(k + 3, rowHi);
+            } else {
+                segments.add(walId);
+                segments.add(segmentId);
+                segments.add(rowLo);
+                segments.add(rowHi);
+            }
+        }
+    }
+
+    private void openColumn(int index, LPSZ name) {
+        MemoryMR mem = columns.getQuiet(index);
+        if (mem == null) {
+            mem = Vm.getMRInstance();
+            columns.extendAndSet(index, mem);
+        }
+        mem.of(ff, name, ff.getMapPageSize(), Long.MAX_VALUE);
+    }
+
+    private void removeDirs(CharSequence tableName) {
+        for (int i = 0, n = txns.size(); i < n; i += WalSequencer.TXN_LONGS) {
+            final long flags = txns.getQuick(i + 4);
+            if (flags == 0) {
+                continue;
+            }
+            path.of(engine.getConfiguration().getRoot()).concat(tableName).concat(TableUtils.WAL_DIR_NAME).slash().put(txns.getQuick(i));
+            if ((flags & WalSequencer.TXN_FLAG_LAST_IN_WAL) == 0) {
+                path.slash().put(txns.getQuick(i + 1));
+            }
+            if (ff.exists(path.slash$()) && ff.rmdir(path) != 0) {
+                LOG.error().$("could not remove WAL directory [path=").$(path).$(", errno=").$(ff.errno()).I$();
+            }
+        }
+    }
+
+    @Override
+    protected boolean runSerially() {
+        if (!discovered) {
+            discovered = true;
+            discoverSequencers();
+        }
+        engine.getWalSequencers(sequencers);
+        boolean useful = false;
+        for (int i = 0, n = sequencers.size(); i < n; i++) {
+            useful |= apply(sequencers.getQuick(i));
+        }
+        sequencers.clear();
+        return useful;
+    }
+}
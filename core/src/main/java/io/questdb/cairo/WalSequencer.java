@@ -0,0 +1,263 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+/**
+ * Orders commits of write-ahead log writers of one table. Every commit becomes transaction that
+ * refers to range of rows in segment of one writer and transactions are applied to the table in
+ * sequence order by {@link WalApplyJob}. Transaction log is kept in "wal/_txnlog" file of the
+ * table directory and has the following layout:
+ * <pre>
+ *     0  next writer id
+ *     8  applied transaction count
+ *     16 transaction count
+ *     24 number of the first transaction kept in the log
+ *     32 transactions, 40 bytes each: writer id, segment id, row lo, row hi and flags
+ * </pre>
+ * Transactions are numbered from the creation of the log, the log is truncated once all its transactions
+ * are applied. Table commit and update of applied transaction count are separate writes, table commit
+ * stores its own applied transaction count, which the log catches up with should the process stop
+ * in between.
+ * <p>
+ * Sequencer also keeps idle writers, so that short-lived producers, such as SQL inserts, do not
+ * start new segment each time.
+ */
+public class WalSequencer implements Closeable {
+    public static final long TXN_FLAG_LAST_IN_SEGMENT = 1;
+    public static final long TXN_FLAG_LAST_IN_WAL = 2;
+    // number of longs per transaction in the list returned by getPendingTxns()
+    public static final int TXN_LONGS = 5;
+    private static final Log LOG = LogFactory.getLog(WalSequencer.class);
+    private static final long OFFSET_NEXT_WAL_ID = 0;
+    private static final long OFFSET_APPLIED_COUNT = 8;
+    private static final long OFFSET_TXN_COUNT = 16;
+    private static final long OFFSET_TXN_BASE = 24;
+    private static final long HEADER_SIZE = 32;
+    private static final long TXN_SIZE = TXN_LONGS * Long.BYTES;
+    private static final int MAX_IDLE_WRITERS = 16;
+    private final CairoConfiguration configuration;
+    private final String tableName;
+    private final MemoryMARW txnLogMem = Vm.getMARWInstance();
+    private final ObjList<WalWriter> idleWriters = new ObjList<>();
+    private final boolean syncLog;
+    private boolean closed;
+    // consecutive failed attempts to apply the log
+    private int applyFailureCount;
+    private boolean suspended;
+
+    public WalSequencer(CairoConfiguration configuration, CharSequence tableName) {
+        this.configuration = configuration;
+        this.tableName = Chars.toString(tableName);
+        this.syncLog = configuration.getCommitMode() != CommitMode.NOSYNC;
+        final FilesFacade ff = configuration.getFilesFacade();
+        try (Path path = new Path().of(configuration.getRoot()).concat(tableName).concat(TableUtils.WAL_DIR_NAME)) {
+            if (ff.mkdirs(path.slash$(), configuration.getMkDirMode()) != 0) {
+                throw CairoException.instance(ff.errno()).put("could not create WAL directory: ").put(path);
+            }
+            txnLogMem.of(ff, path.trimTo(path.length() - 1).concat(TableUtils.WAL_TXN_LOG_FILE_NAME).$(), ff.getPageSize());
+            if (txnLogMem.getAppendOffset() < HEADER_SIZE) {
+                txnLogMem.jumpTo(0);
+                txnLogMem.putLong(0);
+                txnLogMem.putLong(0);
+                txnLogMem.putLong(0);
+                txnLogMem.putLong(0);
+            } else {
+                txnLogMem.jumpTo(txnOffset(txnLogMem.getLong(OFFSET_TXN_COUNT)));
+            }
+        } catch (Throwable e) {
+            txnLogMem.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        final ObjList<WalWriter> writers;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            writers = new ObjList<>(idleWriters);
+            idleWriters.clear();
+        }
+        // writers publish their final transactions while closing
+        for (int i = 0, n = writers.size(); i < n; i++) {
+            writers.getQuick(i).doClose();
+        }
+        synchronized (this) {
+            closed = true;
+            txnLogMem.close();
+        }
+    }
+
+    public synchronized long getAppliedTxnCount() {
+        return closed ? 0 : txnLogMem.getLong(OFFSET_APPLIED_COUNT);
+    }
+
+    public CairoConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Copies transactions that are sequenced but not applied yet.
+     *
+     * @param txns receives {@link #TXN_LONGS} values per transaction
+     * @return number of the first copied transaction
+     */
+    public synchronized long getPendingTxns(LongList txns) {
+        txns.clear();
+        if (closed) {
+            return 0;
+        }
+        final long applied = txnLogMem.getLong(OFFSET_APPLIED_COUNT);
+        for (long txn = applied, n = txnLogMem.getLong(OFFSET_TXN_COUNT); txn < n; txn++) {
+            final long offset = txnOffset(txn);
+            for (int i = 0; i < TXN_LONGS; i++) {
+                txns.add(txnLogMem.getLong(offset + (long) i * Long.BYTES));
+            }
+        }
+        return applied;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public synchronized long getTxnCount() {
+        return closed ? 0 : txnLogMem.getLong(OFFSET_TXN_COUNT);
+    }
+
+    public synchronized boolean hasPendingTxns() {
+        return !closed && txnLogMem.getLong(OFFSET_APPLIED_COUNT) < txnLogMem.getLong(OFFSET_TXN_COUNT);
+    }
+
+    /**
+     * @return true when applying has failed too many times in a row and is suspended until restart
+     */
+    public synchronized boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Counts failed attempt to apply the log and suspends applying once there are too many of them in a row.
+     *
+     * @return true when applying is suspended by this call
+     */
+    public synchronized boolean onApplyFailure() {
+        if (!suspended && ++applyFailureCount >= configuration.getWalApplyRetryCount()) {
+            suspended = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks transactions below appliedTxnCount as applied and truncates the log when there are
+     * no more transactions to apply.
+     */
+    public synchronized void setAppliedTxnCount(long appliedTxnCount) {
+        if (closed) {
+            return;
+        }
+        // this is the write that makes table commit in flight applied
+        txnLogMem.putLong(OFFSET_APPLIED_COUNT, appliedTxnCount);
+        if (appliedTxnCount == txnLogMem.getLong(OFFSET_TXN_COUNT)) {
+            txnLogMem.putLong(OFFSET_TXN_BASE, appliedTxnCount);
+            txnLogMem.jumpTo(HEADER_SIZE);
+        }
+        applyFailureCount = 0;
+        if (syncLog) {
+            txnLogMem.sync(false);
+        }
+    }
+
+    synchronized long commit(long walId, long segmentId, long rowLo, long rowHi, long flags) {
+        if (closed) {
+            throw CairoException.instance(0).put("WAL sequencer is closed [table=").put(tableName).put(']');
+        }
+        final long txn = txnLogMem.getLong(OFFSET_TXN_COUNT);
+        txnLogMem.putLong(walId);
+        txnLogMem.putLong(segmentId);
+        txnLogMem.putLong(rowLo);
+        txnLogMem.putLong(rowHi);
+        txnLogMem.putLong(flags);
+        Unsafe.getUnsafe().storeFence();
+        txnLogMem.putLong(OFFSET_TXN_COUNT, txn + 1);
+        if (syncLog) {
+            txnLogMem.sync(false);
+        }
+        LOG.debug().$("sequenced [table=").$(tableName)
+                .$(", txn=").$(txn)
+                .$(", wal=").$(walId)
+                .$(", segment=").$(segmentId)
+                .$(", rowLo=").$(rowLo)
+                .$(", rowHi=").$(rowHi)
+                .I$();
+        return txn;
+    }
+
+    private long txnOffset(long txn) {
+        return HEADER_SIZE + (txn - txnLogMem.getLong(OFFSET_TXN_BASE)) * TXN_SIZE;
+    }
+
+    synchronized long nextWalId() {
+        if (closed) {
+            throw CairoException.instance(0).put("WAL sequencer is closed [table=").put(tableName).put(']');
+        }
+        final long walId = txnLogMem.getLong(OFFSET_NEXT_WAL_ID);
+        txnLogMem.putLong(OFFSET_NEXT_WAL_ID, walId + 1);
+        return walId;
+    }
+
+    synchronized WalWriter popIdleWriter() {
+        final int n = idleWriters.size();
+        if (n == 0) {
+            return null;
+        }
+        final WalWriter writer = idleWriters.getQuick(n - 1);
+        idleWriters.setPos(n - 1);
+        return writer;
+    }
+
+    /**
+     * @return false when writer is to be closed by the caller
+     */
+    synchronized boolean pushIdleWriter(WalWriter writer) {
+        if (closed || idleWriters.size() >= MAX_IDLE_WRITERS) {
+            return false;
+        }
+        idleWriters.add(writer);
+        return true;
+    }
+}
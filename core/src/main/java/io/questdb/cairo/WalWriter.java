@@ -0,0 +1,562 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryA;
+import io.questdb.cairo.vm.api.MemoryMA;
+import io.questdb.cairo.vm.api.MemoryMARW;
+import io.questdb.griffin.model.IntervalUtils;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.Path;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Appends rows to private write-ahead log of the table instead of table partitions, so that
+ * any number of WAL writers can ingest into the same table concurrently. Rows are written into
+ * segment directories "wal/&lt;writer id&gt;/&lt;segment id&gt;" with one file per column, symbols
+ * are stored as strings. Each commit is ordered by table's {@link WalSequencer} and is made
+ * visible to readers once {@link WalApplyJob} copies it into the table.
+ * <p>
+ * Closing writer returns it to the sequencer, which keeps it for the next producer. Segment
+ * is rolled over once it reaches configured number of rows.
+ */
+public class WalWriter implements TableWriterAPI {
+    public static final String SEGMENT_META_FILE_NAME = "_meta";
+    private static final Log LOG = LogFactory.getLog(WalWriter.class);
+    private final CairoConfiguration configuration;
+    private final FilesFacade ff;
+    private final WalSequencer sequencer;
+    private final long walId;
+    private final long structureVersion;
+    private final int columnCount;
+    private final int timestampIndex;
+    private final ObjList<String> columnNames = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final ObjList<MemoryMA> columns = new ObjList<>();
+    private final ObjList<Runnable> nullSetters = new ObjList<>();
+    // per column: value of rowRef when column was last set
+    private final LongList refs = new LongList();
+    // per column: primary and secondary append offsets as of last commit
+    private final LongList committedOffsets = new LongList();
+    // per column: data append offset of var length columns as of row start
+    private final LongList rowDataOffsets = new LongList();
+    private final Path path = new Path();
+    private final int rootLen;
+    private final long rolloverRowCount;
+    private final int commitMode;
+    private final RowImpl row = new RowImpl();
+    private long segmentId = -1;
+    private long nextSegmentId;
+    private long segmentRowCount;
+    private long committedRowCount;
+    private long rowRef;
+    private boolean rowStarted;
+    private boolean anyCommitted;
+
+    public WalWriter(CairoConfiguration configuration, WalSequencer sequencer, RecordMetadata metadata, long structureVersion) {
+        this.configuration = configuration;
+        this.ff = configuration.getFilesFacade();
+        this.sequencer = sequencer;
+        this.structureVersion = structureVersion;
+        this.rolloverRowCount = configuration.getWalSegmentRolloverRowCount();
+        this.commitMode = configuration.getCommitMode();
+        this.columnCount = metadata.getColumnCount();
+        this.timestampIndex = metadata.getTimestampIndex();
+        for (int i = 0; i < columnCount; i++) {
+            final int type = metadata.getColumnType(i);
+            columnNames.add(Chars.toString(metadata.getColumnName(i)));
+            columnTypes.add(type);
+            final MemoryMA mem1 = Vm.getMARInstance();
+            final MemoryMA mem2 = ColumnType.isVariableLength(type) || ColumnType.isSymbol(type) ? Vm.getMARInstance() : null;
+            columns.add(mem1);
+            columns.add(mem2);
+            configureNullSetter(type, mem1, mem2);
+        }
+        refs.setAll(columnCount, -1);
+        committedOffsets.setAll(columnCount * 2, 0);
+        rowDataOffsets.setAll(columnCount, 0);
+        this.walId = sequencer.nextWalId();
+        this.path.of(configuration.getRoot()).concat(sequencer.getTableName()).concat(TableUtils.WAL_DIR_NAME).slash().put(walId);
+        this.rootLen = path.length();
+        LOG.info().$("open [table=").$(sequencer.getTableName()).$(", wal=").$(walId).I$();
+    }
+
+    @Override
+    public void close() {
+        rollback();
+        if (!sequencer.pushIdleWriter(this)) {
+            doClose();
+        }
+    }
+
+    @Override
+    public void commit() {
+        if (segmentRowCount == committedRowCount) {
+            return;
+        }
+        if (commitMode != CommitMode.NOSYNC) {
+            final boolean async = commitMode == CommitMode.ASYNC;
+            for (int i = 0, n = columns.size(); i < n; i++) {
+                final MemoryMA mem = columns.getQuick(i);
+                if (mem != null) {
+                    mem.sync(async);
+                }
+            }
+        }
+        final boolean rollover = segmentRowCount >= rolloverRowCount;
+        sequencer.commit(walId, segmentId, committedRowCount, segmentRowCount, rollover ? WalSequencer.TXN_FLAG_LAST_IN_SEGMENT : 0);
+        committedRowCount = segmentRowCount;
+        anyCommitted = true;
+        if (rollover) {
+            closeSegment();
+        } else {
+            for (int i = 0; i < columnCount; i++) {
+                committedOffsets.setQuick(i * 2, columns.getQuick(i * 2).getAppendOffset());
+                final MemoryMA mem2 = columns.getQuick(i * 2 + 1);
+                if (mem2 != null) {
+                    committedOffsets.setQuick(i * 2 + 1, mem2.getAppendOffset());
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
+    @Override
+    public String getTableName() {
+        return sequencer.getTableName();
+    }
+
+    public long getWalId() {
+        return walId;
+    }
+
+    @Override
+    public TableWriter.Row newRow() {
+        return newRow(0L);
+    }
+
+    @Override
+    public TableWriter.Row newRow(long timestamp) {
+        if (timestampIndex > -1 && timestamp < Timestamps.O3_MIN_TS) {
+            throw CairoException.instance(0).put("timestamp before 1970-01-01 is not allowed");
+        }
+        if (rowStarted) {
+            row.cancel();
+        }
+        if (segmentId < 0) {
+            openSegment();
+        }
+        rowRef++;
+        rowStarted = true;
+        for (int i = 0; i < columnCount; i++) {
+            final MemoryMA mem2 = columns.getQuick(i * 2 + 1);
+            if (mem2 != null) {
+                rowDataOffsets.setQuick(i, columns.getQuick(i * 2).getAppendOffset());
+            }
+        }
+        if (timestampIndex > -1) {
+            row.putTimestamp(timestampIndex, timestamp);
+        }
+        return row;
+    }
+
+    @Override
+    public void rollback() {
+        if (rowStarted) {
+            row.cancel();
+        }
+        if (segmentId > -1 && segmentRowCount > committedRowCount) {
+            for (int i = 0; i < columnCount; i++) {
+                columns.getQuick(i * 2).jumpTo(committedOffsets.getQuick(i * 2));
+                final MemoryMA mem2 = columns.getQuick(i * 2 + 1);
+                if (mem2 != null) {
+                    mem2.jumpTo(committedOffsets.getQuick(i * 2 + 1));
+                }
+            }
+            segmentRowCount = committedRowCount;
+        }
+    }
+
+    private void closeSegment() {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            final MemoryMA mem = columns.getQuick(i);
+            if (mem != null) {
+                mem.close(true);
+            }
+        }
+        segmentId = -1;
+        segmentRowCount = 0;
+        committedRowCount = 0;
+        committedOffsets.setAll(columnCount * 2, 0);
+    }
+
+    private void configureNullSetter(int type, MemoryA mem1, MemoryA mem2) {
+        switch (ColumnType.storageTag(type)) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+                nullSetters.add(() -> mem1.putByte((byte) 0));
+                break;
+            case ColumnType.DOUBLE:
+                nullSetters.add(() -> mem1.putDouble(Double.NaN));
+                break;
+            case ColumnType.FLOAT:
+                nullSetters.add(() -> mem1.putFloat(Float.NaN));
+                break;
+            case ColumnType.INT:
+                nullSetters.add(() -> mem1.putInt(Numbers.INT_NaN));
+                break;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                nullSetters.add(() -> mem1.putLong(Numbers.LONG_NaN));
+                break;
+            case ColumnType.LONG256:
+                nullSetters.add(() -> mem1.putLong256(Numbers.LONG_NaN, Numbers.LONG_NaN, Numbers.LONG_NaN, Numbers.LONG_NaN));
+                break;
+            case ColumnType.SHORT:
+                nullSetters.add(() -> mem1.putShort((short) 0));
+                break;
+            case ColumnType.CHAR:
+                nullSetters.add(() -> mem1.putChar((char) 0));
+                break;
+            case ColumnType.STRING:
+            case ColumnType.SYMBOL:
+                nullSetters.add(() -> mem2.putLong(mem1.putNullStr()));
+                break;
+            case ColumnType.BINARY:
+                nullSetters.add(() -> mem2.putLong(mem1.putNullBin()));
+                break;
+            case ColumnType.GEOBYTE:
+                nullSetters.add(() -> mem1.putByte(GeoHashes.BYTE_NULL));
+                break;
+            case ColumnType.GEOSHORT:
+                nullSetters.add(() -> mem1.putShort(GeoHashes.SHORT_NULL));
+                break;
+            case ColumnType.GEOINT:
+                nullSetters.add(() -> mem1.putInt(GeoHashes.INT_NULL));
+                break;
+            case ColumnType.GEOLONG:
+                nullSetters.add(() -> mem1.putLong(GeoHashes.NULL));
+                break;
+            default:
+                nullSetters.add(() -> {
+                });
+                break;
+        }
+    }
+
+    /**
+     * Publishes last transaction of this writer, which allows {@link WalApplyJob} to remove
+     * writer's directory, and releases resources. Writer that has not committed anything
+     * removes its directory straight away.
+     */
+    void doClose() {
+        rollback();
+        final long lastSegmentId = segmentId;
+        final long lastRowCount = committedRowCount;
+        closeSegment();
+        try {
+            if (anyCommitted) {
+                sequencer.commit(
+                        walId,
+                        lastSegmentId,
+                        lastRowCount,
+                        lastRowCount,
+                        WalSequencer.TXN_FLAG_LAST_IN_SEGMENT | WalSequencer.TXN_FLAG_LAST_IN_WAL
+                );
+            } else if (ff.exists(path.trimTo(rootLen).slash$()) && ff.rmdir(path) != 0) {
+                LOG.error().$("could not remove WAL directory [path=").$(path).$(", errno=").$(ff.errno()).I$();
+            }
+        } catch (CairoException e) {
+            LOG.error().$("could not close WAL [table=").$(sequencer.getTableName())
+                    .$(", wal=").$(walId)
+                    .$(", error=").$((Sinkable) e)
+                    .I$();
+        } finally {
+            path.close();
+        }
+    }
+
+    private MemoryA getPrimaryColumn(int index) {
+        return columns.getQuick(index * 2);
+    }
+
+    private MemoryA getSecondaryColumn(int index) {
+        return columns.getQuick(index * 2 + 1);
+    }
+
+    private void openSegment() {
+        path.trimTo(rootLen).slash().put(nextSegmentId);
+        final int segmentLen = path.length();
+        if (ff.mkdirs(path.slash$(), configuration.getMkDirMode()) != 0) {
+            throw CairoException.instance(ff.errno()).put("could not create WAL segment directory: ").put(path);
+        }
+        try {
+            try (MemoryMARW metaMem = Vm.getMARWInstance()) {
+                metaMem.of(ff, path.trimTo(segmentLen).concat(SEGMENT_META_FILE_NAME).$(), ff.getPageSize());
+                metaMem.putInt(columnCount);
+                metaMem.putInt(timestampIndex);
+                metaMem.putLong(structureVersion);
+                for (int i = 0; i < columnCount; i++) {
+                    metaMem.putInt(columnTypes.getQuick(i));
+                    metaMem.putStr(columnNames.getQuick(i));
+                }
+            }
+            final long pageSize = configuration.getAppendPageSize();
+            for (int i = 0; i < columnCount; i++) {
+                final CharSequence name = columnNames.getQuick(i);
+                columns.getQuick(i * 2).of(ff, TableUtils.dFile(path.trimTo(segmentLen), name), pageSize);
+                final MemoryMA mem2 = columns.getQuick(i * 2 + 1);
+                if (mem2 != null) {
+                    mem2.of(ff, TableUtils.iFile(path.trimTo(segmentLen), name), pageSize);
+                }
+            }
+        } catch (Throwable e) {
+            closeSegment();
+            throw e;
+        } finally {
+            path.trimTo(rootLen);
+        }
+        segmentId = nextSegmentId++;
+        segmentRowCount = 0;
+        committedRowCount = 0;
+        committedOffsets.setAll(columnCount * 2, 0);
+    }
+
+    private class RowImpl implements TableWriter.Row {
+
+        @Override
+        public void append() {
+            if (!rowStarted) {
+                return;
+            }
+            for (int i = 0; i < columnCount; i++) {
+                if (refs.getQuick(i) != rowRef) {
+                    nullSetters.getQuick(i).run();
+                }
+            }
+            segmentRowCount++;
+            rowStarted = false;
+        }
+
+        @Override
+        public void cancel() {
+            if (!rowStarted) {
+                return;
+            }
+            for (int i = 0; i < columnCount; i++) {
+                final MemoryMA mem1 = columns.getQuick(i * 2);
+                final MemoryMA mem2 = columns.getQuick(i * 2 + 1);
+                if (mem2 != null) {
+                    mem1.jumpTo(rowDataOffsets.getQuick(i));
+                    mem2.jumpTo(segmentRowCount * Long.BYTES);
+                } else {
+                    mem1.jumpTo(segmentRowCount << ColumnType.pow2SizeOf(columnTypes.getQuick(i)));
+                }
+            }
+            rowStarted = false;
+        }
+
+        @Override
+        public void putBin(int index, long address, long len) {
+            getSecondaryColumn(index).putLong(getPrimaryColumn(index).putBin(address, len));
+            notNull(index);
+        }
+
+        @Override
+        public void putBin(int index, BinarySequence sequence) {
+            getSecondaryColumn(index).putLong(getPrimaryColumn(index).putBin(sequence));
+            notNull(index);
+        }
+
+        @Override
+        public void putBool(int index, boolean value) {
+            getPrimaryColumn(index).putBool(value);
+            notNull(index);
+        }
+
+        @Override
+        public void putByte(int index, byte value) {
+            getPrimaryColumn(index).putByte(value);
+            notNull(index);
+        }
+
+        @Override
+        public void putChar(int index, char value) {
+            getPrimaryColumn(index).putChar(value);
+            notNull(index);
+        }
+
+        @Override
+        public void putDate(int index, long value) {
+            putLong(index, value);
+        }
+
+        @Override
+        public void putDouble(int index, double value) {
+            getPrimaryColumn(index).putDouble(value);
+            notNull(index);
+        }
+
+        @Override
+        public void putFloat(int index, float value) {
+            getPrimaryColumn(index).putFloat(value);
+            notNull(index);
+        }
+
+        @Override
+        public void putGeoHash(int index, long value) {
+            final MemoryA primaryColumn = getPrimaryColumn(index);
+            switch (ColumnType.sizeOf(columnTypes.getQuick(index))) {
+                case 1:
+                    primaryColumn.putByte((byte) value);
+                    break;
+                case 2:
+                    primaryColumn.putShort((short) value);
+                    break;
+                case 4:
+                    primaryColumn.putInt((int) value);
+                    break;
+                default:
+                    primaryColumn.putLong(value);
+                    break;
+            }
+            notNull(index);
+        }
+
+        @Override
+        public void putInt(int index, int value) {
+            getPrimaryColumn(index).putInt(value);
+            notNull(index);
+        }
+
+        @Override
+        public void putLong(int index, long value) {
+            getPrimaryColumn(index).putLong(value);
+            notNull(index);
+        }
+
+        @Override
+        public void putLong256(int index, long l0, long l1, long l2, long l3) {
+            getPrimaryColumn(index).putLong256(l0, l1, l2, l3);
+            notNull(index);
+        }
+
+        @Override
+        public void putLong256(int index, Long256 value) {
+            getPrimaryColumn(index).putLong256(value.getLong0(), value.getLong1(), value.getLong2(), value.getLong3());
+            notNull(index);
+        }
+
+        @Override
+        public void putLong256(int index, CharSequence hexString) {
+            getPrimaryColumn(index).putLong256(hexString);
+            notNull(index);
+        }
+
+        @Override
+        public void putLong256(int index, @NotNull CharSequence hexString, int start, int end) {
+            getPrimaryColumn(index).putLong256(hexString, start, end);
+            notNull(index);
+        }
+
+        @Override
+        public void putShort(int index, short value) {
+            getPrimaryColumn(index).putShort(value);
+            notNull(index);
+        }
+
+        @Override
+        public void putStr(int index, CharSequence value) {
+            getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value));
+            notNull(index);
+        }
+
+        @Override
+        public void putStr(int index, char value) {
+            getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value));
+            notNull(index);
+        }
+
+        @Override
+        public void putStr(int index, CharSequence value, int pos, int len) {
+            getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value, pos, len));
+            notNull(index);
+        }
+
+        @Override
+        public void putSym(int index, CharSequence value) {
+            // symbol keys belong to the table, WAL keeps symbol values
+            putStr(index, value);
+        }
+
+        @Override
+        public void putSym(int index, char value) {
+            putStr(index, value);
+        }
+
+        @Override
+        public void putSymIndex(int index, int symIndex) {
+            if (symIndex == SymbolTable.VALUE_IS_NULL) {
+                putStr(index, null);
+                return;
+            }
+            throw CairoException.instance(0).put("symbol keys are not supported by WAL writer [table=")
+                    .put(sequencer.getTableName())
+                    .put(", column=").put(columnNames.getQuick(index))
+                    .put(']');
+        }
+
+        @Override
+        public void putTimestamp(int index, long value) {
+            putLong(index, value);
+        }
+
+        @Override
+        public void putTimestamp(int index, CharSequence value) {
+            long l;
+            try {
+                l = value != null ? IntervalUtils.parseFloorPartialDate(value) : Numbers.LONG_NaN;
+            } catch (NumericException e) {
+                throw CairoException.instance(0).put("Invalid timestamp: ").put(value);
+            }
+            putTimestamp(index, l);
+        }
+
+        private void notNull(int index) {
+            refs.setQuick(index, rowRef);
+        }
+    }
+}
@@ -186,6 +186,11 @@ public class CompactMap implements Map {
         return cursor;
     }
 
+    @Override
+    public long getMemorySize() {
+        return currentEntryOffset + currentEntrySize + (mask + 1) * 8;
+    }
+
     @Override
     public MapRecord getRecord() {
         return record;
@@ -226,6 +226,11 @@ public class FastMap implements Map {
         return cursor.init(kStart, size);
     }
 
+    @Override
+    public long getMemorySize() {
+        return capacity + offsets.getCapacity() * Long.BYTES;
+    }
+
     @Override
     public MapRecord getRecord() {
         return record;
@@ -35,6 +35,9 @@ public interface Map extends Mutable, Closeable {
 
     RecordCursor getCursor();
 
+    // bytes of native memory held by keys, values and hash slots
+    long getMemorySize();
+
     MapRecord getRecord();
 
     long size();
@@ -45,6 +45,7 @@ public interface PoolListener {
     short EV_POOL_OPEN = 23;
     short EV_POOL_CLOSED = 24;
     short EV_FULL = 25;
+    short EV_REFRESH = 26;
 
     void onEvent(byte factoryType, long thread, CharSequence name, short event, short segment, short position);
 }
@@ -33,6 +33,7 @@ import io.questdb.cairo.pool.ex.PoolClosedException;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.std.ConcurrentHashMap;
+import io.questdb.std.Sinkable;
 import io.questdb.std.Unsafe;
 
 import java.util.Arrays;
@@ -182,6 +183,46 @@ public class ReaderPool extends AbstractPool implements ResourcePool<TableReader
         return true;
     }
 
+    /**
+     * Reloads idle readers of tables that have been committed to since readers were returned to the pool,
+     * so that the next get() does not pay for the reload. Readers that fail to reload are closed.
+     *
+     * @return true when at least one reader has been reloaded
+     */
+    public boolean refreshIdle() {
+        if (isClosed()) {
+            return false;
+        }
+        final long thread = Thread.currentThread().getId();
+        boolean refreshed = false;
+        for (Map.Entry<CharSequence, Entry> me : entries.entrySet()) {
+            Entry e = me.getValue();
+            do {
+                for (int i = 0; i < ENTRY_SIZE; i++) {
+                    if (e.lockOwner == UNLOCKED && e.readers[i] != null && Unsafe.cas(e.allocations, i, UNALLOCATED, thread)) {
+                        final R r = e.readers[i];
+                        try {
+                            if (r != null && r.isOutdated()) {
+                                // activation reloads reader and takes txn in the scoreboard, which passivation gives back
+                                r.goActive();
+                                r.goPassive();
+                                refreshed = true;
+                                notifyListener(thread, r.getTableName(), PoolListener.EV_REFRESH, e.index, i);
+                            }
+                        } catch (CairoException ex) {
+                            LOG.error().$("could not refresh [table=`").utf8(r.getTableName()).$("`, at=").$(e.index).$(':').$(i).$(", error=").$((Sinkable) ex).$(']').$();
+                            closeReader(thread, e, i, PoolListener.EV_EXPIRE, PoolConstants.CR_DISTRESSED);
+                        } finally {
+                            Unsafe.arrayPutOrdered(e.allocations, i, UNALLOCATED);
+                        }
+                    }
+                }
+                e = e.next;
+            } while (e != null);
+        }
+        return refreshed;
+    }
+
     public void unlock(CharSequence name) {
         Entry e = entries.get(name);
         long thread = Thread.currentThread().getId();
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo.vm;
+
+import io.questdb.cairo.ColumnCompression;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.CharSequenceObjHashMap;
+import io.questdb.std.Chars;
+import io.questdb.std.LongList;
+import io.questdb.std.Unsafe;
+
+/**
+ * Process-wide registry of decompressed column files. All readers of the same compressed
+ * file share one decoded copy. Copy that is no longer used by any reader stays cached while
+ * total size of such copies is within capacity, least recently released copies are freed first.
+ * Copies in use are never freed, readers bound them by releasing columns when they go passive.
+ * <p>
+ * Compressed file is identified by its path, modification time and header. Header holds raw size
+ * and size of every compressed block, so that file compressed again under the same name
+ * is not mistaken for the one already decoded.
+ */
+final class DecompressedColumnCache {
+    private static final Log LOG = LogFactory.getLog(DecompressedColumnCache.class);
+    private static final CharSequenceObjHashMap<Entry> entries = new CharSequenceObjHashMap<>();
+    // idle entries in order of release, head is released first
+    private static Entry idleHead;
+    private static Entry idleTail;
+    private static long idleSize;
+
+    private DecompressedColumnCache() {
+    }
+
+    /**
+     * Finds decoded copy of the file or decodes the file. Caller must return the entry
+     * via {@link #release(Entry, long)}.
+     *
+     * @param name         file name
+     * @param lastModified modification time of the file
+     * @param address      start of the mapped file
+     * @param size         size of the file, at least {@link ColumnCompression#HEADER_SIZE} bytes
+     * @return entry, which holds decoded file
+     */
+    static Entry acquire(CharSequence name, long lastModified, long address, long size) {
+        synchronized (entries) {
+            final int index = entries.keyIndex(name);
+            if (index < 0) {
+                final Entry entry = entries.valueAtQuick(index);
+                if (entry.matches(lastModified, address, size)) {
+                    pin(entry);
+                    return entry;
+                }
+            }
+        }
+
+        // decode outside of the lock, concurrent readers of other files are not held up
+        final Entry entry = new Entry(Chars.toString(name), lastModified, address, size);
+        synchronized (entries) {
+            final int index = entries.keyIndex(name);
+            if (index < 0) {
+                final Entry other = entries.valueAtQuick(index);
+                if (other.matches(lastModified, address, size)) {
+                    // another reader has decoded the same file meanwhile
+                    pin(other);
+                    entry.free();
+                    return other;
+                }
+                // file has been replaced, readers of the old copy keep it until they release it
+                other.cached = false;
+                if (other.refCount == 0) {
+                    unlinkIdle(other);
+                    other.free();
+                }
+                entries.setValueQuick(index, entry);
+            } else {
+                entries.putAt(index, entry.name, entry);
+            }
+            entry.cached = true;
+            entry.refCount = 1;
+            return entry;
+        }
+    }
+
+    /**
+     * Returns entry acquired by {@link #acquire(CharSequence, long, long, long)}.
+     *
+     * @param entry    entry to return
+     * @param capacity total size of decoded copies, which are kept when no longer in use
+     */
+    static void release(Entry entry, long capacity) {
+        synchronized (entries) {
+            assert entry.refCount > 0;
+            if (--entry.refCount == 0) {
+                if (entry.cached && entry.size > 0) {
+                    linkIdle(entry);
+                } else {
+                    if (entry.cached) {
+                        entries.remove(entry.name);
+                    }
+                    entry.free();
+                }
+            }
+            while (idleSize > capacity) {
+                final Entry idle = idleHead;
+                unlinkIdle(idle);
+                entries.remove(idle.name);
+                idle.free();
+            }
+        }
+    }
+
+    static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static void linkIdle(Entry entry) {
+        entry.prev = idleTail;
+        entry.next = null;
+        if (idleTail != null) {
+            idleTail.next = entry;
+        } else {
+            idleHead = entry;
+        }
+        idleTail = entry;
+        idleSize += entry.size;
+    }
+
+    private static void pin(Entry entry) {
+        if (entry.refCount++ == 0) {
+            unlinkIdle(entry);
+        }
+    }
+
+    private static void unlinkIdle(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            idleHead = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        } else {
+            idleTail = entry.prev;
+        }
+        entry.prev = entry.next = null;
+        idleSize -= entry.size;
+    }
+
+    static final class Entry {
+        private final String name;
+        private final long lastModified;
+        private final LongList header = new LongList();
+        private long address;
+        private long size;
+        private int refCount;
+        private boolean cached;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(String name, long lastModified, long fileAddress, long fileSize) {
+            this.name = name;
+            this.lastModified = lastModified;
+            final long rawSize = ColumnCompression.getRawSize(fileAddress);
+            if (rawSize > 0) {
+                this.address = Unsafe.malloc(rawSize);
+                this.size = rawSize;
+                try {
+                    ColumnCompression.decompress(fileAddress, fileSize, address);
+                } catch (Throwable e) {
+                    free();
+                    throw e;
+                }
+            }
+            final long headerSize = Math.min(ColumnCompression.getHeaderSize(fileAddress), fileSize);
+            for (long p = 0; p + Long.BYTES <= headerSize; p += Long.BYTES) {
+                header.add(Unsafe.getUnsafe().getLong(fileAddress + p));
+            }
+            LOG.debug().$("decompressed [file=").$(name).$(", size=").$(size).$(']').$();
+        }
+
+        long getAddress() {
+            return address;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        private void free() {
+            if (address != 0) {
+                Unsafe.free(address, size);
+                address = 0;
+                size = 0;
+            }
+        }
+
+        private boolean matches(long lastModified, long fileAddress, long fileSize) {
+            if (this.lastModified != lastModified) {
+                return false;
+            }
+            final long headerSize = Math.min(ColumnCompression.getHeaderSize(fileAddress), fileSize);
+            if (headerSize != (long) header.size() * Long.BYTES) {
+                return false;
+            }
+            for (int i = 0, n = header.size(); i < n; i++) {
+                if (header.getQuick(i) != Unsafe.getUnsafe().getLong(fileAddress + (long) i * Long.BYTES)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.vm;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnCompression;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.vm.api.MemoryCMR;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.Chars;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.LPSZ;
+
+/**
+ * Read-only view of compressed column file. Opening the file reads only its header, the file
+ * is decoded on first access to its content, so that columns query does not touch are never
+ * inflated. Compressed files belong to sealed partitions and do not grow. Decoded copy is shared
+ * by all views of the same file, see {@link DecompressedColumnCache}, views can release
+ * the copy and decode the file again on next access.
+ */
+public class MemoryCMRZImpl extends AbstractMemoryCR implements MemoryCMR {
+    private static final Log LOG = LogFactory.getLog(MemoryCMRZImpl.class);
+    private final long cacheCapacity;
+    private String name;
+    private long lastModified;
+    private DecompressedColumnCache.Entry entry;
+    // written under lock after the copy is decoded, workers of parallel queries read it without lock
+    private volatile long address;
+
+    /**
+     * @param ff            files facade
+     * @param name          compressed file name
+     * @param cacheCapacity size of decoded copies, which outlive their views, see {@link DecompressedColumnCache}
+     */
+    public MemoryCMRZImpl(FilesFacade ff, LPSZ name, long cacheCapacity) {
+        this.cacheCapacity = cacheCapacity;
+        of(ff, name, 0, Long.MAX_VALUE);
+    }
+
+    @Override
+    public long addressOf(long offset) {
+        assert offset <= size : "offset=" + offset + ", size=" + size + ", fd=" + fd;
+        final long address = this.address;
+        return (address != 0 ? address : decode()) + offset;
+    }
+
+    @Override
+    public void close() {
+        release();
+        this.size = 0;
+        this.name = null;
+        if (fd != -1) {
+            ff.close(fd);
+            LOG.debug().$("closed [fd=").$(fd).$(']').$();
+            fd = -1;
+        }
+        grownLength = 0;
+    }
+
+    @Override
+    public void extend(long newSize) {
+        grownLength = Math.max(newSize, grownLength);
+    }
+
+    @Override
+    public long getPageAddress(int pageIndex) {
+        final long address = this.address;
+        return address != 0 ? address : decode();
+    }
+
+    @Override
+    public int getPageCount() {
+        return size > 0 ? 1 : 0;
+    }
+
+    public boolean isDecoded() {
+        return address != 0;
+    }
+
+    @Override
+    public void of(FilesFacade ff, LPSZ name, long extendSegmentSize, long size) {
+        close();
+        this.ff = ff;
+        if (!ff.exists(name)) {
+            throw CairoException.instance(0).put("File not found: ").put(name);
+        }
+        fd = TableUtils.openRO(ff, name, LOG);
+        final long buf = Unsafe.malloc(Long.BYTES);
+        try {
+            final long fileSize = ff.length(fd);
+            if (fileSize < ColumnCompression.HEADER_SIZE) {
+                throw CairoException.instance(0).put("compressed file is too short [file=").put(name).put(", size=").put(fileSize).put(']');
+            }
+            if (ff.read(fd, buf, Long.BYTES, 0) != Long.BYTES) {
+                throw CairoException.instance(ff.errno()).put("could not read compressed file header [file=").put(name).put(']');
+            }
+            this.size = ColumnCompression.getRawSize(buf);
+            this.name = Chars.toString(name);
+            this.lastModified = ff.getLastModified(name);
+        } catch (Throwable e) {
+            close();
+            throw e;
+        } finally {
+            Unsafe.free(buf, Long.BYTES);
+        }
+        LOG.debug().$("open ").$(name).$(" [fd=").$(fd).$(", size=").$(this.size).$(']').$();
+    }
+
+    /**
+     * Returns decoded copy of the file to the cache. Content is decoded again on next access,
+     * file stays open meanwhile. Views must not be released while they are being read.
+     */
+    public synchronized void release() {
+        address = 0;
+        if (entry != null) {
+            DecompressedColumnCache.release(entry, cacheCapacity);
+            entry = null;
+        }
+    }
+
+    @Override
+    public long resize(long size) {
+        extend(size);
+        return getPageAddress(0);
+    }
+
+    private synchronized long decode() {
+        if (address != 0 || size == 0) {
+            return address;
+        }
+        final long fileSize = ff.length(fd);
+        final long fileAddress = TableUtils.mapRO(ff, fd, fileSize);
+        try {
+            entry = DecompressedColumnCache.acquire(name, lastModified, fileAddress, fileSize);
+        } finally {
+            ff.munmap(fileAddress, fileSize);
+        }
+        address = entry.getAddress();
+        LOG.debug().$("decoded ").$(name).$(" [fd=").$(fd).$(", size=").$(size).$(']').$();
+        return address;
+    }
+}
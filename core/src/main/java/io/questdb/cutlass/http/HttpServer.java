@@ -31,9 +31,13 @@ import io.questdb.cairo.CairoEngine;
 import io.questdb.cairo.ColumnIndexerJob;
 import io.questdb.cairo.TableBlockWriter.TableBlockWriterJob;
 import io.questdb.cutlass.http.processors.*;
+import io.questdb.cutlass.text.TextImportJob;
 import io.questdb.griffin.FunctionFactoryCache;
+import io.questdb.griffin.engine.groupby.ParallelGroupByJob;
 import io.questdb.griffin.engine.groupby.vect.GroupByJob;
+import io.questdb.griffin.engine.join.ParallelHashJoinJob;
 import io.questdb.griffin.engine.table.LatestByAllIndexedJob;
+import io.questdb.griffin.engine.table.ParallelFilterJob;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.mp.EagerThreadSetup;
@@ -133,7 +137,7 @@ public class HttpServer implements Closeable {
         server.bind(new HttpRequestProcessorFactory() {
             @Override
             public HttpRequestProcessor newInstance() {
-                return new TextImportProcessor(cairoEngine);
+                return new TextImportProcessor(cairoEngine, workerPool.getWorkerCount());
             }
 
             @Override
@@ -189,6 +193,10 @@ public class HttpServer implements Closeable {
         workerPool.assign(new GroupByJob(messageBus));
         workerPool.assign(new TableBlockWriterJob(messageBus));
         workerPool.assign(new LatestByAllIndexedJob(messageBus));
+        workerPool.assign(new ParallelFilterJob(messageBus));
+        workerPool.assign(new ParallelGroupByJob(messageBus));
+        workerPool.assign(new ParallelHashJoinJob(messageBus));
+        workerPool.assign(new TextImportJob(messageBus));
     }
 
     @Nullable
@@ -71,11 +71,17 @@ public class TextImportProcessor implements HttpRequestProcessor, HttpMultipartC
     private static final LocalValue<TextImportProcessorState> LV = new LocalValue<>();
     private static final String OVERRIDDEN_FROM_TABLE = "From Table";
     private final CairoEngine engine;
+    private final int workerCount;
     private HttpConnectionContext transientContext;
     private TextImportProcessorState transientState;
 
     public TextImportProcessor(CairoEngine cairoEngine) {
+        this(cairoEngine, 1);
+    }
+
+    public TextImportProcessor(CairoEngine cairoEngine, int workerCount) {
         this.engine = cairoEngine;
+        this.workerCount = workerCount;
     }
 
     @Override
@@ -168,7 +174,13 @@ public class TextImportProcessor implements HttpRequestProcessor, HttpMultipartC
 
             transientState.textLoader.setForceHeaders(Chars.equalsNc("true", rh.getUrlParam("forceHeader")));
             transientState.textLoader.setSkipRowsWithExtraValues(Chars.equalsNc("true", rh.getUrlParam("skipLev")));
-            transientState.textLoader.setState(TextLoader.ANALYZE_STRUCTURE);
+            if (Chars.equalsNc("true", rh.getUrlParam("parallel"))) {
+                // whole upload is buffered and loaded by worker pool when the part ends
+                transientState.analysed = true;
+                transientState.textLoader.setState(TextLoader.BUFFER_DATA);
+            } else {
+                transientState.textLoader.setState(TextLoader.ANALYZE_STRUCTURE);
+            }
 
             transientState.forceHeader = Chars.equalsNc("true", rh.getUrlParam("forceHeader"));
             transientState.messagePart = MESSAGE_DATA;
@@ -214,7 +226,7 @@ public class TextImportProcessor implements HttpRequestProcessor, HttpMultipartC
         this.transientState = LV.get(context);
         if (this.transientState == null) {
             LOG.debug().$("new text state").$();
-            LV.set(context, this.transientState = new TextImportProcessorState(engine));
+            LV.set(context, this.transientState = new TextImportProcessorState(engine, workerCount));
             transientState.json = isJson(context);
         }
     }
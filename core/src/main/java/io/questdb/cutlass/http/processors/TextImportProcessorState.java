@@ -49,8 +49,9 @@ class TextImportProcessorState implements Mutable, Closeable {
     boolean json = false;
     CharSequence errorMessage;
 
-    TextImportProcessorState(CairoEngine engine) {
+    TextImportProcessorState(CairoEngine engine, int workerCount) {
         this.textLoader = new TextLoader(engine);
+        this.textLoader.setWorkerCount(workerCount);
     }
 
     @Override
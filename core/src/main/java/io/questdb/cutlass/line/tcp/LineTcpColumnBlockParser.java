@@ -0,0 +1,300 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cutlass.line.tcp.NewLineProtoParser.ParseResult;
+import io.questdb.std.Chars;
+import io.questdb.std.IntList;
+import io.questdb.std.LongList;
+import io.questdb.std.ObjList;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.DirectByteCharSequence;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Parses binary, column oriented blocks sent on the line protocol TCP port. A block starts with
+ * {@link #BLOCK_MARKER}, which cannot start a text measurement, so both formats can be mixed on
+ * the same connection. All numbers are little endian:
+ * <pre>
+ * byte    marker (0x00)
+ * int     block size in bytes, including marker and size
+ * short   table name length, UTF8 table name
+ * int     row count N
+ * short   column count C
+ * C x     short column name length, UTF8 column name, byte column type
+ * N x     long designated timestamp, in line protocol timestamp units, Long.MIN_VALUE for server time
+ * C x     column values, N fixed width values or N x (int length, UTF8 bytes) for STRING and SYMBOL,
+ *         fixed width types use QuestDB column encoding, -1 length is null
+ * </pre>
+ */
+class LineTcpColumnBlockParser {
+    static final byte BLOCK_MARKER = 0;
+    static final int MIN_BLOCK_SIZE = Byte.BYTES + Integer.BYTES + Short.BYTES + Integer.BYTES + Short.BYTES;
+    private final DirectByteCharSequence tableName = new DirectByteCharSequence();
+    private final ObjList<DirectByteCharSequence> columnNames = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final LongList columnAddresses = new LongList();
+    private final StringSink utf8Sink = new StringSink();
+    private long blockLo;
+    private long blockHi;
+    private int blockSize;
+    private int rowCount;
+    private int columnCount;
+    private long timestampsLo;
+    private ErrorCode errorCode;
+
+    static boolean isSupportedColumnType(int columnType) {
+        switch (columnType) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.CHAR:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+            case ColumnType.STRING:
+            case ColumnType.SYMBOL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    long getBlockHi() {
+        return blockHi;
+    }
+
+    long getBlockLo() {
+        return blockLo;
+    }
+
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    long getColumnAddress(int columnIndex) {
+        return columnAddresses.getQuick(columnIndex);
+    }
+
+    int getColumnCount() {
+        return columnCount;
+    }
+
+    DirectByteCharSequence getColumnName(int columnIndex) {
+        return columnNames.getQuick(columnIndex);
+    }
+
+    int getColumnType(int columnIndex) {
+        return columnTypes.getQuick(columnIndex);
+    }
+
+    ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    DirectByteCharSequence getTableName() {
+        return tableName;
+    }
+
+    long getTimestampsLo() {
+        return timestampsLo;
+    }
+
+    /**
+     * Parses block header and column layout. Block data is not copied, addresses returned by
+     * this parser point into the supplied buffer.
+     *
+     * @param lo address of the block marker
+     * @param hi end of received data, can be beyond end of the block
+     * @return BUFFER_UNDERFLOW when block is not fully received, ERROR when block is malformed. When block
+     * size is valid and block is fully received {@link #getBlockHi()} points past the block, even on error,
+     * so that the block can be skipped
+     */
+    ParseResult of(long lo, long hi) {
+        blockLo = lo;
+        blockHi = 0;
+        blockSize = 0;
+        errorCode = null;
+        if (hi - lo < Byte.BYTES + Integer.BYTES) {
+            return ParseResult.BUFFER_UNDERFLOW;
+        }
+        assert Unsafe.getUnsafe().getByte(lo) == BLOCK_MARKER;
+        blockSize = Unsafe.getUnsafe().getInt(lo + Byte.BYTES);
+        if (blockSize < MIN_BLOCK_SIZE) {
+            errorCode = ErrorCode.INVALID_BLOCK_SIZE;
+            return ParseResult.ERROR;
+        }
+        if (hi - lo < blockSize) {
+            return ParseResult.BUFFER_UNDERFLOW;
+        }
+        blockHi = lo + blockSize;
+
+        long p = lo + Byte.BYTES + Integer.BYTES;
+        final int tableNameLen = Unsafe.getUnsafe().getShort(p);
+        p += Short.BYTES;
+        if (tableNameLen < 1 || p + tableNameLen > blockHi) {
+            errorCode = ErrorCode.INVALID_TABLE_NAME;
+            return ParseResult.ERROR;
+        }
+        tableName.of(p, p + tableNameLen);
+        p += tableNameLen;
+
+        if (p + Integer.BYTES + Short.BYTES > blockHi) {
+            errorCode = ErrorCode.INVALID_BLOCK_SIZE;
+            return ParseResult.ERROR;
+        }
+        rowCount = Unsafe.getUnsafe().getInt(p);
+        p += Integer.BYTES;
+        columnCount = Unsafe.getUnsafe().getShort(p);
+        p += Short.BYTES;
+        if (rowCount < 0) {
+            errorCode = ErrorCode.INVALID_ROW_COUNT;
+            return ParseResult.ERROR;
+        }
+        if (columnCount < 0) {
+            errorCode = ErrorCode.INVALID_COLUMN_COUNT;
+            return ParseResult.ERROR;
+        }
+
+        columnTypes.clear();
+        columnAddresses.clear();
+        for (int i = 0; i < columnCount; i++) {
+            if (p + Short.BYTES > blockHi) {
+                errorCode = ErrorCode.INVALID_COLUMN_NAME;
+                return ParseResult.ERROR;
+            }
+            final int nameLen = Unsafe.getUnsafe().getShort(p);
+            p += Short.BYTES;
+            if (nameLen < 1 || p + nameLen + Byte.BYTES > blockHi) {
+                errorCode = ErrorCode.INVALID_COLUMN_NAME;
+                return ParseResult.ERROR;
+            }
+            getColumnNameSequence(i).of(p, p + nameLen);
+            p += nameLen;
+            final int columnType = Unsafe.getUnsafe().getByte(p);
+            p += Byte.BYTES;
+            if (!isSupportedColumnType(columnType)) {
+                errorCode = ErrorCode.UNSUPPORTED_COLUMN_TYPE;
+                return ParseResult.ERROR;
+            }
+            columnTypes.add(columnType);
+        }
+
+        timestampsLo = p;
+        p += (long) rowCount * Long.BYTES;
+        for (int i = 0; i < columnCount; i++) {
+            if (p > blockHi) {
+                break;
+            }
+            columnAddresses.add(p);
+            final int columnType = columnTypes.getQuick(i);
+            if (ColumnType.isSymbolOrString(columnType)) {
+                for (int r = 0; r < rowCount && p <= blockHi; r++) {
+                    if (p + Integer.BYTES > blockHi) {
+                        p = Long.MAX_VALUE;
+                        break;
+                    }
+                    final int len = Unsafe.getUnsafe().getInt(p);
+                    if (len < -1) {
+                        p = Long.MAX_VALUE;
+                        break;
+                    }
+                    p += Integer.BYTES + Math.max(len, 0);
+                }
+            } else {
+                p += (long) rowCount * ColumnType.sizeOf(columnType);
+            }
+        }
+
+        if (p != blockHi) {
+            errorCode = ErrorCode.INVALID_COLUMN_DATA;
+            return ParseResult.ERROR;
+        }
+        return ParseResult.MEASUREMENT_COMPLETE;
+    }
+
+    /**
+     * Checks that table name, column names and all STRING and SYMBOL values of the block parsed
+     * by {@link #of(long, long)} are valid UTF8. Block that passes this check can be written
+     * as a whole, writer does not have to stop half way through it.
+     *
+     * @return false and sets error code to INVALID_UTF8 when block has invalid UTF8
+     */
+    boolean validateUtf8() {
+        if (!isValidUtf8(tableName.getLo(), tableName.getHi())) {
+            errorCode = ErrorCode.INVALID_UTF8;
+            return false;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            final DirectByteCharSequence name = columnNames.getQuick(i);
+            if (!isValidUtf8(name.getLo(), name.getHi())) {
+                errorCode = ErrorCode.INVALID_UTF8;
+                return false;
+            }
+            if (ColumnType.isSymbolOrString(columnTypes.getQuick(i))) {
+                long p = columnAddresses.getQuick(i);
+                for (int r = 0; r < rowCount; r++) {
+                    final int len = Unsafe.getUnsafe().getInt(p);
+                    p += Integer.BYTES;
+                    if (len > 0) {
+                        if (!isValidUtf8(p, p + len)) {
+                            errorCode = ErrorCode.INVALID_UTF8;
+                            return false;
+                        }
+                        p += len;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidUtf8(long lo, long hi) {
+        utf8Sink.clear();
+        return Chars.utf8Decode(lo, hi, utf8Sink);
+    }
+
+    private DirectByteCharSequence getColumnNameSequence(int columnIndex) {
+        if (columnIndex < columnNames.size()) {
+            return columnNames.getQuick(columnIndex);
+        }
+        final DirectByteCharSequence name = new DirectByteCharSequence();
+        columnNames.add(name);
+        return name;
+    }
+
+    enum ErrorCode {
+        INVALID_BLOCK_SIZE, INVALID_TABLE_NAME, INVALID_ROW_COUNT, INVALID_COLUMN_COUNT, INVALID_COLUMN_NAME, UNSUPPORTED_COLUMN_TYPE, INVALID_COLUMN_DATA, INVALID_UTF8
+    }
+}
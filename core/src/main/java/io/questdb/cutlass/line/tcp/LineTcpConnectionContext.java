@@ -46,6 +46,7 @@ class LineTcpConnectionContext implements IOContext, Mutable {
     private final MillisecondClock milliClock;
     private final DirectByteCharSequence byteCharSequence = new DirectByteCharSequence();
     private final NewLineProtoParser protoParser = new NewLineProtoParser();
+    private final LineTcpColumnBlockParser blockParser = new LineTcpColumnBlockParser();
     private final FloatingDirectCharSink charSink = new FloatingDirectCharSink();
     protected long fd;
     protected IODispatcher<LineTcpConnectionContext> dispatcher;
@@ -166,6 +167,14 @@ class LineTcpConnectionContext implements IOContext, Mutable {
     protected final IOContextResult parseMeasurements(NetworkIOJob netIoJob) {
         while (true) {
             try {
+                if (isColumnBlockStart()) {
+                    final IOContextResult result = parseColumnBlock(netIoJob);
+                    if (result != null) {
+                        return result;
+                    }
+                    continue;
+                }
+
                 ParseResult rc = goodMeasurement ? protoParser.parseMeasurement(recvBufPos) : protoParser.skipMeasurement(recvBufPos);
                 switch (rc) {
                     case MEASUREMENT_COMPLETE: {
@@ -199,16 +208,9 @@ class LineTcpConnectionContext implements IOContext, Mutable {
                     }
 
                     case BUFFER_UNDERFLOW: {
-                        if (recvBufPos == recvBufEnd && !compactBuffer(recvBufStartOfMeasurement)) {
-                            doHandleDisconnectEvent();
-                            return IOContextResult.NEEDS_DISCONNECT;
-                        }
-
-                        if (!read()) {
-                            if (peerDisconnected) {
-                                return IOContextResult.NEEDS_DISCONNECT;
-                            }
-                            return IOContextResult.NEEDS_READ;
+                        final IOContextResult result = handleBufferUnderflow();
+                        if (result != null) {
+                            return result;
                         }
                         break;
                     }
@@ -220,6 +222,76 @@ class LineTcpConnectionContext implements IOContext, Mutable {
         }
     }
 
+    private IOContextResult handleBufferUnderflow() {
+        if (recvBufPos == recvBufEnd && !compactBuffer(recvBufStartOfMeasurement)) {
+            doHandleDisconnectEvent();
+            return IOContextResult.NEEDS_DISCONNECT;
+        }
+
+        if (!read()) {
+            if (peerDisconnected) {
+                return IOContextResult.NEEDS_DISCONNECT;
+            }
+            return IOContextResult.NEEDS_READ;
+        }
+        return null;
+    }
+
+    private boolean isColumnBlockStart() {
+        return goodMeasurement
+                && recvBufStartOfMeasurement < recvBufPos
+                && protoParser.getBufferAddress() == recvBufStartOfMeasurement
+                && Unsafe.getUnsafe().getByte(recvBufStartOfMeasurement) == LineTcpColumnBlockParser.BLOCK_MARKER;
+    }
+
+    private IOContextResult parseColumnBlock(NetworkIOJob netIoJob) {
+        switch (blockParser.of(recvBufStartOfMeasurement, recvBufPos)) {
+            case MEASUREMENT_COMPLETE:
+                if (!blockParser.validateUtf8()) {
+                    // reject block before it is queued, writer must not stop half way through the block
+                    LOG.error().$('[').$(fd).$("] could not parse column block, code ").$(blockParser.getErrorCode())
+                            .$(" [blockSize=").$(blockParser.getBlockSize()).$(']').$();
+                    startNextMeasurement(blockParser.getBlockHi());
+                    return null;
+                }
+                if (scheduler.tryButCouldNotCommit(netIoJob, blockParser)) {
+                    if (checkQueueFullLogHysteresis()) {
+                        LOG.debug().$('[').$(fd).$("] queue full").$();
+                    }
+                    return IOContextResult.QUEUE_FULL;
+                }
+                startNextMeasurement(blockParser.getBlockHi());
+                return null;
+
+            case ERROR:
+                LOG.error().$('[').$(fd).$("] could not parse column block, code ").$(blockParser.getErrorCode())
+                        .$(" [blockSize=").$(blockParser.getBlockSize()).$(']').$();
+                if (blockParser.getBlockHi() == 0) {
+                    // block boundary is unknown, there is no way to resync with the stream
+                    return IOContextResult.NEEDS_DISCONNECT;
+                }
+                startNextMeasurement(blockParser.getBlockHi());
+                return null;
+
+            default:
+                if (blockParser.getBlockSize() > recvBufEnd - recvBufStart) {
+                    LOG.error().$('[').$(fd).$("] column block is larger than receive buffer [blockSize=").$(blockParser.getBlockSize())
+                            .$(", msgBufferSize=").$(recvBufEnd - recvBufStart).$(']').$();
+                    return IOContextResult.NEEDS_DISCONNECT;
+                }
+                return handleBufferUnderflow();
+        }
+    }
+
+    private void startNextMeasurement(long recvBufStartOfMeasurement) {
+        if (recvBufStartOfMeasurement == recvBufPos) {
+            recvBufPos = recvBufStart;
+            recvBufStartOfMeasurement = recvBufStart;
+        }
+        this.recvBufStartOfMeasurement = recvBufStartOfMeasurement;
+        protoParser.of(recvBufStartOfMeasurement);
+    }
+
     protected boolean read() {
         int bufferRemaining = (int) (recvBufEnd - recvBufPos);
         final int orig = bufferRemaining;
@@ -42,6 +42,7 @@ import io.questdb.network.IORequestProcessor;
 import io.questdb.std.*;
 import io.questdb.std.datetime.microtime.MicrosecondClock;
 import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.std.str.DirectByteCharSequence;
 import io.questdb.std.str.DirectCharSink;
 import io.questdb.std.str.FloatingDirectCharSink;
 import io.questdb.std.str.Path;
@@ -75,6 +76,7 @@ class LineTcpMeasurementScheduler implements Closeable {
     private final double maxLoadRatio;
     private final long maintenanceInterval;
     private final long writerIdleTimeout;
+    private final boolean walEnabled;
     private final int defaultPartitionBy;
     private final int commitMode;
     private final NetworkIOJob[] netIoJobs;
@@ -143,6 +145,7 @@ class LineTcpMeasurementScheduler implements Closeable {
         nUpdatesPerLoadRebalance = lineConfiguration.getNUpdatesPerLoadRebalance();
         maxLoadRatio = lineConfiguration.getMaxLoadRatio();
         maintenanceInterval = lineConfiguration.getMaintenanceInterval();
+        walEnabled = cairoConfiguration.isWalEnabled();
         defaultPartitionBy = lineConfiguration.getDefaultPartitionBy();
         writerIdleTimeout = lineConfiguration.getWriterIdleTimeout();
     }
@@ -212,6 +215,19 @@ class LineTcpMeasurementScheduler implements Closeable {
         }
     }
 
+    private void checkLoadRebalance(TableUpdateDetails tableUpdateDetails, int nUpdates) {
+        tableUpdateDetails.nUpdates += nUpdates;
+        if (tableUpdateDetails.nUpdates > nUpdatesPerLoadRebalance) {
+            if (tableUpdateDetailsLock.writeLock().tryLock()) {
+                try {
+                    loadRebalance();
+                } finally {
+                    tableUpdateDetailsLock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
     protected NetworkIOJob createNetworkIOJob(IODispatcher<LineTcpConnectionContext> dispatcher, int workerId) {
         return new NetworkIOJobImpl(dispatcher, workerId);
     }
@@ -333,27 +349,37 @@ class LineTcpMeasurementScheduler implements Closeable {
         }
     }
 
-    private TableUpdateDetails startNewMeasurementEvent(NetworkIOJob netIoJob, NewLineProtoParser protoParser) {
-        final TableUpdateDetails tableUpdateDetails = netIoJob.getTableUpdateDetails(protoParser.getMeasurementName());
+    private TableUpdateDetails startNewMeasurementEvent(
+            NetworkIOJob netIoJob,
+            CharSequence measurementName,
+            NewLineProtoParser protoParser,
+            LineTcpColumnBlockParser blockParser
+    ) {
+        final TableUpdateDetails tableUpdateDetails = netIoJob.getTableUpdateDetails(measurementName);
         if (null != tableUpdateDetails) {
             return tableUpdateDetails;
         }
-        return startNewMeasurementEvent0(netIoJob, protoParser);
+        return startNewMeasurementEvent0(netIoJob, measurementName, protoParser, blockParser);
     }
 
-    private TableUpdateDetails startNewMeasurementEvent0(NetworkIOJob netIoJob, NewLineProtoParser protoParser) {
+    private TableUpdateDetails startNewMeasurementEvent0(
+            NetworkIOJob netIoJob,
+            CharSequence measurementName,
+            NewLineProtoParser protoParser,
+            LineTcpColumnBlockParser blockParser
+    ) {
         TableUpdateDetails tableUpdateDetails;
         tableUpdateDetailsLock.writeLock().lock();
         try {
-            int keyIndex = tableUpdateDetailsByTableName.keyIndex(protoParser.getMeasurementName());
+            int keyIndex = tableUpdateDetailsByTableName.keyIndex(measurementName);
             if (keyIndex < 0) {
                 tableUpdateDetails = tableUpdateDetailsByTableName.valueAt(keyIndex);
             } else {
-                String tableName = protoParser.getMeasurementName().toString();
+                String tableName = measurementName.toString();
                 int status = engine.getStatus(securityContext, path, tableName, 0, tableName.length());
                 if (status != TableUtils.TABLE_EXISTS) {
                     LOG.info().$("creating table [tableName=").$(tableName).$(']').$();
-                    engine.createTable(securityContext, ddlMem, path, tableStructureAdapter.of(tableName, protoParser));
+                    engine.createTable(securityContext, ddlMem, path, tableStructureAdapter.of(tableName, protoParser, blockParser));
                 }
 
                 keyIndex = idleTableUpdateDetailsByTableName.keyIndex(tableName);
@@ -378,7 +404,7 @@ class LineTcpMeasurementScheduler implements Closeable {
     boolean tryButCouldNotCommit(NetworkIOJob netIoJob, NewLineProtoParser protoParser, FloatingDirectCharSink charSink) {
         TableUpdateDetails tableUpdateDetails;
         try {
-            tableUpdateDetails = startNewMeasurementEvent(netIoJob, protoParser);
+            tableUpdateDetails = startNewMeasurementEvent(netIoJob, protoParser.getMeasurementName(), protoParser, null);
         } catch (EntryUnavailableException ex) {
             // Table writer is locked
             LOG.info().$("could not get table writer [tableName=").$(protoParser.getMeasurementName()).$(", ex=").$(ex.getFlyweightMessage()).$(']').$();
@@ -399,15 +425,38 @@ class LineTcpMeasurementScheduler implements Closeable {
                     return false;
                 } finally {
                     pubSeq.done(seq);
-                    if (++tableUpdateDetails.nUpdates > nUpdatesPerLoadRebalance) {
-                        if (tableUpdateDetailsLock.writeLock().tryLock()) {
-                            try {
-                                loadRebalance();
-                            } finally {
-                                tableUpdateDetailsLock.writeLock().unlock();
-                            }
-                        }
-                    }
+                    checkLoadRebalance(tableUpdateDetails, 1);
+                }
+            }
+        }
+        return true;
+    }
+
+    boolean tryButCouldNotCommit(NetworkIOJob netIoJob, LineTcpColumnBlockParser blockParser) {
+        TableUpdateDetails tableUpdateDetails;
+        try {
+            tableUpdateDetails = startNewMeasurementEvent(netIoJob, blockParser.getTableName(), null, blockParser);
+        } catch (EntryUnavailableException ex) {
+            // Table writer is locked
+            LOG.info().$("could not get table writer [tableName=").$(blockParser.getTableName()).$(", ex=").$(ex.getFlyweightMessage()).$(']').$();
+            return true;
+        } catch (CairoException ex) {
+            // Table could not be created
+            LOG.info().$("could not create table [tableName=").$(blockParser.getTableName()).$(", ex=").$(ex.getFlyweightMessage()).$(']').$();
+            return false;
+        }
+        if (null != tableUpdateDetails) {
+            long seq = getNextPublisherEventSequence();
+            if (seq >= 0) {
+                try {
+                    LineTcpMeasurementEvent event = queue.get(seq);
+                    event.threadId = INCOMPLETE_EVENT_ID;
+                    tableUpdateDetails.startNewMeasurementEvent(netIoJob.getWorkerId());
+                    event.createColumnBlockEvent(tableUpdateDetails, blockParser);
+                    return false;
+                } finally {
+                    pubSeq.done(seq);
+                    checkLoadRebalance(tableUpdateDetails, Math.max(1, blockParser.getRowCount()));
                 }
             }
         }
@@ -437,6 +486,10 @@ class LineTcpMeasurementScheduler implements Closeable {
         private int rebalanceToThreadId;
         private volatile boolean rebalanceReleasedByFromThread;
         private boolean commitOnWriterClose;
+        private boolean columnBlock;
+        private long blockBufLo;
+        private long blockBufSize;
+        private long blockSize;
 
         private LineTcpMeasurementEvent(int maxMeasurementSize, MicrosecondClock clock, LineProtoTimestampAdapter timestampAdapter) {
             bufSize = (long) (maxMeasurementSize / 4) * (Integer.BYTES + Double.BYTES + 1);
@@ -450,6 +503,29 @@ class LineTcpMeasurementScheduler implements Closeable {
             Unsafe.free(bufLo, bufSize);
             tableUpdateDetails = Misc.free(tableUpdateDetails);
             bufLo = 0;
+            if (blockBufLo != 0) {
+                Unsafe.free(blockBufLo, blockBufSize);
+                blockBufLo = 0;
+                blockBufSize = 0;
+            }
+        }
+
+        void createColumnBlockEvent(TableUpdateDetails tableUpdateDetails, LineTcpColumnBlockParser blockParser) {
+            threadId = INCOMPLETE_EVENT_ID;
+            this.tableUpdateDetails = tableUpdateDetails;
+            // Block is copied as received, it is decoded on the writer thread
+            blockSize = blockParser.getBlockSize();
+            if (blockSize > blockBufSize) {
+                if (blockBufLo == 0) {
+                    blockBufLo = Unsafe.malloc(blockSize);
+                } else {
+                    blockBufLo = Unsafe.realloc(blockBufLo, blockBufSize, blockSize);
+                }
+                blockBufSize = blockSize;
+            }
+            Vect.memcpy(blockParser.getBlockLo(), blockBufLo, blockSize);
+            columnBlock = true;
+            threadId = tableUpdateDetails.writerThreadId;
         }
 
         void createMeasurementEvent(
@@ -460,6 +536,7 @@ class LineTcpMeasurementScheduler implements Closeable {
         ) {
             threadId = INCOMPLETE_EVENT_ID;
             this.tableUpdateDetails = tableUpdateDetails;
+            columnBlock = false;
             long timestamp = protoParser.getTimestamp();
             if (timestamp != NewLineProtoParser.NULL_TIMESTAMP) {
                 timestamp = timestampAdapter.getMicros(timestamp);
@@ -566,6 +643,166 @@ class LineTcpMeasurementScheduler implements Closeable {
             this.commitOnWriterClose = commitOnWriterClose;
         }
 
+        /**
+         * Appends rows of a column block. Values are validated by IO thread and columns are checked
+         * before any of them is added, so a block that cannot be written leaves neither rows nor
+         * columns behind. Rows of a block are not split by commit either, commit lag is checked
+         * once the whole block is appended. Only when writer itself fails, rows of the block appended
+         * so far stay uncommitted, as they would for text lines.
+         */
+        void processColumnBlockEvent(WriterJob job) {
+            Row row = null;
+            try {
+                final TableWriter writer = tableUpdateDetails.getWriter();
+                final LineTcpColumnBlockParser blockParser = job.blockParser;
+                if (blockParser.of(blockBufLo, blockBufLo + blockSize) != NewLineProtoParser.ParseResult.MEASUREMENT_COMPLETE) {
+                    throw CairoException.instance(0).put("invalid column block [errorCode=").put(String.valueOf(blockParser.getErrorCode())).put(']');
+                }
+
+                // Resolve block columns once, rows below only copy values
+                final int columnCount = blockParser.getColumnCount();
+                final IntList columnIndexes = job.blockColumnIndexes;
+                final LongList valueAddresses = job.blockValueAddresses;
+                columnIndexes.clear();
+                valueAddresses.clear();
+                for (int i = 0; i < columnCount; i++) {
+                    final DirectByteCharSequence name = blockParser.getColumnName(i);
+                    job.charSink.clear();
+                    if (!Chars.utf8Decode(name.getLo(), name.getHi(), job.charSink)) {
+                        throw CairoException.instance(0)
+                                .put("invalid UTF8 in column name ")
+                                .put(job.floatingCharSink.asCharSequence(name.getLo(), name.getHi()));
+                    }
+                    final int columnType = blockParser.getColumnType(i);
+                    final int colIndex = writer.getMetadata().getColumnIndexQuiet(job.charSink);
+                    if (colIndex < 0) {
+                        if (!TableUtils.isValidInfluxColumnName(job.charSink)) {
+                            throw CairoException.instance(0)
+                                    .put("invalid column name [table=").put(writer.getTableName())
+                                    .put(", columnName=").put(job.charSink)
+                                    .put(']');
+                        }
+                        for (int j = 0; j < i; j++) {
+                            if (columnIndexes.getQuick(j) < 0 && Chars.equalsIgnoreCase(name, blockParser.getColumnName(j))) {
+                                throw CairoException.instance(0)
+                                        .put("duplicate column in block [table=").put(writer.getTableName())
+                                        .put(", columnName=").put(job.charSink)
+                                        .put(']');
+                            }
+                        }
+                    } else if (ColumnType.tagOf(writer.getMetadata().getColumnType(colIndex)) != columnType) {
+                        throw CairoException.instance(0)
+                                .put("cast error for line protocol column block [columnIndex=").put(colIndex)
+                                .put(", columnType=").put(ColumnType.nameOf(writer.getMetadata().getColumnType(colIndex)))
+                                .put(", blockColumnType=").put(ColumnType.nameOf(columnType))
+                                .put(']');
+                    }
+                    columnIndexes.add(colIndex);
+                    valueAddresses.add(blockParser.getColumnAddress(i));
+                }
+
+                // all columns are good, missing ones can be added now
+                for (int i = 0; i < columnCount; i++) {
+                    if (columnIndexes.getQuick(i) < 0) {
+                        final DirectByteCharSequence name = blockParser.getColumnName(i);
+                        job.charSink.clear();
+                        Chars.utf8Decode(name.getLo(), name.getHi(), job.charSink);
+                        writer.addColumn(job.charSink, blockParser.getColumnType(i));
+                        columnIndexes.setQuick(i, writer.getMetadata().getColumnIndexQuiet(job.charSink));
+                    }
+                }
+
+                long timestampAddress = blockParser.getTimestampsLo();
+                for (int r = 0, n = blockParser.getRowCount(); r < n; r++) {
+                    long timestamp = Unsafe.getUnsafe().getLong(timestampAddress);
+                    timestampAddress += Long.BYTES;
+                    if (timestamp == NewLineProtoParser.NULL_TIMESTAMP) {
+                        timestamp = clock.getTicks();
+                    } else {
+                        timestamp = timestampAdapter.getMicros(timestamp);
+                    }
+                    row = writer.newRow(timestamp);
+                    for (int i = 0; i < columnCount; i++) {
+                        final int colIndex = columnIndexes.getQuick(i);
+                        long p = valueAddresses.getQuick(i);
+                        switch (blockParser.getColumnType(i)) {
+                            case ColumnType.BOOLEAN:
+                                row.putBool(colIndex, Unsafe.getUnsafe().getByte(p) == 1);
+                                p += Byte.BYTES;
+                                break;
+                            case ColumnType.BYTE:
+                                row.putByte(colIndex, Unsafe.getUnsafe().getByte(p));
+                                p += Byte.BYTES;
+                                break;
+                            case ColumnType.SHORT:
+                                row.putShort(colIndex, Unsafe.getUnsafe().getShort(p));
+                                p += Short.BYTES;
+                                break;
+                            case ColumnType.CHAR:
+                                row.putChar(colIndex, Unsafe.getUnsafe().getChar(p));
+                                p += Character.BYTES;
+                                break;
+                            case ColumnType.INT:
+                                row.putInt(colIndex, Unsafe.getUnsafe().getInt(p));
+                                p += Integer.BYTES;
+                                break;
+                            case ColumnType.LONG:
+                                row.putLong(colIndex, Unsafe.getUnsafe().getLong(p));
+                                p += Long.BYTES;
+                                break;
+                            case ColumnType.DATE:
+                                row.putDate(colIndex, Unsafe.getUnsafe().getLong(p));
+                                p += Long.BYTES;
+                                break;
+                            case ColumnType.TIMESTAMP:
+                                row.putTimestamp(colIndex, Unsafe.getUnsafe().getLong(p));
+                                p += Long.BYTES;
+                                break;
+                            case ColumnType.FLOAT:
+                                row.putFloat(colIndex, Unsafe.getUnsafe().getFloat(p));
+                                p += Float.BYTES;
+                                break;
+                            case ColumnType.DOUBLE:
+                                row.putDouble(colIndex, Unsafe.getUnsafe().getDouble(p));
+                                p += Double.BYTES;
+                                break;
+                            default: {
+                                // STRING and SYMBOL, -1 length is null
+                                final int len = Unsafe.getUnsafe().getInt(p);
+                                p += Integer.BYTES;
+                                if (len > -1) {
+                                    job.charSink.clear();
+                                    if (!Chars.utf8Decode(p, p + len, job.charSink)) {
+                                        throw CairoException.instance(0).put("invalid UTF8 in value for ").put(writer.getMetadata().getColumnName(colIndex));
+                                    }
+                                    if (blockParser.getColumnType(i) == ColumnType.SYMBOL) {
+                                        row.putSym(colIndex, job.charSink);
+                                    } else {
+                                        row.putStr(colIndex, job.charSink);
+                                    }
+                                    p += len;
+                                }
+                                break;
+                            }
+                        }
+                        valueAddresses.setQuick(i, p);
+                    }
+                    row.append();
+                    row = null;
+                }
+                tableUpdateDetails.handleRowAppended();
+            } catch (CairoException ex) {
+                LOG.error()
+                        .$("could not write line protocol column block [tableName=").$(tableUpdateDetails.tableName)
+                        .$(", ex=").$(ex.getFlyweightMessage())
+                        .$(", errno=").$(ex.getErrno())
+                        .I$();
+                if (row != null) {
+                    row.cancel();
+                }
+            }
+        }
+
         void processMeasurementEvent(WriterJob job) {
             Row row = null;
             try {
@@ -877,6 +1114,12 @@ class LineTcpMeasurementScheduler implements Closeable {
                 return;
             }
             if (null != writer) {
+                if (walEnabled) {
+                    // line protocol writes through table writer, it has to be released now and then
+                    // for WAL apply job to get hold of it
+                    handleWriterRelease(true);
+                    return;
+                }
                 LOG.debug().$("maintenance commit [table=").$(writer.getTableName()).I$();
                 writer.commit();
                 lastCommitMillis = milliClock.getTicks();
@@ -990,6 +1233,9 @@ class LineTcpMeasurementScheduler implements Closeable {
         private final Path path = new Path();
         private final DirectCharSink charSink = new DirectCharSink(64);
         private final FloatingDirectCharSink floatingCharSink = new FloatingDirectCharSink();
+        private final LineTcpColumnBlockParser blockParser = new LineTcpColumnBlockParser();
+        private final IntList blockColumnIndexes = new IntList();
+        private final LongList blockValueAddresses = new LongList();
         private final ObjList<TableUpdateDetails> assignedTables = new ObjList<>();
         private long lastMaintenanceMillis = 0;
 
@@ -1056,7 +1302,11 @@ class LineTcpMeasurementScheduler implements Closeable {
                                 event.tableUpdateDetails.assignedToJob = true;
                                 LOG.info().$("assigned table to writer thread [tableName=").$(event.tableUpdateDetails.tableName).$(", threadId=").$(workerId).I$();
                             }
-                            event.processMeasurementEvent(this);
+                            if (event.columnBlock) {
+                                event.processColumnBlockEvent(this);
+                            } else {
+                                event.processMeasurementEvent(this);
+                            }
                             eventProcessed = true;
                         } catch (Throwable ex) {
                             LOG.error().$("closing writer for because of error [table=").$(event.tableUpdateDetails.tableName).$(",ex=").$(ex).I$();
@@ -1297,10 +1547,11 @@ class LineTcpMeasurementScheduler implements Closeable {
     private class TableStructureAdapter implements TableStructure {
         private CharSequence tableName;
         private NewLineProtoParser protoParser;
+        private LineTcpColumnBlockParser blockParser;
 
         @Override
         public int getColumnCount() {
-            return protoParser.getnEntities() + 1;
+            return getTimestampIndex() + 1;
         }
 
         @Override
@@ -1309,7 +1560,9 @@ class LineTcpMeasurementScheduler implements Closeable {
             if (columnIndex == getTimestampIndex()) {
                 return "timestamp";
             }
-            CharSequence colName = protoParser.getEntity(columnIndex).getName().toString();
+            CharSequence colName = protoParser != null
+                    ? protoParser.getEntity(columnIndex).getName().toString()
+                    : blockParser.getColumnName(columnIndex).toString();
             if (TableUtils.isValidColumnName(colName)) {
                 return colName;
             }
@@ -1321,7 +1574,10 @@ class LineTcpMeasurementScheduler implements Closeable {
             if (columnIndex == getTimestampIndex()) {
                 return ColumnType.TIMESTAMP;
             }
-            return DEFAULT_COLUMN_TYPES[protoParser.getEntity(columnIndex).getType()];
+            if (protoParser != null) {
+                return DEFAULT_COLUMN_TYPES[protoParser.getEntity(columnIndex).getType()];
+            }
+            return blockParser.getColumnType(columnIndex);
         }
 
         @Override
@@ -1361,7 +1617,7 @@ class LineTcpMeasurementScheduler implements Closeable {
 
         @Override
         public int getTimestampIndex() {
-            return protoParser.getnEntities();
+            return protoParser != null ? protoParser.getnEntities() : blockParser.getColumnCount();
         }
 
         @Override
@@ -1374,9 +1630,10 @@ class LineTcpMeasurementScheduler implements Closeable {
             return cairoConfiguration.getCommitLag();
         }
 
-        TableStructureAdapter of(CharSequence tableName, NewLineProtoParser protoParser) {
+        TableStructureAdapter of(CharSequence tableName, NewLineProtoParser protoParser, LineTcpColumnBlockParser blockParser) {
             this.tableName = tableName;
             this.protoParser = protoParser;
+            this.blockParser = blockParser;
             return this;
         }
     }
@@ -62,6 +62,16 @@ public class DefaultPGWireConfiguration implements PGWireConfiguration {
         return 64;
     }
 
+    @Override
+    public int getCopyBufferSize() {
+        return 1024 * 1024;
+    }
+
+    @Override
+    public int getCopyCommitBatchSize() {
+        return 1_000_000;
+    }
+
     @Override
     public IODispatcherConfiguration getDispatcherConfiguration() {
         return ioDispatcherConfiguration;
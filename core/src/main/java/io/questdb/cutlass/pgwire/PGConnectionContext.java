@@ -30,6 +30,7 @@ import io.questdb.cairo.*;
 import io.questdb.cairo.pool.WriterSource;
 import io.questdb.cairo.security.AllowAllCairoSecurityContext;
 import io.questdb.cairo.sql.*;
+import io.questdb.cutlass.text.TextException;
 import io.questdb.cutlass.text.TextLoader;
 import io.questdb.cutlass.text.types.TypeManager;
 import io.questdb.griffin.*;
@@ -92,11 +93,14 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private static final int ROLLING_BACK_TRANSACTION = 4;
     private static final String WRITER_LOCK_REASON = "pgConnection";
     private static final int PROTOCOL_TAIL_COMMAND_LENGTH = 64;
+    private static final int LONG256_WORD_COUNT = 8;
+    private static final int NUMERIC_BASE = 10000;
+    // 2^256 has 78 decimal digits
+    private static final int LONG256_MAX_NUMERIC_DIGITS = 20;
     private final long recvBuffer;
     private final long sendBuffer;
     private final int recvBufferSize;
     private final CharacterStore characterStore;
-    private final BindVariableService bindVariableService;
     private final long sendBufferLimit;
     private final int sendBufferSize;
     private final ResponseAsciiSink responseAsciiSink = new ResponseAsciiSink();
@@ -116,7 +120,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private final WeakObjectPool<Portal> namedPortalPool;
     private final WeakAutoClosableObjectPool<TypesAndInsert> typesAndInsertPool;
     private final DateLocale locale;
-    private final CharSequenceObjHashMap<TableWriter> pendingWriters;
+    private final CharSequenceObjHashMap<TableWriterAPI> pendingWriters;
     private final DirectCharSink utf8Sink;
     private final TypeManager typeManager;
     private final AssociativeCache<TypesAndInsert> typesAndInsertCache;
@@ -124,6 +128,10 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private final CharSequenceObjHashMap<Portal> namedPortalMap;
     private final IntList syncActions = new IntList(4);
     private final CairoEngine engine;
+    private final PGCopyLoader copyLoader;
+    private final WeakObjectPool<BindVariableService> bindVariableServicePool;
+    private final long[] long256Words = new long[LONG256_WORD_COUNT];
+    private final short[] numericDigits = new short[LONG256_MAX_NUMERIC_DIGITS];
     private IntList activeSelectColumnTypes;
     private int parsePhaseBindVariableCount;
     private long sendBufferPtr;
@@ -159,6 +167,10 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private WeakAutoClosableObjectPool<TypesAndSelect> typesAndSelectPool;
     // this is a reference to types either from the context or named statement, where it is provided
     private IntList activeBindVariableTypes;
+    // replaced when suspended portal takes ownership of bind variables its cursor reads
+    private BindVariableService bindVariableService;
+    // named portal of the current Execute, suspended cursor is moved to it
+    private Portal executePortal;
     private boolean sendParameterDescription;
     private PGResumeProcessor resumeProcessor;
     private long maxRows;
@@ -176,6 +188,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         this.typeManager = new TypeManager(engine.getConfiguration().getTextConfiguration(), utf8Sink);
         this.nf = configuration.getNetworkFacade();
         this.bindVariableService = new BindVariableServiceImpl(engine.getConfiguration());
+        this.bindVariableServicePool = new WeakObjectPool<>(() -> new BindVariableServiceImpl(engine.getConfiguration()), 0);
         this.recvBufferSize = Numbers.ceilPow2(configuration.getRecvBufferSize());
         this.recvBuffer = Unsafe.malloc(this.recvBufferSize);
         this.sendBufferSize = Numbers.ceilPow2(configuration.getSendBufferSize());
@@ -205,6 +218,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         this.namedStatementMap = new CharSequenceObjHashMap<>(configuration.getNamedStatementCacheCapacity());
         this.pendingWriters = new CharSequenceObjHashMap<>(configuration.getPendingWritersCacheSize());
         this.namedPortalMap = new CharSequenceObjHashMap<>(configuration.getNamedStatementCacheCapacity());
+        this.copyLoader = new PGCopyLoader(engine, configuration);
     }
 
     public static int getInt(long address, long msgLimit, CharSequence errorMessage) throws BadProtocolException {
@@ -278,12 +292,17 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         clearRecvBuffer();
         typesAndInsertCache.clear();
         namedStatementMap.clear();
+        for (int i = 0, n = namedPortalMap.size(); i < n; i++) {
+            closePortal(namedPortalMap.valueQuick(i));
+        }
         namedPortalMap.clear();
+        executePortal = null;
         bindVariableService.clear();
         bindVariableTypes.clear();
         resumeProcessor = null;
         completed = true;
         clearCursorAndFactory();
+        copyLoader.clear();
     }
 
     public void clearWriters() {
@@ -303,6 +322,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         Misc.free(typesAndSelectCache);
         Misc.free(path);
         Misc.free(utf8Sink);
+        Misc.free(copyLoader);
     }
 
     @Override
@@ -321,12 +341,12 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     }
 
     @Override
-    public TableWriter getWriter(CairoSecurityContext context, CharSequence name, CharSequence lockReason) {
+    public TableWriterAPI getTableWriterAPI(CairoSecurityContext context, CharSequence name, CharSequence lockReason) {
         final int index = pendingWriters.keyIndex(name);
         if (index < 0) {
             return pendingWriters.valueAt(index);
         }
-        return engine.getWriter(context, name, lockReason);
+        return engine.getTableWriterAPI(context, name, lockReason);
     }
 
     public void handleClientOperation(
@@ -548,6 +568,11 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         responseAsciiSink.put(record.getBool(columnIndex) ? 't' : 'f');
     }
 
+    private void appendBooleanColumnBin(Record record, int columnIndex) {
+        responseAsciiSink.putNetworkInt(Byte.BYTES);
+        responseAsciiSink.put(record.getBool(columnIndex) ? (byte) 1 : (byte) 0);
+    }
+
     private void appendByteColumn(Record record, int columnIndex) {
         long a = responseAsciiSink.skip();
         responseAsciiSink.put((int) record.getByte(columnIndex));
@@ -635,6 +660,37 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void appendGeoHashColumn(Record record, int columnIndex, int columnType) {
+        final long value;
+        switch (ColumnType.storageTag(columnType)) {
+            case ColumnType.GEOBYTE:
+                value = record.getGeoHashByte(columnIndex);
+                break;
+            case ColumnType.GEOSHORT:
+                value = record.getGeoHashShort(columnIndex);
+                break;
+            case ColumnType.GEOINT:
+                value = record.getGeoHashInt(columnIndex);
+                break;
+            default:
+                value = record.getGeoHashLong(columnIndex);
+                break;
+        }
+        if (value == GeoHashes.NULL) {
+            responseAsciiSink.setNullValue();
+        } else {
+            // geohash is sent as varchar in both formats, binary representation of varchar is its text
+            final long a = responseAsciiSink.skip();
+            final int bits = GeoHashes.getBitsPrecision(columnType);
+            if (bits % 5 == 0) {
+                GeoHashes.toString(value, bits / 5, responseAsciiSink);
+            } else {
+                GeoHashes.toBitString(value, bits, responseAsciiSink);
+            }
+            responseAsciiSink.putLenEx(a);
+        }
+    }
+
     private void appendIntCol(Record record, int i) {
         final int intValue = record.getInt(i);
         if (intValue != Numbers.INT_NaN) {
@@ -672,6 +728,67 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void appendLong256ColumnBin(Record record, int columnIndex) {
+        final Long256 long256Value = record.getLong256A(columnIndex);
+        final long l0 = long256Value.getLong0();
+        final long l1 = long256Value.getLong1();
+        final long l2 = long256Value.getLong2();
+        final long l3 = long256Value.getLong3();
+        if (l0 == Numbers.LONG_NaN && l1 == Numbers.LONG_NaN && l2 == Numbers.LONG_NaN && l3 == Numbers.LONG_NaN) {
+            responseAsciiSink.setNullValue();
+            return;
+        }
+
+        // binary numeric is a list of base 10000 digits, we get them by dividing
+        // unsigned 256-bit value, split into 32-bit words, until nothing is left
+        final long[] words = long256Words;
+        words[0] = l3 >>> 32;
+        words[1] = l3 & 0xffffffffL;
+        words[2] = l2 >>> 32;
+        words[3] = l2 & 0xffffffffL;
+        words[4] = l1 >>> 32;
+        words[5] = l1 & 0xffffffffL;
+        words[6] = l0 >>> 32;
+        words[7] = l0 & 0xffffffffL;
+
+        int top = 0;
+        while (top < LONG256_WORD_COUNT && words[top] == 0) {
+            top++;
+        }
+
+        // digits are collected least significant first
+        final short[] digits = numericDigits;
+        int digitCount = 0;
+        while (top < LONG256_WORD_COUNT) {
+            long remainder = 0;
+            for (int i = top; i < LONG256_WORD_COUNT; i++) {
+                final long dividend = (remainder << 32) | words[i];
+                words[i] = dividend / NUMERIC_BASE;
+                remainder = dividend % NUMERIC_BASE;
+            }
+            digits[digitCount++] = (short) remainder;
+            while (top < LONG256_WORD_COUNT && words[top] == 0) {
+                top++;
+            }
+        }
+
+        // weight is the power of base of the first digit, trailing zero digits are implied
+        final int weight = digitCount - 1;
+        int lo = 0;
+        while (lo < digitCount && digits[lo] == 0) {
+            lo++;
+        }
+        final int n = digitCount - lo;
+        responseAsciiSink.putNetworkInt(4 * Short.BYTES + n * Short.BYTES);
+        responseAsciiSink.putNetworkShort((short) n);
+        responseAsciiSink.putNetworkShort((short) Math.max(weight, 0));
+        responseAsciiSink.putNetworkShort((short) 0); // sign, positive
+        responseAsciiSink.putNetworkShort((short) 0); // display scale
+        for (int i = digitCount - 1; i >= lo; i--) {
+            responseAsciiSink.putNetworkShort(digits[i]);
+        }
+    }
+
     private void appendLongColumn(Record record, int columnIndex) {
         final long longValue = record.getLong(columnIndex);
         if (longValue != Numbers.LONG_NaN) {
@@ -758,9 +875,11 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     appendDateColumn(record, i);
                     break;
                 case ColumnType.BOOLEAN:
-                case BINARY_TYPE_BOOLEAN:
                     appendBooleanColumn(record, i);
                     break;
+                case BINARY_TYPE_BOOLEAN:
+                    appendBooleanColumnBin(record, i);
+                    break;
                 case ColumnType.BYTE:
                     appendByteColumn(record, i);
                     break;
@@ -773,9 +892,15 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     appendCharColumn(record, i);
                     break;
                 case ColumnType.LONG256:
-                case BINARY_TYPE_LONG256:
                     appendLong256Column(record, i);
                     break;
+                case BINARY_TYPE_LONG256:
+                    appendLong256ColumnBin(record, i);
+                    break;
+                case ColumnType.GEOHASH:
+                case BINARY_TYPE_GEOHASH:
+                    appendGeoHashColumn(record, i, type);
+                    break;
                 default:
                     assert false;
             }
@@ -954,6 +1079,29 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         recvBufferReadOffset = 0;
     }
 
+    private void closePortal(Portal portal) {
+        if (portal.bindVariableService != null) {
+            bindVariableServicePool.push(portal.bindVariableService);
+            portal.bindVariableService = null;
+        }
+        // frees suspended cursor, if any
+        namedPortalPool.push(portal);
+    }
+
+    private void closeUnnamedPortal(boolean keepStatement) {
+        // unnamed portal lives until the next statement is parsed or bound, rows it did not send are discarded
+        if (!completed) {
+            if (keepStatement) {
+                resumeProcessor = null;
+                currentCursor = Misc.free(currentCursor);
+                currentFactory = null;
+            } else {
+                clearCursorAndFactory();
+            }
+            completed = true;
+        }
+    }
+
     private boolean compileQuery(@Transient SqlCompiler compiler)
             throws SqlException, PeerDisconnectedException, PeerIsSlowToReadException {
         if (queryText != null && queryText.length() > 0) {
@@ -981,6 +1129,9 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 return false;
             }
 
+            // statement may need writers held by pipelined inserts
+            commitPipelinedInserts();
+
             // not cached - compile to see what it is
             final CompiledQuery cc = compiler.compile(queryText, sqlExecutionContext);
             sqlExecutionContext.storeTelemetry(cc.getType(), Telemetry.ORIGIN_POSTGRES);
@@ -1003,9 +1154,13 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     }
                     break;
                 case CompiledQuery.COPY_LOCAL:
+                    // file has been loaded by compiler
+                    queryTag = TAG_COPY;
+                    break;
+                case CompiledQuery.COPY_REMOTE:
                     // uncached
                     queryTag = TAG_COPY;
-                    sendCopyInResponse(compiler.getEngine(), cc.getTextLoader());
+                    setupCopyIn(cc);
                     break;
                 case CompiledQuery.SET:
                     configureContextForSet();
@@ -1022,6 +1177,24 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         return true;
     }
 
+    private void commitPipelinedInserts() {
+        // outside of transaction pending writers hold rows of inserts executed since the last Sync
+        if (transactionState == NO_TRANSACTION && pendingWriters.size() > 0) {
+            try {
+                for (int i = 0, n = pendingWriters.size(); i < n; i++) {
+                    final TableWriterAPI m = pendingWriters.valueQuick(i);
+                    try {
+                        m.commit();
+                    } finally {
+                        Misc.free(m);
+                    }
+                }
+            } finally {
+                pendingWriters.clear();
+            }
+        }
+    }
+
     private void configureContextForSet() {
         if (SqlKeywords.isBegin(queryText)) {
             queryTag = TAG_BEGIN;
@@ -1165,8 +1338,16 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
-    private void executeInsert() throws SqlException {
-        final TableWriter w;
+    /**
+     * Appends row of current insert statement to table.
+     *
+     * @param commitAtSync true when insert is executed by extended protocol. Outside of transaction
+     *                     rows of consecutive executes are then appended by the same writer and
+     *                     committed once, when client sends Sync.
+     * @throws SqlException when insert cannot be executed
+     */
+    private void executeInsert(boolean commitAtSync) throws SqlException {
+        final TableWriterAPI w;
         try {
             switch (transactionState) {
                 case IN_TRANSACTION:
@@ -1184,6 +1365,17 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                     // when transaction is in error state, skip execution
                     break;
                 default:
+                    if (commitAtSync) {
+                        final InsertMethod m1 = typesAndInsert.getInsert().createMethod(sqlExecutionContext, this);
+                        try {
+                            rowCount = m1.execute();
+                        } finally {
+                            // writer keeps rows of preceding executes, unfinished row is discarded on commit
+                            w = m1.popWriter();
+                            pendingWriters.put(w.getTableName(), w);
+                        }
+                        break;
+                    }
                     // in any other case we will commit in place
                     try (final InsertMethod m2 = typesAndInsert.getInsert().createMethod(sqlExecutionContext, this)) {
                         rowCount = m2.execute();
@@ -1212,7 +1404,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             case COMMIT_TRANSACTION:
                 try {
                     for (int i = 0, n = pendingWriters.size(); i < n; i++) {
-                        final TableWriter m = pendingWriters.valueQuick(i);
+                        final TableWriterAPI m = pendingWriters.valueQuick(i);
                         m.commit();
                         Misc.free(m);
                     }
@@ -1224,7 +1416,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             case ROLLING_BACK_TRANSACTION:
                 try {
                     for (int i = 0, n = pendingWriters.size(); i < n; i++) {
-                        final TableWriter m = pendingWriters.valueQuick(i);
+                        final TableWriterAPI m = pendingWriters.valueQuick(i);
                         m.rollback();
                         Misc.free(m);
                     }
@@ -1238,6 +1430,12 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void failCopy(CharSequence message) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        copyLoader.fail();
+        prepareError(-1, message);
+        sendReadyForNewQuery();
+    }
+
     @Nullable
     private CharSequence getPortalName(long lo, long hi) throws BadProtocolException {
         if (hi - lo > 0) {
@@ -1341,6 +1539,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 processExec(msgLo, msgLimit, compiler);
                 break;
             case 'S': // sync
+                commitPipelinedInserts();
                 processSyncActions();
                 prepareReadyForQuery();
                 prepareForNewQuery();
@@ -1354,9 +1553,14 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             case 'Q':
                 processQuery(msgLo, msgLimit, compiler);
                 break;
-            case 'd':
-                System.out.println("data " + msgLen);
-                // msgLen includes 4 bytes of self
+            case 'd': // copy data
+                processCopyData(msgLo, msgLimit);
+                break;
+            case 'c': // copy done
+                processCopyDone();
+                break;
+            case 'f': // copy fail
+                processCopyFail(msgLo, msgLimit);
                 break;
             default:
                 LOG.error().$("unknown message [type=").$(type).$(']').$();
@@ -1412,6 +1616,20 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void prepareCopyInResponse() {
+        // all columns use the same format
+        final short columnFormat = (short) (copyLoader.isBinary() ? 1 : 0);
+        responseAsciiSink.put(MESSAGE_TYPE_COPY_IN_RESPONSE);
+        long addr = responseAsciiSink.skip();
+        responseAsciiSink.put((byte) columnFormat);
+        final int columnCount = copyLoader.getColumnCount();
+        responseAsciiSink.putNetworkShort((short) columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            responseAsciiSink.putNetworkShort(columnFormat);
+        }
+        responseAsciiSink.putLen(addr);
+    }
+
     private void prepareDescribePortalResponse() {
         if (typesAndSelect != null) {
             try {
@@ -1583,6 +1801,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         hi = getStringLength(lo, msgLimit, "bad prepared statement name length [msgType='B']");
         final CharSequence statementName = getStatementName(lo, hi);
 
+        closeUnnamedPortal(statementName == null);
         configureContextFromNamedStatement(statementName, compiler);
         if (portalName != null) {
             configurePortal(portalName, statementName);
@@ -1657,6 +1876,12 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                             .$(']').$();
                     throw BadProtocolException.INSTANCE;
                 }
+            } else {
+                // no codes means text for all columns, format of the previous bind must not stick
+                final RecordMetadata m = typesAndSelect.getFactory().getMetadata();
+                for (int i = 0, n = m.getColumnCount(); i < n; i++) {
+                    activeSelectColumnTypes.setQuick(i, m.getColumnType(i));
+                }
             }
         }
 
@@ -1688,7 +1913,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
                 if (portalName != null) {
                     final int index = namedPortalMap.keyIndex(portalName);
                     if (index < 0) {
-                        namedPortalPool.push(namedPortalMap.valueAt(index));
+                        closePortal(namedPortalMap.valueAt(index));
                         namedPortalMap.removeAt(index);
                     } else {
                         LOG.error().$("invalid portal name [value=").$(portalName).$(']').$();
@@ -1738,6 +1963,38 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         }
     }
 
+    private void processCopyData(long lo, long msgLimit) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        // data that arrives after copy failed is discarded
+        if (copyLoader.isActive()) {
+            try {
+                copyLoader.onData(lo, msgLimit);
+            } catch (TextException | CairoException e) {
+                failCopy(e.getFlyweightMessage());
+            }
+        }
+    }
+
+    private void processCopyDone() throws PeerDisconnectedException, PeerIsSlowToReadException {
+        if (copyLoader.isActive()) {
+            try {
+                rowCount = copyLoader.done();
+                queryTag = TAG_COPY;
+                prepareCommandComplete(true);
+                sendReadyForNewQuery();
+            } catch (TextException | CairoException e) {
+                failCopy(e.getFlyweightMessage());
+            }
+        }
+    }
+
+    private void processCopyFail(long lo, long msgLimit) throws PeerDisconnectedException, PeerIsSlowToReadException, BadProtocolException {
+        if (copyLoader.isActive()) {
+            final long hi = getStringLength(lo, msgLimit, "bad copy fail message");
+            final CharSequence reason = getString(lo, hi, "invalid UTF8 bytes in copy fail message");
+            failCopy(reason);
+        }
+    }
+
     private void processExec(long lo, long msgLimit, SqlCompiler compiler)
             throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException, BadProtocolException {
         final long hi = getStringLength(lo, msgLimit, "bad portal name length");
@@ -1750,6 +2007,11 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         final int maxRows = getInt(lo, msgLimit, "could not read max rows value");
 
         processSyncActions();
+        executePortal = portalName != null ? namedPortalMap.get(portalName) : null;
+        if (executePortal != null && executePortal.cursor != null) {
+            // continue sending rows of the suspended cursor rather than re-running the query
+            resumePortal(executePortal);
+        }
         processExecute(maxRows, compiler);
         wrapper = null;
     }
@@ -1761,7 +2023,10 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             sendCursor(maxRows, resumeCursorExecuteRef, resumeCommandCompleteRef);
         } else if (typesAndInsert != null) {
             LOG.debug().$("executing insert").$();
-            executeInsert();
+            executeInsert(true);
+        } else if (copyLoader.isActive()) {
+            copyLoader.clear();
+            throw SqlException.$(0, "COPY FROM STDIN is supported by simple query protocol only");
         } else { //this must be a OK/SET/COMMIT/ROLLBACK or empty query
             executeTag();
             prepareCommandComplete(false);
@@ -1864,6 +2129,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         lo = hi + 1;
         hi = getStringLength(lo, msgLimit, "bad query text length");
 
+        closeUnnamedPortal(false);
         parseQueryText(lo, hi, compiler);
 
         //parameter type count
@@ -1909,9 +2175,17 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     private void processQuery(long lo, long limit, @Transient SqlCompiler compiler)
             throws BadProtocolException, SqlException, PeerDisconnectedException, PeerIsSlowToReadException {
         // simple query, typically a script, which we don't yet support
+        closeUnnamedPortal(false);
         prepareForNewQuery();
         parseQueryText(lo, limit - 1, compiler);
 
+        if (copyLoader.isActive()) {
+            // client streams data next, query completes on CopyDone
+            prepareCopyInResponse();
+            sendAndReset();
+            return;
+        }
+
         if (typesAndSelect != null) {
             activeSelectColumnTypes = selectColumnTypes;
             buildSelectColumnTypes();
@@ -1921,7 +2195,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             prepareRowDescription();
             sendCursor(0, resumeCursorQueryRef, resumeQueryCompleteRef);
         } else if (typesAndInsert != null) {
-            executeInsert();
+            executeInsert(false);
         } else {
             executeTag();
             prepareCommandComplete(false);
@@ -1989,6 +2263,13 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     }
 
     private void reportError(int position, CharSequence flyweightMessage) throws PeerDisconnectedException, PeerIsSlowToReadException {
+        // Sync is discarded together with the rest of receive buffer, rows of
+        // inserts executed before the error are committed as they would have been at Sync
+        try {
+            commitPipelinedInserts();
+        } catch (CairoException e) {
+            LOG.error().$("could not commit pipelined inserts [msg=").$(e.getFlyweightMessage()).$(", errno=").$(e.getErrno()).I$();
+        }
         prepareError(position, flyweightMessage);
         sendReadyForNewQuery();
         clearRecvBuffer();
@@ -2019,6 +2300,18 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         sendCursor0(record, columnCount, resumeQueryCompleteRef);
     }
 
+    private void resumePortal(Portal portal) {
+        closeUnnamedPortal(false);
+        typesAndSelect = portal.typesAndSelect;
+        currentCursor = portal.cursor;
+        currentFactory = portal.factory;
+        queryText = portal.queryText;
+        activeSelectColumnTypes = portal.selectColumnTypes;
+        portal.typesAndSelect = null;
+        portal.cursor = null;
+        portal.factory = null;
+    }
+
     private void resumeQueryComplete() throws PeerDisconnectedException, PeerIsSlowToReadException {
         prepareCommandComplete(true);
         sendReadyForNewQuery();
@@ -2029,32 +2322,6 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         responseAsciiSink.reset();
     }
 
-    private void sendCopyInResponse(CairoEngine engine, TextLoader textLoader) throws PeerDisconnectedException, PeerIsSlowToReadException {
-        if (
-                TableUtils.TABLE_EXISTS == engine.getStatus(
-                        sqlExecutionContext.getCairoSecurityContext(),
-                        path,
-                        textLoader.getTableName()
-                )) {
-            responseAsciiSink.put(MESSAGE_TYPE_COPY_IN_RESPONSE);
-            long addr = responseAsciiSink.skip();
-            responseAsciiSink.put((byte) 0); // TEXT (1=BINARY, which we do not support yet)
-            try (TableWriter writer = engine.getWriter(sqlExecutionContext.getCairoSecurityContext(), textLoader.getTableName(), WRITER_LOCK_REASON)) {
-                RecordMetadata metadata = writer.getMetadata();
-                responseAsciiSink.putNetworkShort((short) metadata.getColumnCount());
-                for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
-                    responseAsciiSink.putNetworkShort((short) PGOids.getTypeOid(metadata.getColumnType(i)));
-                }
-            }
-            responseAsciiSink.putLen(addr);
-        } else {
-            final SqlException e = SqlException.$(0, "table '").put(textLoader.getTableName()).put("' does not exist");
-            prepareError(e.getPosition(), e.getFlyweightMessage());
-            prepareReadyForQuery();
-        }
-        sendAndReset();
-    }
-
     private void sendCursor(
             int maxRows,
             PGResumeProcessor cursorResumeProcessor,
@@ -2070,22 +2337,21 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         final Record record = currentCursor.getRecord();
         final RecordMetadata metadata = currentFactory.getMetadata();
         final int columnCount = metadata.getColumnCount();
-        final long cursorRowCount = currentCursor.size();
-        this.maxRows = maxRows > 0 ? Long.min(maxRows, cursorRowCount) : Long.MAX_VALUE;
+        // cursor size is often unknown (-1), row limit applies to rows sent by this Execute
+        this.maxRows = maxRows > 0 ? maxRows : Long.MAX_VALUE;
         this.resumeProcessor = cursorResumeProcessor;
         sendCursor0(record, columnCount, commandCompleteResumeProcessor);
     }
 
     private void sendCursor0(Record record, int columnCount, PGResumeProcessor commandCompleteResumeProcessor)
             throws PeerDisconnectedException, PeerIsSlowToReadException, SqlException {
-        while (currentCursor.hasNext()) {
+        while (rowCount < maxRows && currentCursor.hasNext()) {
             // create checkpoint to which we can undo the buffer in case
             // current DataRow will does not fit fully.
             responseAsciiSink.bookmark();
             try {
                 try {
                     appendRecord(record, columnCount);
-                    if (rowCount >= maxRows) break;
                 } catch (NoSpaceLeftInResponseBufferException e) {
                     responseAsciiSink.resetToBookmark();
                     sendAndReset();
@@ -2097,7 +2363,7 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             }
         }
 
-        completed = maxRows <= 0 || rowCount < maxRows;
+        completed = rowCount < maxRows;
         if (completed) {
             clearCursorAndFactory();
             // at this point buffer can contain unsent data
@@ -2109,6 +2375,9 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
             prepareCommandComplete(true);
         } else {
             prepareSuspended();
+            if (executePortal != null) {
+                suspendPortal(executePortal);
+            }
         }
     }
 
@@ -2133,6 +2402,14 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         sendAndReset();
     }
 
+    private void setupCopyIn(CompiledQuery cc) throws SqlException {
+        final TextLoader textLoader = cc.getTextLoader();
+        if (engine.getStatus(sqlExecutionContext.getCairoSecurityContext(), path, textLoader.getTableName()) != TableUtils.TABLE_EXISTS) {
+            throw SqlException.$(0, "table '").put(textLoader.getTableName()).put("' does not exist");
+        }
+        copyLoader.of(sqlExecutionContext.getCairoSecurityContext(), textLoader, cc.getCopyFormat());
+    }
+
     private void setupFactoryAndCursor(SqlCompiler compiler) throws SqlException, PeerIsSlowToReadException, PeerDisconnectedException {
         if (currentCursor == null) {
             boolean recompileStale = true;
@@ -2186,6 +2463,31 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
         recvBufferReadOffset = 0;
     }
 
+    private void suspendPortal(Portal portal) {
+        // portal keeps the cursor until it is executed again or closed, meanwhile
+        // the connection is free to run other statements
+        portal.typesAndSelect = typesAndSelect;
+        portal.cursor = currentCursor;
+        portal.factory = currentFactory;
+        portal.queryText = Chars.toString(queryText);
+        if (portal.selectColumnTypes != activeSelectColumnTypes) {
+            portal.selectColumnTypes.clear();
+            portal.selectColumnTypes.addAll(activeSelectColumnTypes);
+        }
+        if (portal.bindVariableService == null && bindVariableService.getIndexedVariableCount() > 0) {
+            // cursor functions read values of the bind variables they were opened with,
+            // these must survive other statements binding their own values
+            portal.bindVariableService = bindVariableService;
+            bindVariableService = bindVariableServicePool.pop();
+            sqlExecutionContext.with(sqlExecutionContext.getCairoSecurityContext(), bindVariableService, rnd);
+        }
+        typesAndSelect = null;
+        currentCursor = null;
+        currentFactory = null;
+        resumeProcessor = null;
+        completed = true;
+    }
+
     private void validateParameterCounts(short parameterFormatCount, short parameterValueCount, int parameterTypeCount) throws BadProtocolException {
         if (parameterValueCount > 0) {
             if (parameterValueCount < parameterTypeCount) {
@@ -2205,11 +2507,25 @@ public class PGConnectionContext implements IOContext, Mutable, WriterSource {
     }
 
     public static class Portal implements Mutable {
+        public final IntList selectColumnTypes = new IntList();
         public CharSequence statementName = null;
+        // state of the cursor suspended by Execute with row limit
+        public TypesAndSelect typesAndSelect = null;
+        public RecordCursor cursor = null;
+        public RecordCursorFactory factory = null;
+        public String queryText = null;
+        public BindVariableService bindVariableService = null;
 
         @Override
         public void clear() {
             statementName = null;
+            cursor = Misc.free(cursor);
+            // factory is owned by typesAndSelect
+            factory = null;
+            typesAndSelect = Misc.free(typesAndSelect);
+            queryText = null;
+            bindVariableService = null;
+            selectColumnTypes.clear();
         }
     }
 
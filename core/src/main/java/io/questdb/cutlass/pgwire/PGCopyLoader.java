@@ -0,0 +1,504 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.pgwire;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cutlass.text.Atomicity;
+import io.questdb.cutlass.text.TextException;
+import io.questdb.cutlass.text.TextLoader;
+import io.questdb.griffin.model.CopyModel;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.DirectCharSink;
+import io.questdb.std.str.StringSink;
+
+import java.io.Closeable;
+
+/**
+ * Loads data client streams in CopyData messages after "COPY table FROM STDIN". Text and CSV
+ * are accumulated into batches, which are parsed by text loader. Text format is parsed with
+ * backslash escapes and \N for NULL. Binary format is decoded tuple by tuple straight into
+ * table writer. Rows are committed every configured number of rows, and malformed row fails
+ * the copy before the batch it is in is committed.
+ */
+class PGCopyLoader implements Closeable, Mutable {
+    private static final Log LOG = LogFactory.getLog(PGCopyLoader.class);
+    private static final String WRITER_LOCK_REASON = "pgCopy";
+    // PGCOPY\n\377\r\n\0
+    private static final byte[] BINARY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+    // signature is followed by flags and length of header extension
+    private static final int BINARY_HEADER_LEN = BINARY_SIGNATURE.length + 2 * Integer.BYTES;
+    private static final int BINARY_FLAG_OIDS = 1 << 16;
+    private final CairoEngine engine;
+    private final int initialBufferSize;
+    private final int commitBatchSize;
+    private final StringSink tableName = new StringSink();
+    private final DirectCharSink utf8Sink;
+    private final LongList fieldAddresses = new LongList();
+    private final IntList fieldLengths = new IntList();
+    private CairoSecurityContext securityContext;
+    private TextLoader textLoader;
+    private TableWriter writer;
+    private long buffer;
+    private long bufferSize;
+    private long bufferPos;
+    private int format;
+    private int columnCount;
+    private boolean active;
+    private boolean binaryHeaderRead;
+    private boolean binaryTrailerRead;
+    private long binaryRowCount;
+    private long committedRowCount;
+
+    PGCopyLoader(CairoEngine engine, PGWireConfiguration configuration) {
+        this.engine = engine;
+        this.initialBufferSize = configuration.getCopyBufferSize();
+        this.commitBatchSize = configuration.getCopyCommitBatchSize();
+        this.utf8Sink = new DirectCharSink(engine.getConfiguration().getTextConfiguration().getUtf8SinkSize());
+    }
+
+    @Override
+    public void clear() {
+        writer = Misc.free(writer);
+        if (textLoader != null) {
+            textLoader.clear();
+        }
+        securityContext = null;
+        bufferPos = 0;
+        columnCount = 0;
+        active = false;
+        binaryHeaderRead = false;
+        binaryTrailerRead = false;
+        binaryRowCount = 0;
+        committedRowCount = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        textLoader = Misc.free(textLoader);
+        Misc.free(utf8Sink);
+        if (buffer != 0) {
+            Unsafe.free(buffer, bufferSize);
+            buffer = 0;
+            bufferSize = 0;
+        }
+    }
+
+    /**
+     * Flushes data that has not been loaded yet and commits rows.
+     *
+     * @return number of rows written to table
+     * @throws TextException when text structure cannot be determined
+     */
+    long done() throws TextException {
+        try {
+            final long rowCount;
+            if (format == CopyModel.FORMAT_BINARY) {
+                if (bufferPos > 0) {
+                    throw CairoException.instance(0).put("incomplete binary COPY data [bytes=").put(bufferPos).put(']');
+                }
+                writer.commit();
+                rowCount = binaryRowCount;
+            } else {
+                flushText();
+                textLoader.wrapUp();
+                checkTextErrors();
+                rowCount = textLoader.getWrittenLineCount();
+            }
+            LOG.info().$("copied [table=`").$(tableName).$("`, rows=").$(rowCount).I$();
+            return rowCount;
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Discards rows that have not been committed yet.
+     */
+    void fail() {
+        // text loader returns its writer to the pool, which rolls uncommitted rows back
+        if (writer != null) {
+            writer.rollback();
+        }
+        LOG.info().$("copy failed [table=`").$(tableName).$("`, committedRows=").$(committedRowCount).I$();
+        clear();
+    }
+
+    int getColumnCount() {
+        return columnCount;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    boolean isBinary() {
+        return format == CopyModel.FORMAT_BINARY;
+    }
+
+    /**
+     * Prepares to load data into existing table.
+     *
+     * @param securityContext security context
+     * @param source          text loader configured by SQL compiler
+     * @param format          one of CopyModel.FORMAT_* constants
+     */
+    void of(CairoSecurityContext securityContext, TextLoader source, int format) {
+        clear();
+        this.securityContext = securityContext;
+        this.format = format;
+        tableName.clear();
+        tableName.put(source.getTableName());
+
+        if (format == CopyModel.FORMAT_BINARY) {
+            writer = engine.getWriter(securityContext, tableName, WRITER_LOCK_REASON);
+            columnCount = writer.getMetadata().getColumnCount();
+            fieldAddresses.setPos(columnCount);
+            fieldLengths.setPos(columnCount);
+        } else {
+            try (TableReader reader = engine.getReader(securityContext, tableName)) {
+                columnCount = reader.getMetadata().getColumnCount();
+            }
+            if (textLoader == null) {
+                textLoader = new TextLoader(engine);
+            }
+            textLoader.clear();
+            textLoader.setState(TextLoader.ANALYZE_STRUCTURE);
+            textLoader.configureDestination(
+                    tableName,
+                    false,
+                    false,
+                    Atomicity.SKIP_ROW,
+                    PartitionBy.NONE,
+                    null
+            );
+            if (source.getColumnDelimiter() > 0) {
+                textLoader.configureColumnDelimiter(source.getColumnDelimiter());
+            }
+            textLoader.setForceHeaders(source.isForceHeaders());
+            textLoader.setBackslashEscapes(format == CopyModel.FORMAT_TEXT);
+            // rows are skipped rather than partially written, and then counted as errors to fail the copy
+            textLoader.setSkipRowsWithExtraValues(true);
+        }
+
+        if (buffer == 0) {
+            bufferSize = initialBufferSize;
+            buffer = Unsafe.malloc(bufferSize);
+        }
+        active = true;
+    }
+
+    /**
+     * Loads payload of CopyData message. Message boundaries do not have to match
+     * line or tuple boundaries.
+     *
+     * @param lo address of the first byte of payload
+     * @param hi address of the byte after the last byte of payload
+     * @throws TextException when text structure cannot be determined
+     */
+    void onData(long lo, long hi) throws TextException {
+        if (format == CopyModel.FORMAT_BINARY) {
+            if (!binaryTrailerRead) {
+                append(lo, hi);
+                decodeBinary();
+            }
+            return;
+        }
+
+        final long len = hi - lo;
+        if (bufferPos + len > bufferSize) {
+            flushText();
+            if (len > bufferSize) {
+                textLoader.parse(lo, hi, securityContext);
+                checkTextErrors();
+                commitBatch(textLoader.getWrittenLineCount());
+                return;
+            }
+        }
+        Vect.memcpy(lo, buffer + bufferPos, len);
+        bufferPos += len;
+    }
+
+    private static int getInt(long address) {
+        return Numbers.bswap(Unsafe.getUnsafe().getInt(address));
+    }
+
+    private static long getInteger(long address, int len) {
+        switch (len) {
+            case Byte.BYTES:
+                return Unsafe.getUnsafe().getByte(address);
+            case Short.BYTES:
+                return Numbers.bswap(Unsafe.getUnsafe().getShort(address));
+            case Integer.BYTES:
+                return getInt(address);
+            case Long.BYTES:
+                return Numbers.bswap(Unsafe.getUnsafe().getLong(address));
+            default:
+                throw CairoException.instance(0).put("unexpected integer length [len=").put(len).put(']');
+        }
+    }
+
+    private static double getFloatingPoint(long address, int len) {
+        switch (len) {
+            case Integer.BYTES:
+                return Float.intBitsToFloat(getInt(address));
+            case Long.BYTES:
+                return Double.longBitsToDouble(Numbers.bswap(Unsafe.getUnsafe().getLong(address)));
+            default:
+                throw CairoException.instance(0).put("unexpected floating point length [len=").put(len).put(']');
+        }
+    }
+
+    private static long getTimestamp(long address, int len) {
+        // PostgreSQL counts timestamps in micros and dates in days since 2000-01-01
+        switch (len) {
+            case Integer.BYTES:
+                return getInt(address) * Timestamps.DAY_MICROS + Numbers.JULIAN_EPOCH_OFFSET_USEC;
+            case Long.BYTES:
+                return Numbers.bswap(Unsafe.getUnsafe().getLong(address)) + Numbers.JULIAN_EPOCH_OFFSET_USEC;
+            default:
+                throw CairoException.instance(0).put("unexpected timestamp length [len=").put(len).put(']');
+        }
+    }
+
+    private void append(long lo, long hi) {
+        final long len = hi - lo;
+        if (bufferPos + len > bufferSize) {
+            final long size = Math.max(bufferSize * 2, bufferPos + len);
+            buffer = Unsafe.realloc(buffer, bufferSize, size);
+            bufferSize = size;
+        }
+        Vect.memcpy(lo, buffer + bufferPos, len);
+        bufferPos += len;
+    }
+
+    private void checkTextErrors() {
+        long errorCount = textLoader.getErrorLineCount();
+        final LongList columnErrorCounts = textLoader.getColumnErrorCounts();
+        for (int i = 0, n = columnErrorCounts.size(); i < n; i++) {
+            errorCount += columnErrorCounts.getQuick(i);
+        }
+        if (errorCount > 0) {
+            throw CairoException.instance(0)
+                    .put("malformed COPY data [table=").put(tableName)
+                    .put(", errors=").put(errorCount)
+                    .put(", parsedLines=").put(textLoader.getParsedLineCount())
+                    .put(']');
+        }
+    }
+
+    private void commitBatch(long rowCount) {
+        if (rowCount - committedRowCount >= commitBatchSize) {
+            if (writer != null) {
+                writer.commit();
+            } else {
+                textLoader.commit();
+            }
+            committedRowCount = rowCount;
+        }
+    }
+
+    private void decodeBinary() {
+        final long limit = buffer + bufferPos;
+        long p = buffer;
+        if (!binaryHeaderRead) {
+            if (limit - p < BINARY_HEADER_LEN) {
+                return;
+            }
+            for (int i = 0, n = BINARY_SIGNATURE.length; i < n; i++) {
+                if (Unsafe.getUnsafe().getByte(p + i) != BINARY_SIGNATURE[i]) {
+                    throw CairoException.instance(0).put("invalid binary COPY signature");
+                }
+            }
+            if ((getInt(p + BINARY_SIGNATURE.length) & BINARY_FLAG_OIDS) != 0) {
+                throw CairoException.instance(0).put("binary COPY with OIDs is not supported");
+            }
+            final int extensionLen = getInt(p + BINARY_SIGNATURE.length + Integer.BYTES);
+            if (limit - p < BINARY_HEADER_LEN + extensionLen) {
+                return;
+            }
+            p += BINARY_HEADER_LEN + extensionLen;
+            binaryHeaderRead = true;
+        }
+
+        while (!binaryTrailerRead) {
+            final long next = decodeTuple(p, limit);
+            if (next == -1) {
+                break;
+            }
+            p = next;
+        }
+
+        // keep incomplete tuple at the start of the buffer until the rest of it arrives
+        final long remaining = limit - p;
+        if (remaining > 0 && p > buffer) {
+            Vect.memmove(buffer, p, remaining);
+        }
+        bufferPos = binaryTrailerRead ? 0 : remaining;
+        commitBatch(binaryRowCount);
+    }
+
+    private long decodeTuple(long p, long limit) {
+        if (limit - p < Short.BYTES) {
+            return -1;
+        }
+        final int fieldCount = Numbers.bswap(Unsafe.getUnsafe().getShort(p));
+        p += Short.BYTES;
+        if (fieldCount == -1) {
+            binaryTrailerRead = true;
+            return p;
+        }
+        if (fieldCount < 0 || fieldCount > columnCount) {
+            throw CairoException.instance(0)
+                    .put("column count mismatch [fieldCount=").put(fieldCount)
+                    .put(", tableColumnCount=").put(columnCount)
+                    .put(", table=").put(tableName)
+                    .put(']');
+        }
+
+        // make sure entire tuple is in the buffer before writing any of it
+        for (int i = 0; i < fieldCount; i++) {
+            if (limit - p < Integer.BYTES) {
+                return -1;
+            }
+            final int len = getInt(p);
+            p += Integer.BYTES;
+            if (len < -1) {
+                throw CairoException.instance(0).put("invalid field length [len=").put(len).put(", column=").put(i).put(']');
+            }
+            if (len > 0) {
+                if (limit - p < len) {
+                    return -1;
+                }
+                fieldAddresses.setQuick(i, p);
+                p += len;
+            }
+            fieldLengths.setQuick(i, len);
+        }
+        for (int i = fieldCount; i < columnCount; i++) {
+            fieldLengths.setQuick(i, -1);
+        }
+
+        final RecordMetadata metadata = writer.getMetadata();
+        final int timestampIndex = metadata.getTimestampIndex();
+        final TableWriter.Row row;
+        if (timestampIndex > -1) {
+            final int len = fieldLengths.getQuick(timestampIndex);
+            if (len == -1) {
+                throw CairoException.instance(0).put("designated timestamp cannot be NULL [column=").put(timestampIndex).put(']');
+            }
+            row = writer.newRow(getTimestamp(fieldAddresses.getQuick(timestampIndex), len));
+        } else {
+            row = writer.newRow();
+        }
+
+        try {
+            for (int i = 0; i < fieldCount; i++) {
+                final int len = fieldLengths.getQuick(i);
+                if (i != timestampIndex && len > -1) {
+                    putValue(row, i, metadata.getColumnType(i), fieldAddresses.getQuick(i), len);
+                }
+            }
+            row.append();
+        } catch (CairoException e) {
+            row.cancel();
+            throw e;
+        }
+        binaryRowCount++;
+        return p;
+    }
+
+    private void flushText() throws TextException {
+        if (bufferPos > 0) {
+            textLoader.parse(buffer, buffer + bufferPos, securityContext);
+            bufferPos = 0;
+            checkTextErrors();
+            commitBatch(textLoader.getWrittenLineCount());
+        }
+    }
+
+    private void putValue(TableWriter.Row row, int index, int columnType, long address, int len) {
+        switch (ColumnType.tagOf(columnType)) {
+            case ColumnType.BOOLEAN:
+                row.putBool(index, getInteger(address, len) != 0);
+                break;
+            case ColumnType.BYTE:
+                row.putByte(index, (byte) getInteger(address, len));
+                break;
+            case ColumnType.SHORT:
+                row.putShort(index, (short) getInteger(address, len));
+                break;
+            case ColumnType.CHAR:
+                putUtf8(address, len);
+                row.putChar(index, utf8Sink.length() > 0 ? utf8Sink.charAt(0) : 0);
+                break;
+            case ColumnType.INT:
+                row.putInt(index, (int) getInteger(address, len));
+                break;
+            case ColumnType.LONG:
+                row.putLong(index, getInteger(address, len));
+                break;
+            case ColumnType.FLOAT:
+                row.putFloat(index, (float) getFloatingPoint(address, len));
+                break;
+            case ColumnType.DOUBLE:
+                row.putDouble(index, getFloatingPoint(address, len));
+                break;
+            case ColumnType.DATE:
+                row.putDate(index, getTimestamp(address, len) / 1000);
+                break;
+            case ColumnType.TIMESTAMP:
+                row.putTimestamp(index, getTimestamp(address, len));
+                break;
+            case ColumnType.STRING:
+                putUtf8(address, len);
+                row.putStr(index, utf8Sink);
+                break;
+            case ColumnType.SYMBOL:
+                putUtf8(address, len);
+                row.putSym(index, utf8Sink);
+                break;
+            case ColumnType.BINARY:
+                row.putBin(index, address, len);
+                break;
+            default:
+                throw CairoException.instance(0)
+                        .put("binary COPY does not support column type [column=").put(index)
+                        .put(", type=").put(ColumnType.nameOf(columnType))
+                        .put(']');
+        }
+    }
+
+    private void putUtf8(long address, int len) {
+        utf8Sink.clear();
+        if (!Chars.utf8Decode(address, address + len, utf8Sink)) {
+            throw CairoException.instance(0).put("invalid UTF8 bytes in binary COPY data");
+        }
+    }
+}
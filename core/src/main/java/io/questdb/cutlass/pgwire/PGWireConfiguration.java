@@ -37,6 +37,12 @@ public interface PGWireConfiguration extends WorkerPoolAwareConfiguration {
 
     int getConnectionPoolInitialCapacity();
 
+    // number of bytes of COPY FROM STDIN text accumulated before it is parsed
+    int getCopyBufferSize();
+
+    // number of rows COPY FROM STDIN commits at a time
+    int getCopyCommitBatchSize();
+
     String getDefaultPassword();
 
     String getDefaultUsername();
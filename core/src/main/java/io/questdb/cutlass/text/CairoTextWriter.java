@@ -50,6 +50,8 @@ public class CairoTextWriter implements Closeable, Mutable {
     private final TypeManager typeManager;
     private final ObjectPool<OtherToTimestampAdapter> otherToTimestampAdapterPool = new ObjectPool<>(OtherToTimestampAdapter::new, 4);
     private CharSequence tableName;
+    // directory of table that is not registered with engine, null for database root
+    private CharSequence root;
     private TableWriter writer;
     private long _size;
     private boolean overwrite;
@@ -188,7 +190,7 @@ public class CairoTextWriter implements Closeable, Mutable {
         }
     }
 
-    private void checkMaxAndCommitLag() {
+    void checkMaxAndCommitLag() {
         if (writer != null && maxUncommittedRows > 0 && writer.getO3RowCount() >= maxUncommittedRows) {
             writer.checkMaxAndCommitLag(durable ? CommitMode.SYNC : CommitMode.NOSYNC);
         }
@@ -208,6 +210,22 @@ public class CairoTextWriter implements Closeable, Mutable {
         this.types = detectedTypes;
     }
 
+    private TableWriter createDetachedTable(ObjList<CharSequence> names, ObjList<TypeAdapter> detectedTypes) throws TextException {
+        final FilesFacade ff = configuration.getFilesFacade();
+        final int mkDirMode = configuration.getMkDirMode();
+        if (ff.mkdirs(path.of(root).slash$(), mkDirMode) != 0) {
+            throw CairoException.instance(ff.errno()).put("could not create directory [path=").put(path).put(']');
+        }
+        // table left behind by load that did not finish
+        path.of(root).concat(tableName).slash$();
+        if (ff.exists(path) && ff.rmdir(path) != 0) {
+            throw CairoException.instance(ff.errno()).put("could not remove table [path=").put(path).put(']');
+        }
+        TableUtils.createTable(ff, ddlMem, path, root, tableStructureAdapter.of(names, detectedTypes), mkDirMode, 0);
+        this.types = detectedTypes;
+        return new TableWriter(configuration, tableName, engine.getMessageBus(), false, DefaultLifecycleManager.INSTANCE, root);
+    }
+
     private void logError(long line, int i, DirectByteCharSequence dbcs) {
         LogRecord logRecord = LOG.error().$("type syntax [type=").$(ColumnType.nameOf(types.getQuick(i).getType())).$("]\n\t");
         logRecord.$('[').$(line).$(':').$(i).$("] -> ").$(dbcs).$();
@@ -298,6 +316,29 @@ public class CairoTextWriter implements Closeable, Mutable {
         return writer;
     }
 
+    int getAtomicity() {
+        return atomicity;
+    }
+
+    ObjList<TypeAdapter> getTypes() {
+        return types;
+    }
+
+    TableWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Makes writer create its table in the given directory instead of database root. Such table
+     * is not visible to the engine, it is always created anew and nothing but this writer opens it
+     * for writing.
+     *
+     * @param root directory to create table in, null for database root
+     */
+    void setRoot(CharSequence root) {
+        this.root = root;
+    }
+
     void prepareTable(
             CairoSecurityContext cairoSecurityContext,
             ObjList<CharSequence> names,
@@ -310,10 +351,14 @@ public class CairoTextWriter implements Closeable, Mutable {
         }
 
         boolean canUpdateMetadata = true;
-        switch (engine.getStatus(cairoSecurityContext, path, tableName)) {
+        switch (root == null ? engine.getStatus(cairoSecurityContext, path, tableName) : TableUtils.TABLE_DOES_NOT_EXIST) {
             case TableUtils.TABLE_DOES_NOT_EXIST:
-                createTable(names, detectedTypes, cairoSecurityContext);
-                writer = engine.getWriter(cairoSecurityContext, tableName, WRITER_LOCK_REASON);
+                if (root == null) {
+                    createTable(names, detectedTypes, cairoSecurityContext);
+                    writer = engine.getWriter(cairoSecurityContext, tableName, WRITER_LOCK_REASON);
+                } else {
+                    writer = createDetachedTable(names, detectedTypes);
+                }
                 designatedTimestampColumnName = writer.getDesignatedTimestampColumnName();
                 designatedTimestampIndex = writer.getMetadata().getTimestampIndex();
                 partitionBy = writer.getPartitionBy();
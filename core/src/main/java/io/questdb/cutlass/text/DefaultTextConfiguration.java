@@ -116,6 +116,11 @@ public class DefaultTextConfiguration implements TextConfiguration {
         return 4096;
     }
 
+    @Override
+    public long getParallelImportChunkSize() {
+        return 64 * 1024 * 1024;
+    }
+
     @Override
     public InputFormatConfiguration getInputFormatConfiguration() {
         return inputFormatConfiguration;
@@ -0,0 +1,458 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.text;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cutlass.text.types.TypeAdapter;
+import io.questdb.cutlass.text.types.TypeManager;
+import io.questdb.griffin.SqlCompiler;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.Sequence;
+import io.questdb.std.*;
+import io.questdb.std.str.DirectCharSink;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.tasks.TextImportTask;
+
+import java.io.Closeable;
+
+/**
+ * Loads text that is entirely in memory, such as mapped file or fully buffered upload,
+ * on the shared worker pool. Input is split into chunks at line boundaries, each chunk
+ * is parsed by its own lexer and type adapters into a staging table, which sorts rows
+ * by designated timestamp, and staging tables are then merged into the destination table
+ * in timestamp order.
+ * <p>
+ * Staging tables are kept in {@link CairoConfiguration#getSqlSpillRoot()} rather than
+ * amongst database tables, and are removed once load is over, whether it succeeded or not.
+ */
+class ParallelTextLoader implements Closeable {
+    private static final Log LOG = LogFactory.getLog(ParallelTextLoader.class);
+    private static final int PHASE_SCAN = 0;
+    private static final int PHASE_PARSE = 1;
+    private static final String STAGING_TABLE_INFIX = "__import";
+    private final CairoEngine engine;
+    private final CairoConfiguration configuration;
+    private final MessageBus messageBus;
+    private final CharSequence stagingRoot;
+    private final ObjList<Chunk> chunks = new ObjList<>();
+    private final LongList bounds = new LongList();
+    private final ObjList<CharSequence> columnNames = new ObjList<>();
+    private final ObjList<TableReader> readers = new ObjList<>();
+    private final ObjList<RecordCursor> cursors = new ObjList<>();
+    private final IntLongPriorityQueue heads = new IntLongPriorityQueue();
+    private final EntityColumnFilter columnFilter = new EntityColumnFilter();
+    private final BytecodeAssembler asm = new BytecodeAssembler();
+    private final Path path = new Path();
+    private int chunkCount;
+    private int phase;
+    private int sequence;
+    private long lineCount;
+    private long errorCount;
+    private long rejectedCount;
+
+    ParallelTextLoader(CairoEngine engine) {
+        this.engine = engine;
+        this.configuration = engine.getConfiguration();
+        this.messageBus = engine.getMessageBus();
+        this.stagingRoot = configuration.getSqlSpillRoot();
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(chunks);
+        chunks.clear();
+        Misc.free(path);
+    }
+
+    long getErrorCount() {
+        return errorCount;
+    }
+
+    long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Loads input into table, which has been prepared by the text writer. Rows are committed
+     * by the caller.
+     *
+     * @param lo                  address of the first byte of input
+     * @param hi                  address of the byte after the last byte of input
+     * @param maxChunkCount       maximum number of chunks input is split into
+     * @param columnDelimiter     column delimiter
+     * @param header              true when first line of input is a header
+     * @param skipLinesWithExtraValues true when lines with more values than columns are skipped
+     * @param textWriter          writer that prepared destination table
+     * @param securityContext     security context
+     * @throws TextException when staging table cannot be created
+     */
+    void load(
+            long lo,
+            long hi,
+            int maxChunkCount,
+            byte columnDelimiter,
+            boolean header,
+            boolean skipLinesWithExtraValues,
+            CairoTextWriter textWriter,
+            CairoSecurityContext securityContext
+    ) throws TextException {
+        final long t = System.nanoTime();
+        lineCount = 0;
+        errorCount = 0;
+        rejectedCount = 0;
+        try {
+            split(lo, hi, maxChunkCount);
+            prepareChunks(columnDelimiter, header, skipLinesWithExtraValues, textWriter, securityContext);
+            dispatch(PHASE_PARSE);
+            for (int i = 0; i < chunkCount; i++) {
+                final Chunk chunk = chunks.getQuick(i);
+                lineCount += chunk.lexer.getLineCount();
+                errorCount += chunk.lexer.getErrorCount();
+                addErrorCounts(textWriter.getColumnErrorCounts(), chunk.writer.getColumnErrorCounts());
+                chunk.writer.closeWriter();
+            }
+            merge(textWriter);
+        } finally {
+            clear();
+        }
+        LOG.info()
+                .$("loaded in parallel [table=`").$(textWriter.getTableName())
+                .$("`, chunks=").$(chunkCount)
+                .$(", lines=").$(lineCount)
+                .$(", errors=").$(errorCount)
+                .$(", rejected=").$(rejectedCount)
+                .$(", time=").$((System.nanoTime() - t) / 1_000_000).$("ms")
+                .I$();
+    }
+
+    void runChunk(int chunkIndex) {
+        final Chunk chunk = chunks.getQuick(chunkIndex);
+        if (phase == PHASE_SCAN) {
+            chunk.scan();
+        } else {
+            chunk.parse();
+        }
+    }
+
+    private static void addErrorCounts(LongList to, LongList from) {
+        for (int i = 0, n = Math.min(to.size(), from.size()); i < n; i++) {
+            to.setQuick(i, to.getQuick(i) + from.getQuick(i));
+        }
+    }
+
+    private void clear() {
+        Misc.freeObjList(readers);
+        readers.clear();
+        cursors.clear();
+        heads.clear();
+        final FilesFacade ff = configuration.getFilesFacade();
+        for (int i = 0; i < chunkCount; i++) {
+            final Chunk chunk = chunks.getQuick(i);
+            chunk.writer.clear();
+            chunk.typeManager.clear();
+            if (chunk.staged) {
+                chunk.staged = false;
+                path.of(stagingRoot).concat(chunk.tableName).slash$();
+                if (ff.exists(path) && ff.rmdir(path) != 0) {
+                    LOG.error().$("could not remove staging table [path=").$(path)
+                            .$(", errno=").$(ff.errno())
+                            .I$();
+                }
+            }
+        }
+    }
+
+    private void dispatch(int phase) {
+        final RingQueue<TextImportTask> queue = messageBus.getTextImportQueue();
+        final Sequence pubSeq = messageBus.getTextImportPubSeq();
+
+        this.phase = phase;
+        for (int i = 0; i < chunkCount; i++) {
+            final TextImportEntry entry = chunks.getQuick(i).entry;
+            entry.of(sequence++);
+            final long seq = pubSeq.next();
+            if (seq > -1) {
+                queue.get(seq).entry = entry;
+                pubSeq.done(seq);
+            }
+        }
+
+        // workers pick chunks up from the front of the queue, help them from the back
+        for (int i = chunkCount - 1; i > -1; i--) {
+            chunks.getQuick(i).entry.run();
+        }
+
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.getQuick(i).entry.awaitDone();
+        }
+
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.getQuick(i).entry.throwIfFailed();
+        }
+    }
+
+    private Chunk getChunk(int index) {
+        if (index < chunks.size()) {
+            return chunks.getQuick(index);
+        }
+        final Chunk chunk = new Chunk(index);
+        chunks.add(chunk);
+        return chunk;
+    }
+
+    private void merge(CairoTextWriter textWriter) {
+        final TableWriter writer = textWriter.getWriter();
+        for (int i = 0; i < chunkCount; i++) {
+            final TableReader reader = new TableReader(configuration, chunks.getQuick(i).tableName, stagingRoot);
+            readers.add(reader);
+            cursors.add(reader.getCursor());
+        }
+
+        final RecordMetadata metadata = readers.getQuick(0).getMetadata();
+        columnFilter.of(metadata.getColumnCount());
+        final SqlCompiler.RecordToRowCopier copier = SqlCompiler.assembleRecordToRowCopier(
+                asm,
+                metadata,
+                writer.getMetadata(),
+                columnFilter
+        );
+
+        final int timestampIndex = metadata.getTimestampIndex();
+        if (timestampIndex == -1) {
+            // without timestamp rows keep the order of input lines
+            for (int i = 0; i < chunkCount; i++) {
+                final RecordCursor cursor = cursors.getQuick(i);
+                final Record record = cursor.getRecord();
+                while (cursor.hasNext()) {
+                    final TableWriter.Row row = writer.newRow();
+                    copier.copy(record, row);
+                    row.append();
+                }
+            }
+        } else {
+            mergeByTimestamp(textWriter, writer, copier, timestampIndex);
+        }
+    }
+
+    private void mergeByTimestamp(
+            CairoTextWriter textWriter,
+            TableWriter writer,
+            SqlCompiler.RecordToRowCopier copier,
+            int timestampIndex
+    ) {
+        // staging tables are sorted, the queue orders them by timestamp of their next row
+        heads.clear();
+        for (int i = 0; i < chunkCount; i++) {
+            final RecordCursor cursor = cursors.getQuick(i);
+            if (cursor.hasNext()) {
+                heads.add(i, cursor.getRecord().getTimestamp(timestampIndex));
+            }
+        }
+
+        while (heads.hasNext()) {
+            final int index = heads.popIndex();
+            long timestamp = heads.popValue();
+            final RecordCursor cursor = cursors.getQuick(index);
+            final Record record = cursor.getRecord();
+
+            // rows are taken from this chunk for as long as they precede next rows of other chunks,
+            // chunk which does not overlap the others is appended in one go
+            final long limit = heads.hasNext() ? heads.peekValue() : Long.MAX_VALUE;
+            final int limitIndex = heads.hasNext() ? heads.popIndex() : Integer.MAX_VALUE;
+            boolean hasNext;
+            do {
+                try {
+                    final TableWriter.Row row = writer.newRow(timestamp);
+                    copier.copy(record, row);
+                    row.append();
+                    textWriter.checkMaxAndCommitLag();
+                } catch (CairoException e) {
+                    // row is older than data destination table cannot insert before
+                    textWriter.getColumnErrorCounts().increment(timestampIndex);
+                    rejectedCount++;
+                }
+                hasNext = cursor.hasNext();
+                if (hasNext) {
+                    timestamp = record.getTimestamp(timestampIndex);
+                }
+            } while (hasNext && (timestamp < limit || (timestamp == limit && index < limitIndex)));
+
+            if (hasNext) {
+                heads.add(index, timestamp);
+            }
+        }
+    }
+
+    private void prepareChunks(
+            byte columnDelimiter,
+            boolean header,
+            boolean skipLinesWithExtraValues,
+            CairoTextWriter textWriter,
+            CairoSecurityContext securityContext
+    ) throws TextException {
+        final RecordMetadata metadata = textWriter.getMetadata();
+        final ObjList<TypeAdapter> types = textWriter.getTypes();
+        final int columnCount = types.size();
+
+        columnNames.clear();
+        for (int i = 0; i < columnCount; i++) {
+            columnNames.add(metadata.getColumnName(i));
+        }
+
+        final int timestampIndex = metadata.getTimestampIndex();
+        final CharSequence timestampColumn = timestampIndex > -1 && timestampIndex < columnCount ? metadata.getColumnName(timestampIndex) : null;
+        int partitionBy = PartitionBy.NONE;
+        if (timestampColumn != null) {
+            // staging table has to be partitioned for out-of-order rows to be sorted on commit
+            partitionBy = textWriter.getPartitionBy() != PartitionBy.NONE ? textWriter.getPartitionBy() : PartitionBy.DAY;
+        }
+
+        for (int i = 0; i < chunkCount; i++) {
+            final Chunk chunk = chunks.getQuick(i);
+            chunk.tableName.clear();
+            chunk.tableName.put(textWriter.getTableName()).put(STAGING_TABLE_INFIX).put(i);
+
+            chunk.types.clear();
+            for (int j = 0; j < columnCount; j++) {
+                chunk.types.add(chunk.typeManager.nextLocalTypeAdapter(types.getQuick(j)));
+            }
+
+            chunk.writer.of(chunk.tableName, false, false, textWriter.getAtomicity(), partitionBy, timestampColumn);
+            chunk.writer.setRoot(stagingRoot);
+            chunk.writer.setMaxUncommittedRows(configuration.getMaxUncommittedRows());
+            chunk.staged = true;
+            chunk.writer.prepareTable(securityContext, columnNames, chunk.types);
+
+            chunk.lexer.of(columnDelimiter);
+            chunk.lexer.setTableName(textWriter.getTableName());
+            chunk.lexer.setSkipLinesWithExtraValues(skipLinesWithExtraValues);
+            chunk.lexer.restart(header && i == 0);
+        }
+    }
+
+    private void split(long lo, long hi, int maxChunkCount) {
+        final long size = (hi - lo) / maxChunkCount;
+        for (int i = 0; i < maxChunkCount; i++) {
+            final Chunk chunk = getChunk(i);
+            chunk.lo = lo + i * size;
+            chunk.hi = i == maxChunkCount - 1 ? hi : chunk.lo + size;
+        }
+        chunkCount = maxChunkCount;
+        dispatch(PHASE_SCAN);
+
+        // line starts a chunk when it is not inside quotes, which is known
+        // once quotes in all preceding chunks are counted
+        bounds.clear();
+        bounds.add(lo);
+        long quoteCount = chunks.getQuick(0).quoteCount;
+        for (int i = 1; i < maxChunkCount; i++) {
+            final Chunk chunk = chunks.getQuick(i);
+            final long lineEnd = (quoteCount & 1) == 0 ? chunk.evenLineEnd : chunk.oddLineEnd;
+            if (lineEnd > -1 && lineEnd + 1 < hi) {
+                bounds.add(lineEnd + 1);
+            }
+            quoteCount += chunk.quoteCount;
+        }
+        bounds.add(hi);
+
+        chunkCount = bounds.size() - 1;
+        for (int i = 0; i < chunkCount; i++) {
+            final Chunk chunk = chunks.getQuick(i);
+            chunk.lo = bounds.getQuick(i);
+            chunk.hi = bounds.getQuick(i + 1);
+        }
+    }
+
+    private class Chunk implements Closeable {
+        private final DirectCharSink utf8Sink;
+        private final TypeManager typeManager;
+        private final TextLexer lexer;
+        private final Path path = new Path();
+        private final CairoTextWriter writer;
+        private final ObjList<TypeAdapter> types = new ObjList<>();
+        private final StringSink tableName = new StringSink();
+        private final TextImportEntry entry;
+        private long lo;
+        private long hi;
+        private long quoteCount;
+        // first line ends after even and after odd number of quotes since chunk start
+        private long evenLineEnd;
+        private long oddLineEnd;
+        private boolean staged;
+
+        private Chunk(int index) {
+            final TextConfiguration textConfiguration = configuration.getTextConfiguration();
+            this.utf8Sink = new DirectCharSink(textConfiguration.getUtf8SinkSize());
+            this.typeManager = new TypeManager(textConfiguration, utf8Sink);
+            this.lexer = new TextLexer(textConfiguration, typeManager);
+            this.writer = new CairoTextWriter(engine, path, typeManager);
+            this.entry = new TextImportEntry(ParallelTextLoader.this, index);
+        }
+
+        @Override
+        public void close() {
+            Misc.free(writer);
+            Misc.free(lexer);
+            Misc.free(path);
+            Misc.free(utf8Sink);
+        }
+
+        private void parse() {
+            lexer.parse(lo, hi, Integer.MAX_VALUE, writer.getTextListener());
+            lexer.parseLast();
+            writer.commit();
+        }
+
+        private void scan() {
+            long quotes = 0;
+            long evenLineEnd = -1;
+            long oddLineEnd = -1;
+            for (long p = lo; p < hi; p++) {
+                final byte b = Unsafe.getUnsafe().getByte(p);
+                if (b == '"') {
+                    quotes++;
+                } else if (b == '\n') {
+                    if ((quotes & 1) == 0) {
+                        if (evenLineEnd == -1) {
+                            evenLineEnd = p;
+                        }
+                    } else if (oddLineEnd == -1) {
+                        oddLineEnd = p;
+                    }
+                }
+            }
+            this.quoteCount = quotes;
+            this.evenLineEnd = evenLineEnd;
+            this.oddLineEnd = oddLineEnd;
+        }
+    }
+}
@@ -53,6 +53,14 @@ public interface TextConfiguration {
 
     int getUtf8SinkSize();
 
+    /**
+     * Input that is fully available in memory, such as mapped file, is split into chunks
+     * of at least this many bytes, which are parsed in parallel.
+     *
+     * @return chunk size in bytes
+     */
+    long getParallelImportChunkSize();
+
     InputFormatConfiguration getInputFormatConfiguration();
 
     DateLocale getDefaultDateLocale();
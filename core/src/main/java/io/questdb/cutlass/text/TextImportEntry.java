@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cutlass.text;
+
+import io.questdb.std.AbstractLockable;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Unit of work of parallel text import: one chunk of input, which is either scanned
+ * for line boundaries or parsed, depending on the phase of the loader. Chunk is processed
+ * by a worker or by the thread that runs the import.
+ */
+public class TextImportEntry extends AbstractLockable {
+    private final ParallelTextLoader loader;
+    private final int chunkIndex;
+    private Throwable error;
+    private volatile boolean done;
+
+    TextImportEntry(ParallelTextLoader loader, int chunkIndex) {
+        this.loader = loader;
+        this.chunkIndex = chunkIndex;
+    }
+
+    public boolean run() {
+        if (tryLock()) {
+            try {
+                loader.runChunk(chunkIndex);
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                done = true;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    void awaitDone() {
+        while (!done) {
+            LockSupport.parkNanos(1);
+        }
+    }
+
+    @Override
+    protected void of(int sequence) {
+        this.error = null;
+        this.done = false;
+        // unlock entry last, fields above must be visible to the thread that locks it
+        super.of(sequence);
+    }
+
+    void throwIfFailed() {
+        final Throwable e = error;
+        if (e != null) {
+            error = null;
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw (Error) e;
+        }
+    }
+}
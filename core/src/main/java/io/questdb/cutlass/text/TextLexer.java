@@ -63,6 +63,12 @@ public class TextLexer implements Closeable, Mutable {
     private long fieldLo;
     private long fieldHi;
     private boolean skipLinesWithExtraValues;
+    private boolean backslashEscapes;
+    // previous byte was backslash, which escapes this one
+    private boolean escaped;
+    // values of the current line with escapes resolved
+    private long unescapeBufPtr;
+    private long unescapeBufLen;
 
     public TextLexer(TextConfiguration textConfiguration, TypeManager typeManager) {
         this.metadataDetector = new TextMetadataDetector(typeManager, textConfiguration);
@@ -102,6 +108,11 @@ public class TextLexer implements Closeable, Mutable {
             Unsafe.free(lineRollBufPtr, lineRollBufLen);
             lineRollBufPtr = 0;
         }
+        if (unescapeBufPtr != 0) {
+            Unsafe.free(unescapeBufPtr, unescapeBufLen);
+            unescapeBufPtr = 0;
+            unescapeBufLen = 0;
+        }
         metadataDetector.close();
     }
 
@@ -113,6 +124,18 @@ public class TextLexer implements Closeable, Mutable {
         return lineCount;
     }
 
+    /**
+     * Switches lexer to PostgreSQL text format. Backslash escapes the byte after it, so that
+     * escaped delimiter or line break is part of the value, and escape sequences such as \t, \n,
+     * octal and hex bytes are resolved before values reach the listener. Quotes have no special
+     * meaning. Value, which is exactly \N, is NULL and listener receives it as empty value.
+     *
+     * @param backslashEscapes true for PostgreSQL text format, false for CSV
+     */
+    public void setBackslashEscapes(boolean backslashEscapes) {
+        this.backslashEscapes = backslashEscapes;
+    }
+
     public boolean isSkipLinesWithExtraValues() {
         return skipLinesWithExtraValues;
     }
@@ -138,6 +161,9 @@ public class TextLexer implements Closeable, Mutable {
             if (inQuote && lastQuotePos < fieldHi) {
                 errorCount++;
                 LOG.info().$("quote is missing [table=").$(tableName).$(']').$();
+            } else if (escaped) {
+                errorCount++;
+                LOG.info().$("data ends with backslash [table=").$(tableName).$(']').$();
             } else {
                 this.fieldHi++;
                 stashField(fieldIndex);
@@ -153,6 +179,7 @@ public class TextLexer implements Closeable, Mutable {
         this.fieldMax = -1;
         this.inQuote = false;
         this.delayedOutQuote = false;
+        this.escaped = false;
         this.lineCount = 0;
         this.lineRollBufCur = lineRollBufPtr;
         this.useLineRollBuf = false;
@@ -330,14 +357,24 @@ public class TextLexer implements Closeable, Mutable {
 
                 this.fieldHi++;
 
+                if (escaped) {
+                    // escaped delimiter or line break is part of the value
+                    escaped = false;
+                    checkEol(lo);
+                    continue;
+                }
+
                 if (delayedOutQuote && c != '"') {
                     inQuote = delayedOutQuote = false;
                 }
 
                 if (c == columnDelimiter) {
                     onColumnDelimiter(lo);
-                } else if (c == '"') {
+                } else if (c == '"' && !backslashEscapes) {
                     onQuote();
+                } else if (c == '\\' && backslashEscapes) {
+                    escaped = true;
+                    checkEol(lo);
                 } else if (c == '\n' || c == '\r') {
                     onLineEnd(ptr);
                 } else {
@@ -417,6 +454,7 @@ public class TextLexer implements Closeable, Mutable {
     }
 
     private void triggerLine(long ptr) {
+        final int fieldCount = Math.min(fieldIndex, fieldMax) + 1;
         eol = true;
         fieldIndex = 0;
         if (useLineRollBuf) {
@@ -428,9 +466,113 @@ public class TextLexer implements Closeable, Mutable {
             return;
         }
 
+        if (backslashEscapes) {
+            unescapeFields(fieldCount);
+        }
         textLexerListener.onFields(lineCount++, fields, fieldMax + 1);
     }
 
+    private static int hexDigit(byte b) {
+        return b > -1 ? Numbers.hexNumbers[b] : -1;
+    }
+
+    private long unescape(DirectByteCharSequence field, long p) {
+        final long lo = field.getLo();
+        final long hi = field.getHi();
+        if (hi - lo == 2 && Unsafe.getUnsafe().getByte(lo) == '\\' && Unsafe.getUnsafe().getByte(lo + 1) == 'N') {
+            field.of(p, p);
+            return p;
+        }
+
+        long r = lo;
+        while (r < hi && Unsafe.getUnsafe().getByte(r) != '\\') {
+            r++;
+        }
+        if (r == hi) {
+            // value without escapes is left in place
+            return p;
+        }
+
+        // input is not modified, it is parsed again once structure is analysed
+        final long start = p;
+        Vect.memcpy(lo, p, r - lo);
+        p += r - lo;
+        while (r < hi) {
+            byte b = Unsafe.getUnsafe().getByte(r++);
+            if (b == '\\' && r < hi) {
+                b = Unsafe.getUnsafe().getByte(r++);
+                switch (b) {
+                    case 'b':
+                        b = '\b';
+                        break;
+                    case 'f':
+                        b = '\f';
+                        break;
+                    case 'n':
+                        b = '\n';
+                        break;
+                    case 'r':
+                        b = '\r';
+                        break;
+                    case 't':
+                        b = '\t';
+                        break;
+                    case 'v':
+                        b = 11;
+                        break;
+                    case 'x':
+                        // up to two hex digits, 'x' stands for itself without them
+                        if (r < hi && hexDigit(Unsafe.getUnsafe().getByte(r)) > -1) {
+                            int v = hexDigit(Unsafe.getUnsafe().getByte(r++));
+                            if (r < hi && hexDigit(Unsafe.getUnsafe().getByte(r)) > -1) {
+                                v = (v << 4) | hexDigit(Unsafe.getUnsafe().getByte(r++));
+                            }
+                            b = (byte) v;
+                        }
+                        break;
+                    default:
+                        // up to three octal digits, any other byte stands for itself
+                        if (b >= '0' && b <= '7') {
+                            int v = b - '0';
+                            for (int i = 0; i < 2 && r < hi; i++) {
+                                final byte d = Unsafe.getUnsafe().getByte(r);
+                                if (d < '0' || d > '7') {
+                                    break;
+                                }
+                                v = (v << 3) | (d - '0');
+                                r++;
+                            }
+                            b = (byte) v;
+                        }
+                        break;
+                }
+            }
+            Unsafe.getUnsafe().putByte(p++, b);
+        }
+        field.of(start, p);
+        return p;
+    }
+
+    private void unescapeFields(int fieldCount) {
+        // values only get shorter, buffer that fits all of them as they are is big enough
+        long len = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            len += fields.getQuick(i).length();
+        }
+        if (len > unescapeBufLen) {
+            final long newLen = Math.max(len, unescapeBufLen * 2);
+            if (unescapeBufPtr != 0) {
+                Unsafe.free(unescapeBufPtr, unescapeBufLen);
+            }
+            unescapeBufPtr = Unsafe.malloc(newLen);
+            unescapeBufLen = newLen;
+        }
+        long p = unescapeBufPtr;
+        for (int i = 0; i < fieldCount; i++) {
+            p = unescape(fields.getQuick(i), p);
+        }
+    }
+
     private void uneol(long lo) {
         eol = false;
         this.lastLineStart = this.fieldLo - lo;
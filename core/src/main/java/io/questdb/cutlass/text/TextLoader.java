@@ -30,13 +30,12 @@ import io.questdb.cairo.PartitionBy;
 import io.questdb.cairo.sql.RecordMetadata;
 import io.questdb.cutlass.json.JsonException;
 import io.questdb.cutlass.json.JsonLexer;
+import io.questdb.cutlass.text.types.TimestampAdapter;
+import io.questdb.cutlass.text.types.TypeAdapter;
 import io.questdb.cutlass.text.types.TypeManager;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
-import io.questdb.std.LongList;
-import io.questdb.std.Misc;
-import io.questdb.std.Mutable;
-import io.questdb.std.ObjList;
+import io.questdb.std.*;
 import io.questdb.std.str.DirectCharSink;
 import io.questdb.std.str.Path;
 
@@ -46,6 +45,7 @@ public class TextLoader implements Closeable, Mutable {
     public static final int LOAD_JSON_METADATA = 0;
     public static final int ANALYZE_STRUCTURE = 1;
     public static final int LOAD_DATA = 2;
+    public static final int BUFFER_DATA = 3;
     private static final Log LOG = LogFactory.getLog(TextLoader.class);
     private final CairoTextWriter textWriter;
     private final TextMetadataParser textMetadataParser;
@@ -57,7 +57,16 @@ public class TextLoader implements Closeable, Mutable {
     private final DirectCharSink utf8Sink;
     private final TypeManager typeManager;
     private final ObjList<ParserMethod> parseMethods = new ObjList<>();
+    private final ParallelTextLoader parallelLoader;
+    private final long parallelImportChunkSize;
     private int state;
+    private int workerCount = 1;
+    private long bufferAddress;
+    private long bufferCapacity;
+    private long bufferSize;
+    private CairoSecurityContext bufferSecurityContext;
+    private long parallelLineCount;
+    private long parallelErrorCount;
     private boolean forceHeaders = false;
     private byte columnDelimiter = -1;
 
@@ -74,9 +83,12 @@ public class TextLoader implements Closeable, Mutable {
         textMetadataParser = new TextMetadataParser(textConfiguration, typeManager);
         textAnalysisMaxLines = textConfiguration.getTextAnalysisMaxLines();
         textDelimiterScanner = new TextDelimiterScanner(textConfiguration);
+        parallelLoader = new ParallelTextLoader(engine);
+        parallelImportChunkSize = textConfiguration.getParallelImportChunkSize();
         parseMethods.extendAndSet(LOAD_JSON_METADATA, this::parseJsonMetadata);
         parseMethods.extendAndSet(ANALYZE_STRUCTURE, this::parseStructure);
         parseMethods.extendAndSet(LOAD_DATA, this::parseData);
+        parseMethods.extendAndSet(BUFFER_DATA, this::bufferData);
         textLexer.setSkipLinesWithExtraValues(true);
     }
 
@@ -89,6 +101,10 @@ public class TextLoader implements Closeable, Mutable {
         forceHeaders = false;
         columnDelimiter = -1;
         typeManager.clear();
+        freeBuffer();
+        bufferSecurityContext = null;
+        parallelLineCount = 0;
+        parallelErrorCount = 0;
     }
 
     @Override
@@ -100,12 +116,18 @@ public class TextLoader implements Closeable, Mutable {
         Misc.free(path);
         Misc.free(textDelimiterScanner);
         Misc.free(utf8Sink);
+        Misc.free(parallelLoader);
+        freeBuffer();
     }
 
     public void closeWriter() {
         textWriter.closeWriter();
     }
 
+    public void commit() {
+        textWriter.commit();
+    }
+
     public void configureColumnDelimiter(byte columnDelimiter) {
         this.columnDelimiter = columnDelimiter;
         assert this.columnDelimiter > 0;
@@ -140,11 +162,11 @@ public class TextLoader implements Closeable, Mutable {
     }
 
     public long getParsedLineCount() {
-        return textLexer.getLineCount();
+        return textLexer.getLineCount() + parallelLineCount;
     }
 
     public long getErrorLineCount() {
-        return textLexer.getErrorCount();
+        return textLexer.getErrorCount() + parallelErrorCount;
     }
 
     public int getPartitionBy() {
@@ -183,14 +205,58 @@ public class TextLoader implements Closeable, Mutable {
         this.forceHeaders = forceHeaders;
     }
 
+    public void setBackslashEscapes(boolean backslashEscapes) {
+        this.textLexer.setBackslashEscapes(backslashEscapes);
+    }
+
     public void setSkipRowsWithExtraValues(boolean skipRowsWithExtraValues) {
         this.textLexer.setSkipLinesWithExtraValues(skipRowsWithExtraValues);
     }
 
+    /**
+     * Loads text, which is entirely in memory, using up to given number of threads. Structure
+     * is analysed on the calling thread, then the text is split into chunks that are parsed
+     * concurrently and merged into the destination table in timestamp order. Text that is too
+     * small to split is loaded on the calling thread. Rows are committed before this method returns.
+     *
+     * @param lo                   address of the first byte of text
+     * @param hi                   address of the byte after the last byte of text
+     * @param workerCount          maximum number of threads to load text with
+     * @param cairoSecurityContext security context
+     * @throws TextException when text structure cannot be determined or staging table exists
+     */
+    public void loadParallel(long lo, long hi, int workerCount, CairoSecurityContext cairoSecurityContext) throws TextException {
+        final long chunkCount = Math.min(workerCount, (hi - lo + parallelImportChunkSize - 1) / Math.max(1, parallelImportChunkSize));
+        final byte delimiter = analyseStructure(lo, hi, cairoSecurityContext);
+        if (chunkCount < 2 || !isParallelLoadSupported()) {
+            textLexer.parse(lo, hi, Integer.MAX_VALUE, textWriter.getTextListener());
+            textLexer.parseLast();
+            textWriter.commit();
+            return;
+        }
+        parallelLoader.load(
+                lo,
+                hi,
+                (int) chunkCount,
+                delimiter,
+                textLexer.isHeaderDetected(),
+                textLexer.isSkipLinesWithExtraValues(),
+                textWriter,
+                cairoSecurityContext
+        );
+        parallelLineCount = parallelLoader.getLineCount();
+        parallelErrorCount = parallelLoader.getErrorCount();
+        textWriter.commit();
+    }
+
     public void parse(long lo, long hi, CairoSecurityContext cairoSecurityContext) throws TextException {
         parseMethods.getQuick(state).parse(lo, hi, cairoSecurityContext);
     }
 
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
     public void setState(int state) {
         LOG.debug().$("state change [old=").$(this.state).$(", new=").$(state).$(']').$();
         this.state = state;
@@ -211,11 +277,61 @@ public class TextLoader implements Closeable, Mutable {
                 textLexer.parseLast();
                 textWriter.commit();
                 break;
+            case BUFFER_DATA:
+                if (bufferSize > 0) {
+                    loadParallel(bufferAddress, bufferAddress + bufferSize, workerCount, bufferSecurityContext);
+                }
+                freeBuffer();
+                break;
             default:
                 break;
         }
     }
 
+    private byte analyseStructure(long lo, long hi, CairoSecurityContext cairoSecurityContext) throws TextException {
+        final byte delimiter = columnDelimiter > 0 ? columnDelimiter : textDelimiterScanner.scan(lo, hi);
+        textLexer.of(delimiter);
+        textLexer.analyseStructure(
+                lo,
+                hi,
+                textAnalysisMaxLines,
+                forceHeaders,
+                textMetadataParser.getColumnNames(),
+                textMetadataParser.getColumnTypes()
+        );
+        textWriter.prepareTable(cairoSecurityContext, textLexer.getColumnNames(), textLexer.getColumnTypes());
+        return delimiter;
+    }
+
+    private void bufferData(long lo, long hi, CairoSecurityContext cairoSecurityContext) {
+        final long len = hi - lo;
+        if (bufferSize + len > bufferCapacity) {
+            final long capacity = Math.max(bufferCapacity * 2, bufferSize + len);
+            bufferAddress = Unsafe.realloc(bufferAddress, bufferCapacity, capacity);
+            bufferCapacity = capacity;
+        }
+        Vect.memcpy(lo, bufferAddress + bufferSize, len);
+        bufferSize += len;
+        bufferSecurityContext = cairoSecurityContext;
+    }
+
+    private void freeBuffer() {
+        if (bufferAddress != 0) {
+            Unsafe.free(bufferAddress, bufferCapacity);
+            bufferAddress = 0;
+            bufferCapacity = 0;
+        }
+        bufferSize = 0;
+    }
+
+    private boolean isParallelLoadSupported() {
+        // chunks are merged by designated timestamp, which has to be parsed from text
+        final RecordMetadata metadata = textWriter.getMetadata();
+        final int timestampIndex = metadata.getTimestampIndex();
+        final ObjList<TypeAdapter> types = textWriter.getTypes();
+        return timestampIndex == -1 || (timestampIndex < types.size() && types.getQuick(timestampIndex) instanceof TimestampAdapter);
+    }
+
     private void parseData(long lo, long hi, CairoSecurityContext cairoSecurityContext) {
         textLexer.parse(lo, hi, Integer.MAX_VALUE, textWriter.getTextListener());
     }
@@ -229,20 +345,7 @@ public class TextLoader implements Closeable, Mutable {
     }
 
     private void parseStructure(long lo, long hi, CairoSecurityContext cairoSecurityContext) throws TextException {
-        if (columnDelimiter > 0) {
-            textLexer.of(columnDelimiter);
-        } else {
-            textLexer.of(textDelimiterScanner.scan(lo, hi));
-        }
-        textLexer.analyseStructure(
-                lo,
-                hi,
-                textAnalysisMaxLines,
-                forceHeaders,
-                textMetadataParser.getColumnNames(),
-                textMetadataParser.getColumnTypes()
-        );
-        textWriter.prepareTable(cairoSecurityContext, textLexer.getColumnNames(), textLexer.getColumnTypes());
+        analyseStructure(lo, hi, cairoSecurityContext);
         textLexer.parse(lo, hi, Integer.MAX_VALUE, textWriter.getTextListener());
         state = LOAD_DATA;
     }
@@ -133,6 +133,32 @@ public class TypeManager implements Mutable {
         return dateAdapterPool.next();
     }
 
+    /**
+     * Returns adapter that writes values the same way as the given one and can be used
+     * concurrently with it. Adapters that decode UTF8 share sink of the type manager
+     * that created them, they are replaced with instances that use sink of this manager.
+     *
+     * @param adapter adapter created by another type manager
+     * @return adapter safe to use by the thread that owns this type manager
+     */
+    public TypeAdapter nextLocalTypeAdapter(TypeAdapter adapter) {
+        if (adapter instanceof StringAdapter) {
+            return stringAdapter;
+        }
+        if (adapter instanceof SymbolAdapter) {
+            return symbolAdapter;
+        }
+        if (adapter instanceof DateUtf8Adapter) {
+            final DateUtf8Adapter dateAdapter = (DateUtf8Adapter) adapter;
+            return dateAdapterPool.next().of(dateAdapter.getFormat(), dateAdapter.getLocale());
+        }
+        if (adapter instanceof TimestampUtf8Adapter) {
+            final TimestampUtf8Adapter timestampAdapter = (TimestampUtf8Adapter) adapter;
+            return timestampUtf8AdapterPool.next().of(timestampAdapter.getFormat(), timestampAdapter.getLocale());
+        }
+        return adapter;
+    }
+
     public TypeAdapter nextTimestampAdapter(boolean decodeUtf8, DateFormat format, DateLocale locale) {
         if (decodeUtf8) {
             TimestampUtf8Adapter adapter = timestampUtf8AdapterPool.next();
@@ -49,5 +49,10 @@ public interface CompiledQuery {
 
     TextLoader getTextLoader();
 
+    /**
+     * @return one of CopyModel.FORMAT_* constants for {@link #COPY_REMOTE} queries
+     */
+    int getCopyFormat();
+
     short getType();
 }
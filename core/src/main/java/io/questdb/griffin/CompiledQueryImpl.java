@@ -32,6 +32,7 @@ public class CompiledQueryImpl implements CompiledQuery {
     private RecordCursorFactory recordCursorFactory;
     private InsertStatement insertStatement;
     private TextLoader textLoader;
+    private int copyFormat;
     private short type;
 
     @Override
@@ -49,6 +50,11 @@ public class CompiledQueryImpl implements CompiledQuery {
         return textLoader;
     }
 
+    @Override
+    public int getCopyFormat() {
+        return copyFormat;
+    }
+
     @Override
     public short getType() {
         return type;
@@ -76,8 +82,9 @@ public class CompiledQueryImpl implements CompiledQuery {
         return of(COPY_LOCAL);
     }
 
-    CompiledQuery ofCopyRemote(TextLoader textLoader) {
+    CompiledQuery ofCopyRemote(TextLoader textLoader, int copyFormat) {
         this.textLoader = textLoader;
+        this.copyFormat = copyFormat;
         return of(COPY_REMOTE);
     }
 
@@ -70,6 +70,14 @@ public interface FunctionFactory {
         return false;
     }
 
+    /**
+     * @return true when factory creates {@link io.questdb.griffin.engine.analytic.AnalyticFunction} that
+     * is called with OVER clause only, analytic factories may share names with group-by factories
+     */
+    default boolean isAnalytic() {
+        return false;
+    }
+
     default boolean isCursor() {
         return false;
     }
@@ -85,6 +93,13 @@ public interface FunctionFactory {
         return false;
     }
 
+    /**
+     * @return true if the {@link Function} produced by the factory can return different values for the same arguments (i.e. rnd_int() or sysdate()), results of queries calling such functions are never cached
+     */
+    default boolean isVolatile() {
+        return false;
+    }
+
     Function newInstance(
             int position,
             @Transient ObjList<Function> args,
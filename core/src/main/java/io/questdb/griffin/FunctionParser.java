@@ -68,6 +68,10 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor {
     private RecordMetadata metadata;
     private SqlCodeGenerator sqlCodeGenerator;
     private SqlExecutionContext sqlExecutionContext;
+    // node of analytic function being parsed, it is resolved against analytic factories
+    private ExpressionNode analyticNode;
+    // set when parsed functions read values that are not derived from tables and indexed bind variables
+    private boolean volatileFunctionParsed;
 
     public FunctionParser(CairoConfiguration configuration, FunctionFactoryCache functionFactoryCache) {
         this.configuration = configuration;
@@ -160,6 +164,7 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor {
         if (function == null) {
             throw SqlException.position(position).put("undefined bind variable: ").put(name);
         }
+        volatileFunctionParsed = true;
         return new NamedParameterLinkFunction(Chars.toString(name), function.getType());
     }
 
@@ -171,6 +176,14 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor {
         return functionFactoryCache;
     }
 
+    public boolean isVolatileFunctionParsed() {
+        return volatileFunctionParsed;
+    }
+
+    public void clearVolatileFunctionParsed() {
+        volatileFunctionParsed = false;
+    }
+
     public boolean isCursor(CharSequence token) {
         return functionFactoryCache.isCursor(token);
     }
@@ -199,6 +212,23 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor {
         return false;
     }
 
+    /**
+     * Parses function called with OVER clause. Analytic factories take precedence over the others
+     * for the top level function, its arguments are parsed as usual.
+     */
+    public Function parseAnalyticFunction(
+            ExpressionNode node,
+            RecordMetadata metadata,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        analyticNode = node;
+        try {
+            return parseFunction(node, metadata, executionContext);
+        } finally {
+            analyticNode = null;
+        }
+    }
+
     /**
      * Creates function instance. When node type is {@link ExpressionNode#LITERAL} a column or parameter
      * function is returned. We will be using the supplied {@link #metadata} to resolve type of column. When node token
@@ -381,6 +411,9 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor {
             LOG.error().$("NULL function").$(" [signature=").$(factory.getSignature()).$(",class=").$(factory.getClass().getName()).$(']').$();
             throw SqlException.position(position).put("bad function factory (NULL), check log");
         }
+        if (factory.isVolatile()) {
+            volatileFunctionParsed = true;
+        }
         return function;
     }
 
@@ -477,7 +510,13 @@ public class FunctionParser implements PostOrderTreeTraversalAlgo.Visitor {
             @Transient ObjList<Function> args,
             @Transient IntList argPositions
     ) throws SqlException {
-        final ObjList<FunctionFactoryDescriptor> overload = functionFactoryCache.getOverloadList(node.token);
+        ObjList<FunctionFactoryDescriptor> overload = null;
+        if (node == analyticNode) {
+            overload = functionFactoryCache.getAnalyticOverloadList(node.token);
+        }
+        if (overload == null) {
+            overload = functionFactoryCache.getOverloadList(node.token);
+        }
         if (overload == null) {
             throw invalidFunction(node, args);
         }
@@ -32,15 +32,18 @@ import io.questdb.griffin.engine.EmptyTableRecordCursorFactory;
 import io.questdb.griffin.engine.LimitRecordCursorFactory;
 import io.questdb.griffin.engine.RecordComparator;
 import io.questdb.griffin.engine.analytic.AnalyticFunction;
+import io.questdb.griffin.engine.analytic.AnalyticRecordCursorFactory;
 import io.questdb.griffin.engine.analytic.CachedAnalyticRecordCursorFactory;
 import io.questdb.griffin.engine.functions.GroupByFunction;
 import io.questdb.griffin.engine.functions.SymbolFunction;
+import io.questdb.griffin.engine.functions.columns.TimestampColumn;
 import io.questdb.griffin.engine.functions.constants.LongConstant;
 import io.questdb.griffin.engine.functions.constants.StrConstant;
 import io.questdb.griffin.engine.groupby.*;
 import io.questdb.griffin.engine.groupby.vect.GroupByRecordCursorFactory;
 import io.questdb.griffin.engine.groupby.vect.*;
 import io.questdb.griffin.engine.join.*;
+import io.questdb.griffin.engine.orderby.LimitedSizeSortedLightRecordCursorFactory;
 import io.questdb.griffin.engine.orderby.RecordComparatorCompiler;
 import io.questdb.griffin.engine.orderby.SortedLightRecordCursorFactory;
 import io.questdb.griffin.engine.orderby.SortedRecordCursorFactory;
@@ -86,7 +89,10 @@ public class SqlCodeGenerator implements Mutable {
     private final ArrayColumnTypes keyTypes = new ArrayColumnTypes();
     private final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
     private final EntityColumnFilter entityColumnFilter = new EntityColumnFilter();
+    private final ObjList<ExpressionNode> statsValueNodes = new ObjList<>();
     private final ObjList<Function> symbolValueList = new ObjList<>();
+    private final ObjList<Function> tempFilters = new ObjList<>();
+    private final FilterCompiler filterCompiler;
     private final ObjList<VectorAggregateFunction> tempVaf = new ObjList<>();
     private final GenericRecordMetadata tempMetadata = new GenericRecordMetadata();
     private final ArrayColumnTypes arrayColumnTypes = new ArrayColumnTypes();
@@ -102,6 +108,9 @@ public class SqlCodeGenerator implements Mutable {
     private final IntList groupByFunctionPositions = new IntList();
     private boolean fullFatJoins = false;
     private final CharSequenceHashSet prefixes = new CharSequenceHashSet();
+    // tables read by generated query, their transactions validate cached query results
+    private final CharSequenceHashSet queryTableNames = new CharSequenceHashSet();
+    private boolean queryReadsCursorFunction;
 
     static {
         joinsRequiringTimestamp[JOIN_INNER] = false;
@@ -121,11 +130,15 @@ public class SqlCodeGenerator implements Mutable {
         this.configuration = configuration;
         this.functionParser = functionParser;
         this.recordComparatorCompiler = new RecordComparatorCompiler(asm);
+        this.filterCompiler = new FilterCompiler(asm);
     }
 
     @Override
     public void clear() {
         whereClauseParser.clear();
+        queryTableNames.clear();
+        queryReadsCursorFunction = false;
+        functionParser.clearVolatileFunctionParsed();
     }
 
     @NotNull
@@ -176,6 +189,28 @@ public class SqlCodeGenerator implements Mutable {
         return model.getOrderByDirectionAdvice().getQuick(index);
     }
 
+    private static int getSampleByFillMode(ObjList<ExpressionNode> sampleByFill) {
+        if (sampleByFill.size() == 0) {
+            return ParallelSampleByFillRecordCursorFactory.FILL_NONE;
+        }
+        if (sampleByFill.size() == 1) {
+            final CharSequence token = sampleByFill.getQuick(0).token;
+            if (Chars.equalsLowerCaseAscii(token, "none")) {
+                return ParallelSampleByFillRecordCursorFactory.FILL_NONE;
+            }
+            if (Chars.equalsLowerCaseAscii(token, "prev")) {
+                return ParallelSampleByFillRecordCursorFactory.FILL_PREV;
+            }
+            if (Chars.equalsLowerCaseAscii(token, "linear")) {
+                return ParallelSampleByFillRecordCursorFactory.FILL_LINEAR;
+            }
+            if (isNullKeyword(token)) {
+                return ParallelSampleByFillRecordCursorFactory.FILL_NULL;
+            }
+        }
+        return ParallelSampleByFillRecordCursorFactory.FILL_VALUE;
+    }
+
     private static boolean allGroupsFirstLastWithSingleSymbolFilter(QueryModel model, RecordMetadata metadata) {
         final ObjList<QueryColumn> columns = model.getColumns();
         for (int i = 0, n = columns.size(); i < n; i++) {
@@ -279,6 +314,187 @@ public class SqlCodeGenerator implements Mutable {
         return true;
     }
 
+    private static boolean isStatsRangeValueType(int columnType, int valueType) {
+        final int columnTag = ColumnType.tagOf(columnType);
+        final int valueTag = ColumnType.tagOf(valueType);
+        switch (columnTag) {
+            case ColumnType.DATE:
+                // integers are compared to dates as timestamps
+                return valueTag == ColumnType.DATE;
+            case ColumnType.TIMESTAMP:
+                return valueTag == ColumnType.TIMESTAMP || isIntegerType(valueTag);
+            default:
+                return isIntegerType(valueTag) || valueTag == ColumnType.FLOAT || valueTag == ColumnType.DOUBLE;
+        }
+    }
+
+    private static boolean isStatsValueType(int columnType, int valueType) {
+        final int valueTag = ColumnType.tagOf(valueType);
+        if (ColumnType.isString(columnType)) {
+            return valueTag == ColumnType.STRING || valueTag == ColumnType.SYMBOL || valueTag == ColumnType.CHAR;
+        }
+        return isIntegerType(valueTag);
+    }
+
+    private static boolean isIntegerType(int tag) {
+        return tag == ColumnType.BYTE || tag == ColumnType.SHORT || tag == ColumnType.INT || tag == ColumnType.LONG;
+    }
+
+    private static boolean isStatsRangeValue(ExpressionNode node) {
+        switch (node.type) {
+            case ExpressionNode.CONSTANT:
+            case ExpressionNode.BIND_VARIABLE:
+                return true;
+            case ExpressionNode.OPERATION:
+            case FUNCTION:
+                if (node.queryModel != null) {
+                    return false;
+                }
+                if (node.paramCount < 3) {
+                    return (node.lhs == null || isStatsRangeValue(node.lhs)) && (node.rhs == null || isStatsRangeValue(node.rhs));
+                }
+                for (int i = 0, n = node.args.size(); i < n; i++) {
+                    if (!isStatsRangeValue(node.args.getQuick(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void addStatsRange(
+            PartitionStatsFilter statsFilter,
+            ExpressionNode columnNode,
+            ExpressionNode loNode,
+            ExpressionNode hiNode,
+            RecordMetadata readerMeta,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final int columnIndex = readerMeta.getColumnIndexQuiet(columnNode.token);
+        if (!configuration.isPartitionStatsEnabled() || columnIndex < 0 || !PartitionStats.isSupported(readerMeta.getColumnType(columnIndex))) {
+            return;
+        }
+        final int columnType = readerMeta.getColumnType(columnIndex);
+        final Function lo = loNode != null ? compileStatsRangeValue(loNode, columnType, readerMeta, executionContext) : null;
+        if (loNode != null && lo == null) {
+            return;
+        }
+        final Function hi;
+        if (hiNode == loNode) {
+            hi = lo;
+        } else {
+            hi = hiNode != null ? compileStatsRangeValue(hiNode, columnType, readerMeta, executionContext) : null;
+            if (hiNode != null && hi == null) {
+                Misc.free(lo);
+                return;
+            }
+        }
+        statsFilter.add(columnIndex, columnType, lo, hi);
+    }
+
+    // collects predicates of top level conjunction that min/max statistics or bloom filters can rule out
+    private void addStatsRanges(
+            PartitionStatsFilter statsFilter,
+            ExpressionNode node,
+            RecordMetadata readerMeta,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        if (node.queryModel != null) {
+            return;
+        }
+
+        if (node.type == ExpressionNode.OPERATION && node.paramCount == 2) {
+            if (isAndKeyword(node.token)) {
+                addStatsRanges(statsFilter, node.lhs, readerMeta, executionContext);
+                addStatsRanges(statsFilter, node.rhs, readerMeta, executionContext);
+                return;
+            }
+
+            final boolean columnOnLeft;
+            if (node.lhs.type == LITERAL && isStatsRangeValue(node.rhs)) {
+                columnOnLeft = true;
+            } else if (node.rhs.type == LITERAL && isStatsRangeValue(node.lhs)) {
+                columnOnLeft = false;
+            } else {
+                return;
+            }
+
+            final ExpressionNode columnNode = columnOnLeft ? node.lhs : node.rhs;
+            final ExpressionNode valueNode = columnOnLeft ? node.rhs : node.lhs;
+            if (Chars.equals(node.token, '=')) {
+                addStatsRange(statsFilter, columnNode, valueNode, valueNode, readerMeta, executionContext);
+                statsValueNodes.clear();
+                statsValueNodes.add(valueNode);
+                addStatsValues(statsFilter, columnNode, statsValueNodes, readerMeta, executionContext);
+            } else if (Chars.equals(node.token, '<') || Chars.equals(node.token, "<=")) {
+                addStatsRange(statsFilter, columnNode, columnOnLeft ? null : valueNode, columnOnLeft ? valueNode : null, readerMeta, executionContext);
+            } else if (Chars.equals(node.token, '>') || Chars.equals(node.token, ">=")) {
+                addStatsRange(statsFilter, columnNode, columnOnLeft ? valueNode : null, columnOnLeft ? null : valueNode, readerMeta, executionContext);
+            }
+            return;
+        }
+
+        if (node.type == FUNCTION && node.paramCount == 3 && isBetweenKeyword(node.token)) {
+            final ExpressionNode columnNode = node.args.getQuick(2);
+            final ExpressionNode loNode = node.args.getQuick(1);
+            final ExpressionNode hiNode = node.args.getQuick(0);
+            if (columnNode.type == LITERAL && isStatsRangeValue(loNode) && isStatsRangeValue(hiNode)) {
+                addStatsRange(statsFilter, columnNode, loNode, hiNode, readerMeta, executionContext);
+            }
+            return;
+        }
+
+        if (node.type == FUNCTION && node.paramCount > 1 && isInKeyword(node.token)) {
+            statsValueNodes.clear();
+            final ExpressionNode columnNode;
+            if (node.paramCount == 2) {
+                columnNode = node.lhs;
+                statsValueNodes.add(node.rhs);
+            } else {
+                columnNode = node.args.getLast();
+                for (int i = 0, n = node.paramCount - 1; i < n; i++) {
+                    statsValueNodes.add(node.args.getQuick(i));
+                }
+            }
+            if (columnNode.type != LITERAL) {
+                return;
+            }
+            for (int i = 0, n = statsValueNodes.size(); i < n; i++) {
+                if (!isStatsRangeValue(statsValueNodes.getQuick(i))) {
+                    return;
+                }
+            }
+            addStatsValues(statsFilter, columnNode, statsValueNodes, readerMeta, executionContext);
+        }
+    }
+
+    private void addStatsValues(
+            PartitionStatsFilter statsFilter,
+            ExpressionNode columnNode,
+            ObjList<ExpressionNode> valueNodes,
+            RecordMetadata readerMeta,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final int columnIndex = readerMeta.getColumnIndexQuiet(columnNode.token);
+        if (!configuration.isPartitionBloomFilterEnabled() || columnIndex < 0 || !PartitionBloomFilter.isSupported(readerMeta.getColumnType(columnIndex))) {
+            return;
+        }
+        final int columnType = readerMeta.getColumnType(columnIndex);
+        final ObjList<Function> values = new ObjList<>(valueNodes.size());
+        for (int i = 0, n = valueNodes.size(); i < n; i++) {
+            final Function function = functionParser.parseFunction(valueNodes.getQuick(i), readerMeta, executionContext);
+            if (!(function.isConstant() || function.isRuntimeConstant()) || !isStatsValueType(columnType, function.getType())) {
+                Misc.free(function);
+                Misc.freeObjList(values);
+                return;
+            }
+            values.add(function);
+        }
+        statsFilter.add(columnIndex, columnType, values);
+    }
+
     private RecordMetadata calculateSetMetadata(RecordMetadata masterMetadata) {
         return GenericRecordMetadata.removeTimestamp(masterMetadata);
     }
@@ -291,6 +507,42 @@ public class SqlCodeGenerator implements Mutable {
         return null;
     }
 
+    @Nullable
+    private Function compileStatsRangeValue(
+            ExpressionNode node,
+            int columnType,
+            RecordMetadata readerMeta,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final Function function = functionParser.parseFunction(node, readerMeta, executionContext);
+        if ((function.isConstant() || function.isRuntimeConstant()) && isStatsRangeValueType(columnType, function.getType())) {
+            return function;
+        }
+        return Misc.free(function);
+    }
+
+    @Nullable
+    private PartitionStatsFilter compileStatsFilter(
+            ExpressionNode filter,
+            RecordMetadata readerMeta,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        if (!configuration.isPartitionStatsEnabled() && !configuration.isPartitionBloomFilterEnabled()) {
+            return null;
+        }
+        final PartitionStatsFilter statsFilter = new PartitionStatsFilter();
+        try {
+            addStatsRanges(statsFilter, filter, readerMeta, executionContext);
+        } catch (Throwable e) {
+            Misc.free(statsFilter);
+            throw e;
+        }
+        if (statsFilter.size() == 0) {
+            return Misc.free(statsFilter);
+        }
+        return statsFilter;
+    }
+
     private RecordCursorFactory createAsOfJoin(
             RecordMetadata metadata,
             RecordCursorFactory master,
@@ -483,7 +735,9 @@ public class SqlCodeGenerator implements Mutable {
             RecordMetadata metadata,
             RecordCursorFactory master,
             RecordCursorFactory slave,
-            int joinType
+            int joinType,
+            boolean keepOrder,
+            int workerCount
     ) {
         /*
          * JoinContext provides the following information:
@@ -520,6 +774,7 @@ public class SqlCodeGenerator implements Mutable {
             if (joinType == JOIN_INNER) {
                 return new HashJoinLightRecordCursorFactory(
                         configuration,
+                        asm,
                         metadata,
                         master,
                         slave,
@@ -527,7 +782,10 @@ public class SqlCodeGenerator implements Mutable {
                         valueTypes,
                         masterKeySink,
                         slaveKeySink,
-                        masterMetadata.getColumnCount()
+                        getJoinSpillSink(masterMetadata),
+                        masterMetadata.getColumnCount(),
+                        keepOrder,
+                        workerCount
                 );
             }
 
@@ -555,6 +813,7 @@ public class SqlCodeGenerator implements Mutable {
         if (joinType == JOIN_INNER) {
             return new HashJoinRecordCursorFactory(
                     configuration,
+                    asm,
                     metadata,
                     master,
                     slave,
@@ -563,7 +822,10 @@ public class SqlCodeGenerator implements Mutable {
                     masterKeySink,
                     slaveKeySink,
                     slaveSink,
-                    masterMetadata.getColumnCount()
+                    getJoinSpillSink(masterMetadata),
+                    masterMetadata.getColumnCount(),
+                    keepOrder,
+                    workerCount
             );
         }
 
@@ -676,6 +938,12 @@ public class SqlCodeGenerator implements Mutable {
         return generateQuery(model, executionContext, true);
     }
 
+    // copies all columns of master records that inner hash join spills to disk
+    private RecordSink getJoinSpillSink(RecordMetadata masterMetadata) {
+        entityColumnFilter.of(masterMetadata.getColumnCount());
+        return RecordSinkFactory.getInstance(asm, masterMetadata, entityColumnFilter, false);
+    }
+
     private RecordCursorFactory generateFilter(RecordCursorFactory factory, QueryModel model, SqlExecutionContext executionContext) throws SqlException {
         final ExpressionNode filter = model.getWhereClause();
         return filter == null ? factory : generateFilter0(factory, model, executionContext, filter);
@@ -697,15 +965,445 @@ public class SqlCodeGenerator implements Mutable {
                 f.close();
             }
         }
+
+        if (configuration.isSqlFilterCompilerEnabled()
+                && factory instanceof DataFrameRecordCursorFactory
+                && ((DataFrameRecordCursorFactory) factory).isParallelFilterSupported()) {
+            final DataFrameRecordCursorFactory dataFrameFactory = (DataFrameRecordCursorFactory) factory;
+            final CompiledFilter compiledFilter = filterCompiler.compile(f, dataFrameFactory.getColumnIndexes());
+            if (compiledFilter != null) {
+                // compiled filter reads fixed width columns straight from memory, including
+                // symbol keys, which makes it safe to share between workers
+                final int workerCount = configuration.isSqlParallelFilterEnabled() && executionContext.getWorkerCount() > 1
+                        ? executionContext.getWorkerCount()
+                        : 0;
+                tempFilters.clear();
+                tempFilters.add(f);
+                return new ParallelFilteredRecordCursorFactory(configuration, dataFrameFactory, tempFilters, compiledFilter, workerCount);
+            }
+        }
+
+        if (isParallelFilterSupported(factory, filter, executionContext)) {
+            return generateParallelFilter((DataFrameRecordCursorFactory) factory, f, filter, executionContext);
+        }
         return new FilteredRecordCursorFactory(factory, f);
     }
 
+    private RecordCursorFactory generateParallelFilter(
+            DataFrameRecordCursorFactory factory,
+            Function filter,
+            ExpressionNode filterExpr,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        // each worker evaluates its own instance of the filter, the compiled
+        // filter is used by the thread that owns the cursor
+        final int workerCount = executionContext.getWorkerCount();
+        tempFilters.clear();
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                tempFilters.add(compileFilter(filterExpr, factory.getMetadata(), executionContext));
+            }
+        } catch (Throwable e) {
+            Misc.freeObjList(tempFilters);
+            Misc.free(filter);
+            throw e;
+        }
+        tempFilters.add(filter);
+        return new ParallelFilteredRecordCursorFactory(configuration, factory, tempFilters, null, workerCount);
+    }
+
+    private RecordCursorFactory generateParallelGroupBy(
+            QueryModel model,
+            RecordCursorFactory factory,
+            RecordMetadata groupByMetadata,
+            ObjList<GroupByFunction> groupByFunctions,
+            ObjList<Function> recordFunctions,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final ObjList<ObjList<Function>> virtualFunctions;
+        final ObjList<ObjList<GroupByFunction>> workerFunctions;
+        try {
+            virtualFunctions = prepareWorkerVirtualFunctions(model, factory, executionContext);
+        } catch (Throwable e) {
+            Misc.freeObjList(recordFunctions);
+            throw e;
+        }
+        try {
+            workerFunctions = prepareWorkerGroupByFunctions(
+                    model,
+                    factory.getMetadata(),
+                    groupByFunctions,
+                    recordFunctions,
+                    false,
+                    executionContext
+            );
+        } catch (Throwable e) {
+            freeFunctionLists(virtualFunctions);
+            throw e;
+        }
+        return new ParallelGroupByRecordCursorFactory(
+                configuration,
+                factory,
+                getParallelGroupByColumnIndexes(factory),
+                getParallelGroupByCompiledFilter(factory),
+                virtualFunctions,
+                listColumnFilterA,
+                asm,
+                keyTypes,
+                valueTypes,
+                groupByMetadata,
+                workerFunctions,
+                recordFunctions,
+                executionContext.getWorkerCount()
+        );
+    }
+
+    private RecordCursorFactory generateParallelSampleBy(
+            QueryModel model,
+            RecordCursorFactory factory,
+            RecordMetadata groupByMetadata,
+            ObjList<GroupByFunction> groupByFunctions,
+            ObjList<Function> recordFunctions,
+            TimestampSampler timestampSampler,
+            int timestampIndex,
+            Function offsetFunc,
+            int offsetFuncPos,
+            int fillMode,
+            ObjList<ExpressionNode> sampleByFill,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final ObjList<Function> placeholderFunctions;
+        try {
+            if (fillMode == ParallelSampleByFillRecordCursorFactory.FILL_NULL) {
+                placeholderFunctions = SampleByFillNullRecordCursorFactory.createPlaceholderFunctions(recordFunctions, recordFunctionPositions);
+            } else if (fillMode == ParallelSampleByFillRecordCursorFactory.FILL_VALUE) {
+                placeholderFunctions = SampleByFillValueRecordCursorFactory.createPlaceholderFunctions(recordFunctions, recordFunctionPositions, sampleByFill);
+            } else {
+                placeholderFunctions = null;
+            }
+        } catch (Throwable e) {
+            Misc.freeObjList(recordFunctions);
+            throw e;
+        }
+
+        // sample bucket is the last map key, sampled timestamp is read from it
+        final int bucketIndex = valueTypes.getColumnCount() + keyTypes.getColumnCount();
+        keyTypes.add(ColumnType.TIMESTAMP);
+        for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+            if (recordFunctions.getQuick(i) == null) {
+                recordFunctions.setQuick(i, TimestampColumn.newInstance(bucketIndex));
+            }
+        }
+
+        final ObjList<ObjList<Function>> virtualFunctions;
+        final ObjList<ObjList<GroupByFunction>> workerFunctions;
+        try {
+            virtualFunctions = prepareWorkerVirtualFunctions(model, factory, executionContext);
+        } catch (Throwable e) {
+            Misc.freeObjList(recordFunctions);
+            throw e;
+        }
+        try {
+            workerFunctions = prepareWorkerGroupByFunctions(
+                    model,
+                    factory.getMetadata(),
+                    groupByFunctions,
+                    recordFunctions,
+                    true,
+                    executionContext
+            );
+        } catch (Throwable e) {
+            freeFunctionLists(virtualFunctions);
+            throw e;
+        }
+        if (fillMode == ParallelSampleByFillRecordCursorFactory.FILL_NONE) {
+            return new ParallelSampleByRecordCursorFactory(
+                    configuration,
+                    factory,
+                    getParallelGroupByColumnIndexes(factory),
+                    getParallelGroupByCompiledFilter(factory),
+                    virtualFunctions,
+                    listColumnFilterA,
+                    asm,
+                    keyTypes,
+                    valueTypes,
+                    groupByMetadata,
+                    workerFunctions,
+                    recordFunctions,
+                    executionContext.getWorkerCount(),
+                    timestampSampler,
+                    timestampIndex,
+                    offsetFunc,
+                    offsetFuncPos
+            );
+        }
+        return new ParallelSampleByFillRecordCursorFactory(
+                configuration,
+                factory,
+                getParallelGroupByColumnIndexes(factory),
+                getParallelGroupByCompiledFilter(factory),
+                virtualFunctions,
+                listColumnFilterA,
+                asm,
+                keyTypes,
+                valueTypes,
+                groupByMetadata,
+                workerFunctions,
+                recordFunctions,
+                executionContext.getWorkerCount(),
+                timestampSampler,
+                timestampIndex,
+                offsetFunc,
+                offsetFuncPos,
+                fillMode,
+                placeholderFunctions
+        );
+    }
+
+    private static IntList getParallelGroupByColumnIndexes(RecordCursorFactory factory) {
+        if (factory instanceof VirtualRecordCursorFactory) {
+            return getParallelGroupByColumnIndexes(((VirtualRecordCursorFactory) factory).getBaseFactory());
+        }
+        if (factory instanceof ParallelFilteredRecordCursorFactory) {
+            return ((ParallelFilteredRecordCursorFactory) factory).getColumnIndexes();
+        }
+        if (factory instanceof TableReaderRecordCursorFactory) {
+            return ((TableReaderRecordCursorFactory) factory).getColumnIndexes();
+        }
+        return ((DataFrameRecordCursorFactory) factory).getColumnIndexes();
+    }
+
+    @Nullable
+    private static CompiledFilter getParallelGroupByCompiledFilter(RecordCursorFactory factory) {
+        if (factory instanceof VirtualRecordCursorFactory) {
+            return getParallelGroupByCompiledFilter(((VirtualRecordCursorFactory) factory).getBaseFactory());
+        }
+        if (factory instanceof ParallelFilteredRecordCursorFactory) {
+            return ((ParallelFilteredRecordCursorFactory) factory).getCompiledFilter();
+        }
+        return null;
+    }
+
+    private boolean isParallelGroupBySupported(
+            QueryModel model,
+            RecordCursorFactory factory,
+            ObjList<GroupByFunction> groupByFunctions,
+            SqlExecutionContext executionContext
+    ) {
+        if (executionContext.getWorkerCount() < 2) {
+            return false;
+        }
+
+        // workers aggregate table rows directly, base has to be either plain table
+        // scan or a scan with compiled filter, which is safe to share between workers
+        RecordCursorFactory scanFactory = factory;
+        if (factory instanceof VirtualRecordCursorFactory) {
+            // columns computed from the scan, such as hour(timestamp), are evaluated by workers
+            final QueryModel nested = model.getNestedModel();
+            if (nested == null
+                    || nested.getSelectModelType() != QueryModel.SELECT_MODEL_VIRTUAL
+                    || nested.getColumns().size() != factory.getMetadata().getColumnCount()) {
+                return false;
+            }
+            scanFactory = ((VirtualRecordCursorFactory) factory).getBaseFactory();
+            if (!isParallelVirtualColumnSafe(nested.getColumns(), scanFactory.getMetadata())) {
+                return false;
+            }
+        }
+
+        if (scanFactory instanceof ParallelFilteredRecordCursorFactory) {
+            if (((ParallelFilteredRecordCursorFactory) scanFactory).getCompiledFilter() == null) {
+                return false;
+            }
+        } else if (!(scanFactory instanceof TableReaderRecordCursorFactory)
+                && (!(scanFactory instanceof DataFrameRecordCursorFactory) || !((DataFrameRecordCursorFactory) scanFactory).isParallelFilterSupported())) {
+            return false;
+        }
+
+        for (int i = 0, n = groupByFunctions.size(); i < n; i++) {
+            if (!groupByFunctions.getQuick(i).isMergeSupported()) {
+                return false;
+            }
+        }
+
+        for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+            switch (ColumnType.tagOf(keyTypes.getColumnType(i))) {
+                case ColumnType.STRING:
+                case ColumnType.BINARY:
+                case ColumnType.LONG256:
+                    return false;
+                default:
+                    break;
+            }
+        }
+
+        final RecordMetadata metadata = factory.getMetadata();
+        final ObjList<QueryColumn> columns = model.getColumns();
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            final ExpressionNode node = columns.getQuick(i).getAst();
+            if (node.type != LITERAL && !isParallelFilterSafe(node, metadata)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isParallelVirtualColumnSafe(ObjList<QueryColumn> columns, RecordMetadata metadata) {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            final ExpressionNode node = columns.getQuick(i).getAst();
+            if (node.type == LITERAL) {
+                // selected columns can be used as keys, symbol keys are read as int
+                final int columnIndex = metadata.getColumnIndexQuiet(node.token);
+                if (columnIndex < 0) {
+                    return false;
+                }
+                switch (ColumnType.tagOf(metadata.getColumnType(columnIndex))) {
+                    case ColumnType.STRING:
+                    case ColumnType.BINARY:
+                    case ColumnType.LONG256:
+                        return false;
+                    default:
+                        break;
+                }
+            } else if (!isParallelFilterSafe(node, metadata)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // each worker aggregates into its own map with its own instances of group-by
+    // functions, functions of the cursor owner go last
+    private ObjList<ObjList<GroupByFunction>> prepareWorkerGroupByFunctions(
+            QueryModel model,
+            RecordMetadata metadata,
+            ObjList<GroupByFunction> groupByFunctions,
+            ObjList<Function> recordFunctions,
+            boolean sampleBy,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final int workerCount = executionContext.getWorkerCount();
+        final ObjList<ObjList<GroupByFunction>> workerFunctions = new ObjList<>(workerCount + 1);
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                final ObjList<GroupByFunction> functions = new ObjList<>(groupByFunctions.size());
+                workerFunctions.add(functions);
+                arrayColumnTypes.clear();
+                if (sampleBy) {
+                    // keep value indexes in line with those of the cursor owner
+                    arrayColumnTypes.add(ColumnType.TIMESTAMP);
+                }
+                GroupByUtils.prepareGroupByFunctions(
+                        model,
+                        metadata,
+                        functionParser,
+                        executionContext,
+                        functions,
+                        groupByFunctionPositions,
+                        arrayColumnTypes
+                );
+            }
+        } catch (Throwable e) {
+            freeFunctionLists(workerFunctions);
+            Misc.freeObjList(recordFunctions);
+            throw e;
+        }
+        workerFunctions.add(groupByFunctions);
+        return workerFunctions;
+    }
+
+    // virtual columns of the base factory are evaluated by every worker with its own
+    // instances of functions, functions of the cursor owner go last
+    @Nullable
+    private ObjList<ObjList<Function>> prepareWorkerVirtualFunctions(
+            QueryModel model,
+            RecordCursorFactory factory,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        if (!(factory instanceof VirtualRecordCursorFactory)) {
+            return null;
+        }
+
+        final ObjList<QueryColumn> columns = model.getNestedModel().getColumns();
+        final RecordMetadata metadata = ((VirtualRecordCursorFactory) factory).getBaseFactory().getMetadata();
+        final int slotCount = executionContext.getWorkerCount() + 1;
+        final ObjList<ObjList<Function>> virtualFunctions = new ObjList<>(slotCount);
+        try {
+            for (int i = 0; i < slotCount; i++) {
+                final ObjList<Function> functions = new ObjList<>(columns.size());
+                virtualFunctions.add(functions);
+                for (int j = 0, n = columns.size(); j < n; j++) {
+                    final Function function = functionParser.parseFunction(columns.getQuick(j).getAst(), metadata, executionContext);
+                    if (function.isUndefined()) {
+                        function.assignType(ColumnType.STRING, executionContext.getBindVariableService());
+                    }
+                    functions.add(function);
+                }
+            }
+        } catch (Throwable e) {
+            freeFunctionLists(virtualFunctions);
+            throw e;
+        }
+        return virtualFunctions;
+    }
+
+    private static void freeFunctionLists(@Nullable ObjList<? extends ObjList<? extends Function>> functionLists) {
+        if (functionLists != null) {
+            for (int i = 0, n = functionLists.size(); i < n; i++) {
+                Misc.freeObjList(functionLists.getQuick(i));
+            }
+        }
+    }
+
+    private boolean isParallelFilterSupported(RecordCursorFactory factory, ExpressionNode filter, SqlExecutionContext executionContext) {
+        return configuration.isSqlParallelFilterEnabled()
+                && executionContext.getWorkerCount() > 1
+                && factory instanceof DataFrameRecordCursorFactory
+                && ((DataFrameRecordCursorFactory) factory).isParallelFilterSupported()
+                && isParallelFilterSafe(filter, factory.getMetadata());
+    }
+
+    // Workers share table reader with the cursor. Variable length and symbol columns are read
+    // via flyweight objects owned by the reader, filters touching them stay single-threaded.
+    private static boolean isParallelFilterSafe(ExpressionNode node, RecordMetadata metadata) {
+        if (node == null) {
+            return true;
+        }
+
+        switch (node.type) {
+            case ExpressionNode.QUERY:
+                return false;
+            case ExpressionNode.LITERAL:
+                final int columnIndex = metadata.getColumnIndexQuiet(node.token);
+                if (columnIndex < 0) {
+                    return false;
+                }
+                switch (ColumnType.tagOf(metadata.getColumnType(columnIndex))) {
+                    case ColumnType.STRING:
+                    case ColumnType.SYMBOL:
+                    case ColumnType.BINARY:
+                    case ColumnType.LONG256:
+                        return false;
+                    default:
+                        return true;
+                }
+            default:
+                for (int i = 0, n = node.args.size(); i < n; i++) {
+                    if (!isParallelFilterSafe(node.args.getQuick(i), metadata)) {
+                        return false;
+                    }
+                }
+                return isParallelFilterSafe(node.lhs, metadata) && isParallelFilterSafe(node.rhs, metadata);
+        }
+    }
+
     private RecordCursorFactory generateFunctionQuery(QueryModel model) throws SqlException {
         final Function function = model.getTableNameFunction();
         assert function != null;
         if (!ColumnType.isCursor(function.getType())) {
             throw SqlException.position(model.getTableName().position).put("function must return CURSOR [actual=").put(ColumnType.nameOf(function.getType())).put(']');
         }
+        queryReadsCursorFunction = true;
         return function.getRecordCursorFactory();
     }
 
@@ -885,7 +1583,11 @@ public class SqlCodeGenerator implements Mutable {
                                         createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
                                         master,
                                         slave,
-                                        joinType
+                                        joinType,
+                                        // join reports master timestamp, partitioned inner join has to restore master order then
+                                        masterMetadata.getTimestampIndex() != -1,
+                                        // partitions of large inner joins are joined on the worker pool
+                                        executionContext.getWorkerCount() > 1 ? executionContext.getWorkerCount() : 0
                                 );
                                 masterAlias = null;
                                 break;
@@ -1159,7 +1861,7 @@ public class SqlCodeGenerator implements Mutable {
         return generateSubQuery(model, executionContext);
     }
 
-    private RecordCursorFactory generateOrderBy(RecordCursorFactory recordCursorFactory, QueryModel model) throws SqlException {
+    private RecordCursorFactory generateOrderBy(RecordCursorFactory recordCursorFactory, QueryModel model, SqlExecutionContext executionContext) throws SqlException {
         if (recordCursorFactory.followedOrderByAdvice()) {
             return recordCursorFactory;
         }
@@ -1224,6 +1926,15 @@ public class SqlCodeGenerator implements Mutable {
                 orderedMetadata = GenericRecordMetadata.copyOfSansTimestamp(metadata);
 
                 if (recordCursorFactory.recordCursorSupportsRandomAccess()) {
+                    final long limit = getSortLimit(model, executionContext);
+                    if (limit > -1) {
+                        return new LimitedSizeSortedLightRecordCursorFactory(
+                                orderedMetadata,
+                                recordCursorFactory,
+                                recordComparatorCompiler.compile(metadata, listColumnFilterA),
+                                limit
+                        );
+                    }
                     return new SortedLightRecordCursorFactory(
                             configuration,
                             orderedMetadata,
@@ -1279,7 +1990,8 @@ public class SqlCodeGenerator implements Mutable {
                                 model,
                                 executionContext
                         ),
-                        model
+                        model,
+                        executionContext
                 ),
                 model,
                 executionContext
@@ -1344,23 +2056,15 @@ public class SqlCodeGenerator implements Mutable {
                 valueTypes.clear();
                 listColumnFilterA.clear();
 
-                if (fillCount == 1 && Chars.equalsLowerCaseAscii(sampleByFill.getQuick(0).token, "linear")) {
-                    return new SampleByInterpolateRecordCursorFactory(
-                            configuration,
-                            factory,
-                            timestampSampler,
-                            model,
-                            listColumnFilterA,
-                            functionParser,
-                            executionContext,
-                            asm,
-                            keyTypes,
-                            valueTypes,
-                            entityColumnFilter,
-                            recordFunctionPositions,
-                            groupByFunctionPositions,
-                            timestampIndex
-                    );
+                final int fillMode = getSampleByFillMode(sampleByFill);
+                final boolean isParallel = timezoneName == null
+                        && (offset == null || offsetFunc.isConstant())
+                        && configuration.isSqlParallelSampleByEnabled()
+                        && ParallelSampleByRecordCursorFactory.isSamplerSupported(timestampSampler)
+                        && executionContext.getWorkerCount() > 1;
+
+                if (fillMode == ParallelSampleByFillRecordCursorFactory.FILL_LINEAR && !isParallel) {
+                    return generateSampleByInterpolate(model, factory, timestampSampler, timestampIndex, executionContext);
                 }
 
                 final int columnCount = model.getColumns().size();
@@ -1396,7 +2100,7 @@ public class SqlCodeGenerator implements Mutable {
                 );
 
 
-                boolean isFillNone = fillCount == 0 || fillCount == 1 && Chars.equalsLowerCaseAscii(sampleByFill.getQuick(0).token, "none");
+                boolean isFillNone = fillMode == ParallelSampleByFillRecordCursorFactory.FILL_NONE;
                 boolean allGroupsFirstLast = isFillNone && allGroupsFirstLastWithSingleSymbolFilter(model, metadata);
                 if (allGroupsFirstLast) {
                     SingleSymbolFilter symbolFilter = factory.convertToSampleByIndexDataFrameCursorFactory();
@@ -1418,7 +2122,36 @@ public class SqlCodeGenerator implements Mutable {
                     }
                 }
 
-                if (fillCount == 1 && Chars.equalsLowerCaseAscii(sampleByFill.getQuick(0).token, "prev")) {
+                if (isParallel
+                        && isParallelGroupBySupported(model, factory, groupByFunctions, executionContext)
+                        && (isFillNone || ParallelSampleByFillRecordCursorFactory.isFillSupported(fillMode, groupByFunctions, recordFunctions))) {
+                    // gaps are filled in a pass over merged map ordered by sample bucket
+                    return generateParallelSampleBy(
+                            model,
+                            factory,
+                            groupByMetadata,
+                            groupByFunctions,
+                            recordFunctions,
+                            timestampSampler,
+                            timestampIndex,
+                            offsetFunc,
+                            offsetFuncPos,
+                            fillMode,
+                            sampleByFill,
+                            executionContext
+                    );
+                }
+
+                if (fillMode == ParallelSampleByFillRecordCursorFactory.FILL_LINEAR) {
+                    // interpolation prepares its own functions
+                    Misc.freeObjList(recordFunctions);
+                    keyTypes.clear();
+                    valueTypes.clear();
+                    listColumnFilterA.clear();
+                    return generateSampleByInterpolate(model, factory, timestampSampler, timestampIndex, executionContext);
+                }
+
+                if (fillMode == ParallelSampleByFillRecordCursorFactory.FILL_PREV) {
                     if (keyTypes.getColumnCount() == 0) {
                         return new SampleByFillPrevNotKeyedRecordCursorFactory(
                                 factory,
@@ -1455,7 +2188,6 @@ public class SqlCodeGenerator implements Mutable {
                 }
 
                 if (isFillNone) {
-
                     if (keyTypes.getColumnCount() == 0) {
                         // this sample by is not keyed
                         return new SampleByFillNoneNotKeyedRecordCursorFactory(
@@ -1492,7 +2224,7 @@ public class SqlCodeGenerator implements Mutable {
                     );
                 }
 
-                if (fillCount == 1 && isNullKeyword(sampleByFill.getQuick(0).token)) {
+                if (fillMode == ParallelSampleByFillRecordCursorFactory.FILL_NULL) {
                     if (keyTypes.getColumnCount() == 0) {
                         return new SampleByFillNullNotKeyedRecordCursorFactory(
                                 factory,
@@ -1578,6 +2310,31 @@ public class SqlCodeGenerator implements Mutable {
         }
     }
 
+    private RecordCursorFactory generateSampleByInterpolate(
+            QueryModel model,
+            RecordCursorFactory factory,
+            TimestampSampler timestampSampler,
+            int timestampIndex,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        return new SampleByInterpolateRecordCursorFactory(
+                configuration,
+                factory,
+                timestampSampler,
+                model,
+                listColumnFilterA,
+                functionParser,
+                executionContext,
+                asm,
+                keyTypes,
+                valueTypes,
+                entityColumnFilter,
+                recordFunctionPositions,
+                groupByFunctionPositions,
+                timestampIndex
+        );
+    }
+
     private RecordCursorFactory generateSelect(
             QueryModel model,
             SqlExecutionContext executionContext,
@@ -1611,6 +2368,7 @@ public class SqlCodeGenerator implements Mutable {
         final int columnCount = columns.size();
         grouppedAnalytic.clear();
         ObjList<AnalyticFunction> naturalOrderFunctions = null;
+        final ObjList<AnalyticFunction> analyticFunctions = new ObjList<>();
 
         valueTypes.clear();
         ArrayColumnTypes chainTypes = valueTypes;
@@ -1673,11 +2431,6 @@ public class SqlCodeGenerator implements Mutable {
             final QueryColumn qc = columns.getQuick(i);
             if (qc instanceof AnalyticColumn) {
                 final AnalyticColumn ac = (AnalyticColumn) qc;
-                final ExpressionNode ast = qc.getAst();
-                if (ast.paramCount > 1) {
-                    throw SqlException.$(ast.position, "Too many arguments");
-                }
-
                 ObjList<Function> partitionBy = null;
                 int psz = ac.getPartitionBy().size();
                 if (psz > 0) {
@@ -1715,18 +2468,52 @@ public class SqlCodeGenerator implements Mutable {
 
 
                 final int osz = ac.getOrderBy().size();
+
+                // frame defaults to rows from partition start to current row when function is ordered
+                // and to the whole partition otherwise
+                int framingMode = ac.getFramingMode();
+                long rowsLo = ac.getRowsLo();
+                long rowsHi = ac.getRowsHi();
+                if (framingMode == AnalyticColumn.FRAMING_DEFAULT) {
+                    framingMode = AnalyticColumn.FRAMING_RANGE;
+                    rowsLo = AnalyticColumn.UNBOUNDED_PRECEDING;
+                    rowsHi = osz > 0 ? 0 : AnalyticColumn.UNBOUNDED_FOLLOWING;
+                }
+
+                int orderByIndex = -1;
+                int orderByDirection = QueryModel.ORDER_DIRECTION_ASCENDING;
+                int orderByType = ColumnType.UNDEFINED;
+                if (osz == 1) {
+                    orderByIndex = chainMetadata.getColumnIndexQuiet(ac.getOrderBy().getQuick(0).token);
+                    if (orderByIndex > -1) {
+                        orderByDirection = ac.getOrderByDirection().getQuick(0);
+                        orderByType = chainMetadata.getColumnType(orderByIndex);
+                    }
+                }
+
                 executionContext.configureAnalyticContext(
                         partitionByRecord,
                         partitionBySink,
                         keyTypes,
                         osz > 0,
-                        base.recordCursorSupportsRandomAccess()
+                        base.recordCursorSupportsRandomAccess(),
+                        framingMode,
+                        rowsLo,
+                        rowsHi,
+                        ac.getFramePosition(),
+                        orderByIndex,
+                        orderByDirection,
+                        orderByType
                 );
 
-                final Function f = functionParser.parseFunction(ac.getAst(), baseMetadata, executionContext);
-                // todo: throw an error when non-analytic function is called in analytic context
-                assert f instanceof AnalyticFunction;
+                // function is evaluated on chain record, its arguments are resolved against chain metadata
+                final Function f = functionParser.parseAnalyticFunction(ac.getAst(), chainMetadata, executionContext);
+                if (!(f instanceof AnalyticFunction)) {
+                    Misc.free(f);
+                    throw SqlException.$(qc.getAst().position, "non-analytic function called in analytic context");
+                }
                 AnalyticFunction analyticFunction = (AnalyticFunction) f;
+                analyticFunctions.add(analyticFunction);
 
                 // analyze order by clause on the current model and optimise out
                 // order by on analytic function if it matches the one on the model
@@ -1743,7 +2530,12 @@ public class SqlCodeGenerator implements Mutable {
                         }
                     }
                 } else {
-                    dismissOrder = false;
+                    // ascending order by designated timestamp of the base is the order base cursor is in
+                    dismissOrder = osz == 1
+                            && orderByIndex > -1
+                            && orderByDirection == QueryModel.ORDER_DIRECTION_ASCENDING
+                            && baseMetadata.getTimestampIndex() > -1
+                            && listColumnFilterB.getQuick(orderByIndex) == baseMetadata.getTimestampIndex();
                 }
 
                 if (osz > 0 && !dismissOrder) {
@@ -1784,6 +2576,33 @@ public class SqlCodeGenerator implements Mutable {
             }
         }
 
+        // chain column to base column cross index, analytic columns are not in the base
+        final IntList columnCrossIndex = new IntList(chainTypes.getColumnCount());
+        for (int i = 0, n = chainTypes.getColumnCount(); i < n; i++) {
+            columnCrossIndex.add(i < columnCount && columns.getQuick(i) instanceof AnalyticColumn ? -1 : listColumnFilterB.getQuick(i));
+        }
+
+        if (grouppedAnalytic.size() == 0 && streams(analyticFunctions)) {
+            // all functions are in the order of base cursor and need only the preceding records
+            final ObjList<Function> functions = new ObjList<>(columnCount);
+            int analyticIndex = 0;
+            for (int i = 0; i < columnCount; i++) {
+                final QueryColumn qc = columns.getQuick(i);
+                if (qc instanceof AnalyticColumn) {
+                    functions.add(analyticFunctions.getQuick(analyticIndex++));
+                } else {
+                    functions.add(FunctionParser.createColumn(qc.getAst().position, qc.getAst().token, chainMetadata));
+                }
+            }
+            return new AnalyticRecordCursorFactory(
+                    base,
+                    factoryMetadata,
+                    columnCrossIndex,
+                    functions,
+                    analyticFunctions
+            );
+        }
+
         final ObjList<RecordComparator> analyticComparators = new ObjList<>(grouppedAnalytic.size());
         final ObjList<ObjList<AnalyticFunction>> functionGroups = new ObjList<>(grouppedAnalytic.size());
         for (ObjObjHashMap.Entry<IntList, ObjList<AnalyticFunction>> e : grouppedAnalytic) {
@@ -1805,12 +2624,22 @@ public class SqlCodeGenerator implements Mutable {
                 recordSink,
                 factoryMetadata,
                 chainTypes,
+                columnCrossIndex,
                 analyticComparators,
                 functionGroups,
                 naturalOrderFunctions
         );
     }
 
+    private static boolean streams(ObjList<AnalyticFunction> functions) {
+        for (int i = 0, n = functions.size(); i < n; i++) {
+            if (functions.getQuick(i).getPassCount() != AnalyticFunction.STREAM) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private RecordCursorFactory generateSelectChoose(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
         final RecordCursorFactory factory = generateSubQuery(model, executionContext);
         final RecordMetadata metadata = factory.getMetadata();
@@ -2170,6 +2999,10 @@ public class SqlCodeGenerator implements Mutable {
                 );
             }
 
+            if (configuration.isSqlParallelGroupByEnabled() && isParallelGroupBySupported(model, factory, groupByFunctions, executionContext)) {
+                return generateParallelGroupBy(model, factory, groupByMetadata, groupByFunctions, recordFunctions, executionContext);
+            }
+
             return new io.questdb.griffin.engine.groupby.GroupByRecordCursorFactory(
                     configuration,
                     factory,
@@ -2335,6 +3168,7 @@ public class SqlCodeGenerator implements Mutable {
                 model.getTableVersion())
         ) {
             final RecordMetadata readerMeta = reader.getMetadata();
+            queryTableNames.add(reader.getTableName());
 
             // create metadata based on top-down columns that are required
 
@@ -2511,13 +3345,18 @@ public class SqlCodeGenerator implements Mutable {
 
                 // below code block generates index-based filter
 
+                // filter that does not use index can skip data frames by column min/max statistics
+                final PartitionStatsFilter statsFilter = intrinsicModel.keyColumn == null && intrinsicModel.filter != null
+                        ? compileStatsFilter(intrinsicModel.filter, readerMeta, executionContext)
+                        : null;
+
                 final boolean intervalHitsOnlyOnePartition;
                 if (intrinsicModel.hasIntervalFilters()) {
                     RuntimeIntrinsicIntervalModel intervalModel = intrinsicModel.buildIntervalModel();
-                    dfcFactory = new IntervalFwdDataFrameCursorFactory(engine, tableName, model.getTableId(), model.getTableVersion(),  intervalModel, readerTimestampIndex);
+                    dfcFactory = new IntervalFwdDataFrameCursorFactory(engine, tableName, model.getTableId(), model.getTableVersion(),  intervalModel, readerTimestampIndex, statsFilter);
                     intervalHitsOnlyOnePartition = intervalModel.allIntervalsHitOnePartition(reader.getPartitionedBy());
                 } else {
-                    dfcFactory = new FullFwdDataFrameCursorFactory(engine, tableName, model.getTableId(), model.getTableVersion());
+                    dfcFactory = new FullFwdDataFrameCursorFactory(engine, tableName, model.getTableId(), model.getTableVersion(), statsFilter);
                     intervalHitsOnlyOnePartition = false;
                 }
 
@@ -2832,6 +3671,42 @@ public class SqlCodeGenerator implements Mutable {
         return unionFactory;
     }
 
+    private long getConstantLimit(ExpressionNode node, SqlExecutionContext executionContext) throws SqlException {
+        if (node.type != ExpressionNode.CONSTANT) {
+            return -1;
+        }
+        final Function function = functionParser.parseFunction(node, EmptyRecordMetadata.INSTANCE, executionContext);
+        try {
+            if (!function.isConstant() || limitTypes.excludes(function.getType())) {
+                return -1;
+            }
+            final long value = function.getLong(null);
+            return value == Numbers.LONG_NaN ? -1 : value;
+        } finally {
+            function.close();
+        }
+    }
+
+    // Number of rows that sort has to produce to satisfy constant LIMIT, -1 when sort has to
+    // produce all rows. The limit itself is still applied on top of the sort.
+    private long getSortLimit(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
+        final ExpressionNode limitLo = model.getLimitLo();
+        final ExpressionNode limitHi = model.getLimitHi();
+        if (limitLo == null) {
+            return -1;
+        }
+
+        final long lo = getConstantLimit(limitLo, executionContext);
+        final long limit;
+        if (limitHi == null) {
+            limit = lo;
+        } else {
+            final long hi = getConstantLimit(limitHi, executionContext);
+            limit = lo > -1 && hi >= lo ? hi : -1;
+        }
+        return limit > -1 && limit <= configuration.getSqlLimitedSortMaxRows() ? limit : -1;
+    }
+
     private int getTimestampIndex(QueryModel model, RecordCursorFactory factory) throws SqlException {
         final RecordMetadata metadata = factory.getMetadata();
         try {
@@ -2925,6 +3800,18 @@ public class SqlCodeGenerator implements Mutable {
         }
     }
 
+    CharSequenceHashSet getQueryTableNames() {
+        return queryTableNames;
+    }
+
+    /**
+     * @return true when result of generated query depends only on SQL text, indexed bind variable values and
+     * the data of the tables it reads
+     */
+    boolean isQueryResultCacheable() {
+        return !queryReadsCursorFunction && !functionParser.isVolatileFunctionParsed() && queryTableNames.size() > 0;
+    }
+
     void setFullFatJoins(boolean fullFatJoins) {
         this.fullFatJoins = fullFatJoins;
     }
@@ -37,6 +37,7 @@ import io.questdb.griffin.engine.functions.catalogue.ShowSearchPathCursorFactory
 import io.questdb.griffin.engine.functions.catalogue.ShowStandardConformingStringsCursorFactory;
 import io.questdb.griffin.engine.functions.catalogue.ShowTimeZoneFactory;
 import io.questdb.griffin.engine.functions.catalogue.ShowTransactionIsolationLevelCursorFactory;
+import io.questdb.griffin.engine.table.ResultCacheRecordCursorFactory;
 import io.questdb.griffin.engine.table.ShowColumnsRecordCursorFactory;
 import io.questdb.griffin.engine.table.TableListRecordCursorFactory;
 import io.questdb.griffin.model.*;
@@ -74,6 +75,7 @@ public class SqlCompiler implements Closeable {
     private final SqlCodeGenerator codeGenerator;
     private final CairoConfiguration configuration;
     private final Path renamePath = new Path();
+    private final Path snapshotSourcePath = new Path();
     private final MemoryMARW mem = Vm.getMARWInstance();
     private final BytecodeAssembler asm = new BytecodeAssembler();
     private final MessageBus messageBus;
@@ -81,6 +83,7 @@ public class SqlCompiler implements Closeable {
     private final EntityColumnFilter entityColumnFilter = new EntityColumnFilter();
     private final IntIntHashMap typeCast = new IntIntHashMap();
     private final ObjList<TableWriter> tableWriters = new ObjList<>();
+    private final LongList compressPartitionTimestamps = new LongList();
     private final TableStructureAdapter tableStructureAdapter = new TableStructureAdapter();
     private final FunctionParser functionParser;
     private final ExecutableMethod insertAsSelectMethod = this::insertAsSelect;
@@ -92,6 +95,12 @@ public class SqlCompiler implements Closeable {
     private final CharSequenceObjHashMap<RecordToRowCopier> tableBackupRowCopieCache = new CharSequenceObjHashMap<>();
     private transient SqlExecutionContext currentExecutionContext;
     private transient String cachedTmpBackupRoot;
+    private transient boolean backupSnapshot;
+    private final NativeLPSZ snapshotFileName = new NativeLPSZ();
+    private int snapshotSourceLen;
+    private int snapshotTargetLen;
+    private boolean snapshotLinkFiles;
+    private final FindVisitor snapshotPartitionOnFind = this::copySnapshotPartitionFile;
     private final FindVisitor sqlDatabaseBackupOnFind = (file, type) -> {
         nativeLPSZ.of(file);
         if (type == Files.DT_DIR && nativeLPSZ.charAt(0) != '.') {
@@ -224,24 +233,24 @@ public class SqlCompiler implements Closeable {
         int rGetStr = asm.poolInterfaceMethod(Record.class, "getStr", "(I)Ljava/lang/CharSequence;");
         int rGetBin = asm.poolInterfaceMethod(Record.class, "getBin", "(I)Lio/questdb/std/BinarySequence;");
         //
-        int wPutInt = asm.poolMethod(TableWriter.Row.class, "putInt", "(II)V");
-        int wPutLong = asm.poolMethod(TableWriter.Row.class, "putLong", "(IJ)V");
-        int wPutLong256 = asm.poolMethod(TableWriter.Row.class, "putLong256", "(ILio/questdb/std/Long256;)V");
-        int wPutDate = asm.poolMethod(TableWriter.Row.class, "putDate", "(IJ)V");
-        int wPutTimestamp = asm.poolMethod(TableWriter.Row.class, "putTimestamp", "(IJ)V");
+        int wPutInt = asm.poolInterfaceMethod(TableWriter.Row.class, "putInt", "(II)V");
+        int wPutLong = asm.poolInterfaceMethod(TableWriter.Row.class, "putLong", "(IJ)V");
+        int wPutLong256 = asm.poolInterfaceMethod(TableWriter.Row.class, "putLong256", "(ILio/questdb/std/Long256;)V");
+        int wPutDate = asm.poolInterfaceMethod(TableWriter.Row.class, "putDate", "(IJ)V");
+        int wPutTimestamp = asm.poolInterfaceMethod(TableWriter.Row.class, "putTimestamp", "(IJ)V");
         //
-        int wPutByte = asm.poolMethod(TableWriter.Row.class, "putByte", "(IB)V");
-        int wPutShort = asm.poolMethod(TableWriter.Row.class, "putShort", "(IS)V");
-        int wPutBool = asm.poolMethod(TableWriter.Row.class, "putBool", "(IZ)V");
-        int wPutFloat = asm.poolMethod(TableWriter.Row.class, "putFloat", "(IF)V");
-        int wPutDouble = asm.poolMethod(TableWriter.Row.class, "putDouble", "(ID)V");
-        int wPutSym = asm.poolMethod(TableWriter.Row.class, "putSym", "(ILjava/lang/CharSequence;)V");
-        int wPutSymChar = asm.poolMethod(TableWriter.Row.class, "putSym", "(IC)V");
-        int wPutStr = asm.poolMethod(TableWriter.Row.class, "putStr", "(ILjava/lang/CharSequence;)V");
-        int wPutTimestampStr = asm.poolMethod(TableWriter.Row.class, "putTimestamp", "(ILjava/lang/CharSequence;)V");
-        int wPutStrChar = asm.poolMethod(TableWriter.Row.class, "putStr", "(IC)V");
-        int wPutChar = asm.poolMethod(TableWriter.Row.class, "putChar", "(IC)V");
-        int wPutBin = asm.poolMethod(TableWriter.Row.class, "putBin", "(ILio/questdb/std/BinarySequence;)V");
+        int wPutByte = asm.poolInterfaceMethod(TableWriter.Row.class, "putByte", "(IB)V");
+        int wPutShort = asm.poolInterfaceMethod(TableWriter.Row.class, "putShort", "(IS)V");
+        int wPutBool = asm.poolInterfaceMethod(TableWriter.Row.class, "putBool", "(IZ)V");
+        int wPutFloat = asm.poolInterfaceMethod(TableWriter.Row.class, "putFloat", "(IF)V");
+        int wPutDouble = asm.poolInterfaceMethod(TableWriter.Row.class, "putDouble", "(ID)V");
+        int wPutSym = asm.poolInterfaceMethod(TableWriter.Row.class, "putSym", "(ILjava/lang/CharSequence;)V");
+        int wPutSymChar = asm.poolInterfaceMethod(TableWriter.Row.class, "putSym", "(IC)V");
+        int wPutStr = asm.poolInterfaceMethod(TableWriter.Row.class, "putStr", "(ILjava/lang/CharSequence;)V");
+        int wPutTimestampStr = asm.poolInterfaceMethod(TableWriter.Row.class, "putTimestamp", "(ILjava/lang/CharSequence;)V");
+        int wPutStrChar = asm.poolInterfaceMethod(TableWriter.Row.class, "putStr", "(IC)V");
+        int wPutChar = asm.poolInterfaceMethod(TableWriter.Row.class, "putChar", "(IC)V");
+        int wPutBin = asm.poolInterfaceMethod(TableWriter.Row.class, "putBin", "(ILio/questdb/std/BinarySequence;)V");
         int geohashTruncatePrecision = asm.poolMethod(ColumnType.class, "geohashTruncatePrecision", "(JII)J");
 
         int copyNameIndex = asm.poolUtf8("copy");
@@ -286,34 +295,34 @@ public class SqlCompiler implements Closeable {
                     switch (toColumnTypeTag) {
                         case ColumnType.LONG:
                             asm.i2l();
-                            asm.invokeVirtual(wPutLong);
+                            asm.invokeInterface(wPutLong, 3);
                             break;
                         case ColumnType.DATE:
                             asm.i2l();
-                            asm.invokeVirtual(wPutDate);
+                            asm.invokeInterface(wPutDate, 3);
                             break;
                         case ColumnType.TIMESTAMP:
                             asm.i2l();
-                            asm.invokeVirtual(wPutTimestamp);
+                            asm.invokeInterface(wPutTimestamp, 3);
                             break;
                         case ColumnType.SHORT:
                             asm.i2s();
-                            asm.invokeVirtual(wPutShort);
+                            asm.invokeInterface(wPutShort, 2);
                             break;
                         case ColumnType.BYTE:
                             asm.i2b();
-                            asm.invokeVirtual(wPutByte);
+                            asm.invokeInterface(wPutByte, 2);
                             break;
                         case ColumnType.FLOAT:
                             asm.i2f();
-                            asm.invokeVirtual(wPutFloat);
+                            asm.invokeInterface(wPutFloat, 2);
                             break;
                         case ColumnType.DOUBLE:
                             asm.i2d();
-                            asm.invokeVirtual(wPutDouble);
+                            asm.invokeInterface(wPutDouble, 3);
                             break;
                         default:
-                            asm.invokeVirtual(wPutInt);
+                            asm.invokeInterface(wPutInt, 2);
                             break;
                     }
                     break;
@@ -322,34 +331,34 @@ public class SqlCompiler implements Closeable {
                     switch (toColumnTypeTag) {
                         case ColumnType.INT:
                             asm.l2i();
-                            asm.invokeVirtual(wPutInt);
+                            asm.invokeInterface(wPutInt, 2);
                             break;
                         case ColumnType.DATE:
-                            asm.invokeVirtual(wPutDate);
+                            asm.invokeInterface(wPutDate, 3);
                             break;
                         case ColumnType.TIMESTAMP:
-                            asm.invokeVirtual(wPutTimestamp);
+                            asm.invokeInterface(wPutTimestamp, 3);
                             break;
                         case ColumnType.SHORT:
                             asm.l2i();
                             asm.i2s();
-                            asm.invokeVirtual(wPutShort);
+                            asm.invokeInterface(wPutShort, 2);
                             break;
                         case ColumnType.BYTE:
                             asm.l2i();
                             asm.i2b();
-                            asm.invokeVirtual(wPutByte);
+                            asm.invokeInterface(wPutByte, 2);
                             break;
                         case ColumnType.FLOAT:
                             asm.l2f();
-                            asm.invokeVirtual(wPutFloat);
+                            asm.invokeInterface(wPutFloat, 2);
                             break;
                         case ColumnType.DOUBLE:
                             asm.l2d();
-                            asm.invokeVirtual(wPutDouble);
+                            asm.invokeInterface(wPutDouble, 3);
                             break;
                         default:
-                            asm.invokeVirtual(wPutLong);
+                            asm.invokeInterface(wPutLong, 3);
                             break;
                     }
                     break;
@@ -358,34 +367,34 @@ public class SqlCompiler implements Closeable {
                     switch (toColumnTypeTag) {
                         case ColumnType.INT:
                             asm.l2i();
-                            asm.invokeVirtual(wPutInt);
+                            asm.invokeInterface(wPutInt, 2);
                             break;
                         case ColumnType.LONG:
-                            asm.invokeVirtual(wPutLong);
+                            asm.invokeInterface(wPutLong, 3);
                             break;
                         case ColumnType.TIMESTAMP:
-                            asm.invokeVirtual(wPutTimestamp);
+                            asm.invokeInterface(wPutTimestamp, 3);
                             break;
                         case ColumnType.SHORT:
                             asm.l2i();
                             asm.i2s();
-                            asm.invokeVirtual(wPutShort);
+                            asm.invokeInterface(wPutShort, 2);
                             break;
                         case ColumnType.BYTE:
                             asm.l2i();
                             asm.i2b();
-                            asm.invokeVirtual(wPutByte);
+                            asm.invokeInterface(wPutByte, 2);
                             break;
                         case ColumnType.FLOAT:
                             asm.l2f();
-                            asm.invokeVirtual(wPutFloat);
+                            asm.invokeInterface(wPutFloat, 2);
                             break;
                         case ColumnType.DOUBLE:
                             asm.l2d();
-                            asm.invokeVirtual(wPutDouble);
+                            asm.invokeInterface(wPutDouble, 3);
                             break;
                         default:
-                            asm.invokeVirtual(wPutDate);
+                            asm.invokeInterface(wPutDate, 3);
                             break;
                     }
                     break;
@@ -394,34 +403,34 @@ public class SqlCompiler implements Closeable {
                     switch (toColumnTypeTag) {
                         case ColumnType.INT:
                             asm.l2i();
-                            asm.invokeVirtual(wPutInt);
+                            asm.invokeInterface(wPutInt, 2);
                             break;
                         case ColumnType.LONG:
-                            asm.invokeVirtual(wPutLong);
+                            asm.invokeInterface(wPutLong, 3);
                             break;
                         case ColumnType.SHORT:
                             asm.l2i();
                             asm.i2s();
-                            asm.invokeVirtual(wPutShort);
+                            asm.invokeInterface(wPutShort, 2);
                             break;
                         case ColumnType.BYTE:
                             asm.l2i();
                             asm.i2b();
-                            asm.invokeVirtual(wPutByte);
+                            asm.invokeInterface(wPutByte, 2);
                             break;
                         case ColumnType.FLOAT:
                             asm.l2f();
-                            asm.invokeVirtual(wPutFloat);
+                            asm.invokeInterface(wPutFloat, 2);
                             break;
                         case ColumnType.DOUBLE:
                             asm.l2d();
-                            asm.invokeVirtual(wPutDouble);
+                            asm.invokeInterface(wPutDouble, 3);
                             break;
                         case ColumnType.DATE:
-                            asm.invokeVirtual(wPutDate);
+                            asm.invokeInterface(wPutDate, 3);
                             break;
                         default:
-                            asm.invokeVirtual(wPutTimestamp);
+                            asm.invokeInterface(wPutTimestamp, 3);
                             break;
                     }
                     break;
@@ -429,34 +438,34 @@ public class SqlCompiler implements Closeable {
                     asm.invokeInterface(rGetByte, 1);
                     switch (toColumnTypeTag) {
                         case ColumnType.INT:
-                            asm.invokeVirtual(wPutInt);
+                            asm.invokeInterface(wPutInt, 2);
                             break;
                         case ColumnType.LONG:
                             asm.i2l();
-                            asm.invokeVirtual(wPutLong);
+                            asm.invokeInterface(wPutLong, 3);
                             break;
                         case ColumnType.DATE:
                             asm.i2l();
-                            asm.invokeVirtual(wPutDate);
+                            asm.invokeInterface(wPutDate, 3);
                             break;
                         case ColumnType.TIMESTAMP:
                             asm.i2l();
-                            asm.invokeVirtual(wPutTimestamp);
+                            asm.invokeInterface(wPutTimestamp, 3);
                             break;
                         case ColumnType.SHORT:
                             asm.i2s();
-                            asm.invokeVirtual(wPutShort);
+                            asm.invokeInterface(wPutShort, 2);
                             break;
                         case ColumnType.FLOAT:
                             asm.i2f();
-                            asm.invokeVirtual(wPutFloat);
+                            asm.invokeInterface(wPutFloat, 2);
                             break;
                         case ColumnType.DOUBLE:
                             asm.i2d();
-                            asm.invokeVirtual(wPutDouble);
+                            asm.invokeInterface(wPutDouble, 3);
                             break;
                         default:
-                            asm.invokeVirtual(wPutByte);
+                            asm.invokeInterface(wPutByte, 2);
                             break;
                     }
                     break;
@@ -464,76 +473,76 @@ public class SqlCompiler implements Closeable {
                     asm.invokeInterface(rGetShort, 1);
                     switch (toColumnTypeTag) {
                         case ColumnType.INT:
-                            asm.invokeVirtual(wPutInt);
+                            asm.invokeInterface(wPutInt, 2);
                             break;
                         case ColumnType.LONG:
                             asm.i2l();
-                            asm.invokeVirtual(wPutLong);
+                            asm.invokeInterface(wPutLong, 3);
                             break;
                         case ColumnType.DATE:
                             asm.i2l();
-                            asm.invokeVirtual(wPutDate);
+                            asm.invokeInterface(wPutDate, 3);
                             break;
                         case ColumnType.TIMESTAMP:
                             asm.i2l();
-                            asm.invokeVirtual(wPutTimestamp);
+                            asm.invokeInterface(wPutTimestamp, 3);
                             break;
                         case ColumnType.BYTE:
                             asm.i2b();
-                            asm.invokeVirtual(wPutByte);
+                            asm.invokeInterface(wPutByte, 2);
                             break;
                         case ColumnType.FLOAT:
                             asm.i2f();
-                            asm.invokeVirtual(wPutFloat);
+                            asm.invokeInterface(wPutFloat, 2);
                             break;
                         case ColumnType.DOUBLE:
                             asm.i2d();
-                            asm.invokeVirtual(wPutDouble);
+                            asm.invokeInterface(wPutDouble, 3);
                             break;
                         default:
-                            asm.invokeVirtual(wPutShort);
+                            asm.invokeInterface(wPutShort, 2);
                             break;
                     }
                     break;
                 case ColumnType.BOOLEAN:
                     asm.invokeInterface(rGetBool, 1);
-                    asm.invokeVirtual(wPutBool);
+                    asm.invokeInterface(wPutBool, 2);
                     break;
                 case ColumnType.FLOAT:
                     asm.invokeInterface(rGetFloat, 1);
                     switch (toColumnTypeTag) {
                         case ColumnType.INT:
                             asm.f2i();
-                            asm.invokeVirtual(wPutInt);
+                            asm.invokeInterface(wPutInt, 2);
                             break;
                         case ColumnType.LONG:
                             asm.f2l();
-                            asm.invokeVirtual(wPutLong);
+                            asm.invokeInterface(wPutLong, 3);
                             break;
                         case ColumnType.DATE:
                             asm.f2l();
-                            asm.invokeVirtual(wPutDate);
+                            asm.invokeInterface(wPutDate, 3);
                             break;
                         case ColumnType.TIMESTAMP:
                             asm.f2l();
-                            asm.invokeVirtual(wPutTimestamp);
+                            asm.invokeInterface(wPutTimestamp, 3);
                             break;
                         case ColumnType.SHORT:
                             asm.f2i();
                             asm.i2s();
-                            asm.invokeVirtual(wPutShort);
+                            asm.invokeInterface(wPutShort, 2);
                             break;
                         case ColumnType.BYTE:
                             asm.f2i();
                             asm.i2b();
-                            asm.invokeVirtual(wPutByte);
+                            asm.invokeInterface(wPutByte, 2);
                             break;
                         case ColumnType.DOUBLE:
                             asm.f2d();
-                            asm.invokeVirtual(wPutDouble);
+                            asm.invokeInterface(wPutDouble, 3);
                             break;
                         default:
-                            asm.invokeVirtual(wPutFloat);
+                            asm.invokeInterface(wPutFloat, 2);
                             break;
                     }
                     break;
@@ -542,36 +551,36 @@ public class SqlCompiler implements Closeable {
                     switch (toColumnTypeTag) {
                         case ColumnType.INT:
                             asm.d2i();
-                            asm.invokeVirtual(wPutInt);
+                            asm.invokeInterface(wPutInt, 2);
                             break;
                         case ColumnType.LONG:
                             asm.d2l();
-                            asm.invokeVirtual(wPutLong);
+                            asm.invokeInterface(wPutLong, 3);
                             break;
                         case ColumnType.DATE:
                             asm.d2l();
-                            asm.invokeVirtual(wPutDate);
+                            asm.invokeInterface(wPutDate, 3);
                             break;
                         case ColumnType.TIMESTAMP:
                             asm.d2l();
-                            asm.invokeVirtual(wPutTimestamp);
+                            asm.invokeInterface(wPutTimestamp, 3);
                             break;
                         case ColumnType.SHORT:
                             asm.d2i();
                             asm.i2s();
-                            asm.invokeVirtual(wPutShort);
+                            asm.invokeInterface(wPutShort, 2);
                             break;
                         case ColumnType.BYTE:
                             asm.d2i();
                             asm.i2b();
-                            asm.invokeVirtual(wPutByte);
+                            asm.invokeInterface(wPutByte, 2);
                             break;
                         case ColumnType.FLOAT:
                             asm.d2f();
-                            asm.invokeVirtual(wPutFloat);
+                            asm.invokeInterface(wPutFloat, 2);
                             break;
                         default:
-                            asm.invokeVirtual(wPutDouble);
+                            asm.invokeInterface(wPutDouble, 3);
                             break;
                     }
                     break;
@@ -579,45 +588,45 @@ public class SqlCompiler implements Closeable {
                     asm.invokeInterface(rGetChar, 1);
                     switch (toColumnTypeTag) {
                         case ColumnType.STRING:
-                            asm.invokeVirtual(wPutStrChar);
+                            asm.invokeInterface(wPutStrChar, 2);
                             break;
                         case ColumnType.SYMBOL:
-                            asm.invokeVirtual(wPutSymChar);
+                            asm.invokeInterface(wPutSymChar, 2);
                             break;
                         default:
-                            asm.invokeVirtual(wPutChar);
+                            asm.invokeInterface(wPutChar, 2);
                             break;
                     }
                     break;
                 case ColumnType.SYMBOL:
                     asm.invokeInterface(rGetSym, 1);
                     if (toColumnTypeTag == ColumnType.STRING) {
-                        asm.invokeVirtual(wPutStr);
+                        asm.invokeInterface(wPutStr, 2);
                     } else {
-                        asm.invokeVirtual(wPutSym);
+                        asm.invokeInterface(wPutSym, 2);
                     }
                     break;
                 case ColumnType.STRING:
                     asm.invokeInterface(rGetStr, 1);
                     switch (toColumnTypeTag) {
                         case ColumnType.SYMBOL:
-                            asm.invokeVirtual(wPutSym);
+                            asm.invokeInterface(wPutSym, 2);
                             break;
                         case ColumnType.TIMESTAMP:
-                            asm.invokeVirtual(wPutTimestampStr);
+                            asm.invokeInterface(wPutTimestampStr, 2);
                             break;
                         default:
-                            asm.invokeVirtual(wPutStr);
+                            asm.invokeInterface(wPutStr, 2);
                             break;
                     }
                     break;
                 case ColumnType.BINARY:
                     asm.invokeInterface(rGetBin, 1);
-                    asm.invokeVirtual(wPutBin);
+                    asm.invokeInterface(wPutBin, 2);
                     break;
                 case ColumnType.LONG256:
                     asm.invokeInterface(rGetLong256, 1);
-                    asm.invokeVirtual(wPutLong256);
+                    asm.invokeInterface(wPutLong256, 2);
                     break;
                 case ColumnType.GEOHASH:
                     assert toColumnTypeTag == ColumnType.GEOHASH;
@@ -628,7 +637,7 @@ public class SqlCompiler implements Closeable {
                             // impossible conversion
                             if (sizeTo == 1) {
                                 asm.invokeInterface(rGetGeoByte, 1);
-                                asm.invokeVirtual(wPutByte);
+                                asm.invokeInterface(wPutByte, 2);
                             }
                             break;
                         case 2:
@@ -641,11 +650,11 @@ public class SqlCompiler implements Closeable {
                                     asm.invokeStatic(geohashTruncatePrecision);
                                     asm.l2i();
                                     asm.i2b();
-                                    asm.invokeVirtual(wPutByte);
+                                    asm.invokeInterface(wPutByte, 2);
                                     break;
                                 case 2:
                                     asm.invokeInterface(rGetGeoShort, 1);
-                                    asm.invokeVirtual(wPutShort);
+                                    asm.invokeInterface(wPutShort, 2);
                                     break;
                                 default:
                                     break; // impossible conversion
@@ -661,7 +670,7 @@ public class SqlCompiler implements Closeable {
                                     asm.invokeStatic(geohashTruncatePrecision);
                                     asm.l2i();
                                     asm.i2b();
-                                    asm.invokeVirtual(wPutByte);
+                                    asm.invokeInterface(wPutByte, 2);
                                     break;
                                 case 2:
                                     asm.invokeInterface(rGetGeoInt, 1);
@@ -671,11 +680,11 @@ public class SqlCompiler implements Closeable {
                                     asm.invokeStatic(geohashTruncatePrecision);
                                     asm.l2i();
                                     asm.i2s();
-                                    asm.invokeVirtual(wPutShort);
+                                    asm.invokeInterface(wPutShort, 2);
                                     break;
                                 case 4:
                                     asm.invokeInterface(rGetGeoInt, 1);
-                                    asm.invokeVirtual(wPutInt);
+                                    asm.invokeInterface(wPutInt, 2);
                                     break;
                                 default:
                                     break; // impossible conversion
@@ -690,7 +699,7 @@ public class SqlCompiler implements Closeable {
                                     asm.invokeStatic(geohashTruncatePrecision);
                                     asm.l2i();
                                     asm.i2b();
-                                    asm.invokeVirtual(wPutByte);
+                                    asm.invokeInterface(wPutByte, 2);
                                     break;
                                 case 2:
                                     asm.invokeInterface(rGetGeoLong, 1);
@@ -699,7 +708,7 @@ public class SqlCompiler implements Closeable {
                                     asm.invokeStatic(geohashTruncatePrecision);
                                     asm.l2i();
                                     asm.i2s();
-                                    asm.invokeVirtual(wPutShort);
+                                    asm.invokeInterface(wPutShort, 2);
                                     break;
                                 case 4:
                                     asm.invokeInterface(rGetGeoLong, 1);
@@ -707,11 +716,11 @@ public class SqlCompiler implements Closeable {
                                     asm.iconst(toColumnType);
                                     asm.invokeStatic(geohashTruncatePrecision);
                                     asm.l2i();
-                                    asm.invokeVirtual(wPutInt);
+                                    asm.invokeInterface(wPutInt, 2);
                                     break;
                                 case 8:
                                     asm.invokeInterface(rGetGeoLong, 1);
-                                    asm.invokeVirtual(wPutLong);
+                                    asm.invokeInterface(wPutLong, 3);
                                     break;
                                 default:
                                     break; // impossible conversion
@@ -724,17 +733,17 @@ public class SqlCompiler implements Closeable {
                             asm.iconst(GeoHashes.INT_NULL);
                             switch (sizeTo) {
                                 case 1:
-                                    asm.invokeVirtual(wPutByte);
+                                    asm.invokeInterface(wPutByte, 2);
                                     break;
                                 case 2:
-                                    asm.invokeVirtual(wPutShort);
+                                    asm.invokeInterface(wPutShort, 2);
                                     break;
                                 case 4:
-                                    asm.invokeVirtual(wPutInt);
+                                    asm.invokeInterface(wPutInt, 2);
                                     break;
                                 case 8:
                                     asm.i2l();
-                                    asm.invokeVirtual(wPutLong);
+                                    asm.invokeInterface(wPutLong, 3);
                                     break;
                                 default:
                                     break; // impossible conversion
@@ -805,6 +814,7 @@ public class SqlCompiler implements Closeable {
         assert tableNames.isEmpty();
         Misc.free(path);
         Misc.free(renamePath);
+        Misc.free(snapshotSourcePath);
         Misc.free(textLoader);
     }
 
@@ -824,7 +834,7 @@ public class SqlCompiler implements Closeable {
 
         final KeywordBasedExecutor executor = keywordBasedExecutors.get(tok);
         if (executor == null) {
-            return compileUsingModel(executionContext);
+            return compileUsingModel(query, executionContext);
         }
         return executor.execute(executionContext);
     }
@@ -926,6 +936,13 @@ public class SqlCompiler implements Closeable {
                     } else {
                         throw SqlException.$(lexer.lastTokenPosition(), "'column' or 'partition' expected");
                     }
+                } else if (SqlKeywords.isCompressKeyword(tok)) {
+                    tok = expectToken(lexer, "'partition'");
+                    if (SqlKeywords.isPartitionKeyword(tok)) {
+                        alterTableDropOrAttachPartition(writer, PartitionAction.COMPRESS, executionContext);
+                    } else {
+                        throw SqlException.$(lexer.lastTokenPosition(), "'partition' expected");
+                    }
                 } else if (SqlKeywords.isRenameKeyword(tok)) {
                     tok = expectToken(lexer, "'column'");
                     if (SqlKeywords.isColumnKeyword(tok)) {
@@ -973,7 +990,7 @@ public class SqlCompiler implements Closeable {
                         throw SqlException.$(lexer.lastTokenPosition(), "'param' expected");
                     }
                 } else {
-                    throw SqlException.$(lexer.lastTokenPosition(), "'add', 'drop', 'attach', 'set' or 'rename' expected");
+                    throw SqlException.$(lexer.lastTokenPosition(), "'add', 'drop', 'attach', 'compress', 'set' or 'rename' expected");
                 }
             } catch (CairoException e) {
                 LOG.info().$("could not alter table [table=").$(tableName).$(", ex=").$((Sinkable) e).$();
@@ -1269,7 +1286,11 @@ public class SqlCompiler implements Closeable {
                 Function function = functionParser.parseFunction(expr, metadata, currentExecutionContext);
                 if (function != null && ColumnType.isBoolean(function.getType())) {
                     function.init(null, executionContext);
-                    writer.removePartition(function, pos);
+                    if (action == PartitionAction.COMPRESS) {
+                        writer.compressPartition(function, pos);
+                    } else {
+                        writer.removePartition(function, pos);
+                    }
                 } else {
                     throw SqlException.$(lexer.lastTokenPosition(), "boolean expression expected");
                 }
@@ -1282,6 +1303,7 @@ public class SqlCompiler implements Closeable {
     }
 
     private void alterTableDropOrAttachPartitionByList(TableWriter writer, int action) throws SqlException {
+        compressPartitionTimestamps.clear();
         do {
             CharSequence tok = expectToken(lexer, "partition name");
             if (Chars.equals(tok, ',')) {
@@ -1303,6 +1325,13 @@ public class SqlCompiler implements Closeable {
                         throw SqlException.$(lexer.lastTokenPosition(), "could not remove partition '").put(unquoted).put('\'');
                     }
                     break;
+                case PartitionAction.COMPRESS:
+                    if (!writer.isPartitionCompressible(timestamp)) {
+                        throw SqlException.$(lexer.lastTokenPosition(), "could not compress partition '").put(unquoted).put('\'');
+                    }
+                    // partitions are replaced in one commit once the whole list is known
+                    compressPartitionTimestamps.add(timestamp);
+                    break;
                 case PartitionAction.ATTACH:
                     int statusCode = writer.attachPartition(timestamp);
                     switch (statusCode) {
@@ -1334,6 +1363,10 @@ public class SqlCompiler implements Closeable {
                 throw SqlException.$(lexer.lastTokenPosition(), "',' expected");
             }
         } while (true);
+
+        if (action == PartitionAction.COMPRESS) {
+            writer.compressPartitions(compressPartitionTimestamps);
+        }
     }
 
     private void alterTableRenameColumn(int tableNamePosition, TableWriter writer) throws SqlException {
@@ -1384,6 +1417,28 @@ public class SqlCompiler implements Closeable {
         } while (true);
     }
 
+    private void backupSnapshotPartition(int sourceRootLen, int targetRootLen, int partitionBy, long timestamp, long nameTxn, boolean link) {
+        snapshotSourcePath.trimTo(sourceRootLen);
+        TableUtils.setPathForPartition(snapshotSourcePath, partitionBy, timestamp, false);
+        TableUtils.txnPartitionConditionally(snapshotSourcePath, nameTxn);
+        snapshotSourceLen = snapshotSourcePath.length();
+
+        path.trimTo(targetRootLen);
+        TableUtils.setPathForPartition(path, partitionBy, timestamp, false);
+        TableUtils.txnPartitionConditionally(path, nameTxn);
+        snapshotTargetLen = path.length();
+
+        if (!ff.exists(snapshotSourcePath.$())) {
+            // partition of empty non-partitioned table may not exist yet
+            return;
+        }
+        if (ff.mkdirs(path.slash$(), configuration.getBackupMkDirMode()) != 0) {
+            throw CairoException.instance(ff.errno()).put("Could not create [dir=").put(path).put(']');
+        }
+        snapshotLinkFiles = link;
+        ff.iterateDir(snapshotSourcePath.trimTo(snapshotSourceLen).$(), snapshotPartitionOnFind);
+    }
+
     private void backupTable(@NotNull CharSequence tableName, @NotNull SqlExecutionContext executionContext) {
         LOG.info().$("Starting backup of ").$(tableName).$();
         if (null == cachedTmpBackupRoot) {
@@ -1396,23 +1451,10 @@ public class SqlCompiler implements Closeable {
 
         int renameRootLen = renamePath.length();
         try {
-            CairoSecurityContext securityContext = executionContext.getCairoSecurityContext();
-            try (TableReader reader = engine.getReader(securityContext, tableName)) {
-                cloneMetaData(tableName, cachedTmpBackupRoot, configuration.getBackupMkDirMode(), reader);
-                try (TableWriter backupWriter = engine.getBackupWriter(securityContext, tableName, cachedTmpBackupRoot)) {
-                    RecordMetadata writerMetadata = backupWriter.getMetadata();
-                    path.of(tableName).slash().put(reader.getVersion()).$();
-                    RecordToRowCopier recordToRowCopier = tableBackupRowCopieCache.get(path);
-                    if (null == recordToRowCopier) {
-                        entityColumnFilter.of(writerMetadata.getColumnCount());
-                        recordToRowCopier = assembleRecordToRowCopier(asm, reader.getMetadata(), writerMetadata, entityColumnFilter);
-                        tableBackupRowCopieCache.put(path.toString(), recordToRowCopier);
-                    }
-
-                    RecordCursor cursor = reader.getCursor();
-                    copyTableData(cursor, reader.getMetadata(), backupWriter, writerMetadata, recordToRowCopier);
-                    backupWriter.commit();
-                }
+            if (backupSnapshot) {
+                backupTableSnapshot(tableName, executionContext);
+            } else {
+                backupTableCopy(tableName, executionContext);
             }
 
             path.of(configuration.getBackupRoot()).concat(configuration.getBackupTempDirName()).concat(tableName).$();
@@ -1438,6 +1480,89 @@ public class SqlCompiler implements Closeable {
         }
     }
 
+    private void backupTableCopy(@NotNull CharSequence tableName, @NotNull SqlExecutionContext executionContext) {
+        CairoSecurityContext securityContext = executionContext.getCairoSecurityContext();
+        try (TableReader reader = engine.getReader(securityContext, tableName)) {
+            cloneMetaData(tableName, cachedTmpBackupRoot, configuration.getBackupMkDirMode(), reader);
+            try (TableWriter backupWriter = engine.getBackupWriter(securityContext, tableName, cachedTmpBackupRoot)) {
+                RecordMetadata writerMetadata = backupWriter.getMetadata();
+                path.of(tableName).slash().put(reader.getVersion()).$();
+                RecordToRowCopier recordToRowCopier = tableBackupRowCopieCache.get(path);
+                if (null == recordToRowCopier) {
+                    entityColumnFilter.of(writerMetadata.getColumnCount());
+                    recordToRowCopier = assembleRecordToRowCopier(asm, reader.getMetadata(), writerMetadata, entityColumnFilter);
+                    tableBackupRowCopieCache.put(path.toString(), recordToRowCopier);
+                }
+
+                RecordCursor cursor = reader.getCursor();
+                copyTableData(cursor, reader.getMetadata(), backupWriter, writerMetadata, recordToRowCopier);
+                backupWriter.commit();
+            }
+        }
+    }
+
+    private void backupTableSnapshot(@NotNull CharSequence tableName, @NotNull SqlExecutionContext executionContext) {
+        // writer lock keeps table files consistent with _txn for the duration of snapshot
+        try (TableWriter writer = engine.getWriter(executionContext.getCairoSecurityContext(), tableName, "backup")) {
+            path.of(cachedTmpBackupRoot).concat(tableName).slash$();
+            if (ff.exists(path)) {
+                throw CairoException.instance(0).put("Backup dir for table \"").put(tableName).put("\" already exists [dir=").put(path).put(']');
+            }
+            if (ff.mkdirs(path, configuration.getBackupMkDirMode()) != 0) {
+                throw CairoException.instance(ff.errno()).put("Could not create [dir=").put(path).put(']');
+            }
+            final int targetRootLen = path.length() - 1;
+            snapshotSourcePath.of(configuration.getRoot()).concat(tableName);
+            final int sourceRootLen = snapshotSourcePath.length();
+
+            // metadata, transaction and symbol map files are updated in place, they have to be copied
+            snapshotSourcePath.trimTo(sourceRootLen).concat(TableUtils.META_FILE_NAME).$();
+            path.trimTo(targetRootLen).concat(TableUtils.META_FILE_NAME).$();
+            copySnapshotFile();
+            snapshotSourcePath.trimTo(sourceRootLen).concat(TableUtils.TXN_FILE_NAME).$();
+            path.trimTo(targetRootLen).concat(TableUtils.TXN_FILE_NAME).$();
+            copySnapshotFile();
+
+            final TableWriterMetadata metadata = writer.getMetadata();
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                if (ColumnType.isSymbol(metadata.getColumnType(i))) {
+                    final CharSequence columnName = metadata.getColumnName(i);
+                    SymbolMapWriter.offsetFileName(snapshotSourcePath.trimTo(sourceRootLen), columnName);
+                    SymbolMapWriter.offsetFileName(path.trimTo(targetRootLen), columnName);
+                    copySnapshotFile();
+                    SymbolMapWriter.charFileName(snapshotSourcePath.trimTo(sourceRootLen), columnName);
+                    SymbolMapWriter.charFileName(path.trimTo(targetRootLen), columnName);
+                    copySnapshotFile();
+                    final String indexName = SymbolMapWriter.indexName(columnName, writer.getSymbolIndexVersion(i));
+                    BitmapIndexUtils.keyFileName(snapshotSourcePath.trimTo(sourceRootLen), indexName);
+                    BitmapIndexUtils.keyFileName(path.trimTo(targetRootLen), indexName);
+                    copySnapshotFile();
+                    BitmapIndexUtils.valueFileName(snapshotSourcePath.trimTo(sourceRootLen), indexName);
+                    BitmapIndexUtils.valueFileName(path.trimTo(targetRootLen), indexName);
+                    copySnapshotFile();
+                }
+            }
+
+            final int partitionBy = writer.getPartitionBy();
+            if (partitionBy == PartitionBy.NONE) {
+                backupSnapshotPartition(sourceRootLen, targetRootLen, partitionBy, 0, -1, false);
+            } else {
+                // all partitions but the last one are sealed
+                for (int i = 0, n = writer.getPartitionCount(); i < n; i++) {
+                    backupSnapshotPartition(
+                            sourceRootLen,
+                            targetRootLen,
+                            partitionBy,
+                            writer.getPartitionTimestamp(i),
+                            writer.getPartitionNameTxn(i),
+                            i < n - 1
+                    );
+                }
+            }
+            LOG.info().$("snapshot taken [table=").$(tableName).$(", txn=").$(writer.getTxn()).$(']').$();
+        }
+    }
+
     private void clear() {
         sqlNodePool.clear();
         characterStore.clear();
@@ -1476,7 +1601,7 @@ public class SqlCompiler implements Closeable {
                 }
             }
             mem.smallFile(ff, path.trimTo(rootLen).concat(TableUtils.TXN_FILE_NAME).$());
-            TableUtils.resetTxn(mem, symbolMapCount, 0L, TableUtils.INITIAL_TXN, 0L);
+            TableUtils.resetTxn(mem, symbolMapCount, 0L, TableUtils.INITIAL_TXN, 0L, 0L);
             path.trimTo(rootLen).concat(TableUtils.TXN_SCOREBOARD_FILE_NAME).$();
         } finally {
             mem.close();
@@ -1505,7 +1630,7 @@ public class SqlCompiler implements Closeable {
     }
 
     @NotNull
-    private CompiledQuery compileUsingModel(SqlExecutionContext executionContext) throws SqlException {
+    private CompiledQuery compileUsingModel(CharSequence query, SqlExecutionContext executionContext) throws SqlException {
         // This method will not populate sql cache directly;
         // factories are assumed to be non reentrant and once
         // factory is out of this method the caller assumes
@@ -1521,7 +1646,7 @@ public class SqlCompiler implements Closeable {
         switch (executionModel.getModelType()) {
             case ExecutionModel.QUERY:
                 LOG.info().$("plan [q=`").$((QueryModel) executionModel).$("`, fd=").$(executionContext.getRequestFd()).$(']').$();
-                return compiledQuery.of(generate((QueryModel) executionModel, executionContext));
+                return compiledQuery.of(generateSelect(query, (QueryModel) executionModel, executionContext));
             case ExecutionModel.CREATE_TABLE:
                 return createTableWithRetries(executionModel, executionContext);
             case ExecutionModel.COPY:
@@ -1645,6 +1770,10 @@ public class SqlCompiler implements Closeable {
     }
 
     private void copyTable(SqlExecutionContext executionContext, CopyModel model) throws SqlException {
+        if (executionContext.getWorkerCount() > 1) {
+            copyTableParallel(executionContext, model);
+            return;
+        }
         try {
             int len = configuration.getSqlCopyBufferSize();
             long buf = Unsafe.malloc(len);
@@ -1688,6 +1817,59 @@ public class SqlCompiler implements Closeable {
         }
     }
 
+    private void copyTableParallel(SqlExecutionContext executionContext, CopyModel model) throws SqlException {
+        try {
+            final CharSequence name = GenericLexer.assertNoDots(GenericLexer.unquote(model.getFileName().token), model.getFileName().position);
+            path.of(configuration.getInputRoot()).concat(name).$();
+            long fd = ff.openRO(path);
+            if (fd == -1) {
+                throw SqlException.$(model.getFileName().position, "could not open file [errno=").put(Os.errno()).put(", path=").put(path).put(']');
+            }
+            try {
+                final long fileLen = ff.length(fd);
+                if (fileLen > 0) {
+                    // whole file is mapped, so that it can be split into chunks and parsed by worker pool
+                    final long addr = ff.mmap(fd, fileLen, 0, Files.MAP_RO);
+                    if (addr == -1) {
+                        throw SqlException.$(model.getFileName().position, "could not mmap file [errno=").put(ff.errno()).put(", path=").put(path).put(']');
+                    }
+                    try {
+                        textLoader.setForceHeaders(model.isHeader());
+                        textLoader.setSkipRowsWithExtraValues(false);
+                        textLoader.loadParallel(addr, addr + fileLen, executionContext.getWorkerCount(), executionContext.getCairoSecurityContext());
+                    } finally {
+                        ff.munmap(addr, fileLen);
+                    }
+                }
+            } finally {
+                ff.close(fd);
+                textLoader.clear();
+            }
+        } catch (TextException e) {
+            // we do not expect JSON exception here
+        } finally {
+            LOG.info().$("copied").$();
+        }
+    }
+
+    private void copySnapshotFile() {
+        if (ff.exists(snapshotSourcePath) && ff.copy(snapshotSourcePath, path) < 0) {
+            throw CairoException.instance(ff.errno()).put("could not copy [from=").put(snapshotSourcePath).put(", to=").put(path).put(']');
+        }
+    }
+
+    private void copySnapshotPartitionFile(long file, int type) {
+        if (type != Files.DT_DIR) {
+            snapshotFileName.of(file);
+            snapshotSourcePath.trimTo(snapshotSourceLen).concat(snapshotFileName).$();
+            path.trimTo(snapshotTargetLen).concat(snapshotFileName).$();
+            // files of sealed partitions are not modified in place, backup can share them
+            if (!snapshotLinkFiles || ff.hardLink(snapshotSourcePath, path) != 0) {
+                copySnapshotFile();
+            }
+        }
+    }
+
     private TableWriter copyTableData(CharSequence tableName, RecordCursor cursor, RecordMetadata cursorMetadata) {
         TableWriter writer = new TableWriter(configuration, tableName, messageBus, false, DefaultLifecycleManager.INSTANCE);
         try {
@@ -1831,7 +2013,8 @@ public class SqlCompiler implements Closeable {
     private CompiledQuery executeCopy(SqlExecutionContext executionContext, CopyModel executionModel) throws SqlException {
         setupTextLoaderFromModel(executionModel);
         if (Chars.equalsLowerCaseAscii(executionModel.getFileName().token, "stdin")) {
-            return compiledQuery.ofCopyRemote(textLoader);
+            textLoader.setForceHeaders(executionModel.isHeader());
+            return compiledQuery.ofCopyRemote(textLoader, executionModel.getFormat());
         }
         copyTable(executionContext, executionModel);
         return compiledQuery.ofCopyLocal();
@@ -1862,6 +2045,34 @@ public class SqlCompiler implements Closeable {
         return codeGenerator.generate(queryModel, executionContext);
     }
 
+    private void expectBackupEnd() throws SqlException {
+        final CharSequence tok = SqlUtil.fetchNext(lexer);
+        if (null != tok && !Chars.equals(tok, ';')) {
+            throw SqlException.position(lexer.lastTokenPosition()).put("unexpected token [").put(tok).put(']');
+        }
+    }
+
+    private RecordCursorFactory generateSelect(CharSequence query, QueryModel queryModel, SqlExecutionContext executionContext) throws SqlException {
+        final RecordCursorFactory factory = generate(queryModel, executionContext);
+        final ResultCache resultCache = engine.getResultCache();
+        if (resultCache != null && codeGenerator.isQueryResultCacheable()) {
+            try {
+                return new ResultCacheRecordCursorFactory(
+                        engine,
+                        resultCache,
+                        factory,
+                        query,
+                        codeGenerator.getQueryTableNames(),
+                        asm
+                );
+            } catch (Throwable e) {
+                Misc.free(factory);
+                throw e;
+            }
+        }
+        return factory;
+    }
+
     private CompiledQuery insert(ExecutionModel executionModel, SqlExecutionContext executionContext) throws SqlException {
         final InsertModel model = (InsertModel) executionModel;
         final ExpressionNode name = model.getTableName();
@@ -2186,7 +2397,17 @@ public class SqlCompiler implements Closeable {
         // todo: configure the following
         //   - what happens when data row errors out, max errors may be?
         //   - we should be able to skip X rows from top, dodgy headers etc.
-        textLoader.configureDestination(model.getTableName().token, false, false, Atomicity.SKIP_ROW, PartitionBy.NONE, null);
+        textLoader.configureDestination(
+                model.getTableName().token,
+                false,
+                false,
+                Atomicity.SKIP_ROW,
+                model.getPartitionBy(),
+                model.getTimestamp() != null ? model.getTimestamp().token : null
+        );
+        if (model.getDelimiter() > 0) {
+            textLoader.configureColumnDelimiter(model.getDelimiter());
+        }
     }
 
     private CompiledQuery sqlBackup(SqlExecutionContext executionContext) throws SqlException {
@@ -2208,7 +2429,15 @@ public class SqlCompiler implements Closeable {
         throw SqlException.position(lexer.lastTokenPosition()).put("expected 'table' or 'database'");
     }
 
-    private CompiledQuery sqlDatabaseBackup(SqlExecutionContext executionContext) {
+    private CompiledQuery sqlDatabaseBackup(SqlExecutionContext executionContext) throws SqlException {
+        final CharSequence tok = SqlUtil.fetchNext(lexer);
+        if (null != tok && isSnapshotKeyword(tok)) {
+            backupSnapshot = true;
+            expectBackupEnd();
+        } else if (null != tok && !Chars.equals(tok, ';')) {
+            throw SqlException.position(lexer.lastTokenPosition()).put("expected 'snapshot' or end of statement");
+        }
+
         currentExecutionContext = executionContext;
         try {
             setupBackupRenamePath();
@@ -2216,6 +2445,7 @@ public class SqlCompiler implements Closeable {
             return compiledQuery.ofBackupTable();
         } finally {
             currentExecutionContext = null;
+            backupSnapshot = false;
         }
     }
 
@@ -2304,6 +2534,11 @@ public class SqlCompiler implements Closeable {
                 if (null == tok || Chars.equals(tok, ';')) {
                     break;
                 }
+                if (isSnapshotKeyword(tok)) {
+                    backupSnapshot = true;
+                    expectBackupEnd();
+                    break;
+                }
                 if (!Chars.equals(tok, ',')) {
                     throw SqlException.position(lexer.lastTokenPosition()).put("expected ','");
                 }
@@ -2316,6 +2551,7 @@ public class SqlCompiler implements Closeable {
             return compiledQuery.ofBackupTable();
         } finally {
             tableNames.clear();
+            backupSnapshot = false;
         }
     }
 
@@ -2546,6 +2782,7 @@ public class SqlCompiler implements Closeable {
     public final static class PartitionAction {
         public static final int DROP = 1;
         public static final int ATTACH = 2;
+        public static final int COMPRESS = 3;
     }
 
     private static class TableStructureAdapter implements TableStructure {
@@ -74,7 +74,14 @@ public interface SqlExecutionContext extends Closeable {
             @Nullable RecordSink partitionBySink,
             @Transient @Nullable ColumnTypes keyTypes,
             boolean isOrdered,
-            boolean baseSupportsRandomAccess
+            boolean baseSupportsRandomAccess,
+            int framingMode,
+            long rowsLo,
+            long rowsHi,
+            int framePosition,
+            int orderByIndex,
+            int orderByDirection,
+            int orderByType
     );
 
     void initNow();
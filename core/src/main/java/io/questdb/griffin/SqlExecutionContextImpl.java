@@ -158,14 +158,28 @@ public class SqlExecutionContextImpl implements SqlExecutionContext {
             @Nullable RecordSink partitionBySink,
             @Transient @Nullable ColumnTypes partitionByKeyTypes,
             boolean ordered,
-            boolean baseSupportsRandomAccess
+            boolean baseSupportsRandomAccess,
+            int framingMode,
+            long rowsLo,
+            long rowsHi,
+            int framePosition,
+            int orderByIndex,
+            int orderByDirection,
+            int orderByType
     ) {
         analyticContext.of(
                 partitionByRecord,
                 partitionBySink,
                 partitionByKeyTypes,
                 ordered,
-                baseSupportsRandomAccess
+                baseSupportsRandomAccess,
+                framingMode,
+                rowsLo,
+                rowsHi,
+                framePosition,
+                orderByIndex,
+                orderByDirection,
+                orderByType
         );
     }
 
@@ -361,6 +361,70 @@ public final class SqlParser {
         return model;
     }
 
+    // parses ROWS or RANGE frame clause of analytic function, returns token that follows the clause
+    private CharSequence parseAnalyticFrame(GenericLexer lexer, AnalyticColumn col, CharSequence tok) throws SqlException {
+        final int framePosition = lexer.lastTokenPosition();
+        final int framingMode = isRowsKeyword(tok) ? AnalyticColumn.FRAMING_ROWS : AnalyticColumn.FRAMING_RANGE;
+        final long rowsLo;
+        final long rowsHi;
+        tok = tok(lexer, "'between', 'unbounded', 'current' or integer");
+        if (isBetweenKeyword(tok)) {
+            rowsLo = parseAnalyticFrameBound(lexer);
+            expectTok(lexer, "and");
+            rowsHi = parseAnalyticFrameBound(lexer);
+        } else {
+            // short form, frame ends at current row
+            lexer.unparse();
+            rowsLo = parseAnalyticFrameBound(lexer);
+            rowsHi = 0;
+        }
+
+        if (rowsLo == AnalyticColumn.UNBOUNDED_FOLLOWING) {
+            throw SqlException.$(framePosition, "frame start cannot be 'unbounded following'");
+        }
+        if (rowsHi == AnalyticColumn.UNBOUNDED_PRECEDING) {
+            throw SqlException.$(framePosition, "frame end cannot be 'unbounded preceding'");
+        }
+        if (rowsLo > rowsHi) {
+            throw SqlException.$(framePosition, "frame start must not follow frame end");
+        }
+        col.setFrame(framingMode, rowsLo, rowsHi, framePosition);
+        return tok(lexer, "')'");
+    }
+
+    private long parseAnalyticFrameBound(GenericLexer lexer) throws SqlException {
+        CharSequence tok = tok(lexer, "'unbounded', 'current' or integer");
+        if (isUnboundedKeyword(tok)) {
+            tok = tok(lexer, "'preceding' or 'following'");
+            if (isPrecedingKeyword(tok)) {
+                return AnalyticColumn.UNBOUNDED_PRECEDING;
+            }
+            if (isFollowingKeyword(tok)) {
+                return AnalyticColumn.UNBOUNDED_FOLLOWING;
+            }
+            throw err(lexer, "'preceding' or 'following' expected");
+        }
+
+        if (isCurrentKeyword(tok)) {
+            expectTok(lexer, "row");
+            return 0;
+        }
+
+        lexer.unparse();
+        final long offset = expectLong(lexer);
+        if (offset < 0 || offset == Long.MAX_VALUE) {
+            throw err(lexer, "non-negative integer expected");
+        }
+        tok = tok(lexer, "'preceding' or 'following'");
+        if (isPrecedingKeyword(tok)) {
+            return -offset;
+        }
+        if (isFollowingKeyword(tok)) {
+            return offset;
+        }
+        throw err(lexer, "'preceding' or 'following' expected");
+    }
+
     private QueryModel parseAsSubQueryAndExpectClosingBrace(GenericLexer lexer, LowerCaseCharSequenceObjHashMap<WithClauseModel> withClauses) throws SqlException {
         final QueryModel model = parseAsSubQuery(lexer, withClauses);
         expectTok(lexer, ')');
@@ -368,9 +432,7 @@ public final class SqlParser {
     }
 
     private ExecutionModel parseCopy(GenericLexer lexer) throws SqlException {
-        if (configuration.getInputRoot() == null) {
-            throw SqlException.$(lexer.lastTokenPosition(), "COPY is disabled ['cairo.sql.copy.root' is not set?]");
-        }
+        final int copyPosition = lexer.lastTokenPosition();
         ExpressionNode tableName = expectExpr(lexer);
         CharSequence tok = tok(lexer, "'from' or 'to'");
 
@@ -379,6 +441,10 @@ public final class SqlParser {
             if (fileName.token.length() < 3 && Chars.startsWith(fileName.token, '\'')) {
                 throw SqlException.$(fileName.position, "file name expected");
             }
+            // data sent by client does not need import root
+            if (configuration.getInputRoot() == null && !Chars.equalsLowerCaseAscii(fileName.token, "stdin")) {
+                throw SqlException.$(copyPosition, "COPY is disabled ['cairo.sql.copy.root' is not set?]");
+            }
             CopyModel model = copyModelPool.next();
             model.setTableName(tableName);
             model.setFileName(fileName);
@@ -386,14 +452,66 @@ public final class SqlParser {
             tok = optTok(lexer);
             if (tok != null && isWithKeyword(tok)) {
                 tok = tok(lexer, "copy option");
+                // PostgreSQL syntax encloses comma separated options in braces
+                final boolean braced = Chars.equals(tok, '(');
+                if (braced) {
+                    tok = tok(lexer, "copy option");
+                }
                 while (tok != null) {
+                    if (braced && Chars.equals(tok, ')')) {
+                        break;
+                    }
+                    if (braced && Chars.equals(tok, ',')) {
+                        tok = tok(lexer, "copy option");
+                        continue;
+                    }
                     if (isHeaderKeyword(tok)) {
                         model.setHeader(isTrueKeyword(tok(lexer, "'true' or 'false'")));
                         tok = optTok(lexer);
+                    } else if (isPartitionKeyword(tok)) {
+                        expectTok(lexer, "by");
+                        final ExpressionNode partitionBy = expectLiteral(lexer);
+                        if (PartitionBy.fromString(partitionBy.token) == -1) {
+                            throw SqlException.$(partitionBy.position, "'NONE', 'DAY', 'MONTH' or 'YEAR' expected");
+                        }
+                        model.setPartitionBy(partitionBy);
+                        tok = optTok(lexer);
+                    } else if (isTimestampKeyword(tok)) {
+                        final ExpressionNode timestamp = expectLiteral(lexer);
+                        model.setTimestamp(timestamp);
+                        tok = optTok(lexer);
+                    } else if (isFormatKeyword(tok)) {
+                        tok = tok(lexer, "'csv', 'text' or 'binary'");
+                        if (Chars.equalsLowerCaseAscii(tok, "csv")) {
+                            model.setFormat(CopyModel.FORMAT_CSV);
+                        } else if (Chars.equalsLowerCaseAscii(tok, "text")) {
+                            model.setFormat(CopyModel.FORMAT_TEXT);
+                        } else if (Chars.equalsLowerCaseAscii(tok, "binary")) {
+                            model.setFormat(CopyModel.FORMAT_BINARY);
+                        } else {
+                            throw SqlException.$(lexer.lastTokenPosition(), "'csv', 'text' or 'binary' expected");
+                        }
+                        tok = optTok(lexer);
+                    } else if (isDelimiterKeyword(tok)) {
+                        tok = GenericLexer.unquote(tok(lexer, "delimiter"));
+                        if (tok.length() != 1 || tok.charAt(0) > 127) {
+                            throw SqlException.$(lexer.lastTokenPosition(), "single ASCII character delimiter expected");
+                        }
+                        model.setDelimiter((byte) tok.charAt(0));
+                        tok = optTok(lexer);
                     } else {
                         throw SqlException.$(lexer.lastTokenPosition(), "unexpected option");
                     }
                 }
+                if (braced && (tok == null || !Chars.equals(tok, ')'))) {
+                    throw SqlException.$(lexer.lastTokenPosition(), "')' expected");
+                }
+                if (model.getFormat() == CopyModel.FORMAT_BINARY && !Chars.equalsLowerCaseAscii(fileName.token, "stdin")) {
+                    throw SqlException.$(fileName.position, "binary format is supported for STDIN only");
+                }
+                if (model.getPartitionBy() != PartitionBy.NONE && model.getTimestamp() == null) {
+                    throw SqlException.$(lexer.lastTokenPosition(), "timestamp is required when partition by is specified");
+                }
             }
             return model;
         }
@@ -1281,6 +1399,10 @@ public final class SqlParser {
                         }
                     } while (Chars.equals(tok, ','));
                 }
+
+                if (isRowsKeyword(tok) || isRangeKeyword(tok)) {
+                    tok = parseAnalyticFrame(lexer, (AnalyticColumn) col, tok);
+                }
                 expectTok(tok, lexer.lastTokenPosition(), ')');
                 tok = optTok(lexer);
 
@@ -53,6 +53,10 @@ public abstract class AbstractVirtualFunctionRecordCursor implements RecordCurso
         baseCursor = Misc.free(baseCursor);
     }
 
+    public RecordCursor getBaseCursor() {
+        return baseCursor;
+    }
+
     @Override
     public Record getRecord() {
         return recordA;
@@ -38,4 +38,26 @@ public interface AnalyticContext {
     boolean isOrdered();
 
     boolean baseSupportsRandomAccess();
+
+    /**
+     * @return {@link io.questdb.griffin.model.AnalyticColumn#FRAMING_ROWS} or {@link io.questdb.griffin.model.AnalyticColumn#FRAMING_RANGE},
+     * frame bounds of the latter are differences of order by values
+     */
+    int getFramingMode();
+
+    long getRowsLo();
+
+    long getRowsHi();
+
+    int getFramePosition();
+
+    /**
+     * @return index of the only order by column in the record analytic function is evaluated on, -1 when function
+     * is ordered by more than one column or not ordered at all
+     */
+    int getOrderByIndex();
+
+    int getOrderByDirection();
+
+    int getOrderByType();
 }
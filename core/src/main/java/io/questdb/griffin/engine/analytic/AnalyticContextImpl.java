@@ -36,6 +36,13 @@ public class AnalyticContextImpl implements AnalyticContext {
     private ColumnTypes partitionByKeyTypes;
     private boolean ordered;
     private boolean baseSupportsRandomAccess;
+    private int framingMode;
+    private long rowsLo;
+    private long rowsHi;
+    private int framePosition;
+    private int orderByIndex;
+    private int orderByDirection;
+    private int orderByType;
 
     @Override
     public VirtualRecord getPartitionByRecord() {
@@ -62,17 +69,66 @@ public class AnalyticContextImpl implements AnalyticContext {
         return baseSupportsRandomAccess;
     }
 
+    @Override
+    public int getFramingMode() {
+        return framingMode;
+    }
+
+    @Override
+    public long getRowsLo() {
+        return rowsLo;
+    }
+
+    @Override
+    public long getRowsHi() {
+        return rowsHi;
+    }
+
+    @Override
+    public int getFramePosition() {
+        return framePosition;
+    }
+
+    @Override
+    public int getOrderByIndex() {
+        return orderByIndex;
+    }
+
+    @Override
+    public int getOrderByDirection() {
+        return orderByDirection;
+    }
+
+    @Override
+    public int getOrderByType() {
+        return orderByType;
+    }
+
     public void of(
             VirtualRecord partitionByRecord,
             @Nullable RecordSink partitionBySink,
             @Transient @Nullable ColumnTypes partitionByKeyTypes,
             boolean ordered,
-            boolean baseSupportsRandomAccess
+            boolean baseSupportsRandomAccess,
+            int framingMode,
+            long rowsLo,
+            long rowsHi,
+            int framePosition,
+            int orderByIndex,
+            int orderByDirection,
+            int orderByType
     ) {
         this.partitionByRecord = partitionByRecord;
         this.partitionBySink = partitionBySink;
         this.partitionByKeyTypes = partitionByKeyTypes;
         this.ordered = ordered;
         this.baseSupportsRandomAccess = baseSupportsRandomAccess;
+        this.framingMode = framingMode;
+        this.rowsLo = rowsLo;
+        this.rowsHi = rowsHi;
+        this.framePosition = framePosition;
+        this.orderByIndex = orderByIndex;
+        this.orderByDirection = orderByDirection;
+        this.orderByType = orderByType;
     }
 }
@@ -33,11 +33,28 @@ public interface AnalyticFunction extends Function {
     int TWO_PASS = 2;
     int THREE_PASS = 3;
 
+    /**
+     * Computes value of the function for the next record of the input, records are expected in
+     * the order of the function. Value is then read through the getters of the function. Only
+     * functions that stream, see {@link #getPassCount()}, are required to support this method.
+     *
+     * @param record next record
+     */
+    void computeNext(Record record);
+
+    /**
+     * @return {@link #STREAM} when value of the record can be computed from the records that precede it,
+     * otherwise number of passes over materialized input the function needs
+     */
+    default int getPassCount() {
+        return STREAM;
+    }
+
     void pass1(Record record, long recordOffset, AnalyticSPI spi);
 
     void preparePass2(RecordCursor cursor);
 
-    void pass2(Record record);
+    void pass2(Record record, long recordOffset, AnalyticSPI spi);
 
     void reset();
 
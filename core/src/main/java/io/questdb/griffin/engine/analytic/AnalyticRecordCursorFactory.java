@@ -0,0 +1,151 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.analytic;
+
+import io.questdb.cairo.AbstractRecordCursorFactory;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.table.SelectedRecordCursor;
+import io.questdb.std.IntList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+
+/**
+ * Computes analytic functions in a single pass over the base cursor. Applicable when all functions
+ * are ordered as the base cursor and value of each record is computed from the records that precede
+ * it, see {@link AnalyticFunction#STREAM}. Unlike {@link CachedAnalyticRecordCursorFactory} the base
+ * cursor is not materialized.
+ * <p>
+ * Functions are evaluated against the same column layout as the cached factory uses, it is mapped onto
+ * the base record through column cross index.
+ */
+public class AnalyticRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final ObjList<Function> functions;
+    private final ObjList<AnalyticFunction> analyticFunctions;
+    private final SelectedRecordCursor selectedCursor;
+    private final AnalyticRecordCursor cursor;
+
+    public AnalyticRecordCursorFactory(
+            RecordCursorFactory base,
+            RecordMetadata metadata,
+            IntList columnCrossIndex,
+            ObjList<Function> functions,
+            ObjList<AnalyticFunction> analyticFunctions
+    ) {
+        super(metadata);
+        this.base = base;
+        this.functions = functions;
+        this.analyticFunctions = analyticFunctions;
+        this.selectedCursor = new SelectedRecordCursor(columnCrossIndex, false);
+        this.cursor = new AnalyticRecordCursor(functions);
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(functions);
+        Misc.free(base);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        final RecordCursor baseCursor = base.getCursor(executionContext);
+        try {
+            selectedCursor.of(baseCursor);
+            Function.init(functions, selectedCursor, executionContext);
+            resetFunctions();
+            cursor.of(selectedCursor);
+            return cursor;
+        } catch (Throwable e) {
+            baseCursor.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    private void resetFunctions() {
+        for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+            analyticFunctions.getQuick(i).reset();
+        }
+    }
+
+    private class AnalyticRecordCursor implements NoRandomAccessRecordCursor {
+        private final VirtualRecordNoRowid record;
+        private RecordCursor baseCursor;
+        private Record baseRecord;
+
+        AnalyticRecordCursor(ObjList<Function> functions) {
+            this.record = new VirtualRecordNoRowid(functions);
+        }
+
+        @Override
+        public void close() {
+            baseCursor.close();
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            return baseCursor.getSymbolTable(columnIndex);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (baseCursor.hasNext()) {
+                for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+                    analyticFunctions.getQuick(i).computeNext(baseRecord);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return baseCursor.size();
+        }
+
+        @Override
+        public void toTop() {
+            baseCursor.toTop();
+            resetFunctions();
+        }
+
+        void of(RecordCursor baseCursor) {
+            this.baseCursor = baseCursor;
+            this.baseRecord = baseCursor.getRecord();
+            record.of(baseRecord);
+        }
+    }
+}
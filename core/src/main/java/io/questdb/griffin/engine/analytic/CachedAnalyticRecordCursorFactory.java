@@ -25,14 +25,13 @@ package io.questdb.griffin.engine.analytic;
 
 
 import io.questdb.cairo.*;
-import io.questdb.cairo.sql.Record;
-import io.questdb.cairo.sql.RecordCursor;
-import io.questdb.cairo.sql.RecordCursorFactory;
-import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.sql.*;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.engine.RecordComparator;
 import io.questdb.griffin.engine.orderby.LongTreeChain;
+import io.questdb.griffin.engine.table.SelectedRecordCursor;
+import io.questdb.std.IntList;
 import io.questdb.std.Misc;
 import io.questdb.std.ObjList;
 import io.questdb.std.Transient;
@@ -49,6 +48,9 @@ public class CachedAnalyticRecordCursorFactory implements RecordCursorFactory {
     private final ObjList<RecordComparator> comparators;
     private final GenericRecordMetadata metadata;
     private final Record recordChainRecord;
+    // maps chain columns to columns of base cursor to resolve symbol tables
+    private final SelectedRecordCursor selectedCursor;
+    private final CachedAnalyticRecordCursor cursor = new CachedAnalyticRecordCursor();
     private boolean closed = false;
 
     public CachedAnalyticRecordCursorFactory(
@@ -57,6 +59,7 @@ public class CachedAnalyticRecordCursorFactory implements RecordCursorFactory {
             RecordSink recordSink,
             GenericRecordMetadata metadata,
             @Transient ColumnTypes chainMetadata,
+            IntList columnCrossIndex,
             ObjList<RecordComparator> comparators,
             ObjList<ObjList<AnalyticFunction>> orderedFunctions,
             @Nullable ObjList<AnalyticFunction> unorderedFunctions
@@ -98,6 +101,7 @@ public class CachedAnalyticRecordCursorFactory implements RecordCursorFactory {
         this.metadata = metadata;
         this.recordChainRecord = recordChain.getRecord();
         this.unorderedFunctions = unorderedFunctions;
+        this.selectedCursor = new SelectedRecordCursor(columnCrossIndex, false);
     }
 
     @Override
@@ -119,7 +123,20 @@ public class CachedAnalyticRecordCursorFactory implements RecordCursorFactory {
         resetFunctions();
 
         final RecordCursor baseCursor = base.getCursor(executionContext);
+        try {
+            selectedCursor.of(baseCursor);
+            recordChain.setSymbolTableResolver(selectedCursor);
+            Function.init(allFunctions, selectedCursor, executionContext);
+            buildChain(baseCursor);
+            cursor.of(baseCursor);
+            return cursor;
+        } catch (Throwable e) {
+            baseCursor.close();
+            throw e;
+        }
+    }
 
+    private void buildChain(RecordCursor baseCursor) {
         // step #1: store source cursor in record list
         // - add record list' row ids to all trees, which will put these row ids in necessary order
         // for this we will be using out comparator, which helps tree compare long values
@@ -169,8 +186,19 @@ public class CachedAnalyticRecordCursorFactory implements RecordCursorFactory {
             }
         }
 
+        // run pass2 for functions that need all records of their partition to be seen first
+        for (int i = 0, n = allFunctions.size(); i < n; i++) {
+            final AnalyticFunction f = allFunctions.getQuick(i);
+            if (f.getPassCount() > AnalyticFunction.STREAM) {
+                f.preparePass2(recordChain);
+                recordChain.toTop();
+                while (recordChain.hasNext()) {
+                    f.pass2(recordChainRecord, recordChainRecord.getRowId(), recordChain);
+                }
+            }
+        }
+
         recordChain.toTop();
-        return recordChain;
     }
 
     private void resetFunctions() {
@@ -194,4 +222,52 @@ public class CachedAnalyticRecordCursorFactory implements RecordCursorFactory {
     public boolean recordCursorSupportsRandomAccess() {
         return base.recordCursorSupportsRandomAccess();
     }
+
+    private class CachedAnalyticRecordCursor implements RecordCursor {
+        private RecordCursor baseCursor;
+
+        @Override
+        public void close() {
+            baseCursor.close();
+        }
+
+        @Override
+        public Record getRecord() {
+            return recordChain.getRecord();
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            return selectedCursor.getSymbolTable(columnIndex);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return recordChain.hasNext();
+        }
+
+        @Override
+        public Record getRecordB() {
+            return recordChain.getRecordB();
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            recordChain.recordAt(record, atRowId);
+        }
+
+        @Override
+        public long size() {
+            return recordChain.size();
+        }
+
+        @Override
+        public void toTop() {
+            recordChain.toTop();
+        }
+
+        private void of(RecordCursor baseCursor) {
+            this.baseCursor = baseCursor;
+        }
+    }
 }
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.functions;
+
+import io.questdb.cairo.sql.Function;
+
+/**
+ * Boolean function that compares its left and right arguments. Comparison kind tells which
+ * getter the function uses to read the arguments and how it treats nulls. This allows
+ * comparisons of a column with a constant to be evaluated directly over column memory,
+ * see {@link io.questdb.griffin.engine.table.FilterCompiler}.
+ */
+public interface ComparisonFunction extends Function {
+    // getInt() values are equal, null compares as a regular value
+    int EQ_INT = 1;
+    // getLong() values are equal, null compares as a regular value
+    int EQ_LONG = 2;
+    // getTimestamp() values are equal, null compares as a regular value
+    int EQ_TIMESTAMP = 3;
+    // getDouble() values are equal, NaN equals NaN and values closer than 1E-10 are equal
+    int EQ_DOUBLE = 4;
+    // getInt() left is less than right, false when either value is null, negated or not
+    int LT_INT = 5;
+    // getTimestamp() left is less than right, false when either value is null, negated or not
+    int LT_TIMESTAMP = 6;
+    // getDouble() left is less than right, false when either value is NaN, negated or not
+    int LT_DOUBLE = 7;
+
+    int getComparisonKind();
+
+    Function getLeft();
+
+    Function getRight();
+
+    boolean isNegated();
+}
@@ -49,10 +49,27 @@ public interface GroupByFunction extends Function {
 
     void computeNext(MapValue mapValue, Record record);
 
+    /**
+     * @return true when partial states computed by separate instances of the function over
+     * disjoint sets of rows can be combined via {@link #merge(MapValue, MapValue)}
+     */
+    default boolean isMergeSupported() {
+        return false;
+    }
+
     default boolean isScalar() {
         return true;
     }
 
+    /**
+     * Combines partial state in srcValue into destValue. Both values must have been computed by
+     * instances of this function that were given the same value column layout. The result does
+     * not depend on the order in which partial states are merged.
+     */
+    default void merge(MapValue destValue, MapValue srcValue) {
+        throw new UnsupportedOperationException();
+    }
+
     void pushValueTypes(ArrayColumnTypes columnTypes);
 
     default void setByte(MapValue mapValue, byte value) {
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.functions.analytic;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnTypes;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapFactory;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.analytic.AnalyticContext;
+import io.questdb.griffin.engine.analytic.AnalyticFunction;
+import io.questdb.griffin.engine.functions.DoubleFunction;
+import io.questdb.griffin.engine.groupby.SimpleMapValue;
+import io.questdb.std.Misc;
+import io.questdb.std.Unsafe;
+
+import java.io.Closeable;
+
+/**
+ * Analytic function of double argument, which keeps its state per partition. State of a partition
+ * is a value of off-heap map keyed by PARTITION BY values, functions without PARTITION BY
+ * keep their state in a single value.
+ */
+public abstract class AbstractAnalyticDoubleFunction extends DoubleFunction implements AnalyticFunction, Closeable {
+    protected final Function arg;
+    private final Map map;
+    private final VirtualRecord partitionByRecord;
+    private final RecordSink partitionBySink;
+    private final SimpleMapValue simpleValue;
+    protected double value;
+    protected boolean newState;
+    private boolean simpleValueNew = true;
+    private int columnIndex;
+
+    protected AbstractAnalyticDoubleFunction(
+            CairoConfiguration configuration,
+            AnalyticContext analyticContext,
+            Function arg,
+            ColumnTypes stateTypes
+    ) {
+        this.arg = arg;
+        this.partitionByRecord = analyticContext.getPartitionByRecord();
+        this.partitionBySink = analyticContext.getPartitionBySink();
+        if (partitionByRecord != null) {
+            this.map = MapFactory.createMap(configuration, analyticContext.getPartitionByKeyTypes(), stateTypes);
+            this.simpleValue = null;
+        } else {
+            this.map = null;
+            this.simpleValue = new SimpleMapValue(stateTypes.getColumnCount());
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.free(map);
+        if (partitionByRecord != null) {
+            Misc.freeObjList(partitionByRecord.getFunctions());
+        }
+        Misc.free(arg);
+    }
+
+    @Override
+    public double getDouble(Record rec) {
+        return value;
+    }
+
+    @Override
+    public void init(SymbolTableSource symbolTableSource, SqlExecutionContext executionContext) throws SqlException {
+        arg.init(symbolTableSource, executionContext);
+        if (partitionByRecord != null) {
+            Function.init(partitionByRecord.getFunctions(), symbolTableSource, executionContext);
+        }
+    }
+
+    @Override
+    public void pass1(Record record, long recordOffset, AnalyticSPI spi) {
+        computeNext(record);
+        Unsafe.getUnsafe().putDouble(spi.getAddress(recordOffset, columnIndex), value);
+    }
+
+    @Override
+    public void pass2(Record record, long recordOffset, AnalyticSPI spi) {
+    }
+
+    @Override
+    public void preparePass2(RecordCursor cursor) {
+    }
+
+    @Override
+    public void reset() {
+        if (map != null) {
+            map.clear();
+        }
+        simpleValueNew = true;
+    }
+
+    @Override
+    public void setColumnIndex(int columnIndex) {
+        this.columnIndex = columnIndex;
+    }
+
+    /**
+     * @return state of partition the record belongs to, or null when the partition has not been seen
+     */
+    protected MapValue findState(Record record) {
+        if (map == null) {
+            return simpleValueNew ? null : simpleValue;
+        }
+        partitionByRecord.of(record);
+        final MapKey key = map.withKey();
+        key.put(partitionByRecord, partitionBySink);
+        return key.findValue();
+    }
+
+    protected int getColumnIndex() {
+        return columnIndex;
+    }
+
+    /**
+     * Finds or creates state of partition the record belongs to, {@link #newState} is set
+     * when the state has just been created and has to be initialised.
+     */
+    protected MapValue getState(Record record) {
+        if (map == null) {
+            newState = simpleValueNew;
+            simpleValueNew = false;
+            return simpleValue;
+        }
+        partitionByRecord.of(record);
+        final MapKey key = map.withKey();
+        key.put(partitionByRecord, partitionBySink);
+        final MapValue state = key.createValue();
+        newState = state.isNew();
+        return state;
+    }
+}
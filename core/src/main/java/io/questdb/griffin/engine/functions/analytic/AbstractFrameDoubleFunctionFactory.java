@@ -0,0 +1,467 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.functions.analytic;
+
+import io.questdb.cairo.ArrayColumnTypes;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.AnalyticSPI;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryARW;
+import io.questdb.griffin.FunctionFactory;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.analytic.AnalyticContext;
+import io.questdb.griffin.model.AnalyticColumn;
+import io.questdb.griffin.model.QueryModel;
+import io.questdb.std.IntList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.Unsafe;
+
+/**
+ * Aggregates double values over frame of the current row. Supported frames are:
+ * <ul>
+ * <li>whole partition, which is the default without ORDER BY, computed in two passes</li>
+ * <li>UNBOUNDED PRECEDING to CURRENT ROW, which is the default with ORDER BY, computed from running totals</li>
+ * <li>N PRECEDING to CURRENT ROW, rows or range of order by values, computed from off-heap buffer of the frame</li>
+ * </ul>
+ * Sums are compensated, so that values leaving the frame do not leave rounding error behind. Minimum and
+ * maximum of bounded frame are kept in a monotonic deque of frame values, which makes them constant time
+ * per row on average.
+ * Frames, which end at current row, include rows up to and including the current one, rows with
+ * equal order by value that follow the current row are not part of its frame. Such frames
+ * stream when input is in the order of the function.
+ */
+public abstract class AbstractFrameDoubleFunctionFactory implements FunctionFactory {
+    static final int SUM = 0;
+    static final int AVG = 1;
+    static final int MIN = 2;
+    static final int MAX = 3;
+    static final int FIRST_VALUE = 4;
+    static final int LAST_VALUE = 5;
+
+    // state of partition
+    private static final int SUM_INDEX = 0;
+    private static final int COUNT_INDEX = 1;
+    // min, max, first or last value of unbounded frame
+    private static final int ACC_INDEX = 2;
+    private static final int BUFFER_OFFSET_INDEX = 3;
+    private static final int BUFFER_CAPACITY_INDEX = 4;
+    private static final int BUFFER_START_INDEX = 5;
+    private static final int BUFFER_SIZE_INDEX = 6;
+    // running compensation of the sum, it holds low order bits lost by SUM_INDEX
+    private static final int COMPENSATION_INDEX = 7;
+    // sequence number of the next row of the partition that enters the frame
+    private static final int SEQUENCE_INDEX = 8;
+    // deque of min or max candidates, it shares capacity with frame buffer
+    private static final int DEQUE_OFFSET_INDEX = 9;
+    private static final int DEQUE_START_INDEX = 10;
+    private static final int DEQUE_SIZE_INDEX = 11;
+    private static final ArrayColumnTypes STATE_TYPES = new ArrayColumnTypes();
+    // frame buffer entry is order by value followed by the argument value,
+    // deque entry is sequence number of the row followed by the argument value
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+    private static final int RANGE_BUFFER_INITIAL_CAPACITY = 16;
+
+    private final int kind;
+
+    protected AbstractFrameDoubleFunctionFactory(int kind) {
+        this.kind = kind;
+    }
+
+    @Override
+    public boolean isAnalytic() {
+        return true;
+    }
+
+    @Override
+    public Function newInstance(
+            int position,
+            ObjList<Function> args,
+            IntList argPositions,
+            CairoConfiguration configuration,
+            SqlExecutionContext sqlExecutionContext
+    ) throws SqlException {
+        final AnalyticContext analyticContext = sqlExecutionContext.getAnalyticContext();
+        final long rowsLo = analyticContext.getRowsLo();
+        final long rowsHi = analyticContext.getRowsHi();
+
+        if (rowsLo == AnalyticColumn.UNBOUNDED_PRECEDING && rowsHi == AnalyticColumn.UNBOUNDED_FOLLOWING) {
+            return new FrameDoubleFunction(configuration, analyticContext, args.getQuick(0), kind, true, -1, 0, -1, -1);
+        }
+
+        if (rowsHi != 0) {
+            throw SqlException.$(analyticContext.getFramePosition(), "frame must end at current row or at partition end");
+        }
+
+        if (rowsLo == AnalyticColumn.UNBOUNDED_PRECEDING) {
+            return new FrameDoubleFunction(configuration, analyticContext, args.getQuick(0), kind, false, -1, 0, -1, -1);
+        }
+
+        if (analyticContext.getFramingMode() == AnalyticColumn.FRAMING_ROWS) {
+            // frame of N preceding rows and the current one
+            return new FrameDoubleFunction(configuration, analyticContext, args.getQuick(0), kind, false, -rowsLo + 1, 0, -1, -1);
+        }
+
+        final int orderByIndex = analyticContext.getOrderByIndex();
+        if (orderByIndex < 0 || analyticContext.getOrderByDirection() != QueryModel.ORDER_DIRECTION_ASCENDING) {
+            throw SqlException.$(analyticContext.getFramePosition(), "RANGE frame requires single ascending ORDER BY column");
+        }
+        final int orderByType = analyticContext.getOrderByType();
+        if (ColumnType.tagOf(orderByType) != ColumnType.TIMESTAMP && ColumnType.tagOf(orderByType) != ColumnType.LONG) {
+            throw SqlException.$(analyticContext.getFramePosition(), "RANGE frame requires ORDER BY column of timestamp or long type");
+        }
+        return new FrameDoubleFunction(configuration, analyticContext, args.getQuick(0), kind, false, RANGE_BUFFER_INITIAL_CAPACITY, rowsLo, orderByIndex, orderByType);
+    }
+
+    private static class FrameDoubleFunction extends AbstractAnalyticDoubleFunction {
+        private final int kind;
+        private final boolean wholePartition;
+        // capacity of frame buffer in entries, -1 when frame is unbounded
+        private final long bufferCapacity;
+        private final long rangeLo;
+        private final int orderByIndex;
+        private final int orderByType;
+        private final MemoryARW memory;
+
+        FrameDoubleFunction(
+                CairoConfiguration configuration,
+                AnalyticContext analyticContext,
+                Function arg,
+                int kind,
+                boolean wholePartition,
+                long bufferCapacity,
+                long rangeLo,
+                int orderByIndex,
+                int orderByType
+        ) {
+            super(configuration, analyticContext, arg, STATE_TYPES);
+            this.kind = kind;
+            this.wholePartition = wholePartition;
+            this.bufferCapacity = bufferCapacity;
+            this.rangeLo = rangeLo;
+            this.orderByIndex = orderByIndex;
+            this.orderByType = orderByType;
+            this.memory = bufferCapacity > 0
+                    ? Vm.getARWInstance(configuration.getSqlAnalyticStorePageSize(), configuration.getSqlAnalyticStoreMaxPages())
+                    : null;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            Misc.free(memory);
+        }
+
+        @Override
+        public void computeNext(Record record) {
+            final double d = arg.getDouble(record);
+            final MapValue state = getState(record);
+            if (newState) {
+                state.putDouble(SUM_INDEX, 0);
+                state.putLong(COUNT_INDEX, 0);
+                state.putDouble(ACC_INDEX, kind == FIRST_VALUE || kind == LAST_VALUE ? d : Double.NaN);
+                state.putDouble(COMPENSATION_INDEX, 0);
+                if (bufferCapacity > 0) {
+                    final long offset = memory.getAppendOffset();
+                    memory.skip(bufferCapacity * ENTRY_SIZE);
+                    state.putLong(BUFFER_OFFSET_INDEX, offset);
+                    state.putLong(BUFFER_CAPACITY_INDEX, bufferCapacity);
+                    state.putLong(BUFFER_START_INDEX, 0);
+                    state.putLong(BUFFER_SIZE_INDEX, 0);
+                    state.putLong(SEQUENCE_INDEX, 0);
+                    if (hasDeque()) {
+                        state.putLong(DEQUE_OFFSET_INDEX, memory.getAppendOffset());
+                        memory.skip(bufferCapacity * ENTRY_SIZE);
+                    }
+                    state.putLong(DEQUE_START_INDEX, 0);
+                    state.putLong(DEQUE_SIZE_INDEX, 0);
+                }
+            }
+
+            if (bufferCapacity > 0) {
+                value = nextInFrame(state, record, d);
+            } else {
+                accumulate(state, d);
+                value = kind == LAST_VALUE ? d : getUnboundedValue(state);
+            }
+        }
+
+        @Override
+        public int getPassCount() {
+            return wholePartition ? TWO_PASS : STREAM;
+        }
+
+        @Override
+        public void pass1(Record record, long recordOffset, AnalyticSPI spi) {
+            if (wholePartition) {
+                // values are known once all rows of the partition are seen
+                final MapValue state = getState(record);
+                final double d = arg.getDouble(record);
+                if (newState) {
+                    state.putDouble(SUM_INDEX, 0);
+                    state.putLong(COUNT_INDEX, 0);
+                    state.putDouble(ACC_INDEX, kind == FIRST_VALUE ? d : Double.NaN);
+                    state.putDouble(COMPENSATION_INDEX, 0);
+                }
+                accumulate(state, d);
+            } else {
+                super.pass1(record, recordOffset, spi);
+            }
+        }
+
+        @Override
+        public void pass2(Record record, long recordOffset, AnalyticSPI spi) {
+            if (wholePartition) {
+                Unsafe.getUnsafe().putDouble(spi.getAddress(recordOffset, getColumnIndex()), getUnboundedValue(findState(record)));
+            }
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            if (memory != null) {
+                memory.jumpTo(0);
+            }
+        }
+
+        private void accumulate(MapValue state, double d) {
+            if (Double.isNaN(d)) {
+                if (kind == LAST_VALUE) {
+                    state.putDouble(ACC_INDEX, d);
+                }
+                return;
+            }
+            switch (kind) {
+                case SUM:
+                case AVG:
+                    final double sum = state.getDouble(SUM_INDEX);
+                    final double t = sum + d;
+                    state.putDouble(COMPENSATION_INDEX, state.getDouble(COMPENSATION_INDEX) + compensationOf(sum, d, t));
+                    state.putDouble(SUM_INDEX, t);
+                    state.putLong(COUNT_INDEX, state.getLong(COUNT_INDEX) + 1);
+                    break;
+                case MIN:
+                    final double min = state.getDouble(ACC_INDEX);
+                    if (Double.isNaN(min) || d < min) {
+                        state.putDouble(ACC_INDEX, d);
+                    }
+                    break;
+                case MAX:
+                    final double max = state.getDouble(ACC_INDEX);
+                    if (Double.isNaN(max) || d > max) {
+                        state.putDouble(ACC_INDEX, d);
+                    }
+                    break;
+                case LAST_VALUE:
+                    state.putDouble(ACC_INDEX, d);
+                    break;
+                default:
+                    // first value is set when partition is created
+                    break;
+            }
+        }
+
+        private double getUnboundedValue(MapValue state) {
+            switch (kind) {
+                case SUM:
+                    return state.getLong(COUNT_INDEX) > 0 ? state.getDouble(SUM_INDEX) + state.getDouble(COMPENSATION_INDEX) : Double.NaN;
+                case AVG:
+                    final long count = state.getLong(COUNT_INDEX);
+                    return count > 0 ? (state.getDouble(SUM_INDEX) + state.getDouble(COMPENSATION_INDEX)) / count : Double.NaN;
+                default:
+                    return state.getDouble(ACC_INDEX);
+            }
+        }
+
+        // Neumaier's variant of Kahan summation, returns low order bits of a + b lost by their sum t
+        private static double compensationOf(double a, double b, double t) {
+            return Math.abs(a) >= Math.abs(b) ? (a - t) + b : (b - t) + a;
+        }
+
+        private boolean hasDeque() {
+            return kind == MIN || kind == MAX;
+        }
+
+        // appends value to the frame buffer, evicts rows that are no longer in the frame
+        // and returns value of the frame
+        private double nextInFrame(MapValue state, Record record, double d) {
+            long offset = state.getLong(BUFFER_OFFSET_INDEX);
+            long capacity = state.getLong(BUFFER_CAPACITY_INDEX);
+            long start = state.getLong(BUFFER_START_INDEX);
+            long size = state.getLong(BUFFER_SIZE_INDEX);
+            double sum = state.getDouble(SUM_INDEX);
+            double compensation = state.getDouble(COMPENSATION_INDEX);
+            long count = state.getLong(COUNT_INDEX);
+            final long sequence = state.getLong(SEQUENCE_INDEX);
+            long dequeOffset = state.getLong(DEQUE_OFFSET_INDEX);
+            long dequeStart = state.getLong(DEQUE_START_INDEX);
+            long dequeSize = state.getLong(DEQUE_SIZE_INDEX);
+
+            final long orderValue;
+            if (orderByIndex > -1) {
+                orderValue = ColumnType.tagOf(orderByType) == ColumnType.TIMESTAMP ? record.getTimestamp(orderByIndex) : record.getLong(orderByIndex);
+                // range frame, evict rows that are too far behind
+                final long lo = orderValue + rangeLo;
+                while (size > 0 && memory.getLong(offset + start * ENTRY_SIZE) < lo) {
+                    final double evicted = memory.getDouble(offset + start * ENTRY_SIZE + Long.BYTES);
+                    if (!Double.isNaN(evicted)) {
+                        final double t = sum - evicted;
+                        compensation += compensationOf(sum, -evicted, t);
+                        sum = t;
+                        count--;
+                    }
+                    start = (start + 1) % capacity;
+                    size--;
+                }
+
+                if (size == capacity) {
+                    // frame does not fit, move it and the deque to buffers twice the size
+                    final long newOffset = memory.getAppendOffset();
+                    memory.skip(2 * capacity * ENTRY_SIZE);
+                    copyEntries(offset, start, size, capacity, newOffset);
+                    offset = newOffset;
+                    start = 0;
+                    if (hasDeque()) {
+                        final long newDequeOffset = memory.getAppendOffset();
+                        memory.skip(2 * capacity * ENTRY_SIZE);
+                        copyEntries(dequeOffset, dequeStart, dequeSize, capacity, newDequeOffset);
+                        dequeOffset = newDequeOffset;
+                        dequeStart = 0;
+                        state.putLong(DEQUE_OFFSET_INDEX, dequeOffset);
+                    }
+                    capacity *= 2;
+                    state.putLong(BUFFER_OFFSET_INDEX, offset);
+                    state.putLong(BUFFER_CAPACITY_INDEX, capacity);
+                }
+            } else {
+                orderValue = 0;
+                if (size == capacity) {
+                    // rows frame, the oldest row leaves the frame
+                    final double evicted = memory.getDouble(offset + start * ENTRY_SIZE + Long.BYTES);
+                    if (!Double.isNaN(evicted)) {
+                        final double t = sum - evicted;
+                        compensation += compensationOf(sum, -evicted, t);
+                        sum = t;
+                        count--;
+                    }
+                    start = (start + 1) % capacity;
+                    size--;
+                }
+            }
+
+            final long entry = offset + ((start + size) % capacity) * ENTRY_SIZE;
+            memory.putLong(entry, orderValue);
+            memory.putDouble(entry + Long.BYTES, d);
+            size++;
+            if (!Double.isNaN(d)) {
+                final double t = sum + d;
+                compensation += compensationOf(sum, d, t);
+                sum = t;
+                count++;
+            }
+            if (count == 0) {
+                // frame has no values, drop rounding error accumulated so far
+                sum = compensation = 0;
+            }
+
+            if (hasDeque()) {
+                // rows of the frame are the last "size" rows of the partition, candidates
+                // that are older than that have left the frame
+                final long frameLo = sequence + 1 - size;
+                while (dequeSize > 0 && memory.getLong(dequeOffset + dequeStart * ENTRY_SIZE) < frameLo) {
+                    dequeStart = (dequeStart + 1) % capacity;
+                    dequeSize--;
+                }
+                if (!Double.isNaN(d)) {
+                    // candidates that can no longer be min or max of any frame are dropped
+                    while (dequeSize > 0) {
+                        final double last = memory.getDouble(dequeOffset + ((dequeStart + dequeSize - 1) % capacity) * ENTRY_SIZE + Long.BYTES);
+                        if (kind == MIN ? last < d : last > d) {
+                            break;
+                        }
+                        dequeSize--;
+                    }
+                    final long dequeEntry = dequeOffset + ((dequeStart + dequeSize) % capacity) * ENTRY_SIZE;
+                    memory.putLong(dequeEntry, sequence);
+                    memory.putDouble(dequeEntry + Long.BYTES, d);
+                    dequeSize++;
+                }
+                state.putLong(DEQUE_START_INDEX, dequeStart);
+                state.putLong(DEQUE_SIZE_INDEX, dequeSize);
+            }
+
+            state.putLong(BUFFER_START_INDEX, start);
+            state.putLong(BUFFER_SIZE_INDEX, size);
+            state.putDouble(SUM_INDEX, sum);
+            state.putDouble(COMPENSATION_INDEX, compensation);
+            state.putLong(COUNT_INDEX, count);
+            state.putLong(SEQUENCE_INDEX, sequence + 1);
+
+            switch (kind) {
+                case SUM:
+                    return count > 0 ? sum + compensation : Double.NaN;
+                case AVG:
+                    return count > 0 ? (sum + compensation) / count : Double.NaN;
+                case MIN:
+                case MAX:
+                    return dequeSize > 0 ? memory.getDouble(dequeOffset + dequeStart * ENTRY_SIZE + Long.BYTES) : Double.NaN;
+                case FIRST_VALUE:
+                    return memory.getDouble(offset + start * ENTRY_SIZE + Long.BYTES);
+                default:
+                    return d;
+            }
+        }
+
+        // copies entries of a ring buffer to the start of another buffer
+        private void copyEntries(long srcOffset, long start, long size, long capacity, long dstOffset) {
+            for (long i = 0; i < size; i++) {
+                final long src = srcOffset + ((start + i) % capacity) * ENTRY_SIZE;
+                final long dst = dstOffset + i * ENTRY_SIZE;
+                memory.putLong(dst, memory.getLong(src));
+                memory.putDouble(dst + Long.BYTES, memory.getDouble(src + Long.BYTES));
+            }
+        }
+    }
+
+    static {
+        STATE_TYPES.add(ColumnType.DOUBLE);
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.DOUBLE);
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.DOUBLE);
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.LONG);
+    }
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.functions.analytic;
+
+import io.questdb.cairo.ArrayColumnTypes;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryARW;
+import io.questdb.griffin.FunctionFactory;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.IntList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+
+/**
+ * lag(value [, offset [, default]]) returns value of the row, which is offset rows before
+ * the current one in the partition, or default when there is no such row. Offset defaults
+ * to 1 and default to null. Function streams, it keeps last offset values of each partition.
+ */
+public class LagDoubleFunctionFactory implements FunctionFactory {
+    private static final int BUFFER_OFFSET_INDEX = 0;
+    private static final int BUFFER_START_INDEX = 1;
+    private static final int BUFFER_SIZE_INDEX = 2;
+    private static final ArrayColumnTypes STATE_TYPES = new ArrayColumnTypes();
+
+    static long getOffset(ObjList<Function> args, IntList argPositions) throws SqlException {
+        if (args.size() < 2) {
+            return 1;
+        }
+        final Function offset = args.getQuick(1);
+        if (!offset.isConstant() || (!ColumnType.isInt(offset.getType()) && ColumnType.tagOf(offset.getType()) != ColumnType.LONG)) {
+            throw SqlException.$(argPositions.getQuick(1), "integer constant expected");
+        }
+        final long value = offset.getLong(null);
+        if (value < 0) {
+            throw SqlException.$(argPositions.getQuick(1), "offset must be a non-negative integer");
+        }
+        return value;
+    }
+
+    static double getDefault(ObjList<Function> args, IntList argPositions) throws SqlException {
+        if (args.size() < 3) {
+            return Double.NaN;
+        }
+        if (args.size() > 3) {
+            throw SqlException.$(argPositions.getQuick(3), "too many arguments");
+        }
+        final Function defaultValue = args.getQuick(2);
+        if (!defaultValue.isConstant()) {
+            throw SqlException.$(argPositions.getQuick(2), "constant expected");
+        }
+        return defaultValue.getDouble(null);
+    }
+
+    @Override
+    public String getSignature() {
+        return "lag(DV)";
+    }
+
+    @Override
+    public boolean isAnalytic() {
+        return true;
+    }
+
+    @Override
+    public Function newInstance(
+            int position,
+            ObjList<Function> args,
+            IntList argPositions,
+            CairoConfiguration configuration,
+            SqlExecutionContext sqlExecutionContext
+    ) throws SqlException {
+        final long offset = getOffset(args, argPositions);
+        final double defaultValue = getDefault(args, argPositions);
+        for (int i = 1, n = args.size(); i < n; i++) {
+            Misc.free(args.getQuick(i));
+        }
+        return new LagFunction(configuration, sqlExecutionContext, args.getQuick(0), offset, defaultValue);
+    }
+
+    private static class LagFunction extends AbstractAnalyticDoubleFunction {
+        private final long offset;
+        private final double defaultValue;
+        private final MemoryARW memory;
+
+        LagFunction(
+                CairoConfiguration configuration,
+                SqlExecutionContext sqlExecutionContext,
+                Function arg,
+                long offset,
+                double defaultValue
+        ) {
+            super(configuration, sqlExecutionContext.getAnalyticContext(), arg, STATE_TYPES);
+            this.offset = offset;
+            this.defaultValue = defaultValue;
+            this.memory = offset > 0
+                    ? Vm.getARWInstance(configuration.getSqlAnalyticStorePageSize(), configuration.getSqlAnalyticStoreMaxPages())
+                    : null;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            Misc.free(memory);
+        }
+
+        @Override
+        public void computeNext(Record record) {
+            final double d = arg.getDouble(record);
+            if (offset == 0) {
+                value = d;
+                return;
+            }
+
+            final MapValue state = getState(record);
+            if (newState) {
+                final long bufferOffset = memory.getAppendOffset();
+                memory.skip(offset * Double.BYTES);
+                state.putLong(BUFFER_OFFSET_INDEX, bufferOffset);
+                state.putLong(BUFFER_START_INDEX, 0);
+                state.putLong(BUFFER_SIZE_INDEX, 0);
+            }
+
+            // ring buffer holds last offset values of the partition, the oldest one is the result
+            final long bufferOffset = state.getLong(BUFFER_OFFSET_INDEX);
+            final long start = state.getLong(BUFFER_START_INDEX);
+            final long size = state.getLong(BUFFER_SIZE_INDEX);
+            if (size == offset) {
+                final long address = bufferOffset + start * Double.BYTES;
+                value = memory.getDouble(address);
+                memory.putDouble(address, d);
+                state.putLong(BUFFER_START_INDEX, (start + 1) % offset);
+            } else {
+                value = defaultValue;
+                memory.putDouble(bufferOffset + ((start + size) % offset) * Double.BYTES, d);
+                state.putLong(BUFFER_SIZE_INDEX, size + 1);
+            }
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            if (memory != null) {
+                memory.jumpTo(0);
+            }
+        }
+    }
+
+    static {
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.LONG);
+        STATE_TYPES.add(ColumnType.LONG);
+    }
+}
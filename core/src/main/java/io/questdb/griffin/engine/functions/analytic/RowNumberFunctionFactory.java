@@ -78,6 +78,7 @@ public class RowNumberFunctionFactory implements FunctionFactory {
         private final VirtualRecord partitionByRecord;
         private final RecordSink partitionBySink;
         private int columnIndex;
+        private long value;
 
         public RowNumberFunction(Map map, VirtualRecord partitionByRecord, RecordSink partitionBySink) {
             this.map = map;
@@ -92,13 +93,7 @@ public class RowNumberFunctionFactory implements FunctionFactory {
         }
 
         @Override
-        public long getLong(Record rec) {
-            // not called
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void pass1(Record record, long recordOffset, AnalyticSPI spi) {
+        public void computeNext(Record record) {
             partitionByRecord.of(record);
             MapKey key = map.withKey();
             key.put(partitionByRecord, partitionBySink);
@@ -110,7 +105,18 @@ public class RowNumberFunctionFactory implements FunctionFactory {
                 x = value.getLong(0);
             }
             value.putLong(0, x + 1);
-            Unsafe.getUnsafe().putLong(spi.getAddress(recordOffset, columnIndex), x);
+            this.value = x;
+        }
+
+        @Override
+        public long getLong(Record rec) {
+            return value;
+        }
+
+        @Override
+        public void pass1(Record record, long recordOffset, AnalyticSPI spi) {
+            computeNext(record);
+            Unsafe.getUnsafe().putLong(spi.getAddress(recordOffset, columnIndex), value);
         }
 
         @Override
@@ -118,7 +124,7 @@ public class RowNumberFunctionFactory implements FunctionFactory {
         }
 
         @Override
-        public void pass2(Record record) {
+        public void pass2(Record record, long recordOffset, AnalyticSPI spi) {
         }
 
         @Override
@@ -69,14 +69,14 @@ public class AndFunctionFactory implements FunctionFactory {
                 rightFunc.close();
             }
         }
-        return new MyBooleanFunction(leftFunc, rightFunc);
+        return new AndBooleanFunction(leftFunc, rightFunc);
     }
 
-    private static class MyBooleanFunction extends BooleanFunction implements BinaryFunction {
+    public static class AndBooleanFunction extends BooleanFunction implements BinaryFunction {
         final Function left;
         final Function right;
 
-        public MyBooleanFunction(Function left, Function right) {
+        public AndBooleanFunction(Function left, Function right) {
             this.left = left;
             this.right = right;
         }
@@ -39,6 +39,10 @@ public class TimestampColumn extends TimestampFunction implements ScalarFunction
         this.columnIndex = columnIndex;
     }
 
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
     @Override
     public long getTimestamp(Record rec) {
         return rec.getTimestamp(columnIndex);
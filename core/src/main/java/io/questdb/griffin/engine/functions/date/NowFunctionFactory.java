@@ -41,6 +41,11 @@ public class NowFunctionFactory implements FunctionFactory {
         return "now()";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public boolean isRuntimeConstant() {
         return true;
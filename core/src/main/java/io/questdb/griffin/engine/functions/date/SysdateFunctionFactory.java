@@ -40,6 +40,11 @@ public class SysdateFunctionFactory implements FunctionFactory {
         return "sysdate()";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) {
         return new Func(configuration.getMillisecondClock());
@@ -40,6 +40,11 @@ public class SystimestampFunctionFactory implements FunctionFactory {
         return "systimestamp()";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) {
         return new Func(configuration.getMicrosecondClock());
@@ -31,6 +31,7 @@ import io.questdb.cairo.sql.Record;
 import io.questdb.griffin.FunctionFactory;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.engine.functions.BinaryFunction;
+import io.questdb.griffin.engine.functions.ComparisonFunction;
 import io.questdb.griffin.engine.functions.NegatableBooleanFunction;
 import io.questdb.griffin.engine.functions.UnaryFunction;
 import io.questdb.std.IntList;
@@ -95,7 +96,7 @@ public class EqDoubleFunctionFactory implements FunctionFactory {
         return new Func(args.getQuick(0), args.getQuick(1));
     }
 
-    protected static class Func extends NegatableBooleanFunction implements BinaryFunction {
+    protected static class Func extends NegatableBooleanFunction implements BinaryFunction, ComparisonFunction {
         protected final Function left;
         protected final Function right;
 
@@ -104,6 +105,11 @@ public class EqDoubleFunctionFactory implements FunctionFactory {
             this.right = right;
         }
 
+        @Override
+        public int getComparisonKind() {
+            return EQ_DOUBLE;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             final double l = left.getDouble(rec);
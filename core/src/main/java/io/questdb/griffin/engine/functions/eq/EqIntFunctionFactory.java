@@ -30,6 +30,7 @@ import io.questdb.cairo.sql.Record;
 import io.questdb.griffin.FunctionFactory;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.engine.functions.BinaryFunction;
+import io.questdb.griffin.engine.functions.ComparisonFunction;
 import io.questdb.griffin.engine.functions.NegatableBooleanFunction;
 import io.questdb.std.IntList;
 import io.questdb.std.ObjList;
@@ -50,7 +51,7 @@ public class EqIntFunctionFactory implements FunctionFactory {
         return new Func(args.getQuick(0), args.getQuick(1));
     }
 
-    private static class Func extends NegatableBooleanFunction implements BinaryFunction {
+    private static class Func extends NegatableBooleanFunction implements BinaryFunction, ComparisonFunction {
         private final Function left;
         private final Function right;
 
@@ -59,6 +60,11 @@ public class EqIntFunctionFactory implements FunctionFactory {
             this.right = right;
         }
 
+        @Override
+        public int getComparisonKind() {
+            return EQ_INT;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             return negated != (left.getInt(rec) == right.getInt(rec));
@@ -30,6 +30,8 @@ import io.questdb.griffin.FunctionFactory;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.engine.functions.BinaryFunction;
+import io.questdb.griffin.engine.functions.ComparisonFunction;
+import io.questdb.griffin.engine.functions.IntFunction;
 import io.questdb.griffin.engine.functions.NegatableBooleanFunction;
 import io.questdb.griffin.engine.functions.SymbolFunction;
 import io.questdb.griffin.engine.functions.UnaryFunction;
@@ -119,9 +121,10 @@ public class EqSymStrFunctionFactory implements FunctionFactory {
         }
     }
 
-    private static class ConstSymIntCheckFunc extends NegatableBooleanFunction implements UnaryFunction {
+    private static class ConstSymIntCheckFunc extends NegatableBooleanFunction implements UnaryFunction, ComparisonFunction {
         private final SymbolFunction arg;
         private final CharSequence constant;
+        private final SymbolKeyFunc key = new SymbolKeyFunc();
         private int valueIndex;
         private boolean exists;
 
@@ -135,6 +138,21 @@ public class EqSymStrFunctionFactory implements FunctionFactory {
             return arg;
         }
 
+        @Override
+        public int getComparisonKind() {
+            return EQ_INT;
+        }
+
+        @Override
+        public Function getLeft() {
+            return arg;
+        }
+
+        @Override
+        public Function getRight() {
+            return key;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             return negated != (exists && arg.getInt(rec) == valueIndex);
@@ -147,12 +165,15 @@ public class EqSymStrFunctionFactory implements FunctionFactory {
             assert staticSymbolTable != null : "Static symbol table is null for func with static isSymbolTableStatic returning true";
             valueIndex = staticSymbolTable.keyOf(constant);
             exists = valueIndex != SymbolTable.VALUE_NOT_FOUND;
+            // key that is not found does not match any value in the column
+            key.value = valueIndex;
         }
     }
 
-    private static class ConstCheckColumnFunc extends NegatableBooleanFunction implements UnaryFunction {
+    private static class ConstCheckColumnFunc extends NegatableBooleanFunction implements UnaryFunction, ComparisonFunction {
         private final SymbolFunction arg;
         private final CharSequence constant;
+        private final SymbolKeyFunc key = new SymbolKeyFunc();
         private int valueIndex;
 
         public ConstCheckColumnFunc(SymbolFunction arg, CharSequence constant) {
@@ -165,6 +186,21 @@ public class EqSymStrFunctionFactory implements FunctionFactory {
             return arg;
         }
 
+        @Override
+        public int getComparisonKind() {
+            return EQ_INT;
+        }
+
+        @Override
+        public Function getLeft() {
+            return arg;
+        }
+
+        @Override
+        public Function getRight() {
+            return key;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             return negated != (arg.getInt(rec) == valueIndex);
@@ -176,6 +212,7 @@ public class EqSymStrFunctionFactory implements FunctionFactory {
             final StaticSymbolTable symbolTable = arg.getStaticSymbolTable();
             assert symbolTable != null;
             valueIndex = symbolTable.keyOf(constant);
+            key.value = valueIndex;
         }
 
         @Override
@@ -218,4 +255,19 @@ public class EqSymStrFunctionFactory implements FunctionFactory {
             return negated != Chars.equalsNc(a, b);
         }
     }
+
+    // symbol key of the constant, resolved when comparison function is initialised
+    private static class SymbolKeyFunc extends IntFunction {
+        private int value;
+
+        @Override
+        public int getInt(Record rec) {
+            return value;
+        }
+
+        @Override
+        public boolean isRuntimeConstant() {
+            return true;
+        }
+    }
 }
@@ -30,6 +30,7 @@ import io.questdb.cairo.sql.Record;
 import io.questdb.griffin.FunctionFactory;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.engine.functions.BinaryFunction;
+import io.questdb.griffin.engine.functions.ComparisonFunction;
 import io.questdb.griffin.engine.functions.NegatableBooleanFunction;
 import io.questdb.std.IntList;
 import io.questdb.std.ObjList;
@@ -51,7 +52,7 @@ public class EqTimestampFunctionFactory implements FunctionFactory {
         return new EqTimestampFunction(args.getQuick(0), args.getQuick(1));
     }
 
-    private static class EqTimestampFunction extends NegatableBooleanFunction implements BinaryFunction {
+    private static class EqTimestampFunction extends NegatableBooleanFunction implements BinaryFunction, ComparisonFunction {
         private final Function left;
         private final Function right;
 
@@ -60,6 +61,11 @@ public class EqTimestampFunctionFactory implements FunctionFactory {
             this.right = right;
         }
 
+        @Override
+        public int getComparisonKind() {
+            return EQ_TIMESTAMP;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             return negated != (left.getTimestamp(rec) == right.getTimestamp(rec));
@@ -70,6 +70,22 @@ public class KSumDoubleGroupByFunction extends DoubleFunction implements GroupBy
         }
     }
 
+    @Override
+    public boolean isMergeSupported() {
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        // add compensated partial sum to the running sum
+        final double sum = destValue.getDouble(valueIndex);
+        final double y = srcValue.getDouble(valueIndex) - srcValue.getDouble(valueIndex + 1) - destValue.getDouble(valueIndex + 1);
+        final double t = sum + y;
+        destValue.putDouble(valueIndex, t);
+        destValue.putDouble(valueIndex + 1, t - sum - y);
+        destValue.addLong(valueIndex + 2, srcValue.getLong(valueIndex + 2));
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -56,6 +56,20 @@ public class MaxCharGroupByFunction extends CharFunction implements GroupByFunct
         }
     }
 
+    @Override
+    public boolean isMergeSupported() {
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        char max = destValue.getChar(valueIndex);
+        char next = srcValue.getChar(valueIndex);
+        if (next > max) {
+            destValue.putChar(valueIndex, next);
+        }
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
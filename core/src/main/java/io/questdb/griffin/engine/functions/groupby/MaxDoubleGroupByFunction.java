@@ -56,6 +56,20 @@ public class MaxDoubleGroupByFunction extends DoubleFunction implements GroupByF
         }
     }
 
+    @Override
+    public boolean isMergeSupported() {
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        double max = destValue.getDouble(valueIndex);
+        double next = srcValue.getDouble(valueIndex);
+        if (next > max || Double.isNaN(max)) {
+            destValue.putDouble(valueIndex, next);
+        }
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -58,6 +58,20 @@ public class MinIntGroupByFunction extends IntFunction implements GroupByFunctio
         }
     }
 
+    @Override
+    public boolean isMergeSupported() {
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        int min = destValue.getInt(valueIndex);
+        int next = srcValue.getInt(valueIndex);
+        if (next != Numbers.INT_NaN && next < min || min == Numbers.INT_NaN) {
+            destValue.putInt(valueIndex, next);
+        }
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -57,6 +57,20 @@ public class MinLongGroupByFunction extends LongFunction implements GroupByFunct
         }
     }
 
+    @Override
+    public boolean isMergeSupported() {
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        long min = destValue.getLong(valueIndex);
+        long next = srcValue.getLong(valueIndex);
+        if (next != Numbers.LONG_NaN && next < min || min == Numbers.LONG_NaN) {
+            destValue.putLong(valueIndex, next);
+        }
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
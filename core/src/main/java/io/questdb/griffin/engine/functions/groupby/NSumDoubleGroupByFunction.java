@@ -65,6 +65,22 @@ public class NSumDoubleGroupByFunction extends DoubleFunction implements GroupBy
         }
     }
 
+    @Override
+    public boolean isMergeSupported() {
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        sum(
+                destValue,
+                srcValue.getDouble(valueIndex),
+                destValue.getDouble(valueIndex),
+                destValue.getDouble(valueIndex + 1) + srcValue.getDouble(valueIndex + 1)
+        );
+        destValue.addLong(valueIndex + 2, srcValue.getLong(valueIndex + 2));
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -30,6 +30,7 @@ import io.questdb.cairo.sql.Record;
 import io.questdb.griffin.FunctionFactory;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.engine.functions.BinaryFunction;
+import io.questdb.griffin.engine.functions.ComparisonFunction;
 import io.questdb.griffin.engine.functions.NegatableBooleanFunction;
 import io.questdb.std.IntList;
 import io.questdb.std.Numbers;
@@ -57,7 +58,7 @@ public class LtIntFunctionFactory implements FunctionFactory {
         return new IntTimestampFunction(args.getQuick(0), args.getQuick(1));
     }
 
-    private static class IntTimestampFunction extends NegatableBooleanFunction implements BinaryFunction {
+    private static class IntTimestampFunction extends NegatableBooleanFunction implements BinaryFunction, ComparisonFunction {
         private final Function left;
         private final Function right;
 
@@ -66,6 +67,11 @@ public class LtIntFunctionFactory implements FunctionFactory {
             this.right = right;
         }
 
+        @Override
+        public int getComparisonKind() {
+            return LT_INT;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             long left = this.left.getInt(rec);
@@ -30,6 +30,7 @@ import io.questdb.cairo.sql.Record;
 import io.questdb.griffin.FunctionFactory;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.engine.functions.BinaryFunction;
+import io.questdb.griffin.engine.functions.ComparisonFunction;
 import io.questdb.griffin.engine.functions.NegatableBooleanFunction;
 import io.questdb.std.IntList;
 import io.questdb.std.Numbers;
@@ -52,7 +53,7 @@ public class LtTimestampFunctionFactory implements FunctionFactory {
         return new LtTimestampFunction(args.getQuick(0), args.getQuick(1));
     }
 
-    private static class LtTimestampFunction extends NegatableBooleanFunction implements BinaryFunction {
+    private static class LtTimestampFunction extends NegatableBooleanFunction implements BinaryFunction, ComparisonFunction {
         private final Function left;
         private final Function right;
 
@@ -61,6 +62,11 @@ public class LtTimestampFunctionFactory implements FunctionFactory {
             this.right = right;
         }
 
+        @Override
+        public int getComparisonKind() {
+            return LT_TIMESTAMP;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             long left = this.left.getTimestamp(rec);
@@ -43,6 +43,11 @@ public class RndBinCCCFunctionFactory implements FunctionFactory {
         return "rnd_bin(lli)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(
             int position,
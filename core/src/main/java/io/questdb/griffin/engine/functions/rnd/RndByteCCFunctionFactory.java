@@ -43,6 +43,11 @@ public class RndByteCCFunctionFactory implements FunctionFactory {
         return "rnd_byte(ii)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) throws SqlException {
 
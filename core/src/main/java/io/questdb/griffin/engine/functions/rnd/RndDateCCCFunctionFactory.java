@@ -43,6 +43,11 @@ public class RndDateCCCFunctionFactory implements FunctionFactory {
         return "rnd_date(mmi)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) throws SqlException {
         final long lo = args.getQuick(0).getDate(null);
@@ -41,6 +41,11 @@ public class RndDateFunctionFactory implements FunctionFactory {
         return "rnd_date()";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) {
         return new Func();
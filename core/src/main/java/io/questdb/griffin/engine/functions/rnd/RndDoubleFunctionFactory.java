@@ -42,6 +42,11 @@ public class RndDoubleFunctionFactory implements FunctionFactory {
         return "rnd_double()";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) {
         return new RndFunction();
@@ -43,6 +43,11 @@ public class RndFloatCFunctionFactory implements FunctionFactory {
         return "rnd_float(i)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) throws SqlException {
         int nanRate = args.getQuick(0).getInt(null);
@@ -46,6 +46,11 @@ public class RndGeoHashFunctionFactory implements FunctionFactory {
         return "rnd_geohash(i)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(
             int position, ObjList<Function> args,
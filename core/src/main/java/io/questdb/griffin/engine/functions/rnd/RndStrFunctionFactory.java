@@ -43,6 +43,11 @@ public class RndStrFunctionFactory implements FunctionFactory {
         return "rnd_str(iii)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) throws SqlException {
 
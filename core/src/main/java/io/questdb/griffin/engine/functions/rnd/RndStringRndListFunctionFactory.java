@@ -44,6 +44,11 @@ public class RndStringRndListFunctionFactory implements FunctionFactory {
         return "rnd_str(iiii)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) {
 
@@ -45,6 +45,11 @@ public class RndSymbolFunctionFactory implements FunctionFactory {
         return "rnd_symbol(iiii)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(
             int position,
@@ -43,6 +43,11 @@ public class RndSymbolListFunctionFactory implements FunctionFactory {
         return "rnd_symbol(V)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(
             int position,
@@ -43,6 +43,11 @@ public class RndTimestampFunctionFactory implements FunctionFactory {
         return "rnd_timestamp(nni)";
     }
 
+    @Override
+    public boolean isVolatile() {
+        return true;
+    }
+
     @Override
     public Function newInstance(
             int position,
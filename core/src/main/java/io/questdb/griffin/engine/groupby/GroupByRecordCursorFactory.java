@@ -32,6 +32,7 @@ import io.questdb.cairo.map.MapValue;
 import io.questdb.cairo.sql.*;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionInterruptor;
 import io.questdb.griffin.engine.functions.GroupByFunction;
 import io.questdb.std.BytecodeAssembler;
 import io.questdb.std.Misc;
@@ -49,6 +50,11 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
     private final RecordSink mapSink;
     // this sink is used to copy recordKeyMap keys to dataMap
     private final RecordMetadata metadata;
+    // base records partitioned by key when map outgrows memory limit
+    private final RecordChainSpill recordSpill;
+    // aggregated rows of all partitions, in the same column order as map records
+    private final RecordChainSpill resultSpill;
+    private final long spillMemoryLimit;
 
     public GroupByRecordCursorFactory(
             CairoConfiguration configuration,
@@ -69,7 +75,37 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
             this.metadata = groupByMetadata;
             this.groupByFunctions = groupByFunctions;
             this.recordFunctions = recordFunctions;
-            this.cursor = new VirtualFunctionSkewedSymbolRecordCursor(recordFunctions);
+            this.cursor = new VirtualFunctionSkewedSymbolRecordCursor(recordFunctions) {
+                @Override
+                public void close() {
+                    super.close();
+                    resultSpill.clear();
+                }
+            };
+
+            final EntityColumnFilter entityColumnFilter = new EntityColumnFilter();
+            entityColumnFilter.of(base.getMetadata().getColumnCount());
+            this.recordSpill = new RecordChainSpill(
+                    configuration,
+                    base.getMetadata(),
+                    RecordSinkFactory.getInstance(asm, base.getMetadata(), entityColumnFilter, false)
+            );
+
+            final ArrayColumnTypes resultTypes = new ArrayColumnTypes();
+            for (int i = 0, n = valueTypes.getColumnCount(); i < n; i++) {
+                resultTypes.add(valueTypes.getColumnType(i));
+            }
+            for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+                resultTypes.add(keyTypes.getColumnType(i));
+            }
+            entityColumnFilter.of(resultTypes.getColumnCount());
+            this.resultSpill = new RecordChainSpill(
+                    configuration,
+                    resultTypes,
+                    RecordSinkFactory.getInstance(asm, resultTypes, entityColumnFilter, false),
+                    1
+            );
+            this.spillMemoryLimit = configuration.getSqlSpillMemoryLimit();
         } catch (Throwable e) {
             Misc.freeObjList(recordFunctions);
             throw e;
@@ -81,24 +117,29 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         Misc.freeObjList(recordFunctions);
         Misc.free(dataMap);
         Misc.free(base);
+        Misc.free(recordSpill);
+        Misc.free(resultSpill);
     }
 
     @Override
     public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
         dataMap.clear();
+        resultSpill.clear();
         final RecordCursor baseCursor = base.getCursor(executionContext);
 
         try {
             final Record baseRecord = baseCursor.getRecord();
-            final int n = groupByFunctions.size();
+            final SqlExecutionInterruptor interruptor = executionContext.getSqlExecutionInterruptor();
+            RecordCursor mapCursor = null;
             while (baseCursor.hasNext()) {
-                executionContext.getSqlExecutionInterruptor().checkInterrupted();
-                final MapKey key = dataMap.withKey();
-                mapSink.copy(baseRecord, key);
-                MapValue value = key.createValue();
-                GroupByUtils.updateFunctions(groupByFunctions, n, value, baseRecord);
+                interruptor.checkInterrupted();
+                aggregate(baseRecord);
+                if (dataMap.getMemorySize() > spillMemoryLimit) {
+                    mapCursor = spill(baseCursor, interruptor);
+                    break;
+                }
             }
-            cursor.of(baseCursor, dataMap.getCursor());
+            cursor.of(baseCursor, mapCursor != null ? mapCursor : dataMap.getCursor());
             // init all record function for this cursor, in case functions require metadata and/or symbol tables
             Function.init(recordFunctions, baseCursor, executionContext);
             return cursor;
@@ -117,4 +158,52 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
     public boolean recordCursorSupportsRandomAccess() {
         return true;
     }
+
+    private void aggregate(Record record) {
+        final MapKey key = dataMap.withKey();
+        mapSink.copy(record, key);
+        MapValue value = key.createValue();
+        GroupByUtils.updateFunctions(groupByFunctions, groupByFunctions.size(), value, record);
+    }
+
+    // map does not fit the memory, base records are partitioned by key to disk and
+    // aggregated one partition at a time, aggregated rows are kept on disk too
+    private RecordCursor spill(RecordCursor baseCursor, SqlExecutionInterruptor interruptor) {
+        try {
+            dataMap.clear();
+            GroupByUtils.toTop(groupByFunctions);
+            recordSpill.open();
+            recordSpill.setSymbolTableResolver(baseCursor);
+            final Record baseRecord = baseCursor.getRecord();
+            baseCursor.toTop();
+            while (baseCursor.hasNext()) {
+                interruptor.checkInterrupted();
+                recordSpill.put(baseRecord, mapSink);
+            }
+
+            resultSpill.open();
+            for (int i = 0, n = recordSpill.getPartitionCount(); i < n; i++) {
+                final RecordChain partition = recordSpill.getPartition(i);
+                final Record partitionRecord = partition.getRecord();
+                while (partition.hasNext()) {
+                    interruptor.checkInterrupted();
+                    aggregate(partitionRecord);
+                }
+
+                final RecordCursor mapCursor = dataMap.getCursor();
+                final Record mapRecord = mapCursor.getRecord();
+                while (mapCursor.hasNext()) {
+                    resultSpill.put(mapRecord, 0);
+                }
+                dataMap.clear();
+                GroupByUtils.toTop(groupByFunctions);
+            }
+            return resultSpill.getPartition(0);
+        } catch (Throwable e) {
+            resultSpill.clear();
+            throw e;
+        } finally {
+            recordSpill.clear();
+        }
+    }
 }
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.std.AbstractLockable;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Unit of work of parallel group-by: a slice of data frame rows, which is aggregated
+ * either by a worker or by the thread that owns the cursor into the map of that thread.
+ */
+public class ParallelGroupByEntry extends AbstractLockable {
+    private final ParallelGroupByRecordCursorFactory factory;
+    private int partitionIndex;
+    private long rowLo;
+    private long rowHi;
+    private Throwable error;
+    private volatile boolean done;
+
+    public ParallelGroupByEntry(ParallelGroupByRecordCursorFactory factory) {
+        this.factory = factory;
+    }
+
+    public void awaitDone() {
+        while (!done) {
+            LockSupport.parkNanos(1);
+        }
+    }
+
+    /**
+     * Prevents workers from picking this entry up. Entry that is already
+     * being processed by a worker is left to complete.
+     */
+    public void cancel() {
+        if (tryLock()) {
+            done = true;
+        }
+    }
+
+    public boolean run(int workerId) {
+        // workers outside of the range the functions were compiled for leave the entry to the cursor owner
+        return factory.isWorkerSlot(workerId) && runOwned(workerId);
+    }
+
+    public void throwIfFailed() {
+        final Throwable e = error;
+        if (e != null) {
+            error = null;
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw (Error) e;
+        }
+    }
+
+    boolean runOwned(int slot) {
+        if (tryLock()) {
+            try {
+                factory.aggregate(slot, partitionIndex, rowLo, rowHi);
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                done = true;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    void of(int sequence, int partitionIndex, long rowLo, long rowHi) {
+        this.error = null;
+        this.partitionIndex = partitionIndex;
+        this.rowLo = rowLo;
+        this.rowHi = rowHi;
+        this.done = false;
+        // unlock entry last, fields above must be visible to the thread that locks it
+        of(sequence);
+    }
+}
@@ -0,0 +1,432 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.*;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionInterruptor;
+import io.questdb.griffin.engine.AbstractVirtualFunctionRecordCursor;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.table.AbstractDataFrameRecordCursor;
+import io.questdb.griffin.engine.table.CompiledFilter;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.Sequence;
+import io.questdb.std.*;
+import io.questdb.tasks.ParallelGroupByTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keyed group-by over data frames of a table on the shared worker pool. Each worker aggregates
+ * slices of data frames into its own map using its own instances of group-by functions. Once all
+ * slices are aggregated, worker maps are merged into the map of the thread that owns the cursor
+ * via {@link GroupByFunction#merge(MapValue, MapValue)}.
+ */
+public class ParallelGroupByRecordCursorFactory implements RecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final RecordMetadata metadata;
+    protected final CompiledFilter compiledFilter;
+    // one map, record and set of functions per worker, the last slot belongs to the cursor owner
+    private final ObjList<Map> maps;
+    private final ObjList<ObjList<GroupByFunction>> groupByFunctions;
+    protected final ObjList<TableReaderSelectedColumnRecord> records;
+    // per slot functions of virtual columns base factory selects from table, null when there are none
+    private final ObjList<ObjList<Function>> virtualFunctions;
+    // records keys and group-by function arguments are read from, these are either
+    // table records or virtual records on top of them
+    private final ObjList<Record> slotRecords;
+    protected final ObjList<LongList> rows;
+    private final ObjList<Function> recordFunctions;
+    private final RecordSink mapSink;
+    // copies keys of worker map records into owner map
+    private final RecordSink mergeSink;
+    private final IntList valueTypes = new IntList();
+    private final VirtualFunctionSkewedSymbolRecordCursor cursor;
+    private final ObjList<ParallelGroupByEntry> entries;
+    private final int workerCount;
+    protected final int ownerSlot;
+    protected final long frameRowCount;
+    private final int batchSize;
+    protected TableReader reader;
+    protected DataFrameCursor dataFrameCursor;
+    private final FullFwdDataFrameCursor fullDataFrameCursor = new FullFwdDataFrameCursor();
+    private int sequence;
+    private int entryCount;
+    private int framePartitionIndex;
+    private long frameRowLo;
+    private long frameRowHi;
+
+    public ParallelGroupByRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            @NotNull IntList columnIndexes,
+            @Nullable CompiledFilter compiledFilter,
+            // one list of virtual column functions per worker followed by those of the cursor owner,
+            // base factory has to be a VirtualRecordCursorFactory when these are present
+            @Transient @Nullable ObjList<ObjList<Function>> virtualFunctions,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull BytecodeAssembler asm,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            RecordMetadata groupByMetadata,
+            // one list of functions per worker followed by functions of the cursor owner,
+            // the latter are referenced by record functions
+            @Transient ObjList<ObjList<GroupByFunction>> groupByFunctions,
+            ObjList<Function> recordFunctions,
+            int workerCount
+    ) {
+        try {
+            this.base = base;
+            this.metadata = groupByMetadata;
+            this.compiledFilter = compiledFilter;
+            this.recordFunctions = recordFunctions;
+            this.workerCount = workerCount;
+            this.ownerSlot = workerCount;
+            this.frameRowCount = configuration.getSqlParallelGroupByFrameRows();
+            this.batchSize = configuration.getParallelGroupByQueueCapacity();
+
+            final int slotCount = workerCount + 1;
+            this.groupByFunctions = new ObjList<>(slotCount);
+            this.groupByFunctions.addAll(groupByFunctions);
+            if (virtualFunctions != null) {
+                this.virtualFunctions = new ObjList<>(slotCount);
+                this.virtualFunctions.addAll(virtualFunctions);
+            } else {
+                this.virtualFunctions = null;
+            }
+            this.maps = new ObjList<>(slotCount);
+            this.records = new ObjList<>(slotCount);
+            this.slotRecords = new ObjList<>(slotCount);
+            this.rows = new ObjList<>(slotCount);
+            for (int i = 0; i < slotCount; i++) {
+                maps.add(MapFactory.createMap(configuration, keyTypes, valueTypes));
+                final TableReaderSelectedColumnRecord record = new TableReaderSelectedColumnRecord(columnIndexes);
+                records.add(record);
+                if (virtualFunctions != null) {
+                    final VirtualRecord virtualRecord = new VirtualRecord(virtualFunctions.getQuick(i));
+                    virtualRecord.of(record);
+                    slotRecords.add(virtualRecord);
+                } else {
+                    slotRecords.add(record);
+                }
+                rows.add(compiledFilter != null ? new LongList() : null);
+            }
+            this.mapSink = RecordSinkFactory.getInstance(asm, base.getMetadata(), listColumnFilter, false);
+
+            // map record has value columns followed by key columns
+            final ArrayColumnTypes mapRecordTypes = new ArrayColumnTypes();
+            final ListColumnFilter keyFilter = new ListColumnFilter();
+            final int valueCount = valueTypes.getColumnCount();
+            for (int i = 0; i < valueCount; i++) {
+                this.valueTypes.add(valueTypes.getColumnType(i));
+                mapRecordTypes.add(valueTypes.getColumnType(i));
+            }
+            for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+                mapRecordTypes.add(keyTypes.getColumnType(i));
+                keyFilter.add(valueCount + i + 1);
+            }
+            this.mergeSink = RecordSinkFactory.getInstance(asm, mapRecordTypes, keyFilter, false);
+
+            this.entries = new ObjList<>(batchSize);
+            this.cursor = new VirtualFunctionSkewedSymbolRecordCursor(recordFunctions);
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(recordFunctions);
+        if (groupByFunctions != null) {
+            // functions of the owner slot are freed with record functions
+            for (int i = 0, n = groupByFunctions.size() - 1; i < n; i++) {
+                Misc.freeObjList(groupByFunctions.getQuick(i));
+            }
+        }
+        if (virtualFunctions != null) {
+            for (int i = 0, n = virtualFunctions.size(); i < n; i++) {
+                Misc.freeObjList(virtualFunctions.getQuick(i));
+            }
+        }
+        Misc.freeObjList(maps);
+        Misc.free(base);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        final RecordCursor baseCursor = base.getCursor(executionContext);
+        try {
+            final RecordCursor tableCursor = virtualFunctions != null
+                    ? ((AbstractVirtualFunctionRecordCursor) baseCursor).getBaseCursor()
+                    : baseCursor;
+            dataFrameCursor = getDataFrameCursor(tableCursor);
+            reader = dataFrameCursor.getTableReader();
+            for (int i = 0, n = maps.size(); i < n; i++) {
+                maps.getQuick(i).clear();
+                records.getQuick(i).of(reader);
+                if (virtualFunctions != null) {
+                    Function.init(virtualFunctions.getQuick(i), tableCursor, executionContext);
+                }
+                Function.init(groupByFunctions.getQuick(i), baseCursor, executionContext);
+            }
+            prepare(baseCursor, executionContext);
+            aggregate(executionContext);
+            merge();
+            cursor.of(baseCursor, getMapCursor(maps.getQuick(ownerSlot)));
+            // init all record function for this cursor, in case functions require metadata and/or symbol tables
+            Function.init(recordFunctions, baseCursor, executionContext);
+            return cursor;
+        } catch (Throwable e) {
+            cancelEntries();
+            baseCursor.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+
+    private static void copyValue(IntList valueTypes, MapValue srcValue, MapValue destValue) {
+        for (int i = 0, n = valueTypes.size(); i < n; i++) {
+            switch (ColumnType.tagOf(valueTypes.getQuick(i))) {
+                case ColumnType.BOOLEAN:
+                    destValue.putBool(i, srcValue.getBool(i));
+                    break;
+                case ColumnType.BYTE:
+                    destValue.putByte(i, srcValue.getByte(i));
+                    break;
+                case ColumnType.SHORT:
+                    destValue.putShort(i, srcValue.getShort(i));
+                    break;
+                case ColumnType.CHAR:
+                    destValue.putChar(i, srcValue.getChar(i));
+                    break;
+                case ColumnType.INT:
+                    destValue.putInt(i, srcValue.getInt(i));
+                    break;
+                case ColumnType.FLOAT:
+                    destValue.putFloat(i, srcValue.getFloat(i));
+                    break;
+                case ColumnType.DOUBLE:
+                    destValue.putDouble(i, srcValue.getDouble(i));
+                    break;
+                case ColumnType.DATE:
+                    destValue.putDate(i, srcValue.getDate(i));
+                    break;
+                case ColumnType.TIMESTAMP:
+                    destValue.putTimestamp(i, srcValue.getTimestamp(i));
+                    break;
+                default:
+                    destValue.putLong(i, srcValue.getLong(i));
+                    break;
+            }
+        }
+    }
+
+    private void aggregate(SqlExecutionContext executionContext) {
+        final SqlExecutionInterruptor interruptor = executionContext.getSqlExecutionInterruptor();
+        final MessageBus bus = executionContext.getMessageBus();
+        final RingQueue<ParallelGroupByTask> queue = bus != null ? bus.getParallelGroupByQueue() : null;
+        final Sequence pubSeq = bus != null ? bus.getParallelGroupByPubSeq() : null;
+
+        frameRowLo = frameRowHi = 0;
+        while (dispatchEntries(queue, pubSeq)) {
+            // help out with entries workers have not picked up yet, starting at the back
+            // reduces chance of clashing with workers
+            for (int i = entryCount - 1; i > -1; i--) {
+                interruptor.checkInterrupted();
+                entries.getQuick(i).runOwned(ownerSlot);
+            }
+            for (int i = 0; i < entryCount; i++) {
+                entries.getQuick(i).awaitDone();
+            }
+            final int n = entryCount;
+            entryCount = 0;
+            for (int i = 0; i < n; i++) {
+                entries.getQuick(i).throwIfFailed();
+            }
+        }
+    }
+
+    private void cancelEntries() {
+        for (int i = 0; i < entryCount; i++) {
+            entries.getQuick(i).cancel();
+        }
+        // workers may still be aggregating entries they locked before we cancelled the rest,
+        // table reader must not be released until they are done
+        for (int i = 0; i < entryCount; i++) {
+            entries.getQuick(i).awaitDone();
+        }
+        entryCount = 0;
+    }
+
+    private boolean dispatchEntries(RingQueue<ParallelGroupByTask> queue, Sequence pubSeq) {
+        entryCount = 0;
+        while (entryCount < batchSize) {
+            if (frameRowLo >= frameRowHi) {
+                final DataFrame dataFrame = dataFrameCursor.next();
+                if (dataFrame == null) {
+                    break;
+                }
+                framePartitionIndex = dataFrame.getPartitionIndex();
+                frameRowLo = dataFrame.getRowLo();
+                frameRowHi = dataFrame.getRowHi();
+                continue;
+            }
+
+            final long rowHi = Math.min(frameRowLo + frameRowCount, frameRowHi);
+            final ParallelGroupByEntry entry;
+            if (entryCount < entries.size()) {
+                entry = entries.getQuick(entryCount);
+            } else {
+                entries.add(entry = new ParallelGroupByEntry(this));
+            }
+            entry.of(sequence++, framePartitionIndex, frameRowLo, rowHi);
+            entryCount++;
+            frameRowLo = rowHi;
+
+            // when queue is full the entry is left to be aggregated by this thread
+            if (pubSeq != null) {
+                final long seq = pubSeq.next();
+                if (seq > -1) {
+                    queue.get(seq).entry = entry;
+                    pubSeq.done(seq);
+                }
+            }
+        }
+        return entryCount > 0;
+    }
+
+    private DataFrameCursor getDataFrameCursor(RecordCursor tableCursor) {
+        if (tableCursor instanceof AbstractDataFrameRecordCursor) {
+            return ((AbstractDataFrameRecordCursor) tableCursor).getDataFrameCursor();
+        }
+        // full table scan, frames are read from the reader that belongs to the base cursor,
+        // which also closes it
+        return fullDataFrameCursor.of(((TableReaderSelectedColumnRecordCursor) tableCursor).getTableReader());
+    }
+
+    private void merge() {
+        final Map ownerMap = maps.getQuick(ownerSlot);
+        final ObjList<GroupByFunction> functions = groupByFunctions.getQuick(ownerSlot);
+        final int functionCount = functions.size();
+        for (int i = 0; i < workerCount; i++) {
+            final Map map = maps.getQuick(i);
+            if (map.size() == 0) {
+                continue;
+            }
+            final RecordCursor mapCursor = map.getCursor();
+            final MapRecord mapRecord = (MapRecord) mapCursor.getRecord();
+            while (mapCursor.hasNext()) {
+                final MapKey key = ownerMap.withKey();
+                mergeSink.copy(mapRecord, key);
+                final MapValue srcValue = mapRecord.getValue();
+                final MapValue destValue = key.createValue();
+                if (destValue.isNew()) {
+                    copyValue(valueTypes, srcValue, destValue);
+                } else {
+                    for (int j = 0; j < functionCount; j++) {
+                        functions.getQuick(j).merge(destValue, srcValue);
+                    }
+                }
+            }
+            map.clear();
+        }
+    }
+
+    void aggregate(int slot, int partitionIndex, long rowLo, long rowHi) {
+        final Map map = maps.getQuick(slot);
+        final ObjList<GroupByFunction> functions = groupByFunctions.getQuick(slot);
+        final int functionCount = functions.size();
+        final TableReaderSelectedColumnRecord record = records.getQuick(slot);
+        final Record slotRecord = slotRecords.getQuick(slot);
+        record.jumpTo(partitionIndex, rowLo);
+        if (compiledFilter != null) {
+            final LongList filteredRows = rows.getQuick(slot);
+            filteredRows.clear();
+            compiledFilter.filter(reader, partitionIndex, rowLo, rowHi, filteredRows);
+            for (int i = 0, n = filteredRows.size(); i < n; i++) {
+                record.setRecordIndex(filteredRows.getQuick(i));
+                aggregateRecord(map, functions, functionCount, slotRecord);
+            }
+        } else {
+            for (long row = rowLo; row < rowHi; row++) {
+                record.setRecordIndex(row);
+                aggregateRecord(map, functions, functionCount, slotRecord);
+            }
+        }
+    }
+
+    private void aggregateRecord(Map map, ObjList<GroupByFunction> functions, int functionCount, Record record) {
+        final MapKey key = map.withKey();
+        copyKey(record, key);
+        GroupByUtils.updateFunctions(functions, functionCount, key.createValue(), record);
+    }
+
+    /**
+     * Copies map key of table record. Called concurrently by workers.
+     *
+     * @param record table record
+     * @param key    map key to copy to
+     */
+    protected void copyKey(Record record, MapKey key) {
+        mapSink.copy(record, key);
+    }
+
+    /**
+     * @param map map of the cursor owner with results merged from all workers
+     * @return cursor the result set is streamed from
+     */
+    protected RecordCursor getMapCursor(Map map) {
+        return map.getCursor();
+    }
+
+    /**
+     * Called once per cursor before slices are dispatched to workers.
+     *
+     * @param baseCursor       cursor of base factory
+     * @param executionContext execution context of the cursor
+     * @throws SqlException when cursor parameters cannot be evaluated
+     */
+    protected void prepare(RecordCursor baseCursor, SqlExecutionContext executionContext) throws SqlException {
+    }
+
+    boolean isWorkerSlot(int workerId) {
+        return workerId > -1 && workerId < workerCount;
+    }
+}
@@ -0,0 +1,615 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapFactory;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.table.CompiledFilter;
+import io.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * SAMPLE BY with FILL(NULL), FILL(value), FILL(PREV) or FILL(LINEAR) executed as parallel keyed
+ * group-by. Merged map is ordered by sample bucket, same as with FILL(NONE), and gaps are filled
+ * in a single pass over the ordered rows: every key of the result is streamed for every bucket
+ * between the first and the last one. Filled rows take key columns from a map row of the same
+ * key and value columns from the fill state of the mode.
+ */
+public class ParallelSampleByFillRecordCursorFactory extends ParallelSampleByRecordCursorFactory {
+    public static final int FILL_NONE = 0;
+    public static final int FILL_NULL = 1;
+    public static final int FILL_VALUE = 2;
+    public static final int FILL_PREV = 3;
+    public static final int FILL_LINEAR = 4;
+
+    private final int fillMode;
+    private final int valueCount;
+    // group-by functions of the cursor owner, they read and write map values
+    private final ObjList<GroupByFunction> groupByFunctions;
+    // state of group-by functions after setNull(), used when there is nothing to fill from
+    private final SimpleMapValue nullValue;
+    // placeholder constants of FILL(NULL) and FILL(value)
+    private final SimpleMapValue fillValue;
+    private final SimpleMapValue interpolatedValue;
+    private final SimpleMapValue boundaryValue;
+    private final double[] y1;
+    private final double[] y2;
+    // ordinals of keys without sample bucket, null when SAMPLE BY is not keyed
+    private final Map keyMap;
+    private final RecordSink keySink;
+    private final FillMapCursor fillCursor = new FillMapCursor();
+
+    public ParallelSampleByFillRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            @NotNull IntList columnIndexes,
+            @Nullable CompiledFilter compiledFilter,
+            @Transient @Nullable ObjList<ObjList<Function>> virtualFunctions,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull BytecodeAssembler asm,
+            // sample bucket has to be the last key
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            RecordMetadata groupByMetadata,
+            @Transient ObjList<ObjList<GroupByFunction>> groupByFunctions,
+            ObjList<Function> recordFunctions,
+            int workerCount,
+            TimestampSampler timestampSampler,
+            int timestampIndex,
+            Function offsetFunc,
+            int offsetFuncPos,
+            int fillMode,
+            // constants in place of group-by record functions, FILL(NULL) and FILL(value) only
+            @Transient @Nullable ObjList<Function> placeholderFunctions
+    ) {
+        super(
+                configuration,
+                base,
+                columnIndexes,
+                compiledFilter,
+                virtualFunctions,
+                listColumnFilter,
+                asm,
+                keyTypes,
+                valueTypes,
+                groupByMetadata,
+                groupByFunctions,
+                recordFunctions,
+                workerCount,
+                timestampSampler,
+                timestampIndex,
+                offsetFunc,
+                offsetFuncPos
+        );
+        try {
+            this.fillMode = fillMode;
+            this.valueCount = valueTypes.getColumnCount();
+            this.groupByFunctions = groupByFunctions.getLast();
+
+            final int functionCount = this.groupByFunctions.size();
+            this.nullValue = new SimpleMapValue(valueCount);
+            for (int i = 0; i < functionCount; i++) {
+                this.groupByFunctions.getQuick(i).setNull(nullValue);
+            }
+
+            if (placeholderFunctions != null) {
+                this.fillValue = new SimpleMapValue(valueCount);
+                for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+                    final Function function = recordFunctions.getQuick(i);
+                    if (function instanceof GroupByFunction) {
+                        setValue((GroupByFunction) function, fillValue, placeholderFunctions.getQuick(i));
+                    }
+                }
+            } else {
+                this.fillValue = null;
+            }
+
+            if (fillMode == FILL_LINEAR) {
+                this.interpolatedValue = new SimpleMapValue(valueCount);
+                this.boundaryValue = new SimpleMapValue(valueCount);
+                this.y1 = new double[functionCount];
+                this.y2 = new double[functionCount];
+            } else {
+                this.interpolatedValue = null;
+                this.boundaryValue = null;
+                this.y1 = null;
+                this.y2 = null;
+            }
+
+            final int keyCount = keyTypes.getColumnCount() - 1;
+            if (keyCount > 0) {
+                // map record has value columns followed by key columns, sample bucket is excluded from the key
+                final ArrayColumnTypes mapRecordTypes = new ArrayColumnTypes();
+                final ArrayColumnTypes ordinalKeyTypes = new ArrayColumnTypes();
+                final ListColumnFilter keyFilter = new ListColumnFilter();
+                for (int i = 0; i < valueCount; i++) {
+                    mapRecordTypes.add(valueTypes.getColumnType(i));
+                }
+                for (int i = 0; i < keyCount; i++) {
+                    mapRecordTypes.add(keyTypes.getColumnType(i));
+                    ordinalKeyTypes.add(keyTypes.getColumnType(i));
+                    keyFilter.add(valueCount + i + 1);
+                }
+                final ArrayColumnTypes ordinalValueTypes = new ArrayColumnTypes();
+                ordinalValueTypes.add(ColumnType.INT);
+                this.keySink = RecordSinkFactory.getInstance(asm, mapRecordTypes, keyFilter, false);
+                this.keyMap = MapFactory.createMap(configuration, ordinalKeyTypes, ordinalValueTypes);
+            } else {
+                this.keySink = null;
+                this.keyMap = null;
+            }
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Filled values other than the previous ones are written to map values by group-by functions
+     * themselves, which has to be supported by every function of the query.
+     *
+     * @param fillMode         one of FILL_* constants
+     * @param groupByFunctions group-by functions of SAMPLE BY
+     * @param recordFunctions  functions of selected columns
+     * @return true when gaps can be filled after parallel aggregation
+     */
+    public static boolean isFillSupported(int fillMode, ObjList<GroupByFunction> groupByFunctions, ObjList<Function> recordFunctions) {
+        if (fillMode == FILL_PREV) {
+            // gaps take either the previous value or the setNull() one
+            return true;
+        }
+        for (int i = 0, n = groupByFunctions.size(); i < n; i++) {
+            final GroupByFunction function = groupByFunctions.getQuick(i);
+            switch (ColumnType.tagOf(function.getType())) {
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                    break;
+                default:
+                    return false;
+            }
+            if (fillMode == FILL_LINEAR && !function.isScalar()) {
+                return false;
+            }
+            // placeholder constants replace group-by functions only when these are selected as is
+            if ((fillMode == FILL_NULL || fillMode == FILL_VALUE) && recordFunctions.indexOf(function) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        Misc.free(keyMap);
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    private static double getY(GroupByFunction function, Record record) {
+        switch (ColumnType.tagOf(function.getType())) {
+            case ColumnType.BYTE:
+                return function.getByte(record);
+            case ColumnType.SHORT:
+                return function.getShort(record);
+            case ColumnType.INT:
+                return function.getInt(record);
+            case ColumnType.LONG:
+                return function.getLong(record);
+            case ColumnType.FLOAT:
+                return function.getFloat(record);
+            default:
+                return function.getDouble(record);
+        }
+    }
+
+    private static void setValue(GroupByFunction function, MapValue mapValue, Function placeholder) {
+        switch (ColumnType.tagOf(function.getType())) {
+            case ColumnType.BYTE:
+                function.setByte(mapValue, placeholder.getByte(null));
+                break;
+            case ColumnType.SHORT:
+                function.setShort(mapValue, placeholder.getShort(null));
+                break;
+            case ColumnType.INT:
+                function.setInt(mapValue, placeholder.getInt(null));
+                break;
+            case ColumnType.LONG:
+                function.setLong(mapValue, placeholder.getLong(null));
+                break;
+            case ColumnType.FLOAT:
+                function.setFloat(mapValue, placeholder.getFloat(null));
+                break;
+            default:
+                function.setDouble(mapValue, placeholder.getDouble(null));
+                break;
+        }
+    }
+
+    // same conversion as InterpolationUtil applies to interpolated values
+    private static void setY(GroupByFunction function, MapValue mapValue, double y) {
+        switch (ColumnType.tagOf(function.getType())) {
+            case ColumnType.BYTE:
+                function.setByte(mapValue, (byte) y);
+                break;
+            case ColumnType.SHORT:
+                function.setShort(mapValue, (short) y);
+                break;
+            case ColumnType.INT:
+                function.setInt(mapValue, (int) y);
+                break;
+            case ColumnType.LONG:
+                function.setLong(mapValue, (long) y);
+                break;
+            case ColumnType.FLOAT:
+                function.setFloat(mapValue, (float) y);
+                break;
+            default:
+                function.setDouble(mapValue, y);
+                break;
+        }
+    }
+
+    @Override
+    protected RecordCursor getMapCursor(Map map) {
+        return fillCursor.of(super.getMapCursor(map));
+    }
+
+    private class FillMapCursor implements RecordCursor {
+        private final FillRecord recordA = new FillRecord();
+        private final FillRecord recordB = new FillRecord();
+        // map row ids, sample buckets and key ordinals of map rows in the order of buckets
+        private final LongList rowIds = new LongList();
+        private final LongList rowBuckets = new LongList();
+        private final IntList rowKeys = new IntList();
+        // previous and next row of the same key, FILL(LINEAR) only
+        private final IntList prevKeyRows = new IntList();
+        private final IntList nextKeyRows = new IntList();
+        // per key ordinal
+        private final IntList firstRows = new IntList();
+        private final IntList lastRows = new IntList();
+        private final IntList bucketRows = new IntList();
+        private RecordCursor mapCursor;
+        private Record mapRecord;
+        private Record mapRecordB;
+        private int keyIndex;
+        private int rowIndex;
+        private long bucket;
+
+        @Override
+        public void close() {
+            mapCursor = Misc.free(mapCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return recordA;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            return mapCursor.getSymbolTable(columnIndex);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (keyIndex == firstRows.size()) {
+                final int rowCount = rowIds.size();
+                if (rowIndex == rowCount) {
+                    return false;
+                }
+                bucket = rowIndex == 0 ? rowBuckets.getQuick(0) : timestampSampler.nextTimestamp(bucket);
+                while (rowIndex < rowCount && rowBuckets.getQuick(rowIndex) == bucket) {
+                    bucketRows.setQuick(rowKeys.getQuick(rowIndex), rowIndex);
+                    rowIndex++;
+                }
+                keyIndex = 0;
+            }
+
+            final int key = keyIndex++;
+            final int row = bucketRows.getQuick(key);
+            if (row != -1) {
+                bucketRows.setQuick(key, -1);
+                lastRows.setQuick(key, row);
+                mapCursor.recordAt(mapRecord, rowIds.getQuick(row));
+                recordA.of(mapRecord, mapRecord, bucket);
+                return true;
+            }
+
+            // gap, key columns are taken from the last or the first row of the key
+            final int lastRow = lastRows.getQuick(key);
+            mapCursor.recordAt(mapRecord, rowIds.getQuick(lastRow != -1 ? lastRow : firstRows.getQuick(key)));
+            switch (fillMode) {
+                case FILL_PREV:
+                    recordA.of(mapRecord, lastRow != -1 ? mapRecord : nullValue, bucket);
+                    break;
+                case FILL_LINEAR:
+                    recordA.of(mapRecord, interpolate(key, lastRow), bucket);
+                    break;
+                default:
+                    recordA.of(mapRecord, fillValue, bucket);
+                    break;
+            }
+            return true;
+        }
+
+        @Override
+        public Record getRecordB() {
+            return recordB;
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void toTop() {
+            keyIndex = firstRows.size();
+            rowIndex = 0;
+            bucketRows.setAll(firstRows.size(), -1);
+            lastRows.setAll(firstRows.size(), -1);
+        }
+
+        @Override
+        public long size() {
+            return -1;
+        }
+
+        /**
+         * Interpolates the gap the same way SampleByInterpolateRecordCursorFactory does: between
+         * the surrounding rows of the key, from the first two rows before the first row and from
+         * the last two buckets after the last row.
+         */
+        private Record interpolate(int key, int lastRow) {
+            int x1Row;
+            int x2Row;
+            if (lastRow == -1) {
+                x1Row = firstRows.getQuick(key);
+                x2Row = nextKeyRows.getQuick(x1Row);
+            } else if (nextKeyRows.getQuick(lastRow) != -1) {
+                x1Row = lastRow;
+                x2Row = nextKeyRows.getQuick(lastRow);
+            } else {
+                x1Row = prevKeyRows.getQuick(lastRow);
+                x2Row = lastRow;
+            }
+            if (x1Row == -1 || x2Row == -1) {
+                // single row of the key, there is nothing to interpolate from
+                return nullValue;
+            }
+
+            final int functionCount = groupByFunctions.size();
+            mapCursor.recordAt(mapRecordB, rowIds.getQuick(x1Row));
+            for (int i = 0; i < functionCount; i++) {
+                y1[i] = getY(groupByFunctions.getQuick(i), mapRecordB);
+            }
+            mapCursor.recordAt(mapRecordB, rowIds.getQuick(x2Row));
+            for (int i = 0; i < functionCount; i++) {
+                y2[i] = getY(groupByFunctions.getQuick(i), mapRecordB);
+            }
+
+            long x1 = rowBuckets.getQuick(x1Row);
+            final long x2 = rowBuckets.getQuick(x2Row);
+            if (x2Row == lastRow) {
+                // extrapolation uses the bucket right before the last row, which
+                // itself is interpolated when the previous row is further away
+                final long x = timestampSampler.previousTimestamp(x2);
+                if (x != x1) {
+                    for (int i = 0; i < functionCount; i++) {
+                        final GroupByFunction function = groupByFunctions.getQuick(i);
+                        setY(function, boundaryValue, InterpolationUtil.interpolate(x, x1, y1[i], x2, y2[i]));
+                        y1[i] = getY(function, boundaryValue);
+                    }
+                    x1 = x;
+                }
+            }
+
+            for (int i = 0; i < functionCount; i++) {
+                setY(groupByFunctions.getQuick(i), interpolatedValue, InterpolationUtil.interpolate(bucket, x1, y1[i], x2, y2[i]));
+            }
+            return interpolatedValue;
+        }
+
+        private FillMapCursor of(RecordCursor mapCursor) {
+            this.mapCursor = mapCursor;
+            this.mapRecord = mapCursor.getRecord();
+            this.mapRecordB = mapCursor.getRecordB();
+
+            rowIds.clear();
+            rowBuckets.clear();
+            rowKeys.clear();
+            firstRows.clear();
+            if (keyMap != null) {
+                keyMap.clear();
+            }
+            while (mapCursor.hasNext()) {
+                final int row = rowIds.size();
+                rowIds.add(mapRecord.getRowId());
+                rowBuckets.add(mapRecord.getTimestamp(bucketIndex));
+                if (keyMap != null) {
+                    final MapKey mapKey = keyMap.withKey();
+                    keySink.copy(mapRecord, mapKey);
+                    final MapValue value = mapKey.createValue();
+                    if (value.isNew()) {
+                        value.putInt(0, firstRows.size());
+                        firstRows.add(row);
+                    }
+                    rowKeys.add(value.getInt(0));
+                } else {
+                    if (row == 0) {
+                        firstRows.add(row);
+                    }
+                    rowKeys.add(0);
+                }
+            }
+
+            final int keyCount = firstRows.size();
+            if (fillMode == FILL_LINEAR) {
+                final int rowCount = rowIds.size();
+                prevKeyRows.setAll(rowCount, -1);
+                nextKeyRows.setAll(rowCount, -1);
+                lastRows.setAll(keyCount, -1);
+                for (int row = 0; row < rowCount; row++) {
+                    final int key = rowKeys.getQuick(row);
+                    final int prevRow = lastRows.getQuick(key);
+                    if (prevRow != -1) {
+                        prevKeyRows.setQuick(row, prevRow);
+                        nextKeyRows.setQuick(prevRow, row);
+                    }
+                    lastRows.setQuick(key, row);
+                }
+            }
+            toTop();
+            return this;
+        }
+    }
+
+    private class FillRecord implements Record {
+        private Record keyRecord;
+        private Record valueRecord;
+        private long bucket;
+
+        @Override
+        public boolean getBool(int col) {
+            return recordOf(col).getBool(col);
+        }
+
+        @Override
+        public byte getByte(int col) {
+            return recordOf(col).getByte(col);
+        }
+
+        @Override
+        public char getChar(int col) {
+            return recordOf(col).getChar(col);
+        }
+
+        @Override
+        public long getDate(int col) {
+            return recordOf(col).getDate(col);
+        }
+
+        @Override
+        public double getDouble(int col) {
+            return recordOf(col).getDouble(col);
+        }
+
+        @Override
+        public float getFloat(int col) {
+            return recordOf(col).getFloat(col);
+        }
+
+        @Override
+        public byte getGeoHashByte(int col) {
+            return recordOf(col).getGeoHashByte(col);
+        }
+
+        @Override
+        public int getGeoHashInt(int col) {
+            return recordOf(col).getGeoHashInt(col);
+        }
+
+        @Override
+        public long getGeoHashLong(int col) {
+            return recordOf(col).getGeoHashLong(col);
+        }
+
+        @Override
+        public short getGeoHashShort(int col) {
+            return recordOf(col).getGeoHashShort(col);
+        }
+
+        @Override
+        public int getInt(int col) {
+            return recordOf(col).getInt(col);
+        }
+
+        @Override
+        public long getLong(int col) {
+            return col == bucketIndex ? bucket : recordOf(col).getLong(col);
+        }
+
+        @Override
+        public short getShort(int col) {
+            return recordOf(col).getShort(col);
+        }
+
+        @Override
+        public CharSequence getStr(int col) {
+            return recordOf(col).getStr(col);
+        }
+
+        @Override
+        public CharSequence getStrB(int col) {
+            return recordOf(col).getStrB(col);
+        }
+
+        @Override
+        public int getStrLen(int col) {
+            return recordOf(col).getStrLen(col);
+        }
+
+        @Override
+        public CharSequence getSym(int col) {
+            return recordOf(col).getSym(col);
+        }
+
+        @Override
+        public CharSequence getSymB(int col) {
+            return recordOf(col).getSymB(col);
+        }
+
+        @Override
+        public long getTimestamp(int col) {
+            return col == bucketIndex ? bucket : recordOf(col).getTimestamp(col);
+        }
+
+        private void of(Record keyRecord, Record valueRecord, long bucket) {
+            this.keyRecord = keyRecord;
+            this.valueRecord = valueRecord;
+            this.bucket = bucket;
+        }
+
+        private Record recordOf(int col) {
+            return col < valueCount ? valueRecord : keyRecord;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.ArrayColumnTypes;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.ListColumnFilter;
+import io.questdb.cairo.TableReaderSelectedColumnRecord;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.table.CompiledFilter;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * SAMPLE BY with FILL(NONE) executed as parallel keyed group-by, where sample bucket of the row
+ * is the last map key. Sample buckets are fixed intervals aligned either to the first row or to
+ * constant offset, which lets workers assign rows to buckets independently of each other. Merged
+ * map is streamed in the order of sample buckets.
+ *
+ * @see ParallelSampleByFillRecordCursorFactory for the other fill modes
+ */
+public class ParallelSampleByRecordCursorFactory extends ParallelGroupByRecordCursorFactory {
+    protected final TimestampSampler timestampSampler;
+    private final int timestampIndex;
+    private final Function offsetFunc;
+    private final int offsetFuncPos;
+    // index of sample bucket in map record
+    protected final int bucketIndex;
+    private final LongList buckets = new LongList();
+    private final LongList distinctBuckets = new LongList();
+    private final LongList bucketOffsets = new LongList();
+    private final SampleOrderedMapCursor mapCursor = new SampleOrderedMapCursor();
+
+    public ParallelSampleByRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            @NotNull IntList columnIndexes,
+            @Nullable CompiledFilter compiledFilter,
+            @Transient @Nullable ObjList<ObjList<Function>> virtualFunctions,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull BytecodeAssembler asm,
+            // sample bucket has to be the last key
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            RecordMetadata groupByMetadata,
+            @Transient ObjList<ObjList<GroupByFunction>> groupByFunctions,
+            ObjList<Function> recordFunctions,
+            int workerCount,
+            TimestampSampler timestampSampler,
+            int timestampIndex,
+            Function offsetFunc,
+            int offsetFuncPos
+    ) {
+        super(
+                configuration,
+                base,
+                columnIndexes,
+                compiledFilter,
+                virtualFunctions,
+                listColumnFilter,
+                asm,
+                keyTypes,
+                valueTypes,
+                groupByMetadata,
+                groupByFunctions,
+                recordFunctions,
+                workerCount
+        );
+        this.timestampSampler = timestampSampler;
+        this.timestampIndex = timestampIndex;
+        this.offsetFunc = offsetFunc;
+        this.offsetFuncPos = offsetFuncPos;
+        this.bucketIndex = valueTypes.getColumnCount() + keyTypes.getColumnCount() - 1;
+    }
+
+    /**
+     * Sampler has to assign every row to its bucket by rounding row timestamp. Calendar
+     * samplers round to the start day of month or year, which diverges from sequential
+     * sampling for rows before that day.
+     *
+     * @param timestampSampler sampler of SAMPLE BY clause
+     * @return true when buckets are fixed intervals
+     */
+    public static boolean isSamplerSupported(TimestampSampler timestampSampler) {
+        return timestampSampler instanceof MicroTimestampSampler;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        Misc.free(offsetFunc);
+    }
+
+    @Override
+    protected void copyKey(Record record, MapKey key) {
+        super.copyKey(record, key);
+        key.putTimestamp(timestampSampler.round(record.getTimestamp(timestampIndex)));
+    }
+
+    @Override
+    protected RecordCursor getMapCursor(Map map) {
+        final RecordCursor cursor = map.getCursor();
+        final Record record = cursor.getRecord();
+
+        buckets.clear();
+        while (cursor.hasNext()) {
+            buckets.add(record.getTimestamp(bucketIndex));
+        }
+
+        distinctBuckets.clear();
+        distinctBuckets.add(buckets);
+        distinctBuckets.sort();
+        int distinctCount = 0;
+        for (int i = 0, n = distinctBuckets.size(); i < n; i++) {
+            final long bucket = distinctBuckets.getQuick(i);
+            if (distinctCount == 0 || distinctBuckets.getQuick(distinctCount - 1) != bucket) {
+                distinctBuckets.setQuick(distinctCount++, bucket);
+            }
+        }
+        distinctBuckets.setPos(distinctCount);
+
+        // counting sort of map rows by bucket, order of rows within bucket is that of the map
+        bucketOffsets.setAll(distinctCount + 1, 0);
+        for (int i = 0, n = buckets.size(); i < n; i++) {
+            final int bucketOrdinal = distinctBuckets.binarySearch(buckets.getQuick(i));
+            buckets.setQuick(i, bucketOrdinal);
+            bucketOffsets.increment(bucketOrdinal + 1);
+        }
+        for (int i = 1; i <= distinctCount; i++) {
+            bucketOffsets.setQuick(i, bucketOffsets.getQuick(i) + bucketOffsets.getQuick(i - 1));
+        }
+
+        final LongList orderedRows = mapCursor.rows;
+        orderedRows.setAll(buckets.size(), 0);
+        cursor.toTop();
+        int i = 0;
+        while (cursor.hasNext()) {
+            final int bucketOrdinal = (int) buckets.getQuick(i++);
+            final long offset = bucketOffsets.getQuick(bucketOrdinal);
+            orderedRows.setQuick((int) offset, record.getRowId());
+            bucketOffsets.setQuick(bucketOrdinal, offset + 1);
+        }
+        return mapCursor.of(cursor);
+    }
+
+    @Override
+    protected void prepare(RecordCursor baseCursor, SqlExecutionContext executionContext) throws SqlException {
+        offsetFunc.init(baseCursor, executionContext);
+        final CharSequence offset = offsetFunc.getStr(null);
+        if (offset != null) {
+            final long val = Timestamps.parseOffset(offset);
+            if (val == Numbers.LONG_NaN) {
+                // bad value for offset
+                throw SqlException.$(offsetFuncPos, "invalid offset: ").put(offset);
+            }
+            timestampSampler.setStart(Numbers.decodeLowInt(val) * Timestamps.MINUTE_MICROS);
+        } else {
+            // align intervals to the first observation
+            final long timestamp = findFirstTimestamp();
+            if (timestamp != Numbers.LONG_NaN) {
+                timestampSampler.setStart(timestamp);
+            }
+        }
+    }
+
+    private long findFirstTimestamp() {
+        final TableReaderSelectedColumnRecord record = records.getQuick(ownerSlot);
+        final LongList filteredRows = rows.getQuick(ownerSlot);
+        try {
+            DataFrame frame;
+            while ((frame = dataFrameCursor.next()) != null) {
+                final int partitionIndex = frame.getPartitionIndex();
+                final long frameRowHi = frame.getRowHi();
+                for (long rowLo = frame.getRowLo(); rowLo < frameRowHi; rowLo += frameRowCount) {
+                    record.jumpTo(partitionIndex, rowLo);
+                    if (compiledFilter == null) {
+                        return record.getTimestamp(timestampIndex);
+                    }
+                    filteredRows.clear();
+                    compiledFilter.filter(reader, partitionIndex, rowLo, Math.min(rowLo + frameRowCount, frameRowHi), filteredRows);
+                    if (filteredRows.size() > 0) {
+                        record.setRecordIndex(filteredRows.getQuick(0));
+                        return record.getTimestamp(timestampIndex);
+                    }
+                }
+            }
+            return Numbers.LONG_NaN;
+        } finally {
+            dataFrameCursor.toTop();
+        }
+    }
+
+    private static class SampleOrderedMapCursor implements RecordCursor {
+        private final LongList rows = new LongList();
+        private RecordCursor mapCursor;
+        private int index;
+
+        @Override
+        public void close() {
+            mapCursor = Misc.free(mapCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return mapCursor.getRecord();
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            return mapCursor.getSymbolTable(columnIndex);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < rows.size()) {
+                mapCursor.recordAt(mapCursor.getRecord(), rows.getQuick(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Record getRecordB() {
+            return mapCursor.getRecordB();
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            mapCursor.recordAt(record, atRowId);
+        }
+
+        @Override
+        public void toTop() {
+            index = 0;
+        }
+
+        @Override
+        public long size() {
+            return rows.size();
+        }
+
+        private SampleOrderedMapCursor of(RecordCursor mapCursor) {
+            this.mapCursor = mapCursor;
+            this.index = 0;
+            return this;
+        }
+    }
+}
@@ -24,10 +24,7 @@
 
 package io.questdb.griffin.engine.join;
 
-import io.questdb.cairo.AbstractRecordCursorFactory;
-import io.questdb.cairo.CairoConfiguration;
-import io.questdb.cairo.ColumnTypes;
-import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.*;
 import io.questdb.cairo.map.Map;
 import io.questdb.cairo.map.MapFactory;
 import io.questdb.cairo.map.MapKey;
@@ -36,10 +33,13 @@ import io.questdb.cairo.sql.*;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.SqlExecutionInterruptor;
+import io.questdb.std.BytecodeAssembler;
 import io.questdb.std.Misc;
 import io.questdb.std.Transient;
 
 public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactory {
+    private static final ArrayColumnTypes ROW_ID_TYPES = new ArrayColumnTypes().add(ColumnType.LONG);
+    private static final RecordSink ROW_ID_SINK = (record, sink) -> sink.putLong(record.getRowId());
     private final Map joinKeyMap;
     private final LongChain slaveChain;
     private final RecordCursorFactory masterFactory;
@@ -47,9 +47,13 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
     private final RecordSink masterKeySink;
     private final RecordSink slaveKeySink;
     private final HashJoinRecordCursor cursor;
+    private final PartitionedHashJoin partitionedJoin;
+    private final long spillMemoryLimit;
+    private final long partitionMinRows;
 
     public HashJoinLightRecordCursorFactory(
             CairoConfiguration configuration,
+            BytecodeAssembler asm,
             RecordMetadata metadata,
             RecordCursorFactory masterFactory,
             RecordCursorFactory slaveFactory,
@@ -57,8 +61,10 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
             @Transient ColumnTypes valueTypes, // this expected to be just LONG, we store chain references in map
             RecordSink masterKeySink,
             RecordSink slaveKeySink,
-            int columnSplit
-
+            RecordSink masterChainSink,
+            int columnSplit,
+            boolean keepOrder,
+            int workerCount
     ) {
         super(metadata);
         this.masterFactory = masterFactory;
@@ -67,6 +73,24 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
         slaveChain = new LongChain(configuration.getSqlHashJoinLightValuePageSize(), configuration.getSqlHashJoinLightValueMaxPages());
         this.masterKeySink = masterKeySink;
         this.slaveKeySink = slaveKeySink;
+        // slave records are accessible by row id, spilling row ids is enough
+        this.partitionedJoin = new PartitionedHashJoin(
+                configuration,
+                asm,
+                masterFactory.getMetadata(),
+                masterChainSink,
+                masterKeySink,
+                ROW_ID_TYPES,
+                ROW_ID_SINK,
+                slaveKeySink,
+                joinColumnTypes,
+                workerCount,
+                // partitioned join restores master order only when it has to, it costs a merge of all partitions
+                keepOrder
+        );
+        this.spillMemoryLimit = configuration.getSqlSpillMemoryLimit();
+        // without workers large inputs are partitioned only when they do not fit the memory
+        this.partitionMinRows = workerCount > 0 ? configuration.getSqlParallelHashJoinMinRows() : Long.MAX_VALUE;
         this.cursor = new HashJoinRecordCursor(columnSplit, joinKeyMap, slaveChain);
     }
 
@@ -74,6 +98,7 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
     public void close() {
         joinKeyMap.close();
         slaveChain.close();
+        partitionedJoin.close();
         ((JoinRecordMetadata) getMetadata()).close();
         masterFactory.close();
         slaveFactory.close();
@@ -81,14 +106,44 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
 
     @Override
     public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        partitionedJoin.clear();
         RecordCursor slaveCursor = slaveFactory.getCursor(executionContext);
         try {
             buildMapOfSlaveRecords(slaveCursor, executionContext.getSqlExecutionInterruptor());
         } catch (Throwable e) {
             slaveCursor.close();
+            partitionedJoin.clear();
             throw e;
         }
-        cursor.of(masterFactory.getCursor(executionContext), slaveCursor);
+
+        final RecordCursor masterCursor;
+        try {
+            masterCursor = masterFactory.getCursor(executionContext);
+        } catch (Throwable e) {
+            slaveCursor.close();
+            partitionedJoin.clear();
+            throw e;
+        }
+
+        if (partitionedJoin.isOpen()) {
+            try {
+                final SqlExecutionInterruptor interruptor = executionContext.getSqlExecutionInterruptor();
+                if (!spillMasterRecords(masterCursor, interruptor)) {
+                    // partitions outgrew the memory limit, both sides are partitioned again on disk
+                    partitionedJoin.clear();
+                    spillSlaveRecords(slaveCursor, interruptor, false);
+                    masterCursor.toTop();
+                    spillMasterRecords(masterCursor, interruptor);
+                }
+                partitionedJoin.start(executionContext);
+            } catch (Throwable e) {
+                masterCursor.close();
+                slaveCursor.close();
+                partitionedJoin.clear();
+                throw e;
+            }
+        }
+        cursor.of(masterCursor, slaveCursor);
         return cursor;
     }
 
@@ -101,19 +156,67 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
         slaveChain.clear();
         joinKeyMap.clear();
         final Record record = slaveCursor.getRecord();
+        long rowCount = 0;
         while (slaveCursor.hasNext()) {
             interruptor.checkInterrupted();
-            MapKey key = joinKeyMap.withKey();
-            key.put(record, slaveKeySink);
-            MapValue value = key.createValue();
-            if (value.isNew()) {
-                final long offset = slaveChain.put(record.getRowId(), -1);
-                value.putLong(0, offset);
-                value.putLong(1, offset);
-            } else {
-                value.putLong(1, slaveChain.put(record.getRowId(), value.getLong(1)));
+            if (putSlaveRecord(record)) {
+                spillSlaveRecords(slaveCursor, interruptor, false);
+                return;
             }
+            if (++rowCount >= partitionMinRows) {
+                spillSlaveRecords(slaveCursor, interruptor, true);
+                return;
+            }
+        }
+    }
+
+    // returns true when map and chain no longer fit the memory limit
+    private boolean putSlaveRecord(Record record) {
+        MapKey key = joinKeyMap.withKey();
+        key.put(record, slaveKeySink);
+        MapValue value = key.createValue();
+        if (value.isNew()) {
+            final long offset = slaveChain.put(record.getRowId(), -1);
+            value.putLong(0, offset);
+            value.putLong(1, offset);
+        } else {
+            value.putLong(1, slaveChain.put(record.getRowId(), value.getLong(1)));
         }
+        return joinKeyMap.getMemorySize() + slaveChain.getMemorySize() > spillMemoryLimit;
+    }
+
+    // slave side does not fit the memory or is large enough to be joined on the worker pool,
+    // both sides are partitioned by join key and then joined one partition at a time; partitions
+    // are kept in memory unless they do not fit the memory limit
+    private void spillSlaveRecords(RecordCursor slaveCursor, SqlExecutionInterruptor interruptor, boolean inMemory) {
+        joinKeyMap.clear();
+        slaveChain.close();
+        partitionedJoin.openSlave(slaveCursor, inMemory);
+        final Record record = slaveCursor.getRecord();
+        slaveCursor.toTop();
+        while (slaveCursor.hasNext()) {
+            interruptor.checkInterrupted();
+            partitionedJoin.putSlave(record);
+            if (partitionedJoin.isMemoryLimitExceeded()) {
+                partitionedJoin.clear();
+                spillSlaveRecords(slaveCursor, interruptor, false);
+                return;
+            }
+        }
+    }
+
+    // returns false when partitions kept in memory no longer fit the memory limit
+    private boolean spillMasterRecords(RecordCursor masterCursor, SqlExecutionInterruptor interruptor) {
+        partitionedJoin.openMaster(masterCursor);
+        final Record record = masterCursor.getRecord();
+        while (masterCursor.hasNext()) {
+            interruptor.checkInterrupted();
+            partitionedJoin.putMaster(record);
+            if (partitionedJoin.isMemoryLimitExceeded()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private class HashJoinRecordCursor implements NoRandomAccessRecordCursor {
@@ -142,6 +245,7 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
         public void close() {
             masterCursor = Misc.free(masterCursor);
             slaveCursor = Misc.free(slaveCursor);
+            partitionedJoin.clear();
         }
 
         @Override
@@ -166,6 +270,7 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
         public void toTop() {
             masterCursor.toTop();
             slaveChainCursor = null;
+            partitionedJoin.toTop();
         }
 
         @Override
@@ -175,6 +280,15 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
                 return true;
             }
 
+            if (partitionedJoin.isOpen()) {
+                if (partitionedJoin.hasNext()) {
+                    slaveCursor.recordAt(slaveRecord, partitionedJoin.getSlaveRecord().getLong(0));
+                    record.of(partitionedJoin.getMasterRecord(), slaveRecord);
+                    return true;
+                }
+                return false;
+            }
+
             while (masterCursor.hasNext()) {
                 MapKey key = joinKeyMap.withKey();
                 key.put(masterRecord, masterKeySink);
@@ -33,6 +33,7 @@ import io.questdb.cairo.sql.*;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.SqlExecutionInterruptor;
+import io.questdb.std.BytecodeAssembler;
 import io.questdb.std.Misc;
 import io.questdb.std.Transient;
 
@@ -44,9 +45,13 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
     private final RecordSink masterSink;
     private final RecordSink slaveKeySink;
     private final HashJoinRecordCursor cursor;
+    private final PartitionedHashJoin partitionedJoin;
+    private final long spillMemoryLimit;
+    private final long partitionMinRows;
 
     public HashJoinRecordCursorFactory(
             CairoConfiguration configuration,
+            BytecodeAssembler asm,
             RecordMetadata metadata,
             RecordCursorFactory masterFactory,
             RecordCursorFactory slaveFactory,
@@ -55,8 +60,10 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
             RecordSink masterSink,
             RecordSink slaveKeySink,
             RecordSink slaveChainSink,
-            int columnSplit
-
+            RecordSink masterChainSink,
+            int columnSplit,
+            boolean keepOrder,
+            int workerCount
     ) {
         super(metadata);
         this.masterFactory = masterFactory;
@@ -65,6 +72,23 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
         slaveChain = new RecordChain(slaveFactory.getMetadata(), slaveChainSink, configuration.getSqlHashJoinValuePageSize(), configuration.getSqlHashJoinValueMaxPages());
         this.masterSink = masterSink;
         this.slaveKeySink = slaveKeySink;
+        this.partitionedJoin = new PartitionedHashJoin(
+                configuration,
+                asm,
+                masterFactory.getMetadata(),
+                masterChainSink,
+                masterSink,
+                slaveFactory.getMetadata(),
+                slaveChainSink,
+                slaveKeySink,
+                joinColumnTypes,
+                workerCount,
+                // partitioned join restores master order only when it has to, it costs a merge of all partitions
+                keepOrder
+        );
+        this.spillMemoryLimit = configuration.getSqlSpillMemoryLimit();
+        // without workers large inputs are partitioned only when they do not fit the memory
+        this.partitionMinRows = workerCount > 0 ? configuration.getSqlParallelHashJoinMinRows() : Long.MAX_VALUE;
         this.cursor = new HashJoinRecordCursor(columnSplit, joinKeyMap, slaveChain);
     }
 
@@ -72,6 +96,7 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
     public void close() {
         joinKeyMap.close();
         slaveChain.close();
+        partitionedJoin.close();
         ((JoinRecordMetadata) getMetadata()).close();
         masterFactory.close();
         slaveFactory.close();
@@ -79,14 +104,44 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
 
     @Override
     public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        partitionedJoin.clear();
         RecordCursor slaveCursor = slaveFactory.getCursor(executionContext);
         try {
             buildMapOfSlaveRecords(slaveCursor, executionContext.getSqlExecutionInterruptor());
         } catch (Throwable e) {
             slaveCursor.close();
+            partitionedJoin.clear();
+            throw e;
+        }
+
+        final RecordCursor masterCursor;
+        try {
+            masterCursor = masterFactory.getCursor(executionContext);
+        } catch (Throwable e) {
+            slaveCursor.close();
+            partitionedJoin.clear();
             throw e;
         }
-        cursor.of(masterFactory.getCursor(executionContext), slaveCursor);
+
+        if (partitionedJoin.isOpen()) {
+            try {
+                final SqlExecutionInterruptor interruptor = executionContext.getSqlExecutionInterruptor();
+                if (!spillMasterRecords(masterCursor, interruptor)) {
+                    // partitions outgrew the memory limit, both sides are partitioned again on disk
+                    partitionedJoin.clear();
+                    spillSlaveRecords(slaveCursor, interruptor, false);
+                    masterCursor.toTop();
+                    spillMasterRecords(masterCursor, interruptor);
+                }
+                partitionedJoin.start(executionContext);
+            } catch (Throwable e) {
+                masterCursor.close();
+                slaveCursor.close();
+                partitionedJoin.clear();
+                throw e;
+            }
+        }
+        cursor.of(masterCursor, slaveCursor);
         return cursor;
     }
 
@@ -96,7 +151,70 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
     }
 
     private void buildMapOfSlaveRecords(RecordCursor slaveCursor, SqlExecutionInterruptor interruptor) {
-        HashOuterJoinRecordCursorFactory.buildMap(slaveCursor, slaveCursor.getRecord(), joinKeyMap, slaveKeySink, slaveChain, interruptor);
+        joinKeyMap.clear();
+        slaveChain.clear();
+        final Record record = slaveCursor.getRecord();
+        long rowCount = 0;
+        while (slaveCursor.hasNext()) {
+            interruptor.checkInterrupted();
+            if (putSlaveRecord(record)) {
+                spillSlaveRecords(slaveCursor, interruptor, false);
+                return;
+            }
+            if (++rowCount >= partitionMinRows) {
+                spillSlaveRecords(slaveCursor, interruptor, true);
+                return;
+            }
+        }
+    }
+
+    // returns true when map and chain no longer fit the memory limit
+    private boolean putSlaveRecord(Record record) {
+        MapKey key = joinKeyMap.withKey();
+        key.put(record, slaveKeySink);
+        MapValue value = key.createValue();
+        if (value.isNew()) {
+            long offset = slaveChain.put(record, -1);
+            value.putLong(0, offset);
+            value.putLong(1, offset);
+        } else {
+            value.putLong(1, slaveChain.put(record, value.getLong(1)));
+        }
+        return joinKeyMap.getMemorySize() + slaveChain.getMemorySize() > spillMemoryLimit;
+    }
+
+    // slave side does not fit the memory or is large enough to be joined on the worker pool,
+    // both sides are partitioned by join key and then joined one partition at a time; partitions
+    // are kept in memory unless they do not fit the memory limit
+    private void spillSlaveRecords(RecordCursor slaveCursor, SqlExecutionInterruptor interruptor, boolean inMemory) {
+        joinKeyMap.clear();
+        slaveChain.clear();
+        partitionedJoin.openSlave(slaveCursor, inMemory);
+        final Record record = slaveCursor.getRecord();
+        slaveCursor.toTop();
+        while (slaveCursor.hasNext()) {
+            interruptor.checkInterrupted();
+            partitionedJoin.putSlave(record);
+            if (partitionedJoin.isMemoryLimitExceeded()) {
+                partitionedJoin.clear();
+                spillSlaveRecords(slaveCursor, interruptor, false);
+                return;
+            }
+        }
+    }
+
+    // returns false when partitions kept in memory no longer fit the memory limit
+    private boolean spillMasterRecords(RecordCursor masterCursor, SqlExecutionInterruptor interruptor) {
+        partitionedJoin.openMaster(masterCursor);
+        final Record record = masterCursor.getRecord();
+        while (masterCursor.hasNext()) {
+            interruptor.checkInterrupted();
+            partitionedJoin.putMaster(record);
+            if (partitionedJoin.isMemoryLimitExceeded()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private class HashJoinRecordCursor implements NoRandomAccessRecordCursor {
@@ -120,6 +238,7 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
         public void close() {
             masterCursor = Misc.free(masterCursor);
             slaveCursor = Misc.free(slaveCursor);
+            partitionedJoin.clear();
         }
 
         @Override
@@ -146,6 +265,14 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
                 return true;
             }
 
+            if (partitionedJoin.isOpen()) {
+                if (partitionedJoin.hasNext()) {
+                    recordA.of(partitionedJoin.getMasterRecord(), partitionedJoin.getSlaveRecord());
+                    return true;
+                }
+                return false;
+            }
+
             while (masterCursor.hasNext()) {
                 MapKey key = joinKeyMap.withKey();
                 key.put(masterRecord, masterSink);
@@ -166,6 +293,7 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
         public void toTop() {
             masterCursor.toTop();
             useSlaveCursor = false;
+            partitionedJoin.toTop();
         }
 
         void of(RecordCursor masterCursor, RecordCursor slaveCursor) {
@@ -50,6 +50,10 @@ public class LongChain implements Closeable, Mutable {
         valueChain.close();
     }
 
+    public long getMemorySize() {
+        return valueChain.getAppendOffset();
+    }
+
     public TreeCursor getCursor(long tailOffset) {
         cursor.of(tailOffset);
         return cursor;
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.std.AbstractLockable;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Unit of work of partitioned hash join: map of one slave partition, which is
+ * built either by a worker or by the thread that owns the cursor.
+ */
+public class ParallelHashJoinEntry extends AbstractLockable {
+    private final PartitionedHashJoin join;
+    private int partitionIndex;
+    private Throwable error;
+    private volatile boolean done;
+
+    ParallelHashJoinEntry(PartitionedHashJoin join) {
+        this.join = join;
+    }
+
+    public boolean run() {
+        return runOwned();
+    }
+
+    void awaitDone() {
+        while (!done) {
+            LockSupport.parkNanos(1);
+        }
+    }
+
+    /**
+     * Prevents workers from picking this entry up. Entry that is already
+     * being processed by a worker is left to complete.
+     */
+    void cancel() {
+        if (tryLock()) {
+            done = true;
+        }
+    }
+
+    void of(int sequence, int partitionIndex) {
+        this.error = null;
+        this.partitionIndex = partitionIndex;
+        this.done = false;
+        // unlock entry last, fields above must be visible to the thread that locks it
+        of(sequence);
+    }
+
+    boolean runOwned() {
+        if (tryLock()) {
+            try {
+                join.buildPartition(partitionIndex);
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                done = true;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    void throwIfFailed() {
+        final Throwable e = error;
+        if (e != null) {
+            error = null;
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw (Error) e;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapFactory;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.Sequence;
+import io.questdb.std.*;
+import io.questdb.tasks.ParallelHashJoinTask;
+
+import java.io.Closeable;
+
+/**
+ * Inner hash join of inputs partitioned by hash of their join key. Master and slave records are
+ * copied into partitions alongside the values of their join keys, so that every pair of partitions
+ * can be joined independently of the others and of the cursors the records came from. Partitions
+ * are kept in memory and are written to disk only when they do not fit the memory limit.
+ * <p>
+ * Maps of slave partitions are built on the worker pool, while the thread that owns the cursor
+ * probes them with master records of the same partition as it reads the join output. Only a window
+ * of partitions is built ahead of the cursor, map of a partition is reused for the partition the
+ * window moves onto once the cursor is done with it.
+ * <p>
+ * Partitions return matches partition by partition. When join has to keep master order, master records
+ * are numbered as they are partitioned and matches are returned only after all partitions are joined:
+ * partition keeps references to its matches, which are in master order within the partition, and
+ * references of all partitions are merged by master record number.
+ */
+public class PartitionedHashJoin implements Closeable, Mutable {
+    private final CairoConfiguration configuration;
+    private final ArrayColumnTypes keyTypes = new ArrayColumnTypes();
+    private final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
+    private final RecordChainSpill masterSpill;
+    private final RecordChainSpill slaveSpill;
+    private final RecordSink masterKeySink;
+    private final RecordSink slaveKeySink;
+    private final RecordSink masterPartitionKeySink;
+    private final RecordSink slavePartitionKeySink;
+    private final ObjList<Map> maps = new ObjList<>();
+    private final ObjList<LongChain> chains = new ObjList<>();
+    private final ObjList<ParallelHashJoinEntry> entries = new ObjList<>();
+    private final int windowSize;
+    private final long memoryLimit;
+    private final boolean ordered;
+    // column of master partition record, which holds master record number when join keeps master order
+    private final int masterSequenceIndex;
+    private final IntLongPriorityQueue mergeQueue = new IntLongPriorityQueue();
+    private final LongList matchCounts = new LongList();
+    private final LongList matchPositions = new LongList();
+    private final LongList matchLimits = new LongList();
+    // triplets of master record number, master record offset and slave record offset of every match
+    private DirectLongList matches;
+    private boolean matchesCollected;
+    private long masterSequence;
+    private RingQueue<ParallelHashJoinTask> queue;
+    private Sequence pubSeq;
+    private int sequence;
+    private int publishedCount;
+    private int partitionIndex;
+    private RecordChain masterChain;
+    private RecordChain slaveChain;
+    private Map map;
+    private LongChain.TreeCursor slaveChainCursor;
+    private Record masterRecord;
+    private Record slaveRecord;
+
+    /**
+     * @param masterTypes     types of master columns, which are stored by masterChainSink
+     * @param masterChainSink copies master columns into the partition
+     * @param masterKeySink   copies join key of master record
+     * @param slaveTypes      types of slave columns, which are stored by slaveChainSink
+     * @param slaveChainSink  copies slave columns into the partition
+     * @param slaveKeySink    copies join key of slave record
+     * @param joinKeyTypes    types of join key, symbols are expected to be keyed as strings
+     * @param workerCount     number of workers that can build partition maps, 0 when maps are built by the owner only
+     * @param ordered         true when matches must be returned in the order master records were put
+     */
+    public PartitionedHashJoin(
+            CairoConfiguration configuration,
+            BytecodeAssembler asm,
+            @Transient ColumnTypes masterTypes,
+            RecordSink masterChainSink,
+            RecordSink masterKeySink,
+            @Transient ColumnTypes slaveTypes,
+            RecordSink slaveChainSink,
+            RecordSink slaveKeySink,
+            @Transient ColumnTypes joinKeyTypes,
+            int workerCount,
+            boolean ordered
+    ) {
+        this.configuration = configuration;
+        this.ordered = ordered;
+        this.masterKeySink = masterKeySink;
+        this.slaveKeySink = slaveKeySink;
+        this.memoryLimit = configuration.getSqlSpillMemoryLimit();
+        for (int i = 0, n = joinKeyTypes.getColumnCount(); i < n; i++) {
+            keyTypes.add(joinKeyTypes.getColumnType(i));
+        }
+        valueTypes.add(ColumnType.LONG);
+        valueTypes.add(ColumnType.LONG);
+
+        final ArrayColumnTypes masterChainTypes = withKeyTypes(masterTypes);
+        final ArrayColumnTypes slaveChainTypes = withKeyTypes(slaveTypes);
+        this.masterSequenceIndex = masterChainTypes.getColumnCount();
+        if (ordered) {
+            masterChainTypes.add(ColumnType.LONG);
+            this.masterSpill = new RecordChainSpill(configuration, masterChainTypes, (r, w) -> {
+                masterChainSink.copy(r, w);
+                masterKeySink.copy(r, w);
+                w.putLong(masterSequence++);
+            });
+        } else {
+            this.masterSpill = new RecordChainSpill(configuration, masterChainTypes, (r, w) -> {
+                masterChainSink.copy(r, w);
+                masterKeySink.copy(r, w);
+            });
+        }
+        this.slaveSpill = new RecordChainSpill(configuration, slaveChainTypes, (r, w) -> {
+            slaveChainSink.copy(r, w);
+            slaveKeySink.copy(r, w);
+        });
+        this.masterPartitionKeySink = getKeySink(asm, masterChainTypes, masterTypes.getColumnCount(), masterSequenceIndex);
+        this.slavePartitionKeySink = getKeySink(asm, slaveChainTypes, slaveTypes.getColumnCount(), slaveChainTypes.getColumnCount());
+
+        final int partitionCount = masterSpill.getPartitionCount();
+        // every worker and the owner may be building a map at the same time
+        this.windowSize = Math.min(workerCount + 1, partitionCount);
+        maps.setPos(windowSize);
+        chains.setPos(windowSize);
+        for (int i = 0; i < partitionCount; i++) {
+            entries.add(new ParallelHashJoinEntry(this));
+        }
+        matchCounts.setPos(partitionCount);
+        matchPositions.setPos(partitionCount);
+        matchLimits.setPos(partitionCount);
+    }
+
+    /**
+     * Cancels partitions that have not been built yet and releases partitions. Memory
+     * of maps is released too, it is sized by the largest partition the instance joined.
+     */
+    @Override
+    public void clear() {
+        cancelPublished();
+        for (int i = 0, n = maps.size(); i < n; i++) {
+            maps.setQuick(i, Misc.free(maps.getQuick(i)));
+            chains.setQuick(i, Misc.free(chains.getQuick(i)));
+        }
+        masterChain = slaveChain = null;
+        map = null;
+        slaveChainCursor = null;
+        queue = null;
+        pubSeq = null;
+        matches = Misc.free(matches);
+        matchesCollected = false;
+        masterSpill.clear();
+        slaveSpill.clear();
+    }
+
+    @Override
+    public void close() {
+        clear();
+        masterSpill.close();
+        slaveSpill.close();
+    }
+
+    /**
+     * @return master record of the current match, it stays valid until the next call to {@link #hasNext()}
+     */
+    public Record getMasterRecord() {
+        return masterRecord;
+    }
+
+    /**
+     * @return slave record of the current match, for slave chain, which stores row ids of
+     * the slave cursor, row id is the first column of the record
+     */
+    public Record getSlaveRecord() {
+        return slaveRecord;
+    }
+
+    public boolean hasNext() {
+        if (!ordered) {
+            return nextPartitionMatch();
+        }
+        if (!matchesCollected) {
+            collectMatches();
+        }
+        return nextOrderedMatch();
+    }
+
+    private boolean nextPartitionMatch() {
+        while (true) {
+            if (slaveChainCursor != null && slaveChainCursor.hasNext()) {
+                slaveChain.recordAt(slaveRecord, slaveChainCursor.next());
+                return true;
+            }
+            slaveChainCursor = null;
+
+            if (masterChain != null) {
+                while (masterChain.hasNext()) {
+                    final MapKey key = map.withKey();
+                    key.put(masterRecord, masterPartitionKeySink);
+                    final MapValue value = key.findValue();
+                    if (value != null) {
+                        slaveChainCursor = chains.getQuick(slotOf(partitionIndex)).getCursor(value.getLong(0));
+                        break;
+                    }
+                }
+                if (slaveChainCursor != null) {
+                    continue;
+                }
+                // partition is consumed, its map is free to build the next partition of the window
+                releasePartition(partitionIndex);
+                masterChain = null;
+            }
+
+            if (partitionIndex + 1 == entries.size()) {
+                return false;
+            }
+            partitionIndex++;
+
+            final ParallelHashJoinEntry entry = entries.getQuick(partitionIndex);
+            entry.runOwned();
+            entry.awaitDone();
+            entry.throwIfFailed();
+
+            map = maps.getQuick(slotOf(partitionIndex));
+            masterChain = masterSpill.getPartition(partitionIndex);
+            slaveChain = slaveSpill.getPartition(partitionIndex);
+            masterRecord = masterChain.getRecord();
+            slaveRecord = slaveChain.getRecordB();
+        }
+    }
+
+    /**
+     * @return true when partitions are kept in memory and have grown past the memory limit
+     */
+    public boolean isMemoryLimitExceeded() {
+        return slaveSpill.isInMemory() && masterSpill.getMemorySize() + slaveSpill.getMemorySize() > memoryLimit;
+    }
+
+    public boolean isOpen() {
+        return slaveSpill.isOpen();
+    }
+
+    /**
+     * Starts partitioning master records the same way slave records are partitioned,
+     * symbols of partitioned records are resolved by the cursor.
+     */
+    public void openMaster(RecordCursor masterCursor) {
+        masterSequence = 0;
+        if (slaveSpill.isInMemory()) {
+            masterSpill.openInMemory();
+        } else {
+            masterSpill.open();
+        }
+        masterSpill.setSymbolTableResolver(masterCursor);
+    }
+
+    /**
+     * Starts partitioning slave records, symbols of partitioned records are resolved by the cursor.
+     *
+     * @param inMemory false when partitions are to be written to disk
+     */
+    public void openSlave(RecordCursor slaveCursor, boolean inMemory) {
+        if (inMemory) {
+            slaveSpill.openInMemory();
+        } else {
+            slaveSpill.open();
+        }
+        slaveSpill.setSymbolTableResolver(slaveCursor);
+    }
+
+    public void putMaster(Record record) {
+        masterSpill.put(record, masterKeySink);
+    }
+
+    public void putSlave(Record record) {
+        slaveSpill.put(record, slaveKeySink);
+    }
+
+    /**
+     * Publishes first window of partitions to the worker pool. Partitions, which did not fit the
+     * queue, are built by the owner when the cursor reaches them.
+     */
+    public void start(SqlExecutionContext executionContext) {
+        final MessageBus bus = windowSize > 1 ? executionContext.getMessageBus() : null;
+        queue = bus != null ? bus.getParallelHashJoinQueue() : null;
+        pubSeq = bus != null ? bus.getParallelHashJoinPubSeq() : null;
+        toTop();
+    }
+
+    /**
+     * Rewinds to the first partition. Maps of consumed partitions are gone by now,
+     * they are built again. Matches of ordered join, which have been collected already,
+     * are merged again instead.
+     */
+    public void toTop() {
+        if (matchesCollected) {
+            startMerge();
+            return;
+        }
+        cancelPublished();
+        masterChain = null;
+        slaveChainCursor = null;
+        partitionIndex = -1;
+        for (int i = 0; i < windowSize; i++) {
+            publish(i);
+        }
+    }
+
+    private static RecordSink getKeySink(BytecodeAssembler asm, ColumnTypes chainTypes, int keyColumnLo, int keyColumnHi) {
+        final ListColumnFilter filter = new ListColumnFilter();
+        for (int i = keyColumnLo; i < keyColumnHi; i++) {
+            // column filter indexes are 1-based
+            filter.add(i + 1);
+        }
+        return RecordSinkFactory.getInstance(asm, chainTypes, filter, false);
+    }
+
+    // workers may still be building partitions they locked before we cancelled the rest,
+    // partitions and maps must not be released until they are done
+    private void cancelPublished() {
+        for (int i = 0; i < publishedCount; i++) {
+            entries.getQuick(i).cancel();
+        }
+        for (int i = 0; i < publishedCount; i++) {
+            entries.getQuick(i).awaitDone();
+        }
+        publishedCount = 0;
+    }
+
+    // joins all partitions and keeps references to their matches, matches of a partition
+    // are stored after matches of the partitions before it
+    private void collectMatches() {
+        if (matches == null) {
+            matches = new DirectLongList(3 * 1024);
+        }
+        matches.clear();
+        matchCounts.setAll(matchCounts.size(), 0);
+        while (nextPartitionMatch()) {
+            matches.add(masterRecord.getLong(masterSequenceIndex));
+            matches.add(masterRecord.getRowId());
+            matches.add(slaveRecord.getRowId());
+            matchCounts.increment(partitionIndex);
+        }
+        long lo = 0;
+        for (int i = 0, n = matchCounts.size(); i < n; i++) {
+            matchPositions.setQuick(i, lo);
+            lo += matchCounts.getQuick(i);
+            matchLimits.setQuick(i, lo);
+        }
+        matchesCollected = true;
+        startMerge();
+    }
+
+    private boolean nextOrderedMatch() {
+        if (!mergeQueue.hasNext()) {
+            return false;
+        }
+        final int index = mergeQueue.popIndex();
+        mergeQueue.popValue();
+        final long position = matchPositions.getQuick(index);
+        final RecordChain masterPartition = masterSpill.getPartition(index);
+        final RecordChain slavePartition = slaveSpill.getPartition(index);
+        masterRecord = masterPartition.getRecord();
+        slaveRecord = slavePartition.getRecordB();
+        masterPartition.recordAt(masterRecord, matches.get(3 * position + 1));
+        slavePartition.recordAt(slaveRecord, matches.get(3 * position + 2));
+        if (position + 1 < matchLimits.getQuick(index)) {
+            mergeQueue.add(index, matches.get(3 * (position + 1)));
+        }
+        matchPositions.setQuick(index, position + 1);
+        return true;
+    }
+
+    private void startMerge() {
+        mergeQueue.clear();
+        long lo = 0;
+        for (int i = 0, n = matchLimits.size(); i < n; i++) {
+            final long hi = matchLimits.getQuick(i);
+            matchPositions.setQuick(i, lo);
+            if (lo < hi) {
+                mergeQueue.add(i, matches.get(3 * lo));
+            }
+            lo = hi;
+        }
+    }
+
+    private LongChain getChain(int slot) {
+        LongChain chain = chains.getQuick(slot);
+        if (chain == null) {
+            chains.setQuick(slot, chain = new LongChain(configuration.getSqlHashJoinLightValuePageSize(), configuration.getSqlHashJoinLightValueMaxPages()));
+        }
+        return chain;
+    }
+
+    private Map getMap(int slot) {
+        Map map = maps.getQuick(slot);
+        if (map == null) {
+            maps.setQuick(slot, map = MapFactory.createMap(configuration, keyTypes, valueTypes));
+        }
+        return map;
+    }
+
+    private void publish(int partitionIndex) {
+        if (partitionIndex < entries.size()) {
+            final ParallelHashJoinEntry entry = entries.getQuick(partitionIndex);
+            entry.of(sequence++, partitionIndex);
+            publishedCount = partitionIndex + 1;
+            if (pubSeq != null) {
+                final long seq = pubSeq.next();
+                if (seq > -1) {
+                    queue.get(seq).entry = entry;
+                    pubSeq.done(seq);
+                }
+            }
+        }
+    }
+
+    private void releasePartition(int partitionIndex) {
+        final int slot = slotOf(partitionIndex);
+        maps.getQuick(slot).clear();
+        chains.getQuick(slot).clear();
+        publish(partitionIndex + windowSize);
+    }
+
+    private int slotOf(int partitionIndex) {
+        return partitionIndex % windowSize;
+    }
+
+    private ArrayColumnTypes withKeyTypes(ColumnTypes types) {
+        final ArrayColumnTypes result = new ArrayColumnTypes();
+        for (int i = 0, n = types.getColumnCount(); i < n; i++) {
+            result.add(types.getColumnType(i));
+        }
+        for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+            result.add(keyTypes.getColumnType(i));
+        }
+        return result;
+    }
+
+    // builds map of slave partition, the map is probed by the owner of the cursor; partition
+    // chains and the map are accessed by one thread at a time, which makes their records safe to use
+    void buildPartition(int partitionIndex) {
+        final int slot = slotOf(partitionIndex);
+        final Map map = getMap(slot);
+        final LongChain chain = getChain(slot);
+        map.clear();
+        chain.clear();
+
+        final RecordChain slavePartition = slaveSpill.getPartition(partitionIndex);
+        final Record slaveRecord = slavePartition.getRecord();
+        while (slavePartition.hasNext()) {
+            final MapKey key = map.withKey();
+            key.put(slaveRecord, slavePartitionKeySink);
+            final MapValue value = key.createValue();
+            if (value.isNew()) {
+                final long offset = chain.put(slaveRecord.getRowId(), -1);
+                value.putLong(0, offset);
+                value.putLong(1, offset);
+            } else {
+                value.putLong(1, chain.put(slaveRecord.getRowId(), value.getLong(1)));
+            }
+        }
+    }
+}
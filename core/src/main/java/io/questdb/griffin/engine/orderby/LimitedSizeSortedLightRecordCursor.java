@@ -0,0 +1,208 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.sql.DelegatingRecordCursor;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionInterruptor;
+import io.questdb.griffin.engine.RecordComparator;
+import io.questdb.std.LongList;
+
+/**
+ * Keeps row ids of the first N records in the order of the comparator. Row ids are kept
+ * in a bounded binary heap with the worst kept row at the root; a record that does not beat
+ * the root of a full heap is discarded after a single comparison. The heap is sorted once
+ * when the base cursor is exhausted. Records that compare as equal are ordered the same way
+ * as in {@link SortedLightRecordCursor}, most recent first.
+ */
+class LimitedSizeSortedLightRecordCursor implements DelegatingRecordCursor {
+    private final RecordComparator comparator;
+    private final long limit;
+    private final LongList rows;
+    // arrival order of the rows in the heap, breaks ties between equal records
+    private final LongList sequences;
+    private RecordCursor base;
+    private Record baseRecord;
+    private Record placeHolderRecord;
+    private long sequence;
+    private int index;
+
+    public LimitedSizeSortedLightRecordCursor(RecordComparator comparator, long limit) {
+        this.comparator = comparator;
+        this.limit = limit;
+        final int capacity = (int) Math.min(limit, 1024);
+        this.rows = new LongList(capacity);
+        this.sequences = new LongList(capacity);
+    }
+
+    @Override
+    public void close() {
+        rows.clear();
+        sequences.clear();
+        base.close();
+    }
+
+    @Override
+    public long size() {
+        return rows.size();
+    }
+
+    @Override
+    public Record getRecord() {
+        return baseRecord;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < rows.size()) {
+            base.recordAt(baseRecord, rows.getQuick(index++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Record getRecordB() {
+        return base.getRecordB();
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        base.recordAt(record, atRowId);
+    }
+
+    @Override
+    public void toTop() {
+        index = 0;
+    }
+
+    @Override
+    public void of(RecordCursor base, SqlExecutionContext executionContext) {
+        this.base = base;
+        this.baseRecord = base.getRecord();
+        this.placeHolderRecord = base.getRecordB();
+        final SqlExecutionInterruptor interruptor = executionContext.getSqlExecutionInterruptor();
+
+        rows.clear();
+        sequences.clear();
+        sequence = 0;
+        if (limit > 0) {
+            while (base.hasNext()) {
+                interruptor.checkInterrupted();
+                put();
+            }
+        }
+        sort();
+        index = 0;
+    }
+
+    /**
+     * @return true when row at heap position a goes after row at heap position b in the output
+     */
+    private boolean isWorse(int a, int b) {
+        // comparator copies left values, placeholder can be reused for the right side
+        base.recordAt(placeHolderRecord, rows.getQuick(a));
+        comparator.setLeft(placeHolderRecord);
+        base.recordAt(placeHolderRecord, rows.getQuick(b));
+        final int cmp = comparator.compare(placeHolderRecord);
+        return cmp > 0 || (cmp == 0 && sequences.getQuick(a) < sequences.getQuick(b));
+    }
+
+    private void put() {
+        final int size = rows.size();
+        if (size == limit) {
+            // most records of a large cursor do not make it into the heap
+            comparator.setLeft(baseRecord);
+            base.recordAt(placeHolderRecord, rows.getQuick(0));
+            if (comparator.compare(placeHolderRecord) > 0) {
+                sequence++;
+                return;
+            }
+            rows.setQuick(0, baseRecord.getRowId());
+            sequences.setQuick(0, sequence++);
+            siftDown(0, size);
+        } else {
+            rows.add(baseRecord.getRowId());
+            sequences.add(sequence++);
+            siftUp(size);
+        }
+    }
+
+    private void siftDown(int pos, int size) {
+        while (true) {
+            int worst = pos;
+            final int left = 2 * pos + 1;
+            final int right = left + 1;
+            if (left < size && isWorse(left, worst)) {
+                worst = left;
+            }
+            if (right < size && isWorse(right, worst)) {
+                worst = right;
+            }
+            if (worst == pos) {
+                return;
+            }
+            swap(pos, worst);
+            pos = worst;
+        }
+    }
+
+    private void siftUp(int pos) {
+        while (pos > 0) {
+            final int parent = (pos - 1) >>> 1;
+            if (!isWorse(pos, parent)) {
+                return;
+            }
+            swap(pos, parent);
+            pos = parent;
+        }
+    }
+
+    private void sort() {
+        // heap sort, worst rows are moved to the end one at a time
+        for (int end = rows.size() - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    private void swap(int a, int b) {
+        final long row = rows.getQuick(a);
+        rows.setQuick(a, rows.getQuick(b));
+        rows.setQuick(b, row);
+        final long seq = sequences.getQuick(a);
+        sequences.setQuick(a, sequences.getQuick(b));
+        sequences.setQuick(b, seq);
+    }
+}
@@ -55,6 +55,10 @@ public abstract class AbstractDataFrameRecordCursor implements RecordCursor {
         }
     }
 
+    public DataFrameCursor getDataFrameCursor() {
+        return dataFrameCursor;
+    }
+
     @Override
     public Record getRecord() {
         return recordA;
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.NullColumn;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.vm.api.MemoryR;
+import io.questdb.griffin.engine.functions.ComparisonFunction;
+import io.questdb.std.LongList;
+import io.questdb.std.Numbers;
+import io.questdb.std.ObjList;
+
+/**
+ * Conjunction of column-to-constant comparisons that is evaluated directly over column memory.
+ * Row loop is generated for every filter by {@link FilterCompiler}, column read, type conversion
+ * and operator of each comparison are fixed in the generated code. Comparisons are evaluated in
+ * order and the first one that fails skips the row. Constant values are read when filter is
+ * initialised and are passed to the generated loop, so that bind variables can change between
+ * executions. Filter is not mutated once initialised and can be shared between threads.
+ */
+public class CompiledFilter {
+    static final int READ_INT = 1;
+    static final int READ_LONG = 2;
+    static final int READ_DOUBLE = 3;
+    static final int OP_LT = 0;
+    static final int OP_GE = 1;
+    static final int OP_GT = 2;
+    static final int OP_LE = 3;
+    static final int OP_EQ = 4;
+    static final int OP_NE = 5;
+    // constants of every term: range low bound or double value, range high bound, range inversion flag
+    // and result for null value
+    static final int CONSTANTS_PER_TERM = 4;
+    private static final double EPSILON = 0.0000000001;
+
+    private final ObjList<Term> terms;
+    private final Kernel kernel;
+    private final LongList constants = new LongList();
+
+    CompiledFilter(ObjList<Term> terms, Kernel kernel) {
+        this.terms = terms;
+        this.kernel = kernel;
+    }
+
+    public void filter(TableReader reader, int partitionIndex, long rowLo, long rowHi, LongList rows) {
+        kernel.filter(reader, reader.getColumnBase(partitionIndex), constants, rowLo, rowHi, rows);
+    }
+
+    /**
+     * Reads values of constants. Must be called after the filter function tree has been initialised.
+     */
+    public void init() {
+        constants.setPos(terms.size() * CONSTANTS_PER_TERM);
+        for (int i = 0, n = terms.size(); i < n; i++) {
+            terms.getQuick(i).init(constants, i * CONSTANTS_PER_TERM);
+        }
+    }
+
+    // methods below are called by generated code
+
+    static long getColumnAddress(TableReader reader, int columnBase, int columnIndex) {
+        final MemoryR column = reader.getColumn(TableReader.getPrimaryColumnIndex(columnBase, columnIndex));
+        // column was added after this partition had been written, all values are null
+        return column instanceof NullColumn ? 0 : column.getPageAddress(0);
+    }
+
+    static long getColumnTop(TableReader reader, int columnBase, int columnIndex) {
+        if (reader.getColumn(TableReader.getPrimaryColumnIndex(columnBase, columnIndex)) instanceof NullColumn) {
+            return Long.MAX_VALUE;
+        }
+        return reader.getColumnTop(columnBase, columnIndex);
+    }
+
+    static boolean isEqual(double v, double c) {
+        return Math.abs(v - c) < EPSILON || (Double.isNaN(v) && Double.isNaN(c));
+    }
+
+    static boolean isGreater(double v, double c) {
+        return c < v;
+    }
+
+    static boolean isGreaterOrEqual(double v, double c) {
+        return v >= c;
+    }
+
+    static boolean isInRange(long v, long lo, long hi, boolean invert) {
+        return (v >= lo && v <= hi) != invert;
+    }
+
+    static boolean isLess(double v, double c) {
+        return v < c;
+    }
+
+    static boolean isLessOrEqual(double v, double c) {
+        return c >= v;
+    }
+
+    static boolean isNotEqual(double v, double c) {
+        return !isEqual(v, c);
+    }
+
+    private static boolean test(int op, double v, double c) {
+        switch (op) {
+            case OP_LT:
+                return isLess(v, c);
+            case OP_GE:
+                return isGreaterOrEqual(v, c);
+            case OP_GT:
+                return isGreater(v, c);
+            case OP_LE:
+                return isLessOrEqual(v, c);
+            case OP_EQ:
+                return isEqual(v, c);
+            default:
+                return isNotEqual(v, c);
+        }
+    }
+
+    /**
+     * Row loop generated by {@link FilterCompiler}. Adds ids of matching rows within [rowLo, rowHi)
+     * to the list.
+     */
+    interface Kernel {
+        void filter(TableReader reader, int columnBase, LongList constants, long rowLo, long rowHi, LongList rows);
+    }
+
+    static class Term {
+        private final int columnIndex;
+        private final int columnRead;
+        private final Function constant;
+        private final int kind;
+        private final boolean negated;
+        private final boolean columnOnLeft;
+
+        Term(int columnIndex, int columnRead, Function constant, int kind, boolean negated, boolean columnOnLeft) {
+            this.columnIndex = columnIndex;
+            this.columnRead = columnRead;
+            this.constant = constant;
+            this.kind = kind;
+            this.negated = negated;
+            this.columnOnLeft = columnOnLeft;
+        }
+
+        int getColumnIndex() {
+            return columnIndex;
+        }
+
+        int getColumnRead() {
+            return columnRead;
+        }
+
+        /**
+         * @return operator of comparison in double domain
+         */
+        int getOp() {
+            if (kind == ComparisonFunction.EQ_DOUBLE) {
+                return negated ? OP_NE : OP_EQ;
+            }
+            if (columnOnLeft) {
+                return negated ? OP_GE : OP_LT;
+            }
+            return negated ? OP_LE : OP_GT;
+        }
+
+        boolean isDoubleDomain() {
+            return kind == ComparisonFunction.EQ_DOUBLE || kind == ComparisonFunction.LT_DOUBLE;
+        }
+
+        private void init(LongList constants, int offset) {
+            if (isDoubleDomain()) {
+                final double c = constant.getDouble(null);
+                constants.setQuick(offset, Double.doubleToRawLongBits(c));
+                constants.setQuick(offset + 3, test(getOp(), Double.NaN, c) ? 1 : 0);
+            } else {
+                final long c;
+                switch (kind) {
+                    case ComparisonFunction.EQ_INT:
+                    case ComparisonFunction.LT_INT:
+                        c = Numbers.intToLong(constant.getInt(null));
+                        break;
+                    case ComparisonFunction.EQ_LONG:
+                        c = constant.getLong(null);
+                        break;
+                    default:
+                        c = constant.getTimestamp(null);
+                        break;
+                }
+                initLong(constants, offset, c);
+            }
+        }
+
+        // value matches when it is within [lo, hi] range, null is Long.MIN_VALUE
+        private void initLong(LongList constants, int offset, long c) {
+            long lo;
+            long hi;
+            boolean invert = false;
+            if (kind == ComparisonFunction.EQ_INT || kind == ComparisonFunction.EQ_LONG || kind == ComparisonFunction.EQ_TIMESTAMP) {
+                lo = hi = c;
+                invert = negated;
+            } else if (c == Numbers.LONG_NaN) {
+                // less than comparison with null is false regardless of negation
+                lo = 1;
+                hi = 0;
+            } else if (columnOnLeft) {
+                if (negated) {
+                    // column >= c
+                    lo = c;
+                    hi = Long.MAX_VALUE;
+                } else {
+                    // column < c
+                    lo = Long.MIN_VALUE + 1;
+                    hi = c - 1;
+                }
+            } else if (negated) {
+                // column <= c
+                lo = Long.MIN_VALUE + 1;
+                hi = c;
+            } else if (c == Long.MAX_VALUE) {
+                lo = 1;
+                hi = 0;
+            } else {
+                // column > c
+                lo = c + 1;
+                hi = Long.MAX_VALUE;
+            }
+            constants.setQuick(offset, lo);
+            constants.setQuick(offset + 1, hi);
+            constants.setQuick(offset + 2, invert ? 1 : 0);
+            constants.setQuick(offset + 3, isInRange(Numbers.LONG_NaN, lo, hi, invert) ? 1 : 0);
+        }
+    }
+}
@@ -39,6 +39,7 @@ import org.jetbrains.annotations.Nullable;
 
 public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorFactory {
     private final DataFrameRecordCursor cursor;
+    private final RowCursorFactory rowCursorFactory;
     private final boolean followsOrderByAdvice;
     private final Function filter;
     private final boolean framingSupported;
@@ -60,6 +61,7 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
         super(metadata, dataFrameCursorFactory);
 
         this.cursor = new DataFrameRecordCursor(rowCursorFactory, rowCursorFactory.isEntity(), filter, columnIndexes);
+        this.rowCursorFactory = rowCursorFactory;
         this.followsOrderByAdvice = followsOrderByAdvice;
         this.filter = filter;
         this.framingSupported = framingSupported;
@@ -78,6 +80,14 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
         return followsOrderByAdvice;
     }
 
+    public IntList getColumnIndexes() {
+        return columnIndexes;
+    }
+
+    public DataFrameCursorFactory getDataFrameCursorFactory() {
+        return dataFrameCursorFactory;
+    }
+
     @Override
     public PageFrameCursor getPageFrameCursor(SqlExecutionContext executionContext) throws SqlException {
         DataFrameCursor dataFrameCursor = dataFrameCursorFactory.getCursor(executionContext);
@@ -91,6 +101,14 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
         }
     }
 
+    /**
+     * @return true when factory scans every row of its data frames without filtering, in which case
+     * filter on top of this factory can be evaluated by {@link ParallelFilteredRecordCursorFactory}
+     */
+    public boolean isParallelFilterSupported() {
+        return filter == null && rowCursorFactory instanceof DataFrameRowCursorFactory;
+    }
+
     @Override
     public boolean recordCursorSupportsRandomAccess() {
         return true;
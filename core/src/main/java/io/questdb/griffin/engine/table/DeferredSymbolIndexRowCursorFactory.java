@@ -59,6 +59,11 @@ public class DeferredSymbolIndexRowCursorFactory implements FunctionBasedRowCurs
         return symbol;
     }
 
+    @Override
+    public int getIndexKey() {
+        return symbolKey;
+    }
+
     @Override
     public RowCursor getCursor(DataFrame dataFrame) {
         if (symbolKey == SymbolTable.VALUE_NOT_FOUND) {
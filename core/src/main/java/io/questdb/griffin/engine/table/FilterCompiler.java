@@ -0,0 +1,495 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.sql.Function;
+import io.questdb.griffin.engine.functions.ComparisonFunction;
+import io.questdb.griffin.engine.functions.bool.AndFunctionFactory;
+import io.questdb.griffin.engine.functions.columns.DoubleColumn;
+import io.questdb.griffin.engine.functions.columns.IntColumn;
+import io.questdb.griffin.engine.functions.columns.LongColumn;
+import io.questdb.griffin.engine.functions.columns.SymbolColumn;
+import io.questdb.griffin.engine.functions.columns.TimestampColumn;
+import io.questdb.std.BytecodeAssembler;
+import io.questdb.std.IntList;
+import io.questdb.std.LongList;
+import io.questdb.std.Numbers;
+import io.questdb.std.ObjList;
+import io.questdb.std.Unsafe;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compiles filter function into {@link CompiledFilter} when the filter is a conjunction of
+ * comparisons between fixed width columns and constants. Filters of any other shape are left
+ * to be evaluated row by row.
+ */
+public class FilterCompiler {
+    // arguments of Kernel.filter()
+    private static final int LOCAL_READER = 1;
+    private static final int LOCAL_COLUMN_BASE = 2;
+    private static final int LOCAL_CONSTANTS = 3;
+    private static final int LOCAL_ROW_LO = 4;
+    private static final int LOCAL_ROW_HI = 6;
+    private static final int LOCAL_ROWS = 8;
+    private static final int LOCAL_ROW = 9;
+    // every term keeps column address and column top in locals followed by constants,
+    // which are either long range low and high bounds, inversion flag and null result
+    // or double value and null result
+    private static final int LOCAL_TERMS = 11;
+    private static final int LOCAL_TERM_COLUMN_TOP = 2;
+    private static final int LOCAL_TERM_CONSTANTS = 4;
+    private static final int LONG_TERM_LOCALS = 10;
+    private static final int DOUBLE_TERM_LOCALS = 7;
+    private static final int MAX_LOCALS = 256;
+    private static final int MAX_STACK = 8;
+    private final ObjList<Function> leaves = new ObjList<>();
+    private final BytecodeAssembler asm;
+    private final IntList termLocals = new IntList();
+    private final IntList doubleOpIndexes = new IntList();
+    private final IntList frameOffsets = new IntList();
+    private final IntList nextBranches = new IntList();
+    private int thisClassIndex;
+    private int readerClassIndex;
+    private int longListClassIndex;
+    private int getColumnAddressIndex;
+    private int getColumnTopIndex;
+    private int getQuickIndex;
+    private int addIndex;
+    private int longBitsToDoubleIndex;
+    private int getUnsafeIndex;
+    private int getIntIndex;
+    private int getLongIndex;
+    private int getDoubleIndex;
+    private int intToLongIndex;
+    private int intToDoubleIndex;
+    private int longToDoubleIndex;
+    private int isInRangeIndex;
+
+    public FilterCompiler(BytecodeAssembler asm) {
+        this.asm = asm;
+    }
+
+    /**
+     * @param filter        filter function, its instance must be used to evaluate filter alongside
+     *                      compiled filter because compiled filter reads constant values from it
+     * @param columnIndexes mapping of record column indexes to table reader column indexes
+     * @return compiled filter or null when filter cannot be compiled
+     */
+    @Nullable
+    public CompiledFilter compile(Function filter, IntList columnIndexes) {
+        leaves.clear();
+        collectLeaves(filter);
+        final ObjList<CompiledFilter.Term> terms = new ObjList<>(leaves.size());
+        for (int i = 0, n = leaves.size(); i < n; i++) {
+            final CompiledFilter.Term term = compileTerm(leaves.getQuick(i));
+            if (term == null) {
+                leaves.clear();
+                return null;
+            }
+            terms.add(term);
+        }
+        leaves.clear();
+        final CompiledFilter.Kernel kernel = compileKernel(terms, columnIndexes);
+        return kernel != null ? new CompiledFilter(terms, kernel) : null;
+    }
+
+    private static int getColumnIndex(Function function) {
+        if (function instanceof IntColumn) {
+            return ((IntColumn) function).getColumnIndex();
+        }
+        if (function instanceof SymbolColumn) {
+            return ((SymbolColumn) function).getColumnIndex();
+        }
+        if (function instanceof LongColumn) {
+            return ((LongColumn) function).getColumnIndex();
+        }
+        if (function instanceof TimestampColumn) {
+            return ((TimestampColumn) function).getColumnIndex();
+        }
+        if (function instanceof DoubleColumn) {
+            return ((DoubleColumn) function).getColumnIndex();
+        }
+        return -1;
+    }
+
+    // how column value is read from memory for given comparison kind, -1 when comparison
+    // does not accept the column
+    private static int getColumnRead(Function column, int kind) {
+        final boolean isInt = column instanceof IntColumn;
+        switch (kind) {
+            case ComparisonFunction.EQ_INT:
+            case ComparisonFunction.LT_INT:
+                return isInt || column instanceof SymbolColumn ? CompiledFilter.READ_INT : -1;
+            case ComparisonFunction.EQ_LONG:
+            case ComparisonFunction.EQ_TIMESTAMP:
+            case ComparisonFunction.LT_TIMESTAMP:
+                if (isInt) {
+                    return CompiledFilter.READ_INT;
+                }
+                return column instanceof LongColumn || column instanceof TimestampColumn ? CompiledFilter.READ_LONG : -1;
+            case ComparisonFunction.EQ_DOUBLE:
+            case ComparisonFunction.LT_DOUBLE:
+                if (isInt) {
+                    return CompiledFilter.READ_INT;
+                }
+                if (column instanceof LongColumn || column instanceof TimestampColumn) {
+                    return CompiledFilter.READ_LONG;
+                }
+                return column instanceof DoubleColumn ? CompiledFilter.READ_DOUBLE : -1;
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean isConstant(Function function) {
+        return function.isConstant() || function.isRuntimeConstant();
+    }
+
+    private void collectLeaves(Function function) {
+        if (function instanceof AndFunctionFactory.AndBooleanFunction) {
+            final AndFunctionFactory.AndBooleanFunction and = (AndFunctionFactory.AndBooleanFunction) function;
+            collectLeaves(and.getLeft());
+            collectLeaves(and.getRight());
+        } else {
+            leaves.add(function);
+        }
+    }
+
+    /**
+     * Generates row loop of the filter. For a filter of two terms loop looks like:
+     * <pre>
+     * for (long row = rowLo; row &lt; rowHi; row++) {
+     *     if (row &gt;= top0 ? isInRange(Numbers.intToLong(getInt(address0 + ((row - top0) &lt;&lt; 2))), lo0, hi0, invert0) : null0) {
+     *         if (row &gt;= top1 ? isLess(getDouble(address1 + ((row - top1) &lt;&lt; 3)), value1) : null1) {
+     *             rows.add(row);
+     *         }
+     *     }
+     * }
+     * </pre>
+     * Column addresses, tops and constants are loaded into local variables before the loop.
+     *
+     * @return generated loop or null when filter has too many terms to keep them in local variables
+     */
+    private CompiledFilter.Kernel compileKernel(ObjList<CompiledFilter.Term> terms, IntList columnIndexes) {
+        termLocals.clear();
+        int localCount = LOCAL_TERMS;
+        for (int i = 0, n = terms.size(); i < n; i++) {
+            termLocals.add(localCount);
+            localCount += terms.getQuick(i).isDoubleDomain() ? DOUBLE_TERM_LOCALS : LONG_TERM_LOCALS;
+        }
+        if (localCount > MAX_LOCALS) {
+            return null;
+        }
+
+        asm.init(CompiledFilter.Kernel.class);
+        asm.setupPool();
+        thisClassIndex = asm.poolClass(asm.poolUtf8("io/questdb/griffin/engine/table/CompiledFilterKernel"));
+        final int stackMapTableIndex = asm.poolUtf8("StackMapTable");
+        final int interfaceClassIndex = asm.poolClass(CompiledFilter.Kernel.class);
+        final int filterNameIndex = asm.poolUtf8("filter");
+        final int filterDescIndex = asm.poolUtf8("(Lio/questdb/cairo/TableReader;ILio/questdb/std/LongList;JJLio/questdb/std/LongList;)V");
+        poolMethodArtifacts();
+        asm.finishPool();
+
+        asm.defineClass(thisClassIndex);
+        asm.interfaceCount(1);
+        asm.putShort(interfaceClassIndex);
+        asm.fieldCount(0);
+        asm.methodCount(2);
+        asm.defineDefaultConstructor();
+        instrumentFilterMethod(stackMapTableIndex, filterNameIndex, filterDescIndex, localCount, terms, columnIndexes);
+        // class attribute count
+        asm.putShort(0);
+        return asm.newInstance();
+    }
+
+    private CompiledFilter.Term compileTerm(Function function) {
+        if (!(function instanceof ComparisonFunction)) {
+            return null;
+        }
+        final ComparisonFunction comparison = (ComparisonFunction) function;
+        final Function left = comparison.getLeft();
+        final Function right = comparison.getRight();
+        final boolean columnOnLeft;
+        final Function column;
+        final Function constant;
+        if (getColumnIndex(left) > -1 && isConstant(right)) {
+            columnOnLeft = true;
+            column = left;
+            constant = right;
+        } else if (getColumnIndex(right) > -1 && isConstant(left)) {
+            columnOnLeft = false;
+            column = right;
+            constant = left;
+        } else {
+            return null;
+        }
+
+        final int kind = comparison.getComparisonKind();
+        final int columnRead = getColumnRead(column, kind);
+        if (columnRead == -1) {
+            return null;
+        }
+        return new CompiledFilter.Term(
+                getColumnIndex(column),
+                columnRead,
+                constant,
+                kind,
+                comparison.isNegated(),
+                columnOnLeft
+        );
+    }
+
+    private void instrumentFilterMethod(
+            int stackMapTableIndex,
+            int nameIndex,
+            int descIndex,
+            int localCount,
+            ObjList<CompiledFilter.Term> terms,
+            IntList columnIndexes
+    ) {
+        frameOffsets.clear();
+        nextBranches.clear();
+        asm.startMethod(nameIndex, descIndex, MAX_STACK, localCount);
+
+        // load column addresses and constants into locals
+        for (int i = 0, n = terms.size(); i < n; i++) {
+            final CompiledFilter.Term term = terms.getQuick(i);
+            final int local = termLocals.getQuick(i);
+            final int columnIndex = columnIndexes.getQuick(term.getColumnIndex());
+            asm.aload(LOCAL_READER);
+            asm.iload(LOCAL_COLUMN_BASE);
+            asm.iconst(columnIndex);
+            asm.invokeStatic(getColumnAddressIndex);
+            asm.lstore(local);
+            asm.aload(LOCAL_READER);
+            asm.iload(LOCAL_COLUMN_BASE);
+            asm.iconst(columnIndex);
+            asm.invokeStatic(getColumnTopIndex);
+            asm.lstore(local + LOCAL_TERM_COLUMN_TOP);
+
+            final int constantIndex = i * CompiledFilter.CONSTANTS_PER_TERM;
+            final int constantLocal = local + LOCAL_TERM_CONSTANTS;
+            if (term.isDoubleDomain()) {
+                loadConstant(constantIndex);
+                asm.invokeStatic(longBitsToDoubleIndex);
+                asm.dstore(constantLocal);
+                loadConstant(constantIndex + 3);
+                asm.l2i();
+                asm.istore(constantLocal + 2);
+            } else {
+                loadConstant(constantIndex);
+                asm.lstore(constantLocal);
+                loadConstant(constantIndex + 1);
+                asm.lstore(constantLocal + 2);
+                loadConstant(constantIndex + 2);
+                asm.l2i();
+                asm.istore(constantLocal + 4);
+                loadConstant(constantIndex + 3);
+                asm.l2i();
+                asm.istore(constantLocal + 5);
+            }
+        }
+        asm.lload(LOCAL_ROW_LO);
+        asm.lstore(LOCAL_ROW);
+
+        final int loop = asm.position();
+        frameOffsets.add(loop);
+        asm.lload(LOCAL_ROW);
+        asm.lload(LOCAL_ROW_HI);
+        asm.lcmp();
+        final int endBranch = asm.ifge();
+
+        for (int i = 0, n = terms.size(); i < n; i++) {
+            final CompiledFilter.Term term = terms.getQuick(i);
+            final int local = termLocals.getQuick(i);
+            final int constantLocal = local + LOCAL_TERM_CONSTANTS;
+            final boolean isDouble = term.isDoubleDomain();
+
+            // rows below column top are null
+            asm.lload(LOCAL_ROW);
+            asm.lload(local + LOCAL_TERM_COLUMN_TOP);
+            asm.lcmp();
+            final int readBranch = asm.ifge();
+            asm.iload(constantLocal + (isDouble ? 2 : 5));
+            nextBranches.add(asm.ifeq());
+            final int passBranch = asm.goto_();
+
+            final int read = asm.position();
+            frameOffsets.add(read);
+            asm.setJmp(readBranch, read);
+            asm.invokeStatic(getUnsafeIndex);
+            asm.lload(local);
+            asm.lload(LOCAL_ROW);
+            asm.lload(local + LOCAL_TERM_COLUMN_TOP);
+            asm.lsub();
+            switch (term.getColumnRead()) {
+                case CompiledFilter.READ_INT:
+                    asm.iconst(2);
+                    asm.lshl();
+                    asm.ladd();
+                    asm.invokeVirtual(getIntIndex);
+                    asm.invokeStatic(isDouble ? intToDoubleIndex : intToLongIndex);
+                    break;
+                case CompiledFilter.READ_LONG:
+                    asm.iconst(3);
+                    asm.lshl();
+                    asm.ladd();
+                    asm.invokeVirtual(getLongIndex);
+                    if (isDouble) {
+                        asm.invokeStatic(longToDoubleIndex);
+                    }
+                    break;
+                default:
+                    asm.iconst(3);
+                    asm.lshl();
+                    asm.ladd();
+                    asm.invokeVirtual(getDoubleIndex);
+                    break;
+            }
+
+            if (isDouble) {
+                asm.dload(constantLocal);
+                asm.invokeStatic(doubleOpIndexes.getQuick(term.getOp()));
+            } else {
+                asm.lload(constantLocal);
+                asm.lload(constantLocal + 2);
+                asm.iload(constantLocal + 4);
+                asm.invokeStatic(isInRangeIndex);
+            }
+            nextBranches.add(asm.ifeq());
+
+            final int pass = asm.position();
+            frameOffsets.add(pass);
+            asm.setJmp(passBranch, pass);
+        }
+
+        asm.aload(LOCAL_ROWS);
+        asm.lload(LOCAL_ROW);
+        asm.invokeVirtual(addIndex);
+
+        final int next = asm.position();
+        frameOffsets.add(next);
+        for (int i = 0, n = nextBranches.size(); i < n; i++) {
+            asm.setJmp(nextBranches.getQuick(i), next);
+        }
+        asm.lload(LOCAL_ROW);
+        asm.lconst_1();
+        asm.ladd();
+        asm.lstore(LOCAL_ROW);
+        asm.setJmp(asm.goto_(), loop);
+
+        final int end = asm.position();
+        frameOffsets.add(end);
+        asm.setJmp(endBranch, end);
+        asm.return_();
+        asm.endMethodCode();
+
+        // exceptions
+        asm.putShort(0);
+        // attributes: StackMapTable
+        asm.putShort(1);
+        asm.startStackMapTables(stackMapTableIndex, frameOffsets.size());
+        int start = asm.getCodeStart();
+        for (int i = 0, n = frameOffsets.size(); i < n; i++) {
+            final int offset = frameOffsets.getQuick(i);
+            if (i == 0) {
+                // loop start, all locals are assigned and stack is empty from here on
+                asm.full_frame(offset - start);
+                final int countPos = asm.position();
+                asm.putShort(0);
+                asm.putITEM_Object(thisClassIndex);
+                asm.putITEM_Object(readerClassIndex);
+                asm.putITEM_Integer();
+                asm.putITEM_Object(longListClassIndex);
+                asm.putITEM_Long();
+                asm.putITEM_Long();
+                asm.putITEM_Object(longListClassIndex);
+                asm.putITEM_Long();
+                int count = 8;
+                for (int j = 0, m = terms.size(); j < m; j++) {
+                    asm.putITEM_Long();
+                    asm.putITEM_Long();
+                    if (terms.getQuick(j).isDoubleDomain()) {
+                        asm.putITEM_Double();
+                        asm.putITEM_Integer();
+                        count += 4;
+                    } else {
+                        asm.putITEM_Long();
+                        asm.putITEM_Long();
+                        asm.putITEM_Integer();
+                        asm.putITEM_Integer();
+                        count += 6;
+                    }
+                }
+                asm.putShort(countPos, count);
+                // stack
+                asm.putShort(0);
+            } else {
+                asm.same_frame(offset - start);
+            }
+            start = offset + 1;
+        }
+        asm.endStackMapTables();
+        asm.endMethod();
+    }
+
+    private void loadConstant(int index) {
+        asm.aload(LOCAL_CONSTANTS);
+        asm.iconst(index);
+        asm.invokeVirtual(getQuickIndex);
+    }
+
+    private void poolMethodArtifacts() {
+        final int compiledFilterClassIndex = asm.poolClass(CompiledFilter.class);
+        readerClassIndex = asm.poolClass(TableReader.class);
+        longListClassIndex = asm.poolClass(LongList.class);
+        getColumnAddressIndex = asm.poolMethod(compiledFilterClassIndex, "getColumnAddress", "(Lio/questdb/cairo/TableReader;II)J");
+        getColumnTopIndex = asm.poolMethod(compiledFilterClassIndex, "getColumnTop", "(Lio/questdb/cairo/TableReader;II)J");
+        getQuickIndex = asm.poolMethod(longListClassIndex, "getQuick", "(I)J");
+        addIndex = asm.poolMethod(longListClassIndex, "add", "(J)V");
+        longBitsToDoubleIndex = asm.poolMethod(Double.class, "longBitsToDouble", "(J)D");
+        getUnsafeIndex = asm.poolMethod(Unsafe.class, "getUnsafe", "()Lsun/misc/Unsafe;");
+        final int unsafeClassIndex = asm.poolClass(asm.poolUtf8("sun/misc/Unsafe"));
+        getIntIndex = asm.poolMethod(unsafeClassIndex, "getInt", "(J)I");
+        getLongIndex = asm.poolMethod(unsafeClassIndex, "getLong", "(J)J");
+        getDoubleIndex = asm.poolMethod(unsafeClassIndex, "getDouble", "(J)D");
+        final int numbersClassIndex = asm.poolClass(Numbers.class);
+        intToLongIndex = asm.poolMethod(numbersClassIndex, "intToLong", "(I)J");
+        intToDoubleIndex = asm.poolMethod(numbersClassIndex, "intToDouble", "(I)D");
+        longToDoubleIndex = asm.poolMethod(numbersClassIndex, "longToDouble", "(J)D");
+        isInRangeIndex = asm.poolMethod(compiledFilterClassIndex, "isInRange", "(JJJZ)Z");
+        // indexed by CompiledFilter.OP_* constants
+        doubleOpIndexes.clear();
+        doubleOpIndexes.add(asm.poolMethod(compiledFilterClassIndex, "isLess", "(DD)Z"));
+        doubleOpIndexes.add(asm.poolMethod(compiledFilterClassIndex, "isGreaterOrEqual", "(DD)Z"));
+        doubleOpIndexes.add(asm.poolMethod(compiledFilterClassIndex, "isGreater", "(DD)Z"));
+        doubleOpIndexes.add(asm.poolMethod(compiledFilterClassIndex, "isLessOrEqual", "(DD)Z"));
+        doubleOpIndexes.add(asm.poolMethod(compiledFilterClassIndex, "isEqual", "(DD)Z"));
+        doubleOpIndexes.add(asm.poolMethod(compiledFilterClassIndex, "isNotEqual", "(DD)Z"));
+    }
+}
@@ -24,6 +24,7 @@
 
 package io.questdb.griffin.engine.table;
 
+import io.questdb.cairo.BitmapIndexReader;
 import io.questdb.cairo.SymbolMapReader;
 import io.questdb.cairo.TableReader;
 import io.questdb.cairo.sql.*;
@@ -77,6 +78,8 @@ public class FilterOnValuesRecordCursorFactory extends AbstractDataFrameRecordCu
         }
         if (orderByMnemonic == OrderByMnemonic.ORDER_BY_INVARIANT) {
             this.cursor = new DataFrameRecordCursor(new SequentialRowCursorFactory(cursorFactories), false, filter, columnIndexes);
+        } else if (filter == null && indexDirection == BitmapIndexReader.DIR_FORWARD) {
+            this.cursor = new DataFrameRecordCursor(new SymbolIndexUnionRowCursorFactory(columnIndex, cursorFactories), false, null, columnIndexes);
         } else {
             this.cursor = new DataFrameRecordCursor(new HeapRowCursorFactory(cursorFactories), false, filter, columnIndexes);
         }
@@ -26,7 +26,15 @@ package io.questdb.griffin.engine.table;
 
 import io.questdb.cairo.sql.Function;
 import io.questdb.cairo.sql.RowCursorFactory;
+import io.questdb.cairo.sql.SymbolTable;
 
 public interface FunctionBasedRowCursorFactory extends RowCursorFactory {
     Function getFunction();
+
+    /**
+     * @return index key cursor reads all rows of, VALUE_NOT_FOUND when the key is unknown or rows are filtered
+     */
+    default int getIndexKey() {
+        return SymbolTable.VALUE_NOT_FOUND;
+    }
 }
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.std.AbstractLockable;
+import io.questdb.std.LongList;
+import io.questdb.std.Mutable;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Unit of work of parallel filter: a slice of data frame rows, which is
+ * filtered either by a worker or by the thread that owns the cursor. Whichever
+ * thread locks the entry first evaluates the filter and collects matching row ids.
+ */
+public class ParallelFilterEntry extends AbstractLockable implements Mutable {
+    private final LongList rows = new LongList();
+    private final ParallelFilteredRecordCursor cursor;
+    private int partitionIndex;
+    private long rowLo;
+    private long rowHi;
+    private Throwable error;
+    private volatile boolean done;
+
+    public ParallelFilterEntry(ParallelFilteredRecordCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    public void awaitDone() {
+        while (!done) {
+            LockSupport.parkNanos(1);
+        }
+    }
+
+    /**
+     * Prevents workers from picking this entry up. Entry that is already
+     * being processed by a worker is left to complete.
+     */
+    public void cancel() {
+        if (tryLock()) {
+            done = true;
+        }
+    }
+
+    @Override
+    public void clear() {
+        rows.clear();
+        error = null;
+    }
+
+    public int getPartitionIndex() {
+        return partitionIndex;
+    }
+
+    public LongList getRows() {
+        return rows;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean run(int workerId) {
+        // workers outside of the range the filter was compiled for leave the entry to the cursor owner
+        return cursor.isWorkerSlot(workerId) && runOwned(workerId);
+    }
+
+    public void throwIfFailed() {
+        final Throwable e = error;
+        if (e != null) {
+            error = null;
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw (Error) e;
+        }
+    }
+
+    boolean runOwned(int slot) {
+        if (tryLock()) {
+            try {
+                cursor.filter(slot, partitionIndex, rowLo, rowHi, rows);
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                done = true;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    void of(int sequence, int partitionIndex, long rowLo, long rowHi) {
+        this.rows.clear();
+        this.error = null;
+        this.partitionIndex = partitionIndex;
+        this.rowLo = rowLo;
+        this.rowHi = rowHi;
+        this.done = false;
+        // unlock entry last, fields above must be visible to the thread that locks it
+        of(sequence);
+    }
+}
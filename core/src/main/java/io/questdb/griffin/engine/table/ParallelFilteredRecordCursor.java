@@ -0,0 +1,247 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableReaderSelectedColumnRecord;
+import io.questdb.cairo.sql.DataFrame;
+import io.questdb.cairo.sql.DataFrameCursor;
+import io.questdb.cairo.sql.Function;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.Sequence;
+import io.questdb.std.IntList;
+import io.questdb.std.LongList;
+import io.questdb.std.ObjList;
+import io.questdb.tasks.ParallelFilterTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+class ParallelFilteredRecordCursor extends AbstractDataFrameRecordCursor {
+    // one filter instance per worker, the last instance is used by the thread that owns this cursor;
+    // compiled filter is shared by all threads and comes with a single filter instance
+    private final ObjList<Function> filters;
+    private final CompiledFilter compiledFilter;
+    private final int workerCount;
+    private final ObjList<TableReaderSelectedColumnRecord> filterRecords;
+    private final ObjList<ParallelFilterEntry> entries;
+    private final int ownerSlot;
+    private final long frameRowCount;
+    private final int batchSize;
+    private RingQueue<ParallelFilterTask> queue;
+    private Sequence pubSeq;
+    private int sequence;
+    private int entryCount;
+    private int entryIndex;
+    private LongList rows;
+    private int rowIndex;
+    private int rowCount;
+    private int framePartitionIndex;
+    private long frameRowLo;
+    private long frameRowHi;
+
+    public ParallelFilteredRecordCursor(
+            @NotNull ObjList<Function> filters,
+            @Nullable CompiledFilter compiledFilter,
+            @NotNull IntList columnIndexes,
+            int workerCount,
+            long frameRowCount,
+            int batchSize
+    ) {
+        super(columnIndexes);
+        this.filters = filters;
+        this.compiledFilter = compiledFilter;
+        this.workerCount = workerCount;
+        this.ownerSlot = filters.size() - 1;
+        this.filterRecords = new ObjList<>(filters.size());
+        for (int i = 0, n = filters.size(); i < n; i++) {
+            filterRecords.add(new TableReaderSelectedColumnRecord(columnIndexes));
+        }
+        this.entries = new ObjList<>(batchSize);
+        this.frameRowCount = frameRowCount;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void close() {
+        cancelPendingEntries();
+        super.close();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            if (rowIndex < rowCount) {
+                recordA.setRecordIndex(rows.getQuick(rowIndex++));
+                return true;
+            }
+
+            if (entryIndex == entryCount && !dispatchEntries()) {
+                return false;
+            }
+
+            final ParallelFilterEntry entry = entries.getQuick(entryIndex++);
+            awaitEntry(entry);
+            entry.throwIfFailed();
+            rows = entry.getRows();
+            rowIndex = 0;
+            rowCount = rows.size();
+            recordA.jumpTo(entry.getPartitionIndex(), 0);
+        }
+    }
+
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    @Override
+    public void toTop() {
+        cancelPendingEntries();
+        for (int i = 0, n = filters.size(); i < n; i++) {
+            filters.getQuick(i).toTop();
+        }
+        dataFrameCursor.toTop();
+        resetFrameState();
+    }
+
+    private void awaitEntry(ParallelFilterEntry entry) {
+        if (!entry.runOwned(ownerSlot)) {
+            // entry has been picked up by a worker, help out with the tail of the batch
+            // while we wait; starting at the back reduces chance of clashing with workers
+            for (int i = entryCount - 1; i >= entryIndex && !entry.isDone(); i--) {
+                entries.getQuick(i).runOwned(ownerSlot);
+            }
+            entry.awaitDone();
+        }
+    }
+
+    private void cancelPendingEntries() {
+        for (int i = entryIndex; i < entryCount; i++) {
+            entries.getQuick(i).cancel();
+        }
+        // workers may still be filtering entries they locked before we cancelled the rest,
+        // table reader must not be released until they are done
+        for (int i = 0; i < entryCount; i++) {
+            entries.getQuick(i).awaitDone();
+        }
+        entryIndex = entryCount = 0;
+        rowIndex = rowCount = 0;
+    }
+
+    private boolean dispatchEntries() {
+        entryIndex = 0;
+        entryCount = 0;
+        while (entryCount < batchSize) {
+            if (frameRowLo >= frameRowHi) {
+                final DataFrame dataFrame = dataFrameCursor.next();
+                if (dataFrame == null) {
+                    break;
+                }
+                framePartitionIndex = dataFrame.getPartitionIndex();
+                frameRowLo = dataFrame.getRowLo();
+                frameRowHi = dataFrame.getRowHi();
+                continue;
+            }
+
+            final long rowHi = Math.min(frameRowLo + frameRowCount, frameRowHi);
+            final ParallelFilterEntry entry;
+            if (entryCount < entries.size()) {
+                entry = entries.getQuick(entryCount);
+            } else {
+                entries.add(entry = new ParallelFilterEntry(this));
+            }
+            entry.of(sequence++, framePartitionIndex, frameRowLo, rowHi);
+            entryCount++;
+            frameRowLo = rowHi;
+
+            // when queue is full the entry is left to be filtered by this thread
+            if (pubSeq != null) {
+                final long seq = pubSeq.next();
+                if (seq > -1) {
+                    queue.get(seq).entry = entry;
+                    pubSeq.done(seq);
+                }
+            }
+        }
+        return entryCount > 0;
+    }
+
+    private void resetFrameState() {
+        rowIndex = rowCount = 0;
+        entryIndex = entryCount = 0;
+        frameRowLo = frameRowHi = 0;
+    }
+
+    void filter(int slot, int partitionIndex, long rowLo, long rowHi, LongList rows) {
+        if (compiledFilter != null) {
+            compiledFilter.filter(dataFrameCursor.getTableReader(), partitionIndex, rowLo, rowHi, rows);
+            return;
+        }
+        final Function filter = filters.getQuick(slot);
+        final TableReaderSelectedColumnRecord record = filterRecords.getQuick(slot);
+        record.jumpTo(partitionIndex, rowLo);
+        for (long row = rowLo; row < rowHi; row++) {
+            record.setRecordIndex(row);
+            if (filter.getBool(record)) {
+                rows.add(row);
+            }
+        }
+    }
+
+    boolean isWorkerSlot(int workerId) {
+        return workerId > -1 && workerId < workerCount;
+    }
+
+    @Override
+    void of(DataFrameCursor dataFrameCursor, SqlExecutionContext executionContext) throws SqlException {
+        if (this.dataFrameCursor != dataFrameCursor) {
+            close();
+            this.dataFrameCursor = dataFrameCursor;
+        }
+        final TableReader reader = dataFrameCursor.getTableReader();
+        recordA.of(reader);
+        recordB.of(reader);
+        for (int i = 0, n = filters.size(); i < n; i++) {
+            filterRecords.getQuick(i).of(reader);
+            filters.getQuick(i).init(this, executionContext);
+        }
+        if (compiledFilter != null) {
+            compiledFilter.init();
+        }
+        final MessageBus bus = executionContext.getMessageBus();
+        if (bus != null && workerCount > 0) {
+            queue = bus.getParallelFilterQueue();
+            pubSeq = bus.getParallelFilterPubSeq();
+        } else {
+            queue = null;
+            pubSeq = null;
+        }
+        resetFrameState();
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.sql.DataFrameCursor;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.IntList;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.Transient;
+import io.questdb.std.str.CharSink;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Evaluates filter over data frames of a table on the shared worker pool. Data frames are
+ * split into slices of fixed row count, each slice is filtered by a worker using its own
+ * instance of the filter. Matching rows are returned in the order of the data frames.
+ */
+public class ParallelFilteredRecordCursorFactory extends AbstractDataFrameRecordCursorFactory {
+    private final DataFrameRecordCursorFactory base;
+    private final ParallelFilteredRecordCursor cursor;
+    private final ObjList<Function> filters;
+    private final CompiledFilter compiledFilter;
+
+    public ParallelFilteredRecordCursorFactory(
+            CairoConfiguration configuration,
+            DataFrameRecordCursorFactory base,
+            // one filter per worker followed by filter for the thread that owns the cursor,
+            // compiled filter is shared by all threads and comes with a single filter
+            @Transient ObjList<Function> filters,
+            @Nullable CompiledFilter compiledFilter,
+            int workerCount
+    ) {
+        super(base.getMetadata(), base.getDataFrameCursorFactory());
+        this.base = base;
+        this.filters = new ObjList<>(filters.size());
+        this.filters.addAll(filters);
+        this.compiledFilter = compiledFilter;
+        this.cursor = new ParallelFilteredRecordCursor(
+                this.filters,
+                compiledFilter,
+                base.getColumnIndexes(),
+                workerCount,
+                configuration.getSqlParallelFilterFrameRows(),
+                // row ids of dispatched slices are kept in memory until consumed, keep
+                // enough slices in flight to occupy all workers but not many more
+                Math.min(configuration.getParallelFilterQueueCapacity(), 2 * (workerCount + 1))
+        );
+    }
+
+    @Override
+    public void close() {
+        Misc.free(base);
+        Misc.freeObjList(filters);
+    }
+
+    public IntList getColumnIndexes() {
+        return base.getColumnIndexes();
+    }
+
+    @Nullable
+    public CompiledFilter getCompiledFilter() {
+        return compiledFilter;
+    }
+
+    @Override
+    public boolean followedOrderByAdvice() {
+        return base.followedOrderByAdvice();
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        sink.put("{\"name\":\"ParallelFilteredRecordCursorFactory\", \"cursorFactory\":");
+        dataFrameCursorFactory.toSink(sink);
+        sink.put('}');
+    }
+
+    @Override
+    protected RecordCursor getCursorInstance(
+            DataFrameCursor dataFrameCursor,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        cursor.of(dataFrameCursor, executionContext);
+        return cursor;
+    }
+}
@@ -0,0 +1,300 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.*;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Serves query results from shared {@link ResultCache}. Cache key is SQL text followed by values of indexed
+ * bind variables. Cached result is used only when none of the tables query reads has been modified since result
+ * was recorded. Otherwise query is executed and its rows are recorded while caller iterates the cursor. Recorded
+ * rows are published to the cache once cursor is exhausted, unless they exceed maximum entry size.
+ */
+public class ResultCacheRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final CairoEngine engine;
+    private final ResultCache cache;
+    private final RecordCursorFactory base;
+    private final String sql;
+    private final ObjList<String> tableNames = new ObjList<>();
+    private final ArrayColumnTypes chainTypes = new ArrayColumnTypes();
+    private final RecordSink recordSink;
+    private final StringSink keySink = new StringSink();
+    private final LongList tableStates = new LongList();
+    private final RecordingCursor recordingCursor = new RecordingCursor();
+    private final CachedCursor cachedCursor = new CachedCursor();
+
+    public ResultCacheRecordCursorFactory(
+            CairoEngine engine,
+            ResultCache cache,
+            RecordCursorFactory base,
+            CharSequence sql,
+            CharSequenceHashSet tableNames,
+            BytecodeAssembler asm
+    ) {
+        super(base.getMetadata());
+        this.engine = engine;
+        this.cache = cache;
+        this.base = base;
+        this.sql = Chars.toString(sql);
+        for (int i = 0, n = tableNames.size(); i < n; i++) {
+            this.tableNames.add(Chars.toString(tableNames.get(i)));
+        }
+        final RecordMetadata metadata = base.getMetadata();
+        final int columnCount = metadata.getColumnCount();
+        for (int i = 0; i < columnCount; i++) {
+            final int type = metadata.getColumnType(i);
+            // symbol keys are meaningless once base cursor is closed, chain keeps symbol values instead
+            chainTypes.add(ColumnType.isSymbol(type) ? ColumnType.STRING : type);
+        }
+        final EntityColumnFilter columnFilter = new EntityColumnFilter();
+        columnFilter.of(columnCount);
+        this.recordSink = RecordSinkFactory.getInstance(asm, metadata, columnFilter, true);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(recordingCursor);
+        Misc.free(cachedCursor);
+        Misc.free(base);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) throws SqlException {
+        if (!buildKey(executionContext.getBindVariableService())) {
+            return base.getCursor(executionContext);
+        }
+
+        readTableStates(executionContext.getCairoSecurityContext());
+        final ResultCache.Entry entry = cache.acquire(keySink);
+        if (entry != null) {
+            try {
+                if (entry.isValid(tableStates)) {
+                    cachedCursor.of(entry);
+                    return cachedCursor;
+                }
+                // tables have been modified since the entry was recorded
+                cache.invalidate(entry);
+            } finally {
+                cache.release(entry);
+            }
+        }
+
+        recordingCursor.of(base.getCursor(executionContext));
+        return recordingCursor;
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    private static boolean appendBindVariable(StringSink sink, Function function) {
+        final int type = function.getType();
+        sink.put(type).put(':');
+        switch (ColumnType.tagOf(type)) {
+            case ColumnType.BOOLEAN:
+                sink.put(function.getBool(null));
+                break;
+            case ColumnType.BYTE:
+                sink.put(function.getByte(null));
+                break;
+            case ColumnType.SHORT:
+                sink.put(function.getShort(null));
+                break;
+            case ColumnType.CHAR:
+                sink.put((int) function.getChar(null));
+                break;
+            case ColumnType.INT:
+                sink.put(function.getInt(null));
+                break;
+            case ColumnType.LONG:
+                sink.put(function.getLong(null));
+                break;
+            case ColumnType.DATE:
+                sink.put(function.getDate(null));
+                break;
+            case ColumnType.TIMESTAMP:
+                sink.put(function.getTimestamp(null));
+                break;
+            case ColumnType.FLOAT:
+                sink.put(Float.floatToIntBits(function.getFloat(null)));
+                break;
+            case ColumnType.DOUBLE:
+                sink.put(Double.doubleToLongBits(function.getDouble(null)));
+                break;
+            case ColumnType.STRING:
+                final CharSequence value = function.getStr(null);
+                if (value == null) {
+                    sink.put(TableUtils.NULL_LEN);
+                } else {
+                    sink.put(value.length()).put(':').put(value);
+                }
+                break;
+            case ColumnType.LONG256:
+                function.getLong256(null, sink);
+                break;
+            default:
+                return false;
+        }
+        sink.put('\u0000');
+        return true;
+    }
+
+    private boolean buildKey(BindVariableService bindVariableService) {
+        keySink.clear();
+        keySink.put(sql).put('\u0000');
+        for (int i = 0, n = bindVariableService.getIndexedVariableCount(); i < n; i++) {
+            final Function function = bindVariableService.getFunction(i);
+            if (function == null || !appendBindVariable(keySink, function)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readTableStates(CairoSecurityContext securityContext) {
+        tableStates.clear();
+        for (int i = 0, n = tableNames.size(); i < n; i++) {
+            try (TableReader reader = engine.getReader(securityContext, tableNames.getQuick(i))) {
+                tableStates.add(reader.getMetadata().getId());
+                tableStates.add(reader.getVersion());
+                tableStates.add(reader.getTxn());
+            }
+        }
+    }
+
+    private class RecordingCursor implements NoRandomAccessRecordCursor {
+        private RecordCursor baseCursor;
+        private RecordChain chain;
+        private long prevRecordOffset;
+        private long rowCount;
+
+        @Override
+        public void close() {
+            chain = Misc.free(chain);
+            baseCursor = Misc.free(baseCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return baseCursor.getRecord();
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            return baseCursor.getSymbolTable(columnIndex);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (baseCursor.hasNext()) {
+                if (chain != null) {
+                    prevRecordOffset = chain.put(baseCursor.getRecord(), prevRecordOffset);
+                    rowCount++;
+                    if (chain.getMemorySize() > cache.getMaxEntrySize()) {
+                        chain = Misc.free(chain);
+                    }
+                }
+                return true;
+            }
+
+            if (chain != null) {
+                cache.push(new ResultCache.Entry(Chars.toString(keySink), chain, rowCount, new LongList(tableStates)));
+                chain = null;
+            }
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return baseCursor.size();
+        }
+
+        @Override
+        public void toTop() {
+            // rows returned after rewind would be recorded twice
+            chain = Misc.free(chain);
+            baseCursor.toTop();
+        }
+
+        void of(RecordCursor baseCursor) {
+            this.baseCursor = baseCursor;
+            this.chain = new RecordChain(chainTypes, recordSink, cache.getPageSize(), Integer.MAX_VALUE);
+            this.prevRecordOffset = -1;
+            this.rowCount = 0;
+        }
+    }
+
+    /**
+     * Replays copy of the cached rows. Entry stays in the cache and can be read by other cursors meanwhile,
+     * while chain of the entry is not safe to iterate concurrently.
+     */
+    private class CachedCursor implements NoRandomAccessRecordCursor {
+        private RecordChain chain;
+        private long rowCount;
+
+        @Override
+        public void close() {
+            if (chain != null) {
+                chain.clear();
+            }
+        }
+
+        @Override
+        public Record getRecord() {
+            return chain.getRecord();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return chain.hasNext();
+        }
+
+        @Override
+        public long size() {
+            return rowCount;
+        }
+
+        @Override
+        public void toTop() {
+            chain.toTop();
+        }
+
+        void of(ResultCache.Entry entry) {
+            if (chain == null) {
+                chain = new RecordChain(chainTypes, recordSink, cache.getPageSize(), Integer.MAX_VALUE);
+            }
+            chain.copyOf(entry.getChain());
+            chain.toTop();
+            rowCount = entry.getRowCount();
+        }
+    }
+}
@@ -66,4 +66,9 @@ public class SymbolIndexRowCursorFactory implements FunctionBasedRowCursorFactor
     public Function getFunction() {
         return symbolFunction;
     }
+
+    @Override
+    public int getIndexKey() {
+        return symbolKey;
+    }
 }
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.BitmapIndexReader;
+import io.questdb.cairo.PostingIndexReader;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.sql.DataFrame;
+import io.questdb.cairo.sql.RowCursor;
+import io.questdb.cairo.sql.RowCursorFactory;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.griffin.SqlException;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.IntList;
+import io.questdb.std.ObjList;
+
+/**
+ * Rows of several symbol keys in ascending order. Partitions with posting index merge
+ * posting lists of all keys at once, other partitions merge per-key cursors by heap.
+ */
+public class SymbolIndexUnionRowCursorFactory implements RowCursorFactory {
+    private final int columnIndex;
+    private final ObjList<FunctionBasedRowCursorFactory> cursorFactories;
+    private final HeapRowCursorFactory heapCursorFactory;
+    private final IntList keys = new IntList();
+
+    public SymbolIndexUnionRowCursorFactory(int columnIndex, ObjList<FunctionBasedRowCursorFactory> cursorFactories) {
+        this.columnIndex = columnIndex;
+        this.cursorFactories = cursorFactories;
+        this.heapCursorFactory = new HeapRowCursorFactory(cursorFactories);
+    }
+
+    @Override
+    public RowCursor getCursor(DataFrame dataFrame) {
+        final BitmapIndexReader reader = dataFrame.getBitmapIndexReader(columnIndex, BitmapIndexReader.DIR_FORWARD);
+        if (reader instanceof PostingIndexReader) {
+            keys.clear();
+            for (int i = 0, n = cursorFactories.size(); i < n; i++) {
+                final int key = cursorFactories.getQuick(i).getIndexKey();
+                if (key != SymbolTable.VALUE_NOT_FOUND) {
+                    keys.add(key);
+                }
+            }
+            return ((PostingIndexReader) reader).getUnionCursor(keys, dataFrame.getRowLo(), dataFrame.getRowHi() - 1);
+        }
+        return heapCursorFactory.getCursor(dataFrame);
+    }
+
+    @Override
+    public boolean isEntity() {
+        return false;
+    }
+
+    @Override
+    public void prepareCursor(TableReader tableReader, SqlExecutionContext sqlExecutionContext) throws SqlException {
+        heapCursorFactory.prepareCursor(tableReader, sqlExecutionContext);
+    }
+}
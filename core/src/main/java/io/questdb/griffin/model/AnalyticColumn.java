@@ -30,9 +30,20 @@ import io.questdb.std.ObjectFactory;
 
 public final class AnalyticColumn extends QueryColumn {
     public final static ObjectFactory<AnalyticColumn> FACTORY = AnalyticColumn::new;
+    // frame clause is absent, function uses its default frame
+    public final static int FRAMING_DEFAULT = 0;
+    public final static int FRAMING_ROWS = 1;
+    public final static int FRAMING_RANGE = 2;
+    // frame bounds are relative to the current row, negative values precede it
+    public final static long UNBOUNDED_PRECEDING = Long.MIN_VALUE;
+    public final static long UNBOUNDED_FOLLOWING = Long.MAX_VALUE;
     private final ObjList<ExpressionNode> partitionBy = new ObjList<>(2);
     private final ObjList<ExpressionNode> orderBy = new ObjList<>(2);
     private final IntList orderByDirection = new IntList(2);
+    private int framingMode = FRAMING_DEFAULT;
+    private long rowsLo = UNBOUNDED_PRECEDING;
+    private long rowsHi = 0;
+    private int framePosition;
 
     private AnalyticColumn() {
     }
@@ -48,6 +59,18 @@ public final class AnalyticColumn extends QueryColumn {
         partitionBy.clear();
         orderBy.clear();
         orderByDirection.clear();
+        framingMode = FRAMING_DEFAULT;
+        rowsLo = UNBOUNDED_PRECEDING;
+        rowsHi = 0;
+        framePosition = 0;
+    }
+
+    public int getFramePosition() {
+        return framePosition;
+    }
+
+    public int getFramingMode() {
+        return framingMode;
     }
 
     public ObjList<ExpressionNode> getPartitionBy() {
@@ -62,6 +85,29 @@ public final class AnalyticColumn extends QueryColumn {
         return orderByDirection;
     }
 
+    /**
+     * @return lower bound of the frame, number of rows for ROWS frame or difference of order
+     * values for RANGE frame, {@link #UNBOUNDED_PRECEDING} when frame starts at partition start
+     */
+    public long getRowsLo() {
+        return rowsLo;
+    }
+
+    /**
+     * @return upper bound of the frame, 0 for current row, {@link #UNBOUNDED_FOLLOWING} when
+     * frame ends at partition end
+     */
+    public long getRowsHi() {
+        return rowsHi;
+    }
+
+    public void setFrame(int framingMode, long rowsLo, long rowsHi, int framePosition) {
+        this.framingMode = framingMode;
+        this.rowsLo = rowsLo;
+        this.rowsHi = rowsHi;
+        this.framePosition = framePosition;
+    }
+
     @Override
     public AnalyticColumn of(CharSequence alias, ExpressionNode ast) {
         return (AnalyticColumn) super.of(alias, ast);
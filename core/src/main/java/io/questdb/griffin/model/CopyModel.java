@@ -24,6 +24,7 @@
 
 package io.questdb.griffin.model;
 
+import io.questdb.cairo.PartitionBy;
 import io.questdb.std.Mutable;
 import io.questdb.std.ObjectFactory;
 import io.questdb.std.Sinkable;
@@ -31,12 +32,52 @@ import io.questdb.std.str.CharSink;
 
 public class CopyModel implements ExecutionModel, Mutable, Sinkable {
     public static final ObjectFactory<CopyModel> FACTORY = CopyModel::new;
+    // column delimiter is detected from data
+    public static final int FORMAT_NONE = 0;
+    // tab delimited text
+    public static final int FORMAT_TEXT = 1;
+    public static final int FORMAT_CSV = 2;
+    // PostgreSQL binary copy format
+    public static final int FORMAT_BINARY = 3;
     private ExpressionNode tableName;
     private ExpressionNode fileName;
+    private ExpressionNode partitionBy;
+    private ExpressionNode timestamp;
     private boolean header;
+    private int format = FORMAT_NONE;
+    private byte delimiter = -1;
 
     @Override
     public void clear() {
+        tableName = null;
+        fileName = null;
+        partitionBy = null;
+        timestamp = null;
+        header = false;
+        format = FORMAT_NONE;
+        delimiter = -1;
+    }
+
+    /**
+     * @return column delimiter set by the DELIMITER option, or by the FORMAT option when the former is absent,
+     * -1 when delimiter has to be detected from data
+     */
+    public byte getDelimiter() {
+        if (delimiter > 0) {
+            return delimiter;
+        }
+        switch (format) {
+            case FORMAT_TEXT:
+                return '\t';
+            case FORMAT_CSV:
+                return ',';
+            default:
+                return -1;
+        }
+    }
+
+    public void setDelimiter(byte delimiter) {
+        this.delimiter = delimiter;
     }
 
     public ExpressionNode getFileName() {
@@ -52,6 +93,22 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         return ExecutionModel.COPY;
     }
 
+    public int getFormat() {
+        return format;
+    }
+
+    public void setFormat(int format) {
+        this.format = format;
+    }
+
+    public int getPartitionBy() {
+        return partitionBy == null ? PartitionBy.NONE : PartitionBy.fromString(partitionBy.token);
+    }
+
+    public void setPartitionBy(ExpressionNode partitionBy) {
+        this.partitionBy = partitionBy;
+    }
+
     public ExpressionNode getTableName() {
         return tableName;
     }
@@ -60,6 +117,14 @@ public class CopyModel implements ExecutionModel, Mutable, Sinkable {
         this.tableName = tableName;
     }
 
+    public ExpressionNode getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(ExpressionNode timestamp) {
+        this.timestamp = timestamp;
+    }
+
     public boolean isHeader() {
         return header;
     }
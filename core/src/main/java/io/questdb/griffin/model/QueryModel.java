@@ -747,6 +747,20 @@ public class QueryModel implements Mutable, ExecutionModel, AliasTranslator, Sin
         return modelTypeName.get(selectModelType);
     }
 
+    private static void frameBoundToSink(CharSink sink, long bound) {
+        if (bound == AnalyticColumn.UNBOUNDED_PRECEDING) {
+            sink.put("unbounded preceding");
+        } else if (bound == AnalyticColumn.UNBOUNDED_FOLLOWING) {
+            sink.put("unbounded following");
+        } else if (bound == 0) {
+            sink.put("current row");
+        } else if (bound < 0) {
+            sink.put(-bound).put(" preceding");
+        } else {
+            sink.put(bound).put(" following");
+        }
+    }
+
     private void sinkColumns(CharSink sink, ObjList<QueryColumn> columns) {
         for (int i = 0, n = columns.size(); i < n; i++) {
             if (i > 0) {
@@ -794,6 +808,16 @@ public class QueryModel implements Mutable, ExecutionModel, AliasTranslator, Sin
                             }
                         }
                     }
+
+                    if (ac.getFramingMode() != AnalyticColumn.FRAMING_DEFAULT) {
+                        if (partitionBy.size() > 0 || orderBy.size() > 0) {
+                            sink.put(' ');
+                        }
+                        sink.put(ac.getFramingMode() == AnalyticColumn.FRAMING_ROWS ? "rows between " : "range between ");
+                        frameBoundToSink(sink, ac.getRowsLo());
+                        sink.put(" and ");
+                        frameBoundToSink(sink, ac.getRowsHi());
+                    }
                     sink.put(')');
                 }
             } else {
@@ -54,6 +54,16 @@ public class BytecodeAssembler {
     private static final int lstore_1 = 0x40;
     private static final int lstore_2 = 0x41;
     private static final int lstore_3 = 0x42;
+    private static final int dload = 0x18;
+    private static final int dload_0 = 0x26;
+    private static final int dload_1 = 0x27;
+    private static final int dload_2 = 0x28;
+    private static final int dload_3 = 0x29;
+    private static final int dstore = 0x39;
+    private static final int dstore_0 = 0x47;
+    private static final int dstore_1 = 0x48;
+    private static final int dstore_2 = 0x49;
+    private static final int dstore_3 = 0x4a;
     private static final int iinc = 0x84;
     private static final int lload = 0x16;
     private static final int lload_0 = 0x1e;
@@ -153,6 +163,14 @@ public class BytecodeAssembler {
         putShort(0);
     }
 
+    public void dload(int value) {
+        optimisedIO(dload_0, dload_1, dload_2, dload_3, dload, value);
+    }
+
+    public void dstore(int value) {
+        optimisedIO(dstore_0, dstore_1, dstore_2, dstore_3, dstore, value);
+    }
+
     public void dump(String path) {
         try (FileOutputStream fos = new FileOutputStream(path)) {
             int p = buf.position();
@@ -270,6 +288,14 @@ public class BytecodeAssembler {
         return genericGoto(0xa0);
     }
 
+    public int ifeq() {
+        return genericGoto(0x99);
+    }
+
+    public int ifge() {
+        return genericGoto(0x9c);
+    }
+
     public int ifne() {
         return genericGoto(0x9a);
     }
@@ -345,6 +371,10 @@ public class BytecodeAssembler {
         putShort(0x88);
     }
 
+    public void ladd() {
+        putByte(0x61);
+    }
+
     public void lcmp() {
         putByte(0x94);
     }
@@ -353,6 +383,10 @@ public class BytecodeAssembler {
         putByte(0x09);
     }
 
+    public void lconst_1() {
+        putByte(0x0a);
+    }
+
     public void ldc(int index) {
         putByte(0x12);
         putByte(index);
@@ -382,10 +416,18 @@ public class BytecodeAssembler {
         putByte(0xad);
     }
 
+    public void lshl() {
+        putByte(0x79);
+    }
+
     public void lstore(int value) {
         optimisedIO(lstore_0, lstore_1, lstore_2, lstore_3, lstore, value);
     }
 
+    public void lsub() {
+        putByte(0x65);
+    }
+
     public void methodCount(int count) {
         putShort(count);
     }
@@ -525,6 +567,10 @@ public class BytecodeAssembler {
         buf.put((byte) b);
     }
 
+    public void putITEM_Double() {
+        putByte(0x03);
+    }
+
     public void putITEM_Integer() {
         putByte(0x01);
     }
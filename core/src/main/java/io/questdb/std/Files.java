@@ -28,8 +28,10 @@ import io.questdb.std.str.LPSZ;
 import io.questdb.std.str.Path;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.concurrent.atomic.AtomicLong;
 
 public final class Files {
@@ -123,6 +125,23 @@ public final class Files {
         return getLastModified(lpsz.address());
     }
 
+    /**
+     * Creates hard link to existing file. Native library does not expose link() yet, so link
+     * is created via java.nio.
+     *
+     * @param src      existing file
+     * @param hardLink path of the link to create
+     * @return 0 on success, -1 when link could not be created, for example when paths are on different file systems
+     */
+    public static int hardLink(LPSZ src, LPSZ hardLink) {
+        try {
+            java.nio.file.Files.createLink(Paths.get(Chars.toString(hardLink)), Paths.get(Chars.toString(src)));
+            return 0;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return -1;
+        }
+    }
+
     public static long getOpenFileCount() {
         return OPEN_FILE_COUNT.get();
     }
@@ -64,6 +64,8 @@ public interface FilesFacade {
 
     long getPageSize();
 
+    int hardLink(LPSZ src, LPSZ hardLink);
+
     boolean isRestrictedFileSystem();
 
     void iterateDir(LPSZ path, FindVisitor func);
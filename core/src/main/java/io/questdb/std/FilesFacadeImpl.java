@@ -135,6 +135,11 @@ public class FilesFacadeImpl implements FilesFacade {
         return Os.type == Os.WINDOWS;
     }
 
+    @Override
+    public int hardLink(LPSZ src, LPSZ hardLink) {
+        return Files.hardLink(src, hardLink);
+    }
+
     @Override
     public void iterateDir(LPSZ path, FindVisitor func) {
         long p = findFirst(path);
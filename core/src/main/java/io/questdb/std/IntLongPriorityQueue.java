@@ -60,6 +60,10 @@ public class IntLongPriorityQueue {
         return src.getQuick(size - 1);
     }
 
+    public long peekValue() {
+        return buf.getQuick(0);
+    }
+
     public long popAndReplace(int index, long value) {
         long v = buf.getQuick(0);
         int p = binSearch(value);
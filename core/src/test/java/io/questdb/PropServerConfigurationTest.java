@@ -118,6 +118,7 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(64, configuration.getCairoConfiguration().getTextConfiguration().getTextLexerStringPoolCapacity());
         Assert.assertEquals(64, configuration.getCairoConfiguration().getTextConfiguration().getTimestampAdapterPoolCapacity());
         Assert.assertEquals(4096, configuration.getCairoConfiguration().getTextConfiguration().getUtf8SinkSize());
+        Assert.assertEquals(64 * 1024 * 1024, configuration.getCairoConfiguration().getTextConfiguration().getParallelImportChunkSize());
         Assert.assertEquals(0, configuration.getHttpServerConfiguration().getDispatcherConfiguration().getBindIPv4Address());
         Assert.assertEquals(9000, configuration.getHttpServerConfiguration().getDispatcherConfiguration().getBindPort());
 
@@ -170,6 +171,25 @@ public class PropServerConfigurationTest {
         Assert.assertEquals(Integer.MAX_VALUE, configuration.getCairoConfiguration().getSqlSortLightValueMaxPages());
         Assert.assertEquals(16 * 1024 * 1024, configuration.getCairoConfiguration().getSqlHashJoinValuePageSize());
         Assert.assertEquals(Integer.MAX_VALUE, configuration.getCairoConfiguration().getSqlHashJoinValueMaxPages());
+        Assert.assertFalse(configuration.getCairoConfiguration().isSqlResultCacheEnabled());
+        Assert.assertEquals(64 * 1024 * 1024, configuration.getCairoConfiguration().getSqlResultCacheSize());
+        Assert.assertEquals(4 * 1024 * 1024, configuration.getCairoConfiguration().getSqlResultCacheMaxEntrySize());
+        Assert.assertEquals(64 * 1024, configuration.getCairoConfiguration().getSqlResultCachePageSize());
+        Assert.assertFalse(configuration.getCairoConfiguration().isPartitionStatsEnabled());
+        Assert.assertEquals(64 * 1024, configuration.getCairoConfiguration().getPartitionStatsBlockSize());
+        Assert.assertFalse(configuration.getCairoConfiguration().isPartitionBloomFilterEnabled());
+        Assert.assertEquals(10, configuration.getCairoConfiguration().getPartitionBloomFilterBitsPerRow());
+        Assert.assertEquals(0, configuration.getCairoConfiguration().getPartitionCompressionAge());
+        Assert.assertEquals(1024 * 1024, configuration.getCairoConfiguration().getPartitionCompressionBlockSize());
+        Assert.assertEquals(256 * 1024 * 1024L, configuration.getCairoConfiguration().getPartitionCompressionCacheSize());
+        Assert.assertEquals(64, configuration.getCairoConfiguration().getPartitionCompressionQueueCapacity());
+        Assert.assertFalse(configuration.getCairoConfiguration().isIndexCompressionEnabled());
+        Assert.assertFalse(configuration.getCairoConfiguration().isWalEnabled());
+        Assert.assertEquals(200_000, configuration.getCairoConfiguration().getWalSegmentRolloverRowCount());
+        Assert.assertEquals(3, configuration.getCairoConfiguration().getWalApplyRetryCount());
+        Assert.assertFalse(configuration.getCairoConfiguration().isReaderPoolRefreshEnabled());
+        Assert.assertEquals(10, configuration.getCairoConfiguration().getReaderPoolRefreshInterval());
+        Assert.assertEquals(64, configuration.getCairoConfiguration().getTextImportQueueCapacity());
         Assert.assertEquals(1000, configuration.getCairoConfiguration().getSqlLatestByRowCount());
         Assert.assertEquals(1024 * 1024, configuration.getCairoConfiguration().getSqlHashJoinLightValuePageSize());
         Assert.assertEquals(Integer.MAX_VALUE, configuration.getCairoConfiguration().getSqlHashJoinLightValueMaxPages());
@@ -470,6 +490,7 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(128, configuration.getCairoConfiguration().getTextConfiguration().getTextLexerStringPoolCapacity());
             Assert.assertEquals(512, configuration.getCairoConfiguration().getTextConfiguration().getTimestampAdapterPoolCapacity());
             Assert.assertEquals(8192, configuration.getCairoConfiguration().getTextConfiguration().getUtf8SinkSize());
+            Assert.assertEquals(16 * 1024 * 1024, configuration.getCairoConfiguration().getTextConfiguration().getParallelImportChunkSize());
             Assert.assertEquals(168101918, configuration.getHttpServerConfiguration().getDispatcherConfiguration().getBindIPv4Address());
             Assert.assertEquals(9900, configuration.getHttpServerConfiguration().getDispatcherConfiguration().getBindPort());
             Assert.assertEquals(2_000, configuration.getHttpServerConfiguration().getJsonQueryProcessorConfiguration().getConnectionCheckFrequency());
@@ -515,6 +536,25 @@ public class PropServerConfigurationTest {
             Assert.assertEquals(1027, configuration.getCairoConfiguration().getSqlSortLightValueMaxPages());
             Assert.assertEquals(8 * 1024 * 1024, configuration.getCairoConfiguration().getSqlHashJoinValuePageSize());
             Assert.assertEquals(1024, configuration.getCairoConfiguration().getSqlHashJoinValueMaxPages());
+            Assert.assertTrue(configuration.getCairoConfiguration().isSqlResultCacheEnabled());
+            Assert.assertEquals(32 * 1024 * 1024, configuration.getCairoConfiguration().getSqlResultCacheSize());
+            Assert.assertEquals(1024 * 1024, configuration.getCairoConfiguration().getSqlResultCacheMaxEntrySize());
+            Assert.assertEquals(16 * 1024, configuration.getCairoConfiguration().getSqlResultCachePageSize());
+            Assert.assertTrue(configuration.getCairoConfiguration().isPartitionStatsEnabled());
+            Assert.assertEquals(1024, configuration.getCairoConfiguration().getPartitionStatsBlockSize());
+            Assert.assertTrue(configuration.getCairoConfiguration().isPartitionBloomFilterEnabled());
+            Assert.assertEquals(16, configuration.getCairoConfiguration().getPartitionBloomFilterBitsPerRow());
+            Assert.assertEquals(86_400_000_000L, configuration.getCairoConfiguration().getPartitionCompressionAge());
+            Assert.assertEquals(128 * 1024, configuration.getCairoConfiguration().getPartitionCompressionBlockSize());
+            Assert.assertEquals(16 * 1024 * 1024L, configuration.getCairoConfiguration().getPartitionCompressionCacheSize());
+            Assert.assertEquals(32, configuration.getCairoConfiguration().getPartitionCompressionQueueCapacity());
+            Assert.assertTrue(configuration.getCairoConfiguration().isIndexCompressionEnabled());
+            Assert.assertTrue(configuration.getCairoConfiguration().isWalEnabled());
+            Assert.assertEquals(1000, configuration.getCairoConfiguration().getWalSegmentRolloverRowCount());
+            Assert.assertEquals(5, configuration.getCairoConfiguration().getWalApplyRetryCount());
+            Assert.assertTrue(configuration.getCairoConfiguration().isReaderPoolRefreshEnabled());
+            Assert.assertEquals(50, configuration.getCairoConfiguration().getReaderPoolRefreshInterval());
+            Assert.assertEquals(32, configuration.getCairoConfiguration().getTextImportQueueCapacity());
             Assert.assertEquals(10000, configuration.getCairoConfiguration().getSqlLatestByRowCount());
             Assert.assertEquals(2 * 1024 * 1024, configuration.getCairoConfiguration().getSqlHashJoinLightValuePageSize());
             Assert.assertEquals(1025, configuration.getCairoConfiguration().getSqlHashJoinLightValueMaxPages());
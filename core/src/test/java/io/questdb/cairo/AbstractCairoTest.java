@@ -64,6 +64,12 @@ public class AbstractCairoTest {
     protected static int capacity = -1;
     protected static int sampleByIndexSearchPageSize;
     protected static CharSequence defaultMapType;
+    protected static long spillMemoryLimit = -1;
+    protected static long spillMaxSize = -1;
+    protected static long partitionCompressionAge = -1;
+    protected static int partitionCompressionBlockSize = -1;
+    protected static long partitionCompressionCacheSize = -1;
+    protected static Boolean indexCompressionEnabled = null;
 
     @Rule
     public TestName testName = new TestName();
@@ -127,6 +133,36 @@ public class AbstractCairoTest {
                 }
                 return defaultMapType;
             }
+
+            @Override
+            public long getSqlSpillMemoryLimit() {
+                return spillMemoryLimit < 0 ? super.getSqlSpillMemoryLimit() : spillMemoryLimit;
+            }
+
+            @Override
+            public long getSqlSpillMaxSize() {
+                return spillMaxSize < 0 ? super.getSqlSpillMaxSize() : spillMaxSize;
+            }
+
+            @Override
+            public long getPartitionCompressionAge() {
+                return partitionCompressionAge < 0 ? super.getPartitionCompressionAge() : partitionCompressionAge;
+            }
+
+            @Override
+            public int getPartitionCompressionBlockSize() {
+                return partitionCompressionBlockSize < 0 ? super.getPartitionCompressionBlockSize() : partitionCompressionBlockSize;
+            }
+
+            @Override
+            public long getPartitionCompressionCacheSize() {
+                return partitionCompressionCacheSize < 0 ? super.getPartitionCompressionCacheSize() : partitionCompressionCacheSize;
+            }
+
+            @Override
+            public boolean isIndexCompressionEnabled() {
+                return indexCompressionEnabled == null ? super.isIndexCompressionEnabled() : indexCompressionEnabled;
+            }
         };
         engine = new CairoEngine(configuration);
         messageBus = engine.getMessageBus();
@@ -156,6 +192,12 @@ public class AbstractCairoTest {
         currentMicros = -1;
         sampleByIndexSearchPageSize = -1;
         defaultMapType = null;
+        spillMemoryLimit = -1;
+        spillMaxSize = -1;
+        partitionCompressionAge = -1;
+        partitionCompressionBlockSize = -1;
+        partitionCompressionCacheSize = -1;
+        indexCompressionEnabled = null;
     }
 
     protected static void assertMemoryLeak(TestUtils.LeakProneCode code) throws Exception {
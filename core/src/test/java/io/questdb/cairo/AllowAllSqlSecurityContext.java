@@ -107,7 +107,7 @@ public final class AllowAllSqlSecurityContext {
         }
 
         @Override
-        public void configureAnalyticContext(@Nullable VirtualRecord partitionByRecord, @Nullable RecordSink partitionBySink, @Nullable ColumnTypes keyTypes, boolean isOrdered, boolean baseSupportsRandomAccess) {
+        public void configureAnalyticContext(@Nullable VirtualRecord partitionByRecord, @Nullable RecordSink partitionBySink, @Nullable ColumnTypes keyTypes, boolean isOrdered, boolean baseSupportsRandomAccess, int framingMode, long rowsLo, long rowsHi, int framePosition, int orderByIndex, int orderByDirection, int orderByType) {
 
         }
 
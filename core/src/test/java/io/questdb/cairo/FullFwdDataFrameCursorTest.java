@@ -2594,6 +2594,81 @@ public class FullFwdDataFrameCursorTest extends AbstractCairoTest {
             return null;
         }
 
+        @Override
+        public Sequence getParallelFilterPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<ParallelFilterTask> getParallelFilterQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getParallelFilterSubSeq() {
+            return null;
+        }
+
+        @Override
+        public Sequence getParallelGroupByPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<ParallelGroupByTask> getParallelGroupByQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getParallelGroupBySubSeq() {
+            return null;
+        }
+
+        @Override
+        public Sequence getParallelHashJoinPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<ParallelHashJoinTask> getParallelHashJoinQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getParallelHashJoinSubSeq() {
+            return null;
+        }
+
+        @Override
+        public Sequence getPartitionCompressionPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<PartitionCompressionTask> getPartitionCompressionQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getPartitionCompressionSubSeq() {
+            return null;
+        }
+
+        @Override
+        public Sequence getTextImportPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<TextImportTask> getTextImportQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getTextImportSubSeq() {
+            return null;
+        }
+
         @Override
         public Sequence getLatestByPubSeq() {
             return null;
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.RowCursor;
+import io.questdb.std.*;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class PostingIndexTest extends AbstractCairoTest {
+    private static final int FIRST_ROW = 10;
+    private Path path;
+    private Path other;
+    private int plen;
+
+    @Override
+    @Before
+    public void setUp() {
+        path = new Path().of(configuration.getRoot());
+        // scratch path, compression must not rely on its content
+        other = new Path();
+        plen = path.length();
+        super.setUp();
+    }
+
+    @Override
+    @After
+    public void tearDown() {
+        Misc.free(path);
+        Misc.free(other);
+        super.tearDown();
+    }
+
+    @Test
+    public void testCompressAndDecompress() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final ObjList<LongList> lists = createIndex(new Rnd(), 16, 50_000);
+            final FilesFacade ff = configuration.getFilesFacade();
+            final long rawSize = ff.length(BitmapIndexUtils.keyFileName(path.trimTo(plen), "x"))
+                    + ff.length(BitmapIndexUtils.valueFileName(path.trimTo(plen), "x"));
+
+            Assert.assertTrue(PostingIndex.compressIndex(configuration, path, other, plen, "x"));
+            Assert.assertFalse(ff.exists(BitmapIndexUtils.keyFileName(path.trimTo(plen), "x")));
+            Assert.assertFalse(ff.exists(BitmapIndexUtils.valueFileName(path.trimTo(plen), "x")));
+            Assert.assertTrue(PostingIndex.isCompressed(ff, path, plen, "x"));
+            Assert.assertFalse(ff.exists(path.trimTo(plen).concat("x.pi.tmp").$()));
+            Assert.assertTrue(ff.length(BitmapIndexUtils.postingFileName(path.trimTo(plen), "x")) * 4 < rawSize);
+            // second call is no-op
+            Assert.assertFalse(PostingIndex.compressIndex(configuration, path, other, plen, "x"));
+
+            try (PostingIndexReader reader = new PostingIndexReader(configuration, path.trimTo(plen), "x", 0, -1, BitmapIndexReader.DIR_FORWARD)) {
+                Assert.assertEquals(lists.size(), reader.getKeyCount());
+                for (int key = 0, n = lists.size(); key < n; key++) {
+                    assertForward(lists.getQuick(key), reader.getCursor(true, key, 0, Long.MAX_VALUE), 0, Long.MAX_VALUE);
+                }
+            }
+
+            Assert.assertTrue(PostingIndex.decompressIndex(configuration, path, other, plen, "x"));
+            Assert.assertFalse(PostingIndex.isCompressed(ff, path, plen, "x"));
+            try (BitmapIndexFwdReader reader = new BitmapIndexFwdReader(configuration, path.trimTo(plen), "x", 0, -1)) {
+                Assert.assertEquals(lastValue(lists), reader.getMaxValue());
+                Assert.assertEquals(3, reader.getValueBlockCapacity());
+                for (int key = 0, n = lists.size(); key < n; key++) {
+                    assertForward(lists.getQuick(key), reader.getCursor(true, key, 0, Long.MAX_VALUE), 0, Long.MAX_VALUE);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCursorBounds() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final Rnd rnd = new Rnd();
+            final ObjList<LongList> lists = createIndex(rnd, 8, 20_000);
+            Assert.assertTrue(PostingIndex.compressIndex(configuration, path, other, plen, "x"));
+            final long hi = lastValue(lists);
+
+            try (
+                    PostingIndexReader fwdReader = new PostingIndexReader(configuration, path.trimTo(plen), "x", 0, -1, BitmapIndexReader.DIR_FORWARD);
+                    PostingIndexReader bwdReader = new PostingIndexReader(configuration, path.trimTo(plen), "x", 0, -1, BitmapIndexReader.DIR_BACKWARD)
+            ) {
+                for (int i = 0; i < 1000; i++) {
+                    final int key = rnd.nextPositiveInt() % lists.size();
+                    long minValue = rnd.nextPositiveLong() % hi;
+                    long maxValue = rnd.nextPositiveLong() % hi;
+                    if (minValue > maxValue) {
+                        final long tmp = minValue;
+                        minValue = maxValue;
+                        maxValue = tmp;
+                    }
+                    assertForward(lists.getQuick(key), fwdReader.getCursor(i % 2 == 0, key, minValue, maxValue), minValue, maxValue);
+                    assertBackward(lists.getQuick(key), bwdReader.getCursor(i % 2 == 0, key, minValue, maxValue), minValue, maxValue);
+                    assertFrames(lists.getQuick(key), fwdReader.getFrameCursor(key, minValue, maxValue), minValue, maxValue);
+                }
+                Assert.assertFalse(fwdReader.getCursor(true, lists.size(), 0, Long.MAX_VALUE).hasNext());
+            }
+        });
+    }
+
+    @Test
+    public void testInflate() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final ObjList<LongList> lists = createIndex(new Rnd(), 5, 10_000);
+            Assert.assertTrue(PostingIndex.compressIndex(configuration, path, other, plen, "x"));
+
+            try (PostingIndexReader reader = new PostingIndexReader(configuration, path.trimTo(plen), "x", 0, -1, BitmapIndexReader.DIR_BACKWARD)) {
+                final long keyBase = reader.getKeyBaseAddress();
+                final long valueBase = reader.getValueBaseAddress();
+                final int blockValueCount = reader.getValueBlockCapacity() + 1;
+                Assert.assertEquals(lists.size(), Unsafe.getUnsafe().getInt(keyBase + BitmapIndexUtils.KEY_RESERVED_OFFSET_KEY_COUNT));
+                Assert.assertEquals(BitmapIndexUtils.KEY_FILE_RESERVED + lists.size() * BitmapIndexUtils.KEY_ENTRY_SIZE, reader.getKeyMemorySize());
+
+                // walk value blocks the way native code does
+                for (int key = 0, n = lists.size(); key < n; key++) {
+                    final LongList expected = lists.getQuick(key);
+                    final long entry = keyBase + BitmapIndexUtils.getKeyEntryOffset(key);
+                    final long valueCount = Unsafe.getUnsafe().getLong(entry + BitmapIndexUtils.KEY_ENTRY_OFFSET_VALUE_COUNT);
+                    Assert.assertEquals(expected.size(), valueCount);
+                    Assert.assertEquals(valueCount, Unsafe.getUnsafe().getLong(entry + BitmapIndexUtils.KEY_ENTRY_OFFSET_COUNT_CHECK));
+                    long block = Unsafe.getUnsafe().getLong(entry + BitmapIndexUtils.KEY_ENTRY_OFFSET_LAST_VALUE_BLOCK_OFFSET);
+                    for (long i = valueCount - 1; i > -1; i--) {
+                        final long cell = i % blockValueCount;
+                        Assert.assertEquals(expected.getQuick((int) i), Unsafe.getUnsafe().getLong(valueBase + block + cell * 8));
+                        if (cell == 0 && i > 0) {
+                            block = Unsafe.getUnsafe().getLong(valueBase + block + blockValueCount * 8L);
+                        }
+                    }
+                    Assert.assertEquals(block, Unsafe.getUnsafe().getLong(entry + BitmapIndexUtils.KEY_ENTRY_OFFSET_FIRST_VALUE_BLOCK_OFFSET));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testUnIndexedNulls() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final ObjList<LongList> lists = createIndex(new Rnd(), 3, 1000);
+            Assert.assertTrue(PostingIndex.compressIndex(configuration, path, other, plen, "x"));
+
+            final LongList expected = new LongList();
+            for (int i = 0; i < FIRST_ROW; i++) {
+                expected.add(i);
+            }
+            expected.add(lists.getQuick(0));
+
+            try (
+                    PostingIndexReader fwdReader = new PostingIndexReader(configuration, path.trimTo(plen), "x", FIRST_ROW, -1, BitmapIndexReader.DIR_FORWARD);
+                    PostingIndexReader bwdReader = new PostingIndexReader(configuration, path.trimTo(plen), "x", FIRST_ROW, -1, BitmapIndexReader.DIR_BACKWARD)
+            ) {
+                Assert.assertEquals(4, fwdReader.getKeyCount());
+                assertForward(expected, fwdReader.getCursor(true, 0, 0, Long.MAX_VALUE), 0, Long.MAX_VALUE);
+                assertBackward(expected, bwdReader.getCursor(true, 0, 0, Long.MAX_VALUE), 0, Long.MAX_VALUE);
+                assertForward(expected, fwdReader.getCursor(true, 0, 3, 7), 3, 7);
+                assertBackward(expected, bwdReader.getCursor(true, 0, 5, 100), 5, 100);
+                // other keys have no nulls
+                assertForward(lists.getQuick(1), fwdReader.getCursor(true, 1, 0, Long.MAX_VALUE), 0, Long.MAX_VALUE);
+            }
+        });
+    }
+
+    @Test
+    public void testUnionCursor() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final Rnd rnd = new Rnd();
+            final ObjList<LongList> lists = createIndex(rnd, 8, 300_000);
+            Assert.assertTrue(PostingIndex.compressIndex(configuration, path, other, plen, "x"));
+            final long hi = lastValue(lists);
+
+            final IntList keys = new IntList();
+            final LongList expected = new LongList();
+            try (PostingIndexReader reader = new PostingIndexReader(configuration, path.trimTo(plen), "x", FIRST_ROW, -1, BitmapIndexReader.DIR_FORWARD)) {
+                for (int i = 0; i < 200; i++) {
+                    keys.clear();
+                    expected.clear();
+                    final boolean[] selected = new boolean[lists.size()];
+                    for (int j = 0, n = 1 + rnd.nextInt(4); j < n; j++) {
+                        // out of range keys and repeated keys are allowed
+                        final int key = rnd.nextPositiveInt() % (lists.size() + 1);
+                        keys.add(key);
+                        if (key < lists.size()) {
+                            selected[key] = true;
+                        }
+                    }
+                    long minValue = i % 4 == 0 ? 0 : rnd.nextPositiveLong() % hi;
+                    long maxValue = i % 4 == 0 ? Long.MAX_VALUE : rnd.nextPositiveLong() % hi;
+                    if (minValue > maxValue) {
+                        final long tmp = minValue;
+                        minValue = maxValue;
+                        maxValue = tmp;
+                    }
+                    if (selected[0]) {
+                        for (int row = 0; row < FIRST_ROW; row++) {
+                            expected.add(row);
+                        }
+                    }
+                    for (int key = 0; key < lists.size(); key++) {
+                        if (selected[key]) {
+                            expected.add(lists.getQuick(key));
+                        }
+                    }
+                    final long[] rows = new long[expected.size()];
+                    for (int j = 0; j < rows.length; j++) {
+                        rows[j] = expected.getQuick(j);
+                    }
+                    Arrays.sort(rows);
+                    expected.clear();
+                    for (long row : rows) {
+                        expected.add(row);
+                    }
+                    assertForward(expected, reader.getUnionCursor(keys, minValue, maxValue), minValue, maxValue);
+                }
+            }
+        });
+    }
+
+    private static void assertBackward(LongList expected, RowCursor cursor, long minValue, long maxValue) {
+        for (int i = expected.size() - 1; i > -1; i--) {
+            final long value = expected.getQuick(i);
+            if (value >= minValue && value <= maxValue) {
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(value, cursor.next());
+            }
+        }
+        Assert.assertFalse(cursor.hasNext());
+    }
+
+    private static void assertForward(LongList expected, RowCursor cursor, long minValue, long maxValue) {
+        for (int i = 0, n = expected.size(); i < n; i++) {
+            final long value = expected.getQuick(i);
+            if (value >= minValue && value <= maxValue) {
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(value, cursor.next());
+            }
+        }
+        Assert.assertFalse(cursor.hasNext());
+    }
+
+    private static void assertFrames(LongList expected, IndexFrameCursor cursor, long minValue, long maxValue) {
+        int i = 0;
+        while (i < expected.size() && expected.getQuick(i) < minValue) {
+            i++;
+        }
+        IndexFrame frame;
+        while ((frame = cursor.getNext()).getSize() > 0) {
+            for (long p = 0; p < frame.getSize(); p++, i++) {
+                Assert.assertEquals(expected.getQuick(i), Unsafe.getUnsafe().getLong(frame.getAddress() + p * 8));
+            }
+        }
+        Assert.assertTrue(i == expected.size() || expected.getQuick(i) > maxValue);
+    }
+
+    private static long lastValue(ObjList<LongList> lists) {
+        long max = -1;
+        for (int i = 0, n = lists.size(); i < n; i++) {
+            final LongList list = lists.getQuick(i);
+            if (list.size() > 0) {
+                max = Math.max(max, list.getLast());
+            }
+        }
+        return max;
+    }
+
+    private ObjList<LongList> createIndex(Rnd rnd, int keyCount, int rowCount) {
+        final ObjList<LongList> lists = new ObjList<>();
+        for (int i = 0; i < keyCount; i++) {
+            lists.add(new LongList());
+        }
+        BitmapIndexTest.create(configuration, path.trimTo(plen), "x", 4);
+        try (BitmapIndexWriter writer = new BitmapIndexWriter(configuration, path.trimTo(plen), "x")) {
+            long row = FIRST_ROW;
+            int bigGaps = 0;
+            for (int i = 0; i < rowCount; i++) {
+                // keys are skewed and some gaps are wide to exercise all bit widths
+                final int key = Math.min(keyCount - 1, Numbers.msb(rnd.nextPositiveInt() | 1) % keyCount);
+                writer.add(key, row);
+                lists.getQuick(key).add(row);
+                if (bigGaps < 4 && rnd.nextInt(rowCount / 2) == 0) {
+                    row += 1L << (56 + bigGaps++);
+                } else {
+                    row += 1 + rnd.nextInt(3);
+                }
+            }
+            writer.setMaxValue(lastValue(lists));
+        }
+        return lists;
+    }
+}
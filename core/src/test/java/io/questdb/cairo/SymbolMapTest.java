@@ -29,13 +29,18 @@ import io.questdb.cairo.sql.SymbolTable;
 import io.questdb.cairo.vm.Vm;
 import io.questdb.cairo.vm.api.MemoryCMARW;
 import io.questdb.std.Chars;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
 import io.questdb.std.ObjList;
 import io.questdb.std.Rnd;
+import io.questdb.std.str.LPSZ;
 import io.questdb.std.str.Path;
 import io.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class SymbolMapTest extends AbstractCairoTest {
     private static final TransientSymbolCountChangeHandler TRANSIENT_SYMBOL_COUNT_CHANGE_HANDLER = (symCount) -> {
     };
@@ -106,6 +111,79 @@ public class SymbolMapTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testGrowCapacity() throws Exception {
+        testGrowCapacity(true);
+    }
+
+    @Test
+    public void testGrowCapacityUncached() throws Exception {
+        testGrowCapacity(false);
+    }
+
+    @Test
+    public void testGrowCapacityFails() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int capacity = 16;
+            AtomicInteger rebuildCount = new AtomicInteger();
+            FilesFacade ff = new FilesFacadeImpl() {
+                @Override
+                public boolean touch(LPSZ path) {
+                    if (Chars.endsWith(path, "x.1.v")) {
+                        rebuildCount.incrementAndGet();
+                        return false;
+                    }
+                    return super.touch(path);
+                }
+            };
+            CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+            };
+            Rnd rnd = new Rnd();
+            try (Path path = new Path().of(configuration.getRoot())) {
+                create(path, "x", capacity, false);
+                try (SymbolMapWriter writer = new SymbolMapWriter(configuration, path, "x", 0, TRANSIENT_SYMBOL_COUNT_CHANGE_HANDLER)) {
+                    for (int i = 0; i < capacity; i++) {
+                        Assert.assertEquals(i, writer.put(rnd.nextChars(10)));
+                    }
+
+                    // failed rebuild does not fail the put, symbol is stored and capacity is kept
+                    CharSequence cs = rnd.nextChars(10);
+                    Assert.assertEquals(capacity, writer.put(cs));
+                    Assert.assertEquals(1, rebuildCount.get());
+                    Assert.assertEquals(capacity, writer.getSymbolCapacity());
+                    Assert.assertEquals(0, writer.getIndexVersion());
+                    assertIndexFiles(path, "x.1", false);
+                    assertIndexFiles(path, "x", true);
+
+                    // symbol stored before failed rebuild is still found via current index
+                    Assert.assertEquals(capacity, writer.put(cs));
+
+                    // rebuild is not retried on every new symbol, only once symbol count doubles
+                    final int symbolCount = 2 * (capacity + 1);
+                    for (int i = capacity + 1; i < symbolCount - 1; i++) {
+                        Assert.assertEquals(i, writer.put(rnd.nextChars(10)));
+                    }
+                    Assert.assertEquals(1, rebuildCount.get());
+                    Assert.assertEquals(symbolCount - 1, writer.put(rnd.nextChars(10)));
+                    Assert.assertEquals(2, rebuildCount.get());
+                    Assert.assertEquals(capacity, writer.getSymbolCapacity());
+
+                    try (SymbolMapReaderImpl reader = new SymbolMapReaderImpl(configuration, path, "x", symbolCount)) {
+                        Assert.assertEquals(capacity, reader.getSymbolCapacity());
+                        rnd.reset();
+                        for (int i = 0; i < symbolCount; i++) {
+                            Assert.assertEquals(i, reader.keyOf(rnd.nextChars(10)));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
     @Test
     public void testLookupPerformance() throws Exception {
         TestUtils.assertMemoryLeak(() -> {
@@ -330,6 +408,75 @@ public class SymbolMapTest extends AbstractCairoTest {
         });
     }
 
+    private void assertIndexFiles(Path path, CharSequence indexName, boolean exist) {
+        final int plen = path.length();
+        Assert.assertEquals(exist, FilesFacadeImpl.INSTANCE.exists(BitmapIndexUtils.keyFileName(path, indexName)));
+        Assert.assertEquals(exist, FilesFacadeImpl.INSTANCE.exists(BitmapIndexUtils.valueFileName(path.trimTo(plen), indexName)));
+        path.trimTo(plen);
+    }
+
+    private void testGrowCapacity(boolean useCache) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int capacity = 128;
+            int N = 5000;
+            Rnd rnd = new Rnd();
+            try (Path path = new Path().of(configuration.getRoot())) {
+                create(path, "x", capacity, useCache);
+                try (SymbolMapWriter writer = new SymbolMapWriter(configuration, path, "x", 0, TRANSIENT_SYMBOL_COUNT_CHANGE_HANDLER)) {
+                    for (int i = 0; i < capacity; i++) {
+                        Assert.assertEquals(i, writer.put(rnd.nextChars(10)));
+                    }
+
+                    try (SymbolMapReaderImpl reader = new SymbolMapReaderImpl(configuration, path, "x", capacity)) {
+                        Assert.assertEquals(capacity, reader.getSymbolCapacity());
+
+                        // go well beyond declared capacity
+                        for (int i = capacity; i < N; i++) {
+                            CharSequence cs = rnd.nextChars(10);
+                            Assert.assertEquals(i, writer.put(cs));
+                            Assert.assertEquals(i, writer.put(cs));
+                        }
+                        Assert.assertEquals(8192, writer.getSymbolCapacity());
+
+                        // reader opened before index rebuild catches up on symbol count change
+                        reader.updateSymbolCount(N);
+                        Assert.assertEquals(8192, reader.getSymbolCapacity());
+
+                        rnd.reset();
+                        for (int i = 0; i < N; i++) {
+                            CharSequence cs = rnd.nextChars(10);
+                            Assert.assertEquals(i, writer.put(cs));
+                            Assert.assertEquals(i, reader.keyOf(cs));
+                            TestUtils.assertEquals(cs, reader.valueOf(i));
+                        }
+                    }
+                }
+
+                // reopened writer and reader pick up grown capacity
+                try (
+                        SymbolMapWriter writer = new SymbolMapWriter(configuration, path, "x", N, TRANSIENT_SYMBOL_COUNT_CHANGE_HANDLER);
+                        SymbolMapReaderImpl reader = new SymbolMapReaderImpl(configuration, path, "x", N)
+                ) {
+                    Assert.assertEquals(8192, writer.getSymbolCapacity());
+                    Assert.assertEquals(8192, reader.getSymbolCapacity());
+                    // capacity has doubled six times, index files are versioned rather than renamed
+                    Assert.assertEquals(6, writer.getIndexVersion());
+                    assertIndexFiles(path, "x.6", true);
+                    assertIndexFiles(path, "x.5", true);
+                    assertIndexFiles(path, "x.4", false);
+                    assertIndexFiles(path, "x", false);
+                    rnd.reset();
+                    for (int i = 0; i < N; i++) {
+                        CharSequence cs = rnd.nextChars(10);
+                        Assert.assertEquals(i, writer.put(cs));
+                        Assert.assertEquals(i, reader.keyOf(cs));
+                    }
+                    Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, reader.keyOf("hola"));
+                }
+            }
+        });
+    }
+
     @Test
     public void testTransactionalRead() throws Exception {
         TestUtils.assertMemoryLeak(() -> {
@@ -0,0 +1,470 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.griffin.SqlCompiler;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionContextImpl;
+import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WalWriterTest {
+    private static final StringSink sink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testAddColumnBeforeApply() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            final long walId;
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                walId = writer.getWalId();
+                TableWriter.Row row = writer.newRow(1000);
+                row.putSym(1, "a");
+                row.putLong(2, 1);
+                row.append();
+                writer.commit();
+            }
+            compiler.compile("alter table x add column d double", context);
+            // idle writer is out of date now
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                Assert.assertNotEquals(walId, writer.getWalId());
+                TableWriter.Row row = writer.newRow(2000);
+                row.putSym(1, "b");
+                row.putLong(2, 2);
+                row.putDouble(4, 1.5);
+                row.append();
+                writer.commit();
+            }
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            assertSql(compiler, context, "x", "ts\tsym\tv\ts\td\n" +
+                    "1970-01-01T00:00:00.001000Z\ta\t1\t\tNaN\n" +
+                    "1970-01-01T00:00:00.002000Z\tb\t2\t\t1.5\n");
+        });
+    }
+
+    @Test
+    public void testApplyIsSuspendedAfterRetries() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            writeRow(engine, 1000, 1);
+            compiler.compile("alter table x drop column v", context);
+            compiler.compile("alter table x add column v int", context);
+
+            final WalSequencer sequencer = engine.getWalSequencer("x");
+            for (int i = 0; i < 3; i++) {
+                Assert.assertFalse(sequencer.isSuspended());
+                Assert.assertFalse(engine.getWalApplyJob().run(0));
+            }
+            Assert.assertTrue(sequencer.isSuspended());
+            Assert.assertTrue(sequencer.hasPendingTxns());
+            Assert.assertFalse(engine.getWalApplyJob().run(0));
+            assertSql(compiler, context, "select count() from x", "count\n0\n");
+        });
+    }
+
+    @Test
+    public void testCommittedTransactionsAreNotReapplied() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            writeRow(engine, 1000, 1);
+            final WalSequencer sequencer = engine.getWalSequencer("x");
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "testing")) {
+                // process stopped after table commit, before sequencer recorded it
+                TableWriter.Row row = writer.newRow(1000);
+                row.putLong(2, 1);
+                row.append();
+                writer.commitWal(1);
+            }
+            Assert.assertTrue(sequencer.hasPendingTxns());
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            Assert.assertFalse(sequencer.hasPendingTxns());
+            assertSql(compiler, context, "select ts, v from x", "ts\tv\n" +
+                    "1970-01-01T00:00:00.001000Z\t1\n");
+
+            writeRow(engine, 2000, 2);
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            assertSql(compiler, context, "select ts, v from x", "ts\tv\n" +
+                    "1970-01-01T00:00:00.001000Z\t1\n" +
+                    "1970-01-01T00:00:00.002000Z\t2\n");
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "testing")) {
+                Assert.assertEquals(2, writer.getAppliedWalTxnCount());
+            }
+        });
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            final int threadCount = 4;
+            final int rowCount = 3000;
+            final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+            final AtomicInteger errors = new AtomicInteger();
+            final Thread[] threads = new Thread[threadCount];
+            for (int t = 0; t < threadCount; t++) {
+                final int id = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        barrier.await();
+                        try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                            for (int i = 0; i < rowCount; i++) {
+                                // timestamps of writers interleave
+                                TableWriter.Row row = writer.newRow((long) (i * threadCount + id) * 1_000_000L);
+                                row.putSym(1, "s" + id);
+                                row.putLong(2, i);
+                                row.putStr(3, "v" + i);
+                                row.append();
+                                if (i % 100 == 99) {
+                                    writer.commit();
+                                }
+                            }
+                            writer.commit();
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        errors.incrementAndGet();
+                    }
+                });
+                threads[t].start();
+            }
+            for (int t = 0; t < threadCount; t++) {
+                threads[t].join();
+            }
+            Assert.assertEquals(0, errors.get());
+            Assert.assertTrue(engine.getWalSequencer("x").hasPendingTxns());
+
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            Assert.assertFalse(engine.getWalSequencer("x").hasPendingTxns());
+            assertSql(compiler, context, "select sym, count(), sum(v) from x order by sym", "sym\tcount\tsum\n" +
+                    "s0\t3000\t4498500\n" +
+                    "s1\t3000\t4498500\n" +
+                    "s2\t3000\t4498500\n" +
+                    "s3\t3000\t4498500\n");
+            assertSql(compiler, context, "select min(ts), max(ts) from x", "min\tmax\n" +
+                    "1970-01-01T00:00:00.000000Z\t1970-01-01T03:19:59.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testDroppedColumnIsSkipped() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                TableWriter.Row row = writer.newRow(1000);
+                row.putLong(2, 1);
+                row.putStr(3, "dropped");
+                row.append();
+                writer.commit();
+            }
+            compiler.compile("alter table x drop column s", context);
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            assertSql(compiler, context, "x", "ts\tsym\tv\n" +
+                    "1970-01-01T00:00:00.001000Z\t\t1\n");
+        });
+    }
+
+    @Test
+    public void testIdleWriterIsReused() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            final long walId;
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                walId = writer.getWalId();
+                TableWriter.Row row = writer.newRow(1000);
+                row.putLong(2, 1);
+                row.append();
+                writer.commit();
+                // uncommitted row is rolled back on close
+                row = writer.newRow(2000);
+                row.putLong(2, 2);
+                row.append();
+            }
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                Assert.assertEquals(walId, writer.getWalId());
+                TableWriter.Row row = writer.newRow(3000);
+                row.putLong(2, 3);
+                row.append();
+                writer.commit();
+            }
+            Assert.assertEquals(2, engine.getWalSequencer("x").getTxnCount());
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            assertSql(compiler, context, "select ts, v from x", "ts\tv\n" +
+                    "1970-01-01T00:00:00.001000Z\t1\n" +
+                    "1970-01-01T00:00:00.003000Z\t3\n");
+        });
+    }
+
+    @Test
+    public void testInsertIsAppliedAsynchronously() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            TestUtils.insert(compiler, context, "insert into x values ('2021-10-05T11:00:00.000000Z', 'a', 1, 'x')");
+            TestUtils.insert(compiler, context, "insert into x values ('2021-10-05T10:00:00.000000Z', 'b', 2, 'y')");
+            TestUtils.insert(compiler, context, "insert into x (ts, v) values ('2021-10-04T10:00:00.000000Z', 3)");
+            assertSql(compiler, context, "select count() from x", "count\n0\n");
+
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            Assert.assertFalse(engine.getWalApplyJob().run(0));
+            assertSql(compiler, context, "x", "ts\tsym\tv\ts\n" +
+                    "2021-10-04T10:00:00.000000Z\t\t3\t\n" +
+                    "2021-10-05T10:00:00.000000Z\tb\t2\ty\n" +
+                    "2021-10-05T11:00:00.000000Z\ta\t1\tx\n");
+        });
+    }
+
+    @Test
+    public void testNonPartitionedTableIsWrittenDirectly() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            compiler.compile("create table y (ts timestamp, v long) timestamp(ts)", context);
+            try (TableWriterAPI writer = engine.getTableWriterAPI(AllowAllCairoSecurityContext.INSTANCE, "y", "test")) {
+                Assert.assertTrue(writer instanceof TableWriter);
+            }
+            TestUtils.insert(compiler, context, "insert into y values (0, 1)");
+            assertSql(compiler, context, "y", "ts\tv\n" +
+                    "1970-01-01T00:00:00.000000Z\t1\n");
+        });
+    }
+
+    @Test
+    public void testPendingTransactionsAreAppliedAfterRestart() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                TableWriter.Row row = writer.newRow(1000);
+                row.putLong(2, 1);
+                row.append();
+                writer.commit();
+            }
+        });
+        assertWithWal((engine, compiler, context) -> {
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            assertSql(compiler, context, "select ts, v from x", "ts\tv\n" +
+                    "1970-01-01T00:00:00.001000Z\t1\n");
+            // writer's directory is removed with its last transaction
+            try (Path path = new Path()) {
+                path.of(root).concat("x").concat(TableUtils.WAL_DIR_NAME).concat("0").$();
+                Assert.assertFalse(FilesFacadeImpl.INSTANCE.exists(path));
+            }
+        });
+    }
+
+    @Test
+    public void testPlainCommitAfterFailedApply() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            writeRow(engine, 2000, 2);
+            // WAL column type differs from the table column, apply fails
+            compiler.compile("alter table x drop column v", context);
+            compiler.compile("alter table x add column v int", context);
+            final WalSequencer sequencer = engine.getWalSequencer("x");
+            Assert.assertFalse(engine.getWalApplyJob().run(0));
+            Assert.assertTrue(sequencer.hasPendingTxns());
+
+            // table transaction moves on without WAL
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "testing")) {
+                TableWriter.Row row = writer.newRow(1000);
+                row.putSym(1, "plain");
+                row.append();
+                writer.commit();
+                Assert.assertEquals(0, writer.getAppliedWalTxnCount());
+            }
+
+            compiler.compile("alter table x drop column v", context);
+            compiler.compile("alter table x add column v long", context);
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            Assert.assertFalse(sequencer.hasPendingTxns());
+            Assert.assertFalse(engine.getWalApplyJob().run(0));
+            assertSql(compiler, context, "select ts, sym, v from x", "ts\tsym\tv\n" +
+                    "1970-01-01T00:00:00.001000Z\tplain\tNaN\n" +
+                    "1970-01-01T00:00:00.002000Z\t\t2\n");
+        });
+    }
+
+    @Test
+    public void testPlainCommitDoesNotMarkWalApplied() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            writeRow(engine, 2000, 2);
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "testing")) {
+                TableWriter.Row row = writer.newRow(1000);
+                row.putLong(2, 1);
+                row.append();
+                writer.commit();
+            }
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            Assert.assertFalse(engine.getWalSequencer("x").hasPendingTxns());
+            assertSql(compiler, context, "select ts, v from x", "ts\tv\n" +
+                    "1970-01-01T00:00:00.001000Z\t1\n" +
+                    "1970-01-01T00:00:00.002000Z\t2\n");
+        });
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                TableWriter.Row row = writer.newRow(1000);
+                row.putStr(3, "committed");
+                row.append();
+                writer.commit();
+
+                row = writer.newRow(2000);
+                row.putStr(3, "rolled back");
+                row.append();
+                writer.rollback();
+
+                row = writer.newRow(3000);
+                row.putStr(3, "cancelled");
+                row.cancel();
+
+                row = writer.newRow(4000);
+                row.putStr(3, "last");
+                row.append();
+                writer.commit();
+            }
+            Assert.assertTrue(engine.getWalApplyJob().run(0));
+            assertSql(compiler, context, "select ts, s from x", "ts\ts\n" +
+                    "1970-01-01T00:00:00.001000Z\tcommitted\n" +
+                    "1970-01-01T00:00:00.004000Z\tlast\n");
+        });
+    }
+
+    @Test
+    public void testSegmentRollover() throws Exception {
+        assertWithWal((engine, compiler, context) -> {
+            createTable(compiler, context);
+            final FilesFacade ff = engine.getConfiguration().getFilesFacade();
+            try (
+                    Path path = new Path();
+                    WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")
+            ) {
+                for (int i = 0; i < 25; i++) {
+                    TableWriter.Row row = writer.newRow(i * 1000L);
+                    row.putLong(2, i);
+                    row.append();
+                    if (i % 5 == 4) {
+                        writer.commit();
+                    }
+                }
+                writer.commit();
+                path.of(root).concat("x").concat(TableUtils.WAL_DIR_NAME).concat("0");
+                final int len = path.length();
+                Assert.assertTrue(ff.exists(path.concat("0").$()));
+                Assert.assertTrue(ff.exists(path.trimTo(len).concat("1").$()));
+                Assert.assertTrue(ff.exists(path.trimTo(len).concat("2").$()));
+
+                Assert.assertTrue(engine.getWalApplyJob().run(0));
+                // rolled over segments are removed once applied
+                Assert.assertFalse(ff.exists(path.trimTo(len).concat("0").$()));
+                Assert.assertFalse(ff.exists(path.trimTo(len).concat("1").$()));
+                Assert.assertTrue(ff.exists(path.trimTo(len).concat("2").$()));
+            }
+            assertSql(compiler, context, "select count() from x", "count\n25\n");
+            assertSql(compiler, context, "select sum(v) from x", "sum\n300\n");
+        });
+    }
+
+    private static void assertSql(SqlCompiler compiler, SqlExecutionContext context, String sql, String expected) throws Exception {
+        TestUtils.assertSql(compiler, context, sql, sink, expected);
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext context) throws Exception {
+        compiler.compile("create table x (ts timestamp, sym symbol, v long, s string) timestamp(ts) partition by DAY", context);
+    }
+
+    private static void writeRow(CairoEngine engine, long timestamp, long value) {
+        try (WalWriter writer = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+            TableWriter.Row row = writer.newRow(timestamp);
+            row.putLong(2, value);
+            row.append();
+            writer.commit();
+        }
+    }
+
+    private void assertWithWal(WalRunnable runnable) throws Exception {
+        final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+            @Override
+            public int getWalSegmentRolloverRowCount() {
+                return 10;
+            }
+
+            @Override
+            public boolean isWalEnabled() {
+                return true;
+            }
+        };
+
+        TestUtils.assertMemoryLeak(() -> {
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContextImpl context = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                context.with(AllowAllCairoSecurityContext.INSTANCE, new BindVariableServiceImpl(configuration), null);
+                runnable.run(engine, compiler, context);
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+            }
+        });
+    }
+
+    interface WalRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context) throws Exception;
+    }
+}
@@ -877,6 +877,56 @@ public class ReaderPoolTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testRefreshIdle() throws Exception {
+        assertWithPool(pool -> {
+            final TableReader reader;
+            try (TableReader r = pool.get("u")) {
+                reader = r;
+                Assert.assertEquals(0, r.size());
+            }
+            Assert.assertFalse(pool.refreshIdle());
+
+            try (TableWriter w = new TableWriter(configuration, "u")) {
+                for (int i = 0; i < 10; i++) {
+                    TableWriter.Row row = w.newRow();
+                    row.putDate(0, i);
+                    row.append();
+                }
+                w.commit();
+            }
+            Assert.assertTrue(reader.isOutdated());
+            Assert.assertTrue(pool.refreshIdle());
+            Assert.assertFalse(reader.isOutdated());
+            Assert.assertFalse(pool.refreshIdle());
+
+            try (TableReader r = pool.get("u")) {
+                Assert.assertSame(reader, r);
+                Assert.assertEquals(10, r.size());
+            }
+        });
+    }
+
+    @Test
+    public void testRefreshIdleSkipsBusyReader() throws Exception {
+        assertWithPool(pool -> {
+            try (TableReader reader = pool.get("u")) {
+                try (TableWriter w = new TableWriter(configuration, "u")) {
+                    TableWriter.Row row = w.newRow();
+                    row.putDate(0, 1);
+                    row.append();
+                    w.commit();
+                }
+                Assert.assertFalse(pool.refreshIdle());
+                // busy reader keeps its snapshot until the owner reloads it
+                Assert.assertTrue(reader.isOutdated());
+                Assert.assertEquals(0, reader.size());
+                Assert.assertTrue(reader.reload());
+                Assert.assertEquals(1, reader.size());
+            }
+        });
+    }
+
     @Test
     public void testSerialOpenClose() throws Exception {
         assertWithPool(pool -> {
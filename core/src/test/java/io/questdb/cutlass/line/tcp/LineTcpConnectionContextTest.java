@@ -24,6 +24,8 @@
 
 package io.questdb.cutlass.line.tcp;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Random;
@@ -76,6 +78,7 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
     private LineTcpMeasurementScheduler scheduler;
     private boolean disconnected;
     private String recvBuffer;
+    private byte[] recvBinaryBuffer;
     private int nWriterThreads;
     private WorkerPool workerPool;
     private int[] rebalanceLoadByThread;
@@ -89,6 +92,15 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
             @Override
             public int recv(long fd, long buffer, int bufferLen) {
                 Assert.assertEquals(FD, fd);
+                if (null != recvBinaryBuffer) {
+                    int n = Math.min(bufferLen, recvBinaryBuffer.length);
+                    for (int i = 0; i < n; i++) {
+                        Unsafe.getUnsafe().putByte(buffer++, recvBinaryBuffer[i]);
+                    }
+                    recvBinaryBuffer = n < recvBinaryBuffer.length ? Arrays.copyOfRange(recvBinaryBuffer, n, recvBinaryBuffer.length) : null;
+                    return n;
+                }
+
                 if (null == recvBuffer) {
                     return -1;
                 }
@@ -1175,6 +1187,249 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testColumnBlock() throws Exception {
+        runInContext(() -> {
+            recvBinaryBuffer = columnBlock(
+                    "weather",
+                    new long[]{1465839830100400200L, 1465839830100500200L, 1465839830101400200L},
+                    "location", ColumnType.SYMBOL, new String[]{"us-midwest", "us-eastcoast", null},
+                    "temperature", ColumnType.DOUBLE, new double[]{82, 81.5, 83.25},
+                    "humidity", ColumnType.LONG, new long[]{23, 24, 25},
+                    "raining", ColumnType.BOOLEAN, new boolean[]{true, false, false},
+                    "comment", ColumnType.STRING, new String[]{"wet", null, "windy"}
+            );
+            recvBuffer = "weather,location=us-westcost temperature=82,humidity=30i,raining=false,comment=\"dry\" 1465839830102500200\n";
+            do {
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            } while (recvBuffer.length() > 0);
+            waitForIOCompletion();
+            closeContext();
+            String expected = "location\ttemperature\thumidity\training\tcomment\ttimestamp\n" +
+                    "us-midwest\t82.0\t23\ttrue\twet\t2016-06-13T17:43:50.100400Z\n" +
+                    "us-eastcoast\t81.5\t24\tfalse\t\t2016-06-13T17:43:50.100500Z\n" +
+                    "\t83.25\t25\tfalse\twindy\t2016-06-13T17:43:50.101400Z\n" +
+                    "us-westcost\t82.0\t30\tfalse\tdry\t2016-06-13T17:43:50.102500Z\n";
+            assertTable(expected, "weather");
+        });
+    }
+
+    @Test
+    public void testColumnBlockAddColumn() throws Exception {
+        addTable();
+        runInContext(() -> {
+            recvBinaryBuffer = columnBlock(
+                    "weather",
+                    new long[]{1465839830100400200L, 1465839830100500200L},
+                    "temperature", ColumnType.DOUBLE, new double[]{82, 83},
+                    "humidity", ColumnType.DOUBLE, new double[]{23.5, 24.5},
+                    "location", ColumnType.SYMBOL, new String[]{"us-midwest", "us-eastcoast"}
+            );
+            recvBuffer = "";
+            do {
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            } while (recvBinaryBuffer != null);
+            waitForIOCompletion();
+            closeContext();
+            String expected = "location\ttemperature\ttimestamp\thumidity\n" +
+                    "us-midwest\t82.0\t2016-06-13T17:43:50.100400Z\t23.5\n" +
+                    "us-eastcoast\t83.0\t2016-06-13T17:43:50.100500Z\t24.5\n";
+            assertTable(expected, "weather");
+        });
+    }
+
+    @Test
+    public void testColumnBlockBadCast() throws Exception {
+        addTable();
+        runInContext(() -> {
+            recvBinaryBuffer = columnBlock(
+                    "weather",
+                    new long[]{1465839830100400200L},
+                    "location", ColumnType.SYMBOL, new String[]{"us-midwest"},
+                    "temperature", ColumnType.LONG, new long[]{82}
+            );
+            recvBuffer = "weather,location=us-eastcoast temperature=81 1465839830101400200\n";
+            do {
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            } while (recvBuffer.length() > 0);
+            waitForIOCompletion();
+            closeContext();
+            String expected = "location\ttemperature\ttimestamp\n" +
+                    "us-eastcoast\t81.0\t2016-06-13T17:43:50.101400Z\n";
+            assertTable(expected, "weather");
+        });
+    }
+
+    @Test
+    public void testColumnBlockBadCastDoesNotAddColumn() throws Exception {
+        addTable();
+        runInContext(() -> {
+            recvBinaryBuffer = columnBlock(
+                    "weather",
+                    new long[]{1465839830100400200L},
+                    "humidity", ColumnType.DOUBLE, new double[]{0.5},
+                    "temperature", ColumnType.LONG, new long[]{82}
+            );
+            recvBuffer = "weather,location=us-eastcoast temperature=81 1465839830101400200\n";
+            do {
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            } while (recvBuffer.length() > 0);
+            waitForIOCompletion();
+            closeContext();
+            String expected = "location\ttemperature\ttimestamp\n" +
+                    "us-eastcoast\t81.0\t2016-06-13T17:43:50.101400Z\n";
+            assertTable(expected, "weather");
+        });
+    }
+
+    @Test
+    public void testColumnBlockInvalidUtf8() throws Exception {
+        addTable();
+        runInContext(() -> {
+            byte[] block = columnBlock(
+                    "weather",
+                    new long[]{1465839830100400200L, 1465839830100500200L},
+                    "temperature", ColumnType.DOUBLE, new double[]{82, 83},
+                    "location", ColumnType.SYMBOL, new String[]{"us-midwest", "us-west"}
+            );
+            // break last value of the block, rows before it must not be written either
+            block[block.length - 1] = (byte) 0xff;
+            recvBinaryBuffer = block;
+            recvBuffer = "weather,location=us-eastcoast temperature=81 1465839830101400200\n";
+            do {
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            } while (recvBuffer.length() > 0);
+            waitForIOCompletion();
+            closeContext();
+            String expected = "location\ttemperature\ttimestamp\n" +
+                    "us-eastcoast\t81.0\t2016-06-13T17:43:50.101400Z\n";
+            assertTable(expected, "weather");
+        });
+    }
+
+    @Test
+    public void testColumnBlockFragmented() throws Exception {
+        runInContext(() -> {
+            recvBuffer = "";
+            long timestamp = 1465839830100400200L;
+            for (int breakPos : new int[]{3, 27, 60}) {
+                byte[] block = columnBlock(
+                        "weather",
+                        new long[]{timestamp, timestamp + 100_000},
+                        "location", ColumnType.SYMBOL, new String[]{"us-midwest", "us-eastcoast"},
+                        "temperature", ColumnType.DOUBLE, new double[]{82, 83}
+                );
+                timestamp += 1_000_000;
+                Assert.assertTrue(breakPos < block.length);
+                recvBinaryBuffer = Arrays.copyOfRange(block, 0, breakPos);
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+                recvBinaryBuffer = Arrays.copyOfRange(block, breakPos, block.length);
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            }
+            waitForIOCompletion();
+            closeContext();
+            String expected = "location\ttemperature\ttimestamp\n" +
+                    "us-midwest\t82.0\t2016-06-13T17:43:50.100400Z\n" +
+                    "us-eastcoast\t83.0\t2016-06-13T17:43:50.100500Z\n" +
+                    "us-midwest\t82.0\t2016-06-13T17:43:50.101400Z\n" +
+                    "us-eastcoast\t83.0\t2016-06-13T17:43:50.101500Z\n" +
+                    "us-midwest\t82.0\t2016-06-13T17:43:50.102400Z\n" +
+                    "us-eastcoast\t83.0\t2016-06-13T17:43:50.102500Z\n";
+            assertTable(expected, "weather");
+        });
+    }
+
+    @Test
+    public void testColumnBlockUnsupportedType() throws Exception {
+        runInContext(() -> {
+            recvBinaryBuffer = columnBlock(
+                    "weather",
+                    new long[]{1465839830100400200L},
+                    "location", ColumnType.SYMBOL, new String[]{"us-midwest"},
+                    "temperature", ColumnType.LONG256, new long[]{82, 0, 0, 0}
+            );
+            recvBuffer = "weather,location=us-eastcoast temperature=81 1465839830101400200\n";
+            do {
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            } while (recvBuffer.length() > 0);
+            waitForIOCompletion();
+            closeContext();
+            String expected = "location\ttemperature\ttimestamp\n" +
+                    "us-eastcoast\t81.0\t2016-06-13T17:43:50.101400Z\n";
+            assertTable(expected, "weather");
+        });
+    }
+
+    @Test
+    public void testColumnBlockInvalidSize() throws Exception {
+        runInContext(() -> {
+            byte[] block = columnBlock(
+                    "weather",
+                    new long[]{1465839830100400200L},
+                    "temperature", ColumnType.DOUBLE, new double[]{82}
+            );
+            ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN).putInt(1, 5);
+            recvBinaryBuffer = block;
+            recvBuffer = "";
+            handleContextIO();
+            Assert.assertTrue(disconnected);
+        });
+    }
+
+    private static byte[] columnBlock(String tableName, long[] timestamps, Object... columns) {
+        ByteBuffer buf = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(LineTcpColumnBlockParser.BLOCK_MARKER);
+        // block size is patched once the block is complete
+        buf.putInt(0);
+        byte[] bytes = tableName.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) bytes.length).put(bytes);
+        buf.putInt(timestamps.length);
+        buf.putShort((short) (columns.length / 3));
+        for (int i = 0; i < columns.length; i += 3) {
+            bytes = ((String) columns[i]).getBytes(StandardCharsets.UTF_8);
+            buf.putShort((short) bytes.length).put(bytes);
+            buf.put(((Number) columns[i + 1]).byteValue());
+        }
+        for (long timestamp : timestamps) {
+            buf.putLong(timestamp);
+        }
+        for (int i = 0; i < columns.length; i += 3) {
+            Object values = columns[i + 2];
+            if (values instanceof double[]) {
+                for (double v : (double[]) values) {
+                    buf.putDouble(v);
+                }
+            } else if (values instanceof long[]) {
+                for (long v : (long[]) values) {
+                    buf.putLong(v);
+                }
+            } else if (values instanceof boolean[]) {
+                for (boolean v : (boolean[]) values) {
+                    buf.put((byte) (v ? 1 : 0));
+                }
+            } else {
+                for (String v : (String[]) values) {
+                    if (v == null) {
+                        buf.putInt(-1);
+                    } else {
+                        bytes = v.getBytes(StandardCharsets.UTF_8);
+                        buf.putInt(bytes.length).put(bytes);
+                    }
+                }
+            }
+        }
+        buf.putInt(1, buf.position());
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
     private void addTable() {
         try (
                 @SuppressWarnings("resource")
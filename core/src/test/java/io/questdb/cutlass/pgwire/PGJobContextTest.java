@@ -229,6 +229,53 @@ public class PGJobContextTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testBatchInsertCommitsAtSync() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("create table test (ts timestamp, val int) timestamp(ts)");
+                }
+
+                try (PreparedStatement batchInsert = connection.prepareStatement("insert into test(ts,val) values(?,?)")) {
+                    for (int i = 0; i < 100; i++) {
+                        batchInsert.setTimestamp(1, new Timestamp(i * 1000L));
+                        batchInsert.setInt(2, i);
+                        batchInsert.addBatch();
+                    }
+                    assertEquals(100, batchInsert.executeBatch().length);
+
+                    // rows preceding the one that fails are kept
+                    batchInsert.setTimestamp(1, new Timestamp(200_000L));
+                    batchInsert.setInt(2, 200);
+                    batchInsert.addBatch();
+                    batchInsert.setTimestamp(1, new Timestamp(0L));
+                    batchInsert.setInt(2, 300);
+                    batchInsert.addBatch();
+                    try {
+                        batchInsert.executeBatch();
+                        fail();
+                    } catch (BatchUpdateException e) {
+                        TestUtils.assertContains(e.getMessage(), "out of order");
+                    }
+                }
+
+                try (ResultSet rs = connection.prepareStatement("select count() from test where val >= 0").executeQuery()) {
+                    sink.clear();
+                    assertResultSet("count[BIGINT]\n101\n", sink, rs);
+                }
+
+                try (ResultSet rs = connection.prepareStatement("select val from test where val > 99").executeQuery()) {
+                    sink.clear();
+                    assertResultSet("val[INTEGER]\n200\n", sink, rs);
+                }
+            }
+        });
+    }
+
     @Test
     public void testBatchInsertWithTransaction() throws Exception {
         assertMemoryLeak(() -> {
@@ -646,26 +693,155 @@ public class PGJobContextTest extends AbstractGriffinTest {
     }
 
     @Test
-    @Ignore
-    public void testCopyIn() throws SQLException {
-        try (
-                final PGWireServer ignored = createPGServer(2);
-                final Connection connection = getConnection(false, true)
-        ) {
-            PreparedStatement stmt = connection.prepareStatement("create table tab (a int, b int)");
-            stmt.execute();
+    public void testCopyIn() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table tab (a int, b int)");
+                }
 
-            CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                CopyIn copyIn = copyManager.copyIn("copy tab from STDIN with (format csv, header true)");
 
-            CopyIn copyIn = copyManager.copyIn("copy tab from STDIN");
+                // lines are split across CopyData messages
+                byte[] bytes = "a,b\r\n10,20\r\n3".getBytes();
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                bytes = "0,40\r\n50,60\r\n".getBytes();
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                assertEquals(3, copyIn.endCopy());
+
+                try (ResultSet rs = connection.prepareStatement("tab").executeQuery()) {
+                    sink.clear();
+                    assertResultSet(
+                            "a[INTEGER],b[INTEGER]\n" +
+                                    "10,20\n" +
+                                    "30,40\n" +
+                                    "50,60\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
+    }
 
-            String text = "a,b\r\n" +
-                    "10,20";
+    @Test
+    public void testCopyInBinary() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table tab (a int, s string, ts timestamp) timestamp(ts) partition by DAY");
+                }
 
-            byte[] bytes = text.getBytes();
-            copyIn.writeToCopy(bytes, 0, bytes.length);
-            copyIn.endCopy();
-        }
+                final java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(256);
+                buf.put("PGCOPY\n".getBytes()).put((byte) 0xff).put((byte) '\r').put((byte) '\n').put((byte) 0);
+                buf.putInt(0).putInt(0);
+                // 2020-01-01T00:00:00.000000Z and an hour later, in micros since 2000-01-01
+                final long ts = 631152000000000L;
+                buf.putShort((short) 3).putInt(4).putInt(7).putInt(3).put("abc".getBytes()).putInt(8).putLong(ts);
+                buf.putShort((short) 3).putInt(-1).putInt(-1).putInt(8).putLong(ts + Timestamps.HOUR_MICROS);
+                buf.putShort((short) -1);
+
+                CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                CopyIn copyIn = copyManager.copyIn("copy tab from STDIN with (format binary)");
+
+                // tuple is split across CopyData messages
+                final byte[] bytes = buf.array();
+                copyIn.writeToCopy(bytes, 0, 30);
+                copyIn.writeToCopy(bytes, 30, buf.position() - 30);
+                assertEquals(2, copyIn.endCopy());
+
+                try (ResultSet rs = connection.prepareStatement("tab").executeQuery()) {
+                    sink.clear();
+                    assertResultSet(
+                            "a[INTEGER],s[VARCHAR],ts[TIMESTAMP]\n" +
+                                    "7,abc,2020-01-01 00:00:00.0\n" +
+                                    "null,null,2020-01-01 01:00:00.0\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInText() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table tab (a int, s string, sym symbol)");
+                }
+
+                CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                CopyIn copyIn = copyManager.copyIn("copy tab from STDIN with (format text)");
+
+                // escaped delimiter, \N in every column, quotes, escaped backslash, \t, hex and octal escapes
+                byte[] bytes = ("1\ta\\\tb\tx\n" +
+                        "\\N\t\\N\t\\N\n" +
+                        "3\t\"q\"\\\\\\t\\x41\\101\ty\n").getBytes();
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                assertEquals(3, copyIn.endCopy());
+
+                try (ResultSet rs = connection.prepareStatement("tab").executeQuery()) {
+                    sink.clear();
+                    assertResultSet(
+                            "a[INTEGER],s[VARCHAR],sym[VARCHAR]\n" +
+                                    "1,a\tb,x\n" +
+                                    "null,null,null\n" +
+                                    "3,\"q\"\\\tAA,y\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCopyInTextMalformed() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(2);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table tab (a int, s string)");
+                }
+
+                CopyManager copyManager = new CopyManager((BaseConnection) connection);
+                CopyIn copyIn = copyManager.copyIn("copy tab from STDIN with (format text)");
+                // second row is not a number, third row has extra value
+                byte[] bytes = "1\tx\nabc\ty\n3\tz\textra\n".getBytes();
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                try {
+                    copyIn.endCopy();
+                    Assert.fail();
+                } catch (PSQLException e) {
+                    TestUtils.assertContains(e.getServerErrorMessage().getMessage(), "malformed COPY data");
+                }
+
+                // batch with malformed rows is not committed
+                try (ResultSet rs = connection.prepareStatement("select count() from tab").executeQuery()) {
+                    sink.clear();
+                    assertResultSet(
+                            "count[BIGINT]\n" +
+                                    "0\n",
+                            sink,
+                            rs
+                    );
+                }
+            }
+        });
     }
 
     @Test
@@ -716,6 +892,103 @@ public class PGJobContextTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testCursorFetchFiltered() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(1);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table x as (select cast(x as int) a from long_sequence(1000))");
+                }
+
+                // filtered cursor does not know its size upfront
+                try (PreparedStatement statement = connection.prepareStatement("x where a % 3 = 0")) {
+                    statement.setFetchSize(7);
+                    int count = 0;
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            count++;
+                            assertEquals(count * 3, rs.getInt(1));
+                        }
+                    }
+                    assertEquals(333, count);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCursorFetchInterleaved() throws Exception {
+        assertMemoryLeak(() -> {
+            try (
+                    final PGWireServer ignored = createPGServer(1);
+                    final Connection connection = getConnection(false, true)
+            ) {
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table x as (select cast(x as int) a from long_sequence(100))");
+                }
+
+                try (
+                        PreparedStatement above = connection.prepareStatement("x where a > ?");
+                        PreparedStatement below = connection.prepareStatement("x where a < ?");
+                        PreparedStatement lookup = connection.prepareStatement("x where a = ?")
+                ) {
+                    above.setFetchSize(5);
+                    above.setInt(1, 50);
+                    below.setFetchSize(3);
+                    below.setInt(1, 21);
+
+                    try (
+                            ResultSet rsAbove = above.executeQuery();
+                            ResultSet rsBelow = below.executeQuery()
+                    ) {
+                        // each cursor continues where it stopped while other statements run in between
+                        int countAbove = 0;
+                        int countBelow = 0;
+                        boolean hasAbove = true;
+                        boolean hasBelow = true;
+                        while (hasAbove || hasBelow) {
+                            if (hasAbove && (hasAbove = rsAbove.next())) {
+                                assertEquals(51 + countAbove++, rsAbove.getInt(1));
+                            }
+                            if (hasBelow && (hasBelow = rsBelow.next())) {
+                                final int a = rsBelow.getInt(1);
+                                assertEquals(1 + countBelow++, a);
+                                lookup.setInt(1, a * 2);
+                                try (ResultSet rs = lookup.executeQuery()) {
+                                    assertTrue(rs.next());
+                                    assertEquals(a * 2, rs.getInt(1));
+                                    assertFalse(rs.next());
+                                }
+                            }
+                        }
+                        assertEquals(50, countAbove);
+                        assertEquals(20, countBelow);
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testBinaryResultFormatHex() throws Exception {
+        // result formats requested by Bind: boolean as a byte, long256 as base 10000 numeric, geohash as varchar
+        String script = ">0000006e00030000757365720078797a0064617461626173650071646200636c69656e745f656e636f64696e67005554463800446174655374796c650049534f0054696d655a6f6e65004575726f70652f4c6f6e646f6e0065787472615f666c6f61745f64696769747300320000\n" +
+                "<520000000800000003\n" +
+                ">70000000076f6800\n" +
+                "<520000000800000000530000001154696d655a6f6e6500474d5400530000001d6170706c69636174696f6e5f6e616d6500517565737444420053000000187365727665725f76657273696f6e0031312e33005300000019696e74656765725f6461746574696d6573006f6e005300000019636c69656e745f656e636f64696e670055544638005a0000000549\n" +
+                ">50000000bc0073656c656374207820252032203d203020622c20636173742878202a203130303030206173206c6f6e6732353629206c2c206361737428273078303130303030303030303030303030303030303030303030303030303030303030303030303030303030303030303030303027206173206c6f6e6732353629206d2c206361737428277370303532773932272061732067656f68617368283762292920672066726f6d206c6f6e675f73657175656e6365283229000000420000000e00000000000000010001450000000900000000005300000004\n" +
+                "<31000000043200000004440000004e000400000001000000000a0001000100000000000100000026000f000e00000000003e1e1e06c70f1a1f8c0efb1ed609101df2104100eb154412200d7b0b500000000731313030303130440000004e000400000001010000000a0001000100000000000200000026000f000e00000000003e1e1e06c70f1a1f8c0efb1ed609101df2104100eb154412200d7b0b500000000731313030303130430000000d53454c4543542032005a0000000549\n" +
+                ">5800000004";
+        assertHexScript(NetworkFacadeImpl.INSTANCE,
+                script,
+                getHexPgWireConfig());
+    }
+
     @Test
     public void testDDL() throws Exception {
         assertMemoryLeak(() -> {
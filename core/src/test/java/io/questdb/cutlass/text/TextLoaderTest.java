@@ -31,8 +31,13 @@ import io.questdb.cutlass.json.JsonLexer;
 import io.questdb.griffin.AbstractGriffinTest;
 import io.questdb.griffin.SqlCompiler;
 import io.questdb.griffin.SqlException;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.mp.WorkerPoolConfiguration;
 import io.questdb.std.Files;
 import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
 import io.questdb.std.Os;
 import io.questdb.std.Unsafe;
 import io.questdb.std.datetime.DateLocale;
@@ -55,6 +60,7 @@ public class TextLoaderTest extends AbstractGriffinTest {
     private static final ByteManipulator ENTITY_MANIPULATOR = (index, len, b) -> b;
 
     private static final JsonLexer jsonLexer = new JsonLexer(1024, 1024);
+    private static final Log LOG = LogFactory.getLog(TextLoaderTest.class);
 
     @AfterClass
     public static void tearDownClass() {
@@ -1368,6 +1374,49 @@ public class TextLoaderTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testLoadParallelNoTimestamp() throws Exception {
+        assertLoadParallel(PartitionBy.NONE, null, false, false, 0);
+    }
+
+    @Test
+    public void testLoadParallelNotPartitioned() throws Exception {
+        assertLoadParallel(PartitionBy.NONE, "ts", true, false, 0);
+    }
+
+    @Test
+    public void testLoadParallelPartitionByDay() throws Exception {
+        assertLoadParallel(PartitionBy.DAY, "ts", true, false, 0);
+    }
+
+    @Test
+    public void testLoadParallelPartitionByDayBuffered() throws Exception {
+        assertLoadParallel(PartitionBy.DAY, "ts", true, true, 0);
+    }
+
+    @Test
+    public void testLoadParallelStaleStagingTable() throws Exception {
+        // staging table left behind by load that did not finish is replaced
+        final CharSequence spillRoot = new DefaultCairoConfiguration(root).getSqlSpillRoot();
+        try (Path path = new Path()) {
+            Assert.assertEquals(0, FilesFacadeImpl.INSTANCE.mkdirs(path.of(spillRoot).concat("test__import0").slash$(), 509));
+            Assert.assertTrue(FilesFacadeImpl.INSTANCE.touch(path.of(spillRoot).concat("test__import0").concat("_meta").$()));
+            assertLoadParallel(PartitionBy.DAY, "ts", true, false, 0);
+            Assert.assertFalse(FilesFacadeImpl.INSTANCE.exists(path.of(spillRoot).concat("test__import0").$()));
+        }
+    }
+
+    @Test
+    public void testLoadParallelTimestampInOrder() throws Exception {
+        // chunks do not overlap and are appended one after another
+        assertLoadParallel(PartitionBy.DAY, "ts", true, false, 0, false);
+    }
+
+    @Test
+    public void testLoadParallelWorkerPool() throws Exception {
+        assertLoadParallel(PartitionBy.DAY, "ts", true, false, 2);
+    }
+
     @Test
     public void testLoadRowsWithExtraColumns() throws Exception {
         assertNoLeak(textLoader -> {
@@ -3083,6 +3132,149 @@ public class TextLoaderTest extends AbstractGriffinTest {
         });
     }
 
+    private void assertLoadParallel(
+            int partitionBy,
+            CharSequence timestamp,
+            boolean sorted,
+            boolean buffered,
+            int workerCount
+    ) throws Exception {
+        assertLoadParallel(partitionBy, timestamp, sorted, buffered, workerCount, true);
+    }
+
+    private void assertLoadParallel(
+            int partitionBy,
+            CharSequence timestamp,
+            boolean sorted,
+            boolean buffered,
+            int workerCount,
+            boolean shuffled
+    ) throws Exception {
+        final int rowCount = 50;
+        final StringBuilder csv = new StringBuilder("sym,ts,note\n");
+        final String[] lines = new String[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            // hours are shuffled, so that every chunk has rows of every day
+            final int hour = shuffled ? (i * 7) % rowCount : i;
+            final String ts = String.format("2021-01-%02dT%02d:00:00.000000Z", 1 + hour / 24, hour % 24);
+            // quoted line break must not be taken for chunk boundary
+            final String note = i == 3 ? "multi\nline, quoted" : "n" + i;
+            csv.append('s').append(i % 3).append(',').append(ts).append(',');
+            csv.append(i == 3 ? "\"" + note + "\"" : note).append('\n');
+            lines[sorted ? hour : i] = "s" + (i % 3) + "\t" + ts + "\t" + note + "\n";
+        }
+
+        final StringBuilder expected = new StringBuilder("sym\tts\tnote\n");
+        for (int i = 0; i < rowCount; i++) {
+            expected.append(lines[i]);
+        }
+
+        final TextConfiguration textConfiguration = new DefaultTextConfiguration() {
+            @Override
+            public long getParallelImportChunkSize() {
+                return 64;
+            }
+        };
+
+        CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+            @Override
+            public TextConfiguration getTextConfiguration() {
+                return textConfiguration;
+            }
+        };
+
+        TestUtils.assertMemoryLeak(() -> {
+            try (CairoEngine engine = new CairoEngine(configuration)) {
+                final WorkerPool workerPool = new WorkerPool(new WorkerPoolConfiguration() {
+                    @Override
+                    public int[] getWorkerAffinity() {
+                        final int[] affinity = new int[workerCount];
+                        Arrays.fill(affinity, -1);
+                        return affinity;
+                    }
+
+                    @Override
+                    public int getWorkerCount() {
+                        return workerCount;
+                    }
+
+                    @Override
+                    public boolean haltOnError() {
+                        return false;
+                    }
+                });
+                workerPool.assign(new TextImportJob(engine.getMessageBus()));
+                workerPool.assignCleaner(Path.CLEANER);
+                workerPool.start(LOG);
+                try {
+                    try (TextLoader textLoader = new TextLoader(engine)) {
+                        loadParallel(engine, textLoader, csv.toString(), expected.toString(), timestamp, partitionBy, buffered, rowCount);
+                    }
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    workerPool.halt();
+                }
+                engine.clear();
+                AbstractGriffinTest.engine.clear();
+            }
+        });
+    }
+
+    private void loadParallel(
+            CairoEngine engine,
+            TextLoader textLoader,
+            String csv,
+            String expected,
+            CharSequence timestamp,
+            int partitionBy,
+            boolean buffered,
+            int rowCount
+    ) throws Exception {
+        configureLoaderDefaults(textLoader, (byte) ',', Atomicity.SKIP_ROW, false, partitionBy, timestamp);
+        final byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        final int len = bytes.length;
+        final long buf = Unsafe.malloc(len);
+        try {
+            for (int i = 0; i < len; i++) {
+                Unsafe.getUnsafe().putByte(buf + i, bytes[i]);
+            }
+            if (buffered) {
+                textLoader.setWorkerCount(4);
+                textLoader.setState(TextLoader.BUFFER_DATA);
+                for (int i = 0; i < len; i += 100) {
+                    textLoader.parse(buf + i, buf + Math.min(len, i + 100), AllowAllCairoSecurityContext.INSTANCE);
+                }
+                textLoader.wrapUp();
+            } else {
+                textLoader.loadParallel(buf, buf + len, 4, AllowAllCairoSecurityContext.INSTANCE);
+            }
+        } finally {
+            Unsafe.free(buf, len);
+        }
+
+        Assert.assertEquals(rowCount, textLoader.getParsedLineCount());
+        Assert.assertEquals(0, textLoader.getErrorLineCount());
+        Assert.assertEquals(rowCount, textLoader.getWrittenLineCount());
+        Assert.assertEquals(timestamp == null ? -1 : 1, textLoader.getMetadata().getTimestampIndex());
+        textLoader.clear();
+        assertTable(expected);
+
+        final CairoConfiguration configuration = engine.getConfiguration();
+        try (Path path = new Path()) {
+            for (int i = 0; i < 4; i++) {
+                Assert.assertEquals(
+                        TableUtils.TABLE_DOES_NOT_EXIST,
+                        TableUtils.exists(configuration.getFilesFacade(), path, configuration.getRoot(), "test__import" + i)
+                );
+                Assert.assertEquals(
+                        TableUtils.TABLE_DOES_NOT_EXIST,
+                        TableUtils.exists(configuration.getFilesFacade(), path, configuration.getSqlSpillRoot(), "test__import" + i)
+                );
+            }
+        }
+    }
+
     private void assertTable(String expected) throws SqlException {
         TestUtils.assertSql(
                 compiler,
@@ -24,14 +24,21 @@
 
 package io.questdb.griffin;
 
+import io.questdb.cairo.ColumnIndexerJob;
 import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.mp.WorkerPoolConfiguration;
 import io.questdb.std.Rnd;
+import io.questdb.std.str.StringSink;
 import io.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 public class AddIndexTest extends AbstractGriffinTest {
+    private static final Log LOG = LogFactory.getLog(AddIndexTest.class);
 
     @Before
     public void setUp3() {
@@ -63,6 +70,40 @@ public class AddIndexTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testAddIndexManyPartitions() throws Exception {
+        assertMemoryLeak(this::assertIndexManyPartitions);
+    }
+
+    @Test
+    public void testAddIndexManyPartitionsWorkerPool() throws Exception {
+        assertMemoryLeak(() -> {
+            final WorkerPool workerPool = new WorkerPool(new WorkerPoolConfiguration() {
+                @Override
+                public int[] getWorkerAffinity() {
+                    return new int[]{-1, -1};
+                }
+
+                @Override
+                public int getWorkerCount() {
+                    return 2;
+                }
+
+                @Override
+                public boolean haltOnError() {
+                    return false;
+                }
+            });
+            workerPool.assign(new ColumnIndexerJob(engine.getMessageBus()));
+            workerPool.start(LOG);
+            try {
+                assertIndexManyPartitions();
+            } finally {
+                workerPool.halt();
+            }
+        });
+    }
+
     @Test
     public void testBeforeAndAfterIndex() throws Exception {
         final String expected = "sym\tprice\tts\n" +
@@ -101,4 +142,32 @@ public class AddIndexTest extends AbstractGriffinTest {
 
         );
     }
+
+    private void assertIndexManyPartitions() throws SqlException {
+        compiler.compile(
+                "create table trades as (\n" +
+                        "    select \n" +
+                        "        rnd_symbol('ABB', 'HBC', 'DXR', null) sym, \n" +
+                        "        rnd_double() price, \n" +
+                        "        timestamp_sequence(0, 3600000000) ts \n" +
+                        "    from long_sequence(1000)\n" +
+                        ") timestamp(ts) partition by DAY",
+                sqlExecutionContext
+        );
+        // second symbol column has top in historic partitions
+        compiler.compile("alter table trades add column sym2 symbol", sqlExecutionContext);
+        compiler.compile(
+                "insert into trades select rnd_symbol('ABB', 'HBC', 'DXR', null), rnd_double(), timestamp_sequence(3600000000000, 3600000000), rnd_symbol('X', 'Y') from long_sequence(500)",
+                sqlExecutionContext
+        );
+
+        final String query = "select * from trades where sym = 'HBC' and sym2 = 'X' or sym = null";
+        final StringSink expected = new StringSink();
+        TestUtils.printSql(compiler, sqlExecutionContext, query, expected);
+
+        compiler.compile("alter table trades alter column sym add index", sqlExecutionContext);
+        compiler.compile("alter table trades alter column sym2 add index", sqlExecutionContext);
+
+        assertSql(query, expected);
+    }
 }
@@ -0,0 +1,598 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.O3PurgeDiscoveryJob;
+import io.questdb.cairo.O3PurgeJob;
+import io.questdb.cairo.PartitionCompressionJob;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableWriter;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cairo.vm.MemoryCMRZImpl;
+import io.questdb.cairo.vm.api.MemoryR;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.Numbers;
+import io.questdb.std.NumericException;
+import io.questdb.std.Rnd;
+import io.questdb.std.Unsafe;
+import io.questdb.std.Zip;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import static io.questdb.griffin.CompiledQuery.ALTER;
+
+public class AlterTableCompressPartitionTest extends AbstractGriffinTest {
+    private static final Log LOG = LogFactory.getLog(AlterTableCompressPartitionTest.class);
+
+    @BeforeClass
+    public static void setUpZip() {
+        // zlib allocates static memory on first use, leak detector should not see it
+        Zip.init();
+    }
+
+    @Before
+    public void setUp3() {
+        SharedRandom.RANDOM.set(new Rnd());
+        partitionCompressionBlockSize = 4096;
+        // decoded columns are freed as soon as readers release them, leak detector counts them otherwise
+        partitionCompressionCacheSize = 0;
+    }
+
+    @Test
+    public void testAddIndexToCompressedPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compile("alter table x compress partition where timestamp < '2018-01-05'");
+            compile("alter table x alter column ik add index");
+
+            TestUtils.printSql(compiler, sqlExecutionContext, "select ik from y where ik != null limit 1", sink);
+            final String symbol = sink.toString().split("\n")[1];
+            assertSqlCursors(
+                    "select * from y where ik = '" + symbol + "'",
+                    "select * from x where ik = '" + symbol + "'"
+            );
+            assertColumnCompressed("2018-01-02", "ik", true);
+        });
+    }
+
+    @Test
+    public void testAgePolicy() throws Exception {
+        assertMemoryLeak(() -> {
+            createY();
+            partitionCompressionAge = 3 * Timestamps.DAY_MICROS;
+            compile("create table x as (select * from y) timestamp(timestamp) partition by DAY");
+
+            // commit queues cold partitions for compression, but does not compress them
+            assertColumnCompressed("2018-01-01", "timestamp", false);
+            runCompressionJob();
+            assertColumnCompressed("2018-01-01", "timestamp", false);
+            assertFileExists("compress-2018-01-01", "timestamp.d.z", true);
+
+            // next commit switches partitions over to compressed copies, newest row is 2018-01-09T08:00
+            commitX();
+            assertFileExists("compress-2018-01-01", "timestamp.d.z", false);
+            assertColumnCompressed("2018-01-01", "timestamp", true);
+            assertColumnCompressed("2018-01-05", "timestamp", true);
+            assertColumnCompressed("2018-01-06", "timestamp", false);
+            assertColumnCompressed("2018-01-08", "timestamp", false);
+            assertXY();
+
+            compile("insert into x select * from y where timestamp in '2018-01-09'");
+            runCompressionJob();
+            commitX();
+            assertColumnCompressed("2018-01-06", "timestamp", false);
+
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "testing")) {
+                TableWriter.Row row = writer.newRow(TimestampFormatUtils.parseTimestamp("2018-01-10T00:00:00.000000Z"));
+                row.putInt(0, 42);
+                row.append();
+                writer.commit();
+            }
+            runCompressionJob();
+            commitX();
+            assertColumnCompressed("2018-01-06", "timestamp", true);
+            assertColumnCompressed("2018-01-07", "timestamp", false);
+        });
+    }
+
+    @Test
+    public void testCompressActivePartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            try {
+                compile("alter table x compress partition list '2018-01-09'");
+                Assert.fail();
+            } catch (SqlException e) {
+                Assert.assertEquals(38, e.getPosition());
+                TestUtils.assertContains(e.getFlyweightMessage(), "could not compress partition '2018-01-09'");
+            }
+            assertColumnCompressed("2018-01-09", "timestamp", false);
+        });
+    }
+
+    @Test
+    public void testCompressNonPartitionedTable() throws Exception {
+        assertFailure(
+                "alter table z compress partition where timestamp > 0",
+                "create table z as (select timestamp_sequence(0, 1000000) timestamp from long_sequence(10)) timestamp(timestamp)",
+                23,
+                "table is not partitioned"
+        );
+    }
+
+    @Test
+    public void testCompressPartitionExpectListOrWhere() throws Exception {
+        assertFailure(
+                "alter table z compress partition",
+                "create table z as (select timestamp_sequence(0, 1000000) timestamp from long_sequence(10)) timestamp(timestamp) partition by DAY",
+                32,
+                "'list' or 'where' expected"
+        );
+    }
+
+    @Test
+    public void testCompressPartitionList() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            Assert.assertEquals(ALTER, compiler.compile("alter table x compress partition list '2018-01-02', '2018-01-04'", sqlExecutionContext).getType());
+
+            assertColumnCompressed("2018-01-01", "timestamp", false);
+            assertColumnCompressed("2018-01-02", "timestamp", true);
+            assertColumnCompressed("2018-01-03", "timestamp", false);
+            assertColumnCompressed("2018-01-04", "timestamp", true);
+            // variable length columns compress both files
+            assertColumnCompressed("2018-01-04", "c", true);
+            assertFileExists("2018-01-04", "c.i.z", true);
+            assertFileExists("2018-01-04", "m.i.z", true);
+
+            // timestamps are delta encoded, constant step leaves next to nothing for deflate
+            Assert.assertTrue(fileLength("2018-01-02", "timestamp.d.z") * 50 < 12000 * Long.BYTES);
+
+            assertXY();
+
+            // compressing twice is no-op
+            compile("alter table x compress partition list '2018-01-02'");
+            assertXY();
+        });
+    }
+
+    @Test
+    public void testCompressPartitionWhere() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            // partition blocks are default size here
+            partitionCompressionBlockSize = -1;
+            compile("alter table x compress partition where timestamp < '2018-01-09'");
+            for (int i = 1; i < 9; i++) {
+                assertColumnCompressed("2018-01-0" + i, "j", true);
+            }
+            assertColumnCompressed("2018-01-09", "j", false);
+            assertXY();
+            assertSqlCursors(
+                    "select sym, sum(amt), count() from y where timestamp in '2018-01-03;2d' order by 1",
+                    "select sym, sum(amt), count() from x where timestamp in '2018-01-03;2d' order by 1"
+            );
+        });
+    }
+
+    @Test
+    public void testCompressIndexedColumn() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compile("alter table x alter column sym add index");
+            final long rawSize = fileLength("2018-01-02", "sym.k") + fileLength("2018-01-02", "sym.v");
+
+            // column compression leaves index alone
+            compile("alter table x compress partition where timestamp < '2018-01-06'");
+            assertColumnCompressed("2018-01-02", "sym", true);
+            assertFileExists("2018-01-02", "sym.k", true);
+            assertFileExists("2018-01-02", "sym.pi", false);
+
+            // index compression is applied to all sealed partitions on commit
+            indexCompressionEnabled = true;
+            engine.releaseAllWriters();
+            compile("insert into x select * from y where timestamp in '2018-01-09T08'");
+            compile("insert into y select * from y where timestamp in '2018-01-09T08'");
+
+            assertFileExists("2018-01-02", "sym.k", false);
+            assertFileExists("2018-01-02", "sym.v", false);
+            assertFileExists("2018-01-02", "sym.pi", true);
+            assertFileExists("2018-01-07", "sym.pi", true);
+            assertColumnCompressed("2018-01-07", "sym", false);
+            // active partition keeps appendable index
+            assertFileExists("2018-01-09", "sym.k", true);
+            assertFileExists("2018-01-09", "sym.pi", false);
+            Assert.assertTrue(fileLength("2018-01-02", "sym.pi") * 4 < rawSize);
+
+            engine.releaseAllReaders();
+            assertSqlCursors(
+                    "select * from y where sym = 'ibm'",
+                    "select * from x where sym = 'ibm'"
+            );
+            assertSqlCursors(
+                    "select * from y where sym in ('ibm', 'msft') and timestamp in '2018-01-05T20;8h'",
+                    "select * from x where sym in ('ibm', 'msft') and timestamp in '2018-01-05T20;8h'"
+            );
+            assertSqlCursors(
+                    "select * from y where sym = 'googl' and timestamp < '2018-01-03' order by timestamp desc",
+                    "select * from x where sym = 'googl' and timestamp < '2018-01-03' order by timestamp desc"
+            );
+            assertSqlCursors(
+                    "select * from y latest by sym where timestamp < '2018-01-04'",
+                    "select * from x latest by sym where timestamp < '2018-01-04'"
+            );
+            assertSqlCursors(
+                    "select timestamp, first(amt), last(amt) from y where sym = 'ibm' sample by 1h",
+                    "select timestamp, first(amt), last(amt) from x where sym = 'ibm' sample by 1h"
+            );
+
+            compile("alter table x rename column sym to sym2");
+            assertFileExists("2018-01-02", "sym.pi", false);
+            assertFileExists("2018-01-02", "sym2.pi", true);
+            assertSqlCursors(
+                    "select * from y where sym = 'ibm'",
+                    "select i, sym2 sym, amt, timestamp, b, c, d, e, f, g, ik, j, k, l, m, n from x where sym2 = 'ibm'"
+            );
+        });
+    }
+
+    @Test
+    public void testDropAndRenameColumnOfCompressedPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compile("alter table x compress partition list '2018-01-03'");
+            compile("alter table x drop column n");
+            compile("alter table x rename column j to jj");
+
+            assertFileExists("2018-01-03", "n.d.z", false);
+            assertFileExists("2018-01-03", "n.i.z", false);
+            assertFileExists("2018-01-03", "j.d.z", false);
+            assertColumnCompressed("2018-01-03", "jj", true);
+            assertSqlCursors(
+                    "select i, sym, amt, timestamp, j jj from y",
+                    "select i, sym, amt, timestamp, jj from x"
+            );
+        });
+    }
+
+    @Test
+    public void testO3IntoCompressedPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compile("alter table x compress partition where timestamp < '2018-01-06'");
+            assertColumnCompressed("2018-01-02", "timestamp", true);
+
+            compile("insert into x select * from y where timestamp in '2018-01-02T10'");
+            compile("insert into y select * from y where timestamp in '2018-01-02T10'");
+
+            assertColumnCompressed("2018-01-01", "timestamp", true);
+            assertColumnCompressed("2018-01-03", "timestamp", true);
+            assertFileExists("2018-01-02", "timestamp.d.z", false);
+            assertXY();
+        });
+    }
+
+    @Test
+    public void testO3IntoCompressedIndexedPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            indexCompressionEnabled = true;
+            createXY();
+            compile("alter table x alter column sym add index");
+            compile("alter table x compress partition where timestamp < '2018-01-06'");
+            assertFileExists("2018-01-02", "sym.pi", true);
+
+            compile("insert into x select * from y where timestamp in '2018-01-02T10'");
+            compile("insert into y select * from y where timestamp in '2018-01-02T10'");
+
+            // O3 restores bitmap index of partition it rewrites, commit compresses it again as partition is sealed
+            assertFileExists("2018-01-02", "sym.pi", true);
+            assertFileExists("2018-01-02", "sym.k", false);
+            assertFileExists("2018-01-03", "sym.pi", true);
+            assertXY();
+            assertSqlCursors(
+                    "select * from y where sym = 'msft' order by timestamp",
+                    "select * from x where sym = 'msft'"
+            );
+            assertSqlCursors(
+                    "select * from y where sym in ('msft', 'googl') order by timestamp",
+                    "select * from x where sym in ('msft', 'googl')"
+            );
+        });
+    }
+
+    @Test
+    public void testPartitionChangedWhileCompressed() throws Exception {
+        assertMemoryLeak(() -> {
+            createY();
+            partitionCompressionAge = 3 * Timestamps.DAY_MICROS;
+            compile("create table x as (select * from y) timestamp(timestamp) partition by DAY");
+
+            // partitions are rewritten by O3 before their compressed copies are published
+            compile("insert into x select * from y where timestamp in '2018-01-02T10'");
+            compile("insert into y select * from y where timestamp in '2018-01-02T10'");
+            runCompressionJob();
+            commitX();
+
+            assertColumnCompressed("2018-01-01", "timestamp", true);
+            assertColumnCompressed("2018-01-02", "timestamp", false);
+            assertFileExists("compress-2018-01-02", "timestamp.d.z", false);
+            assertXY();
+
+            // copy that has been dropped is taken again
+            compile("insert into x select * from y where timestamp in '2018-01-09T08'");
+            compile("insert into y select * from y where timestamp in '2018-01-09T08'");
+            runCompressionJob();
+            commitX();
+            assertColumnCompressed("2018-01-02", "timestamp", true);
+            assertXY();
+        });
+    }
+
+    @Test
+    public void testPassiveReaderReleasesDecodedColumns() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compile("alter table x compress partition list '2018-01-02'");
+            engine.releaseAllReaders();
+
+            final int partitionIndex = 1;
+            final long memUsed = Unsafe.getMemUsed();
+            final long address;
+            partitionCompressionCacheSize = 100 * 1024 * 1024;
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                address = decodeTimestampColumn(reader, partitionIndex).getPageAddress(0);
+                Assert.assertTrue(Unsafe.getMemUsed() - memUsed >= fileLength("2018-01-02", "timestamp.d.z"));
+            }
+
+            // pooled reader keeps column open, decoded copy is kept in cache
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                final MemoryR column = getTimestampColumn(reader, partitionIndex);
+                Assert.assertTrue(column instanceof MemoryCMRZImpl);
+                Assert.assertFalse(((MemoryCMRZImpl) column).isDecoded());
+                Assert.assertEquals(address, column.getPageAddress(0));
+            }
+
+            // no cache, decoded copy goes when the reader is returned to pool
+            partitionCompressionCacheSize = 0;
+            engine.releaseAllReaders();
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                decodeTimestampColumn(reader, partitionIndex);
+            }
+            engine.releaseAllReaders();
+            Assert.assertEquals(memUsed, Unsafe.getMemUsed());
+            assertXY();
+        });
+    }
+
+    @Test
+    public void testReaderDecodesColumnsOnFirstAccess() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compile("alter table x compress partition list '2018-01-02'");
+            engine.releaseAllReaders();
+
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                final int partitionIndex = 1;
+                final long memUsed = Unsafe.getMemUsed();
+                Assert.assertTrue(reader.openPartition(partitionIndex) > 0);
+                final int columnBase = reader.getColumnBase(partitionIndex);
+                for (int i = 0, n = reader.getMetadata().getColumnCount(); i < n; i++) {
+                    final MemoryR column = reader.getColumn(TableReader.getPrimaryColumnIndex(columnBase, i));
+                    Assert.assertTrue(column instanceof MemoryCMRZImpl);
+                    Assert.assertFalse(((MemoryCMRZImpl) column).isDecoded());
+                }
+                // open partition costs less than any of its decoded columns
+                Assert.assertTrue(Unsafe.getMemUsed() - memUsed < fileLength("2018-01-02", "j.d.z"));
+
+                final int columnIndex = reader.getMetadata().getColumnIndex("j");
+                final MemoryR column = reader.getColumn(TableReader.getPrimaryColumnIndex(columnBase, columnIndex));
+                Assert.assertNotEquals(Numbers.LONG_NaN, column.getLong(0));
+                Assert.assertTrue(((MemoryCMRZImpl) column).isDecoded());
+                Assert.assertFalse(((MemoryCMRZImpl) getTimestampColumn(reader, partitionIndex)).isDecoded());
+            }
+            assertXY();
+        });
+    }
+
+    @Test
+    public void testReaderKeepsPartitionOpenDuringCompression() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            try (RecordCursorFactory factory = compiler.compile("select * from x", sqlExecutionContext).getRecordCursorFactory()) {
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    compile("alter table x compress partition where timestamp < '2018-01-09'");
+                    // compressed partitions are new versions, reader keeps original ones
+                    assertColumnCompressed("2018-01-02", "timestamp", true);
+                    Assert.assertTrue(new File(root + "/x/2018-01-02/timestamp.d").exists());
+
+                    TestUtils.printSql(compiler, sqlExecutionContext, "y", sink);
+                    final String expected = sink.toString();
+                    sink.clear();
+                    TestUtils.printCursor(cursor, factory.getMetadata(), true, sink, printer);
+                    TestUtils.assertEquals(expected, sink);
+                }
+            }
+            assertXY();
+
+            // original partitions are purged once readers let go of them
+            engine.releaseAllReaders();
+            final O3PurgeDiscoveryJob discoveryJob = new O3PurgeDiscoveryJob(engine.getMessageBus(), 1);
+            final O3PurgeJob purgeJob = new O3PurgeJob(engine.getMessageBus());
+            //noinspection StatementWithEmptyBody
+            while (discoveryJob.run(0) || purgeJob.run(0)) {
+            }
+            Assert.assertFalse(new File(root + "/x/2018-01-02").exists());
+            assertXY();
+        });
+    }
+
+    @Test
+    public void testReadersShareDecompressedColumn() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compile("alter table x compress partition list '2018-01-02'");
+            engine.releaseAllReaders();
+
+            try (
+                    TableReader reader1 = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    TableReader reader2 = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")
+            ) {
+                Assert.assertNotSame(reader1, reader2);
+                final int columnIndex = reader1.getMetadata().getTimestampIndex();
+                final int partitionIndex = 1;
+                Assert.assertTrue(reader1.openPartition(partitionIndex) > 0);
+                Assert.assertTrue(reader2.openPartition(partitionIndex) > 0);
+                final long address1 = reader1.getColumn(TableReader.getPrimaryColumnIndex(reader1.getColumnBase(partitionIndex), columnIndex)).getPageAddress(0);
+                final long address2 = reader2.getColumn(TableReader.getPrimaryColumnIndex(reader2.getColumnBase(partitionIndex), columnIndex)).getPageAddress(0);
+                Assert.assertNotEquals(0, address1);
+                Assert.assertEquals(address1, address2);
+            }
+            assertXY();
+        });
+    }
+
+    private void assertColumnCompressed(String partition, String column, boolean compressed) {
+        assertFileExists(partition, column + ".d", !compressed);
+        assertFileExists(partition, column + ".d.z", compressed);
+    }
+
+    private void assertFileExists(String partition, String file, boolean exists) {
+        try (Path path = new Path()) {
+            path.of(root).concat("x").concat(partitionDir(partition)).concat(file).$();
+            Assert.assertEquals(path.toString(), exists, FilesFacadeImpl.INSTANCE.exists(path));
+        }
+    }
+
+    private void assertXY() throws SqlException {
+        // fresh readers decode compressed partitions
+        engine.releaseAllReaders();
+        assertSqlCursors("y", "x");
+    }
+
+    private void assertSqlCursors(String expected, String actual) throws SqlException {
+        TestUtils.assertSqlCursors(compiler, sqlExecutionContext, expected, actual, LOG);
+    }
+
+    private void commitX() {
+        // commit without rows still switches partitions over to their compressed copies
+        try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "testing")) {
+            writer.commit();
+        }
+    }
+
+    private void compile(String sql) throws SqlException {
+        compiler.compile(sql, sqlExecutionContext);
+    }
+
+    private void createXY() throws SqlException {
+        createY();
+        compile("create table x as (select * from y) timestamp(timestamp) partition by DAY");
+    }
+
+    private void createY() throws SqlException {
+        compile("create table y as (" +
+                "select" +
+                " cast(x as int) i," +
+                " rnd_symbol('msft','ibm', 'googl') sym," +
+                " round(rnd_double(0)*100, 3) amt," +
+                " to_timestamp('2018-01', 'yyyy-MM') + x * 7200000 timestamp," +
+                " rnd_boolean() b," +
+                " rnd_str('ABC', 'CDE', null, 'XYZ') c," +
+                " rnd_double(2) d," +
+                " rnd_float(2) e," +
+                " rnd_short(10,1024) f," +
+                " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) g," +
+                " rnd_symbol(4,4,4,2) ik," +
+                " rnd_long() j," +
+                " timestamp_sequence(0, 1000000000) k," +
+                " rnd_byte(2,50) l," +
+                " rnd_bin(10, 20, 2) m," +
+                " rnd_str(5,16,2) n" +
+                " from long_sequence(100000)" +
+                ") timestamp (timestamp) partition by DAY");
+    }
+
+    private MemoryR decodeTimestampColumn(TableReader reader, int partitionIndex) {
+        final MemoryR column = getTimestampColumn(reader, partitionIndex);
+        Assert.assertNotEquals(0, column.getPageAddress(0));
+        Assert.assertTrue(((MemoryCMRZImpl) column).isDecoded());
+        return column;
+    }
+
+    private long fileLength(String partition, String file) {
+        try (Path path = new Path()) {
+            path.of(root).concat("x").concat(partitionDir(partition)).concat(file).$();
+            return FilesFacadeImpl.INSTANCE.length(path);
+        }
+    }
+
+    private MemoryR getTimestampColumn(TableReader reader, int partitionIndex) {
+        Assert.assertTrue(reader.openPartition(partitionIndex) > 0);
+        final int columnIndex = reader.getMetadata().getTimestampIndex();
+        return reader.getColumn(TableReader.getPrimaryColumnIndex(reader.getColumnBase(partitionIndex), columnIndex));
+    }
+
+    // the most recent version of the partition, compression and O3 write new versions as "partition.txn"
+    private String partitionDir(String partition) {
+        final String[] names = new File(root.toString(), "x").list();
+        String dir = partition;
+        long dirTxn = -1;
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(partition + '.')) {
+                    try {
+                        final long txn = Numbers.parseLong(name, partition.length() + 1, name.length());
+                        if (txn > dirTxn) {
+                            dir = name;
+                            dirTxn = txn;
+                        }
+                    } catch (NumericException ignore) {
+                    }
+                }
+            }
+        }
+        return dir;
+    }
+
+    private void runCompressionJob() {
+        final PartitionCompressionJob job = new PartitionCompressionJob(engine.getMessageBus());
+        //noinspection StatementWithEmptyBody
+        while (job.run(0)) {
+        }
+    }
+}
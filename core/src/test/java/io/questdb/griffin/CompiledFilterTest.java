@@ -0,0 +1,225 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.table.ParallelFilteredRecordCursorFactory;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompiledFilterTest extends AbstractGriffinTest {
+    private static final StringSink expectedSink = new StringSink();
+
+    @Test
+    public void testBindVariable() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            bindVariableService.clear();
+            bindVariableService.setInt(0, 50);
+            bindVariableService.setDouble(1, 0.5);
+            assertCompiled("select * from x where i > $1 and d <= $2", true);
+            bindVariableService.setInt(0, 10);
+            bindVariableService.setDouble(1, 0.25);
+            assertCompiled("select * from x where i > $1 and d <= $2", true);
+        });
+    }
+
+    @Test
+    public void testColumnTop() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            compiler.compile("alter table x add column j int", sqlExecutionContext);
+            compiler.compile("alter table x add column e double", sqlExecutionContext);
+            compiler.compile(
+                    "insert into x select" +
+                            " timestamp_sequence(500000000000, 100000000) ts," +
+                            " rnd_int(0, 100, 2) i," +
+                            " rnd_long(0, 100, 2) l," +
+                            " rnd_double(2) d," +
+                            " rnd_symbol(4,4,4,2) sym," +
+                            " cast(rnd_long(0, 100, 2) as timestamp) t," +
+                            " rnd_int(0, 100, 2) j," +
+                            " rnd_double(2) e" +
+                            " from long_sequence(1000)",
+                    sqlExecutionContext
+            );
+            assertCompiled("select * from x where j > 50", true);
+            assertCompiled("select * from x where j <= 50", true);
+            assertCompiled("select * from x where j != 7", true);
+            assertCompiled("select * from x where e < 0.3 and i > 20", true);
+            assertCompiled("select * from x where e != 0.3", true);
+            assertCompiled("select * from x where e = null", true);
+        });
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertCompiled("select * from x where d < 0.5", true);
+            assertCompiled("select * from x where d >= 0.5", true);
+            assertCompiled("select * from x where 0.5 < d", true);
+            assertCompiled("select * from x where 0.5 >= d", true);
+            assertCompiled("select * from x where d = 0.5", true);
+            assertCompiled("select * from x where d != 0.5", true);
+            assertCompiled("select * from x where d = null", true);
+            assertCompiled("select * from x where d != null", true);
+            assertCompiled("select * from x where i < 20.5", true);
+            assertCompiled("select * from x where l >= 20.5", true);
+        });
+    }
+
+    @Test
+    public void testInt() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertCompiled("select * from x where i = 42", true);
+            assertCompiled("select * from x where i != 42", true);
+            assertCompiled("select * from x where i < 42", true);
+            assertCompiled("select * from x where i > 42", true);
+            assertCompiled("select * from x where i <= 42", true);
+            assertCompiled("select * from x where i >= 42", true);
+            assertCompiled("select * from x where 42 < i", true);
+            assertCompiled("select * from x where 42 >= i", true);
+            assertCompiled("select * from x where i = null", true);
+            assertCompiled("select * from x where i != null", true);
+        });
+    }
+
+    @Test
+    public void testLongAndTimestamp() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertCompiled("select * from x where l = 42", true);
+            assertCompiled("select * from x where l != 42", true);
+            assertCompiled("select * from x where l < 42", true);
+            assertCompiled("select * from x where l >= 42", true);
+            assertCompiled("select * from x where t > 42 and t <= 80", true);
+            assertCompiled("select * from x where t = 42", true);
+        });
+    }
+
+    @Test
+    public void testManyTerms() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            compiler.compile("alter table x add column j int", sqlExecutionContext);
+            compiler.compile(
+                    "insert into x select" +
+                            " timestamp_sequence(500000000000, 100000000) ts," +
+                            " rnd_int(0, 100, 2) i," +
+                            " rnd_long(0, 100, 2) l," +
+                            " rnd_double(2) d," +
+                            " rnd_symbol(4,4,4,2) sym," +
+                            " cast(rnd_long(0, 100, 2) as timestamp) t," +
+                            " rnd_int(0, 100, 2) j" +
+                            " from long_sequence(1000)",
+                    sqlExecutionContext
+            );
+            assertCompiled(
+                    "select * from x where i > 5 and i < 95 and l >= 3 and l != 50 and d > 0.1 and d != 0.5" +
+                            " and t < 90 and sym != 'CPSW' and j != 20 and 0.9 >= d and i != l",
+                    false
+            );
+            assertCompiled(
+                    "select * from x where i > 5 and i < 95 and l >= 3 and l != 50 and d > 0.1 and d != 0.5" +
+                            " and t < 90 and sym != 'CPSW' and j != 20 and 0.9 >= d",
+                    true
+            );
+            assertCompiled("select * from x where j = null and d < 0.5 and i != null", true);
+        });
+    }
+
+    @Test
+    public void testMixedConjunction() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertCompiled("select * from x where i > 10 and l < 90 and d < 0.7 and sym != 'CPSW'", true);
+            assertCompiled("select * from x where i > 10 and l < 90 and i > l", false);
+            assertCompiled("select * from x where i > 10 or l < 90", false);
+        });
+    }
+
+    @Test
+    public void testSymbol() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertCompiled("select * from x where sym = 'CPSW'", true);
+            assertCompiled("select * from x where sym != 'CPSW'", true);
+            assertCompiled("select * from x where sym = 'NONE'", true);
+            assertCompiled("select * from x where sym != 'NONE'", true);
+            assertCompiled("select * from x where sym = null", false);
+            assertCompiled("select * from x where sym != null", false);
+        });
+    }
+
+    private static void assertCompiled(String query, boolean expectCompiled) throws SqlException {
+        final CairoConfiguration vanillaConfiguration = new DefaultCairoConfiguration(root) {
+            @Override
+            public boolean isSqlFilterCompilerEnabled() {
+                return false;
+            }
+        };
+        try (
+                CairoEngine vanillaEngine = new CairoEngine(vanillaConfiguration);
+                SqlCompiler vanillaCompiler = new SqlCompiler(vanillaEngine);
+                SqlExecutionContextImpl vanillaContext = new SqlExecutionContextImpl(vanillaEngine, 1)
+        ) {
+            vanillaContext.with(AllowAllCairoSecurityContext.INSTANCE, bindVariableService, null, -1, null);
+            TestUtils.printSql(vanillaCompiler, vanillaContext, query, expectedSink);
+        }
+
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertEquals(expectCompiled, factory instanceof ParallelFilteredRecordCursorFactory);
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static void createTable() throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " timestamp_sequence(0, 100000000) ts," +
+                        " rnd_int(0, 100, 2) i," +
+                        " rnd_long(0, 100, 2) l," +
+                        " rnd_double(2) d," +
+                        " rnd_symbol(4,4,4,2) sym," +
+                        " cast(rnd_long(0, 100, 2) as timestamp) t" +
+                        " from long_sequence(5000)" +
+                        ") timestamp(ts) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+}
@@ -24,6 +24,7 @@
 
 package io.questdb.griffin;
 
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
 import io.questdb.cairo.sql.RecordCursorFactory;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -47,6 +48,36 @@ public class CopyTest extends AbstractGriffinTest {
         ));
     }
 
+    @Test
+    public void testCopyBinaryFromFile() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x from '/src/test/resources/csv/test-import.csv' with format binary",
+                null,
+                12,
+                "binary format is supported for STDIN only"
+        ));
+    }
+
+    @Test
+    public void testCopyInvalidFormat() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x from stdin with (format json)",
+                null,
+                31,
+                "'csv', 'text' or 'binary' expected"
+        ));
+    }
+
+    @Test
+    public void testCopyUnclosedOptions() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x from stdin with (format csv, header true",
+                null,
+                43,
+                "')' expected"
+        ));
+    }
+
     @Test
     public void testCopyFullHack() throws Exception {
         assertMemoryLeak(() -> assertFailure(
@@ -67,6 +98,46 @@ public class CopyTest extends AbstractGriffinTest {
         ));
     }
 
+    @Test
+    public void testCopyInvalidPartitionBy() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x from '/src/test/resources/csv/test-import-timestamp.csv' with partition by WEEK timestamp ts",
+                null,
+                82,
+                "'NONE', 'DAY', 'MONTH' or 'YEAR' expected"
+        ));
+    }
+
+    @Test
+    public void testCopyPartitionByWithoutTimestamp() throws Exception {
+        assertMemoryLeak(() -> assertFailure(
+                "copy x from '/src/test/resources/csv/test-import-timestamp.csv' with partition by DAY",
+                null,
+                82,
+                "timestamp is required when partition by is specified"
+        ));
+    }
+
+    @Test
+    public void testCopyPartitionByDay() throws Exception {
+        assertMemoryLeak(() -> assertCopyPartitionByDay(sqlExecutionContext));
+    }
+
+    @Test
+    public void testCopyPartitionByDayParallel() throws Exception {
+        assertMemoryLeak(() -> {
+            final SqlExecutionContext executionContext = new SqlExecutionContextImpl(engine, 4, engine.getMessageBus())
+                    .with(
+                            AllowAllCairoSecurityContext.INSTANCE,
+                            bindVariableService,
+                            null,
+                            -1,
+                            null
+                    );
+            assertCopyPartitionByDay(executionContext);
+        });
+    }
+
     @Test
     public void testSimpleCopy() throws Exception {
         assertMemoryLeak(() -> {
@@ -254,6 +325,31 @@ public class CopyTest extends AbstractGriffinTest {
         });
     }
 
+    private void assertCopyPartitionByDay(SqlExecutionContext executionContext) throws SqlException {
+        compiler.compile("copy x from '/src/test/resources/csv/test-import-timestamp.csv' with partition by DAY timestamp ts", executionContext);
+
+        final String expected = "sym\tts\tvalue\n" +
+                "s0\t2021-01-01T00:00:00.000000Z\t0\n" +
+                "s2\t2021-01-01T06:00:00.000000Z\t5\n" +
+                "s1\t2021-01-01T12:00:00.000000Z\t10\n" +
+                "s0\t2021-01-01T18:00:00.000000Z\t3\n" +
+                "s2\t2021-01-02T00:00:00.000000Z\t8\n" +
+                "s1\t2021-01-02T06:00:00.000000Z\t1\n" +
+                "s0\t2021-01-02T12:00:00.000000Z\t6\n" +
+                "s2\t2021-01-02T18:00:00.000000Z\t11\n" +
+                "s1\t2021-01-03T00:00:00.000000Z\t4\n" +
+                "s0\t2021-01-03T06:00:00.000000Z\t9\n" +
+                "s2\t2021-01-03T12:00:00.000000Z\t2\n" +
+                "s1\t2021-01-03T18:00:00.000000Z\t7\n";
+
+        assertQuery(
+                expected,
+                "x",
+                "ts",
+                true
+        );
+    }
+
     protected void assertQuery(String expected, String query, String expectedTimestamp, boolean supportsRandomAccess) throws SqlException {
         try (final RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
             assertFactoryCursor(expected, expectedTimestamp, factory, supportsRandomAccess, sqlExecutionContext, true, true);
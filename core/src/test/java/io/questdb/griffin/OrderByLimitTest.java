@@ -0,0 +1,157 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Test;
+
+public class OrderByLimitTest extends AbstractGriffinTest {
+    private static final StringSink expectedSink = new StringSink();
+
+    @Test
+    public void testLimitLargerThanCursor() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertLimitedSort("select * from x order by i limit 5000");
+            assertLimitedSort("select * from x where i > 3 order by l desc limit 900");
+        });
+    }
+
+    @Test
+    public void testLimitLoHi() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertLimitedSort("select * from x order by l desc limit 10, 20");
+            assertLimitedSort("select * from x order by i, l limit 0, 15");
+            assertLimitedSort("select * from x order by i limit 20, 10");
+            assertLimitedSort("select * from x order by i limit -10");
+            assertLimitedSort("select * from x order by i limit -20, -10");
+        });
+    }
+
+    @Test
+    public void testLimitZero() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertLimitedSort("select * from x order by i limit 0");
+        });
+    }
+
+    @Test
+    public void testMultipleKeys() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertLimitedSort("select * from x order by i desc, s limit 25");
+            assertLimitedSort("select * from x order by sym, d desc limit 25");
+            assertLimitedSort("select * from x order by ts desc limit 7");
+        });
+    }
+
+    @Test
+    public void testSingleKey() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            assertLimitedSort("select * from x order by l limit 10");
+            assertLimitedSort("select * from x order by l desc limit 10");
+            assertLimitedSort("select * from x order by d limit 1");
+            assertLimitedSort("select * from x order by s desc limit 33");
+        });
+    }
+
+    @Test
+    public void testTies() throws Exception {
+        // i has few distinct values, rows that compare as equal must come out
+        // in the same order as with the full sort
+        assertMemoryLeak(() -> {
+            createTable();
+            assertLimitedSort("select * from x order by i limit 30");
+            assertLimitedSort("select * from x order by i desc limit 30");
+            assertLimitedSort("select * from x order by sym limit 100");
+        });
+    }
+
+    @Test
+    public void testTiesLiteral() throws Exception {
+        assertQuery(
+                "k\tv\n" +
+                        "0\t4\n" +
+                        "0\t2\n" +
+                        "1\t5\n",
+                "select * from y order by k limit 3",
+                "create table y as (select x % 2 k, x v from long_sequence(5))",
+                null,
+                true,
+                false,
+                true
+        );
+    }
+
+    private static void assertLimitedSort(String query) throws SqlException {
+        final CairoConfiguration vanillaConfiguration = new DefaultCairoConfiguration(root) {
+            @Override
+            public int getSqlLimitedSortMaxRows() {
+                return -1;
+            }
+        };
+        try (
+                CairoEngine vanillaEngine = new CairoEngine(vanillaConfiguration);
+                SqlCompiler vanillaCompiler = new SqlCompiler(vanillaEngine);
+                SqlExecutionContextImpl vanillaContext = new SqlExecutionContextImpl(vanillaEngine, 1)
+        ) {
+            TestUtils.printSql(vanillaCompiler, vanillaContext, query, expectedSink);
+        }
+
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                cursor.toTop();
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static void createTable() throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " timestamp_sequence(0, 100000000) ts," +
+                        " rnd_int(0, 5, 2) i," +
+                        " rnd_long(0, 1000, 2) l," +
+                        " rnd_double(2) d," +
+                        " rnd_str(3, 3, 2) s," +
+                        " rnd_symbol(4,4,4,2) sym" +
+                        " from long_sequence(1000)" +
+                        ") timestamp(ts) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+}
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.LimitRecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.table.ParallelFilterJob;
+import io.questdb.griffin.engine.table.ParallelFilteredRecordCursorFactory;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.jetbrains.annotations.Nullable;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelFilterTest {
+    private final static Log LOG = LogFactory.getLog(ParallelFilterTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testFilterIntervalParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select * from x where k in '1970-01-02;1d' and a > 50 and b < 0"
+            );
+        });
+    }
+
+    @Test
+    public void testFilterLimitParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(compiler, sqlExecutionContext, vanillaContext, "select * from x where a > 40 limit 5");
+            assertParallelQuery(compiler, sqlExecutionContext, vanillaContext, "select * from x where a > 40 limit -5");
+        });
+    }
+
+    @Test
+    public void testFilterNoRowsParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(compiler, sqlExecutionContext, vanillaContext, "select * from x where a > 1000");
+        });
+    }
+
+    @Test
+    public void testFilterNoWorkers() throws Exception {
+        // without workers the queue fills up and the cursor filters all the slices itself
+        executeWithPool(0, 4, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(compiler, sqlExecutionContext, vanillaContext, "select * from x where a > 40 and b > 0");
+            assertParallelQuery(compiler, sqlExecutionContext, vanillaContext, "select * from x where b < 0 or a < 10");
+        });
+    }
+
+    @Test
+    public void testFilterParallel1() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(compiler, sqlExecutionContext, vanillaContext, "select * from x where a > 40 and b > 0");
+        });
+    }
+
+    @Test
+    public void testFilterParallel2() throws Exception {
+        executeWithPool(8, 2, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(compiler, sqlExecutionContext, vanillaContext, "select * from x where b < 0 or a < 10");
+        });
+    }
+
+    @Test
+    public void testFilterToTopParallel() throws Exception {
+        executeWithPool(4, 4, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            final String query = "select * from x where a > 40";
+            TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof ParallelFilteredRecordCursorFactory);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    // abandon cursor half way and start again
+                    for (int i = 0; i < 10; i++) {
+                        Assert.assertTrue(cursor.hasNext());
+                    }
+                    cursor.toTop();
+                    TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                    cursor.toTop();
+                    TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testStringFilterIsNotParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            try (RecordCursorFactory factory = compiler.compile("select * from x where s = 'ABC'", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertFalse(factory instanceof ParallelFilteredRecordCursorFactory);
+            }
+        });
+    }
+
+    private static void assertParallelQuery(
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof ParallelFilteredRecordCursorFactory || factory instanceof LimitRecordCursorFactory);
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws SqlException {
+        compiler.compile(
+                "create table x as " +
+                        "(" +
+                        "select" +
+                        " timestamp_sequence(0, 1000000000) k," +
+                        " rnd_double(0)*100 a," +
+                        " rnd_int() b," +
+                        " rnd_str(3,3,1) s" +
+                        " from long_sequence(1000)" +
+                        ") timestamp(k) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            ParallelFilterRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return FilesFacadeImpl.INSTANCE;
+                }
+
+                @Override
+                public int getParallelFilterQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public long getSqlParallelFilterFrameRows() {
+                    return 7;
+                }
+            };
+
+            if (workerCount > 0) {
+                int[] affinity = new int[workerCount];
+                for (int i = 0; i < workerCount; i++) {
+                    affinity[i] = -1;
+                }
+
+                WorkerPool pool = new WorkerPool(
+                        new WorkerPoolAwareConfiguration() {
+                            @Override
+                            public int[] getWorkerAffinity() {
+                                return affinity;
+                            }
+
+                            @Override
+                            public int getWorkerCount() {
+                                return workerCount;
+                            }
+
+                            @Override
+                            public boolean haltOnError() {
+                                return false;
+                            }
+
+                            @Override
+                            public boolean isEnabled() {
+                                return true;
+                            }
+                        }
+                );
+                execute(pool, workerCount, runnable, configuration);
+            } else {
+                execute(null, 4, runnable, configuration);
+            }
+        });
+    }
+
+    private static void execute(
+            @Nullable WorkerPool pool,
+            int workerCount,
+            ParallelFilterRunnable runnable,
+            CairoConfiguration configuration
+    ) throws Exception {
+        try (
+                final CairoEngine engine = new CairoEngine(configuration);
+                final SqlCompiler compiler = new SqlCompiler(engine);
+                final SqlExecutionContext sqlExecutionContext = new SqlExecutionContextImpl(engine, workerCount);
+                final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+        ) {
+            try {
+                if (pool != null) {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new ParallelFilterJob(engine.getMessageBus()));
+                    pool.start(LOG);
+                }
+
+                runnable.run(compiler, sqlExecutionContext, vanillaContext);
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+            } finally {
+                if (pool != null) {
+                    pool.halt();
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface ParallelFilterRunnable {
+        void run(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
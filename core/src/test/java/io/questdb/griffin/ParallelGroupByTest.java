@@ -0,0 +1,357 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.groupby.ParallelGroupByJob;
+import io.questdb.griffin.engine.groupby.ParallelGroupByRecordCursorFactory;
+import io.questdb.griffin.engine.table.ParallelFilterJob;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.jetbrains.annotations.Nullable;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelGroupByTest {
+    private final static Log LOG = LogFactory.getLog(ParallelGroupByTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testGroupByCompiledFilterParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select s, count(), sum(l), max(d) from x where a > 50",
+                    "s"
+            );
+        });
+    }
+
+    @Test
+    public void testGroupByComputedKeyParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select s, hour(k) h, count(), sum(a), max(d) from x",
+                    "s, h"
+            );
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select s, i + 1 j, count(), sum(l) from x where a > 20",
+                    "s, j"
+            );
+        });
+    }
+
+    @Test
+    public void testGroupByLongKeyParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select l, count(), sum(a), avg(a), min(d), max(d), min(k), max(k) from x",
+                    "l"
+            );
+        });
+    }
+
+    @Test
+    public void testGroupByMultipleKeysParallel() throws Exception {
+        executeWithPool(8, 2, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select s, i, count(), sum(a), min(d), max(d) from x",
+                    "s, i"
+            );
+        });
+    }
+
+    @Test
+    public void testGroupByNoRowsParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select s, count() from x where a > 1000",
+                    "s"
+            );
+        });
+    }
+
+    @Test
+    public void testGroupByNoWorkers() throws Exception {
+        // without workers the queue fills up and the cursor aggregates all the slices itself
+        executeWithPool(0, 4, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select s, i, count(), sum(l), min(a) from x",
+                    "s, i"
+            );
+        });
+    }
+
+    @Test
+    public void testGroupByReopenCursorParallel() throws Exception {
+        executeWithPool(4, 4, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            final String query = "select s, i, count(), sum(a) from x";
+            TestUtils.printSql(compiler, vanillaContext, query + " order by s, i", expectedSink);
+            try (RecordCursorFactory factory = compiler.compile(query + " order by s, i", sqlExecutionContext).getRecordCursorFactory()) {
+                for (int i = 0; i < 3; i++) {
+                    try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                        TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testGroupByUnsupportedIsNotParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            // string keys
+            assertNotParallel(compiler, sqlExecutionContext, "select str, count() from x");
+            // order dependent function
+            assertNotParallel(compiler, sqlExecutionContext, "select s, first(a) from x");
+            // filter that cannot be compiled
+            assertNotParallel(compiler, sqlExecutionContext, "select s, count() from x where a + l > 50");
+        });
+    }
+
+    @Test
+    public void testGroupByVectorizedIsNotParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            // single int or symbol key with vector aggregates is already parallelized
+            try (RecordCursorFactory factory = compiler.compile("select s, sum(a) from x", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof io.questdb.griffin.engine.groupby.vect.GroupByRecordCursorFactory);
+            }
+        });
+    }
+
+    private static void assertNotParallel(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext, String query) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertFalse(factory instanceof ParallelGroupByRecordCursorFactory);
+        }
+    }
+
+    private static void assertParallelQuery(
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext,
+            SqlExecutionContext vanillaContext,
+            String query,
+            String orderBy
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof ParallelGroupByRecordCursorFactory);
+        }
+        // map order differs between single and multi-threaded execution
+        final String orderedQuery = query + " order by " + orderBy;
+        TestUtils.printSql(compiler, vanillaContext, orderedQuery, expectedSink);
+        try (RecordCursorFactory factory = compiler.compile(orderedQuery, sqlExecutionContext).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws SqlException {
+        // integer valued columns keep sums exact regardless of the order rows are aggregated in
+        compiler.compile(
+                "create table x as " +
+                        "(" +
+                        "select" +
+                        " timestamp_sequence(0, 1000000000) k," +
+                        " rnd_int(0, 100, 0) a," +
+                        " rnd_long(0, 1000, 2) l," +
+                        " rnd_double(2) d," +
+                        " rnd_int(0, 7, 0) i," +
+                        " rnd_symbol('A','B','C','D',null) s," +
+                        " rnd_str(3,3,1) str" +
+                        " from long_sequence(1000)" +
+                        ") timestamp(k) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            ParallelGroupByRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return FilesFacadeImpl.INSTANCE;
+                }
+
+                @Override
+                public int getParallelFilterQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public int getParallelGroupByQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public long getSqlParallelGroupByFrameRows() {
+                    return 7;
+                }
+            };
+
+            if (workerCount > 0) {
+                int[] affinity = new int[workerCount];
+                for (int i = 0; i < workerCount; i++) {
+                    affinity[i] = -1;
+                }
+
+                WorkerPool pool = new WorkerPool(
+                        new WorkerPoolAwareConfiguration() {
+                            @Override
+                            public int[] getWorkerAffinity() {
+                                return affinity;
+                            }
+
+                            @Override
+                            public int getWorkerCount() {
+                                return workerCount;
+                            }
+
+                            @Override
+                            public boolean haltOnError() {
+                                return false;
+                            }
+
+                            @Override
+                            public boolean isEnabled() {
+                                return true;
+                            }
+                        }
+                );
+                execute(pool, workerCount, runnable, configuration);
+            } else {
+                execute(null, 4, runnable, configuration);
+            }
+        });
+    }
+
+    private static void execute(
+            @Nullable WorkerPool pool,
+            int workerCount,
+            ParallelGroupByRunnable runnable,
+            CairoConfiguration configuration
+    ) throws Exception {
+        try (
+                final CairoEngine engine = new CairoEngine(configuration);
+                final SqlCompiler compiler = new SqlCompiler(engine);
+                final SqlExecutionContext sqlExecutionContext = new SqlExecutionContextImpl(engine, workerCount);
+                final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+        ) {
+            try {
+                if (pool != null) {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new ParallelFilterJob(engine.getMessageBus()));
+                    pool.assign(new ParallelGroupByJob(engine.getMessageBus()));
+                    pool.start(LOG);
+                }
+
+                runnable.run(compiler, sqlExecutionContext, vanillaContext);
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+            } finally {
+                if (pool != null) {
+                    pool.halt();
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface ParallelGroupByRunnable {
+        void run(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.RecordCursorPrinter;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.join.ParallelHashJoinJob;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.jetbrains.annotations.Nullable;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+public class ParallelHashJoinTest {
+    private final static Log LOG = LogFactory.getLog(ParallelHashJoinTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    private static CharSequence spillRoot;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+            spillRoot = new DefaultCairoConfiguration(root).getSqlSpillRoot();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testHashJoinFullFatParallel() throws Exception {
+        executeWithPool(4, 16, 100, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTables(compiler, sqlExecutionContext);
+            compiler.setFullSatJoins(true);
+            try {
+                assertParallelJoin(
+                        compiler,
+                        sqlExecutionContext,
+                        vanillaContext,
+                        "select x.k xk, x.s xs, y.j yj, y.str ystr, y.b yb from x join y on x.s = y.s"
+                );
+            } finally {
+                compiler.setFullSatJoins(false);
+            }
+        });
+    }
+
+    @Test
+    public void testHashJoinIntKeyParallel() throws Exception {
+        executeWithPool(4, 16, 100, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTables(compiler, sqlExecutionContext);
+            assertParallelJoin(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select x.k xk, x.a xa, y.j yj, y.s ys from x join y on x.i = y.i"
+            );
+        });
+    }
+
+    @Test
+    public void testHashJoinMultipleKeysParallel() throws Exception {
+        executeWithPool(8, 4, 100, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTables(compiler, sqlExecutionContext);
+            assertParallelJoin(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select x.k xk, x.s xs, y.j yj, y.str ystr from x join y on x.s = y.s and x.i = y.i"
+            );
+        });
+    }
+
+    @Test
+    public void testHashJoinNoWorkers() throws Exception {
+        // without workers the queue fills up and the cursor joins all the partitions itself
+        executeWithPool(0, 4, 100, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTables(compiler, sqlExecutionContext);
+            assertParallelJoin(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select x.k xk, x.s xs, y.j yj from x join y on x.s = y.s"
+            );
+        });
+    }
+
+    @Test
+    public void testHashJoinPastMemoryLimitParallel() throws Exception {
+        // map of the first 100 slave rows fits the limit, partitions in memory outgrow it
+        executeWithPool(4, 16, 100, 32 * 1024, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTables(compiler, sqlExecutionContext);
+            assertParallelJoin(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select x.k xk, x.s xs, y.j yj, y.str ystr from x join y on x.s = y.s and x.i = y.i",
+                    true
+            );
+        });
+    }
+
+    @Test
+    public void testHashJoinReopenCursorParallel() throws Exception {
+        executeWithPool(4, 16, 100, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTables(compiler, sqlExecutionContext);
+            final String query = "select x.k xk, x.s xs, y.j yj from x join y on x.s = y.s order by xk, yj";
+            TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                for (int i = 0; i < 3; i++) {
+                    try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                        TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                    }
+                }
+            }
+            Assert.assertEquals(0, countSpillFiles());
+        });
+    }
+
+    @Test
+    public void testHashJoinToTopParallel() throws Exception {
+        executeWithPool(4, 16, 100, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTables(compiler, sqlExecutionContext);
+            try (RecordCursorFactory factory = compiler.compile("select x.k xk, x.s xs, y.j yj from x join y on x.s = y.s", sqlExecutionContext).getRecordCursorFactory()) {
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    // maps of partitions are released as they are consumed, matches collected to keep
+                    // master order are merged again after toTop()
+                    TestUtils.printCursor(cursor, factory.getMetadata(), true, expectedSink, new RecordCursorPrinter());
+                    cursor.toTop();
+                    TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testHashJoinUnorderedMasterParallel() throws Exception {
+        executeWithPool(4, 16, 100, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTables(compiler, sqlExecutionContext);
+            compiler.compile("create table xn as (select cast(k as long) k, s, i, a from x)", sqlExecutionContext);
+            // master without designated timestamp has no order to keep, partitions come out as they are joined
+            final String query = "select xn.k xk, xn.s xs, y.j yj from xn join y on xn.s = y.s";
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertEquals(-1, factory.getMetadata().getTimestampIndex());
+            }
+            final String orderedQuery = query + " order by xk, yj";
+            TestUtils.printSql(compiler, vanillaContext, orderedQuery, expectedSink);
+            try (RecordCursorFactory factory = compiler.compile(orderedQuery, sqlExecutionContext).getRecordCursorFactory()) {
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                }
+            }
+            Assert.assertEquals(0, countSpillFiles());
+        });
+    }
+
+    @Test
+    public void testHashJoinSmallSlaveIsNotPartitioned() throws Exception {
+        executeWithPool(4, 16, 1_000, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTables(compiler, sqlExecutionContext);
+            try (RecordCursorFactory factory = compiler.compile("select x.i, y.j from x join y on x.s = y.s", sqlExecutionContext).getRecordCursorFactory()) {
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    Assert.assertTrue(cursor.hasNext());
+                    Assert.assertEquals(0, countSpillFiles());
+                }
+            }
+        });
+    }
+
+    private static void assertParallelJoin(
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        assertParallelJoin(compiler, sqlExecutionContext, vanillaContext, query, false);
+    }
+
+    private static void assertParallelJoin(
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext,
+            SqlExecutionContext vanillaContext,
+            String query,
+            boolean spilled
+    ) throws SqlException {
+        // partitioned join merges its partitions back into master order
+        TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertEquals(0, factory.getMetadata().getTimestampIndex());
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                // partitions are written to disk only when they do not fit the memory limit
+                Assert.assertEquals(spilled, countSpillFiles() > 0);
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+        Assert.assertEquals(0, countSpillFiles());
+    }
+
+    private static int countSpillFiles() {
+        final String[] names = new File(spillRoot.toString()).list((dir, name) -> name.startsWith("_spill."));
+        return names == null ? 0 : names.length;
+    }
+
+    private static void createTables(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " timestamp_sequence(0, 1000000) k," +
+                        " rnd_symbol('A','B','C','D',null) s," +
+                        " rnd_int(0, 20, 0) i," +
+                        " rnd_long(0, 1000, 1) a" +
+                        " from long_sequence(1000)" +
+                        ") timestamp(k)",
+                sqlExecutionContext
+        );
+        compiler.compile(
+                "create table y as (" +
+                        "select" +
+                        " x j," +
+                        " rnd_symbol('A','B','C','D',null) s," +
+                        " rnd_int(0, 20, 0) i," +
+                        " rnd_boolean() b," +
+                        " rnd_str(2,2,1) str" +
+                        " from long_sequence(400)" +
+                        ")",
+                sqlExecutionContext
+        );
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            long minRows,
+            ParallelHashJoinRunnable runnable
+    ) throws Exception {
+        executeWithPool(workerCount, queueCapacity, minRows, -1, runnable);
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            long minRows,
+            long memoryLimit,
+            ParallelHashJoinRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return FilesFacadeImpl.INSTANCE;
+                }
+
+                @Override
+                public int getParallelHashJoinQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public long getSqlParallelHashJoinMinRows() {
+                    return minRows;
+                }
+
+                @Override
+                public int getSqlMapPageSize() {
+                    return memoryLimit < 0 ? super.getSqlMapPageSize() : 4096;
+                }
+
+                @Override
+                public long getSqlSpillMemoryLimit() {
+                    return memoryLimit < 0 ? super.getSqlSpillMemoryLimit() : memoryLimit;
+                }
+            };
+
+            if (workerCount > 0) {
+                int[] affinity = new int[workerCount];
+                for (int i = 0; i < workerCount; i++) {
+                    affinity[i] = -1;
+                }
+
+                WorkerPool pool = new WorkerPool(
+                        new WorkerPoolAwareConfiguration() {
+                            @Override
+                            public int[] getWorkerAffinity() {
+                                return affinity;
+                            }
+
+                            @Override
+                            public int getWorkerCount() {
+                                return workerCount;
+                            }
+
+                            @Override
+                            public boolean haltOnError() {
+                                return false;
+                            }
+
+                            @Override
+                            public boolean isEnabled() {
+                                return true;
+                            }
+                        }
+                );
+                execute(pool, workerCount, runnable, configuration);
+            } else {
+                execute(null, 4, runnable, configuration);
+            }
+        });
+    }
+
+    private static void execute(
+            @Nullable WorkerPool pool,
+            int workerCount,
+            ParallelHashJoinRunnable runnable,
+            CairoConfiguration configuration
+    ) throws Exception {
+        try (
+                final CairoEngine engine = new CairoEngine(configuration);
+                final SqlCompiler compiler = new SqlCompiler(engine);
+                final SqlExecutionContext sqlExecutionContext = new SqlExecutionContextImpl(engine, workerCount);
+                final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+        ) {
+            try {
+                if (pool != null) {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new ParallelHashJoinJob(engine.getMessageBus()));
+                    pool.start(LOG);
+                }
+
+                runnable.run(compiler, sqlExecutionContext, vanillaContext);
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+            } finally {
+                if (pool != null) {
+                    pool.halt();
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface ParallelHashJoinRunnable {
+        void run(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
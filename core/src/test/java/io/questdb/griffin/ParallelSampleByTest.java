@@ -0,0 +1,414 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.groupby.ParallelGroupByJob;
+import io.questdb.griffin.engine.groupby.ParallelSampleByFillRecordCursorFactory;
+import io.questdb.griffin.engine.groupby.ParallelSampleByRecordCursorFactory;
+import io.questdb.griffin.engine.table.ParallelFilterJob;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.jetbrains.annotations.Nullable;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelSampleByTest {
+    private final static Log LOG = LogFactory.getLog(ParallelSampleByTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testSampleByAlignToCalendarParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select k, s, count(), sum(a), min(d), max(d) from x sample by 5h align to calendar with offset '00:40'",
+                    "k, s"
+            );
+        });
+    }
+
+    @Test
+    public void testSampleByCompiledFilterParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            // first row does not pass the filter, intervals are aligned to the first row that does
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select k, s, count(), sum(l), max(d) from x where a > 50 sample by 3h",
+                    "k, s"
+            );
+        });
+    }
+
+    @Test
+    public void testSampleByFillLinearParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelFill(compiler, sqlExecutionContext, vanillaContext, "select k, count(), sum(a), max(d) from x where a > 90 sample by 30m fill(linear)", "k");
+            assertParallelFill(compiler, sqlExecutionContext, vanillaContext, "select k, s, count(), sum(a), min(l) from x where a > 90 sample by 30m fill(linear)", "k, s");
+        });
+    }
+
+    @Test
+    public void testSampleByFillNullParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelFill(compiler, sqlExecutionContext, vanillaContext, "select k, count(), sum(a), max(d) from x where a > 90 sample by 30m fill(null)", "k");
+            assertParallelFill(compiler, sqlExecutionContext, vanillaContext, "select k, s, count(), sum(a) from x where a > 90 sample by 30m fill(null)", "k, s");
+        });
+    }
+
+    @Test
+    public void testSampleByFillOrderedByTimestamp() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            final String query = "select k, count(), sum(a) from x where a > 95 sample by 20m fill(linear)";
+            TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof ParallelSampleByFillRecordCursorFactory);
+                for (int i = 0; i < 3; i++) {
+                    try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                        TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSampleByFillPrevParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelFill(compiler, sqlExecutionContext, vanillaContext, "select k, count(), sum(a), max(d) from x where a > 90 sample by 30m fill(prev)", "k");
+            assertParallelFill(compiler, sqlExecutionContext, vanillaContext, "select k, s, count(), sum(a), max(k) from x where a > 90 sample by 30m fill(prev)", "k, s");
+            assertParallelFill(compiler, sqlExecutionContext, vanillaContext, "select k, s, count() from x where a > 90 sample by 1h fill(prev) align to calendar with offset '00:40'", "k, s");
+        });
+    }
+
+    @Test
+    public void testSampleByFillValueParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelFill(compiler, sqlExecutionContext, vanillaContext, "select k, count(), sum(a), max(d) from x where a > 90 sample by 30m fill(0, 1, 2.5)", "k");
+            assertParallelFill(compiler, sqlExecutionContext, vanillaContext, "select k, s, count(), sum(a) from x where a > 90 sample by 30m fill(0, 1)", "k, s");
+            try {
+                compiler.compile("select k, s, count(), sum(a) from x sample by 30m fill(0)", sqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException e) {
+                TestUtils.assertContains(e.getFlyweightMessage(), "not enough values");
+            }
+        });
+    }
+
+    @Test
+    public void testSampleByKeyedParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select k, s, i, count(), sum(a), avg(a), min(l), max(l) from x sample by 1d",
+                    "k, s, i"
+            );
+        });
+    }
+
+    @Test
+    public void testSampleByNoRowsParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select k, s, count() from x where a > 1000 sample by 1h",
+                    "k, s"
+            );
+        });
+    }
+
+    @Test
+    public void testSampleByNoWorkers() throws Exception {
+        executeWithPool(0, 4, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select k, s, count(), sum(l), min(a) from x sample by 2h",
+                    "k, s"
+            );
+        });
+    }
+
+    @Test
+    public void testSampleByNotKeyedParallel() throws Exception {
+        executeWithPool(8, 2, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertParallelQuery(
+                    compiler,
+                    sqlExecutionContext,
+                    vanillaContext,
+                    "select k, count(), sum(a), min(d), max(d) from x sample by 90m",
+                    "k"
+            );
+        });
+    }
+
+    @Test
+    public void testSampleByOrderedByTimestamp() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            final String query = "select k, count() from x sample by 1h";
+            TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof ParallelSampleByRecordCursorFactory);
+                for (int i = 0; i < 3; i++) {
+                    try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                        TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSampleByUnsupportedIsNotParallel() throws Exception {
+        executeWithPool(4, 16, (compiler, sqlExecutionContext, vanillaContext) -> {
+            createTable(compiler, sqlExecutionContext);
+            assertNotParallel(compiler, sqlExecutionContext, "select k, s, first(a) from x sample by 1h fill(prev)");
+            assertNotParallel(compiler, sqlExecutionContext, "select k, s, count() from x sample by 1M");
+            assertNotParallel(compiler, sqlExecutionContext, "select k, s, count() from x sample by 1h align to calendar time zone 'Europe/Berlin'");
+            assertNotParallel(compiler, sqlExecutionContext, "select k, s, first(a) from x sample by 1h");
+            assertNotParallel(compiler, sqlExecutionContext, "select k, str, count() from x sample by 1h");
+        });
+    }
+
+    private static void assertNotParallel(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext, String query) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertFalse(factory instanceof ParallelSampleByRecordCursorFactory);
+        }
+    }
+
+    private static void assertParallelFill(
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext,
+            SqlExecutionContext vanillaContext,
+            String query,
+            String orderBy
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof ParallelSampleByFillRecordCursorFactory);
+        }
+        assertParallelQuery(compiler, sqlExecutionContext, vanillaContext, query, orderBy);
+        Assert.assertTrue(expectedSink.length() > 0);
+    }
+
+    private static void assertParallelQuery(
+            SqlCompiler compiler,
+            SqlExecutionContext sqlExecutionContext,
+            SqlExecutionContext vanillaContext,
+            String query,
+            String orderBy
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof ParallelSampleByRecordCursorFactory);
+        }
+        // map order differs between single and multi-threaded execution
+        final String orderedQuery = query + " order by " + orderBy;
+        TestUtils.printSql(compiler, vanillaContext, orderedQuery, expectedSink);
+        try (RecordCursorFactory factory = compiler.compile(orderedQuery, sqlExecutionContext).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                TestUtils.assertCursor(expectedSink, cursor, factory.getMetadata(), true, sink);
+            }
+        }
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext) throws SqlException {
+        // integer valued columns keep sums exact regardless of the order rows are aggregated in
+        compiler.compile(
+                "create table x as " +
+                        "(" +
+                        "select" +
+                        " timestamp_sequence(0, 100000000) k," +
+                        " rnd_int(0, 100, 0) a," +
+                        " rnd_long(0, 1000, 2) l," +
+                        " rnd_double(2) d," +
+                        " rnd_int(0, 7, 0) i," +
+                        " rnd_symbol('A','B','C','D',null) s," +
+                        " rnd_str(3,3,1) str" +
+                        " from long_sequence(3000)" +
+                        ") timestamp(k) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            ParallelSampleByRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return FilesFacadeImpl.INSTANCE;
+                }
+
+                @Override
+                public int getParallelFilterQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public int getParallelGroupByQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public long getSqlParallelGroupByFrameRows() {
+                    return 7;
+                }
+            };
+
+            if (workerCount > 0) {
+                int[] affinity = new int[workerCount];
+                for (int i = 0; i < workerCount; i++) {
+                    affinity[i] = -1;
+                }
+
+                WorkerPool pool = new WorkerPool(
+                        new WorkerPoolAwareConfiguration() {
+                            @Override
+                            public int[] getWorkerAffinity() {
+                                return affinity;
+                            }
+
+                            @Override
+                            public int getWorkerCount() {
+                                return workerCount;
+                            }
+
+                            @Override
+                            public boolean haltOnError() {
+                                return false;
+                            }
+
+                            @Override
+                            public boolean isEnabled() {
+                                return true;
+                            }
+                        }
+                );
+                execute(pool, workerCount, runnable, configuration);
+            } else {
+                execute(null, 4, runnable, configuration);
+            }
+        });
+    }
+
+    private static void execute(
+            @Nullable WorkerPool pool,
+            int workerCount,
+            ParallelSampleByRunnable runnable,
+            CairoConfiguration configuration
+    ) throws Exception {
+        try (
+                final CairoEngine engine = new CairoEngine(configuration);
+                final SqlCompiler compiler = new SqlCompiler(engine);
+                final SqlExecutionContext sqlExecutionContext = new SqlExecutionContextImpl(engine, workerCount);
+                final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+        ) {
+            try {
+                if (pool != null) {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new ParallelFilterJob(engine.getMessageBus()));
+                    pool.assign(new ParallelGroupByJob(engine.getMessageBus()));
+                    pool.start(LOG);
+                }
+
+                runnable.run(compiler, sqlExecutionContext, vanillaContext);
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+            } finally {
+                if (pool != null) {
+                    pool.halt();
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface ParallelSampleByRunnable {
+        void run(SqlCompiler compiler, SqlExecutionContext sqlExecutionContext, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
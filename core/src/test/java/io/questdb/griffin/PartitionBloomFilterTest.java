@@ -0,0 +1,262 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.DataFrame;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
+import io.questdb.griffin.engine.functions.constants.StrConstant;
+import io.questdb.std.Chars;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.ObjList;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class PartitionBloomFilterTest {
+    private static final StringSink sink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    // counts opens of the first partition's column files, writer opens them too when it builds filters
+    private int firstPartitionOpenCount;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        firstPartitionOpenCount = 0;
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testBindVariableValue() throws Exception {
+        assertWithBloomFilter((engine, compiler, context) -> {
+            createTable(compiler, context);
+            firstPartitionOpenCount = 0;
+            context.getBindVariableService().setStr(0, "trace5000");
+            assertQuery(compiler, context, "id\ttrace\n5000\ttrace5000\n", "select id, trace from x where trace = $1");
+            Assert.assertEquals(0, firstPartitionOpenCount);
+
+            context.getBindVariableService().setStr(0, "trace10");
+            assertQuery(compiler, context, "id\ttrace\n10\ttrace10\n", "select id, trace from x where trace = $1");
+            Assert.assertTrue(firstPartitionOpenCount > 0);
+        });
+    }
+
+    @Test
+    public void testBlocksSkipped() throws Exception {
+        assertWithBloomFilter((engine, compiler, context) -> {
+            createTable(compiler, context);
+            try (
+                    TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    PartitionStatsFilter statsFilter = new PartitionStatsFilter()
+            ) {
+                final ObjList<Function> values = new ObjList<>();
+                values.add(new StrConstant("trace1000"));
+                values.add(new StrConstant("trace3000"));
+                statsFilter.add(reader.getMetadata().getColumnIndex("trace"), ColumnType.STRING, values);
+                final FullFwdDataFrameCursor cursor = new FullFwdDataFrameCursor(statsFilter);
+                statsFilter.of(reader, context);
+                cursor.of(reader);
+
+                sink.clear();
+                DataFrame frame;
+                while ((frame = cursor.next()) != null) {
+                    sink.put(frame.getPartitionIndex()).put(':').put(frame.getRowLo()).put('-').put(frame.getRowHi()).put(',');
+                }
+                // blocks of 128 rows that hold the values and the active partition, which has no filters
+                TestUtils.assertEquals("0:896-1024,2:0-128,4:0-1440,", sink);
+            }
+        });
+    }
+
+    @Test
+    public void testColumnAddedAfterSeal() throws Exception {
+        assertWithBloomFilter((engine, compiler, context) -> {
+            createTable(compiler, context);
+            compiler.compile("alter table x add column k long", context);
+            compiler.compile("insert into x select 7200 + x, concat('trace', 7200 + x), 0, timestamp_sequence(432000000000, 60000000), x from long_sequence(2000)", context);
+            try (
+                    TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    MemoryMR mem = Vm.getMRInstance()
+            ) {
+                Assert.assertTrue(reader.openPartitionBloomFilter(4, reader.getMetadata().getColumnIndex("k"), mem));
+                Assert.assertFalse(reader.openPartitionBloomFilter(0, reader.getMetadata().getColumnIndex("k"), mem));
+            }
+            assertQuery(compiler, context, "id\tk\n9200\t2000\n", "select id, k from x where k = 2000");
+            assertQuery(compiler, context, "count\n7200\n", "select count() from x where k = null");
+        });
+    }
+
+    @Test
+    public void testInList() throws Exception {
+        assertWithBloomFilter((engine, compiler, context) -> {
+            createTable(compiler, context);
+            firstPartitionOpenCount = 0;
+            assertQuery(
+                    compiler,
+                    context,
+                    "id\n3000\n5000\n",
+                    "select id from x where trace in ('trace5000', 'trace3000', 'trace100000')"
+            );
+            Assert.assertEquals(0, firstPartitionOpenCount);
+
+            assertQuery(compiler, context, "id\n10\n5000\n", "select id from x where trace in ('trace5000', 'trace10')");
+            Assert.assertTrue(firstPartitionOpenCount > 0);
+        });
+    }
+
+    @Test
+    public void testLongAndIntEquality() throws Exception {
+        assertWithBloomFilter((engine, compiler, context) -> {
+            createTable(compiler, context);
+            // hash values spread over all partitions, min/max statistics cannot rule any out
+            firstPartitionOpenCount = 0;
+            assertQuery(compiler, context, "id\th\n5000\t6949\n", "select id, h from x where h = 6949");
+            Assert.assertEquals(0, firstPartitionOpenCount);
+
+            assertQuery(compiler, context, "id\th\n5000\t6949\n", "select id, h from x where h = cast(6949 as int)");
+            Assert.assertEquals(0, firstPartitionOpenCount);
+
+            compiler.compile("create table y as (select cast(x * 7919 % 7207 as int) i, timestamp_sequence(0, 60000000) ts from long_sequence(7200)) timestamp(ts) partition by DAY", context);
+            assertQuery(compiler, context, "i\tts\n6949\t1970-01-04T11:19:00.000000Z\n", "select i, ts from y where i = 6949");
+            assertQuery(compiler, context, "i\tts\n6949\t1970-01-04T11:19:00.000000Z\n", "select i, ts from y where i = 6949L");
+        });
+    }
+
+    @Test
+    public void testO3RebuildsFilter() throws Exception {
+        assertWithBloomFilter((engine, compiler, context) -> {
+            createTable(compiler, context);
+            assertQuery(compiler, context, "id\n", "select id from x where trace = 'late'");
+
+            compiler.compile("insert into x select 100000, 'late', 0, cast(3600000000 as timestamp) from long_sequence(1)", context);
+            assertQuery(compiler, context, "id\tts\n100000\t1970-01-01T01:00:00.000000Z\n", "select id, ts from x where trace = 'late'");
+        });
+    }
+
+    @Test
+    public void testRenameAndDropColumn() throws Exception {
+        assertWithBloomFilter((engine, compiler, context) -> {
+            createTable(compiler, context);
+            compiler.compile("alter table x rename column trace to trace_id", context);
+            firstPartitionOpenCount = 0;
+            assertQuery(compiler, context, "id\n7000\n", "select id from x where trace_id = 'trace7000'");
+            Assert.assertEquals(0, firstPartitionOpenCount);
+
+            compiler.compile("alter table x drop column trace_id", context);
+            compiler.compile("alter table x add column trace_id string", context);
+            assertQuery(compiler, context, "count\n7200\n", "select count() from x where trace_id = null");
+            assertQuery(compiler, context, "count\n0\n", "select count() from x where trace_id = 'trace7000'");
+        });
+    }
+
+    private static void assertQuery(SqlCompiler compiler, SqlExecutionContext context, String expected, String query) throws SqlException {
+        TestUtils.printSql(compiler, context, query, sink);
+        TestUtils.assertEquals(expected, sink);
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext context) throws SqlException {
+        // five daily partitions of 1440 rows, trace is unique per row and h is permutation of id
+        compiler.compile("create table x as (" +
+                "select x id, concat('trace', x) trace, x * 7919 % 7207 h, timestamp_sequence(0, 60000000) ts from long_sequence(7200)" +
+                ") timestamp(ts) partition by DAY", context);
+    }
+
+    private void assertWithBloomFilter(BloomFilterRunnable runnable) throws Exception {
+        final FilesFacade ff = new FilesFacadeImpl() {
+            @Override
+            public long openRO(LPSZ name) {
+                if (Chars.contains(name, "1970-01-01") && Chars.endsWith(name, TableUtils.FILE_SUFFIX_D)) {
+                    firstPartitionOpenCount++;
+                }
+                return super.openRO(name);
+            }
+        };
+
+        final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+            @Override
+            public FilesFacade getFilesFacade() {
+                return ff;
+            }
+
+            @Override
+            public int getPartitionBloomFilterBitsPerRow() {
+                // keeps false positive rate low enough for assertions on skipped blocks
+                return 32;
+            }
+
+            @Override
+            public long getPartitionStatsBlockSize() {
+                return 128;
+            }
+
+            @Override
+            public boolean isPartitionBloomFilterEnabled() {
+                return true;
+            }
+        };
+
+        TestUtils.assertMemoryLeak(() -> {
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContextImpl context = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                context.with(AllowAllCairoSecurityContext.INSTANCE, new BindVariableServiceImpl(configuration), null);
+                runnable.run(engine, compiler, context);
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface BloomFilterRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context) throws Exception;
+    }
+}
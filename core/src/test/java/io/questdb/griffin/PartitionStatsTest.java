@@ -0,0 +1,289 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.BindVariableService;
+import io.questdb.cairo.sql.DataFrame;
+import io.questdb.cairo.vm.Vm;
+import io.questdb.cairo.vm.api.MemoryMR;
+import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
+import io.questdb.griffin.engine.functions.constants.LongConstant;
+import io.questdb.std.Chars;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class PartitionStatsTest {
+    private static final StringSink sink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    // counts opens of the first partition's column files, writer opens them too when it computes statistics
+    private int firstPartitionOpenCount;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        firstPartitionOpenCount = 0;
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testBindVariableBounds() throws Exception {
+        assertWithStats((engine, compiler, context) -> {
+            createTable(compiler, context);
+            firstPartitionOpenCount = 0;
+            final BindVariableService bindVariableService = context.getBindVariableService();
+            bindVariableService.setLong(0, 7198);
+            assertQuery(compiler, context, "id\n7199\n7200\n", "select id from x where id > $1");
+            Assert.assertEquals(0, firstPartitionOpenCount);
+
+            bindVariableService.setLong(0, 0);
+            assertQuery(compiler, context, "count\n7200\n", "select count() from x where id > $1");
+            Assert.assertTrue(firstPartitionOpenCount > 0);
+        });
+    }
+
+    @Test
+    public void testBlocksSkipped() throws Exception {
+        assertWithStats((engine, compiler, context) -> {
+            createTable(compiler, context);
+            try (
+                    TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    PartitionStatsFilter statsFilter = new PartitionStatsFilter()
+            ) {
+                final int columnIndex = reader.getMetadata().getColumnIndex("id");
+                final LongConstant value = new LongConstant(1000);
+                statsFilter.add(columnIndex, ColumnType.LONG, value, value);
+                final FullFwdDataFrameCursor cursor = new FullFwdDataFrameCursor(statsFilter);
+                statsFilter.of(reader, context);
+                cursor.of(reader);
+
+                sink.clear();
+                DataFrame frame;
+                while ((frame = cursor.next()) != null) {
+                    sink.put(frame.getPartitionIndex()).put(':').put(frame.getRowLo()).put('-').put(frame.getRowHi()).put(',');
+                }
+                // block of 128 rows that holds id 1000 and the active partition, which has no statistics
+                TestUtils.assertEquals("0:896-1024,4:0-1440,", sink);
+            }
+            assertQuery(compiler, context, "id\tv\n1000\t999\n", "select id, v from x where id = 1000");
+        });
+    }
+
+    @Test
+    public void testColumnAddedAfterSeal() throws Exception {
+        assertWithStats((engine, compiler, context) -> {
+            createTable(compiler, context);
+            compiler.compile("alter table x add column k int", context);
+            compiler.compile("insert into x select 7200 + x, 7199 + x, timestamp_sequence(432000000000, 60000000), cast(x as int) from long_sequence(2000)", context);
+            // partition sealed after the column was added has it as column top of nulls
+            try (
+                    TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    MemoryMR mem = Vm.getMRInstance()
+            ) {
+                Assert.assertTrue(reader.openPartitionStats(4, reader.getMetadata().getColumnIndex("k"), mem));
+                Assert.assertEquals(1440, PartitionStats.getNullCount(mem, 0));
+                Assert.assertFalse(reader.openPartitionStats(0, reader.getMetadata().getColumnIndex("k"), mem));
+            }
+            assertQuery(compiler, context, "id\tk\n9199\t1999\n9200\t2000\n", "select id, k from x where k > 1998");
+            assertQuery(compiler, context, "count\n7200\n", "select count() from x where k = null");
+        });
+    }
+
+    @Test
+    public void testDoubleColumnWithNaN() throws Exception {
+        assertWithStats((engine, compiler, context) -> {
+            compiler.compile("create table y as (" +
+                    "select case when x % 2 = 0 then x * 0.5 else NaN end d, timestamp_sequence(0, 60000000) ts from long_sequence(4320)" +
+                    ") timestamp(ts) partition by DAY", context);
+            assertQuery(compiler, context, "d\n2159.0\n", "select d from y where d > 2158.5 and d < 2159.5");
+            assertQuery(compiler, context, "count\n361\n", "select count() from y where d >= 1800.0");
+            assertQuery(compiler, context, "count\n2160\n", "select count() from y where d = NaN");
+        });
+    }
+
+    @Test
+    public void testIntervalAndStats() throws Exception {
+        assertWithStats((engine, compiler, context) -> {
+            createTable(compiler, context);
+            assertQuery(
+                    compiler,
+                    context,
+                    "id\tts\n1441\t1970-01-02T00:00:00.000000Z\n1442\t1970-01-02T00:01:00.000000Z\n",
+                    "select id, ts from x where ts in '1970-01-02' and id < 1443"
+            );
+            assertQuery(compiler, context, "count\n0\n", "select count() from x where ts in '1970-01-03' and id < 1443");
+        });
+    }
+
+    @Test
+    public void testO3ReplacesStats() throws Exception {
+        assertWithStats((engine, compiler, context) -> {
+            createTable(compiler, context);
+            assertQuery(compiler, context, "id\n", "select id from x where id = 100000");
+
+            compiler.compile("insert into x select 100000, 1, cast(3600000000 as timestamp) from long_sequence(1)", context);
+            assertQuery(compiler, context, "id\tts\n100000\t1970-01-01T01:00:00.000000Z\n", "select id, ts from x where id = 100000");
+            assertQuery(compiler, context, "count\n2\n", "select count() from x where id >= 7200");
+        });
+    }
+
+    @Test
+    public void testPartitionsSkipped() throws Exception {
+        assertWithStats((engine, compiler, context) -> {
+            createTable(compiler, context);
+            assertStatsFiles(engine);
+            firstPartitionOpenCount = 0;
+
+            assertQuery(compiler, context, "id\tv\n5001\t5000\n5002\t5001\n", "select id, v from x where id > 5000 and v < 5002");
+            Assert.assertEquals(0, firstPartitionOpenCount);
+
+            assertQuery(compiler, context, "id\n10\n", "select id from x where 10 = id");
+            Assert.assertTrue(firstPartitionOpenCount > 0);
+        });
+    }
+
+    @Test
+    public void testRenameColumnKeepsStats() throws Exception {
+        assertWithStats((engine, compiler, context) -> {
+            createTable(compiler, context);
+            compiler.compile("alter table x rename column id to id2", context);
+            firstPartitionOpenCount = 0;
+            assertQuery(compiler, context, "id2\n7200\n", "select id2 from x where id2 > 7199");
+            Assert.assertEquals(0, firstPartitionOpenCount);
+
+            compiler.compile("alter table x drop column v", context);
+            compiler.compile("alter table x add column v long", context);
+            assertQuery(compiler, context, "count\n7200\n", "select count() from x where v = null");
+        });
+    }
+
+    private static void assertQuery(SqlCompiler compiler, SqlExecutionContext context, String expected, String query) throws SqlException {
+        TestUtils.printSql(compiler, context, query, sink);
+        TestUtils.assertEquals(expected, sink);
+    }
+
+    private static void assertStatsFiles(CairoEngine engine) {
+        try (
+                TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x");
+                MemoryMR mem = Vm.getMRInstance();
+                Path path = new Path()
+        ) {
+            final int id = reader.getMetadata().getColumnIndex("id");
+            Assert.assertEquals(5, reader.getPartitionCount());
+            for (int i = 0; i < 4; i++) {
+                Assert.assertTrue(reader.openPartitionStats(i, id, mem));
+                Assert.assertEquals(1440, PartitionStats.getRowCount(mem));
+                Assert.assertEquals(12, PartitionStats.getBlockCount(mem));
+                Assert.assertEquals(i * 1440 + 1, PartitionStats.getMin(mem, ColumnType.LONG, 0), 0);
+                Assert.assertEquals(i * 1440 + 1440, PartitionStats.getMax(mem, ColumnType.LONG, 0), 0);
+                Assert.assertEquals(i * 1440 + 129, PartitionStats.getMin(mem, ColumnType.LONG, 2), 0);
+                Assert.assertEquals(0, PartitionStats.getNullCount(mem, 0));
+            }
+            // active partition is not sealed
+            Assert.assertFalse(reader.openPartitionStats(4, id, mem));
+            path.of(root).concat("x").concat("1970-01-05").concat("id").put(TableUtils.FILE_SUFFIX_ST).$();
+            Assert.assertFalse(FilesFacadeImpl.INSTANCE.exists(path));
+        }
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext context) throws SqlException {
+        // five daily partitions of 1440 rows, id is ascending, v trails it by one
+        compiler.compile("create table x as (" +
+                "select x id, x - 1 v, timestamp_sequence(0, 60000000) ts from long_sequence(7200)" +
+                ") timestamp(ts) partition by DAY", context);
+    }
+
+    private void assertWithStats(PartitionStatsRunnable runnable) throws Exception {
+        final FilesFacade ff = new FilesFacadeImpl() {
+            @Override
+            public long openRO(LPSZ name) {
+                if (Chars.contains(name, "1970-01-01") && Chars.endsWith(name, TableUtils.FILE_SUFFIX_D)) {
+                    firstPartitionOpenCount++;
+                }
+                return super.openRO(name);
+            }
+        };
+
+        final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+            @Override
+            public FilesFacade getFilesFacade() {
+                return ff;
+            }
+
+            @Override
+            public long getPartitionStatsBlockSize() {
+                return 128;
+            }
+
+            @Override
+            public boolean isPartitionStatsEnabled() {
+                return true;
+            }
+        };
+
+        TestUtils.assertMemoryLeak(() -> {
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContextImpl context = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                context.with(AllowAllCairoSecurityContext.INSTANCE, new BindVariableServiceImpl(configuration), null);
+                runnable.run(engine, compiler, context);
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface PartitionStatsRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context) throws Exception;
+    }
+}
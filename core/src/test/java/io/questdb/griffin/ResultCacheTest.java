@@ -0,0 +1,355 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.BindVariableService;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
+import io.questdb.griffin.engine.table.ResultCacheRecordCursorFactory;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ResultCacheTest {
+    private static final StringSink sink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    private long cacheSize;
+    private long maxEntrySize;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        cacheSize = 1024 * 1024;
+        maxEntrySize = 64 * 1024;
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testBindVariablesArePartOfKey() throws Exception {
+        assertWithCache((engine, compiler, context) -> {
+            createTable(compiler, context);
+            final String query = "select k, s from x where i = $1";
+            final BindVariableService bindVariableService = context.getBindVariableService();
+
+            bindVariableService.setInt(0, 1);
+            assertQuery(compiler, context, "k\ts\n1\ta\n", query);
+            bindVariableService.setInt(0, 3);
+            assertQuery(compiler, context, "k\ts\n3\tc\n", query);
+            Assert.assertEquals(2, engine.getResultCache().size());
+
+            bindVariableService.setInt(0, 1);
+            assertQuery(compiler, context, "k\ts\n1\ta\n", query);
+            Assert.assertEquals(2, engine.getResultCache().size());
+        });
+    }
+
+    @Test
+    public void testCachedRowsAreServed() throws Exception {
+        assertWithCache((engine, compiler, context) -> {
+            createTable(compiler, context);
+            final ResultCache cache = engine.getResultCache();
+            final String expected = "k\ts\tstr\td\n" +
+                    "1\ta\tx1\t1.5\n" +
+                    "2\tb\tx2\t3.0\n" +
+                    "3\tc\t\tNaN\n" +
+                    "4\t\tx4\t6.0\n";
+            final String query = "select k, s, str, d from x";
+
+            try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof ResultCacheRecordCursorFactory);
+                Assert.assertFalse(factory.recordCursorSupportsRandomAccess());
+
+                try (RecordCursor cursor = factory.getCursor(context)) {
+                    TestUtils.assertCursor(expected, cursor, factory.getMetadata(), true, sink);
+                }
+                Assert.assertEquals(1, cache.size());
+
+                try (RecordCursor cursor = factory.getCursor(context)) {
+                    // entry stays cached while cursor replays it
+                    Assert.assertEquals(1, cache.size());
+                    Assert.assertEquals(4, cursor.size());
+                    TestUtils.assertCursor(expected, cursor, factory.getMetadata(), true, sink);
+                    cursor.toTop();
+                    TestUtils.assertCursor(expected, cursor, factory.getMetadata(), true, sink);
+                }
+                Assert.assertEquals(1, cache.size());
+            }
+
+            // another factory compiled from the same text shares the entry
+            assertQuery(compiler, context, expected, query);
+            Assert.assertEquals(1, cache.size());
+        });
+    }
+
+    @Test
+    public void testCommitInvalidatesEntry() throws Exception {
+        assertWithCache((engine, compiler, context) -> {
+            createTable(compiler, context);
+            final String query = "select count() from x";
+            assertQuery(compiler, context, "count\n4\n", query);
+            Assert.assertEquals(1, engine.getResultCache().size());
+
+            compiler.compile("insert into x select 5, 'e', 'x5', 7.5, 5, cast(5000000 as timestamp) from long_sequence(1)", context);
+            assertQuery(compiler, context, "count\n5\n", query);
+            Assert.assertEquals(1, engine.getResultCache().size());
+        });
+    }
+
+    @Test
+    public void testConcurrentCursorsShareEntry() throws Exception {
+        assertWithCache((engine, compiler, context) -> {
+            createTable(compiler, context);
+            final ResultCache cache = engine.getResultCache();
+            final String expected = "k\ts\n1\ta\n2\tb\n3\tc\n4\t\n";
+            final String query = "select k, s from x";
+            assertQuery(compiler, context, expected, query);
+
+            try (
+                    RecordCursorFactory factory1 = compiler.compile(query, context).getRecordCursorFactory();
+                    RecordCursorFactory factory2 = compiler.compile(query, context).getRecordCursorFactory();
+                    RecordCursor cursor1 = factory1.getCursor(context);
+                    RecordCursor cursor2 = factory2.getCursor(context)
+            ) {
+                Assert.assertEquals(1, cache.size());
+                Assert.assertTrue(cursor1.hasNext());
+                TestUtils.assertCursor(expected, cursor2, factory2.getMetadata(), true, sink);
+                cursor1.toTop();
+                TestUtils.assertCursor(expected, cursor1, factory1.getMetadata(), true, sink);
+            }
+            Assert.assertEquals(1, cache.size());
+        });
+    }
+
+    @Test
+    public void testEvictedEntryFreedOnRelease() throws Exception {
+        assertWithCache((engine, compiler, context) -> {
+            createTable(compiler, context);
+            final ResultCache cache = engine.getResultCache();
+            final String query = "select k from x";
+            assertQuery(compiler, context, "k\n1\n2\n3\n4\n", query);
+
+            final ResultCache.Entry entry = cache.acquire(query + '\u0000');
+            Assert.assertNotNull(entry);
+            final long memorySize = entry.getMemorySize();
+            Assert.assertTrue(memorySize > 0);
+
+            compiler.compile("insert into x select 5, 'e', 'x5', 7.5, 5, cast(5000000 as timestamp) from long_sequence(1)", context);
+            // replaces invalid entry, the one acquired above is no longer cached
+            assertQuery(compiler, context, "k\n1\n2\n3\n4\n5\n", query);
+            Assert.assertEquals(1, cache.size());
+            Assert.assertEquals(4, entry.getRowCount());
+            Assert.assertEquals(memorySize, entry.getMemorySize());
+
+            cache.release(entry);
+            Assert.assertEquals(0, entry.getMemorySize());
+            Assert.assertEquals(1, cache.size());
+        });
+    }
+
+    @Test
+    public void testJoinInvalidatedBySlaveCommit() throws Exception {
+        assertWithCache((engine, compiler, context) -> {
+            createTable(compiler, context);
+            compiler.compile("create table y as (select x k, 'y' || x v from long_sequence(2))", context);
+            final String query = "select x.k, y.v from x join y on k";
+            assertQuery(compiler, context, "k\tv\n1\ty1\n2\ty2\n", query);
+
+            compiler.compile("insert into y select 3, 'y3' from long_sequence(1)", context);
+            assertQuery(compiler, context, "k\tv\n1\ty1\n2\ty2\n3\ty3\n", query);
+        });
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryEvicted() throws Exception {
+        // each entry takes 1600 bytes, 16 bytes per row
+        cacheSize = 4000;
+        maxEntrySize = 2000;
+        assertWithCache((engine, compiler, context) -> {
+            compiler.compile("create table z as (select x k from long_sequence(100))", context);
+            final ResultCache cache = engine.getResultCache();
+            final String query1 = "select sum(k) from (select k from z)";
+            final String query2 = "select k from z";
+            final String query3 = "select k * 2 m from z";
+            final String query4 = "select k * 3 m from z";
+
+            assertQuery(compiler, context, "sum\n5050\n", query1);
+            Assert.assertEquals(1, cache.size());
+            assertCount(compiler, context, query2);
+            assertCount(compiler, context, query3);
+            Assert.assertEquals(3, cache.size());
+
+            // touch second entry, third becomes least recently used
+            assertCount(compiler, context, query2);
+            assertCount(compiler, context, query4);
+            Assert.assertTrue(cache.getMemorySize() <= 4000);
+
+            Assert.assertNotNull(acquireAndRelease(cache, query2));
+            Assert.assertNull(acquireAndRelease(cache, query3));
+            Assert.assertNotNull(acquireAndRelease(cache, query4));
+        });
+    }
+
+    @Test
+    public void testLargeResultNotCached() throws Exception {
+        maxEntrySize = 1024;
+        assertWithCache((engine, compiler, context) -> {
+            compiler.compile("create table z as (select x k from long_sequence(1000))", context);
+            assertQuery(compiler, context, "max\n1000\n", "select max(k) from (select k from z)");
+            assertCount(compiler, context, "select k from z");
+            Assert.assertEquals(1, engine.getResultCache().size());
+        });
+    }
+
+    @Test
+    public void testPartiallyReadResultNotCached() throws Exception {
+        assertWithCache((engine, compiler, context) -> {
+            createTable(compiler, context);
+            try (RecordCursorFactory factory = compiler.compile("select k from x", context).getRecordCursorFactory()) {
+                try (RecordCursor cursor = factory.getCursor(context)) {
+                    Assert.assertTrue(cursor.hasNext());
+                    Assert.assertTrue(cursor.hasNext());
+                }
+            }
+            Assert.assertEquals(0, engine.getResultCache().size());
+        });
+    }
+
+    @Test
+    public void testVolatileQueriesNotCached() throws Exception {
+        assertWithCache((engine, compiler, context) -> {
+            createTable(compiler, context);
+            context.getBindVariableService().setInt("v", 1);
+            assertNotCached(compiler, context, "select k, rnd_int() from x");
+            assertNotCached(compiler, context, "select k from x where ts < now()");
+            assertNotCached(compiler, context, "select k from x where i = :v");
+            assertNotCached(compiler, context, "select x from long_sequence(3)");
+        });
+    }
+
+    private static void assertCount(SqlCompiler compiler, SqlExecutionContext context, String query) throws SqlException {
+        try (
+                RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory();
+                RecordCursor cursor = factory.getCursor(context)
+        ) {
+            long count = 0;
+            while (cursor.hasNext()) {
+                count++;
+            }
+            Assert.assertTrue(count > 0);
+        }
+    }
+
+    private static void assertNotCached(SqlCompiler compiler, SqlExecutionContext context, String query) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            Assert.assertFalse(factory instanceof ResultCacheRecordCursorFactory);
+        }
+    }
+
+    private static void assertQuery(SqlCompiler compiler, SqlExecutionContext context, String expected, String query) throws SqlException {
+        TestUtils.printSql(compiler, context, query, sink);
+        TestUtils.assertEquals(expected, sink);
+    }
+
+    private static void createTable(SqlCompiler compiler, SqlExecutionContext context) throws SqlException {
+        compiler.compile("create table x (k long, s symbol, str string, d double, i int, ts timestamp) timestamp(ts)", context);
+        TestUtils.insert(compiler, context, "insert into x values (1, 'a', 'x1', 1.5, 1, 1000000)");
+        TestUtils.insert(compiler, context, "insert into x values (2, 'b', 'x2', 3.0, 2, 2000000)");
+        TestUtils.insert(compiler, context, "insert into x values (3, 'c', null, NaN, 3, 3000000)");
+        TestUtils.insert(compiler, context, "insert into x values (4, null, 'x4', 6.0, 4, 4000000)");
+    }
+
+    private static ResultCache.Entry acquireAndRelease(ResultCache cache, String query) {
+        final String key = query + '\u0000';
+        final ResultCache.Entry entry = cache.acquire(key);
+        if (entry != null) {
+            cache.release(entry);
+        }
+        return entry;
+    }
+
+    private void assertWithCache(ResultCacheRunnable runnable) throws Exception {
+        final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+            @Override
+            public boolean isSqlResultCacheEnabled() {
+                return true;
+            }
+
+            @Override
+            public long getSqlResultCacheSize() {
+                return cacheSize;
+            }
+
+            @Override
+            public long getSqlResultCacheMaxEntrySize() {
+                return maxEntrySize;
+            }
+
+            @Override
+            public int getSqlResultCachePageSize() {
+                return 1024;
+            }
+        };
+
+        TestUtils.assertMemoryLeak(() -> {
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContextImpl context = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                context.with(AllowAllCairoSecurityContext.INSTANCE, new BindVariableServiceImpl(configuration), null);
+                runnable.run(engine, compiler, context);
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface ResultCacheRunnable {
+        void run(CairoEngine engine, SqlCompiler compiler, SqlExecutionContext context) throws Exception;
+    }
+}
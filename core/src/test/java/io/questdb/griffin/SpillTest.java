@@ -0,0 +1,258 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.groupby.GroupByRecordCursorFactory;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class SpillTest extends AbstractGriffinTest {
+    private static final StringSink expectedSink = new StringSink();
+
+    @Test
+    public void testGroupBySpill() throws Exception {
+        assertMemoryLeak(() -> {
+            createTables();
+            assertSpill("select s, i, count(), sum(a), min(a), count_distinct(str) from x", "s, i");
+        });
+    }
+
+    @Test
+    public void testGroupBySpillCompactMap() throws Exception {
+        defaultMapType = "compact";
+        assertMemoryLeak(() -> {
+            createTables();
+            assertSpill("select str, sum(a), max(k) from x", "str");
+        });
+    }
+
+    @Test
+    public void testGroupBySpillToTop() throws Exception {
+        assertMemoryLeak(() -> {
+            createTables();
+            final String query = "select s, i, sum(a) from x";
+            spillMemoryLimit = 1;
+            try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof GroupByRecordCursorFactory);
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    TestUtils.printCursor(cursor, factory.getMetadata(), true, expectedSink, printer);
+                    cursor.toTop();
+                    TestUtils.printCursor(cursor, factory.getMetadata(), true, sink, printer);
+                    TestUtils.assertEquals(expectedSink, sink);
+                }
+            }
+            assertNoSpillFiles();
+        });
+    }
+
+    @Test
+    public void testHashJoinFullFatSpill() throws Exception {
+        assertMemoryLeak(() -> {
+            createTables();
+            compiler.setFullSatJoins(true);
+            try {
+                assertSpill("select * from x join y on x.s = y.s and x.i = y.i", "k, j");
+            } finally {
+                compiler.setFullSatJoins(false);
+            }
+        });
+    }
+
+    @Test
+    public void testHashJoinLightSpill() throws Exception {
+        assertMemoryLeak(() -> {
+            createTables();
+            assertSpill("select * from x join y on x.str = y.str", "k, j");
+        });
+    }
+
+    @Test
+    public void testHashJoinNoSpill() throws Exception {
+        assertMemoryLeak(() -> {
+            createTables();
+            spillMemoryLimit = Long.MAX_VALUE;
+            try (RecordCursorFactory factory = compiler.compile("select x.i, y.j from x join y on x.s = y.s", sqlExecutionContext).getRecordCursorFactory()) {
+                try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                    Assert.assertTrue(cursor.hasNext());
+                    Assert.assertEquals(0, countSpillFiles());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testHashJoinLightSpillKeepsMasterOrder() throws Exception {
+        assertMemoryLeak(() -> {
+            createTables();
+            assertSpillKeepsOrder("select * from x join y on x.str = y.str");
+        });
+    }
+
+    @Test
+    public void testHashJoinFullFatSpillKeepsMasterOrder() throws Exception {
+        assertMemoryLeak(() -> {
+            createTables();
+            compiler.setFullSatJoins(true);
+            try {
+                assertSpillKeepsOrder("select * from x join y on x.s = y.s and x.i = y.i");
+            } finally {
+                compiler.setFullSatJoins(false);
+            }
+        });
+    }
+
+    @Test
+    public void testHashJoinSampleByKeepsOrder() throws Exception {
+        assertMemoryLeak(() -> {
+            createTables();
+            assertSpillKeepsOrder("select x.k, count() from x join y on x.s = y.s sample by 1h");
+        });
+    }
+
+    @Test
+    public void testSpillMaxSize() throws Exception {
+        assertMemoryLeak(() -> {
+            createTables();
+            spillMemoryLimit = 1;
+            spillMaxSize = 1024;
+            try (RecordCursorFactory factory = compiler.compile("select * from x join y on x.str = y.str", sqlExecutionContext).getRecordCursorFactory()) {
+                try {
+                    factory.getCursor(sqlExecutionContext);
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getFlyweightMessage(), "spill size limit exceeded");
+                }
+            }
+            assertNoSpillFiles();
+        });
+    }
+
+    @Test
+    public void testStaleSpillFilesRemovedOnStartup() throws Exception {
+        assertMemoryLeak(() -> {
+            final File spillRoot = new File(configuration.getSqlSpillRoot().toString());
+            Assert.assertTrue(spillRoot.isDirectory() || spillRoot.mkdirs());
+            final File stale = new File(spillRoot, "_spill.42.0");
+            final File other = new File(spillRoot, "keep.me");
+            try {
+                Assert.assertTrue(stale.createNewFile());
+                Assert.assertTrue(other.createNewFile());
+                try (CairoEngine ignore = new CairoEngine(configuration)) {
+                    Assert.assertFalse(stale.exists());
+                    // files that are not spill files are left alone
+                    Assert.assertTrue(other.exists());
+                }
+            } finally {
+                Assert.assertTrue(other.delete());
+            }
+        });
+    }
+
+    private static void assertNoSpillFiles() {
+        Assert.assertEquals(0, countSpillFiles());
+    }
+
+    private static int countSpillFiles() {
+        final String[] names = new File(configuration.getSqlSpillRoot().toString()).list((dir, name) -> name.startsWith("_spill."));
+        return names == null ? 0 : names.length;
+    }
+
+    private void assertSpill(String query, String orderBy) throws SqlException {
+        // spilled rows come out partition by partition, compare results in a stable order
+        final String orderedQuery = orderBy != null ? query + " order by " + orderBy : query;
+        TestUtils.printSql(compiler, sqlExecutionContext, orderedQuery, expectedSink);
+
+        spillMemoryLimit = 1;
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                Assert.assertTrue(countSpillFiles() > 0);
+                Assert.assertTrue(cursor.hasNext());
+            }
+            // cursor removes its spill files on close
+            assertNoSpillFiles();
+        }
+
+        TestUtils.printSql(compiler, sqlExecutionContext, orderedQuery, sink);
+        TestUtils.assertEquals(expectedSink, sink);
+        assertNoSpillFiles();
+        spillMemoryLimit = -1;
+    }
+
+    // spilled join must report master timestamp and return rows exactly as the join that fits the memory
+    private void assertSpillKeepsOrder(String query) throws SqlException {
+        TestUtils.printSql(compiler, sqlExecutionContext, query, expectedSink);
+
+        spillMemoryLimit = 1;
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertEquals(0, factory.getMetadata().getTimestampIndex());
+            try (RecordCursor cursor = factory.getCursor(sqlExecutionContext)) {
+                Assert.assertTrue(countSpillFiles() > 0);
+                TestUtils.printCursor(cursor, factory.getMetadata(), true, sink, printer);
+                TestUtils.assertEquals(expectedSink, sink);
+
+                cursor.toTop();
+                TestUtils.printCursor(cursor, factory.getMetadata(), true, sink, printer);
+                TestUtils.assertEquals(expectedSink, sink);
+            }
+            assertNoSpillFiles();
+        }
+        spillMemoryLimit = -1;
+    }
+
+    private void createTables() throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " timestamp_sequence(0, 1000000) k," +
+                        " rnd_symbol('A','B','C',null) s," +
+                        " rnd_int(0, 50, 0) i," +
+                        " rnd_long(0, 1000, 1) a," +
+                        " rnd_str(2,2,0) str" +
+                        " from long_sequence(2000)" +
+                        ") timestamp(k)",
+                sqlExecutionContext
+        );
+        compiler.compile(
+                "create table y as (" +
+                        "select" +
+                        " x j," +
+                        " rnd_symbol('A','B','C',null) s," +
+                        " rnd_int(0, 50, 0) i," +
+                        " rnd_boolean() b," +
+                        " rnd_str(2,2,0) str" +
+                        " from long_sequence(500)" +
+                        ")",
+                sqlExecutionContext
+        );
+    }
+}
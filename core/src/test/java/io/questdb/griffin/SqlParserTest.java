@@ -157,6 +157,56 @@ public class SqlParserTest extends AbstractSqlParserTest {
         );
     }
 
+    @Test
+    public void testAnalyticFrameStartAfterEnd() throws Exception {
+        assertSyntaxError(
+                "select a, f(c) over (order by ts rows between current row and 2 preceding) from xyz",
+                33,
+                "frame start must not follow frame end",
+                modelOf("xyz")
+                        .col("a", ColumnType.INT)
+                        .col("c", ColumnType.INT)
+                        .timestamp("ts")
+        );
+    }
+
+    @Test
+    public void testAnalyticFrameRange() throws Exception {
+        assertQuery(
+                "select-analytic a, f(c) f over (partition by a order by ts range between 1000000 preceding and current row) from (select [a, c, ts] from xyz timestamp (ts))",
+                "select a, f(c) over (partition by a order by ts range between 1000000 preceding and current row) from xyz",
+                modelOf("xyz")
+                        .col("a", ColumnType.INT)
+                        .col("c", ColumnType.INT)
+                        .timestamp("ts")
+        );
+    }
+
+    @Test
+    public void testAnalyticFrameRowsShortForm() throws Exception {
+        assertQuery(
+                "select-analytic a, f(c) f over (order by ts rows between 3 preceding and current row), g(c) g over (rows between unbounded preceding and unbounded following) from (select [a, c, ts] from xyz timestamp (ts))",
+                "select a, f(c) over (order by ts rows 3 preceding), g(c) over (rows between unbounded preceding and unbounded following) from xyz",
+                modelOf("xyz")
+                        .col("a", ColumnType.INT)
+                        .col("c", ColumnType.INT)
+                        .timestamp("ts")
+        );
+    }
+
+    @Test
+    public void testAnalyticFrameUnboundedFollowingStart() throws Exception {
+        assertSyntaxError(
+                "select a, f(c) over (order by ts rows between unbounded following and current row) from xyz",
+                33,
+                "frame start cannot be 'unbounded following'",
+                modelOf("xyz")
+                        .col("a", ColumnType.INT)
+                        .col("c", ColumnType.INT)
+                        .timestamp("ts")
+        );
+    }
+
     @Test
     public void testAnalyticOrderDirection() throws Exception {
         assertQuery(
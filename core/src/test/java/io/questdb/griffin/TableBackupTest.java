@@ -30,6 +30,7 @@ import io.questdb.cairo.CairoException;
 import io.questdb.cairo.DefaultCairoConfiguration;
 import io.questdb.cairo.security.AllowAllCairoSecurityContext;
 import io.questdb.griffin.engine.functions.bind.BindVariableServiceImpl;
+import io.questdb.std.Chars;
 import io.questdb.std.FilesFacade;
 import io.questdb.std.FilesFacadeImpl;
 import io.questdb.std.Misc;
@@ -44,6 +45,7 @@ import org.junit.*;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 public class TableBackupTest {
     private static final StringSink sink1 = new StringSink();
@@ -422,6 +424,95 @@ public class TableBackupTest {
         });
     }
 
+    @Test
+    public void testSnapshotDatabase() throws Exception {
+        assertMemoryLeak(() -> {
+            // @formatter:off
+            mainCompiler.compile("create table tb1 as (select" +
+                    " rnd_symbol(4,4,4,2) sym," +
+                    " rnd_double(2) d," +
+                    " timestamp_sequence(0, 1000000000) ts" +
+                    " from long_sequence(10000)) timestamp(ts) partition by DAY", mainSqlExecutionContext);
+            mainCompiler.compile("create table tb2 as (select" +
+                    " rnd_long256() ll," +
+                    " rnd_str(3,3,2) s," +
+                    " timestamp_sequence(10000000000, 500000000) ts" +
+                    " from long_sequence(1000)) timestamp(ts)", mainSqlExecutionContext);
+            // @formatter:on
+
+            mainCompiler.compile("backup database snapshot;", mainSqlExecutionContext);
+
+            setFinalBackupPath();
+
+            assertTables("tb1");
+            assertTables("tb2");
+        });
+    }
+
+    @Test
+    public void testSnapshotInvalidSql() throws Exception {
+        assertMemoryLeak(() -> {
+            // @formatter:off
+            mainCompiler.compile("create table tb1 as (select" +
+                    " rnd_double(2) d," +
+                    " timestamp_sequence(0, 1000000000) ts" +
+                    " from long_sequence(10)) timestamp(ts)", mainSqlExecutionContext);
+            // @formatter:on
+            try {
+                mainCompiler.compile("backup table tb1 snapshot tb2", mainSqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException ex) {
+                Assert.assertEquals(26, ex.getPosition());
+                TestUtils.assertEquals("unexpected token [tb2]", ex.getFlyweightMessage());
+            }
+
+            try {
+                mainCompiler.compile("backup database tb1", mainSqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException ex) {
+                Assert.assertEquals(16, ex.getPosition());
+                TestUtils.assertEquals("expected 'snapshot' or end of statement", ex.getFlyweightMessage());
+            }
+        });
+    }
+
+    @Test
+    public void testSnapshotPartitionedTable() throws Exception {
+        assertMemoryLeak(() -> {
+            String tableName = "testTable1";
+            // @formatter:off
+            mainCompiler.compile("create table " + tableName + " as (select" +
+                    " rnd_symbol(4,4,4,2) sym," +
+                    " rnd_double(2) d," +
+                    " rnd_str(3,3,2) s," +
+                    " timestamp_sequence(0, 1000000000) ts" +
+                    " from long_sequence(10000)), index(sym) timestamp(ts) partition by DAY", mainSqlExecutionContext);
+            // @formatter:on
+
+            mainCompiler.compile("backup table " + tableName + " snapshot", mainSqlExecutionContext);
+            setFinalBackupPath();
+            StringSink sink3 = new StringSink();
+            selectAll(tableName, false, sink1);
+            selectAll(tableName, true, sink3);
+            TestUtils.assertEquals(sink1, sink3);
+
+            // sealed partition is linked, the last one is copied
+            Assert.assertEquals(2, linkCount(tableName, "1970-01-01"));
+            Assert.assertEquals(1, linkCount(tableName, "1970-04-26"));
+
+            // @formatter:off
+            mainCompiler.compile("insert into " + tableName +
+                    " select * from (" +
+                    " select rnd_symbol(4,4,4,2) sym, rnd_double(2) d, rnd_str(3,3,2) s, timestamp_sequence(500000000, 7000000000) ts from long_sequence(1000)" +
+                    ") timestamp(ts)", mainSqlExecutionContext);
+            // @formatter:on
+
+            // snapshot is not affected by data written after it was taken
+            selectAll(tableName, true, sink1);
+            TestUtils.assertEquals(sink3, sink1);
+        });
+    }
+
     @Test
     public void testSuccessiveBackups() throws Exception {
         assertMemoryLeak(() -> {
@@ -524,6 +615,10 @@ public class TableBackupTest {
         });
     }
 
+    private long linkCount(String tableName, String partitionName) throws IOException {
+        return ((Number) java.nio.file.Files.getAttribute(Paths.get(Chars.toString(finalBackupPath), tableName, partitionName, "d.d"), "unix:nlink")).longValue();
+    }
+
     private void selectAll(String tableName, boolean backup, MutableCharSink sink) throws Exception {
         CairoEngine engine = null;
         SqlCompiler compiler = null;
@@ -0,0 +1,489 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.functions.analytic;
+
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.AbstractGriffinTest;
+import io.questdb.griffin.engine.analytic.AnalyticRecordCursorFactory;
+import io.questdb.griffin.engine.analytic.CachedAnalyticRecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.std.Rnd;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnalyticFunctionTest extends AbstractGriffinTest {
+    private static final String DDL = "create table x as (" +
+            "select rnd_symbol('a','b') s, cast(x as double) d, timestamp_sequence(0, 1000000) ts from long_sequence(8)" +
+            ") timestamp(ts)";
+
+    @Before
+    public void setUp3() {
+        SharedRandom.RANDOM.set(new Rnd());
+    }
+
+    @Test
+    public void testAvgRowsFrame() throws Exception {
+        assertQuery(
+                "s\td\tavg\n" +
+                        "a\t1.0\t1.0\n" +
+                        "a\t2.0\t1.5\n" +
+                        "b\t3.0\t2.0\n" +
+                        "b\t4.0\t3.0\n" +
+                        "b\t5.0\t4.0\n" +
+                        "b\t6.0\t5.0\n" +
+                        "a\t7.0\t6.0\n" +
+                        "b\t8.0\t7.0\n",
+                "select s, d, avg(d) over (order by ts rows between 2 preceding and current row) from x",
+                DDL,
+                null,
+                false,
+                true,
+                true
+        );
+    }
+
+    @Test
+    public void testFirstValueRowsFrame() throws Exception {
+        assertQuery(
+                "s\td\tfirst_value\n" +
+                        "a\t1.0\t1.0\n" +
+                        "a\t2.0\t1.0\n" +
+                        "b\t3.0\t3.0\n" +
+                        "b\t4.0\t3.0\n" +
+                        "b\t5.0\t4.0\n" +
+                        "b\t6.0\t5.0\n" +
+                        "a\t7.0\t2.0\n" +
+                        "b\t8.0\t6.0\n",
+                "select s, d, first_value(d) over (partition by s order by ts rows 1 preceding) from x",
+                DDL,
+                null,
+                false,
+                true,
+                true
+        );
+    }
+
+    @Test
+    public void testFrameMustEndAtCurrentRow() throws Exception {
+        assertFailure(
+                "select d, sum(d) over (order by ts rows between 1 preceding and 1 following) from x",
+                DDL,
+                35,
+                "frame must end at current row or at partition end"
+        );
+    }
+
+    @Test
+    public void testLagLead() throws Exception {
+        assertQuery(
+                "s\td\tlag\tlead\n" +
+                        "a\t1.0\tNaN\t7.0\n" +
+                        "a\t2.0\t1.0\t-1.0\n" +
+                        "b\t3.0\tNaN\t5.0\n" +
+                        "b\t4.0\t3.0\t6.0\n" +
+                        "b\t5.0\t4.0\t8.0\n" +
+                        "b\t6.0\t5.0\t-1.0\n" +
+                        "a\t7.0\t2.0\t-1.0\n" +
+                        "b\t8.0\t6.0\t-1.0\n",
+                "select s, d, lag(d) over (partition by s order by ts), lead(d, 2, -1) over (partition by s order by ts) from x",
+                DDL,
+                null,
+                true
+        );
+    }
+
+    @Test
+    public void testLagLeadOffsets() throws Exception {
+        assertQuery(
+                "d\tlag\tlag1\tlead\n" +
+                        "1.0\t1.0\t0.0\t1.0\n" +
+                        "2.0\t2.0\t0.0\t2.0\n" +
+                        "3.0\t3.0\t0.0\t3.0\n" +
+                        "4.0\t4.0\t1.0\t4.0\n" +
+                        "5.0\t5.0\t2.0\t5.0\n" +
+                        "6.0\t6.0\t3.0\t6.0\n" +
+                        "7.0\t7.0\t4.0\t7.0\n" +
+                        "8.0\t8.0\t5.0\t8.0\n",
+                "select d, lag(d, 0) over (), lag(d, 3, 0) over (order by ts), lead(d, 0) over () from x",
+                DDL,
+                null,
+                true
+        );
+    }
+
+    @Test
+    public void testLagNegativeOffset() throws Exception {
+        assertFailure(
+                "select d, lag(d, -1) over () from x",
+                DDL,
+                17,
+                "offset must be a non-negative integer"
+        );
+    }
+
+    @Test
+    public void testLastValueWholePartition() throws Exception {
+        assertQuery(
+                "s\td\tlast_value\tmin\n" +
+                        "a\t1.0\t8.0\t1.0\n" +
+                        "a\t2.0\t8.0\t1.0\n" +
+                        "b\t3.0\t8.0\t1.0\n" +
+                        "b\t4.0\t8.0\t1.0\n" +
+                        "b\t5.0\t8.0\t1.0\n" +
+                        "b\t6.0\t8.0\t1.0\n" +
+                        "a\t7.0\t8.0\t1.0\n" +
+                        "b\t8.0\t8.0\t1.0\n",
+                "select s, d, last_value(d) over (), min(d) over (order by ts) from x",
+                DDL,
+                null,
+                true
+        );
+    }
+
+    @Test
+    public void testLeadTooManyArguments() throws Exception {
+        assertFailure(
+                "select d, lead(d, 1, 2, 3) over () from x",
+                DDL,
+                24,
+                "too many arguments"
+        );
+    }
+
+    @Test
+    public void testMaxRangeFrame() throws Exception {
+        assertQuery(
+                "s\td\tmax\n" +
+                        "a\t1.0\t1.0\n" +
+                        "a\t2.0\t2.0\n" +
+                        "b\t3.0\t3.0\n" +
+                        "b\t4.0\t4.0\n" +
+                        "b\t5.0\t5.0\n" +
+                        "b\t6.0\t6.0\n" +
+                        "a\t7.0\t7.0\n" +
+                        "b\t8.0\t8.0\n",
+                "select s, d, max(d) over (partition by s order by ts range between 2000000 preceding and current row) from x",
+                DDL,
+                null,
+                false,
+                true,
+                true
+        );
+    }
+
+    @Test
+    public void testMinMaxFramesMatchReference() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table y as (" +
+                            "select rnd_symbol('a','b','c') s, rnd_double(2) d, timestamp_sequence(0, rnd_long(1, 3000000, 0)) ts from long_sequence(5000)" +
+                            ") timestamp(ts)",
+                    sqlExecutionContext
+            );
+
+            final int n = 5000;
+            final CharSequence[] partitions = new CharSequence[n];
+            final double[] values = new double[n];
+            final long[] timestamps = new long[n];
+            try (
+                    RecordCursorFactory factory = compiler.compile("y", sqlExecutionContext).getRecordCursorFactory();
+                    RecordCursor cursor = factory.getCursor(sqlExecutionContext)
+            ) {
+                final Record record = cursor.getRecord();
+                int i = 0;
+                while (cursor.hasNext()) {
+                    partitions[i] = record.getSym(0).toString();
+                    values[i] = record.getDouble(1);
+                    timestamps[i] = record.getTimestamp(2);
+                    i++;
+                }
+                Assert.assertEquals(n, i);
+            }
+
+            try (
+                    RecordCursorFactory factory = compiler.compile(
+                            "select " +
+                                    "min(d) over (partition by s order by ts rows between 7 preceding and current row), " +
+                                    "max(d) over (partition by s order by ts rows between 7 preceding and current row), " +
+                                    "max(d) over (partition by s order by ts range between 20000000 preceding and current row) " +
+                                    "from y",
+                            sqlExecutionContext
+                    ).getRecordCursorFactory();
+                    RecordCursor cursor = factory.getCursor(sqlExecutionContext)
+            ) {
+                final Record record = cursor.getRecord();
+                int i = 0;
+                while (cursor.hasNext()) {
+                    double rowsMin = Double.NaN;
+                    double rowsMax = Double.NaN;
+                    double rangeMax = Double.NaN;
+                    int rows = 0;
+                    for (int j = i; j > -1; j--) {
+                        if (!partitions[j].equals(partitions[i])) {
+                            continue;
+                        }
+                        final double v = values[j];
+                        if (Double.isNaN(v)) {
+                            rows++;
+                            continue;
+                        }
+                        if (rows++ <= 7) {
+                            rowsMin = Double.isNaN(rowsMin) ? v : Math.min(rowsMin, v);
+                            rowsMax = Double.isNaN(rowsMax) ? v : Math.max(rowsMax, v);
+                        }
+                        if (timestamps[j] >= timestamps[i] - 20000000) {
+                            rangeMax = Double.isNaN(rangeMax) ? v : Math.max(rangeMax, v);
+                        }
+                    }
+                    assertDouble(rowsMin, record.getDouble(0));
+                    assertDouble(rowsMax, record.getDouble(1));
+                    assertDouble(rangeMax, record.getDouble(2));
+                    i++;
+                }
+                Assert.assertEquals(n, i);
+            }
+        });
+    }
+
+    @Test
+    public void testNonAnalyticFunction() throws Exception {
+        assertFailure(
+                "select d, abs(d) over () from x",
+                DDL,
+                10,
+                "non-analytic function called in analytic context"
+        );
+    }
+
+    @Test
+    public void testRangeFrameDescendingOrder() throws Exception {
+        assertFailure(
+                "select d, sum(d) over (order by ts desc range between 1 preceding and current row) from x",
+                DDL,
+                40,
+                "RANGE frame requires single ascending ORDER BY column"
+        );
+    }
+
+    @Test
+    public void testRangeFrameOrderByType() throws Exception {
+        assertFailure(
+                "select d, sum(d) over (order by s range between 1 preceding and current row) from x",
+                DDL,
+                34,
+                "RANGE frame requires ORDER BY column of timestamp or long type"
+        );
+    }
+
+    @Test
+    public void testRunningSumStreams() throws Exception {
+        assertQuery(
+                "s\td\tsum\n" +
+                        "a\t1.0\t1.0\n" +
+                        "a\t2.0\t3.0\n" +
+                        "b\t3.0\t3.0\n" +
+                        "b\t4.0\t7.0\n" +
+                        "b\t5.0\t12.0\n" +
+                        "b\t6.0\t18.0\n" +
+                        "a\t7.0\t10.0\n" +
+                        "b\t8.0\t26.0\n",
+                "select s, d, sum(d) over (partition by s order by ts) from x",
+                DDL,
+                null,
+                false,
+                true,
+                true
+        );
+
+        assertMemoryLeak(() -> {
+            try (RecordCursorFactory factory = compiler.compile("select s, sum(d) over (partition by s order by ts) from x", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof AnalyticRecordCursorFactory);
+            }
+            // lead needs rows that follow, input is materialized
+            try (RecordCursorFactory factory = compiler.compile("select s, lead(d) over (partition by s order by ts) from x", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof CachedAnalyticRecordCursorFactory);
+            }
+        });
+    }
+
+    @Test
+    public void testStreamingMatchesReference() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table y as (" +
+                            "select rnd_symbol('a','b','c','d','e') s, rnd_double(2) d, timestamp_sequence(0, 1000000) ts from long_sequence(10000)" +
+                            ") timestamp(ts)",
+                    sqlExecutionContext
+            );
+
+            final int n = 10000;
+            final CharSequence[] partitions = new CharSequence[n];
+            final double[] values = new double[n];
+            final long[] timestamps = new long[n];
+            try (
+                    RecordCursorFactory factory = compiler.compile("y", sqlExecutionContext).getRecordCursorFactory();
+                    RecordCursor cursor = factory.getCursor(sqlExecutionContext)
+            ) {
+                final Record record = cursor.getRecord();
+                int i = 0;
+                while (cursor.hasNext()) {
+                    partitions[i] = record.getSym(0).toString();
+                    values[i] = record.getDouble(1);
+                    timestamps[i] = record.getTimestamp(2);
+                    i++;
+                }
+                Assert.assertEquals(n, i);
+            }
+
+            try (
+                    RecordCursorFactory factory = compiler.compile(
+                            "select " +
+                                    "sum(d) over (partition by s order by ts rows between 10 preceding and current row), " +
+                                    "min(d) over (partition by s order by ts range between 100000000 preceding and current row), " +
+                                    "avg(d) over (partition by s), " +
+                                    "lag(d, 3) over (partition by s order by ts) " +
+                                    "from y",
+                            sqlExecutionContext
+                    ).getRecordCursorFactory();
+                    RecordCursor cursor = factory.getCursor(sqlExecutionContext)
+            ) {
+                final Record record = cursor.getRecord();
+                int i = 0;
+                while (cursor.hasNext()) {
+                    double sum = 0;
+                    long sumCount = 0;
+                    double min = Double.NaN;
+                    double total = 0;
+                    long totalCount = 0;
+                    double lag = Double.NaN;
+                    int rows = 0;
+                    int preceding = 0;
+                    for (int j = n - 1; j > -1; j--) {
+                        if (!partitions[j].equals(partitions[i])) {
+                            continue;
+                        }
+                        final double v = values[j];
+                        if (!Double.isNaN(v)) {
+                            total += v;
+                            totalCount++;
+                        }
+                        if (j > i) {
+                            continue;
+                        }
+                        if (rows++ <= 10 && !Double.isNaN(v)) {
+                            sum += v;
+                            sumCount++;
+                        }
+                        if (timestamps[j] >= timestamps[i] - 100000000 && !Double.isNaN(v) && (Double.isNaN(min) || v < min)) {
+                            min = v;
+                        }
+                        if (j < i && ++preceding == 3) {
+                            lag = v;
+                        }
+                    }
+                    assertDouble(sumCount > 0 ? sum : Double.NaN, record.getDouble(0));
+                    assertDouble(min, record.getDouble(1));
+                    assertDouble(totalCount > 0 ? total / totalCount : Double.NaN, record.getDouble(2));
+                    assertDouble(lag, record.getDouble(3));
+                    i++;
+                }
+                Assert.assertEquals(n, i);
+            }
+        });
+    }
+
+    @Test
+    public void testSlidingSumIsCompensated() throws Exception {
+        // large value leaves the frame without taking the small ones along
+        assertQuery(
+                "d\tsum\tavg\n" +
+                        "1.0E16\t1.0E16\t1.0E16\n" +
+                        "1.0\t1.0E16\t5.0E15\n" +
+                        "1.0\t1.0000000000000002E16\t3.333333333333334E15\n" +
+                        "1.0\t3.0\t1.0\n" +
+                        "1.0\t3.0\t1.0\n",
+                "select d, " +
+                        "sum(d) over (order by ts rows between 2 preceding and current row), " +
+                        "avg(d) over (order by ts rows between 2 preceding and current row) " +
+                        "from z",
+                "create table z as (" +
+                        "select case when x = 1 then 1e16 else 1.0 end d, timestamp_sequence(0, 1000000) ts from long_sequence(5)" +
+                        ") timestamp(ts)",
+                null,
+                false,
+                true,
+                true
+        );
+    }
+
+    @Test
+    public void testSumOrderedByNonTimestamp() throws Exception {
+        assertQuery(
+                "s\td\tsum\n" +
+                        "a\t1.0\t10.0\n" +
+                        "a\t2.0\t9.0\n" +
+                        "b\t3.0\t26.0\n" +
+                        "b\t4.0\t23.0\n" +
+                        "b\t5.0\t19.0\n" +
+                        "b\t6.0\t14.0\n" +
+                        "a\t7.0\t7.0\n" +
+                        "b\t8.0\t8.0\n",
+                "select s, d, sum(d) over (partition by s order by d desc) from x",
+                DDL,
+                null,
+                true
+        );
+    }
+
+    @Test
+    public void testSumWholePartition() throws Exception {
+        assertQuery(
+                "s\td\tsum\n" +
+                        "a\t1.0\t10.0\n" +
+                        "a\t2.0\t10.0\n" +
+                        "b\t3.0\t26.0\n" +
+                        "b\t4.0\t26.0\n" +
+                        "b\t5.0\t26.0\n" +
+                        "b\t6.0\t26.0\n" +
+                        "a\t7.0\t10.0\n" +
+                        "b\t8.0\t26.0\n",
+                "select s, d, sum(d) over (partition by s) from x",
+                DDL,
+                null,
+                true
+        );
+    }
+
+    private static void assertDouble(double expected, double actual) {
+        if (Double.isNaN(expected)) {
+            Assert.assertTrue(Double.isNaN(actual));
+        } else {
+            Assert.assertEquals(expected, actual, 1e-9);
+        }
+    }
+}